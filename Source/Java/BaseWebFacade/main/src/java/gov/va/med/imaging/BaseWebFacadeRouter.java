@@ -3,6 +3,7 @@ package gov.va.med.imaging;
 import gov.va.med.PatientIdentifier;
 import gov.va.med.RoutingToken;
 import gov.va.med.imaging.access.TransactionLogEntry;
+import gov.va.med.imaging.access.TransactionLogRollup;
 import gov.va.med.imaging.access.TransactionLogWriter;
 import gov.va.med.imaging.artifactsource.ResolvedArtifactSource;
 import gov.va.med.imaging.core.annotations.routerfacade.FacadeRouterInterface;
@@ -147,6 +148,24 @@ extends FacadeRouter
 			Integer            endIndex) 
 	throws MethodException, ConnectionException;
 
+	/**
+	 * Get the pre-aggregated statistics of the Transaction Log records in a period.
+	 * maps to SPI getLogRollup (startDate, endDate, commandClassName, site, datasourceProtocol).
+	 * 
+	 * @return the statistics of the TransactionLog records in the period
+	 * 
+	 * @throws MethodException
+	 * @throws ConnectionException
+	 */
+	@FacadeRouterMethod(asynchronous = false, commandClassName = "GetTransactionLogRollupCommand")
+	public abstract TransactionLogRollup getTransactionLogRollup(
+			Date               startDate,
+			Date               endDate,
+			String             commandClassName,
+			String             site,
+			DatasourceProtocol datasourceProtocol) 
+	throws MethodException, ConnectionException;
+
 	/**
 	 * Asynchronously delete TransactionLog records older than the number of days passed in.
 	 * @param maxDaysAllowed The number of days of storage allowed before TransactionLog records purged. 
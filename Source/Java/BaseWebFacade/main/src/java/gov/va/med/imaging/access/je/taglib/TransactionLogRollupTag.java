@@ -0,0 +1,303 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.access.je.taglib;
+
+import gov.va.med.imaging.BaseWebFacadeRouter;
+import gov.va.med.imaging.access.TransactionLogRollup;
+import gov.va.med.imaging.access.TransactionLogStatistics;
+import gov.va.med.imaging.core.FacadeRouterUtility;
+import gov.va.med.imaging.exchange.enums.DatasourceProtocol;
+import gov.va.med.imaging.transactioncontext.TransactionContext;
+import gov.va.med.imaging.transactioncontext.TransactionContextFactory;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.tagext.BodyTag;
+import javax.servlet.jsp.tagext.BodyTagSupport;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The root element of a transaction log statistics display that reads the
+ * pre-aggregated rollups rather than enumerating the log entries. The 
+ * statistics tags (TransactionLogMean, TransactionLogMedian, etc.) may be 
+ * used within this tag exactly as they are used within a TransactionLog tag.
+ * The period may be given either as start and end dates or as a number of
+ * minutes before now. The medians are approximate, within 2% of the exact value.
+ * 
+ * The page attributes "rollupTransactionCount" and "rollupErrorCount" are set
+ * to the number of transactions and failed transactions in the period.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TransactionLogRollupTag 
+extends BodyTagSupport 
+implements TransactionLogStatisticsParent
+{
+	private static final long serialVersionUID = 1L;
+	private Logger logger = Logger.getLogger(this.getClass());
+	
+	private Date startDate;
+	private Date endDate;
+	private Integer lastMinutes;
+	private String commandClassName;
+	private String site;
+	private DatasourceProtocol datasourceProtocol = null;
+	
+	private TransactionLogRollup rollup;
+	
+	// the first date format in the array 
+	private DateFormat[] dateFormats = new DateFormat[]
+	{
+		new SimpleDateFormat("MM/dd/yyyy"),
+		new SimpleDateFormat("ddMMyyyy")
+	};
+	
+	private String formatDate(Date date)
+	{
+        return dateFormats[0].format(date);
+	}
+	
+	private Date parseDate(String stringDate)
+	{
+		for(DateFormat df : dateFormats)
+		{
+			try
+            {
+	            return df.parse(stringDate);
+            } 
+			catch (ParseException e)
+            {
+            }
+		}
+		return null;
+	}
+	
+	public TransactionLogRollupTag()
+	{
+		
+	}
+
+	// =======================================================================
+	public String getStartDateAsString()
+    {
+		if(startDate == null)
+			return null;
+    	return formatDate(startDate);
+    }
+	public void setStartDateAsString(String startDateAsString)
+    {
+		if(startDateAsString == null)
+			startDate = null;
+		else
+			startDate = parseDate(startDateAsString);
+    }
+	public Date getStartDate()
+    {
+    	return startDate;
+    }
+	public void setStartDate(Date startDate)
+    {
+    	this.startDate = startDate;
+    }
+
+	// =======================================================================
+	public String getEndDateAsString()
+    {
+		if(endDate == null)
+			return null;
+    	return formatDate(endDate);
+    }
+	public void setEndDateAsString(String endDateAsString)
+    {
+		if(endDateAsString == null)
+			endDate = null;
+		else
+			endDate = parseDate(endDateAsString);
+    }
+	public Date getEndDate()
+    {
+    	return endDate;
+    }
+	public void setEndDate(Date endDate)
+    {
+    	this.endDate = endDate;
+    }
+
+	// =======================================================================
+	/**
+	 * If set, the period is the given number of minutes up to now and the 
+	 * start and end dates are ignored.
+	 */
+	public Integer getLastMinutes()
+    {
+    	return lastMinutes;
+    }
+	public void setLastMinutes(Integer lastMinutes)
+    {
+    	this.lastMinutes = lastMinutes;
+    }
+
+	// =======================================================================
+	/**
+	 * The simple class name of the command of interest, a null or blank 
+	 * string includes all commands.
+	 */
+	public String getCommandClassName()
+    {
+    	return commandClassName;
+    }
+	public void setCommandClassName(String commandClassName)
+    {
+    	this.commandClassName = commandClassName;
+    }
+
+	/**
+	 * The responding site of interest, a null or blank string includes all sites.
+	 */
+	public String getSite()
+    {
+    	return site;
+    }
+	public void setSite(String site)
+    {
+    	this.site = site;
+    }
+
+	// =======================================================================
+	public DatasourceProtocol getDatasourceProtocol()
+    {
+    	return datasourceProtocol;
+    }
+	public void setDatasourceProtocol(DatasourceProtocol datasourceProtocol)
+    {
+    	this.datasourceProtocol = datasourceProtocol;
+    }
+	public String getDatasourceProtocolAsString()
+    {
+    	return datasourceProtocol == null ? null : datasourceProtocol.name();
+    }
+	public void setDatasourceProtocolAsString(String datasourceProtocolAsString)
+    {
+		if(datasourceProtocolAsString == null || datasourceProtocolAsString.length() == 0)
+			this.datasourceProtocol = null;
+		else
+			this.datasourceProtocol = DatasourceProtocol.valueOf(datasourceProtocolAsString);
+    }
+	
+	/**
+	 * 
+	 * @see javax.servlet.jsp.tagext.BodyTagSupport#doStartTag()
+	 */
+	@Override
+    public int doStartTag() 
+	throws JspException
+    {
+		TransactionContext transactionContext = TransactionContextFactory.get();
+		transactionContext.setRequestType("View Transaction Log Statistics");
+		transactionContext.setServicedSource(transactionContext.getLoggerSiteNumber());
+		
+		Date periodStart = getStartDate();
+		Date periodEnd = getEndDate();
+		if(getLastMinutes() != null)
+		{
+			periodEnd = new Date();
+			periodStart = new Date(periodEnd.getTime() - getLastMinutes().intValue() * 60000L);
+		}
+		
+		try
+		{
+			BaseWebFacadeRouter router = FacadeRouterUtility.getFacadeRouter (BaseWebFacadeRouter.class);
+			rollup = router.getTransactionLogRollup(periodStart, periodEnd, 
+				blankToNull(getCommandClassName()), blankToNull(getSite()), datasourceProtocol);
+		}
+		catch (Exception x)
+		{
+			logger.error ("Error:", x);
+			throw new JspException("Unable to acquire the TransactionLog statistics.");
+		}
+		
+		long entryCount = rollup == null ? 0L : rollup.getEntryCount();
+		pageContext.setAttribute("rollupTransactionCount", entryCount);
+		pageContext.setAttribute("rollupErrorCount", rollup == null ? 0L : rollup.getErrorCount());
+		
+		return entryCount == 0L ? BodyTag.SKIP_BODY : BodyTag.EVAL_BODY_INCLUDE;
+    }
+
+	/**
+	 * 
+	 * @see javax.servlet.jsp.tagext.BodyTagSupport#doEndTag()
+	 */
+	@Override
+    public int doEndTag() 
+	throws JspException
+    {
+		rollup = null;
+	    return BodyTag.EVAL_PAGE;
+    }
+	
+	private static String blankToNull(String value)
+	{
+		return value == null || value.length() == 0 ? null : value;
+	}
+	
+	// =====================================================================================
+	// TransactionLogStatisticsParent
+	// =====================================================================================
+	@Override
+	public TransactionLogStatistics getMeanValues()
+	{
+		return rollup == null ? null : rollup.getMeanValues();
+	}
+
+	@Override
+	public TransactionLogStatistics getMedianValues()
+	{
+		return rollup == null ? null : rollup.getMedianValues();
+	}
+
+	@Override
+	public TransactionLogStatistics getSumValues()
+	{
+		return rollup == null ? null : rollup.getSumValues();
+	}
+
+	@Override
+	public TransactionLogStatistics getMinimumValues()
+	{
+		return rollup == null ? null : rollup.getMinimumValues();
+	}
+
+	@Override
+	public TransactionLogStatistics getMaximumValues()
+	{
+		return rollup == null ? null : rollup.getMaximumValues();
+	}
+}
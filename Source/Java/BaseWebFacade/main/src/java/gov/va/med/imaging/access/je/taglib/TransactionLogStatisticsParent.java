@@ -0,0 +1,18 @@
+package gov.va.med.imaging.access.je.taglib;
+
+import gov.va.med.imaging.access.TransactionLogStatistics;
+
+/**
+ * Implemented by the tags that may contain a TransactionLogStatisticsTag,
+ * either calculating the statistics from an enumeration of log entries
+ * (TransactionLogTag) or reading them from the pre-aggregated rollups
+ * (TransactionLogRollupTag).
+ */
+public interface TransactionLogStatisticsParent
+{
+	public abstract TransactionLogStatistics getMeanValues();
+	public abstract TransactionLogStatistics getMedianValues();
+	public abstract TransactionLogStatistics getSumValues();
+	public abstract TransactionLogStatistics getMinimumValues();
+	public abstract TransactionLogStatistics getMaximumValues();
+}
@@ -33,7 +33,8 @@ import javax.servlet.jsp.tagext.BodyTagSupport;
 /**
  * @author VHAISWBECKEC
  * This tag MUST live within a TransactionLogTag, which maintains the 
- * collection and the enumeration of the collection.
+ * collection and the enumeration of the collection, or within a 
+ * TransactionLogRollupTag, which reads the pre-aggregated statistics.
  * This tag, and its derivations, must appear after a TransactionLogEntriesTag
  * otherwise the enumeration needed to calculate the statistics will never occur.
  */
@@ -52,9 +53,12 @@ implements TransactionLogEntryParent
 	 */
 	public abstract TransactionLogStatistics getTransactionLogStatistics();
 	
-	protected TransactionLogTag getTransactionLogParent()
+	/**
+	 * The nearest enclosing TransactionLogTag or TransactionLogRollupTag.
+	 */
+	protected TransactionLogStatisticsParent getTransactionLogParent()
 	{
-		return (TransactionLogTag)BodyTagSupport.findAncestorWithClass(this, TransactionLogTag.class);
+		return (TransactionLogStatisticsParent)BodyTagSupport.findAncestorWithClass(this, TransactionLogStatisticsParent.class);
 	}
 
 	/**
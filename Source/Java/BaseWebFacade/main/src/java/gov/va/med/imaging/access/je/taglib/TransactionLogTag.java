@@ -65,6 +65,7 @@ import org.apache.log4j.Logger;
  */
 public class TransactionLogTag 
 extends BodyTagSupport 
+implements TransactionLogStatisticsParent
 {
 	private static final long serialVersionUID = 1L;
 	private Logger logger = Logger.getLogger(this.getClass());
@@ -630,7 +631,7 @@ extends BodyTagSupport
 	/**
      * @return the maximumValues
      */
-    TransactionLogMaxima getMaximumValues()
+    public TransactionLogMaxima getMaximumValues()
     {
     	return maximumValues;
     }
@@ -638,7 +639,7 @@ extends BodyTagSupport
 	/**
      * @return the minimumValues
      */
-    TransactionLogMinima getMinimumValues()
+    public TransactionLogMinima getMinimumValues()
     {
     	return minimumValues;
     }
@@ -646,7 +647,7 @@ extends BodyTagSupport
 	/**
      * @return the meanValues
      */
-    TransactionLogMean getMeanValues()
+    public TransactionLogMean getMeanValues()
     {
     	return meanValues;
     }
@@ -654,12 +655,12 @@ extends BodyTagSupport
 	/**
      * @return the medianValues
      */
-    TransactionLogMedian getMedianValues()
+    public TransactionLogMedian getMedianValues()
     {
     	return medianValues;
     }
     
-    TransactionLogSum getSumValues()
+    public TransactionLogSum getSumValues()
     {
     	return sumValues;
     }
@@ -0,0 +1,23 @@
+package gov.va.med.imaging.storage.cache;
+
+import java.io.File;
+
+/**
+ * An InstanceReadableByteChannel whose content is a complete file in a local
+ * file system.  Consumers may read the file directly rather than through the channel,
+ * e.g. to read only a range of it, but only before the channel is closed.  The channel 
+ * holds the instance in the cache, the file may be evicted once it is closed.
+ * 
+ * The content of the file must not change while the channel is open, channels that 
+ * read an instance while it is being written must not implement this interface.
+ */
+public interface FileInstanceReadableByteChannel
+extends SizedInstanceReadableByteChannel
+{
+	/**
+	 * The file that this channel reads.
+	 * 
+	 * @return
+	 */
+	public abstract File getFile();
+}
@@ -49,6 +49,20 @@ extends MutableNamedObject
 	public InstanceReadableByteChannel getReadableChannelNoWait() 
 	throws CacheException;
 	
+	/**
+	 * Get a readable byte channel, suitable for reading the contents of this
+	 * Instance while the write channel is open.  The channel returns content as 
+	 * it is written, blocking at the end of the written content until more is 
+	 * written or the write channel closes.  A read throws an IOException if the 
+	 * write channel closes with an error.
+	 * If the write channel is not open this behaves as getReadableChannel().
+	 * 
+	 * @return
+	 * @throws CacheException
+	 */
+	public InstanceReadableByteChannel getTailingReadableChannel() 
+	throws CacheException;
+	
 	/**
 	 * Get a writable byte channel, suitable for writing the contents of this
 	 * Instance.  Wait for the write channel if any read channels are currently 
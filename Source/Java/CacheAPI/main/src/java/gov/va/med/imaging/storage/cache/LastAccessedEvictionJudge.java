@@ -0,0 +1,21 @@
+package gov.va.med.imaging.storage.cache;
+
+/**
+ * An EvictionJudge that will only find a Group evictable if it was last accessed
+ * before a known time.  A Region that keeps an index of last access times may use
+ * this to limit the Groups it presents to the judge, rather than presenting every Group.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public interface LastAccessedEvictionJudge<T extends MutableNamedObject>
+extends EvictionJudge<T>
+{
+	/**
+	 * Nothing last accessed at or after this time (in milliseconds since the epoch)
+	 * is evictable.
+	 * 
+	 * @return
+	 */
+	public long getMinimumLastAccessed();
+}
@@ -0,0 +1,20 @@
+package gov.va.med.imaging.storage.cache;
+
+import java.io.IOException;
+
+/**
+ * An InstanceReadableByteChannel that knows the size of its content before it is read,
+ * so that a consumer can announce the length or serve a byte range of the content.
+ */
+public interface SizedInstanceReadableByteChannel
+extends InstanceReadableByteChannel
+{
+	/**
+	 * The size, in bytes, of the content of this channel.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public abstract long size() 
+	throws IOException;
+}
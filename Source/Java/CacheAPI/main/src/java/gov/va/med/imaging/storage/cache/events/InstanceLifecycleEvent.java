@@ -3,6 +3,8 @@
  */
 package gov.va.med.imaging.storage.cache.events;
 
+import gov.va.med.imaging.storage.cache.Instance;
+
 /**
  * @author VHAISWBECKEC
  *
@@ -11,12 +13,19 @@ public class InstanceLifecycleEvent
 {
 	private final LifecycleEvent lifecycleEvent;
 	private final String name;
+	private final Instance instance;
 	
 	public InstanceLifecycleEvent(LifecycleEvent lifecycleEvent, String name)
+	{
+		this(lifecycleEvent, name, null);
+	}
+	
+	public InstanceLifecycleEvent(LifecycleEvent lifecycleEvent, String name, Instance instance)
 	{
 		super();
 		this.lifecycleEvent = lifecycleEvent;
 		this.name = name;
+		this.instance = instance;
 	}
 
 	/**
@@ -34,5 +43,13 @@ public class InstanceLifecycleEvent
 	{
 		return this.name;
 	}
+
+	/**
+	 * @return the Instance that the event occurred on, may be null
+	 */
+	public Instance getInstance()
+	{
+		return this.instance;
+	}
 	
 }
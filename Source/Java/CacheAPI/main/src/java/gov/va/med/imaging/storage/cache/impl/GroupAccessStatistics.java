@@ -0,0 +1,70 @@
+/**
+ * 
+ */
+package gov.va.med.imaging.storage.cache.impl;
+
+/**
+ * A simple value object describing the size and the access history of
+ * a Group, as recorded by an OccupancyIndexedRegion.
+ * The group path is the names of the Group and its ancestors, from the Region,
+ * separated by '/'.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class GroupAccessStatistics
+{
+	private final String groupPath;
+	private final long size;
+	private final long lastAccessed;
+	private final int accessCount;
+	
+	public GroupAccessStatistics(String groupPath, long size, long lastAccessed, int accessCount)
+	{
+		super();
+		this.groupPath = groupPath;
+		this.size = size;
+		this.lastAccessed = lastAccessed;
+		this.accessCount = accessCount;
+	}
+
+	public String getGroupPath()
+	{
+		return this.groupPath;
+	}
+
+	/**
+	 * @return the collective size of the instances in the Group
+	 */
+	public long getSize()
+	{
+		return this.size;
+	}
+
+	/**
+	 * @return the most recent access to any instance in the Group, in milliseconds
+	 */
+	public long getLastAccessed()
+	{
+		return this.lastAccessed;
+	}
+
+	/**
+	 * The number of times the most frequently accessed instance in the Group has been
+	 * accessed, counting the write that created it.  A Group that was written and never
+	 * read again has an access count of 1.
+	 * 
+	 * @return
+	 */
+	public int getAccessCount()
+	{
+		return this.accessCount;
+	}
+
+	@Override
+	public String toString()
+	{
+		return this.getClass().getSimpleName() + "(" + groupPath + ", size=" + size + 
+			", lastAccessed=" + lastAccessed + ", accessCount=" + accessCount + ")";
+	}
+}
@@ -0,0 +1,56 @@
+/**
+ * 
+ */
+package gov.va.med.imaging.storage.cache.impl;
+
+import gov.va.med.imaging.storage.cache.Region;
+import gov.va.med.imaging.storage.cache.exceptions.CacheException;
+
+import java.util.List;
+
+/**
+ * A Region that keeps an index of the size and the last access time of its content,
+ * so that eviction candidates can be found without visiting every Group in the Region.
+ * Eviction strategies should use the index when isOccupancyIndexAvailable() returns
+ * true, and fall back to visiting the Groups when it returns false.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public interface OccupancyIndexedRegion
+extends Region
+{
+	/**
+	 * @return true if the index is loaded and may be used
+	 */
+	public boolean isOccupancyIndexAvailable();
+	
+	/**
+	 * Get the least recently accessed leaf Groups in this Region whose collective size
+	 * is less than but close to the target size.
+	 * 
+	 * @param targetSize
+	 * @return
+	 * @throws CacheException
+	 */
+	public TargetSizeGroupPathSet getEvictionCandidates(long targetSize)
+	throws CacheException;
+	
+	/**
+	 * Get the size and access history of every leaf Group in this Region.
+	 * 
+	 * @return
+	 */
+	public List<GroupAccessStatistics> getGroupAccessStatistics();
+	
+	/**
+	 * Resolve a group path, as given in a GroupAccessStatistics, to the Group
+	 * and its ancestors.
+	 * 
+	 * @param groupPath
+	 * @return the GroupPath or null if the Group no longer exists
+	 * @throws CacheException
+	 */
+	public GroupPath getGroupPath(String groupPath)
+	throws CacheException;
+}
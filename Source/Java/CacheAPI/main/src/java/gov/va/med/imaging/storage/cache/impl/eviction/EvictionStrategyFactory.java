@@ -54,6 +54,7 @@ public class EvictionStrategyFactory
 			evictionStrategiesMap.put(SimpleEvictionStrategy.class, SimpleEvictionStrategyMemento.class);
 			evictionStrategiesMap.put(StorageThresholdEvictionStrategy.class, StorageThresholdEvictionStrategyMemento.class);
 			evictionStrategiesMap.put(LastAccessedEvictionStrategy.class, LastAccessedEvictionStrategyMemento.class);
+			evictionStrategiesMap.put(SegmentedLruEvictionStrategy.class, SegmentedLruEvictionStrategyMemento.class);
 			
 		}
 		return evictionStrategiesMap;
@@ -157,6 +158,9 @@ public class EvictionStrategyFactory
 		if(memento instanceof LastAccessedEvictionStrategyMemento)
 			return LastAccessedEvictionStrategy.create((LastAccessedEvictionStrategyMemento)memento, timer);
 
+		if(memento instanceof SegmentedLruEvictionStrategyMemento)
+			return SegmentedLruEvictionStrategy.create((SegmentedLruEvictionStrategyMemento)memento, timer);
+
 		if(memento instanceof StorageThresholdEvictionStrategyMemento)
 			return StorageThresholdEvictionStrategy.create((StorageThresholdEvictionStrategyMemento)memento, timer);
 		
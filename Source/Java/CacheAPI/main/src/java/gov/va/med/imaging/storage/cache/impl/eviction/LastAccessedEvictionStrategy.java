@@ -287,7 +287,7 @@ implements EvictionStrategy, LastAccessedEvictionStrategyMBean
 	 *
 	 */
 	class LastAccessedDateJudge
-	implements EvictionJudge<Group>
+	implements LastAccessedEvictionJudge<Group>
 	{
 		final long minLastAccessMilli;
 		
@@ -296,6 +296,11 @@ implements EvictionStrategy, LastAccessedEvictionStrategyMBean
 			minLastAccessMilli = minLastAccess.getTime();
 		}
 		
+		public long getMinimumLastAccessed()
+		{
+			return minLastAccessMilli;
+		}
+		
 		public boolean isEvictable(Group group) 
 		throws CacheException
 		{
@@ -0,0 +1,267 @@
+/**
+ * 
+ */
+package gov.va.med.imaging.storage.cache.impl.eviction;
+
+import gov.va.med.imaging.storage.cache.*;
+import gov.va.med.imaging.storage.cache.exceptions.CacheException;
+import gov.va.med.imaging.storage.cache.impl.GroupAccessStatistics;
+import gov.va.med.imaging.storage.cache.impl.GroupPath;
+import gov.va.med.imaging.storage.cache.impl.OccupancyIndexedRegion;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A storage threshold eviction strategy that chooses the groups to evict using a
+ * segmented LRU (see SegmentedLruPolicy) rather than strictly by last access.
+ * Groups that are written and never read again, as happens with prefetched studies,
+ * are evicted before groups that are read repeatedly.
+ * 
+ * When and how much to evict is determined exactly as in StorageThresholdEvictionStrategy.
+ * The access counts come from the occupancy index of the managed regions, so the managed 
+ * regions must be OccupancyIndexedRegion instances with an available index.  Regions
+ * without an index are not evicted by this strategy.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class SegmentedLruEvictionStrategy
+extends StorageThresholdEvictionStrategy
+implements EvictionStrategy, SegmentedLruEvictionStrategyMBean
+{
+	public final static int defaultProtectedSegmentPercentage = 80;
+	public final static int defaultProtectedAccessCount = 2;
+	
+	/**
+	 * @param memento
+	 * @param timer
+	 * @return
+	 */
+	static SegmentedLruEvictionStrategy create(SegmentedLruEvictionStrategyMemento memento, EvictionTimer timer)
+	throws CacheException 
+	{
+		return new SegmentedLruEvictionStrategy(
+			memento.getName(), memento.isInitialized(), 
+			timer, 
+			memento.getMinFreeSpaceThreshold(), memento.getTargetFreeSpaceThreshold(), memento.getMaxUsedSpaceThreshold(), 
+			memento.getDelay(), memento.getInterval(),
+			memento.getProtectedSegmentPercentage() == null ? defaultProtectedSegmentPercentage : memento.getProtectedSegmentPercentage().intValue(),
+			memento.getProtectedAccessCount() == null ? defaultProtectedAccessCount : memento.getProtectedAccessCount().intValue());
+	}
+
+	/**
+	 * 
+	 * @param name
+	 * @param initialized
+	 * @param evictionTimer
+	 * @param minFreeSpaceThreshold
+	 * @param targetFreeSpaceThreshold
+	 * @param maxUsedSpaceThreshold
+	 * @param delay
+	 * @param interval
+	 * @param protectedSegmentPercentage
+	 * @param protectedAccessCount
+	 * @return
+	 * @throws CacheException
+	 */
+	static SegmentedLruEvictionStrategy create(
+		String name, boolean initialized, 
+		EvictionTimer evictionTimer, 
+		long minFreeSpaceThreshold, long targetFreeSpaceThreshold, long maxUsedSpaceThreshold,
+		long delay, long interval,
+		int protectedSegmentPercentage, int protectedAccessCount) 
+	throws CacheException
+	{
+		return new SegmentedLruEvictionStrategy(
+			name, initialized, 
+			evictionTimer, 
+			minFreeSpaceThreshold, targetFreeSpaceThreshold, maxUsedSpaceThreshold,
+			delay, interval,
+			protectedSegmentPercentage, protectedAccessCount);
+	}
+	
+	// ==========================================================================================================================
+	// 
+	// ==========================================================================================================================
+	
+	private volatile int protectedSegmentPercentage;
+	private volatile int protectedAccessCount;
+	private volatile int frequentlyAccessedEvictedLastSweep = 0;
+	
+	private Logger logger = Logger.getLogger(this.getClass());
+
+	protected SegmentedLruEvictionStrategy(
+			String name, 
+			boolean initialized,
+			EvictionTimer evictionTimer, 
+			long minFreeSpaceThreshold, 
+			long targetFreeSpaceThreshold,
+			long maxUsedSpaceThreshold,
+			long delay, 
+			long interval,
+			int protectedSegmentPercentage,
+			int protectedAccessCount) 
+	throws CacheException
+	{
+		// do not initialize (i.e. schedule the sweeps) until the segment parameters are set
+		super(name, false, evictionTimer, minFreeSpaceThreshold, targetFreeSpaceThreshold, maxUsedSpaceThreshold, delay, interval);
+		setProtectedSegmentPercentage(protectedSegmentPercentage);
+		setProtectedAccessCount(protectedAccessCount);
+		setInitialized(initialized);
+	}
+
+	/**
+	 * @see gov.va.med.imaging.storage.cache.impl.eviction.SegmentedLruEvictionStrategyMBean#getProtectedSegmentPercentage()
+	 */
+	public int getProtectedSegmentPercentage()
+	{
+		return this.protectedSegmentPercentage;
+	}
+
+	/**
+	 * @see gov.va.med.imaging.storage.cache.impl.eviction.SegmentedLruEvictionStrategyMBean#setProtectedSegmentPercentage(int)
+	 */
+	public void setProtectedSegmentPercentage(int protectedSegmentPercentage)
+	{
+		this.protectedSegmentPercentage = Math.max(0, Math.min(100, protectedSegmentPercentage));
+		logger.info("Setting protected segment percentage to " + this.protectedSegmentPercentage);
+	}
+
+	/**
+	 * @see gov.va.med.imaging.storage.cache.impl.eviction.SegmentedLruEvictionStrategyMBean#getProtectedAccessCount()
+	 */
+	public int getProtectedAccessCount()
+	{
+		return this.protectedAccessCount;
+	}
+
+	/**
+	 * @see gov.va.med.imaging.storage.cache.impl.eviction.SegmentedLruEvictionStrategyMBean#setProtectedAccessCount(int)
+	 */
+	public void setProtectedAccessCount(int protectedAccessCount)
+	{
+		this.protectedAccessCount = Math.max(1, protectedAccessCount);
+		logger.info("Setting protected access count to " + this.protectedAccessCount);
+	}
+
+	/**
+	 * @see gov.va.med.imaging.storage.cache.impl.eviction.SegmentedLruEvictionStrategyMBean#getEvictedLastSweep()
+	 */
+	public int getEvictedLastSweep()
+	{
+		return getLastSweepStatistics().getTotalEvictedGroups();
+	}
+
+	/**
+	 * @see gov.va.med.imaging.storage.cache.impl.eviction.SegmentedLruEvictionStrategyMBean#getFrequentlyAccessedEvictedLastSweep()
+	 */
+	public int getFrequentlyAccessedEvictedLastSweep()
+	{
+		return this.frequentlyAccessedEvictedLastSweep;
+	}
+
+	@Override
+	public SegmentedLruEvictionStrategyMemento getMemento()
+	{
+		return createMemento();
+	}
+	
+	@Override
+	public SegmentedLruEvictionStrategyMemento createMemento()
+	{
+		return new SegmentedLruEvictionStrategyMemento(
+			getName(), isInitialized(), 
+			getMinFreeSpaceThreshold(), getTargetFreeSpaceThreshold(), getMaxUsedSpaceThreshold(), 
+			getDelay(), getInterval(),
+			getProtectedSegmentPercentage(), getProtectedAccessCount()
+		);
+	}
+	
+	// ===================================================================================================================
+	// The eviction, started from the sweep when free space falls below the minimum
+	// ===================================================================================================================
+	/**
+	 * @see gov.va.med.imaging.storage.cache.impl.eviction.StorageThresholdEvictionStrategy#startEviction(long)
+	 */
+	@Override
+	protected void startEviction(long evictSize)
+	{
+		getExecutor().execute( new SegmentedLruEvictorTask(evictSize, new SegmentedLruPolicy(getProtectedSegmentPercentage(), getProtectedAccessCount())) );
+	}
+	
+	/**
+	 * A task that collects the group statistics of all the managed regions, selects
+	 * the victims across all of the regions and evicts them.
+	 * 
+	 * @author vhaiswwerfej
+	 */
+	class SegmentedLruEvictorTask
+	implements Runnable
+	{
+		private final long evictSize;
+		private final SegmentedLruPolicy policy;
+		
+		SegmentedLruEvictorTask(long evictSize, SegmentedLruPolicy policy)
+		{
+			this.evictSize = evictSize;
+			this.policy = policy;
+		}
+		
+		public void run()
+		{
+			long start = System.currentTimeMillis();
+			int groupsEvicted = 0;
+			int frequentlyAccessedEvicted = 0;
+			
+			if(evictSize > 0)
+			{
+				// the statistics instances are distinct so an identity map is sufficient to get back to the region
+				Map<GroupAccessStatistics, OccupancyIndexedRegion> groupRegions = new IdentityHashMap<GroupAccessStatistics, OccupancyIndexedRegion>();
+				for(Region region : getRegions())
+				{
+					if( !(region instanceof OccupancyIndexedRegion) || !((OccupancyIndexedRegion)region).isOccupancyIndexAvailable() )
+					{
+						logger.warn("Region '" + region.getName() + "' does not have an occupancy index and will not be evicted by '" + getName() + "'.");
+						continue;
+					}
+					for(GroupAccessStatistics group : ((OccupancyIndexedRegion)region).getGroupAccessStatistics())
+						groupRegions.put(group, (OccupancyIndexedRegion)region);
+				}
+				
+				List<GroupAccessStatistics> victims = policy.selectVictims(groupRegions.keySet(), evictSize);
+				logger.info("There are " + victims.size() + " cache entries to evict.");
+				for(GroupAccessStatistics victim : victims)
+				{
+					OccupancyIndexedRegion region = groupRegions.get(victim);
+					try
+					{
+						GroupPath groupPath = region.getGroupPath(victim.getGroupPath());
+						if(groupPath == null)
+							continue;
+						
+						List<Group> ancestors = groupPath.getPath();
+						if(ancestors.isEmpty())
+							region.deleteChildGroup(groupPath.getGroup(), false);
+						else
+							ancestors.get(ancestors.size() - 1).deleteChildGroup(groupPath.getGroup(), false);
+						
+						++groupsEvicted;
+						if(victim.getAccessCount() >= policy.getProtectedAccessCount())
+							++frequentlyAccessedEvicted;
+					} 
+					catch (CacheException x)
+					{
+						logger.error("Unable to remove group '" + victim.getGroupPath() + "'", x);
+					}
+				}
+			}
+			
+			frequentlyAccessedEvictedLastSweep = frequentlyAccessedEvicted;
+			setLastSweepStatistics(new SweepStatistics(start, groupsEvicted) );
+		}
+	}
+}
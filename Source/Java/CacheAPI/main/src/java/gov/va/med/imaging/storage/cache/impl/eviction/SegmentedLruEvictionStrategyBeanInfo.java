@@ -0,0 +1,27 @@
+/**
+ * 
+ */
+package gov.va.med.imaging.storage.cache.impl.eviction;
+
+import java.beans.BeanDescriptor;
+import java.beans.BeanInfo;
+import java.beans.SimpleBeanInfo;
+
+/**
+ * @author vhaiswwerfej
+ *
+ */
+public class SegmentedLruEvictionStrategyBeanInfo 
+extends SimpleBeanInfo
+implements BeanInfo
+{
+	@Override
+	public BeanDescriptor getBeanDescriptor()
+	{
+		BeanDescriptor descriptor = new BeanDescriptor(SegmentedLruEvictionStrategy.class);
+		
+		descriptor.setShortDescription("An eviction strategy that removes rarely accessed groups before frequently accessed groups to increase free space to a set threshold.");
+		
+		return descriptor;
+	}
+}
@@ -0,0 +1,36 @@
+/**
+ * 
+ */
+package gov.va.med.imaging.storage.cache.impl.eviction;
+
+/**
+ * The interface defining the properties available to the JMX Server.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public interface SegmentedLruEvictionStrategyMBean
+extends StorageThresholdEvictionStrategyMBean
+{
+	/**
+	 * The maximum percentage of the managed space that the protected (frequently accessed) 
+	 * groups may occupy.  The change is effective on the next sweep.
+	 */
+	public abstract int getProtectedSegmentPercentage();
+	public abstract void setProtectedSegmentPercentage(int protectedSegmentPercentage);
+
+	/**
+	 * The number of accesses, including the write that created it, after which a group 
+	 * is protected.  The change is effective on the next sweep.
+	 */
+	public abstract int getProtectedAccessCount();
+	public abstract void setProtectedAccessCount(int protectedAccessCount);
+	
+	public abstract int getEvictedLastSweep();
+	
+	/**
+	 * The number of groups evicted in the last sweep that had been accessed at least
+	 * the protected access count times.
+	 */
+	public abstract int getFrequentlyAccessedEvictedLastSweep();
+}
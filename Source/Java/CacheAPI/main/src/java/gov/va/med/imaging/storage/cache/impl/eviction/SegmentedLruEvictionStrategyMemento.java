@@ -0,0 +1,120 @@
+/**
+ * 
+ */
+package gov.va.med.imaging.storage.cache.impl.eviction;
+
+import java.io.Serializable;
+
+/**
+ * @author vhaiswwerfej
+ *
+ */
+public class SegmentedLruEvictionStrategyMemento 
+extends StorageThresholdEvictionStrategyMemento
+implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	private Integer protectedSegmentPercentage = SegmentedLruEvictionStrategy.defaultProtectedSegmentPercentage;
+	private Integer protectedAccessCount = SegmentedLruEvictionStrategy.defaultProtectedAccessCount;
+	
+	public SegmentedLruEvictionStrategyMemento()
+	{
+		super();
+	}
+
+	public SegmentedLruEvictionStrategyMemento(
+		String name, 
+		boolean initialized,
+		long minFreeSpaceThreshold, 
+		long targetFreeSpaceThreshold,
+		long maxUsedSpaceThreshold,
+		long delay, 
+		long interval,
+		int protectedSegmentPercentage,
+		int protectedAccessCount)
+	{
+		super(name, initialized, minFreeSpaceThreshold, targetFreeSpaceThreshold, maxUsedSpaceThreshold, delay, interval);
+		this.protectedSegmentPercentage = protectedSegmentPercentage;
+		this.protectedAccessCount = protectedAccessCount;
+	}
+
+	public Integer getProtectedSegmentPercentage()
+	{
+		return this.protectedSegmentPercentage;
+	}
+
+	public void setProtectedSegmentPercentage(Integer protectedSegmentPercentage)
+	{
+		this.protectedSegmentPercentage = protectedSegmentPercentage;
+	}
+
+	public Integer getProtectedAccessCount()
+	{
+		return this.protectedAccessCount;
+	}
+
+	public void setProtectedAccessCount(Integer protectedAccessCount)
+	{
+		this.protectedAccessCount = protectedAccessCount;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		
+		sb.append(super.toString());
+		sb.setLength(sb.length() - 1);
+		
+		sb.append(",");
+		sb.append( "protectedSegmentPercentage=" + getProtectedSegmentPercentage() ); 
+		sb.append(",");
+		sb.append( "protectedAccessCount=" + getProtectedAccessCount() ); 
+		
+		sb.append(")");
+		
+		return sb.toString();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode()
+	{
+		final int prime = 31;
+		int result = super.hashCode();
+		result = prime * result
+				+ ((this.protectedAccessCount == null) ? 0 : this.protectedAccessCount.hashCode());
+		result = prime * result
+				+ ((this.protectedSegmentPercentage == null) ? 0 : this.protectedSegmentPercentage.hashCode());
+		return result;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (!super.equals(obj))
+			return false;
+		final SegmentedLruEvictionStrategyMemento other = (SegmentedLruEvictionStrategyMemento) obj;
+		if (this.protectedAccessCount == null)
+		{
+			if (other.protectedAccessCount != null)
+				return false;
+		} else if (!this.protectedAccessCount.equals(other.protectedAccessCount))
+			return false;
+		if (this.protectedSegmentPercentage == null)
+		{
+			if (other.protectedSegmentPercentage != null)
+				return false;
+		} else if (!this.protectedSegmentPercentage.equals(other.protectedSegmentPercentage))
+			return false;
+		return true;
+	}
+}
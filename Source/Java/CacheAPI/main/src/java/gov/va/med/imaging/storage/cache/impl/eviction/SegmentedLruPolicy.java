@@ -0,0 +1,117 @@
+/**
+ * 
+ */
+package gov.va.med.imaging.storage.cache.impl.eviction;
+
+import gov.va.med.imaging.storage.cache.impl.GroupAccessStatistics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The victim selection of a segmented LRU cache, applied to a snapshot of the
+ * group access statistics rather than maintained on every access.
+ * 
+ * Groups that have been accessed at least protectedAccessCount times are in the
+ * protected segment, in most recently accessed order, until the protected segment
+ * holds protectedSegmentPercentage of the total size.  The remaining groups, including
+ * frequently accessed groups that did not fit, are in the probationary segment.
+ * Victims are taken from the least recently accessed end of the probationary segment 
+ * first, then from the least recently accessed end of the protected segment.
+ * 
+ * The effect is that groups that are written once and never read again (e.g. prefetched
+ * studies that nobody looks at) are evicted before groups that are read repeatedly, 
+ * even if the repeatedly read groups are older.
+ * 
+ * This class is immutable and thread safe.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+class SegmentedLruPolicy
+{
+	private final static Comparator<GroupAccessStatistics> mostRecentFirst = 
+		new Comparator<GroupAccessStatistics>()
+		{
+			public int compare(GroupAccessStatistics group1, GroupAccessStatistics group2)
+			{
+				return 
+					group1.getLastAccessed() > group2.getLastAccessed() ? -1 :
+					group1.getLastAccessed() < group2.getLastAccessed() ? 1 : 
+					group1.getGroupPath().compareTo(group2.getGroupPath());
+			}
+		};
+	
+	private final int protectedSegmentPercentage;
+	private final int protectedAccessCount;
+	
+	SegmentedLruPolicy(int protectedSegmentPercentage, int protectedAccessCount)
+	{
+		this.protectedSegmentPercentage = Math.max(0, Math.min(100, protectedSegmentPercentage));
+		this.protectedAccessCount = Math.max(1, protectedAccessCount);
+	}
+
+	int getProtectedSegmentPercentage()
+	{
+		return this.protectedSegmentPercentage;
+	}
+
+	int getProtectedAccessCount()
+	{
+		return this.protectedAccessCount;
+	}
+
+	/**
+	 * Select the groups to evict so that at least evictSize bytes are freed, 
+	 * or all groups if their total size is less than evictSize.
+	 * 
+	 * @param groups
+	 * @param evictSize
+	 * @return the victims, in the order in which they should be evicted
+	 */
+	List<GroupAccessStatistics> selectVictims(Collection<GroupAccessStatistics> groups, long evictSize)
+	{
+		List<GroupAccessStatistics> victims = new ArrayList<GroupAccessStatistics>();
+		if(evictSize <= 0 || groups.isEmpty())
+			return victims;
+		
+		List<GroupAccessStatistics> byRecency = new ArrayList<GroupAccessStatistics>(groups);
+		Collections.sort(byRecency, mostRecentFirst);
+		
+		long totalSize = 0L;
+		for(GroupAccessStatistics group : byRecency)
+			totalSize += group.getSize();
+		long protectedCapacity = totalSize / 100L * protectedSegmentPercentage;
+		
+		List<GroupAccessStatistics> protectedSegment = new ArrayList<GroupAccessStatistics>();
+		List<GroupAccessStatistics> probationarySegment = new ArrayList<GroupAccessStatistics>();
+		long protectedSize = 0L;
+		for(GroupAccessStatistics group : byRecency)
+		{
+			if(group.getAccessCount() >= protectedAccessCount && protectedSize + group.getSize() <= protectedCapacity)
+			{
+				protectedSegment.add(group);
+				protectedSize += group.getSize();
+			}
+			else
+				probationarySegment.add(group);
+		}
+		
+		long victimSize = 0L;
+		for(int index = probationarySegment.size() - 1; index >= 0 && victimSize < evictSize; --index)
+		{
+			victims.add(probationarySegment.get(index));
+			victimSize += probationarySegment.get(index).getSize();
+		}
+		for(int index = protectedSegment.size() - 1; index >= 0 && victimSize < evictSize; --index)
+		{
+			victims.add(protectedSegment.get(index));
+			victimSize += protectedSegment.get(index).getSize();
+		}
+		
+		return victims;
+	}
+}
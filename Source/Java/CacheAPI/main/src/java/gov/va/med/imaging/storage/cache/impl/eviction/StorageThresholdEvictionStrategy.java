@@ -6,6 +6,7 @@ package gov.va.med.imaging.storage.cache.impl.eviction;
 import gov.va.med.imaging.storage.cache.*;
 import gov.va.med.imaging.storage.cache.exceptions.CacheException;
 import gov.va.med.imaging.storage.cache.impl.GroupEvictionCandidateVisitor;
+import gov.va.med.imaging.storage.cache.impl.OccupancyIndexedRegion;
 import gov.va.med.imaging.storage.cache.impl.GroupPath;
 import gov.va.med.imaging.storage.cache.impl.TargetSizeGroupPathSet;
 
@@ -147,7 +148,7 @@ implements EvictionStrategy, StorageThresholdEvictionStrategyMBean
 	
 	private Logger logger = Logger.getLogger(this.getClass());
 
-	private StorageThresholdEvictionStrategy(
+	protected StorageThresholdEvictionStrategy(
 			EvictionTimer evictionTimer,
 			StorageThresholdEvictionStrategyMemento memento
 	) 
@@ -165,7 +166,7 @@ implements EvictionStrategy, StorageThresholdEvictionStrategyMBean
 		);
 	}
 	
-	private StorageThresholdEvictionStrategy(
+	protected StorageThresholdEvictionStrategy(
 			String name, 
 			boolean initialized,
 			EvictionTimer evictionTimer, 
@@ -278,9 +279,6 @@ implements EvictionStrategy, StorageThresholdEvictionStrategyMBean
 	@Override
 	public void sweep()
 	{
-		// a list, one element per region, each element consisting of a list of groups to evict.
-		// building the list of groups is done by worker threads, one per region
-		List<Future<TargetSizeGroupPathSet>> regionSweepFutures = new ArrayList<Future<TargetSizeGroupPathSet>>();
 		long freeSpace = -1;
 		DateFormat df = DateFormat.getDateTimeInstance();
 		long totalManagedSize = 0L;
@@ -336,39 +334,56 @@ implements EvictionStrategy, StorageThresholdEvictionStrategyMBean
 		// note that freeSpace could be a negative number
 		// if it is precisely 0L and the max used space is not specified 
 		// then we cannot continue
+		long evictSize = 0L;
 		if(freeSpace != 0L && getMaxUsedSpaceThreshold() > 0)
 		{
-			// for each Region
-			for(Region region: getRegions())
-			{
-				// if the free space is less than the minimum then start the region sweeps
-				// else don't
-				// NOTE, it is expected that the region sweeps could be expensive so running
-				// them should be minimized
-				if( freeSpace < getMinFreeSpaceThreshold() )
-				{
-					// each region is told how many bytes we want to free up total
-					// the candidates that it provides are all tacked onto a "master" list
-					// which is used to determine what actually gets evicted
-					RegionSweepTask task = new RegionSweepTask(region, getTargetFreeSpaceThreshold() - freeSpace);
-					Future<TargetSizeGroupPathSet> future = getExecutor().submit(task);
-					
-					regionSweepFutures.add(future);
-				}
-			}
+			// if the free space is less than the minimum then start the region sweeps
+			// else don't
+			// NOTE, it is expected that the region sweeps could be expensive so running
+			// them should be minimized
+			if( freeSpace < getMinFreeSpaceThreshold() )
+				evictSize = getTargetFreeSpaceThreshold() - freeSpace;
 		}
 		else
 			logger.warn(
 				"Managed regions do not support free space reporting and no maximum size was specified.  " + 
 				" The eviction strategy is '" + this.getClass().getSimpleName() + "', which requires it.  No eviction will occur in these regions.");
 
+		startEviction(evictSize);
+		
+		return;
+	}
+	
+	/**
+	 * Start the worker threads that evict groups, across all of the regions, whose collective 
+	 * size is close to the given size.  This method must return quickly.
+	 * Derived classes may override this to choose the groups to evict differently.
+	 * 
+	 * @param evictSize - the number of bytes to free up, zero if no eviction is required
+	 */
+	protected void startEviction(long evictSize)
+	{
+		// a list, one element per region, each element consisting of a list of groups to evict.
+		// building the list of groups is done by worker threads, one per region
+		List<Future<TargetSizeGroupPathSet>> regionSweepFutures = new ArrayList<Future<TargetSizeGroupPathSet>>();
+		
+		if(evictSize > 0)
+			for(Region region: getRegions())
+			{
+				// each region is told how many bytes we want to free up total
+				// the candidates that it provides are all tacked onto a "master" list
+				// which is used to determine what actually gets evicted
+				RegionSweepTask task = new RegionSweepTask(region, evictSize);
+				Future<TargetSizeGroupPathSet> future = getExecutor().submit(task);
+				
+				regionSweepFutures.add(future);
+			}
+
 		// Start the thread to do the actual evictions.
 		// This thread will wait until all of the Futures have results available, which is the
 		// same as saying when the region sweep tasks are complete, then it will evict across
 		// all of the regions sufficient to free up the target space
-		getExecutor().execute( new EvictorTask(regionSweepFutures, getTargetFreeSpaceThreshold() - freeSpace) );
-		
-		return;
+		getExecutor().execute( new EvictorTask(regionSweepFutures, evictSize) );
 	}
 
 	private void logRegionStatistics(Region region, long freeSpace)
@@ -445,7 +460,14 @@ implements EvictionStrategy, StorageThresholdEvictionStrategyMBean
 			);
 			
 			// special case if the Region implementation does not report free space
-			if(evictSize > 0)
+			if(evictSize > 0 && 
+				region instanceof OccupancyIndexedRegion && 
+				((OccupancyIndexedRegion)region).isOccupancyIndexAvailable())
+			{
+				// the region keeps an index of its groups by last access, no need to visit them all
+				evictionCandidates.addAll( ((OccupancyIndexedRegion)region).getEvictionCandidates(evictSize) );
+			}
+			else if(evictSize > 0)
 			{
 				// scan leaf nodes first !!!
 				// the group visitor does not provide ancestry information
@@ -996,7 +996,7 @@ implements Cache
 	 * @param cache
 	 * @throws OpenDataException 
 	 */
-	private OpenMBeanAttributeInfo[] createMBeanAttributeInfo() 
+	protected OpenMBeanAttributeInfo[] createMBeanAttributeInfo() 
 	throws OpenDataException
 	{
 		List<OpenMBeanAttributeInfo> attributes = new ArrayList<OpenMBeanAttributeInfo>();
@@ -1090,7 +1090,7 @@ implements Cache
 	 * @param cache 
 	 *
 	 */
-	private OpenMBeanOperationInfo[] createMBeanOperationInfo()
+	protected OpenMBeanOperationInfo[] createMBeanOperationInfo()
 	{
 		List<OpenMBeanOperationInfo> operations = new ArrayList<OpenMBeanOperationInfo>();
 
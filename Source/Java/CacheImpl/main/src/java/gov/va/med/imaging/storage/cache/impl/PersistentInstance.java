@@ -21,13 +21,19 @@ import gov.va.med.imaging.storage.cache.exceptions.SimultaneousWriteException;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.Checksum;
 
 import org.apache.log4j.Logger;
@@ -46,6 +52,21 @@ import org.apache.log4j.Logger;
  * 
  * If the writable channel is open then opening a readable channel will wait 
  * a limited time for the writable channel to close.
+ * 
+ * The channels are managed by an atomic state machine, ABSENT -> WRITING -> COMPLETE -> EVICTING,
+ * with a count of the open readable channels.  Opening and closing a readable channel of a
+ * COMPLETE instance is a compare-and-set, concurrent readers never wait for each other.  Only
+ * threads that must wait for a state change (writers, readers of an instance being written, 
+ * deletes of an instance being written) use a monitor.  A polite delete of an instance with 
+ * open readable channels marks it EVICTING and the last reader to close removes it.
+ * 
+ * The exception to 3.) is a tailing readable channel, which may be opened while 
+ * the writable channel is open and reads the content as it is written.  When the 
+ * writable channel closes without error the tailing readable channels become 
+ * ordinary readable channels.
+ * 
+ * Registered InstanceLifecycleListener are notified when the persistent copy is created,
+ * read, completely written (UPDATE) and removed (DELETE).
  */
 public abstract class PersistentInstance 
 implements Instance, Comparable<Instance>, InstanceByteChannelListener
@@ -56,6 +77,7 @@ implements Instance, Comparable<Instance>, InstanceByteChannelListener
 	public final static int defaultSecondsRemoveWaitsForReadCompletion = 5;		// in seconds !
 	
 	public final static boolean defaultSetModificationTimeOnRead = true;
+	public final static long tailingReadTimeoutMilliseconds = 50L;
 	
 	protected Logger log = Logger.getLogger(this.getClass());
 	
@@ -83,40 +105,64 @@ implements Instance, Comparable<Instance>, InstanceByteChannelListener
 	protected abstract void removeChecksumPersistent() 
 	throws PersistenceIOException;
 
+	/**
+	 * The states of an instance, as seen by its channels.
+	 * ABSENT - no persistent copy is known to exist, the first reader checks the persistent storage
+	 * WRITING - the writable channel is open, only tailing readers may open channels
+	 * COMPLETE - the persistent copy is completely written, any number of readers may open channels
+	 * EVICTING - the persistent copy is to be removed when the last reader closes, no new channels may open
+	 */
+	public enum InstanceState
+	{
+		ABSENT, WRITING, COMPLETE, EVICTING
+	}
+	
 	// by default an instance is always valid 
 	// it becomes invalid if it fails to be written completely after which it should cease to exist
 	// BUT, it takes some time to clean up after the failed write, that is the time frame that the
 	// valid flag is false
-	private boolean valid = true;
+	private volatile boolean valid = true;
 	
-	// channelSemaphore is a semaphore that protects against opening a channel while
-	// another thread is in the process of acquiring or closing a channel.
-	// The existence of writableChannel and the size of readableChannels acts as a 
-	// semaphore to determine whether a channel may be created.
-	// The channelSemaphore just protects against simultaneous changes to readableChannels
-	// and writableChannel.
-	// NOTE: while this operates similarly to a ReadWriteLock, that is not applicable because 
-	// the Thread closing a channel may not be the same Thread that opened it.  Specifically,
-	// a read or write timeout (determined by a monitor thread) may close the channel.
-	private Object channelSemaphore = new Object();
-
-	// Set to true when a thread is trying to acquire a read channel.
-	// Prohibits new read channels from being created until the writing
-	// thread acquires the write channel (after which the read channels 
-	// have to wait for writing thread to close the write channel
-	// This value must not be set outside of a channelSemaphore synchronized
-	// block.
-	private boolean delayReadChannelRequests = false;
+	// The state and the number of open readable channels (tailing readers included) are 
+	// packed into one word so that both are changed by a single compare-and-set.  Readers 
+	// of a COMPLETE instance only ever increment and decrement the count, they never 
+	// contend for a lock.
+	// NOTE: a lock does not work here because the Thread closing a channel may not be the 
+	// same Thread that opened it.  Specifically, a read or write timeout (determined by a 
+	// monitor thread) may close the channel.
+	private final static int READER_MASK = 0x00FFFFFF;
+	private final static int STATE_SHIFT = 24;
+	private final static InstanceState[] STATES = InstanceState.values();
+	private final AtomicInteger stateAndReaders = new AtomicInteger(pack(InstanceState.ABSENT, 0));
+	
+	// the number of threads waiting to open the writable channel, new readable channels
+	// are held while a writer is waiting so that a stream of readers cannot starve it
+	private final AtomicInteger pendingWriters = new AtomicInteger();
+	
+	// threads that must wait for a state change (writers, readers of an instance being written, 
+	// deletes) wait on the stateMonitor, the threads changing the state only take the monitor 
+	// when someone is waiting
+	private final Object stateMonitor = new Object();
+	private final AtomicInteger stateWaiters = new AtomicInteger();
+	
+	// tailing readers at the end of the content written so far wait on the tailMonitor, the
+	// writable channel notifies them after each write and the state change notifies them on close
+	private final Object tailMonitor = new Object();
+	private final AtomicInteger tailWaiters = new AtomicInteger();
+	private final AtomicLong writeSequence = new AtomicLong();
 
-	// each Instance may have one writable channel open at a time
-	// This value must not be set outside of a channelSemaphore synchronized
-	// block.
-	private InstanceWritableByteChannel writableChannel = null;
+	// each Instance may have one writable channel open at a time, set only by the thread
+	// that moved the instance to WRITING
+	private volatile InstanceWritableByteChannel writableChannel = null;
 	
 	// an Instance may have multiple readable channels open simultaneously
-	// This value must not be set outside of a channelSemaphore synchronized
-	// block.
-	private Set<InstanceReadableByteChannel> readableChannels = new HashSet<InstanceReadableByteChannel>();
+	private final Set<InstanceReadableByteChannel> readableChannels = 
+		Collections.newSetFromMap(new ConcurrentHashMap<InstanceReadableByteChannel, Boolean>());
+	
+	// readable channels opened while the writable channel is open, these are moved
+	// to readableChannels when the writable channel closes without error
+	private final Set<InstanceReadableByteChannel> tailingReadableChannels = 
+		Collections.newSetFromMap(new ConcurrentHashMap<InstanceReadableByteChannel, Boolean>());
 	
 	// =============================================================================================================
 	
@@ -280,6 +326,146 @@ implements Instance, Comparable<Instance>, InstanceByteChannelListener
 	protected abstract void removePersistent()
 	throws PersistenceIOException;
 	
+	// =================================================================================================================================
+	// State
+	// =================================================================================================================================
+	private static int pack(InstanceState state, int readers)
+	{
+		return (state.ordinal() << STATE_SHIFT) | readers;
+	}
+	
+	private static InstanceState stateOf(int packed)
+	{
+		return STATES[packed >>> STATE_SHIFT];
+	}
+	
+	private static int readersOf(int packed)
+	{
+		return packed & READER_MASK;
+	}
+	
+	/**
+	 * The current state of the instance, ABSENT until a channel has been requested.
+	 */
+	public InstanceState getState()
+	{
+		return stateOf(stateAndReaders.get());
+	}
+	
+	/**
+	 * The number of open readable channels, tailing readers included.
+	 */
+	public int getOpenReaderCount()
+	{
+		return readersOf(stateAndReaders.get());
+	}
+	
+	/**
+	 * Move from the expected state to the new state, keeping the reader count.
+	 * 
+	 * @return true if the instance was in the expected state
+	 */
+	private boolean transition(InstanceState expected, InstanceState state)
+	{
+		for(;;)
+		{
+			int current = stateAndReaders.get();
+			if(stateOf(current) != expected)
+				return false;
+			if( stateAndReaders.compareAndSet(current, pack(state, readersOf(current))) )
+			{
+				notifyStateWaiters();
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * Count a reader out.  The last reader out of an EVICTING instance removes the
+	 * persistent copy.
+	 */
+	private void releaseReader()
+	{
+		for(;;)
+		{
+			int current = stateAndReaders.get();
+			int readers = readersOf(current);
+			if(readers == 0)
+			{
+				log.warn(getName() + " released more readers than were acquired.  This is an error and should never be seen.");
+				return;
+			}
+			if( stateAndReaders.compareAndSet(current, current - 1) )
+			{
+				if(readers == 1)
+				{
+					if(stateOf(current) == InstanceState.EVICTING)
+						removeEvictedPersistent();
+					else
+						notifyStateWaiters();
+				}
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Wake the threads waiting for a state change, if there are any.
+	 */
+	private void notifyStateWaiters()
+	{
+		if(stateWaiters.get() > 0)
+			synchronized(stateMonitor)
+			{
+				stateMonitor.notifyAll();
+			}
+		notifyTailWaiters();
+	}
+	
+	/**
+	 * Wake the tailing readers waiting for more content, if there are any.
+	 */
+	private void notifyTailWaiters()
+	{
+		if(tailWaiters.get() > 0)
+			synchronized(tailMonitor)
+			{
+				tailMonitor.notifyAll();
+			}
+	}
+	
+	/**
+	 * Wait until the state word or the number of pending writers changes from the 
+	 * given values or until the deadline.
+	 * 
+	 * @return false if the deadline has passed
+	 * @throws InterruptedException
+	 */
+	private boolean awaitStateChange(int observed, int observedPendingWriters, long deadline) 
+	throws InterruptedException
+	{
+		long remaining = deadline - System.currentTimeMillis();
+		if(remaining <= 0L)
+			return false;
+		
+		synchronized(stateMonitor)
+		{
+			stateWaiters.incrementAndGet();
+			try
+			{
+				// the waiter count is incremented before the state is re-checked so a
+				// state change after the check is guaranteed to notify us
+				if(stateAndReaders.get() == observed && pendingWriters.get() == observedPendingWriters)
+					stateMonitor.wait(remaining);
+			}
+			finally
+			{
+				stateWaiters.decrementAndGet();
+			}
+		}
+		return true;
+	}
+	
 	// =================================================================================================================================
 	public InstanceWritableByteChannel getWritableChannel()
 	throws CacheException
@@ -296,120 +482,108 @@ implements Instance, Comparable<Instance>, InstanceByteChannelListener
 	/**
 	 * Get a writable channel if none exists and if no readable channels exist, 
 	 * else throw an exception.
-	 * If the wait parameter is true then wait for the writable readable channels
+	 * If the wait parameter is true then wait for the writable and readable channels
 	 * to close, else return null immediately.
 	 */
 	private InstanceWritableByteChannel getWritableChannel(boolean wait)
 	throws CacheException
 	{
-		log.debug("getWritableChannel() - acquiring channelSemaphore");
+		log.debug("getWritableChannel() - acquiring WRITING state for instance '" + getName() + "'");
+		
+		InstanceState previous = null;
+		long deadline = System.currentTimeMillis() + Math.max(getSecondsWriteWaitsForReadCompletion(), getSecondsReadWaitsForWriteCompletion()) * 1000L;
 		
-		// protect against changes to the channels while we're creating our channel
-		synchronized(channelSemaphore)
+		// hold new readable channels while we wait, else a stream of readers could keep us waiting forever
+		if(wait)
+			pendingWriters.incrementAndGet();
+		try
 		{
-			log.debug("getWritableChannel() - acquired channelSemaphore");
-			
-			// set delayReadChannelRequests to true so that requests for new
-			// read channels will be held until the write channel has been
-			// acquired (after which the read channels will be held waiting for
-			// the write channel to close
-			delayReadChannelRequests = true;
-			log.debug("getWritableChannel() - delayReadChannelRequests set");
-
-			try
+			while(previous == null)
 			{
-				// wait for all readable channels to complete
-				if(wait)
-					waitForReadableChannels();
-	
-				// we've waited for any writable channel to close, if we get here it should be null
-				// if not then throw an exception
-				if(writableChannel != null)
+				int pending = pendingWriters.get();
+				int current = stateAndReaders.get();
+				InstanceState state = stateOf(current);
+				
+				if(state == InstanceState.WRITING || state == InstanceState.EVICTING || readersOf(current) > 0)
 				{
-					if(wait)
+					if(!wait)
 					{
-						log.debug("getWritableChannel() - writable channel already exists and write did not complete in alloted time");
-						throw new SimultaneousWriteException(this.getName());
-					}
-					else
-					{
-						log.debug("getWritableChannel() - writable channel exists and this call is NOT waiting, returning null");
+						log.debug("getWritableChannel(wait = false) - channels are open on instance '" + getName() + "', returning null");
 						return null;
 					}
-				}
-				
-				// if there are currently open readable channels then throw an exception
-				if(readableChannels.size() > 0)
-				{
-					if(wait)
+					
+					boolean waited;
+					try
 					{
-						log.debug("getWritableChannel() - readable channels exist after wait, instance inaccessible as long as they exist");
-						throw new InstanceInaccessibleException(this.getName());
+						waited = awaitStateChange(current, pending, deadline);
 					}
-					else
+					catch (InterruptedException iX)
 					{
-						log.debug("getWritableChannel(wait = false) - readable channels exist, instance inaccessible as long as they exist, returning null");
-						return null;
+						throw new InstanceInaccessibleException("Interrupted when waiting for write lock for Instance '" + getName() + "'", iX);
 					}
-				}
-				
-				// if the file does not exist then create it
-				if(! isPersistent())
-				{
-					log.debug("FileSystemCacheInstance" + this.hashCode() + " instance (" + getName() + ") does not exist, creating ...");
-					try
-					{
-						createPersistent();
-					} 
-					catch (PersistenceIOException e)
+					if(!waited)
 					{
-						// if we cannot create the persistent instance we cannot go on
-						log.error(e);
-						throw new InstanceInitializationException(getName());
+						if(state == InstanceState.WRITING)
+						{
+							log.debug("getWritableChannel() - writable channel already exists and write did not complete in alloted time");
+							throw new SimultaneousWriteException(this.getName());
+						}
+						log.debug("getWritableChannel() - readable channels exist after wait, instance inaccessible as long as they exist");
+						throw new InstanceInaccessibleException(this.getName());
 					}
-					log.debug("FileSystemCacheInstance" + this.hashCode() + " instance (" + getName() + ") created.");
 				}
-				
-				// as of here we know that the file exists and that no one else is writing to
-				// it or reading from it, we can safely create the writable channel
+				else if( stateAndReaders.compareAndSet(current, pack(InstanceState.WRITING, 0)) )
+					previous = state;
+			}
+		}
+		finally
+		{
+			// readers held back by this writer may go ahead now
+			if(wait && pendingWriters.decrementAndGet() == 0)
+				notifyStateWaiters();
+		}
+		
+		// as of here we own the WRITING state, no one else is writing to it or reading from it
+		try
+		{
+			// if the file does not exist then create it
+			if(! isPersistent())
+			{
+				log.debug("FileSystemCacheInstance" + this.hashCode() + " instance (" + getName() + ") does not exist, creating ...");
 				try
 				{
-					log.debug("FileSystemCacheInstance" + this.hashCode() + " instance (" + getName() + ") acquiring writable channel...");
-					writableChannel = createInstanceWritableByteChannel();
-					log.debug("FileSystemCacheInstance" + this.hashCode() + " instance (" + getName() + ") acquired writable channel.");
-					
-					//setLastModified( System.currentTimeMillis() );
-					log.debug("FileSystemCacheInstance" + this.hashCode() + " instance (" + getName() + ") last modified date set.");
+					createPersistent();
 				} 
 				catch (PersistenceIOException e)
 				{
-					if(writableChannel != null)
-						try{writableChannel.error();}
-						catch(Exception x){}
-					writableChannel = null;
+					// if we cannot create the persistent instance we cannot go on
 					log.error(e);
-					throw new InstanceInaccessibleException(e);
+					throw new InstanceInitializationException(getName());
 				}
+				log.debug("FileSystemCacheInstance" + this.hashCode() + " instance (" + getName() + ") created.");
+				notifyListeners(LifecycleEvent.CREATE);
+			}
+			
+			try
+			{
+				log.debug("FileSystemCacheInstance" + this.hashCode() + " instance (" + getName() + ") acquiring writable channel...");
+				writableChannel = createInstanceWritableByteChannel();
+				log.debug("FileSystemCacheInstance" + this.hashCode() + " instance (" + getName() + ") acquired writable channel.");
 			} 
-			// this is real useful for debug but must allow exceptions to pass through for real
-			//catch(Throwable x)
-			//{
-			//	x.printStackTrace();
-			//}
-			finally
+			catch (PersistenceIOException e)
 			{
-				// make absolutely sure that we reset this, else
-				// no one will be able to read the instance
-				delayReadChannelRequests = false;
-				log.debug("getWritableChannel() - delayReadChannelRequests reset");
-				
-				// notify any threads that may be waiting for the channel semaphore 
-				channelSemaphore.notifyAll();
+				log.error(e);
+				throw new InstanceInaccessibleException(e);
 			}
-			
-			log.debug("getWritableChannel() - releasing channelSemaphore");
 		}
-		return writableChannel;
+		finally
+		{
+			// give the state back if the channel could not be created
+			if(writableChannel == null)
+				transition(InstanceState.WRITING, InstanceState.ABSENT);
+		}
+		
+		return new TailSignallingWritableByteChannel(writableChannel);
 	}
 
 	/**
@@ -433,185 +607,233 @@ implements Instance, Comparable<Instance>, InstanceByteChannelListener
 		return getReadableChannel(false);
 	}
 	
+	/**
+	 * Readers of a COMPLETE instance are counted in with a compare-and-set and do not
+	 * take any lock.  Readers of an instance that is being written wait for the write
+	 * to complete.
+	 */
 	private InstanceReadableByteChannel getReadableChannel(boolean wait)
 	throws CacheException
 	{
-		InstanceReadableByteChannel result = null;
-		// first, block any changes to the write channel or readChannels
-		// from other threads
-		log.debug("getReadableChannel() - acquiring channelSemaphore for '" + this.getName() + "'");
-		synchronized(channelSemaphore)
+		// this is a quick check for validity but it is NOT a reliable check
+		// because the write channel may be in process of writing, which may fail, which may mark the Instance as
+		// invalid and remove the file.
+		if( ! isValid() )
 		{
-			// this is a quick check for persistence and validity but it is NOT a reliable check
-			// because the write channel may be in process of writing, which may fail, which may mark the Instance as
-			// invalid and remove the file.
-			if( ! isValid() )
-			{
-				log.warn("Instance is not valid, operation should be retried for instance '" + this.getName() + "'");
-				throw new InstanceInaccessibleException("Instance is marked invalid (write failed).  Wait and try again.");
-			}
-			
-			log.debug("getReadableChannel() - acquired channelSemaphore for instance '" + this.getName() + "'");
+			log.warn("Instance is not valid, operation should be retried for instance '" + this.getName() + "'");
+			throw new InstanceInaccessibleException("Instance is marked invalid (write failed).  Wait and try again.");
+		}
+		
+		long startWait = System.currentTimeMillis();
+		long deadline = startWait + getSecondsReadWaitsForWriteCompletion() * 1000L;
+		boolean counted = false;
+		while(!counted)
+		{
+			int pending = pendingWriters.get();
+			int current = stateAndReaders.get();
+			InstanceState state = stateOf(current);
 			
-			// wait for:
-			// 1.) the writable channel to open if such a request has been made  
-			// 2.) an open writable channel to close
-			long delay = 0L;
-			if(wait)
-				delay = waitForWritableChannel();
+			if(state == InstanceState.COMPLETE && pending == 0)
+				counted = stateAndReaders.compareAndSet(current, current + 1);
 			
-			// if the writable channel is not null (i.e. it exists) then we can't do a read and we've already
-			// waited for the defined time.  Error out and let the client decide if it wants to retry.
-			if(writableChannel != null)
+			else if(state == InstanceState.ABSENT)
 			{
-				if(wait)
+				// the persistent copy may have been written before this instance was created
+				if(!isPersistent())
 				{
-					log.debug("getReadableChannel(wait = true) - waited " + delay + " milliseconds, but writable channel still exists, instance '" + this.getName() + "' is inaccessible.");
-					throw new InstanceInaccessibleException( getName(), delay, getSecondsReadWaitsForWriteCompletion() );
-				}
-				else
-				{
-					log.debug("getReadableChannel(wait = false), writable channel exists, instance '" + this.getName() + "' is inaccessible.");
-					return null;
+					log.warn("getReadableChannel() - persistent copy of Instance '" + this.getName() + "' does not exist.");
+					log.warn( StackTraceAnalyzer.currentStackAnalyzer().toString() );
+					throw new InstanceUnavailableException(getName(), false);
 				}
+				stateAndReaders.compareAndSet(current, pack(InstanceState.COMPLETE, readersOf(current)));
 			}
-			// as of here we know that the write channel does not exist and it can't be created until
-			// we release the write channel semaphore (i.e. we can count on its state or non-existence).
 			
-			// if the instance state has become invalid (write failed) or if the file doesn't exist then error out.
-			// NOTE: this check MUST be done after we've waited for the write, else it may not exist
-			// because it is just now being written to.
-			if(!isPersistent())
+			else if(state == InstanceState.EVICTING)
 			{
-				log.warn("getReadableChannel() - persistent copy of Instance '" + this.getName() + "' does not exist.");
-				log.warn( StackTraceAnalyzer.currentStackAnalyzer().toString() );
+				log.debug("getReadableChannel() - instance '" + this.getName() + "' is being evicted.");
 				throw new InstanceUnavailableException(getName(), false);
 			}
-			if(!isValid())
+			
+			// WRITING, or a writer is waiting for the readers to close
+			else if(!wait)
 			{
-				log.warn("getReadableChannel() - persistent copy of Instance '" + this.getName() + "' does not exist for instance.");
-				log.warn( StackTraceAnalyzer.currentStackAnalyzer().toString() );
-				throw new InstanceUnavailableException(getName(), true);
+				log.debug("getReadableChannel(wait = false), writable channel exists, instance '" + this.getName() + "' is inaccessible.");
+				return null;
 			}
-			
-			try
+			else
 			{
-				result = createInstanceReadableByteChannel();
-				readableChannels.add(result);
-				if(isSetModificationTimeOnRead())
-					setLastModified(System.currentTimeMillis());
-			} 
-			catch (PersistenceIOException e)
+				boolean waited;
+				try
+				{
+					waited = awaitStateChange(current, pending, deadline);
+				}
+				catch (InterruptedException iX)
+				{
+					String message = "Interrupted when waiting for read lock for Instance '" + getName() + "'";
+					log.warn(message);
+					throw new InstanceInaccessibleException(message, iX);
+				}
+				if(!waited)
+				{
+					long delay = System.currentTimeMillis() - startWait;
+					log.debug("getReadableChannel(wait = true) - waited " + delay + " milliseconds, but writable channel still exists, instance '" + this.getName() + "' is inaccessible.");
+					throw new InstanceInaccessibleException( getName(), delay, getSecondsReadWaitsForWriteCompletion() );
+				}
+			}
+		}
+		// as of here we are counted as a reader, the instance cannot be written or removed until we are counted out
+		
+		InstanceReadableByteChannel result = null;
+		try
+		{
+			if(!isPersistent())
 			{
-				String message = "Unable to create readable byte channel on instance '" + getName() + "'." + "Exception is :" + e.getMessage();
-				// occassionally we'll get an IOException (Access is denied) when another thread has just notifies us and we were waiting
-				// for a read.  It seems that the file does not get genuinely closed, locks released, etc. until sometime after the code that
-				// should do so
-				log.error(message);
-				throw new InstanceInaccessibleException(message);
+				// removed outside of this instance, the next reader will find it ABSENT
+				transition(InstanceState.COMPLETE, InstanceState.ABSENT);
+				log.warn("getReadableChannel() - persistent copy of Instance '" + this.getName() + "' does not exist.");
+				throw new InstanceUnavailableException(getName(), false);
 			}
 			
-			log.debug("getReadableChannel() - releasing channelSemaphore for instance '" + this.getName() + "'");
-			
-			// notify any threads that may be waiting for the channel semaphore 
-			channelSemaphore.notifyAll();
-		}  // release the write channel semaphore here, we've safely added ourselves to the list of readable
-		   // channels so the write channel cannot write while this channel is open
+			result = createInstanceReadableByteChannel();
+			readableChannels.add(result);
+		} 
+		catch (PersistenceIOException e)
+		{
+			String message = "Unable to create readable byte channel on instance '" + getName() + "'." + "Exception is :" + e.getMessage();
+			// occassionally we'll get an IOException (Access is denied) when another thread has just notifies us and we were waiting
+			// for a read.  It seems that the file does not get genuinely closed, locks released, etc. until sometime after the code that
+			// should do so
+			log.error(message);
+			throw new InstanceInaccessibleException(message);
+		}
+		finally
+		{
+			if(result == null)
+				releaseReader();
+		}
+		
+		recordRead();
 		
 		return result;
 	}
 	
 	/**
-	 * The channelSemaphore lock MUST be acquired before calling this
-	 * method (i.e. synchronized(channelSemaphore) )
-	 * 
-	 * @throws InstanceInaccessibleException
+	 * Record a read of the content that was served without a readable channel of this
+	 * instance, e.g. from a copy held in memory, so that eviction sees the instance as 
+	 * used just as it would after a read.  Nothing is recorded unless the instance is complete.
 	 */
-	private long waitForWritableChannel() 
-	throws InstanceInaccessibleException, IllegalMonitorStateException
+	public void touch()
 	{
-		// check the status of the write channel
-		long startWait = System.currentTimeMillis();
-		long now = startWait;
+		if( !isValid() || stateOf(stateAndReaders.get()) != InstanceState.COMPLETE )
+			return;
+		recordRead();
+	}
+	
+	private void recordRead()
+	{
+		try
+		{
+			if(isSetModificationTimeOnRead())
+				setLastModified(System.currentTimeMillis());
+		}
+		catch (PersistenceIOException e)
+		{
+			log.warn("Unable to set the last modified time of instance '" + getName() + "'.", e);
+		}
+		notifyListeners(LifecycleEvent.READ);
+	}
+	
+	/**
+	 * Get a readable channel that follows the content of the writable channel as it is written.
+	 * If no writable channel is open then this is the same as getReadableChannel().
+	 */
+	public InstanceReadableByteChannel getTailingReadableChannel()
+	throws CacheException
+	{
+		for(;;)
+		{
+			int current = stateAndReaders.get();
+			if(stateOf(current) != InstanceState.WRITING)
+				return getReadableChannel(true);
+			if( stateAndReaders.compareAndSet(current, current + 1) )
+				break;
+		}
 		
-		// if the writable channel is open then
-		// if secondsReadWaitsForWriteCompletion
-		// > 0 then wait that many seconds for the write to complete
-		// <= 0 do not wait for the write to complete
-		while(
-				(writableChannel != null || delayReadChannelRequests) &&
-				(getSecondsReadWaitsForWriteCompletion() > 0 &&
-				 now < (startWait + (getSecondsReadWaitsForWriteCompletion() * 1000)) ) 
-		)
+		InstanceReadableByteChannel result = null;
+		try
 		{
-			// if the writable channel exists then we wait for
-			// some defined period for it to be released.  A timeout
-			// means the instance is in the cache but not currently accessible.
-			try
-			{
-				log.debug("getReadableChannel() - waiting for channelSemaphore for instance '" + this.getName() + "'");
-				// the wait() releases the channelSemaphore, hence no deadlock
-				channelSemaphore.wait(getSecondsReadWaitsForWriteCompletion() * 1000);
-			}
-			catch (InterruptedException iX)
-			{
-				String message = "Interrupted when waiting for read lock for Instance '" + getName() + "'";
-				log.warn(message);
-				throw new InstanceInaccessibleException(message, iX);
-			}
-			
-			now = System.currentTimeMillis();
+			result = createInstanceReadableByteChannel();
+			tailingReadableChannels.add(result);
+		} 
+		catch (PersistenceIOException e)
+		{
+			String message = "Unable to create tailing readable byte channel on instance '" + getName() + "'." + "Exception is :" + e.getMessage();
+			log.error(message);
+			throw new InstanceInaccessibleException(message);
+		}
+		finally
+		{
+			if(result == null)
+				releaseReader();
 		}
 		
-		return now - startWait;
+		return new TailingInstanceReadableByteChannel(this, result);
 	}
 	
 	/**
-	 * The channelSemaphore lock MUST be acquired before calling this
-	 * method (i.e. synchronized(channelSemaphore) )
-	 * 
-	 * Returns the total time waited.
+	 * The number of writes made to the writable channel, a tailing readable channel takes 
+	 * this before it reads so that a write made after its read is not waited for.
+	 */
+	long getWriteSequence()
+	{
+		return writeSequence.get();
+	}
+	
+	/**
+	 * Called by a tailing readable channel when it has read all of the content written so far.
+	 * Waits until the writable channel writes more content or closes, the wait is limited to
+	 * tailingReadTimeoutMilliseconds in case a signal is missed.
 	 * 
-	 * @throws InstanceInaccessibleException
+	 * @param observedWriteSequence the write sequence taken before the last read 
+	 * @return true if the writable channel is still open (more content may be written), 
+	 * false if the writable channel has closed without error (the content is complete)
+	 * @throws IOException if the writable channel closed with an error
 	 */
-	private long waitForReadableChannels() 
-	throws InstanceInaccessibleException, IllegalMonitorStateException
+	boolean awaitTailedWrite(long observedWriteSequence)
+	throws IOException
 	{
-		// check the status of the write channel
-		long startWait = System.currentTimeMillis();
-		long now = startWait;
-		
-		// if any readable channels are open then
-		// if secondsReadWaitsForWriteCompletion
-		// > 0 then wait that many seconds for the write to complete
-		// <= 0 do not wait for the write to complete
-		while(
-				readableChannels.size() > 0 &&
-				(getSecondsWriteWaitsForReadCompletion() > 0 &&
-				 now < (startWait + (getSecondsWriteWaitsForReadCompletion() * 1000)) ) 
-		)
+		int current = stateAndReaders.get();
+		if(stateOf(current) == InstanceState.WRITING)
 		{
-			// if readable channels exist then we wait for
-			// some defined period for it to be released.  A timeout
-			// means the instance is in the cache but not currently accessible.
 			try
 			{
-				log.debug("waitForReadableChannels() - waiting for channelSemaphore for instance '" + this.getName() + "'");
-				// the wait() releases the channelSemaphore, hence no deadlock
-				channelSemaphore.wait(getSecondsWriteWaitsForReadCompletion() * 1000);
+				synchronized(tailMonitor)
+				{
+					tailWaiters.incrementAndGet();
+					try
+					{
+						// as with the state waiters, the count is incremented before the re-check 
+						// so a write or a close after the check is guaranteed to notify us
+						if(stateAndReaders.get() == current && writeSequence.get() == observedWriteSequence)
+							tailMonitor.wait(tailingReadTimeoutMilliseconds);
+					}
+					finally
+					{
+						tailWaiters.decrementAndGet();
+					}
+				}
 			}
 			catch (InterruptedException iX)
 			{
-				String message = "Interrupted when waiting for write lock for Instance '" + getName() + "'";
-				log.warn(message);
-				throw new InstanceInaccessibleException(message, iX);
+				throw new InterruptedIOException("Interrupted when tailing writable channel of instance '" + getName() + "'");
 			}
-			
-			now = System.currentTimeMillis();
 		}
-		
-		return now - startWait;
-	}	
+		if(getState() == InstanceState.WRITING)
+			return true;
+		if(!isValid())
+			throw new IOException("Writable channel of instance '" + getName() + "' was closed with an error, content is incomplete.");
+		return false;
+	}
 	
 	@Override
 	public void delete(boolean forceDelete) 
@@ -625,111 +847,82 @@ implements Instance, Comparable<Instance>, InstanceByteChannelListener
 	
 	/**
 	 * Remove the persistent copy of the instance.
-	 * If any channels are open then this will fail.
-	 * This method will either succeed or will throw an exception.
+	 * If the writable channel is open then this waits a limited time for it to close and fails
+	 * if it does not.  If readable channels are open then the instance is marked EVICTING, no 
+	 * new channels will be opened, the removal is deferred until the last reader closes and 
+	 * a SimultaneousWriteException is thrown to tell the caller that the instance still exists.
+	 * Otherwise this method will either succeed or will throw an exception.
 	 * @throws SimultaneousWriteException 
 	 * @throws PersistenceIOException 
 	 */
 	private void politeDelete() 
 	throws SimultaneousWriteException, PersistenceIOException
 	{
-		log.debug("remove() - acquiring channelSemaphore for instance '" + this.getName() + "'");
-		synchronized (channelSemaphore)
+		log.debug("remove() - acquiring EVICTING state for instance '" + this.getName() + "'");
+		long deadline = System.currentTimeMillis() + getSecondsReadWaitsForWriteCompletion() * 1000L;
+		for(;;)
 		{
-			log.debug("remove() - acquired channelSemaphore for instance '" + this.getName() + "'");
-			if(writableChannel != null)
+			int current = stateAndReaders.get();
+			InstanceState state = stateOf(current);
+			int readers = readersOf(current);
+			
+			if(state == InstanceState.EVICTING)
+			{
+				String message = getName() + ": attempt to remove an instance that is already being removed, " + readers + " readable channels are still open.";
+				log.debug(message);
+				throw new SimultaneousWriteException(message);
+			}
+			
+			if(state == InstanceState.WRITING)
 			{
 				String message = null;
-				try 
+				try
 				{
-					waitForWritableChannel();
-					if(writableChannel != null)
+					if( !awaitStateChange(current, pendingWriters.get(), deadline) )
 					{
 						String testClients = getOpenChannelClients("[[a-zA-Z_0-9]+\\.]*Test[a-zA-Z_0-9]*");
-
 						message = getName() 
-							+ ": attempt to remove with " 
-							+ readableChannels.size() 
-							+ " open writable channel for instance '" 
+							+ ": attempt to remove with an open writable channel for instance '" 
 							+ this.getName() 
 							+ "'. Waited without success."
 							+ (testClients != null ? testClients : "");
 					}
-				} 
-				catch (InstanceInaccessibleException e) 
+				}
+				catch (InterruptedException iX)
 				{
 					String testClients = getOpenChannelClients("[[a-zA-Z_0-9]+\\.]*Test[a-zA-Z_0-9]*");
-
 					message = getName() 
 						+ ": attempt to remove with an open writable channel for instance '" 
 						+ this.getName() 
 						+ "', interrupted while waiting. "
 						+ (testClients != null ? testClients : "");
 				}
-				
 				if(message != null)
 				{
 					log.debug(message);
 					throw new SimultaneousWriteException(message);
 				}
+				continue;
 			}
 			
-			if(readableChannels.size() > 0)
+			if( stateAndReaders.compareAndSet(current, pack(InstanceState.EVICTING, readers)) )
 			{
-				String message = null;
-				
-				try 
-				{
-					waitForReadableChannels();
-					
-					if(readableChannels.size() > 0)
-					{
-						String testClients = getOpenChannelClients("[[a-zA-Z_0-9]+\\.]*Test[a-zA-Z_0-9]*");
-
-						message = getName() 
-							+ ": attempt to remove with " 
-							+ readableChannels.size() 
-							+ " open readable channels for instance '" 
-							+ this.getName() 
-							+ "'. Waited without success."
-							+ (testClients != null ? testClients : "");
-					}
-				} 
-				catch (InstanceInaccessibleException e) 
+				if(readers == 0)
 				{
-					String testClients = getOpenChannelClients("[[a-zA-Z_0-9]+\\.]*Test[a-zA-Z_0-9]*");
-
-					message = getName() 
-						+ ": attempt to remove with " 
-						+ readableChannels.size() 
-						+ " open readable channels for instance '" 
-						+ this.getName() 
-						+ "', interrupted while waiting. "
-						+ (testClients != null ? testClients : "");
-				}
-
-				if(message != null)
-				{
-					log.debug(message);
-					throw new SimultaneousWriteException(message);
+					removeEvictedPersistent(true);
+					return;
 				}
+				
+				String message = getName() 
+					+ ": attempt to remove with " 
+					+ readers 
+					+ " open readable channels for instance '" 
+					+ this.getName() 
+					+ "', removal is deferred until the last of them closes.";
+				log.debug(message);
+				throw new SimultaneousWriteException(message);
 			}
-			try
-			{
-				removePersistent();
-			} 
-			catch (PersistenceIOException x)
-			{
-				log.error(x);
-				throw x;
-			}
-			log.debug("remove() - releasing channelSemaphore");
-			
-			// notify any threads that may be waiting for the channel semaphore 
-			channelSemaphore.notifyAll();
 		}
-		
-		return;
 	}
 	
 	/**
@@ -740,51 +933,108 @@ implements Instance, Comparable<Instance>, InstanceByteChannelListener
 	private void forciblyDelete() 
 	throws PersistenceIOException 
 	{
-		synchronized (channelSemaphore)
+		log.debug("forciblyDelete() - removing instance '" + this.getName() + "'");
+		InstanceWritableByteChannel writable = writableChannel;
+		if(writable != null)
 		{
-			log.debug("forciblyDelete() - acquired channelSemaphore for instance '" + this.getName() + "'");
-			if(writableChannel != null)
+			try 
 			{
-				try 
-				{
-					log.debug("forciblyDelete() - closing writable channel for instance '" + this.getName() + "'");
-					writableChannel.close();
-				} 
-				catch (IOException ioX) 
-				{
-					log.error(ioX);
-					throw new PersistenceIOException(ioX);
-				}
-			}
-			if(readableChannels.size() > 0)
+				log.debug("forciblyDelete() - closing writable channel for instance '" + this.getName() + "'");
+				writable.close();
+			} 
+			catch (IOException ioX) 
 			{
-				for(InstanceReadableByteChannel readableChannel : readableChannels)
-					try 
-					{
-						log.debug("forciblyDelete() - closing readable channel for instance '" + this.getName() + "'");
-						readableChannel.close();
-					} 
-					catch (IOException ioX) 
-					{
-						log.error(ioX);
-						throw new PersistenceIOException(ioX);
-					}
+				log.error(ioX);
+				throw new PersistenceIOException(ioX);
 			}
-			
-			try
+		}
+		
+		// no new channels may open from here on, a writer that got in after the close above is left to finish
+		int readers = -1;
+		while(readers < 0)
+		{
+			int current = stateAndReaders.get();
+			InstanceState state = stateOf(current);
+			if(state == InstanceState.WRITING)
+				throw new PersistenceIOException("Instance '" + getName() + "' was opened for writing while it was being forcibly deleted.");
+			if(state == InstanceState.EVICTING || stateAndReaders.compareAndSet(current, pack(InstanceState.EVICTING, readersOf(current))))
+				readers = readersOf(current);
+		}
+		
+		if(readers == 0)
+		{
+			removeEvictedPersistent(true);
+			return;
+		}
+		
+		// closing a channel removes it from the sets and counts it out, the last one out removes the persistent copy
+		List<InstanceReadableByteChannel> openReadableChannels = new ArrayList<InstanceReadableByteChannel>(readableChannels);
+		openReadableChannels.addAll(tailingReadableChannels);
+		for(InstanceReadableByteChannel readableChannel : openReadableChannels)
+			try 
 			{
-				log.debug("forciblyDelete() - removing persistence for instance '" + this.getName() + "'");
-				removePersistent();
-				log.debug("forciblyDelete() - removed persistence for instance '" + this.getName() + "'");
+				log.debug("forciblyDelete() - closing readable channel for instance '" + this.getName() + "'");
+				readableChannel.close();
 			} 
-			catch (PersistenceIOException x)
+			catch (IOException ioX) 
 			{
-				log.error(x);
-				throw x;
+				log.error(ioX);
+				throw new PersistenceIOException(ioX);
 			}
-			
-			// notify any threads that may be waiting for the channel semaphore 
-			channelSemaphore.notifyAll();
+		
+		try
+		{
+			if( isPersistent() )
+				throw new PersistenceIOException("Instance '" + getName() + "' still has open readable channels after being forcibly deleted.");
+		}
+		catch (PersistenceIOException x)
+		{
+			throw x;
+		}
+		catch (PersistenceException x)
+		{
+			throw new PersistenceIOException(x);
+		}
+	}
+	
+	/**
+	 * Remove the persistent copy of an EVICTING instance that has no open channels
+	 * and return the instance to ABSENT.  Must only be called by the thread that saw 
+	 * the instance become EVICTING with no readers.
+	 */
+	private void removeEvictedPersistent()
+	{
+		try
+		{
+			removeEvictedPersistent(false);
+		}
+		catch (PersistenceIOException x)
+		{
+			// not thrown when not propagating
+		}
+	}
+	
+	private void removeEvictedPersistent(boolean propagate) 
+	throws PersistenceIOException
+	{
+		try
+		{
+			if( isPersistent() )
+			{
+				log.debug("removing persistence for instance '" + this.getName() + "'");
+				removePersistent();
+				notifyListeners(LifecycleEvent.DELETE);
+			}
+		}
+		catch (PersistenceException x)
+		{
+			log.error(x);
+			if(propagate)
+				throw x instanceof PersistenceIOException ? (PersistenceIOException)x : new PersistenceIOException(x);
+		}
+		finally
+		{
+			transition(InstanceState.EVICTING, InstanceState.ABSENT);
 		}
 	}
 	
@@ -798,36 +1048,31 @@ implements Instance, Comparable<Instance>, InstanceByteChannelListener
 	{
 		StringBuilder sb = new StringBuilder();
 		
-		synchronized (channelSemaphore) 
+		StringBuilder readerSB = new StringBuilder();
+		for( InstanceReadableByteChannel channel : readableChannels )
 		{
-			StringBuilder readerSB = new StringBuilder();
-			for( InstanceReadableByteChannel channel : readableChannels )
-			{
-				StackTraceElement[] stackTrace = channel.getInstantiatingStackTrace();
-				StackTraceAnalyzer sta = new StackTraceAnalyzer( stackTrace );
-				StackTraceElement testCaller = sta.getFirstElementInClassPattern("[[a-zA-Z_0-9]+\\.]*Test[a-zA-Z_0-9]*");
-				if(readerSB.length() > 0)
-					readerSB.append(',');
-				readerSB.append( testCaller.getClassName() + "." + testCaller.getMethodName() );
-			}
+			StackTraceElement[] stackTrace = channel.getInstantiatingStackTrace();
+			StackTraceAnalyzer sta = new StackTraceAnalyzer( stackTrace );
+			StackTraceElement testCaller = sta.getFirstElementInClassPattern("[[a-zA-Z_0-9]+\\.]*Test[a-zA-Z_0-9]*");
 			if(readerSB.length() > 0)
-			{
-				sb.append("Readers: ");
-				sb.append(readerSB);
-			}
-			
-			if(writableChannel != null)
-			{
-				StackTraceElement[] stackTrace = writableChannel.getInstantiatingStackTrace();
-				StackTraceAnalyzer sta = new StackTraceAnalyzer( stackTrace );
-				StackTraceElement testCaller = sta.getFirstElementInClassPattern("[[a-zA-Z_0-9]+\\.]*Test[a-zA-Z_0-9]*");
-				
-				sb.append("Writer: ");
-				sb.append(testCaller.getClassName() + "." + testCaller.getMethodName());
-			}
+				readerSB.append(',');
+			readerSB.append( testCaller.getClassName() + "." + testCaller.getMethodName() );
+		}
+		if(readerSB.length() > 0)
+		{
+			sb.append("Readers: ");
+			sb.append(readerSB);
+		}
+		
+		InstanceWritableByteChannel writable = writableChannel;
+		if(writable != null)
+		{
+			StackTraceElement[] stackTrace = writable.getInstantiatingStackTrace();
+			StackTraceAnalyzer sta = new StackTraceAnalyzer( stackTrace );
+			StackTraceElement testCaller = sta.getFirstElementInClassPattern("[[a-zA-Z_0-9]+\\.]*Test[a-zA-Z_0-9]*");
 			
-			// notify any threads that may be waiting for the channel semaphore 
-			channelSemaphore.notifyAll();
+			sb.append("Writer: ");
+			sb.append(testCaller.getClassName() + "." + testCaller.getMethodName());
 		}
 		
 		return sb.toString();
@@ -889,80 +1134,80 @@ implements Instance, Comparable<Instance>, InstanceByteChannelListener
 	 */
 	private void writableChannelClosed(InstanceWritableByteChannel closedWritableChannel, boolean errorClose)
 	{
-		// We must acquire and hold the channelSemaphore here because there may be
-		// readable channels waiting for the write to complete.  When we release the semaphore
-		// then the readable channels will check to see if they can read the file.
-		log.debug("writableChannelClosed() - acquiring channelSemaphore");
-		synchronized(channelSemaphore)
+		// is this really our writable channel
+		// and did we previously think it was open
+		if( closedWritableChannel == null || !closedWritableChannel.equals(writableChannel) )
 		{
-			log.debug("writableChannelClosed() - acquired channelSemaphore");
-			
-			// is this really our writable channel
-			// and did we previously think it was open
-			if( closedWritableChannel != null && closedWritableChannel.equals(writableChannel) )
+			log.error(getName() + " was informed of a writable channel closure but it was not our channel.  This is a serious error and should never be seen.");
+			return;
+		}
+		
+		// the instance is valid if the close is not an error close
+		// else the instance is invalid and reads should fail
+		// note that a write may be retried if the instance is invalid
+		setValid(!errorClose);
+		
+		// save our checksum if this is a valid Instance
+		if(isValid())
+		{
+			// Sanity check, the file should exist at this time, if not we can't calc a checksum.
+			// Actually we got bigger problems than that, so log a big error
+			try
 			{
-				// the instance is valid if the close is not an error close
-				// else the instance is invalid and reads should fail
-				// note that a write may be retried if the instance is invalid
-				setValid(!errorClose);
-				
-				// save our checksum if this is a valid Instance
-				if(isValid())
+				if( isPersistent() )
 				{
-					// Sanity check, the file should exist at this time, if not we can't calc a checksum.
-					// Actually we got bigger problems than that, so log a big error
-					try
-					{
-						if( isPersistent() )
-						{
-							Checksum checksum = closedWritableChannel.getChecksum();
-							if(checksum != null)
-							{
-								ChecksumValue cv = new ChecksumValue(checksum.getClass().getSimpleName(), checksum.getValue());
-								log.info("Instance '" + this.getName() + "' checksum value is '" + cv.toString() + "'");
-								setChecksum(cv);
-							}
-						}
-						else
-							log.error("Instance '" + getName() + "' has been closed without error but is NOT PERSISTENT.");
-					} 
-					catch (PersistenceException x)
+					Checksum checksum = closedWritableChannel.getChecksum();
+					if(checksum != null)
 					{
-						log.error("Instance '" + getName() + "' has been closed without error but failed when determining filesystem persistence.");
+						ChecksumValue cv = new ChecksumValue(checksum.getClass().getSimpleName(), checksum.getValue());
+						log.info("Instance '" + this.getName() + "' checksum value is '" + cv.toString() + "'");
+						setChecksum(cv);
 					}
 				}
-				
-				writableChannel = null;
-				channelSemaphore.notifyAll();		// notify anyone waiting for the channel semaphore
-													// this should just be threads waiting to open a readable channel
-				log.debug("writableChannelClosed(), instance is " + (isValid() ? "" : "NOT") + " valid - notified all channelSemaphore waiters ");
-			}
-			else
+				else
+					log.error("Instance '" + getName() + "' has been closed without error but is NOT PERSISTENT.");
+			} 
+			catch (PersistenceException x)
 			{
-				log.error(getName() + " was informed of a writable channel closure but it was not our channel.  This is a serious error and should never be seen.");
+				log.error("Instance '" + getName() + "' has been closed without error but failed when determining filesystem persistence.");
 			}
-			
-			log.debug("writableChannelClosed() - releasing channelSemaphore");
 		}
+		
+		// a write that closed with an error has removed the persistent copy
+		notifyListeners(isValid() ? LifecycleEvent.UPDATE : LifecycleEvent.DELETE);
+		
+		// tailing readers of a completely written instance are now just readers,
+		// tailing readers of a failed write will get an IOException on their next read
+		if(isValid())
+		{
+			readableChannels.addAll(tailingReadableChannels);
+			tailingReadableChannels.removeAll(readableChannels);
+		}
+		
+		writableChannel = null;
+		
+		// a failed write may not have been able to remove the persistent copy while 
+		// tailing readers had it open, remove it once the last of them closes
+		for(;;)
+		{
+			int current = stateAndReaders.get();
+			int readers = readersOf(current);
+			InstanceState state = isValid() ? InstanceState.COMPLETE : readers > 0 ? InstanceState.EVICTING : InstanceState.ABSENT;
+			if( stateAndReaders.compareAndSet(current, pack(state, readers)) )
+				break;
+		}
+		notifyStateWaiters();
+		log.debug("writableChannelClosed(), instance is " + (isValid() ? "" : "NOT") + " valid - notified all state waiters ");
 	}
 
 	private void readableChannelClosed(InstanceReadableByteChannel closedReadableChannel)
 	{
-		log.debug("readableChannelClosed() - acquiring channelSemaphore");
-		synchronized(channelSemaphore)
-		{
-			log.debug("readableChannelClosed() - acquired channelSemaphore and removing read channel from open list.");
-			if( ! readableChannels.remove(closedReadableChannel) )
-				log.warn(getName() + " was informed of a readable channel closure but it was not our channel.  This is an error and should never be seen.");
-			log.debug("readableChannelClosed() - releasing channelSemaphore after removing read channel from open list.");
-			
-			channelSemaphore.notifyAll();		// notify anyone waiting for the channel semaphore, this probably not necessary
-												// because the threads waiting will timeout and wakeup anyway but this will be 
-												// a might quicker.
-		}
+		if( readableChannels.remove(closedReadableChannel) || tailingReadableChannels.remove(closedReadableChannel) )
+			releaseReader();
+		else
+			log.warn(getName() + " was informed of a readable channel closure but it was not our channel.  This is an error and should never be seen.");
 	}
 	
-	
 	// ===============================================================================================================
 	// Checksum persistence handling
 	// ===============================================================================================================
@@ -1049,7 +1294,7 @@ implements Instance, Comparable<Instance>, InstanceByteChannelListener
 	// ======================================================================================================
 	// Listener Management
 	// ======================================================================================================
-	private List<InstanceLifecycleListener> listeners = new ArrayList<InstanceLifecycleListener>();
+	private List<InstanceLifecycleListener> listeners = new CopyOnWriteArrayList<InstanceLifecycleListener>();
 	public void registerListener(InstanceLifecycleListener listener)
 	{
 		listeners.add(listener);
@@ -1062,8 +1307,78 @@ implements Instance, Comparable<Instance>, InstanceByteChannelListener
 	
 	protected void notifyListeners(LifecycleEvent event)
 	{
-		InstanceLifecycleEvent lifecycleEvent = new InstanceLifecycleEvent(event, getName());
+		InstanceLifecycleEvent lifecycleEvent = new InstanceLifecycleEvent(event, getName(), this);
 		for(InstanceLifecycleListener listener : listeners)
 			listener.notify(lifecycleEvent);
 	}
+	
+	// ======================================================================================================
+	// Tail Signalling
+	// ======================================================================================================
+	/**
+	 * The writable channel given to the writer, wakes the tailing readers after each write.
+	 * The wrapped channel is the channel registered as the writableChannel, close 
+	 * notifications from the channel factory are in terms of the wrapped channel. 
+	 */
+	private class TailSignallingWritableByteChannel
+	implements InstanceWritableByteChannel
+	{
+		private final InstanceWritableByteChannel wrappedChannel;
+		
+		TailSignallingWritableByteChannel(InstanceWritableByteChannel wrappedChannel)
+		{
+			this.wrappedChannel = wrappedChannel;
+		}
+
+		@Override
+		public int write(ByteBuffer src) 
+		throws IOException
+		{
+			int bytesWritten = wrappedChannel.write(src);
+			if(bytesWritten > 0)
+			{
+				writeSequence.incrementAndGet();
+				notifyTailWaiters();
+			}
+			return bytesWritten;
+		}
+
+		@Override
+		public void error() 
+		throws IOException
+		{
+			wrappedChannel.error();
+		}
+
+		@Override
+		public void close() 
+		throws IOException
+		{
+			wrappedChannel.close();
+		}
+
+		@Override
+		public boolean isOpen()
+		{
+			return wrappedChannel.isOpen();
+		}
+
+		@Override
+		public Checksum getChecksum()
+		{
+			return wrappedChannel.getChecksum();
+		}
+
+		@Override
+		public long getLastAccessedTime()
+		{
+			return wrappedChannel.getLastAccessedTime();
+		}
+
+		@Override
+		public StackTraceElement[] getInstantiatingStackTrace()
+		{
+			return wrappedChannel.getInstantiatingStackTrace();
+		}
+	}
 }
@@ -0,0 +1,119 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.storage.cache.impl;
+
+import gov.va.med.imaging.storage.cache.InstanceReadableByteChannel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * A readable byte channel over an Instance whose writable channel is open.
+ * Reads return the content as it is written, a read at the end of the content 
+ * written so far blocks until more content is written or the writable channel closes,
+ * the writable channel wakes the blocked read after each write.
+ * If the writable channel closes with an error the next read throws an IOException.
+ * 
+ * The wrapped channel is the channel registered with the PersistentInstance, all 
+ * close notifications are in terms of the wrapped channel.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TailingInstanceReadableByteChannel
+implements InstanceReadableByteChannel
+{
+	private final PersistentInstance instance;
+	private final InstanceReadableByteChannel wrappedChannel;
+	private boolean writeComplete = false;
+	
+	TailingInstanceReadableByteChannel(PersistentInstance instance, InstanceReadableByteChannel wrappedChannel)
+	{
+		this.instance = instance;
+		this.wrappedChannel = wrappedChannel;
+	}
+
+	@Override
+	public int read(ByteBuffer dst) 
+	throws IOException
+	{
+		while(true)
+		{
+			long writeSequence = instance.getWriteSequence();
+			int bytesRead = wrappedChannel.read(dst);
+			if(bytesRead > 0 || !dst.hasRemaining() || writeComplete)
+				return bytesRead;
+			
+			// at the end of what has been written so far, once the writer 
+			// has closed read once more to pick up the last of the content
+			writeComplete = !instance.awaitTailedWrite(writeSequence);
+		}
+	}
+
+	/**
+	 * If the write has not completed then just close, the content is not known to be bad.
+	 */
+	@Override
+	public void error() 
+	throws IOException
+	{
+		if(writeComplete)
+			wrappedChannel.error();
+		else
+			wrappedChannel.close();
+	}
+
+	@Override
+	public void close() 
+	throws IOException
+	{
+		wrappedChannel.close();
+	}
+
+	@Override
+	public boolean isOpen()
+	{
+		return wrappedChannel.isOpen();
+	}
+
+	@Override
+	public Checksum getChecksum()
+	{
+		return wrappedChannel.getChecksum();
+	}
+
+	@Override
+	public long getLastAccessedTime()
+	{
+		return wrappedChannel.getLastAccessedTime();
+	}
+
+	@Override
+	public StackTraceElement[] getInstantiatingStackTrace()
+	{
+		return wrappedChannel.getInstantiatingStackTrace();
+	}
+}
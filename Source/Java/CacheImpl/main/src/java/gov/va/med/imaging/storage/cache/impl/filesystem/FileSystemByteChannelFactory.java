@@ -13,6 +13,11 @@ import gov.va.med.imaging.storage.cache.memento.ByteChannelFactoryMemento;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.zip.Checksum;
 
 import javax.management.DynamicMBean;
@@ -24,6 +29,9 @@ import org.apache.log4j.Logger;
  *
  * A factory class that provides some management of instance file channels.
  * 
+ * If the factory is given the volumes of the cache then every channel holds an
+ * I/O permit of the volume it is on from the time it is opened until it is closed.
+ * 
  */
 public class FileSystemByteChannelFactory
 extends AbstractByteChannelFactory<File>
@@ -35,6 +43,12 @@ implements InstanceByteChannelFactory<File>, DynamicMBean, CacheLifecycleListene
 	public static final String defaultChecksumAlgorithmName = "Adler32";
 	
 	private Logger log = Logger.getLogger(this.getClass());
+	private volatile FileSystemVolumeSet volumes = null;
+	// the channels holding an I/O permit and the volume the permit is from
+	private final Map<Object, FileSystemVolume> ioPermitHolders = new ConcurrentHashMap<Object, FileSystemVolume>();
+	// channels are opened and registered holding the read lock, the write lock keeps channels 
+	// from being opened while a directory is checked for open channels and deleted
+	private final ReadWriteLock channelOpenLock = new ReentrantReadWriteLock();
 	
 	// ===================================================================================================================
 	// Factory Methods
@@ -77,6 +91,19 @@ implements InstanceByteChannelFactory<File>, DynamicMBean, CacheLifecycleListene
 		super(maxChannelOpenDuration, sweepTime, checksumClassname);
 	}
 
+	/**
+	 * The volumes whose I/O permits the channels take, null to open channels without permits.
+	 */
+	public FileSystemVolumeSet getVolumes()
+	{
+		return volumes;
+	}
+
+	public void setVolumes(FileSystemVolumeSet volumes)
+	{
+		this.volumes = volumes;
+	}
+
 
 	// ==================================================================================================
 	// InstanceByteChannelFactory Implementation
@@ -100,9 +127,29 @@ implements InstanceByteChannelFactory<File>, DynamicMBean, CacheLifecycleListene
 				log.error("Unable to create checksum instance of class '" + getChecksumClassname() + "'.");
 				checksum = null;
 			}
-			InstanceReadableByteChannelImpl readable = new InstanceReadableByteChannelImpl(this, instanceFile, checksum);
-			if(timeoutListener != null)
-				this.putReadableChannel(readable, timeoutListener);
+			FileSystemVolume volume = acquireIo(instanceFile);
+			InstanceReadableByteChannelImpl readable;
+			channelOpenLock.readLock().lock();
+			try
+			{
+				try
+				{
+					readable = new InstanceReadableByteChannelImpl(this, instanceFile, checksum);
+				}
+				catch (IOException ioX)
+				{
+					releaseIo(volume);
+					throw ioX;
+				}
+				if(volume != null)
+					ioPermitHolders.put(readable, volume);
+				if(timeoutListener != null)
+					this.putReadableChannel(readable, timeoutListener);
+			}
+			finally
+			{
+				channelOpenLock.readLock().unlock();
+			}
 				
 			return readable;
 		} 
@@ -131,10 +178,30 @@ implements InstanceByteChannelFactory<File>, DynamicMBean, CacheLifecycleListene
 				checksum = null;
 			}
 			
-			InstanceWritableByteChannelImpl writable = new InstanceWritableByteChannelImpl( this, instanceFile, checksum );
-
-			if(timeoutListener != null)
-				putWritableChannel(writable, timeoutListener);
+			FileSystemVolume volume = acquireIo(instanceFile);
+			InstanceWritableByteChannelImpl writable;
+			channelOpenLock.readLock().lock();
+			try
+			{
+				try
+				{
+					writable = new InstanceWritableByteChannelImpl( this, instanceFile, checksum );
+				}
+				catch (IOException ioX)
+				{
+					releaseIo(volume);
+					throw ioX;
+				}
+				if(volume != null)
+					ioPermitHolders.put(writable, volume);
+	
+				if(timeoutListener != null)
+					putWritableChannel(writable, timeoutListener);
+			}
+			finally
+			{
+				channelOpenLock.readLock().unlock();
+			}
 			
 			return writable;
 		} 
@@ -184,4 +251,78 @@ implements InstanceByteChannelFactory<File>, DynamicMBean, CacheLifecycleListene
 		return null;
 	}
 	
+	/**
+	 * @return true if a channel is open on any instance within the given directory
+	 */
+	public boolean isChannelOpen(File directory)
+	{
+		String directoryPath = directory.getAbsolutePath() + File.separator;
+		
+		synchronized(getOpenReadChannels())
+		{
+			for(InstanceReadableByteChannel channel: getOpenReadChannels().keySet() )
+				if( ((InstanceReadableByteChannelImpl)channel).getFile().getAbsolutePath().startsWith(directoryPath) )
+					return true;
+		}
+		synchronized(getOpenWriteChannels())
+		{
+			for(InstanceWritableByteChannel channel: getOpenWriteChannels().keySet() )
+				if( ((InstanceWritableByteChannelImpl)channel).getFile().getAbsolutePath().startsWith(directoryPath) )
+					return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * While the returned lock is held no channel can be opened, a directory that has no 
+	 * open channel (see isChannelOpen()) can then be deleted without a reader or writer 
+	 * opening one of its instances in between.
+	 */
+	Lock getChannelOpenExclusionLock()
+	{
+		return channelOpenLock.writeLock();
+	}
+	
+	// ==================================================================================================
+	// Volume I/O permits
+	// ==================================================================================================
+	/**
+	 * @return the volume a permit was acquired from, null if no permit is held
+	 */
+	private FileSystemVolume acquireIo(File instanceFile)
+	{
+		FileSystemVolumeSet volumes = this.volumes;
+		FileSystemVolume volume = volumes == null ? null : volumes.getVolume(instanceFile);
+		return volume != null && volume.acquireIo() ? volume : null;
+	}
+	
+	private void releaseIo(FileSystemVolume volume)
+	{
+		if(volume != null)
+			volume.releaseIo();
+	}
+
+	/**
+	 * Release the I/O permit of the channel, the permit is removed from the holders
+	 * first so that a channel closed twice releases its permit once.
+	 * 
+	 * @see gov.va.med.imaging.storage.cache.impl.AbstractByteChannelFactory#readableByteChannelClosed(gov.va.med.imaging.storage.cache.InstanceReadableByteChannel, boolean)
+	 */
+	@Override
+	public void readableByteChannelClosed(InstanceReadableByteChannel readable, boolean errorClose)
+	{
+		releaseIo(ioPermitHolders.remove(readable));
+		super.readableByteChannelClosed(readable, errorClose);
+	}
+
+	/**
+	 * @see gov.va.med.imaging.storage.cache.impl.AbstractByteChannelFactory#writableByteChannelClosed(gov.va.med.imaging.storage.cache.InstanceWritableByteChannel, boolean)
+	 */
+	@Override
+	public void writableByteChannelClosed(InstanceWritableByteChannel writable, boolean errorClose)
+	{
+		releaseIo(ioPermitHolders.remove(writable));
+		super.writableByteChannelClosed(writable, errorClose);
+	}
 }
@@ -15,9 +15,23 @@ import gov.va.med.imaging.storage.cache.memento.RegionMemento;
 
 import java.io.File;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.management.AttributeNotFoundException;
+import javax.management.MBeanException;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenMBeanAttributeInfo;
+import javax.management.openmbean.OpenMBeanAttributeInfoSupport;
+import javax.management.openmbean.OpenMBeanOperationInfo;
+import javax.management.openmbean.OpenMBeanOperationInfoSupport;
+import javax.management.openmbean.OpenMBeanParameterInfo;
+import javax.management.openmbean.OpenMBeanParameterInfoSupport;
+import javax.management.openmbean.SimpleType;
+
 import org.apache.log4j.Logger;
 
 /**
@@ -32,6 +46,12 @@ import org.apache.log4j.Logger;
  * date as the last access date. In general, external calls to the cache will
  * update the modified time while internal calls, used by eviction threads, do
  * not.
+ * 
+ * The cache may be spread across several volumes (mount points).  The cache location
+ * is the first volume, the additional volume locations are the rest.  Each region
+ * has a directory on every volume and its top-level groups are hashed across them,
+ * see FileSystemVolumeSet.  When a volume is added the groups that now belong on it
+ * are moved by a background FileSystemVolumeRebalancer.
  */
 public class FileSystemCache 
 extends AbstractCacheImpl
@@ -39,6 +59,14 @@ extends AbstractCacheImpl
 	public final static String protocol = "file";
 	private Logger log = Logger.getLogger(this.getClass());
 	private File rootDirectory;
+	
+	private final List<String> additionalVolumeLocations = new ArrayList<String>();
+	private int maxConcurrentIoPerVolume = FileSystemCacheConfigurator.defaultMaxConcurrentIoPerVolume;
+	private long ioPermitWait = FileSystemCacheConfigurator.defaultIoPermitWait;
+	private long rebalanceQuiescentPeriod = FileSystemCacheConfigurator.defaultRebalanceQuiescentPeriod;
+	private FileSystemVolumeSet volumes = null;
+	private FileSystemVolumeRebalancer rebalancer = null;
+	private Thread rebalancerThread = null;
 
 	/**
 	 * Create a cache instance with just the name defined.
@@ -150,6 +178,150 @@ extends AbstractCacheImpl
 	{
 		this.rootDirectory = rootDirectory;
 	}
+	
+	// ===============================================================================================================
+	// Volumes
+	// ===============================================================================================================
+	/**
+	 * The volumes the cache is spread across, available once the root directory is set.
+	 * 
+	 * @throws CacheStateException
+	 */
+	public FileSystemVolumeSet getVolumes() 
+	throws CacheStateException
+	{
+		if( volumes == null )
+			throw new CacheStateException("File system cache must be initialized before the volumes are available.");
+		return volumes;
+	}
+	
+	/**
+	 * The locations of the volumes in addition to the cache location, as URI or path.
+	 */
+	public List<String> getAdditionalVolumeLocations()
+	{
+		synchronized(additionalVolumeLocations)
+		{
+			return new ArrayList<String>(additionalVolumeLocations);
+		}
+	}
+
+	public int getMaxConcurrentIoPerVolume()
+	{
+		return maxConcurrentIoPerVolume;
+	}
+
+	/**
+	 * The maximum number of open instance channels on each volume, zero or less for no limit.
+	 * Takes effect for volumes created after it is set, i.e. set it before initialization.
+	 */
+	public void setMaxConcurrentIoPerVolume(int maxConcurrentIoPerVolume)
+	{
+		this.maxConcurrentIoPerVolume = maxConcurrentIoPerVolume;
+	}
+
+	public long getIoPermitWait()
+	{
+		return ioPermitWait;
+	}
+
+	public void setIoPermitWait(long ioPermitWait)
+	{
+		this.ioPermitWait = ioPermitWait;
+	}
+
+	public long getRebalanceQuiescentPeriod()
+	{
+		return rebalanceQuiescentPeriod;
+	}
+
+	public void setRebalanceQuiescentPeriod(long rebalanceQuiescentPeriod)
+	{
+		this.rebalanceQuiescentPeriod = rebalanceQuiescentPeriod;
+	}
+	
+	/**
+	 * Add a volume to the cache.  Before initialization the location is just remembered,
+	 * after initialization the regions are extended onto the volume and, if the cache
+	 * is running, the groups that belong on the new volume are moved in the background.
+	 * 
+	 * @param location - a file URI or an absolute path
+	 * @return true if the volume was added, false if it was already a volume of the cache
+	 * @throws CacheException
+	 */
+	public boolean addVolume(String location) 
+	throws CacheException
+	{
+		if(location == null || location.length() == 0)
+			throw new CacheInitializationException("Volume location must be a valid absolute path specification.");
+		
+		synchronized(additionalVolumeLocations)
+		{
+			if(additionalVolumeLocations.contains(location))
+				return false;
+			
+			if(volumes != null)
+			{
+				FileSystemVolume volume = createVolume(location);
+				if( !volumes.add(volume) )
+					return false;
+				for(Region region : getRegions())
+					((FileSystemRegion)region).addVolume(volume);
+				log.info("Volume '" + volume.getRootDirectory().getPath() + "' added to cache '" + getName() + "'.");
+			}
+			additionalVolumeLocations.add(location);
+		}
+		
+		if(isRunning())
+			rebalance();
+		return true;
+	}
+	
+	/**
+	 * Start moving the groups that are not on their home volume, in the background.
+	 * 
+	 * @return true if a rebalance was started, false if one is already running
+	 */
+	public synchronized boolean rebalance()
+	{
+		if(volumes == null || volumes.size() < 2)
+			return false;
+		if(rebalancerThread != null && rebalancerThread.isAlive())
+			return false;
+		
+		rebalancer = new FileSystemVolumeRebalancer(this, volumes, rebalanceQuiescentPeriod);
+		rebalancerThread = new Thread(rebalancer, getName() + "-rebalancer");
+		rebalancerThread.setDaemon(true);
+		rebalancerThread.start();
+		return true;
+	}
+	
+	private FileSystemVolume createVolume(String location) 
+	throws InitializationException
+	{
+		String path = location;
+		try
+		{
+			URI locationUri = new URI(location);
+			if(locationUri.getScheme() != null)
+				path = extractPath(locationUri);
+		}
+		catch (URISyntaxException x)
+		{
+			// not a URI, take it as a path
+		}
+		
+		File volumeRoot = new File(path);
+		if (!volumeRoot.exists())
+		{
+			log.info("Volume directory '" + volumeRoot.getAbsolutePath() + "' does not exist, creating ...");
+			volumeRoot.mkdirs();
+		}
+		if (!volumeRoot.isDirectory())
+			throw new InitializationException("Volume location '" + location + "' is not a directory and could not be created.");
+		
+		return new FileSystemVolume(volumeRoot, maxConcurrentIoPerVolume, ioPermitWait);
+	}
 
 	// ===============================================================================================================
 	// Lifecycle and operation management (initialization and enablement) 
@@ -181,6 +353,28 @@ extends AbstractCacheImpl
 			log.info("Root directory '" + getRootDirectory().getAbsolutePath() + "' does not exist, creating ...");
 			getRootDirectory().mkdirs();
 		}
+		
+		FileSystemVolumeSet volumeSet = new FileSystemVolumeSet(new FileSystemVolume(getRootDirectory(), maxConcurrentIoPerVolume, ioPermitWait));
+		for(String location : getAdditionalVolumeLocations())
+			volumeSet.add(createVolume(location));
+		this.volumes = volumeSet;
+		log.info("Cache is spread across " + volumes.size() + " volume(s).");
+		
+		if(getInstanceByteChannelFactory() instanceof FileSystemByteChannelFactory)
+			((FileSystemByteChannelFactory)getInstanceByteChannelFactory()).setVolumes(volumes);
+	}
+	
+	/**
+	 * Groups left off their home volume, i.e. by a rebalance that was interrupted
+	 * by a restart, are moved when the cache starts.
+	 * 
+	 * @see gov.va.med.imaging.storage.cache.impl.AbstractCacheImpl#start()
+	 */
+	@Override
+	protected void start()
+	{
+		super.start();
+		rebalance();
 	}
 	
 	// ===========================================================================================================
@@ -250,6 +444,11 @@ extends AbstractCacheImpl
 		memento.setEvictionStrategyMementos(createEvictionStrategyMementos());
 		memento.setRegionMementos(createRegionMementos());
 		
+		memento.setAdditionalVolumeLocations(getAdditionalVolumeLocations());
+		memento.setMaxConcurrentIoPerVolume(getMaxConcurrentIoPerVolume());
+		memento.setIoPermitWait(getIoPermitWait());
+		memento.setRebalanceQuiescentPeriod(getRebalanceQuiescentPeriod());
+		
 		return memento;
 	}
 	
@@ -274,7 +473,7 @@ extends AbstractCacheImpl
 	/**
 	 * The cache must be restored from a memento in the following order:
 	 * 0.) the default eviction timer
-	 * 1.) root directory name
+	 * 1.) root directory name and volumes
 	 * 2.) instance byte channel
 	 * 3.) eviction strategies
 	 * 4.) regions (needs instance byte channel and eviction strategies)
@@ -289,6 +488,15 @@ extends AbstractCacheImpl
 	private void restoreFromMemento(FileSystemCacheMemento memento) 
 	throws CacheException
 	{
+		// restore the volume configuration, the volumes are created when the cache is initialized
+		if(memento.getAdditionalVolumeLocations() != null)
+			additionalVolumeLocations.addAll(memento.getAdditionalVolumeLocations());
+		setMaxConcurrentIoPerVolume(memento.getMaxConcurrentIoPerVolume());
+		if(memento.getIoPermitWait() > 0L)
+			setIoPermitWait(memento.getIoPermitWait());
+		if(memento.getRebalanceQuiescentPeriod() > 0L)
+			setRebalanceQuiescentPeriod(memento.getRebalanceQuiescentPeriod());
+		
 		// restore the byte channel factory
 		setInstanceByteChannelFactory( FileSystemByteChannelFactory.create(memento.getByteChannelFactoryMemento()) );
 		
@@ -318,4 +526,100 @@ extends AbstractCacheImpl
 		if(memento.isEnabled())
 			setEnabled(true);
 	}
+	
+	// ===========================================================================================
+	// Volume management through JMX
+	// ===========================================================================================
+	@Override
+	protected OpenMBeanAttributeInfo[] createMBeanAttributeInfo() 
+	throws OpenDataException
+	{
+		List<OpenMBeanAttributeInfo> attributes = new ArrayList<OpenMBeanAttributeInfo>();
+		for(OpenMBeanAttributeInfo attribute : super.createMBeanAttributeInfo())
+			attributes.add(attribute);
+		
+		attributes.add( 
+			new OpenMBeanAttributeInfoSupport("volumes", 
+					"The volumes the cache is spread across, with their free space and I/O statistics.\n",
+					SimpleType.STRING, 
+					true, false, false)
+		);
+		attributes.add( 
+			new OpenMBeanAttributeInfoSupport("rebalancedGroupCount", 
+					"The number of groups moved to their home volume by the last rebalance.\n",
+					SimpleType.INTEGER, 
+					true, false, false)
+		);
+		
+		return attributes.toArray(new OpenMBeanAttributeInfo[attributes.size()]);
+	}
+
+	@Override
+	protected OpenMBeanOperationInfo[] createMBeanOperationInfo()
+	{
+		List<OpenMBeanOperationInfo> operations = new ArrayList<OpenMBeanOperationInfo>();
+		for(OpenMBeanOperationInfo operation : super.createMBeanOperationInfo())
+			operations.add(operation);
+		
+		operations.add(
+     		new OpenMBeanOperationInfoSupport("addVolume", "Spread the cache onto another volume and rebalance the groups.", 
+     				new OpenMBeanParameterInfo[]
+     				{
+     					new OpenMBeanParameterInfoSupport("location", "The file URI or absolute path of the volume", SimpleType.STRING)
+     				}, 
+     				SimpleType.STRING, MBeanOperationInfo.ACTION)
+     	);
+		operations.add(
+     		new OpenMBeanOperationInfoSupport("rebalance", "Move the groups that are not on their home volume.", 
+     				new OpenMBeanParameterInfo[]{}, 
+     				SimpleType.STRING, MBeanOperationInfo.ACTION)
+     	);
+		
+		return operations.toArray(new OpenMBeanOperationInfoSupport[operations.size()]);
+	}
+
+	@Override
+	public Object getAttribute(String attribute) 
+	throws AttributeNotFoundException, MBeanException, ReflectionException
+	{
+		if( "volumes".equals(attribute) )
+		{
+			if(volumes == null)
+				return "not initialized";
+			StringBuilder sb = new StringBuilder();
+			for(FileSystemVolume volume : volumes)
+				sb.append(volume.toString()).append('\n');
+			return sb.toString();
+		}
+		if( "rebalancedGroupCount".equals(attribute) )
+		{
+			FileSystemVolumeRebalancer lastRebalancer = this.rebalancer;
+			return new Integer(lastRebalancer == null ? 0 : lastRebalancer.getGroupsMoved());
+		}
+		
+		return super.getAttribute(attribute);
+	}
+
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature) 
+	throws MBeanException, ReflectionException
+	{
+		if("addVolume".equals(actionName))
+		{
+			String location = params == null || params.length < 1 ? null : (String)params[0];
+			try
+			{
+				return addVolume(location) ? "Volume '" + location + "' added." : "Volume '" + location + "' is already a volume of the cache.";
+			}
+			catch (CacheException x)
+			{
+				log.error("Unable to add volume '" + location + "'.", x);
+				throw new MBeanException(x);
+			}
+		}
+		if("rebalance".equals(actionName))
+			return rebalance() ? "Rebalance started." : "Rebalance is already running or the cache has a single volume.";
+		
+		return super.invoke(actionName, params, signature);
+	}
 }
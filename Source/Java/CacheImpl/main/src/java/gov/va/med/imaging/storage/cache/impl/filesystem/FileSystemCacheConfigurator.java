@@ -44,6 +44,9 @@ import java.util.Map;
  *  va-image-region
  *  dod-metadata-region
  *  dod-image-region
+ * default volumes
+ *  the cache location only, additional volumes are added to the memento or through JMX
+ *  no limit on concurrent I/O per volume
  *  
  * @author VHAISWBECKEC
  *
@@ -51,6 +54,13 @@ import java.util.Map;
 public class FileSystemCacheConfigurator 
 implements CacheConfigurator
 {
+	// the maximum number of open instance channels per volume, zero or less for no limit
+	public final static int defaultMaxConcurrentIoPerVolume = 0;
+	// the milliseconds a channel waits for a volume I/O permit before proceeding without one
+	public final static long defaultIoPermitWait = 10000L;
+	// the milliseconds a group must go unmodified before the rebalancer will move it
+	public final static long defaultRebalanceQuiescentPeriod = FileSystemByteChannelFactory.defaultMaxChannelOpenDuration;
+	
 	public FileSystemCacheConfigurator()
 	{
 		
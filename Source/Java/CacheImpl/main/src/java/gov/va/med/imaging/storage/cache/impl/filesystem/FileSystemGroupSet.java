@@ -6,9 +6,10 @@ import gov.va.med.imaging.storage.cache.exceptions.CacheException;
 import gov.va.med.imaging.storage.cache.impl.PersistentGroupSet;
 
 import java.io.File;
-import java.io.FileFilter;
 import java.lang.ref.SoftReference;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.apache.log4j.Logger;
 
@@ -96,7 +97,7 @@ extends PersistentGroupSet
 		pruneNullSoftReferences();
 
 		// get a list of all the child files
-		for( File childDir : getChildDirectories() )
+		for( File childDir : getChildDirectories(getRootDirectory()) )
 		{
 			String name = childDir.getName();		// the file name and the Instance name are the same
 			Group childGroup = getTransient(name);		// get an existing reference by name
@@ -112,22 +113,29 @@ extends PersistentGroupSet
 	}
 
 	/**
-	 * Get all of the files in our directory.
-	 * All files (not directories) are considered child instances of this group.
+	 * Get all of the child directories of a group directory.
+	 * All directories are considered child groups of the group.
+	 * The directories that the occupancy index of the region knows as groups are not
+	 * examined, only the names that the index does not know cost a file system call.
 	 * 
 	 * @return
 	 */
-	private File[] getChildDirectories()
+	static File[] getChildDirectories(File directory)
 	{
-		File[] childFiles = getRootDirectory().listFiles(new FileFilter()
-		{
-			public boolean accept(File pathname)
-			{
-				return pathname.isDirectory();
-			}
-		} );
-
+		String[] childNames = directory.list();
 		// never return null, return an empty array even if the root directory does not exist
-		return childFiles == null ? new File[]{} : childFiles;
+		if(childNames == null)
+			return new File[]{};
+		
+		FileSystemOccupancyIndex occupancyIndex = FileSystemOccupancyIndex.findByDirectory(directory);
+		List<File> childDirectories = new ArrayList<File>(childNames.length);
+		for(String childName : childNames)
+		{
+			File childDirectory = new File(directory, childName);
+			if( (occupancyIndex != null && occupancyIndex.isIndexedDirectory(childDirectory)) || childDirectory.isDirectory() )
+				childDirectories.add(childDirectory);
+		}
+		
+		return childDirectories.toArray(new File[childDirectories.size()]);
 	}
 }
@@ -94,6 +94,11 @@ implements Comparable<Instance>
 		
 		// load the checksum value if it exists
 		loadChecksum();
+		
+		// keep the occupancy index of the region, if there is one, current
+		FileSystemOccupancyIndex occupancyIndex = FileSystemOccupancyIndex.find(instanceFile);
+		if(occupancyIndex != null)
+			registerListener(occupancyIndex);
 	}
 
 	/**
@@ -6,9 +6,10 @@ import gov.va.med.imaging.storage.cache.exceptions.CacheException;
 import gov.va.med.imaging.storage.cache.impl.PersistentInstanceSet;
 
 import java.io.File;
-import java.io.FileFilter;
 import java.lang.ref.SoftReference;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * This class encapsulates the collection of child instances in a FileSystemCacheGroup.
@@ -110,24 +111,29 @@ extends PersistentInstanceSet
 	 * Get all of the files in our directory.
 	 * All files (not directories) are considered child instances of this group unless they 
 	 * are checksum files (i.e. end in ".checksum").
+	 * The files that the occupancy index of the region knows as instances are not
+	 * examined, only the names that the index does not know cost a file system call.
 	 * 
 	 * @return
 	 */
 	private File[] getChildFiles()
 	{
+		String[] childNames = getRootDirectory().list();
+		// return an empty array even if the group directory does not exist
+		if(childNames == null)
+			return new File[]{};
 		
-		File[] childFiles = getRootDirectory().listFiles(new FileFilter()
+		FileSystemOccupancyIndex occupancyIndex = FileSystemOccupancyIndex.findByDirectory(getRootDirectory());
+		List<File> childFiles = new ArrayList<File>(childNames.length);
+		for(String childName : childNames)
 		{
-			public boolean accept(File instanceFile)
-			{
-				return 
-					! instanceFile.isDirectory() 
-					&& ! instanceFile.getName().endsWith(FileSystemInstance.checksumFileExtension)
-					&& instanceFile.exists();
-			}
-		} );
-
-		// return an empty array even if the group directory does not exist
-		return childFiles == null ? new File[]{} : childFiles;
+			if( childName.endsWith(FileSystemInstance.checksumFileExtension) )
+				continue;
+			File instanceFile = new File(getRootDirectory(), childName);
+			if( (occupancyIndex != null && occupancyIndex.isIndexedInstance(instanceFile)) || instanceFile.isFile() )
+				childFiles.add(instanceFile);
+		}
+		
+		return childFiles.toArray(new File[childFiles.size()]);
 	}
 }
@@ -0,0 +1,1184 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.storage.cache.impl.filesystem;
+
+import gov.va.med.imaging.storage.cache.Instance;
+import gov.va.med.imaging.storage.cache.events.InstanceLifecycleEvent;
+import gov.va.med.imaging.storage.cache.events.InstanceLifecycleListener;
+import gov.va.med.imaging.storage.cache.impl.GroupAccessStatistics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UTFDataFormatException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A persistent index of the size, last access time and access count of every instance 
+ * in a FileSystemRegion, aggregated by the group directly containing the instance.
+ * The index lets the eviction strategies find the least recently accessed groups,
+ * and the region report its used space, without walking the region directory tree.
+ * 
+ * The index is kept in memory and persisted as a snapshot and an append-only log of 
+ * the changes since the snapshot, both in the region directory.  When the region is 
+ * initialized the newest valid snapshot is memory mapped and loaded and the log is 
+ * replayed on top of it, so a restarted cache is fully indexed without walking the
+ * region directory.  A new snapshot is written, and the log restarted, when the region 
+ * is stopped and periodically while the log grows.  If neither the snapshot nor the 
+ * log can be used the index is built by walking the region directory once.
+ * A partially written record at the end of the log (i.e. from a crash) is discarded.
+ * 
+ * Snapshots are named by generation and the log starts with the generation of the 
+ * snapshot it follows.  A snapshot is only used if its checksum is correct; a log of an
+ * older generation than the newest snapshot is already included in the snapshot.
+ * 
+ * Instances register this index as a lifecycle listener, the index is updated
+ * when an instance write completes, when an instance is read and when an instance
+ * is deleted.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class FileSystemOccupancyIndex
+implements InstanceLifecycleListener
+{
+	public final static String indexFileName = ".occupancy";
+	// left by versions that compacted the log in place of writing snapshots
+	public final static String compactionFileName = ".occupancy.compact";
+	// followed by '.' and the generation
+	public final static String snapshotFileName = ".occupancy.snapshot";
+	
+	// a snapshot is written when the log has more than this many records over the number of instances
+	public final static int snapshotRecordThreshold = 10000;
+	// or when the log has changes and the last snapshot is older than this
+	public final static long snapshotInterval = 15L * 60L * 1000L;
+	
+	private final static byte UPDATE_RECORD = 'U';
+	private final static byte READ_RECORD = 'R';
+	private final static byte DELETE_RECORD = 'D';
+	// an update record followed by the access count, written only by log compaction of earlier versions
+	private final static byte COMPACTED_RECORD = 'C';
+	// the first record of the log, the size is the generation of the snapshot the log follows
+	private final static byte GENERATION_RECORD = 'G';
+	private final static char PATH_SEPARATOR = '/';
+	
+	private final static int SNAPSHOT_MAGIC = 0x4F434353;		// "OCCS"
+	private final static int SNAPSHOT_VERSION = 1;
+	// magic, version, generation, created, group count and the checksum trailer
+	private final static int SNAPSHOT_MINIMUM_LENGTH = 4 + 4 + 8 + 8 + 4 + 8;
+	
+	// the open indices, keyed by the absolute region directory
+	private final static Map<File, FileSystemOccupancyIndex> openIndices = 
+		new ConcurrentHashMap<File, FileSystemOccupancyIndex>();
+	
+	/**
+	 * Open, loading if necessary, the index of the given region directory.
+	 * 
+	 * @param regionDirectory
+	 * @return
+	 * @throws IOException
+	 */
+	public static FileSystemOccupancyIndex open(File regionDirectory) 
+	throws IOException
+	{
+		File directory = regionDirectory.getAbsoluteFile();
+		synchronized(openIndices)
+		{
+			FileSystemOccupancyIndex index = openIndices.get(directory);
+			if(index == null)
+			{
+				index = new FileSystemOccupancyIndex(directory);
+				index.load();
+				openIndices.put(directory, index);
+			}
+			return index;
+		}
+	}
+	
+	/**
+	 * Find the open index of the region containing the given instance file.
+	 * 
+	 * @param instanceFile
+	 * @return the index or null if the instance is not in an indexed region
+	 */
+	static FileSystemOccupancyIndex find(File instanceFile)
+	{
+		return findByDirectory(instanceFile.getAbsoluteFile().getParentFile());
+	}
+	
+	/**
+	 * Find the open index of the region that is, or contains, the given directory.
+	 * 
+	 * @param directory
+	 * @return the index or null if the directory is not in an indexed region
+	 */
+	static FileSystemOccupancyIndex findByDirectory(File directory)
+	{
+		if(openIndices.isEmpty() || directory == null)
+			return null;
+		
+		for(directory = directory.getAbsoluteFile(); directory != null; directory = directory.getParentFile())
+		{
+			FileSystemOccupancyIndex index = openIndices.get(directory);
+			if(index != null)
+				return index;
+		}
+		
+		return null;
+	}
+	
+	// =======================================================================================================
+	private final Logger logger = Logger.getLogger(FileSystemOccupancyIndex.class);
+	private final File regionDirectory;
+	private final File indexFile;
+	private final File compactionFile;
+	
+	// instance relative path to instance entry
+	private final Map<String, InstanceEntry> instances = new HashMap<String, InstanceEntry>();
+	// group relative path to group entry
+	private final Map<String, GroupEntry> groups = new HashMap<String, GroupEntry>();
+	// the groups in ascending order of last access
+	private final SortedSet<GroupEntry> groupsByLastAccessed = new TreeSet<GroupEntry>();
+	// every directory that is, or is an ancestor of, a group, to the number of groups at or below it
+	private final Map<String, Integer> directories = new HashMap<String, Integer>();
+	private long usedSpace = 0L;
+	
+	private DataOutputStream indexOut = null;
+	// the number of records in the log since the snapshot
+	private long indexRecordCount = 0L;
+	// the generation of the last snapshot, zero if none has been written
+	private long generation = 0L;
+	private long lastSnapshot = 0L;
+	
+	private FileSystemOccupancyIndex(File regionDirectory)
+	{
+		this.regionDirectory = regionDirectory;
+		this.indexFile = new File(regionDirectory, indexFileName);
+		this.compactionFile = new File(regionDirectory, compactionFileName);
+	}
+
+	public File getRegionDirectory()
+	{
+		return this.regionDirectory;
+	}
+
+	public synchronized long getUsedSpace()
+	{
+		return this.usedSpace;
+	}
+	
+	public synchronized int getInstanceCount()
+	{
+		return instances.size();
+	}
+	
+	public synchronized int getGroupCount()
+	{
+		return groups.size();
+	}
+	
+	/**
+	 * The generation of the last snapshot, zero if no snapshot has been written.
+	 */
+	public synchronized long getGeneration()
+	{
+		return generation;
+	}
+	
+	/**
+	 * Determine whether the given file is an instance in the index.
+	 * 
+	 * @param instanceFile
+	 * @return
+	 */
+	public synchronized boolean isIndexedInstance(File instanceFile)
+	{
+		String path = getRelativePath(instanceFile);
+		return path != null && instances.containsKey(path);
+	}
+	
+	/**
+	 * Determine whether the given directory is a group in the index, or is an ancestor
+	 * of a group in the index.
+	 * 
+	 * @param directory
+	 * @return
+	 */
+	public synchronized boolean isIndexedDirectory(File directory)
+	{
+		String path = relativize(directory);
+		return path != null && directories.containsKey(path);
+	}
+	
+	/**
+	 * Get the relative paths of the least recently accessed groups whose
+	 * collective size does not exceed the target size.  A group is identified 
+	 * by the names of the group directories from the region, separated by '/'.
+	 * 
+	 * @param targetSize
+	 * @return
+	 */
+	public synchronized List<String> getLeastRecentlyAccessedGroups(long targetSize)
+	{
+		List<String> result = new ArrayList<String>();
+		long totalSize = 0L;
+		
+		for(GroupEntry group : groupsByLastAccessed)
+		{
+			if(totalSize >= targetSize)
+				break;
+			// skip the groups that would overshoot the target, a smaller group may still fit
+			if(totalSize + group.size > targetSize)
+				continue;
+			
+			result.add(group.path);
+			totalSize += group.size;
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Get the relative paths of the groups that have not been accessed since the given time,
+	 * in ascending order of last access.
+	 * 
+	 * @param lastAccessed
+	 * @return
+	 */
+	public synchronized List<String> getGroupsLastAccessedBefore(long lastAccessed)
+	{
+		List<String> result = new ArrayList<String>();
+		
+		for(GroupEntry group : groupsByLastAccessed)
+		{
+			if(group.lastAccessed >= lastAccessed)
+				break;
+			result.add(group.path);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Get the size, last access and access count of every group in the index.
+	 * The access count of a group is that of its most frequently accessed instance.
+	 * 
+	 * @return
+	 */
+	public synchronized List<GroupAccessStatistics> getGroupAccessStatistics()
+	{
+		List<GroupAccessStatistics> result = new ArrayList<GroupAccessStatistics>(groups.size());
+		
+		for(GroupEntry group : groupsByLastAccessed)
+		{
+			int accessCount = 0;
+			for(String instancePath : group.instancePaths)
+				accessCount = Math.max(accessCount, instances.get(instancePath).accessCount);
+			result.add( new GroupAccessStatistics(group.path, group.size, group.lastAccessed, accessCount) );
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Remove a group, and all of the instances in it, from the index.
+	 * This is called when a group in the index no longer exists, e.g. if it was
+	 * removed outside of the cache.
+	 * 
+	 * @param groupPath
+	 */
+	public synchronized void removeGroup(String groupPath)
+	{
+		GroupEntry group = groups.get(groupPath);
+		if(group == null)
+			return;
+		
+		for(String instancePath : new ArrayList<String>(group.instancePaths))
+			if( applyDelete(instancePath) )
+				append(DELETE_RECORD, instancePath, 0L, 0L);
+	}
+	
+	// =======================================================================================================
+	// Instance Lifecycle Events
+	// =======================================================================================================
+	/**
+	 * @see gov.va.med.imaging.storage.cache.events.InstanceLifecycleListener#notify(gov.va.med.imaging.storage.cache.events.InstanceLifecycleEvent)
+	 */
+	@Override
+	public void notify(InstanceLifecycleEvent event)
+	{
+		Instance instance = event.getInstance();
+		if( !(instance instanceof FileSystemInstance) )
+			return;
+		
+		File instanceFile = ((FileSystemInstance)instance).getFile();
+		String path = getRelativePath(instanceFile);
+		if(path == null)
+			return;
+		
+		long now = System.currentTimeMillis();
+		switch(event.getLifecycleEvent())
+		{
+			case UPDATE:
+				instanceUpdated(path, instanceFile.length(), now);
+				break;
+			case READ:
+				instanceRead(path, instanceFile, now);
+				break;
+			case DELETE:
+				instanceDeleted(path);
+				break;
+			default:
+				// a created instance is not indexed until its content is written
+				break;
+		}
+	}
+	
+	synchronized void instanceUpdated(String path, long size, long lastAccessed)
+	{
+		applyUpdate(path, size, lastAccessed);
+		append(UPDATE_RECORD, path, size, lastAccessed);
+	}
+	
+	synchronized void instanceRead(String path, File instanceFile, long lastAccessed)
+	{
+		if( applyRead(path, lastAccessed) )
+			append(READ_RECORD, path, 0L, lastAccessed);
+		else
+			instanceUpdated(path, instanceFile.length(), lastAccessed);
+	}
+	
+	synchronized void instanceDeleted(String path)
+	{
+		if( applyDelete(path) )
+			append(DELETE_RECORD, path, 0L, 0L);
+	}
+	
+	/**
+	 * 
+	 * @param instanceFile
+	 * @return the path of the instance relative to the region directory or null 
+	 * if the instance is not in a group of this region
+	 */
+	private String getRelativePath(File instanceFile)
+	{
+		String path = relativize(instanceFile);
+		return path == null || path.indexOf(PATH_SEPARATOR) < 0 ? null : path;
+	}
+	
+	/**
+	 * @param file
+	 * @return the path of the file relative to the region directory or null if the file
+	 * is not in the region directory
+	 */
+	private String relativize(File file)
+	{
+		file = file.getAbsoluteFile();
+		StringBuilder path = new StringBuilder(file.getName());
+		for(File directory = file.getParentFile(); directory != null; directory = directory.getParentFile())
+		{
+			if(directory.equals(regionDirectory))
+				return path.toString();
+			path.insert(0, PATH_SEPARATOR);
+			path.insert(0, directory.getName());
+		}
+		return null;
+	}
+	
+	// =======================================================================================================
+	// In-memory index maintenance, these do not write to the log
+	// =======================================================================================================
+	private void applyUpdate(String path, long size, long lastAccessed)
+	{
+		InstanceEntry entry = instances.get(path);
+		GroupEntry group = null;
+		if(entry == null)
+		{
+			entry = new InstanceEntry(getGroupPath(path));
+			entry.accessCount = 1;
+			instances.put(path, entry);
+			group = detachGroup(entry.groupPath);
+			group.instancePaths.add(path);
+		}
+		else
+		{
+			group = detachGroup(entry.groupPath);
+			group.size -= entry.size;
+			usedSpace -= entry.size;
+		}
+		
+		entry.size = size;
+		entry.lastAccessed = lastAccessed;
+		group.size += size;
+		group.lastAccessed = Math.max(group.lastAccessed, lastAccessed);
+		usedSpace += size;
+		groupsByLastAccessed.add(group);
+	}
+	
+	private boolean applyRead(String path, long lastAccessed)
+	{
+		InstanceEntry entry = instances.get(path);
+		if(entry == null)
+			return false;
+		
+		entry.lastAccessed = lastAccessed;
+		++entry.accessCount;
+		GroupEntry group = detachGroup(entry.groupPath);
+		group.lastAccessed = Math.max(group.lastAccessed, lastAccessed);
+		groupsByLastAccessed.add(group);
+		return true;
+	}
+	
+	private boolean applyDelete(String path)
+	{
+		InstanceEntry entry = instances.remove(path);
+		if(entry == null)
+			return false;
+		
+		GroupEntry group = detachGroup(entry.groupPath);
+		group.size -= entry.size;
+		group.instancePaths.remove(path);
+		usedSpace -= entry.size;
+		if(group.instancePaths.isEmpty())
+		{
+			groups.remove(group.path);
+			countDirectories(group.path, -1);
+		}
+		else
+			groupsByLastAccessed.add(group);
+		return true;
+	}
+	
+	/**
+	 * Get or create the group entry and remove it from the ordered set, so that its
+	 * last access time may be changed.  The caller must add it back.
+	 */
+	private GroupEntry detachGroup(String groupPath)
+	{
+		GroupEntry group = groups.get(groupPath);
+		if(group == null)
+		{
+			group = new GroupEntry(groupPath);
+			groups.put(groupPath, group);
+			countDirectories(groupPath, 1);
+		}
+		else
+			groupsByLastAccessed.remove(group);
+		return group;
+	}
+	
+	/**
+	 * Add the increment to the group count of the group directory and of each of its ancestors.
+	 */
+	private void countDirectories(String groupPath, int increment)
+	{
+		for(String path = groupPath; path.length() > 0; path = getGroupPath(path))
+		{
+			Integer count = directories.get(path);
+			int newCount = (count == null ? 0 : count.intValue()) + increment;
+			if(newCount > 0)
+				directories.put(path, newCount);
+			else
+				directories.remove(path);
+		}
+	}
+	
+	private static String getGroupPath(String instancePath)
+	{
+		int separator = instancePath.lastIndexOf(PATH_SEPARATOR);
+		return separator < 0 ? "" : instancePath.substring(0, separator);
+	}
+	
+	private void clear()
+	{
+		instances.clear();
+		groups.clear();
+		groupsByLastAccessed.clear();
+		directories.clear();
+		usedSpace = 0L;
+	}
+	
+	// =======================================================================================================
+	// Persistence
+	// =======================================================================================================
+	private synchronized void load() 
+	throws IOException
+	{
+		// a log compaction, by an earlier version, that did not complete, either the log is 
+		// still complete or the compacted log was written and the old log deleted
+		if(compactionFile.exists())
+		{
+			if(indexFile.exists())
+				compactionFile.delete();
+			else if( !compactionFile.renameTo(indexFile) )
+				throw new IOException("Unable to rename '" + compactionFile.getPath() + "' to '" + indexFile.getPath() + "'.");
+		}
+		
+		clear();
+		long snapshotGeneration = loadSnapshot();
+		long logGeneration = indexFile.exists() ? readLogGeneration() : -1L;
+		
+		if(logGeneration >= 0L && logGeneration == Math.max(snapshotGeneration, 0L))
+		{
+			// the log follows the snapshot, or there is no snapshot and the log is complete
+			replay();
+			snapshotIfNecessary();
+		}
+		else if(snapshotGeneration > 0L && logGeneration < snapshotGeneration)
+		{
+			// the snapshot was written but the log was not restarted, the snapshot includes the log
+			generation = snapshotGeneration;
+			startLog();
+		}
+		else
+		{
+			// the log follows a snapshot that is missing or damaged
+			if(logGeneration > 0L)
+				logger.warn("Occupancy index '" + indexFile.getPath() + "' follows snapshot generation " + logGeneration + ", which is not available.");
+			// generations are never reused, the rebuilt snapshot replaces the damaged ones
+			List<Long> snapshotGenerations = getSnapshotGenerations();
+			generation = Math.max(logGeneration, snapshotGenerations.isEmpty() ? 0L : snapshotGenerations.get(0).longValue());
+			rebuild();
+		}
+		deleteSnapshots(generation);
+		
+		if(indexOut == null)
+			openLog();
+		logger.info("Occupancy index of '" + regionDirectory.getPath() + "' loaded at generation " + generation + ", " + 
+			instances.size() + " instances in " + groups.size() + " groups, " + usedSpace + " bytes.");
+	}
+	
+	/**
+	 * Read the generation from the first record of the log.
+	 * 
+	 * @return the generation or zero if the log does not start with a generation record
+	 */
+	private long readLogGeneration() 
+	throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+		try
+		{
+			if(in.readByte() != GENERATION_RECORD)
+				return 0L;
+			in.readUTF();
+			return in.readLong();
+		}
+		catch(EOFException eofX)
+		{
+			return 0L;
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+	
+	private void replay() 
+	throws IOException
+	{
+		indexRecordCount = 0L;
+		
+		long validLength = 0L;
+		CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+		DataInputStream in = new DataInputStream(counter);
+		try
+		{
+			while(true)
+			{
+				byte recordType = in.readByte();
+				String path = in.readUTF();
+				long size = in.readLong();
+				long time = in.readLong();
+				
+				if(recordType == UPDATE_RECORD)
+					applyUpdate(path, size, time);
+				else if(recordType == COMPACTED_RECORD)
+				{
+					int accessCount = in.readInt();
+					applyUpdate(path, size, time);
+					instances.get(path).accessCount = accessCount;
+				}
+				else if(recordType == READ_RECORD)
+					applyRead(path, time);
+				else if(recordType == DELETE_RECORD)
+					applyDelete(path);
+				else if(recordType == GENERATION_RECORD && validLength == 0L)
+				{
+					generation = size;
+					validLength = counter.getCount();
+					continue;
+				}
+				else
+					break;
+				
+				validLength = counter.getCount();
+				++indexRecordCount;
+			}
+		}
+		catch(EOFException eofX)
+		{
+			// the normal end of the log, or a partial record at the end
+		}
+		catch(UTFDataFormatException utfX)
+		{
+			// a partial or corrupt record
+		}
+		finally
+		{
+			in.close();
+		}
+		
+		if(validLength < indexFile.length())
+		{
+			logger.warn("Occupancy index '" + indexFile.getPath() + "' has an incomplete record at offset " + validLength + ", truncating.");
+			RandomAccessFile truncator = new RandomAccessFile(indexFile, "rw");
+			try
+			{
+				truncator.setLength(validLength);
+			}
+			finally
+			{
+				truncator.close();
+			}
+		}
+	}
+	
+	/**
+	 * Discard the index and rebuild it by walking the region directory.
+	 * The last access time of each instance is taken from its last modified time.
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void rebuild() 
+	throws IOException
+	{
+		logger.info("Rebuilding occupancy index of '" + regionDirectory.getPath() + "' from the file system.");
+		clear();
+		
+		File[] children = regionDirectory.listFiles();
+		if(children != null)
+			for(File child : children)
+				if(child.isDirectory())
+					addDirectory(child, child.getName());
+		
+		writeSnapshot();
+	}
+	
+	private void addDirectory(File directory, String directoryPath)
+	{
+		File[] children = directory.listFiles();
+		if(children == null)
+			return;
+		
+		for(File child : children)
+		{
+			String childPath = directoryPath + PATH_SEPARATOR + child.getName();
+			if(child.isDirectory())
+				addDirectory(child, childPath);
+			else if( !child.getName().endsWith(FileSystemInstance.checksumFileExtension) )
+				applyUpdate(childPath, child.length(), child.lastModified());
+		}
+	}
+	
+	/**
+	 * Write a snapshot if the log has grown much larger than the index it describes
+	 * or if the last snapshot is old and the log has changes.
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void snapshotIfNecessary() 
+	throws IOException
+	{
+		if( indexRecordCount > instances.size() + snapshotRecordThreshold || 
+			(indexRecordCount > 0L && System.currentTimeMillis() - lastSnapshot > snapshotInterval) )
+			writeSnapshot();
+	}
+	
+	// =======================================================================================================
+	// Snapshots
+	// =======================================================================================================
+	private File getSnapshotFile(long snapshotGeneration)
+	{
+		return new File(regionDirectory, snapshotFileName + '.' + snapshotGeneration);
+	}
+	
+	/**
+	 * @return the generations of the snapshot files in the region directory, in descending order
+	 */
+	private List<Long> getSnapshotGenerations()
+	{
+		List<Long> snapshotGenerations = new ArrayList<Long>();
+		String[] names = regionDirectory.list();
+		if(names != null)
+			for(String name : names)
+				if( name.startsWith(snapshotFileName + '.') )
+					try
+					{
+						snapshotGenerations.add( Long.valueOf(name.substring(snapshotFileName.length() + 1)) );
+					}
+					catch(NumberFormatException nfX)
+					{
+						// not a snapshot
+					}
+		Collections.sort(snapshotGenerations, Collections.reverseOrder());
+		return snapshotGenerations;
+	}
+	
+	/**
+	 * Delete the snapshots older than the given generation.  A snapshot that cannot 
+	 * be deleted (i.e. it is still mapped) is deleted when the next snapshot is written.
+	 */
+	private void deleteSnapshots(long olderThanGeneration)
+	{
+		for(Long snapshotGeneration : getSnapshotGenerations())
+			if(snapshotGeneration.longValue() < olderThanGeneration)
+				getSnapshotFile(snapshotGeneration.longValue()).delete();
+	}
+	
+	/**
+	 * Write the index as a snapshot and restart the log, the snapshot is written to a 
+	 * new file so an earlier snapshot remains usable until the log is restarted.
+	 * The snapshot is:
+	 *   magic, version, generation, created, group count
+	 *   for each group: path, instance count
+	 *     for each instance: name, size, last accessed, access count
+	 *   the CRC32 of all of the above
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void writeSnapshot() 
+	throws IOException
+	{
+		long snapshotGeneration = generation + 1L;
+		long created = System.currentTimeMillis();
+		File snapshotFile = getSnapshotFile(snapshotGeneration);
+		
+		FileOutputStream snapshotOut = new FileOutputStream(snapshotFile);
+		CheckedOutputStream checkedOut = new CheckedOutputStream(new BufferedOutputStream(snapshotOut), new CRC32());
+		DataOutputStream out = new DataOutputStream(checkedOut);
+		boolean written = false;
+		try
+		{
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeInt(SNAPSHOT_VERSION);
+			out.writeLong(snapshotGeneration);
+			out.writeLong(created);
+			out.writeInt(groups.size());
+			for(GroupEntry group : groups.values())
+			{
+				out.writeUTF(group.path);
+				out.writeInt(group.instancePaths.size());
+				for(String instancePath : group.instancePaths)
+				{
+					InstanceEntry instance = instances.get(instancePath);
+					out.writeUTF(instancePath.substring(group.path.length() + 1));
+					out.writeLong(instance.size);
+					out.writeLong(instance.lastAccessed);
+					out.writeInt(instance.accessCount);
+				}
+			}
+			out.writeLong(checkedOut.getChecksum().getValue());
+			out.flush();
+			snapshotOut.getFD().sync();
+			written = true;
+		}
+		finally
+		{
+			out.close();
+			if(!written)
+				snapshotFile.delete();
+		}
+		
+		// from here the snapshot includes the log, whether or not the log is restarted
+		closeLog();
+		generation = snapshotGeneration;
+		lastSnapshot = created;
+		startLog();
+		deleteSnapshots(generation);
+		logger.info("Occupancy index of '" + regionDirectory.getPath() + "' snapshot generation " + generation + " written, " + 
+			instances.size() + " instances in " + groups.size() + " groups.");
+	}
+	
+	/**
+	 * Load the newest valid snapshot into the (empty) index.
+	 * 
+	 * @return the generation of the snapshot, or -1 if there is no valid snapshot
+	 */
+	private long loadSnapshot()
+	{
+		for(Long snapshotGeneration : getSnapshotGenerations())
+		{
+			File snapshotFile = getSnapshotFile(snapshotGeneration.longValue());
+			try
+			{
+				ByteBuffer snapshot = mapSnapshot(snapshotFile);
+				if(snapshot != null && loadSnapshot(snapshot, snapshotGeneration.longValue()))
+					return snapshotGeneration.longValue();
+			}
+			catch(IOException ioX)
+			{
+				logger.warn("Unable to read occupancy index snapshot '" + snapshotFile.getPath() + "'.", ioX);
+			}
+			catch(BufferUnderflowException buX)
+			{
+				// a checksum collision on a damaged snapshot
+			}
+			logger.warn("Occupancy index snapshot '" + snapshotFile.getPath() + "' is not valid, ignoring it.");
+			clear();
+		}
+		return -1L;
+	}
+	
+	/**
+	 * Map the snapshot file and validate its header and checksum.
+	 * 
+	 * @return the mapped snapshot, less the checksum trailer, or null if it is not valid
+	 */
+	private static ByteBuffer mapSnapshot(File snapshotFile) 
+	throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(snapshotFile, "r");
+		ByteBuffer snapshot = null;
+		try
+		{
+			FileChannel channel = file.getChannel();
+			long length = channel.size();
+			if(length < SNAPSHOT_MINIMUM_LENGTH || length > Integer.MAX_VALUE)
+				return null;
+			snapshot = channel.map(FileChannel.MapMode.READ_ONLY, 0L, length);
+		}
+		finally
+		{
+			// the mapping remains valid after the file is closed
+			file.close();
+		}
+		
+		int checksummedLength = snapshot.limit() - 8;
+		if(snapshot.getInt(0) != SNAPSHOT_MAGIC || snapshot.getInt(4) != SNAPSHOT_VERSION)
+			return null;
+		
+		CRC32 crc = new CRC32();
+		byte[] chunk = new byte[64 * 1024];
+		for(ByteBuffer body = (ByteBuffer)snapshot.duplicate().limit(checksummedLength); body.hasRemaining(); )
+		{
+			int chunkLength = Math.min(chunk.length, body.remaining());
+			body.get(chunk, 0, chunkLength);
+			crc.update(chunk, 0, chunkLength);
+		}
+		if(crc.getValue() != snapshot.getLong(checksummedLength))
+			return null;
+		
+		snapshot.limit(checksummedLength);
+		return snapshot;
+	}
+	
+	private boolean loadSnapshot(ByteBuffer snapshot, long snapshotGeneration) 
+	throws IOException
+	{
+		DataInputStream in = new DataInputStream(new ByteBufferInputStream(snapshot));
+		in.readInt();
+		in.readInt();
+		if(in.readLong() != snapshotGeneration)
+			return false;
+		long created = in.readLong();
+		
+		for(int groupCount = in.readInt(); groupCount > 0; --groupCount)
+		{
+			String groupPath = in.readUTF();
+			for(int instanceCount = in.readInt(); instanceCount > 0; --instanceCount)
+			{
+				String instancePath = groupPath + PATH_SEPARATOR + in.readUTF();
+				long size = in.readLong();
+				long lastAccessed = in.readLong();
+				int accessCount = in.readInt();
+				applyUpdate(instancePath, size, lastAccessed);
+				instances.get(instancePath).accessCount = accessCount;
+			}
+		}
+		if(snapshot.hasRemaining())
+			return false;
+		
+		generation = snapshotGeneration;
+		lastSnapshot = created;
+		return true;
+	}
+	
+	// =======================================================================================================
+	// Log
+	// =======================================================================================================
+	/**
+	 * Start a new log following the current snapshot generation.
+	 */
+	private void startLog() 
+	throws IOException
+	{
+		closeLog();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+		try
+		{
+			writeRecord(out, GENERATION_RECORD, "", generation, System.currentTimeMillis());
+		}
+		finally
+		{
+			out.close();
+		}
+		indexRecordCount = 0L;
+		openLog();
+	}
+	
+	private void openLog() 
+	throws IOException
+	{
+		indexOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile, true)));
+	}
+	
+	private void closeLog()
+	{
+		if(indexOut == null)
+			return;
+		try
+		{
+			indexOut.close();
+		}
+		catch(IOException ioX)
+		{
+			logger.warn("Error closing occupancy index '" + indexFile.getPath() + "'.", ioX);
+		}
+		indexOut = null;
+	}
+	
+	private void append(byte recordType, String path, long size, long time)
+	{
+		if(indexOut == null)
+			return;
+		
+		try
+		{
+			writeRecord(indexOut, recordType, path, size, time);
+			indexOut.flush();
+			++indexRecordCount;
+		}
+		catch(IOException ioX)
+		{
+			// the in-memory index is still correct, but the log is not, make sure it is rebuilt on the next load
+			logger.error("Unable to write to occupancy index '" + indexFile.getPath() + "', the index will be rebuilt when the region is next initialized.", ioX);
+			closeLog();
+			indexFile.delete();
+			deleteSnapshots(Long.MAX_VALUE);
+		}
+	}
+	
+	private static void writeRecord(DataOutputStream out, byte recordType, String path, long size, long time) 
+	throws IOException
+	{
+		out.writeByte(recordType);
+		out.writeUTF(path);
+		out.writeLong(size);
+		out.writeLong(time);
+	}
+	
+	/**
+	 * Flush any buffered log records.
+	 */
+	public synchronized void flush()
+	{
+		if(indexOut == null)
+			return;
+		try
+		{
+			indexOut.flush();
+		}
+		catch(IOException ioX)
+		{
+			logger.warn("Error flushing occupancy index '" + indexFile.getPath() + "'.", ioX);
+		}
+	}
+	
+	/**
+	 * Close the log and remove this index from the open indices.  Instances that
+	 * are still registered with this index will no longer update the log.
+	 */
+	public void close()
+	{
+		synchronized(openIndices)
+		{
+			openIndices.remove(regionDirectory);
+		}
+		synchronized(this)
+		{
+			closeLog();
+		}
+	}
+	
+	// =======================================================================================================
+	// Index entries
+	// =======================================================================================================
+	private static class InstanceEntry
+	{
+		private final String groupPath;
+		private long size = 0L;
+		private long lastAccessed = 0L;
+		private int accessCount = 0;
+		
+		InstanceEntry(String groupPath)
+		{
+			this.groupPath = groupPath;
+		}
+	}
+	
+	/**
+	 * The aggregate of the instances directly contained in a group, ordered by
+	 * last access and then by path.
+	 */
+	private static class GroupEntry
+	implements Comparable<GroupEntry>
+	{
+		private final String path;
+		private final Set<String> instancePaths = new HashSet<String>();
+		private long size = 0L;
+		private long lastAccessed = 0L;
+		
+		GroupEntry(String path)
+		{
+			this.path = path;
+		}
+
+		@Override
+		public int compareTo(GroupEntry that)
+		{
+			if(this.lastAccessed < that.lastAccessed)
+				return -1;
+			if(this.lastAccessed > that.lastAccessed)
+				return 1;
+			return this.path.compareTo(that.path);
+		}
+	}
+	
+	/**
+	 * Reads a (mapped) snapshot through a DataInputStream.
+	 */
+	private static class ByteBufferInputStream
+	extends InputStream
+	{
+		private final ByteBuffer buffer;
+		
+		ByteBufferInputStream(ByteBuffer buffer)
+		{
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read()
+		{
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len)
+		{
+			if(len == 0)
+				return 0;
+			if(!buffer.hasRemaining())
+				return -1;
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+	}
+	
+	/**
+	 * Counts the bytes read so that the end of the last complete record is known.
+	 */
+	private static class CountingInputStream
+	extends FilterInputStream
+	{
+		private long count = 0L;
+		
+		CountingInputStream(InputStream in)
+		{
+			super(in);
+		}
+		
+		long getCount()
+		{
+			return count;
+		}
+
+		@Override
+		public int read() 
+		throws IOException
+		{
+			int b = super.read();
+			if(b >= 0)
+				++count;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) 
+		throws IOException
+		{
+			int bytesRead = super.read(b, off, len);
+			if(bytesRead > 0)
+				count += bytesRead;
+			return bytesRead;
+		}
+
+		@Override
+		public long skip(long n) 
+		throws IOException
+		{
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+	}
+}
@@ -1,29 +1,50 @@
 package gov.va.med.imaging.storage.cache.impl.filesystem;
 
+import gov.va.med.imaging.storage.cache.EvictionJudge;
 import gov.va.med.imaging.storage.cache.Group;
+import gov.va.med.imaging.storage.cache.LastAccessedEvictionJudge;
 import gov.va.med.imaging.storage.cache.exceptions.*;
+import gov.va.med.imaging.storage.cache.impl.GroupAccessStatistics;
+import gov.va.med.imaging.storage.cache.impl.GroupPath;
+import gov.va.med.imaging.storage.cache.impl.OccupancyIndexedRegion;
 import gov.va.med.imaging.storage.cache.impl.PersistentGroupSet;
 import gov.va.med.imaging.storage.cache.impl.PersistentRegion;
+import gov.va.med.imaging.storage.cache.impl.TargetSizeGroupPathSet;
 import gov.va.med.imaging.storage.cache.impl.memento.PersistentRegionMemento;
 
 import java.io.File;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
 
 /**
  * The File System based implementation of a cache region.
+ * The region keeps a FileSystemOccupancyIndex of its instances so that the used space
+ * and the eviction candidates are available without walking the directory tree.  If the
+ * index cannot be opened the region falls back to walking the directory tree.
+ * 
+ * When the cache has more than one volume the region has a directory, and an 
+ * occupancy index, on each of them and its top-level groups are spread across
+ * the volumes (see FileSystemVolumeSet).  The free space of the region is that
+ * of its fullest volume, so the storage threshold eviction frees space on the
+ * volume that needs it.
  * 
  */
 public class FileSystemRegion
 extends PersistentRegion
-implements FileSystemRegionMBean
+implements FileSystemRegionMBean, OccupancyIndexedRegion
 {
 	private Logger log = Logger.getLogger(this.getClass());
 	private File regionDirectory = null;
-	private FileSystemGroupSet childGroups = null;
+	private FileSystemVolumeSet volumes = null;
+	private FileSystemVolumeGroupSet childGroups = null;
+	private final Map<FileSystemVolume, FileSystemOccupancyIndex> occupancyIndices = 
+		new ConcurrentHashMap<FileSystemVolume, FileSystemOccupancyIndex>();
 
 	// ======================================================================================================
 	// Factory Methods
@@ -148,62 +169,71 @@ implements FileSystemRegionMBean
 	}
 	
 	/**
+	 * The free space of the volume with the least free space.
+	 * 
 	 * @see gov.va.med.imaging.storage.cache.impl.filesystem.FileSystemRegionMBean#getFreeSpace()
 	 */
 	@Override
 	public long getFreeSpace()
 	{
-		return getDiskStatistic("getFreeSpace");
+		if(volumes == null)
+		{
+			log.error("Attempt to call 'getFreeSpace' before region has been initialized");
+			return -1L;
+		}
+		return volumes.getVolumesByFreeSpace().get(0).getFreeSpace();
 	}
 	
 	/**
+	 * The total space of all of the volumes.
+	 * 
 	 * @see gov.va.med.imaging.storage.cache.Region#getTotalSpace()
 	 */
 	@Override
 	public long getTotalSpace()
 	{
-		return getDiskStatistic("getTotalSpace");
-	}
-	
-	private long getDiskStatistic(String methodName)
-	{
-		try
-		{
-			File regionDirectory = getRegionDirectory();
-
-			// Do the method call using reflection so that this will still compile under
-			// JDK 1.5.
-			//return regionDirectory.getFreeSpace();
-			Method freeSpaceGetter = regionDirectory.getClass().getMethod(methodName, (Class[])null);
-			Long freeSpace = (Long)freeSpaceGetter.invoke(regionDirectory, (Object[])null);
-			return freeSpace.longValue();
-		} 
-		catch (RegionNotInitializedException x)
-		{
-			log.error("Attempt to call '" + methodName + "' before region has been initialized", x);
-		} 
-		catch (SecurityException x)
+		if(volumes == null)
 		{
-			log.error("Attempt to call '" + methodName + "' failed.  Space threshold evictions will not work!", x);
-		} 
-		catch (NoSuchMethodException x)
-		{
-			log.warn("Attempt to call '" + methodName + "' from JRE previous to 1.6 is being ignored.  Space threshold evictions will not work!", x);
-		} 
-		catch (IllegalArgumentException x)
-		{
-			log.error("Attempt to call '" + methodName + "' failed.  Space threshold evictions will not work!", x);
-		} 
-		catch (IllegalAccessException x)
-		{
-			log.error("Attempt to call '" + methodName + "' failed.  Space threshold evictions will not work!", x);
-		} 
-		catch (InvocationTargetException x)
+			log.error("Attempt to call 'getTotalSpace' before region has been initialized");
+			return -1L;
+		}
+		
+		long totalSpace = 0L;
+		for(FileSystemVolume volume : volumes)
 		{
-			log.error("Attempt to call '" + methodName + "' failed.  Space threshold evictions will not work!", x);
+			long volumeSpace = volume.getTotalSpace();
+			if(volumeSpace < 0L)
+				return -1L;
+			totalSpace += volumeSpace;
 		}
+		return totalSpace;
+	}
+
+	/**
+	 * @see gov.va.med.imaging.storage.cache.impl.filesystem.FileSystemRegionMBean#getVolumeCount()
+	 */
+	@Override
+	public int getVolumeCount()
+	{
+		return volumes == null ? 0 : volumes.size();
+	}
+
+	/**
+	 * If the occupancy index is available then the used space is taken from it, 
+	 * else the groups are visited.
+	 * 
+	 * @see gov.va.med.imaging.storage.cache.impl.PersistentRegion#getUsedSpace()
+	 */
+	@Override
+	public long getUsedSpace()
+	{
+		if( !isOccupancyIndexAvailable() )
+			return super.getUsedSpace();
 		
-		return -1L;
+		long usedSpace = 0L;
+		for(FileSystemOccupancyIndex occupancyIndex : occupancyIndices.values())
+			usedSpace += occupancyIndex.getUsedSpace();
+		return usedSpace;
 	}
 
 	@Override
@@ -215,6 +245,16 @@ implements FileSystemRegionMBean
 		return childGroups;
 	}
 	
+	/**
+	 * The child groups, as the type that the rebalancer works with.
+	 */
+	FileSystemVolumeGroupSet getVolumeGroupSet() 
+	throws RegionNotInitializedException
+	{
+		getPersistentGroupSet();
+		return childGroups;
+	}
+	
 	/**
 	 * Regions cannot be removed, so throw an error if someone tries.
 	 */
@@ -241,24 +281,13 @@ implements FileSystemRegionMBean
 			if(cacheRoot == null)
 				throw new RegionInitializationException("Cache root directory must be set before initializing FileSystemCacheRegion instance.");
 			
-			this.regionDirectory = new File(cacheRoot, this.getName());
+			this.volumes = getParentFileSystemCache().getVolumes();
+			this.regionDirectory = volumes.getPrimaryVolume().getRegionDirectory(this.getName());
 			
-			if(! regionDirectory.exists())
-			{
-				log.debug("'" + this.getName() + "' initializing - directory does not exist, creating...");
-				try
-				{
-					regionDirectory.mkdirs();
-				} 
-				catch (RuntimeException rX)
-				{
-					log.error(rX);
-					throw new RegionInitializationException("Group directory '" + regionDirectory.getAbsolutePath() + "' did not exist and could not be created.");
-				}
-			}
-			log.debug("'" + this.getName() + "' initializing - directory exists");
+			for(FileSystemVolume volume : volumes)
+				addVolume(volume);
 			
-			this.childGroups = new FileSystemGroupSet(regionDirectory, getInstanceFactoryChannel(), getSecondsReadWaitsForWriteCompletion(), isSetModificationTimeOnRead());
+			this.childGroups = new FileSystemVolumeGroupSet(getName(), volumes, getInstanceFactoryChannel(), getSecondsReadWaitsForWriteCompletion(), isSetModificationTimeOnRead());
 		} 
 		catch (CacheStateException x)
 		{
@@ -270,6 +299,43 @@ implements FileSystemRegionMBean
 		}
 		
 	}
+	
+	/**
+	 * Create the directory, and open the occupancy index, of this region on the given volume.
+	 * Called for each volume when the region is initialized and by the cache when a volume is 
+	 * added.
+	 * 
+	 * @param volume
+	 * @throws RegionInitializationException
+	 */
+	void addVolume(FileSystemVolume volume) 
+	throws RegionInitializationException
+	{
+		File volumeRegionDirectory = volume.getRegionDirectory(getName());
+		if(! volumeRegionDirectory.exists())
+		{
+			log.debug("'" + this.getName() + "' initializing - directory '" + volumeRegionDirectory.getPath() + "' does not exist, creating...");
+			try
+			{
+				volumeRegionDirectory.mkdirs();
+			} 
+			catch (RuntimeException rX)
+			{
+				log.error(rX);
+				throw new RegionInitializationException("Group directory '" + volumeRegionDirectory.getAbsolutePath() + "' did not exist and could not be created.");
+			}
+		}
+		log.debug("'" + this.getName() + "' initializing - directory '" + volumeRegionDirectory.getPath() + "' exists");
+		
+		try
+		{
+			occupancyIndices.put(volume, FileSystemOccupancyIndex.open(volumeRegionDirectory));
+		}
+		catch (IOException ioX)
+		{
+			log.warn("Unable to open the occupancy index of region '" + getName() + "' on '" + volumeRegionDirectory.getPath() + "', eviction will visit every group.", ioX);
+		}
+	}
 
 	// ======================================================================================================
 	// Child Group Management
@@ -323,4 +389,235 @@ implements FileSystemRegionMBean
 	{
 		return childGroups.hardReferenceIterator();
 	}
+
+	/**
+	 * Evict the groups last accessed before the judge's minimum, as reported by the 
+	 * occupancy index.  If the index is not available, or the judge is not based on
+	 * last access, then every group is visited.
+	 * 
+	 * @see gov.va.med.imaging.storage.cache.impl.PersistentRegion#evaluateAndEvictChildGroups(gov.va.med.imaging.storage.cache.EvictionJudge)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public int evaluateAndEvictChildGroups(EvictionJudge<Group> judge) 
+	throws CacheException
+	{
+		if( !isInitialized() || !isOccupancyIndexAvailable() || !(judge instanceof LastAccessedEvictionJudge) )
+			return super.evaluateAndEvictChildGroups(judge);
+		
+		long minimumLastAccessed = ((LastAccessedEvictionJudge<Group>)judge).getMinimumLastAccessed();
+		int totalEvictions = 0;
+		for(FileSystemOccupancyIndex occupancyIndex : occupancyIndices.values())
+			totalEvictions += evictGroupsLastAccessedBefore(occupancyIndex, minimumLastAccessed, judge);
+		
+		return totalEvictions;
+	}
+	
+	private int evictGroupsLastAccessedBefore(FileSystemOccupancyIndex occupancyIndex, long minimumLastAccessed, EvictionJudge<Group> judge) 
+	throws CacheException
+	{
+		int totalEvictions = 0;
+		for(String groupPathName : occupancyIndex.getGroupsLastAccessedBefore(minimumLastAccessed))
+		{
+			GroupPath groupPath = getGroupPath(groupPathName);
+			if(groupPath == null)
+			{
+				occupancyIndex.removeGroup(groupPathName);
+				continue;
+			}
+			
+			// the judge has the final word, the index only knows about the instances directly in the group
+			Group deadGroup = groupPath.getGroup();
+			if( !judge.isEvictable(deadGroup) )
+				continue;
+			
+			log.info("Group '" + groupPathName + " queued for eviction is being deleted.");
+			try
+			{
+				List<Group> ancestors = groupPath.getPath();
+				if(ancestors.isEmpty())
+					deleteChildGroup(deadGroup, false);
+				else
+					ancestors.get(ancestors.size() - 1).deleteChildGroup(deadGroup, false);
+				++totalEvictions;
+			}
+			catch (SimultaneousWriteException swX)
+			{
+				log.info("Unable to evict entirety of group '" + groupPathName + "', at least one instance is still open.  " + 
+						"The cache will clean itself up when the byte channel factory closes the instance."
+				);
+			}
+		}
+		
+		return totalEvictions;
+	}
+	
+	// ======================================================================================================
+	// Occupancy Index
+	// ======================================================================================================
+	/**
+	 * @see gov.va.med.imaging.storage.cache.impl.OccupancyIndexedRegion#isOccupancyIndexAvailable()
+	 */
+	@Override
+	public boolean isOccupancyIndexAvailable()
+	{
+		return volumes != null && occupancyIndices.size() == volumes.size();
+	}
+
+	/**
+	 * The candidates are taken from the volume with the least free space first, 
+	 * the other volumes contribute only when the fuller volumes cannot make up the 
+	 * target size.
+	 * 
+	 * @see gov.va.med.imaging.storage.cache.impl.OccupancyIndexedRegion#getEvictionCandidates(long)
+	 */
+	@Override
+	public TargetSizeGroupPathSet getEvictionCandidates(long targetSize) 
+	throws CacheException
+	{
+		TargetSizeGroupPathSet evictionCandidates = new TargetSizeGroupPathSet(targetSize);
+		if( !isOccupancyIndexAvailable() )
+			return evictionCandidates;
+		
+		List<GroupPath> groupPaths = new ArrayList<GroupPath>();
+		long remainingSize = targetSize;
+		for(FileSystemVolume volume : volumes.getVolumesByFreeSpace())
+		{
+			FileSystemOccupancyIndex occupancyIndex = occupancyIndices.get(volume);
+			if(occupancyIndex == null)
+				continue;
+			
+			try
+			{
+				occupancyIndex.snapshotIfNecessary();
+			}
+			catch (IOException ioX)
+			{
+				log.warn("Unable to write a snapshot of the occupancy index of region '" + getName() + "'.", ioX);
+			}
+			
+			for(String groupPathName : occupancyIndex.getLeastRecentlyAccessedGroups(remainingSize))
+			{
+				GroupPath groupPath = getGroupPath(groupPathName);
+				if(groupPath == null)
+					occupancyIndex.removeGroup(groupPathName);
+				else
+					groupPaths.add(groupPath);
+			}
+			
+			remainingSize -= occupancyIndex.getUsedSpace();
+			if(remainingSize <= 0L)
+				break;
+		}
+		evictionCandidates.addAll(groupPaths);
+		
+		return evictionCandidates;
+	}
+	
+	/**
+	 * @see gov.va.med.imaging.storage.cache.impl.OccupancyIndexedRegion#getGroupAccessStatistics()
+	 */
+	@Override
+	public List<GroupAccessStatistics> getGroupAccessStatistics()
+	{
+		List<GroupAccessStatistics> statistics = new ArrayList<GroupAccessStatistics>();
+		if( !isOccupancyIndexAvailable() )
+			return statistics;
+		for(FileSystemOccupancyIndex occupancyIndex : occupancyIndices.values())
+			statistics.addAll(occupancyIndex.getGroupAccessStatistics());
+		return statistics;
+	}
+	
+	/**
+	 * Resolve a group path, as kept in the occupancy index, to the Group and its ancestors.
+	 * 
+	 * @see gov.va.med.imaging.storage.cache.impl.OccupancyIndexedRegion#getGroupPath(java.lang.String)
+	 */
+	@Override
+	public GroupPath getGroupPath(String groupPathName) 
+	throws CacheException
+	{
+		List<Group> ancestors = new ArrayList<Group>();
+		Group group = null;
+		for(String groupName : groupPathName.split("/"))
+		{
+			if(group != null)
+				ancestors.add(group);
+			group = group == null ? getChildGroup(groupName) : group.getChildGroup(groupName);
+			if(group == null)
+				return null;
+		}
+		
+		return group == null ? null : new GroupPath(this, ancestors, group);
+	}
+
+	/**
+	 * @see gov.va.med.imaging.storage.cache.impl.filesystem.FileSystemRegionMBean#getOccupancyIndexInstanceCount()
+	 */
+	@Override
+	public int getOccupancyIndexInstanceCount()
+	{
+		if( !isOccupancyIndexAvailable() )
+			return -1;
+		
+		int instanceCount = 0;
+		for(FileSystemOccupancyIndex occupancyIndex : occupancyIndices.values())
+			instanceCount += occupancyIndex.getInstanceCount();
+		return instanceCount;
+	}
+
+	/**
+	 * @see gov.va.med.imaging.storage.cache.impl.filesystem.FileSystemRegionMBean#rebuildOccupancyIndex()
+	 */
+	@Override
+	public void rebuildOccupancyIndex()
+	{
+		if( !isOccupancyIndexAvailable() )
+		{
+			log.warn("Region '" + getName() + "' has no occupancy index to rebuild.");
+			return;
+		}
+		
+		for(FileSystemVolume volume : volumes)
+			rebuildOccupancyIndex(volume);
+	}
+	
+	/**
+	 * Rebuild the occupancy index of this region on one volume.
+	 */
+	void rebuildOccupancyIndex(FileSystemVolume volume)
+	{
+		FileSystemOccupancyIndex occupancyIndex = occupancyIndices.get(volume);
+		if(occupancyIndex == null)
+			return;
+		
+		try
+		{
+			occupancyIndex.rebuild();
+		}
+		catch (IOException ioX)
+		{
+			log.error("Unable to rebuild the occupancy index of region '" + getName() + "' on '" + volume.getRootDirectory().getPath() + "'.", ioX);
+		}
+	}
+
+	/**
+	 * Write a snapshot of the occupancy indices so that the region is indexed
+	 * as soon as it is next initialized.
+	 */
+	@Override
+	public void stop()
+	{
+		super.stop();
+		for(FileSystemOccupancyIndex occupancyIndex : occupancyIndices.values())
+			try
+			{
+				occupancyIndex.writeSnapshot();
+			}
+			catch (IOException ioX)
+			{
+				log.warn("Unable to write a snapshot of the occupancy index of region '" + getName() + "', the log will be replayed.", ioX);
+				occupancyIndex.flush();
+			}
+	}
 }
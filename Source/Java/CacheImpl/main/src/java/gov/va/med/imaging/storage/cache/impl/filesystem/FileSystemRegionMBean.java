@@ -22,10 +22,26 @@ extends PersistentRegionMBean
 
 	/**
 	 * Get the available free space on the device where this region is persisted.
+	 * When the region is spread across volumes this is the free space of the 
+	 * volume with the least free space.
 	 * Return -1 if the freespace cannot be calculated.
-	 * NOTEL under JRE 1.5 and before this will always return -1, for JRE 1.6
-	 * and later this should work correctly.
 	 */
 	public abstract long getFreeSpace();
+	
+	/**
+	 * Get the number of volumes this region is spread across.
+	 */
+	public abstract int getVolumeCount();
+
+	/**
+	 * Get the number of instances in the occupancy index of this region.
+	 * Return -1 if the region is not indexed.
+	 */
+	public abstract int getOccupancyIndexInstanceCount();
+	
+	/**
+	 * Discard the occupancy index and rebuild it from the file system.
+	 */
+	public abstract void rebuildOccupancyIndex();
 
 }
\ No newline at end of file
@@ -0,0 +1,248 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.storage.cache.impl.filesystem;
+
+import java.io.File;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * One of the mount points that a FileSystemCache spreads its groups across.
+ * 
+ * A volume limits the number of instance byte channels that may be open on it
+ * at once so that a busy region cannot queue more I/O on one device than it can
+ * usefully service.  A channel that cannot get a permit within the wait time
+ * proceeds anyway, the limit is a scheduling aid and not a reason to fail a request.
+ * 
+ * The free and total space of the volume are cached for a few seconds because the 
+ * storage threshold eviction asks for them on every sweep of every region.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class FileSystemVolume
+{
+	public final static long spaceRefreshInterval = 5000L;
+	
+	private final Logger logger = Logger.getLogger(FileSystemVolume.class);
+	private final File rootDirectory;
+	private final String rootPath;
+	private final int maxConcurrentIo;
+	private final long ioPermitWait;
+	private final Semaphore ioPermits;
+	
+	private volatile long freeSpace = -1L;
+	private volatile long totalSpace = -1L;
+	private volatile long spaceRefreshed = 0L;
+	
+	private final AtomicLong ioPermitsGranted = new AtomicLong();
+	private final AtomicLong ioPermitWaits = new AtomicLong();
+	private final AtomicLong ioPermitTimeouts = new AtomicLong();
+	
+	/**
+	 * 
+	 * @param rootDirectory - the directory on the volume that the cache is rooted in
+	 * @param maxConcurrentIo - the maximum number of open channels, zero or less for no limit
+	 * @param ioPermitWait - the milliseconds a channel waits for a permit before proceeding without one
+	 */
+	public FileSystemVolume(File rootDirectory, int maxConcurrentIo, long ioPermitWait)
+	{
+		if(rootDirectory == null)
+			throw new IllegalArgumentException("RootDirectory must be a valid directory.");
+		this.rootDirectory = rootDirectory.getAbsoluteFile();
+		String path = this.rootDirectory.getPath();
+		this.rootPath = path.endsWith(File.separator) ? path : path + File.separator;
+		this.maxConcurrentIo = maxConcurrentIo;
+		this.ioPermitWait = ioPermitWait;
+		this.ioPermits = maxConcurrentIo > 0 ? new Semaphore(maxConcurrentIo, true) : null;
+	}
+
+	public File getRootDirectory()
+	{
+		return rootDirectory;
+	}
+
+	public int getMaxConcurrentIo()
+	{
+		return maxConcurrentIo;
+	}
+
+	public long getIoPermitWait()
+	{
+		return ioPermitWait;
+	}
+	
+	/**
+	 * @return true if the given file is the root directory or is within it
+	 */
+	public boolean contains(File file)
+	{
+		String path = file.getAbsolutePath();
+		return path.startsWith(rootPath) || path.equals(rootDirectory.getPath());
+	}
+	
+	/**
+	 * The directory of the named region on this volume.
+	 */
+	public File getRegionDirectory(String regionName)
+	{
+		return new File(rootDirectory, regionName);
+	}
+	
+	// ===============================================================================================
+	// Space
+	// ===============================================================================================
+	/**
+	 * The free space on the device, -1 if it cannot be determined.
+	 */
+	public long getFreeSpace()
+	{
+		refreshSpaceIfStale();
+		return freeSpace;
+	}
+	
+	/**
+	 * The total space on the device, -1 if it cannot be determined.
+	 */
+	public long getTotalSpace()
+	{
+		refreshSpaceIfStale();
+		return totalSpace;
+	}
+	
+	/**
+	 * Discard the cached free and total space so that the next request reads them
+	 * from the device.
+	 */
+	public void invalidateSpace()
+	{
+		spaceRefreshed = 0L;
+	}
+	
+	private void refreshSpaceIfStale()
+	{
+		long now = System.currentTimeMillis();
+		if(now - spaceRefreshed < spaceRefreshInterval)
+			return;
+		
+		try
+		{
+			// File returns zero rather than failing when the path does not exist
+			long total = rootDirectory.getTotalSpace();
+			totalSpace = total == 0L ? -1L : total;
+			freeSpace = total == 0L ? -1L : rootDirectory.getFreeSpace();
+		}
+		catch (SecurityException x)
+		{
+			logger.error("Unable to read the space of volume '" + rootPath + "'.  Space threshold evictions will not work!", x);
+			totalSpace = -1L;
+			freeSpace = -1L;
+		}
+		spaceRefreshed = now;
+	}
+	
+	// ===============================================================================================
+	// I/O Permits
+	// ===============================================================================================
+	/**
+	 * Wait for permission to open a channel on this volume.
+	 * 
+	 * @return true if a permit was acquired and must be released with releaseIo(), 
+	 * false if the volume is not limited or the wait timed out
+	 */
+	public boolean acquireIo()
+	{
+		if(ioPermits == null)
+			return false;
+		
+		if(ioPermits.tryAcquire())
+		{
+			ioPermitsGranted.incrementAndGet();
+			return true;
+		}
+		
+		ioPermitWaits.incrementAndGet();
+		try
+		{
+			if(ioPermits.tryAcquire(ioPermitWait, TimeUnit.MILLISECONDS))
+			{
+				ioPermitsGranted.incrementAndGet();
+				return true;
+			}
+		}
+		catch (InterruptedException iX)
+		{
+			Thread.currentThread().interrupt();
+		}
+		
+		ioPermitTimeouts.incrementAndGet();
+		logger.warn("Timed out waiting for an I/O permit on volume '" + rootPath + "', proceeding without one.");
+		return false;
+	}
+	
+	/**
+	 * Release a permit acquired by acquireIo().
+	 */
+	public void releaseIo()
+	{
+		if(ioPermits != null)
+			ioPermits.release();
+	}
+	
+	/**
+	 * The number of channels currently holding a permit on this volume.
+	 */
+	public int getActiveIo()
+	{
+		return ioPermits == null ? 0 : maxConcurrentIo - ioPermits.availablePermits();
+	}
+
+	public long getIoPermitsGranted()
+	{
+		return ioPermitsGranted.get();
+	}
+
+	public long getIoPermitWaits()
+	{
+		return ioPermitWaits.get();
+	}
+
+	public long getIoPermitTimeouts()
+	{
+		return ioPermitTimeouts.get();
+	}
+
+	@Override
+	public String toString()
+	{
+		return rootDirectory.getPath() + 
+			" [free=" + getFreeSpace() + ", total=" + getTotalSpace() + 
+			", activeIo=" + getActiveIo() + "/" + (maxConcurrentIo > 0 ? String.valueOf(maxConcurrentIo) : "unlimited") + 
+			", permitWaits=" + getIoPermitWaits() + ", permitTimeouts=" + getIoPermitTimeouts() + "]";
+	}
+}
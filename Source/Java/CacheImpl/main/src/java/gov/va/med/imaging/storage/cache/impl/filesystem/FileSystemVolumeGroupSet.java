@@ -0,0 +1,122 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.storage.cache.impl.filesystem;
+
+import gov.va.med.imaging.storage.cache.Group;
+import gov.va.med.imaging.storage.cache.InstanceByteChannelFactory;
+import gov.va.med.imaging.storage.cache.exceptions.CacheException;
+
+import java.io.File;
+import java.lang.ref.SoftReference;
+
+/**
+ * The child groups of a FileSystemRegion whose groups are spread across the volumes 
+ * of a FileSystemVolumeSet.  Each volume has a directory for the region, a top-level 
+ * group lives in the region directory of exactly one volume.  New groups are created 
+ * on their home volume, existing groups are looked for on the home volume first and 
+ * then on the others.
+ * 
+ * With a single volume this behaves exactly as a FileSystemGroupSet rooted in
+ * the region directory.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+class FileSystemVolumeGroupSet
+extends FileSystemGroupSet
+{
+	private static final long serialVersionUID = 1L;
+	private final String regionName;
+	private final transient FileSystemVolumeSet volumes;
+	
+	FileSystemVolumeGroupSet(
+		String regionName,
+		FileSystemVolumeSet volumes,
+		InstanceByteChannelFactory byteChannelFactory,
+		int secondsReadWaitsForWriteCompletion,
+		boolean setModificationTimeOnRead)
+	{
+		super(volumes.getPrimaryVolume().getRegionDirectory(regionName), byteChannelFactory, secondsReadWaitsForWriteCompletion, setModificationTimeOnRead);
+		this.regionName = regionName;
+		this.volumes = volumes;
+	}
+	
+	/**
+	 * The directory of the named group on the volume it currently lives on, or
+	 * on its home volume if it does not exist.  The occupancy index of each volume
+	 * is asked before the file system.
+	 */
+	File getGroupDirectory(String name)
+	{
+		for(FileSystemVolume volume : volumes.getProbeOrder(name))
+		{
+			File regionDir = volume.getRegionDirectory(regionName);
+			File groupDir = new File(regionDir, name);
+			FileSystemOccupancyIndex occupancyIndex = FileSystemOccupancyIndex.findByDirectory(regionDir);
+			if( (occupancyIndex != null && occupancyIndex.isIndexedDirectory(groupDir)) || groupDir.isDirectory() )
+				return groupDir;
+		}
+		return new File(volumes.getHomeVolume(name).getRegionDirectory(regionName), name);
+	}
+	
+	/**
+	 * @see gov.va.med.imaging.storage.cache.impl.filesystem.FileSystemGroupSet#getOrCreate(java.lang.String, boolean)
+	 */
+	@Override
+	protected Group getOrCreate(String name, boolean create) 
+	throws CacheException
+	{
+		File childGroupDir = getGroupDirectory(name);
+		return create ? 
+			FileSystemGroup.getOrCreate(childGroupDir, getByteChannelFactory(), getSecondsReadWaitsForWriteCompletion(), isSetModificationTimeOnRead()) :
+			FileSystemGroup.get(childGroupDir, getByteChannelFactory(), getSecondsReadWaitsForWriteCompletion(), isSetModificationTimeOnRead());
+	}
+
+	/**
+	 * Synchronize with the region directories of every volume.
+	 * 
+	 * @see gov.va.med.imaging.storage.cache.impl.filesystem.FileSystemGroupSet#internalSynchronizeChildren()
+	 */
+	@Override
+	protected void internalSynchronizeChildren() 
+	throws CacheException
+	{
+		pruneNullSoftReferences();
+		
+		for(FileSystemVolume volume : volumes)
+		{
+			for(File childDir : getChildDirectories(volume.getRegionDirectory(regionName)))
+			{
+				String name = childDir.getName();
+				if(getTransient(name) == null)
+				{
+					FileSystemGroup childGroup = FileSystemGroup.get(childDir, getByteChannelFactory(), getSecondsReadWaitsForWriteCompletion(), isSetModificationTimeOnRead());
+					if(childGroup != null)
+						add( new SoftReference<FileSystemGroup>(childGroup) );
+				}
+			}
+		}
+	}
+}
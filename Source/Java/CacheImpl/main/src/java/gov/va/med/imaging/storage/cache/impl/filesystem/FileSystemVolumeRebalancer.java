@@ -0,0 +1,420 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.storage.cache.impl.filesystem;
+
+import gov.va.med.imaging.storage.cache.Region;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Moves the top-level groups of the regions of a FileSystemCache to their home 
+ * volume.  Groups are only on a volume other than their home after a volume has 
+ * been added, the lookups find them wherever they are, so rebalancing is only 
+ * needed to spread the space and the I/O over the new volume.
+ * 
+ * A group is moved only when it is quiescent, i.e. no channel is open on any of 
+ * its instances and nothing in it has been modified for the quiescent period.
+ * The group is copied to a staging directory on the home volume, checked again for
+ * quiescence and then renamed into the region directory of the home volume.  The rename 
+ * is the commit point, from then on lookups find the group on its home volume.  The files 
+ * that were copied are remembered, an instance written to the source after it was copied 
+ * is copied to the home volume again before the source is deleted but an instance that was 
+ * copied and has since been evicted from the home volume is not.  The check for open 
+ * channels and the delete of the source are made while no channel can be opened.  A source 
+ * that has an open channel, or could not be deleted, is merged and deleted by the next pass, 
+ * if the next rebalance no longer knows what was copied it only refreshes the files the
+ * home volume still has.
+ * 
+ * Groups that are busy are retried after the quiescent period, up to a limited 
+ * number of passes, and then left for the next rebalance.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+class FileSystemVolumeRebalancer
+implements Runnable
+{
+	public final static String stagingDirectoryName = ".rebalance";
+	public final static int maximumPasses = 12;
+	
+	private final Logger logger = Logger.getLogger(FileSystemVolumeRebalancer.class);
+	private final FileSystemCache cache;
+	private final FileSystemVolumeSet volumes;
+	private final long quiescentPeriod;
+	
+	// the files copied to each target group, relative to the group directory, kept until the source is deleted
+	private final Map<File, Set<String>> copiedFiles = new ConcurrentHashMap<File, Set<String>>();
+	
+	private volatile int groupsMoved = 0;
+	private volatile int groupsBusy = 0;
+	
+	FileSystemVolumeRebalancer(FileSystemCache cache, FileSystemVolumeSet volumes, long quiescentPeriod)
+	{
+		this.cache = cache;
+		this.volumes = volumes;
+		this.quiescentPeriod = quiescentPeriod;
+	}
+	
+	public int getGroupsMoved()
+	{
+		return groupsMoved;
+	}
+
+	public int getGroupsBusy()
+	{
+		return groupsBusy;
+	}
+
+	@Override
+	public void run()
+	{
+		logger.info("Rebalancing cache '" + cache.getName() + "' across " + volumes.size() + " volumes.");
+		for(int pass = 0; pass < maximumPasses; ++pass)
+		{
+			groupsBusy = 0;
+			for(Region region : cache.getRegions())
+				if(region instanceof FileSystemRegion)
+					rebalance((FileSystemRegion)region);
+			
+			if(groupsBusy == 0)
+				break;
+			
+			logger.info(groupsBusy + " groups of cache '" + cache.getName() + "' are in use and will be moved later.");
+			try
+			{
+				Thread.sleep(quiescentPeriod);
+			}
+			catch (InterruptedException iX)
+			{
+				break;
+			}
+		}
+		logger.info("Rebalancing cache '" + cache.getName() + "' complete, " + groupsMoved + " groups moved, " + groupsBusy + " groups left in place.");
+	}
+	
+	/**
+	 * Make one pass over the region, moving every quiescent group that is not on its home volume.
+	 */
+	void rebalance(FileSystemRegion region)
+	{
+		if(volumes.size() < 2)
+			return;
+		
+		FileSystemVolumeGroupSet groupSet;
+		try
+		{
+			groupSet = region.getVolumeGroupSet();
+		}
+		catch (Exception x)
+		{
+			logger.warn("Region '" + region.getName() + "' is not initialized and will not be rebalanced.", x);
+			return;
+		}
+		
+		Set<FileSystemVolume> changedVolumes = new HashSet<FileSystemVolume>();
+		for(FileSystemVolume volume : volumes)
+		{
+			File[] groupDirs = volume.getRegionDirectory(region.getName()).listFiles(new FileFilter()
+			{
+				public boolean accept(File pathname)
+				{
+					return pathname.isDirectory();
+				}
+			} );
+			if(groupDirs == null)
+				continue;
+			
+			for(File source : groupDirs)
+			{
+				FileSystemVolume home = volumes.getHomeVolume(source.getName());
+				if(home == volume)
+					continue;
+				
+				if( !isQuiescent(source) )
+				{
+					++groupsBusy;
+					continue;
+				}
+				
+				if( move(region, groupSet, source, home) )
+				{
+					++groupsMoved;
+					changedVolumes.add(volume);
+					changedVolumes.add(home);
+				}
+			}
+		}
+		
+		// the groups were moved under the file system, re-read the indices of the volumes involved
+		for(FileSystemVolume volume : changedVolumes)
+		{
+			region.rebuildOccupancyIndex(volume);
+			volume.invalidateSpace();
+		}
+	}
+	
+	private boolean isQuiescent(File groupDir)
+	{
+		if( isChannelOpen(groupDir) )
+			return false;
+		
+		return getLastModified(groupDir) < System.currentTimeMillis() - quiescentPeriod;
+	}
+	
+	private FileSystemByteChannelFactory getFileSystemChannelFactory()
+	{
+		return cache.getInstanceByteChannelFactory() instanceof FileSystemByteChannelFactory ?
+			(FileSystemByteChannelFactory)cache.getInstanceByteChannelFactory() : null;
+	}
+	
+	private boolean isChannelOpen(File groupDir)
+	{
+		FileSystemByteChannelFactory channelFactory = getFileSystemChannelFactory();
+		return channelFactory != null && channelFactory.isChannelOpen(groupDir);
+	}
+	
+	/**
+	 * @return true if no channel is open on the group and its last modification is still the given one
+	 */
+	private boolean isUnchanged(File groupDir, long lastModified)
+	{
+		return !isChannelOpen(groupDir) && getLastModified(groupDir) == lastModified;
+	}
+	
+	private boolean move(FileSystemRegion region, FileSystemVolumeGroupSet groupSet, File source, FileSystemVolume home)
+	{
+		String name = source.getName();
+		File target = new File(home.getRegionDirectory(region.getName()), name);
+		Set<String> copied = copiedFiles.get(target);
+		
+		// if the target exists, or this rebalance has copied it, then an earlier move was committed 
+		// but the source could not be deleted, the target may since have been evicted
+		if( !target.exists() && copied == null )
+		{
+			File staging = new File(new File(new File(home.getRootDirectory(), stagingDirectoryName), region.getName()), name);
+			long lastModified = getLastModified(source);
+			try
+			{
+				delete(staging);
+				copy(source, staging);
+			}
+			catch (IOException ioX)
+			{
+				logger.warn("Unable to copy group '" + source.getPath() + "' to '" + staging.getPath() + "', it will stay where it is.", ioX);
+				delete(staging);
+				return false;
+			}
+			
+			// an instance may have been opened or written while the group was copied
+			if( !isUnchanged(source, lastModified) )
+			{
+				logger.info("Group '" + source.getPath() + "' was used while it was copied, it will be moved later.");
+				delete(staging);
+				++groupsBusy;
+				return false;
+			}
+			
+			copied = new HashSet<String>();
+			listFiles(staging, "", copied);
+			if( !staging.renameTo(target) )
+			{
+				logger.warn("Unable to rename '" + staging.getPath() + "' to '" + target.getPath() + "', group will stay where it is.");
+				delete(staging);
+				return false;
+			}
+			copiedFiles.put(target, copied);
+		}
+		
+		// drop the transient group so the next reference resolves it on its home volume
+		groupSet.removeByName(name);
+		
+		// a reference obtained before the group was dropped may still be using the source,
+		// keep it from opening a channel between the check and the delete
+		FileSystemByteChannelFactory channelFactory = getFileSystemChannelFactory();
+		Lock channelOpenExclusion = channelFactory == null ? null : channelFactory.getChannelOpenExclusionLock();
+		if(channelOpenExclusion != null)
+			channelOpenExclusion.lock();
+		try
+		{
+			if( isChannelOpen(source) )
+			{
+				logger.info("Group '" + source.getPath() + "' was moved to '" + target.getPath() + "' but is in use, the next rebalance will delete it.");
+				return true;
+			}
+			// instances written to the source since it was copied
+			try
+			{
+				copyNewer(source, target, "", copied);
+			}
+			catch (IOException ioX)
+			{
+				logger.warn("Unable to copy the changes to group '" + source.getPath() + "' to '" + target.getPath() + "', the next rebalance will retry.", ioX);
+				return true;
+			}
+			if( !delete(source) )
+				logger.warn("Group '" + source.getPath() + "' was moved to '" + target.getPath() + "' but could not be deleted, the next rebalance will delete it.");
+			else
+			{
+				copiedFiles.remove(target);
+				logger.info("Group '" + source.getPath() + "' moved to '" + target.getPath() + "'.");
+			}
+		}
+		finally
+		{
+			if(channelOpenExclusion != null)
+				channelOpenExclusion.unlock();
+		}
+		
+		return true;
+	}
+	
+	// ===========================================================================================
+	// File helpers
+	// ===========================================================================================
+	private static long getLastModified(File file)
+	{
+		long lastModified = file.lastModified();
+		File[] children = file.listFiles();
+		if(children != null)
+			for(File child : children)
+				lastModified = Math.max(lastModified, getLastModified(child));
+		return lastModified;
+	}
+	
+	/**
+	 * Copy a directory tree, keeping the modification times because they are 
+	 * the last access times of the instances.
+	 */
+	private static void copy(File source, File target) 
+	throws IOException
+	{
+		if(source.isDirectory())
+		{
+			if( !target.isDirectory() && !target.mkdirs() )
+				throw new IOException("Unable to create directory '" + target.getPath() + "'.");
+			
+			File[] children = source.listFiles();
+			if(children == null)
+				throw new IOException("Unable to list directory '" + source.getPath() + "'.");
+			for(File child : children)
+				copy(child, new File(target, child.getName()));
+		}
+		else
+		{
+			FileInputStream in = new FileInputStream(source);
+			try
+			{
+				FileOutputStream out = new FileOutputStream(target);
+				try
+				{
+					FileChannel inChannel = in.getChannel();
+					FileChannel outChannel = out.getChannel();
+					long size = inChannel.size();
+					long position = 0L;
+					for(long transferred = 1L; position < size && transferred > 0L; position += transferred)
+						transferred = inChannel.transferTo(position, size - position, outChannel);
+					// transferTo() returns 0 if the source was truncated while it was copied
+					if(position < size)
+						throw new IOException("Copy of '" + source.getPath() + "' stopped after [" + position + "] of [" + size + "] bytes.");
+				}
+				finally
+				{
+					out.close();
+				}
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		target.setLastModified(source.lastModified());
+	}
+	
+	/**
+	 * Add the paths, relative to the given directory, of the files in the tree to the set.
+	 */
+	static void listFiles(File directory, String path, Set<String> files)
+	{
+		File[] children = directory.listFiles();
+		if(children == null)
+			return;
+		for(File child : children)
+			if(child.isDirectory())
+				listFiles(child, path + child.getName() + File.separator, files);
+			else
+				files.add(path + child.getName());
+	}
+	
+	/**
+	 * Copy the files of the source tree that were written since the copy, i.e. that are 
+	 * not in the copied set, or that are newer than their copy in the target tree. 
+	 * A copied file that is no longer in the target tree has been evicted and is not 
+	 * copied again.  If the copied set is not known every file is taken to have been copied.
+	 */
+	static void copyNewer(File source, File target, String path, Set<String> copied) 
+	throws IOException
+	{
+		if(source.isDirectory())
+		{
+			File[] children = source.listFiles();
+			if(children == null)
+				throw new IOException("Unable to list directory '" + source.getPath() + "'.");
+			for(File child : children)
+				copyNewer(child, new File(target, child.getName()), path + (child.isDirectory() ? child.getName() + File.separator : child.getName()), copied);
+		}
+		else if( source.exists() )
+		{
+			boolean written = copied != null && !copied.contains(path);
+			if( written || (target.exists() && source.lastModified() > target.lastModified()) )
+			{
+				File targetDirectory = target.getParentFile();
+				if( !targetDirectory.isDirectory() && !targetDirectory.mkdirs() )
+					throw new IOException("Unable to create directory '" + targetDirectory.getPath() + "'.");
+				copy(source, target);
+			}
+		}
+	}
+	
+	private static boolean delete(File file)
+	{
+		File[] children = file.listFiles();
+		if(children != null)
+			for(File child : children)
+				delete(child);
+		return !file.exists() || file.delete();
+	}
+}
@@ -0,0 +1,181 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.storage.cache.impl.filesystem;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The volumes that a FileSystemCache spreads its groups across.  The first volume
+ * is the cache location, the rest are the additional volume locations.
+ * 
+ * A top-level group is placed on the volume with the highest hash of the group name 
+ * and the volume (rendezvous hashing), so the placement of a group does not depend 
+ * on the order the volumes were configured in, and adding a volume moves only the
+ * groups that the new volume wins.  Lookups fall back to the other volumes so that
+ * groups written before a volume was added are found until they are rebalanced.
+ * 
+ * Volumes may be added at runtime but are never removed.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class FileSystemVolumeSet
+implements Iterable<FileSystemVolume>
+{
+	private final List<FileSystemVolume> volumes = new CopyOnWriteArrayList<FileSystemVolume>();
+	
+	public FileSystemVolumeSet(FileSystemVolume primaryVolume)
+	{
+		if(primaryVolume == null)
+			throw new IllegalArgumentException("The primary volume must be specified.");
+		volumes.add(primaryVolume);
+	}
+	
+	/**
+	 * Add a volume, if there is not already one with the same root directory.
+	 * 
+	 * @return true if the volume was added
+	 */
+	public synchronized boolean add(FileSystemVolume volume)
+	{
+		for(FileSystemVolume existing : volumes)
+			if(existing.getRootDirectory().equals(volume.getRootDirectory()))
+				return false;
+		return volumes.add(volume);
+	}
+	
+	public FileSystemVolume getPrimaryVolume()
+	{
+		return volumes.get(0);
+	}
+	
+	public int size()
+	{
+		return volumes.size();
+	}
+	
+	@Override
+	public Iterator<FileSystemVolume> iterator()
+	{
+		return volumes.iterator();
+	}
+	
+	/**
+	 * The volume that new top-level groups of the given name are created on.
+	 */
+	public FileSystemVolume getHomeVolume(String groupName)
+	{
+		FileSystemVolume home = null;
+		long homeScore = 0L;
+		for(FileSystemVolume volume : volumes)
+		{
+			long score = score(groupName, volume);
+			if(home == null || score > homeScore)
+			{
+				home = volume;
+				homeScore = score;
+			}
+		}
+		return home;
+	}
+	
+	/**
+	 * The volumes in the order that a group of the given name should be looked for,
+	 * its home volume first.
+	 */
+	public List<FileSystemVolume> getProbeOrder(String groupName)
+	{
+		List<FileSystemVolume> snapshot = new ArrayList<FileSystemVolume>(volumes);
+		if(snapshot.size() > 1)
+		{
+			FileSystemVolume home = getHomeVolume(groupName);
+			snapshot.remove(home);
+			snapshot.add(0, home);
+		}
+		return snapshot;
+	}
+	
+	/**
+	 * The volume containing the given file, null if the file is not on any volume.
+	 */
+	public FileSystemVolume getVolume(File file)
+	{
+		if(file == null)
+			return null;
+		
+		// the longest root wins, in case one volume is mounted within another
+		FileSystemVolume found = null;
+		for(FileSystemVolume volume : volumes)
+			if( volume.contains(file) && 
+				(found == null || volume.getRootDirectory().getPath().length() > found.getRootDirectory().getPath().length()) )
+				found = volume;
+		return found;
+	}
+	
+	/**
+	 * The volumes in ascending order of free space, volumes whose free space
+	 * cannot be determined are last.
+	 */
+	public List<FileSystemVolume> getVolumesByFreeSpace()
+	{
+		List<FileSystemVolume> snapshot = new ArrayList<FileSystemVolume>(volumes);
+		Collections.sort(snapshot, new Comparator<FileSystemVolume>()
+		{
+			@Override
+			public int compare(FileSystemVolume volume1, FileSystemVolume volume2)
+			{
+				long free1 = volume1.getFreeSpace();
+				long free2 = volume2.getFreeSpace();
+				if(free1 < 0L)
+					return free2 < 0L ? 0 : 1;
+				if(free2 < 0L)
+					return -1;
+				return free1 < free2 ? -1 : free1 > free2 ? 1 : 0;
+			}
+		});
+		return snapshot;
+	}
+	
+	/**
+	 * Mix the group name hash and the volume root hash so that similar names and
+	 * similar paths do not produce similar scores.
+	 */
+	private static long score(String groupName, FileSystemVolume volume)
+	{
+		long h = ((long)groupName.hashCode() << 32) ^ (volume.getRootDirectory().getPath().hashCode() & 0xFFFFFFFFL);
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
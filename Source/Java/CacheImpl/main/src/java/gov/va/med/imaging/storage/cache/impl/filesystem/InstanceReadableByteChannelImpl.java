@@ -1,6 +1,7 @@
 package gov.va.med.imaging.storage.cache.impl.filesystem;
 
-import gov.va.med.imaging.storage.cache.InstanceReadableByteChannel;
+import gov.va.med.imaging.channels.ChecksumUtility;
+import gov.va.med.imaging.storage.cache.FileInstanceReadableByteChannel;
 import gov.va.med.imaging.storage.cache.TracableComponent;
 import gov.va.med.imaging.storage.cache.exceptions.InstanceUnavailableException;
 import gov.va.med.imaging.storage.cache.impl.AbstractByteChannelFactory;
@@ -21,7 +22,7 @@ import java.util.zip.Checksum;
  *
  */
 public class InstanceReadableByteChannelImpl 
-implements InstanceReadableByteChannel, TracableComponent
+implements FileInstanceReadableByteChannel, TracableComponent
 {
 	/**
 	 * 
@@ -34,6 +35,7 @@ implements InstanceReadableByteChannel, TracableComponent
 	private long openedTime;					// keep this so that we could close the files ourselves if the client does not
 	private long lastAccessedTime;
 	private java.util.zip.Checksum checksum;
+	private byte[] checksumScratch = null;
 	private StackTraceElement[] instantiatingStackTrace = null;
 	
 	InstanceReadableByteChannelImpl(AbstractByteChannelFactory factory, File file) 
@@ -64,11 +66,19 @@ implements InstanceReadableByteChannel, TracableComponent
 		//lock = wrappedChannel.tryLock(0L, Long.MAX_VALUE, true);
 	}
 
-	File getFile()
+	@Override
+	public File getFile()
 	{
 		return this.file;
 	}
 	
+	@Override
+	public long size() 
+	throws IOException
+	{
+		return wrappedChannel.size();
+	}
+	
 	@Override
 	public StackTraceElement[] getInstantiatingStackTrace()
 	{
@@ -140,13 +150,16 @@ implements InstanceReadableByteChannel, TracableComponent
 		int bytesRead = 0;
 		
 		lastAccessedTime = System.currentTimeMillis();
+		int startPosition = dst.position();
 		bytesRead = wrappedChannel.read(dst);
 		
+		// checksum only the bytes read by this call
 		Checksum localChecksumRef = getChecksum();		// just for performance
-		if(localChecksumRef != null)
+		if(localChecksumRef != null && bytesRead > 0)
 		{
-			ByteBuffer localBuffer = dst.asReadOnlyBuffer();
-			for(localBuffer.flip(); localBuffer.hasRemaining(); localChecksumRef.update(localBuffer.get()) );
+			if(checksumScratch == null && !dst.hasArray())
+				checksumScratch = new byte[ChecksumUtility.DEFAULT_SCRATCH_BUFFER_SIZE];
+			ChecksumUtility.update(localChecksumRef, dst, startPosition, bytesRead, checksumScratch);
 		}
 		
 		return bytesRead;
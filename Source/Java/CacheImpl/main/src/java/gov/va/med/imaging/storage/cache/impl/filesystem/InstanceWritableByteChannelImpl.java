@@ -1,6 +1,7 @@
 package gov.va.med.imaging.storage.cache.impl.filesystem;
 
 import gov.va.med.imaging.StackTraceAnalyzer;
+import gov.va.med.imaging.channels.ChecksumUtility;
 import gov.va.med.imaging.storage.cache.InstanceWritableByteChannel;
 import gov.va.med.imaging.storage.cache.TracableComponent;
 import gov.va.med.imaging.storage.cache.exceptions.SimultaneousWriteException;
@@ -35,6 +36,7 @@ implements InstanceWritableByteChannel, TracableComponent
 	private long openedTime = 0L;					// keep this so that we could close the files ourselves if the client does not
 	private long lastAccessedTime = 0L;
 	private Checksum checksum;
+	private byte[] checksumScratch = null;
 	private StackTraceElement[] instantiatingStackTrace = null;
 	
 	InstanceWritableByteChannelImpl(AbstractByteChannelFactory factory, File file) 
@@ -89,12 +91,20 @@ implements InstanceWritableByteChannel, TracableComponent
 	public int write(ByteBuffer src) 
 	throws IOException
 	{
+		lastAccessedTime = System.currentTimeMillis();
+		int startPosition = src.position();
+		int bytesWritten = wrappedChannel.write(src);
+		
+		// checksum the bytes actually written
 		Checksum localChecksumRef = getChecksum();		// just for performance
-		if(localChecksumRef != null)
-			for(ByteBuffer localBuffer = src.asReadOnlyBuffer(); localBuffer.hasRemaining(); localChecksumRef.update(localBuffer.get()) );
+		if(localChecksumRef != null && bytesWritten > 0)
+		{
+			if(checksumScratch == null && !src.hasArray())
+				checksumScratch = new byte[ChecksumUtility.DEFAULT_SCRATCH_BUFFER_SIZE];
+			ChecksumUtility.update(localChecksumRef, src, startPosition, bytesWritten, checksumScratch);
+		}
 		
-		lastAccessedTime = System.currentTimeMillis();
-		return wrappedChannel.write(src);
+		return bytesWritten;
 	}
 	
 	public void close() 
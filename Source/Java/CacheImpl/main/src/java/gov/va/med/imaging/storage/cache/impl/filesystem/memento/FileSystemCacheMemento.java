@@ -34,4 +34,50 @@ implements Serializable
 	{
 		this.regionMementos = regionMementos;
 	}
+	
+	// the locations (URI or path) of the volumes in addition to the cache location
+	private List<String> additionalVolumeLocations = new ArrayList<String>();
+	public List<String> getAdditionalVolumeLocations()
+	{
+		return this.additionalVolumeLocations;
+	}
+	
+	public void setAdditionalVolumeLocations(List<String> additionalVolumeLocations)
+	{
+		this.additionalVolumeLocations = additionalVolumeLocations;
+	}
+	
+	// zero or less for no limit
+	private int maxConcurrentIoPerVolume = 0;
+	public int getMaxConcurrentIoPerVolume()
+	{
+		return this.maxConcurrentIoPerVolume;
+	}
+	
+	public void setMaxConcurrentIoPerVolume(int maxConcurrentIoPerVolume)
+	{
+		this.maxConcurrentIoPerVolume = maxConcurrentIoPerVolume;
+	}
+	
+	private long ioPermitWait = 0L;
+	public long getIoPermitWait()
+	{
+		return this.ioPermitWait;
+	}
+	
+	public void setIoPermitWait(long ioPermitWait)
+	{
+		this.ioPermitWait = ioPermitWait;
+	}
+	
+	private long rebalanceQuiescentPeriod = 0L;
+	public long getRebalanceQuiescentPeriod()
+	{
+		return this.rebalanceQuiescentPeriod;
+	}
+	
+	public void setRebalanceQuiescentPeriod(long rebalanceQuiescentPeriod)
+	{
+		this.rebalanceQuiescentPeriod = rebalanceQuiescentPeriod;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,415 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.storage.cache.impl.memory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A size bounded, byte weighted, store of instance content kept in memory.
+ * Entries are kept in access order and the least recently accessed entries
+ * are evicted when the total size of the content exceeds the maximum.
+ * Content may be kept on the heap or in direct (off heap) buffers, direct buffers
+ * keep large numbers of thumbnails from adding to garbage collection pressure.
+ * 
+ * All methods are synchronized on this instance, the critical sections are
+ * limited to map maintenance, content is never copied while the lock is held.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+class MemoryTier
+{
+	private final static Logger logger = Logger.getLogger(MemoryTier.class);
+	
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(256, 0.75f, true);
+	private long maximumBytes;
+	private long maximumInstanceBytes;
+	private boolean directBuffers;
+	private long usedBytes = 0L;
+	private long generation = 0L;		// incremented whenever content is invalidated
+	
+	private long hitCount = 0L;
+	private long missCount = 0L;
+	private long populationCount = 0L;
+	private long evictionCount = 0L;
+	private long invalidationCount = 0L;
+	private long rejectionCount = 0L;
+	
+	MemoryTier(long maximumBytes, long maximumInstanceBytes, boolean directBuffers)
+	{
+		this.maximumBytes = maximumBytes;
+		this.maximumInstanceBytes = Math.min(maximumInstanceBytes, maximumBytes);
+		this.directBuffers = directBuffers;
+	}
+
+	synchronized long getMaximumBytes()
+	{
+		return maximumBytes;
+	}
+
+	/**
+	 * Reducing the maximum size evicts entries immediately.
+	 * 
+	 * @param maximumBytes
+	 */
+	synchronized void setMaximumBytes(long maximumBytes)
+	{
+		this.maximumBytes = maximumBytes;
+		if(this.maximumInstanceBytes > maximumBytes)
+			this.maximumInstanceBytes = maximumBytes;
+		evictToSize(maximumBytes);
+	}
+
+	synchronized long getMaximumInstanceBytes()
+	{
+		return maximumInstanceBytes;
+	}
+
+	synchronized void setMaximumInstanceBytes(long maximumInstanceBytes)
+	{
+		this.maximumInstanceBytes = Math.min(maximumInstanceBytes, maximumBytes);
+	}
+
+	synchronized boolean isDirectBuffers()
+	{
+		return directBuffers;
+	}
+
+	synchronized void setDirectBuffers(boolean directBuffers)
+	{
+		this.directBuffers = directBuffers;
+	}
+
+	/**
+	 * Return true if content of the given size may be kept in this tier.
+	 * 
+	 * @param size
+	 * @return
+	 */
+	synchronized boolean isAcceptable(long size)
+	{
+		return size >= 0L && size <= maximumInstanceBytes;
+	}
+	
+	/**
+	 * Get the entry for the given key, counting a hit or a miss.
+	 * 
+	 * @param key
+	 * @return the entry or null if the content is not resident
+	 */
+	synchronized Entry get(String key)
+	{
+		Entry entry = entries.get(key);
+		if(entry == null)
+			++missCount;
+		else
+		{
+			++hitCount;
+			entry.lastAccessed = System.currentTimeMillis();
+		}
+		return entry;
+	}
+	
+	/**
+	 * Get the entry for the given key without counting a hit or a miss,
+	 * used to answer size and checksum requests.
+	 * 
+	 * @param key
+	 * @return
+	 */
+	synchronized Entry peek(String key)
+	{
+		return entries.get(key);
+	}
+	
+	/**
+	 * The invalidation generation, a reader that populates this tier must
+	 * get the generation before it starts reading the persistent content.
+	 * 
+	 * @see #populate(String, byte[], int, String, String, long)
+	 */
+	synchronized long getGeneration()
+	{
+		return generation;
+	}
+	
+	/**
+	 * Add content that was written through to the persistent tier, replacing 
+	 * any existing entry for the key.
+	 * The content is copied from the given array, the caller may reuse the array
+	 * when this method returns.
+	 * 
+	 * @param key
+	 * @param content
+	 * @param length
+	 * @param mediaType
+	 * @param checksumValue
+	 * @return true if the content was added, false if it was too large
+	 */
+	boolean put(String key, byte[] content, int length, String mediaType, String checksumValue)
+	{
+		return put(key, content, length, mediaType, checksumValue, -1L);
+	}
+	
+	/**
+	 * Add content that was read from the persistent tier.  The content is 
+	 * discarded if anything was invalidated since the given generation because
+	 * the content read may predate a write or a delete.
+	 * 
+	 * @param key
+	 * @param content
+	 * @param length
+	 * @param mediaType
+	 * @param checksumValue
+	 * @param readGeneration the value of getGeneration() before the read started
+	 * @return true if the content was added
+	 */
+	boolean populate(String key, byte[] content, int length, String mediaType, String checksumValue, long readGeneration)
+	{
+		return put(key, content, length, mediaType, checksumValue, readGeneration);
+	}
+	
+	private boolean put(String key, byte[] content, int length, String mediaType, String checksumValue, long readGeneration)
+	{
+		if(! isAcceptable(length))
+		{
+			reject(key);
+			return false;
+		}
+		
+		ByteBuffer buffer = isDirectBuffers() ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+		buffer.put(content, 0, length);
+		buffer.flip();
+		Entry entry = new Entry(buffer.asReadOnlyBuffer(), mediaType, checksumValue);
+		
+		synchronized(this)
+		{
+			if(readGeneration >= 0L && readGeneration != generation)
+				return false;
+			remove(key);
+			entries.put(key, entry);
+			usedBytes += length;
+			++populationCount;
+			evictToSize(maximumBytes);
+		}
+		return true;
+	}
+	
+	/**
+	 * Count content that was written but was too large to be kept, 
+	 * any existing entry for the key is stale and is removed.
+	 * 
+	 * @param key
+	 */
+	synchronized void reject(String key)
+	{
+		++rejectionCount;
+		invalidate(key);
+	}
+	
+	/**
+	 * Remove the entry for the given key, if it exists.
+	 * 
+	 * @param key
+	 */
+	synchronized void invalidate(String key)
+	{
+		++generation;
+		if(remove(key))
+			++invalidationCount;
+	}
+	
+	/**
+	 * Remove every entry whose key starts with the given prefix.
+	 * Used when a group is deleted from the persistent tier.
+	 * 
+	 * @param keyPrefix
+	 */
+	synchronized void invalidatePrefix(String keyPrefix)
+	{
+		++generation;
+		for(Iterator<Map.Entry<String, Entry>> iter = entries.entrySet().iterator(); iter.hasNext(); )
+		{
+			Map.Entry<String, Entry> mapEntry = iter.next();
+			if(mapEntry.getKey().startsWith(keyPrefix))
+			{
+				usedBytes -= mapEntry.getValue().getSize();
+				iter.remove();
+				++invalidationCount;
+			}
+		}
+	}
+	
+	synchronized void clear()
+	{
+		++generation;
+		invalidationCount += entries.size();
+		entries.clear();
+		usedBytes = 0L;
+	}
+	
+	synchronized List<String> getKeys()
+	{
+		return new ArrayList<String>(entries.keySet());
+	}
+	
+	private boolean remove(String key)
+	{
+		Entry existing = entries.remove(key);
+		if(existing == null)
+			return false;
+		usedBytes -= existing.getSize();
+		return true;
+	}
+	
+	private void evictToSize(long size)
+	{
+		Iterator<Entry> iter = entries.values().iterator();
+		while(usedBytes > size && iter.hasNext())
+		{
+			Entry victim = iter.next();
+			usedBytes -= victim.getSize();
+			iter.remove();
+			++evictionCount;
+		}
+		if(logger.isTraceEnabled())
+			logger.trace("MemoryTier now holds " + entries.size() + " entries, " + usedBytes + " bytes.");
+	}
+
+	// ======================================================================================
+	// Statistics
+	// ======================================================================================
+	synchronized long getUsedBytes()
+	{
+		return usedBytes;
+	}
+
+	synchronized int getEntryCount()
+	{
+		return entries.size();
+	}
+
+	synchronized long getHitCount()
+	{
+		return hitCount;
+	}
+
+	synchronized long getMissCount()
+	{
+		return missCount;
+	}
+
+	synchronized long getPopulationCount()
+	{
+		return populationCount;
+	}
+
+	synchronized long getEvictionCount()
+	{
+		return evictionCount;
+	}
+
+	synchronized long getInvalidationCount()
+	{
+		return invalidationCount;
+	}
+
+	synchronized long getRejectionCount()
+	{
+		return rejectionCount;
+	}
+	
+	synchronized void resetCounters()
+	{
+		hitCount = 0L;
+		missCount = 0L;
+		populationCount = 0L;
+		evictionCount = 0L;
+		invalidationCount = 0L;
+		rejectionCount = 0L;
+	}
+	
+	/**
+	 * The resident content of one instance.  The content buffer is read-only
+	 * and shared, readers must use getContent() to get their own view of it.
+	 */
+	static class Entry
+	{
+		private final ByteBuffer content;
+		private final String mediaType;
+		private final String checksumValue;
+		private final long created;
+		private volatile long lastAccessed;
+		
+		Entry(ByteBuffer content, String mediaType, String checksumValue)
+		{
+			this.content = content;
+			this.mediaType = mediaType;
+			this.checksumValue = checksumValue;
+			this.created = System.currentTimeMillis();
+			this.lastAccessed = this.created;
+		}
+
+		/**
+		 * @return an independent read-only view of the content, positioned at the start
+		 */
+		ByteBuffer getContent()
+		{
+			return content.duplicate();
+		}
+
+		int getSize()
+		{
+			return content.capacity();
+		}
+
+		String getMediaType()
+		{
+			return mediaType;
+		}
+
+		String getChecksumValue()
+		{
+			return checksumValue;
+		}
+
+		long getCreated()
+		{
+			return created;
+		}
+
+		long getLastAccessed()
+		{
+			return lastAccessed;
+		}
+	}
+}
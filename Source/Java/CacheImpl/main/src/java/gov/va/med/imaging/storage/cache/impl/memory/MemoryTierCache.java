@@ -0,0 +1,649 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.storage.cache.impl.memory;
+
+import gov.va.med.imaging.storage.cache.Cache;
+import gov.va.med.imaging.storage.cache.CacheLifecycleEvent;
+import gov.va.med.imaging.storage.cache.CacheStructureChangeListener;
+import gov.va.med.imaging.storage.cache.EvictionStrategy;
+import gov.va.med.imaging.storage.cache.EvictionTimer;
+import gov.va.med.imaging.storage.cache.Group;
+import gov.va.med.imaging.storage.cache.Instance;
+import gov.va.med.imaging.storage.cache.InstanceByteChannelFactory;
+import gov.va.med.imaging.storage.cache.Region;
+import gov.va.med.imaging.storage.cache.exceptions.CacheException;
+import gov.va.med.imaging.storage.cache.exceptions.CacheStateException;
+import gov.va.med.imaging.storage.cache.exceptions.RegionInitializationException;
+import gov.va.med.imaging.storage.cache.impl.jmx.AbstractCacheMBean;
+import gov.va.med.imaging.storage.cache.memento.CacheMemento;
+import gov.va.med.imaging.storage.cache.memento.RegionMemento;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenMBeanAttributeInfo;
+import javax.management.openmbean.OpenMBeanAttributeInfoSupport;
+import javax.management.openmbean.OpenMBeanConstructorInfoSupport;
+import javax.management.openmbean.OpenMBeanInfoSupport;
+import javax.management.openmbean.OpenMBeanOperationInfo;
+import javax.management.openmbean.OpenMBeanOperationInfoSupport;
+import javax.management.openmbean.OpenMBeanParameterInfo;
+import javax.management.openmbean.SimpleType;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A Cache decorator that keeps small instances, thumbnails and study metadata in
+ * particular, in a size bounded memory tier in front of the wrapped (persistent) Cache.
+ * Instances are keyed by region name, group path and instance name.
+ * 
+ * Writes are written through to the persistent Cache, content is added to the
+ * memory tier only after the persistent write closes normally.  Deletes, group deletes
+ * and clear() invalidate the memory tier before the persistent Cache is changed.
+ * A resident instance is only served if the persistent Cache still has the instance
+ * and its size agrees, so eviction from the persistent Cache also evicts from memory.
+ * Writes made through Group references, or through the wrapped Cache directly, 
+ * bypass this decorator and may leave stale content in memory until it is evicted.
+ * 
+ * If regionNames is set then only instances in those regions are kept in memory,
+ * instances in other regions are passed through to the persistent Cache.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class MemoryTierCache 
+extends AbstractCacheMBean
+implements Cache
+{
+	public final static long defaultMaximumBytes = 64L * 1024L * 1024L;
+	public final static long defaultMaximumInstanceBytes = 256L * 1024L;
+	
+	private final static String memoryTierMBeanObjectNamePrefix = "VistaImaging.ViX:type=CacheMemoryTier,name=";
+	private final static String keyDelimiter = "/";
+	
+	private Logger logger = Logger.getLogger(this.getClass());
+	private final Cache wrappedCache;
+	private final MemoryTier tier;
+	private Set<String> regionNames = null;		// null means all regions
+	private long counterResetDate = System.currentTimeMillis();
+
+	public MemoryTierCache(Cache wrappedCache)
+	{
+		this(wrappedCache, defaultMaximumBytes, defaultMaximumInstanceBytes);
+	}
+	
+	public MemoryTierCache(Cache wrappedCache, long maximumBytes, long maximumInstanceBytes)
+	{
+		if(wrappedCache == null)
+			throw new IllegalArgumentException(getClass().getSimpleName() + " was passed a null wrapped cache parameter.");
+		if(maximumBytes < 0L || maximumInstanceBytes < 0L)
+			throw new IllegalArgumentException(getClass().getSimpleName() + " was passed a negative maximum size.");
+		
+		this.wrappedCache = wrappedCache;
+		this.tier = new MemoryTier(maximumBytes, maximumInstanceBytes, false);
+		logger.info("MemoryTierCache <ctor> backed with cache '" + wrappedCache.getName() + "', maximum " + maximumBytes + " bytes.");
+	}
+
+	public Cache getWrappedCache()
+	{
+		return wrappedCache;
+	}
+	
+	// ======================================================================================
+	// Memory Tier Configuration
+	// ======================================================================================
+	/**
+	 * @return the comma delimited names of the regions kept in memory, or an empty string for all regions
+	 */
+	public synchronized String getRegionNames()
+	{
+		if(regionNames == null)
+			return "";
+		StringBuilder sb = new StringBuilder();
+		for(String regionName : regionNames)
+			sb.append(sb.length() > 0 ? "," : "").append(regionName);
+		return sb.toString();
+	}
+
+	/**
+	 * @param regionNames the comma delimited names of the regions to keep in memory,
+	 * null or empty for all regions
+	 */
+	public synchronized void setRegionNames(String regionNames)
+	{
+		Set<String> names = null;
+		if(regionNames != null && regionNames.trim().length() > 0)
+		{
+			names = new HashSet<String>();
+			for(String regionName : regionNames.split(","))
+				if(regionName.trim().length() > 0)
+					names.add(regionName.trim());
+		}
+		this.regionNames = names;
+		tier.clear();
+	}
+	
+	private synchronized boolean isMemoryTierRegion(String regionName)
+	{
+		return regionNames == null || regionNames.contains(regionName);
+	}
+
+	public Long getMaximumBytes()
+	{
+		return tier.getMaximumBytes();
+	}
+
+	public void setMaximumBytes(Long maximumBytes)
+	{
+		if(maximumBytes != null && maximumBytes.longValue() >= 0L)
+			tier.setMaximumBytes(maximumBytes.longValue());
+	}
+
+	public Long getMaximumInstanceBytes()
+	{
+		return tier.getMaximumInstanceBytes();
+	}
+
+	public void setMaximumInstanceBytes(Long maximumInstanceBytes)
+	{
+		if(maximumInstanceBytes != null && maximumInstanceBytes.longValue() >= 0L)
+			tier.setMaximumInstanceBytes(maximumInstanceBytes.longValue());
+	}
+
+	/**
+	 * @return true if content is kept in direct (off heap) buffers
+	 */
+	public Boolean isDirectBuffers()
+	{
+		return tier.isDirectBuffers();
+	}
+
+	/**
+	 * Direct buffers apply to content added after this is set.
+	 * Note that direct buffers are limited by -XX:MaxDirectMemorySize.
+	 * 
+	 * @param directBuffers
+	 */
+	public void setDirectBuffers(Boolean directBuffers)
+	{
+		tier.setDirectBuffers(directBuffers != null && directBuffers.booleanValue());
+	}
+	
+	// ======================================================================================
+	// Memory Tier Statistics
+	// ======================================================================================
+	public Long getUsedBytes()
+	{
+		return tier.getUsedBytes();
+	}
+
+	public Integer getEntryCount()
+	{
+		return tier.getEntryCount();
+	}
+
+	public Long getHitCount()
+	{
+		return tier.getHitCount();
+	}
+
+	public Long getMissCount()
+	{
+		return tier.getMissCount();
+	}
+
+	public Long getPopulationCount()
+	{
+		return tier.getPopulationCount();
+	}
+
+	public Long getEvictionCount()
+	{
+		return tier.getEvictionCount();
+	}
+
+	public Long getInvalidationCount()
+	{
+		return tier.getInvalidationCount();
+	}
+
+	public Long getRejectionCount()
+	{
+		return tier.getRejectionCount();
+	}
+	
+	public Long resetOperationCounters()
+	{
+		tier.resetCounters();
+		counterResetDate = System.currentTimeMillis();
+		return counterResetDate;
+	}
+	
+	/**
+	 * Remove everything from the memory tier, the persistent Cache is unchanged.
+	 */
+	public void clearMemoryTier()
+	{
+		tier.clear();
+	}
+	
+	// ======================================================================================
+	// Key Construction
+	// ======================================================================================
+	static String createKeyPrefix(String regionName, String[] group)
+	{
+		StringBuilder sb = new StringBuilder(regionName).append(keyDelimiter);
+		if(group != null)
+			for(String groupName : group)
+				sb.append(groupName).append(keyDelimiter);
+		return sb.toString();
+	}
+	
+	static String createKey(String regionName, String[] group, String key)
+	{
+		return createKeyPrefix(regionName, group) + key;
+	}
+
+	private Instance wrap(String regionName, String[] group, String key, Instance persistentInstance)
+	{
+		if(persistentInstance == null || ! isMemoryTierRegion(regionName))
+			return persistentInstance;
+		return new MemoryTierInstance(tier, createKey(regionName, group, key), persistentInstance);
+	}
+	
+	// ======================================================================================
+	// Instance and Group Access
+	// ======================================================================================
+	@Override
+	public Instance getOrCreateInstance(String regionName, String[] group, String key) 
+	throws CacheException
+	{
+		return wrap(regionName, group, key, wrappedCache.getOrCreateInstance(regionName, group, key));
+	}
+
+	@Override
+	public Instance getInstance(String regionName, String[] group, String key) 
+	throws CacheException
+	{
+		Instance persistentInstance = wrappedCache.getInstance(regionName, group, key);
+		if( isMemoryTierRegion(regionName) )
+		{
+			String tierKey = createKey(regionName, group, key);
+			if(persistentInstance == null)
+				tier.invalidate(tierKey);
+			else
+			{
+				MemoryTier.Entry entry = tier.peek(tierKey);
+				if(entry != null && entry.getSize() != persistentInstance.getSize())
+				{
+					logger.info("Memory tier content of '" + tierKey + "' does not agree with the persistent cache, invalidating.");
+					tier.invalidate(tierKey);
+				}
+			}
+		}
+		return wrap(regionName, group, key, persistentInstance);
+	}
+
+	@Override
+	public void deleteInstance(String regionName, String[] group, String key, boolean forceDelete) 
+	throws CacheException
+	{
+		tier.invalidate(createKey(regionName, group, key));
+		wrappedCache.deleteInstance(regionName, group, key, forceDelete);
+	}
+
+	@Override
+	public Group getOrCreateGroup(String regionName, String[] group) 
+	throws CacheException
+	{
+		return wrappedCache.getOrCreateGroup(regionName, group);
+	}
+
+	@Override
+	public Group getGroup(String regionName, String[] groupsName) 
+	throws CacheException
+	{
+		return wrappedCache.getGroup(regionName, groupsName);
+	}
+
+	@Override
+	public void deleteGroup(String regionName, String[] group, boolean forceDelete) 
+	throws CacheException
+	{
+		tier.invalidatePrefix(createKeyPrefix(regionName, group));
+		wrappedCache.deleteGroup(regionName, group, forceDelete);
+	}
+
+	@Override
+	public void clear() 
+	throws CacheException
+	{
+		tier.clear();
+		wrappedCache.clear();
+	}
+
+	// ======================================================================================
+	// Delegated Cache Methods
+	// ======================================================================================
+	@Override
+	public String getName()
+	{
+		return wrappedCache.getName();
+	}
+
+	@Override
+	public URI getLocationUri()
+	{
+		return wrappedCache.getLocationUri();
+	}
+
+	@Override
+	public String getLocationPath()
+	{
+		return wrappedCache.getLocationPath();
+	}
+
+	@Override
+	public String getLocationProtocol()
+	{
+		return wrappedCache.getLocationProtocol();
+	}
+
+	@Override
+	public Boolean isInitialized()
+	{
+		return wrappedCache.isInitialized();
+	}
+
+	@Override
+	public void setInitialized(Boolean initialized) 
+	throws CacheException
+	{
+		wrappedCache.setInitialized(initialized);
+	}
+
+	@Override
+	public Boolean isEnabled()
+	{
+		return wrappedCache.isEnabled();
+	}
+
+	@Override
+	public void setEnabled(Boolean enabled) 
+	throws CacheException
+	{
+		// a disabled cache does not see writes, content kept now may be stale when re-enabled
+		if(enabled == null || ! enabled.booleanValue())
+			tier.clear();
+		wrappedCache.setEnabled(enabled);
+	}
+
+	@Override
+	public void cacheLifecycleEvent(CacheLifecycleEvent event) 
+	throws CacheStateException
+	{
+		if(event == CacheLifecycleEvent.STOP)
+			tier.clear();
+		wrappedCache.cacheLifecycleEvent(event);
+	}
+
+	@Override
+	public Region createRegion(String name, String[] evictionStrategyNames) 
+	throws RegionInitializationException
+	{
+		return wrappedCache.createRegion(name, evictionStrategyNames);
+	}
+
+	@Override
+	public Region createRegion(RegionMemento regionMemento) 
+	throws RegionInitializationException
+	{
+		return wrappedCache.createRegion(regionMemento);
+	}
+
+	@Override
+	public void addRegion(Region region) 
+	throws CacheException
+	{
+		wrappedCache.addRegion(region);
+	}
+
+	@Override
+	public void addRegions(Collection<? extends Region> regions) 
+	throws CacheException
+	{
+		wrappedCache.addRegions(regions);
+	}
+
+	@Override
+	public Collection<? extends Region> getRegions()
+	{
+		return wrappedCache.getRegions();
+	}
+
+	@Override
+	public Region getRegion(String regionName)
+	{
+		return wrappedCache.getRegion(regionName);
+	}
+
+	@Override
+	public EvictionTimer getEvictionTimer()
+	{
+		return wrappedCache.getEvictionTimer();
+	}
+
+	@Override
+	public void addEvictionStrategy(EvictionStrategy evictionStrategy) 
+	throws CacheStateException
+	{
+		wrappedCache.addEvictionStrategy(evictionStrategy);
+	}
+
+	@Override
+	public void addEvictionStrategies(Collection<? extends EvictionStrategy> evictionStrategies) 
+	throws CacheStateException
+	{
+		wrappedCache.addEvictionStrategies(evictionStrategies);
+	}
+
+	@Override
+	public Collection<? extends EvictionStrategy> getEvictionStrategies()
+	{
+		return wrappedCache.getEvictionStrategies();
+	}
+
+	@Override
+	public EvictionStrategy getEvictionStrategy(String name)
+	{
+		return wrappedCache.getEvictionStrategy(name);
+	}
+
+	@Override
+	public InstanceByteChannelFactory<?> getInstanceByteChannelFactory()
+	{
+		return wrappedCache.getInstanceByteChannelFactory();
+	}
+
+	@Override
+	public CacheMemento createMemento()
+	{
+		return wrappedCache.createMemento();
+	}
+
+	@Override
+	public void registerCacheStructureChangeListener(CacheStructureChangeListener listener)
+	{
+		wrappedCache.registerCacheStructureChangeListener(listener);
+	}
+
+	@Override
+	public void unregisterCacheStructureChangeListener(CacheStructureChangeListener listener)
+	{
+		wrappedCache.unregisterCacheStructureChangeListener(listener);
+	}
+
+	// ============================================================================================	
+	// DynamicMBean Implementation
+	// ============================================================================================
+	/**
+	 * Register this memory tier with the platform MBean server.  The wrapped
+	 * Cache is registered by the CacheManager, this registers only the memory tier.
+	 */
+	public void registerMBean()
+	{
+		MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+		if(mbs != null)
+		{
+			String mBeanName = memoryTierMBeanObjectNamePrefix + getName();
+			try
+			{
+				mbs.registerMBean(this, new ObjectName(mBeanName));
+			} 
+			catch (InstanceAlreadyExistsException iaeX)
+			{
+				logger.warn("MBean instance '" + mBeanName + "' already exists, registration is being ignored");
+			}
+			catch (Exception x)
+			{
+				logger.warn("Unable to register memory tier with JMX, management and monitoring will not be available", x);
+			}
+		}
+	}
+	
+	private OpenMBeanInfoSupport mBeanInfo = null;
+	@Override
+	public synchronized MBeanInfo getMBeanInfo() 
+	{
+		if(mBeanInfo == null)
+			try
+			{
+				mBeanInfo = new OpenMBeanInfoSupport(
+					getClass().getName(), 
+					"In memory tier in front of cache '" + getName() + "'", 
+					createMBeanAttributeInfo(), 
+					new OpenMBeanConstructorInfoSupport[]{}, 
+					createMBeanOperationInfo(), 
+					new MBeanNotificationInfo[]{}
+				);
+			} 
+			catch (OpenDataException x)
+			{
+				logger.error("Error creating MBeanInfo, management and monitoring of the memory tier will not be available.", x);
+			}
+		
+		return mBeanInfo;
+	}
+	
+	private OpenMBeanAttributeInfo[] createMBeanAttributeInfo() 
+	throws OpenDataException
+	{
+		List<OpenMBeanAttributeInfo> attributes = new ArrayList<OpenMBeanAttributeInfo>();
+
+		attributes.add( 
+			new OpenMBeanAttributeInfoSupport("maximumBytes", "The maximum total size of the content kept in memory.", SimpleType.LONG, true, true, false)
+		);
+		attributes.add( 
+			new OpenMBeanAttributeInfoSupport("maximumInstanceBytes", "The maximum size of a single instance kept in memory.", SimpleType.LONG, true, true, false)
+		);
+		attributes.add( 
+			new OpenMBeanAttributeInfoSupport("directBuffers", "If true then content is kept in direct (off heap) buffers.", SimpleType.BOOLEAN, true, true, true)
+		);
+		attributes.add( 
+			new OpenMBeanAttributeInfoSupport("regionNames", "The comma delimited names of the regions kept in memory, empty for all regions.", SimpleType.STRING, true, true, false)
+		);
+		attributes.add( 
+			new OpenMBeanAttributeInfoSupport("usedBytes", "The total size of the content kept in memory.", SimpleType.LONG, true, false, false)
+		);
+		attributes.add( 
+			new OpenMBeanAttributeInfoSupport("entryCount", "The number of instances kept in memory.", SimpleType.INTEGER, true, false, false)
+		);
+		attributes.add( 
+			new OpenMBeanAttributeInfoSupport("hitCount", "The number of reads served from memory.", SimpleType.LONG, true, false, false)
+		);
+		attributes.add( 
+			new OpenMBeanAttributeInfoSupport("missCount", "The number of reads served from the persistent cache.", SimpleType.LONG, true, false, false)
+		);
+		attributes.add( 
+			new OpenMBeanAttributeInfoSupport("populationCount", "The number of instances added to memory.", SimpleType.LONG, true, false, false)
+		);
+		attributes.add( 
+			new OpenMBeanAttributeInfoSupport("evictionCount", "The number of instances evicted from memory to stay within the maximum size.", SimpleType.LONG, true, false, false)
+		);
+		attributes.add( 
+			new OpenMBeanAttributeInfoSupport("invalidationCount", "The number of instances removed from memory by a write, delete or clear.", SimpleType.LONG, true, false, false)
+		);
+		attributes.add( 
+			new OpenMBeanAttributeInfoSupport("rejectionCount", "The number of writes too large to be kept in memory.", SimpleType.LONG, true, false, false)
+		);
+		
+		return attributes.toArray(new OpenMBeanAttributeInfo[attributes.size()]);
+	}
+	
+	private OpenMBeanOperationInfo[] createMBeanOperationInfo()
+	{
+		List<OpenMBeanOperationInfo> operations = new ArrayList<OpenMBeanOperationInfo>();
+
+		operations.add(
+     		new OpenMBeanOperationInfoSupport("resetOperationCounters", "Reset the monitor counters", 
+     				new OpenMBeanParameterInfo[]{}, 
+     				SimpleType.STRING, MBeanOperationInfo.ACTION)
+     	);
+		operations.add(
+     		new OpenMBeanOperationInfoSupport("clearMemoryTier", "Remove all content from memory, the persistent cache is not changed", 
+     				new OpenMBeanParameterInfo[]{}, 
+     				SimpleType.VOID, MBeanOperationInfo.ACTION)
+     	);
+		
+		return operations.toArray(new OpenMBeanOperationInfoSupport[operations.size()]);
+	}
+
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature) 
+	throws MBeanException, ReflectionException
+	{
+		if("resetOperationCounters".equals(actionName))
+		{
+			Long lastResetDate = resetOperationCounters();
+			return getDateFormat().format(lastResetDate);
+		}
+		
+		return super.invoke(actionName, params, signature);
+	}
+}
@@ -0,0 +1,531 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.storage.cache.impl.memory;
+
+import gov.va.med.imaging.storage.cache.FileInstanceReadableByteChannel;
+import gov.va.med.imaging.storage.cache.Instance;
+import gov.va.med.imaging.storage.cache.InstanceReadableByteChannel;
+import gov.va.med.imaging.storage.cache.InstanceWritableByteChannel;
+import gov.va.med.imaging.storage.cache.SizedInstanceReadableByteChannel;
+import gov.va.med.imaging.storage.cache.events.InstanceLifecycleListener;
+import gov.va.med.imaging.storage.cache.exceptions.CacheException;
+import gov.va.med.imaging.storage.cache.impl.PersistentInstance;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.Date;
+import java.util.zip.Checksum;
+
+import org.apache.log4j.Logger;
+
+/**
+ * An Instance that serves its content from the memory tier when it is resident
+ * and from the persistent Instance when it is not.
+ * Content read from the persistent Instance is added to the memory tier when the
+ * read completes.  Content written is written through to the persistent Instance
+ * and is added to the memory tier only when the persistent write closes normally,
+ * so the memory tier never holds content that the persistent tier does not.
+ * 
+ * A channel that reads a file of the persistent tier remains a FileInstanceReadableByteChannel
+ * so that consumers can still serve a range of the file, content that is read from the file
+ * directly is not read through the channel and is not added to the memory tier.  Resident content is read through a channel that knows its size.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+class MemoryTierInstance
+implements Instance
+{
+	private final static Logger logger = Logger.getLogger(MemoryTierInstance.class);
+	
+	private final MemoryTier tier;
+	private final String key;
+	private final Instance persistentInstance;
+	
+	MemoryTierInstance(MemoryTier tier, String key, Instance persistentInstance)
+	{
+		this.tier = tier;
+		this.key = key;
+		this.persistentInstance = persistentInstance;
+	}
+
+	/**
+	 * @return the Instance in the persistent tier that this Instance fronts
+	 */
+	Instance getPersistentInstance()
+	{
+		return persistentInstance;
+	}
+
+	@Override
+	public String getName()
+	{
+		return persistentInstance.getName();
+	}
+
+	@Override
+	public String getMediaType()
+	{
+		MemoryTier.Entry entry = tier.peek(key);
+		return entry != null && entry.getMediaType() != null ? entry.getMediaType() : persistentInstance.getMediaType();
+	}
+
+	@Override
+	public InstanceReadableByteChannel getReadableChannel() 
+	throws CacheException
+	{
+		MemoryTier.Entry entry = tier.get(key);
+		if(entry != null)
+			return resident(entry);
+		
+		long readGeneration = tier.getGeneration();
+		return populating(persistentInstance.getReadableChannel(), readGeneration);
+	}
+
+	@Override
+	public InstanceReadableByteChannel getReadableChannelNoWait() 
+	throws CacheException
+	{
+		MemoryTier.Entry entry = tier.get(key);
+		if(entry != null)
+			return resident(entry);
+		
+		long readGeneration = tier.getGeneration();
+		return populating(persistentInstance.getReadableChannelNoWait(), readGeneration);
+	}
+	
+	/**
+	 * The persistent Instance is told of the read, otherwise the eviction of the persistent
+	 * tier would see the most read instances as the least recently used.
+	 */
+	private InstanceReadableByteChannel resident(MemoryTier.Entry entry)
+	{
+		if(persistentInstance instanceof PersistentInstance)
+			((PersistentInstance)persistentInstance).touch();
+		return new ResidentReadableByteChannel(entry);
+	}
+
+	/**
+	 * A tailing read is only requested while the persistent Instance is being
+	 * written, the write channel will populate the memory tier when it closes.
+	 */
+	@Override
+	public InstanceReadableByteChannel getTailingReadableChannel() 
+	throws CacheException
+	{
+		return persistentInstance.getTailingReadableChannel();
+	}
+
+	private InstanceReadableByteChannel populating(InstanceReadableByteChannel persistentChannel, long readGeneration) 
+	throws CacheException
+	{
+		if(persistentChannel == null)
+			return null;
+		
+		long size = persistentInstance.getSize();
+		if(! tier.isAcceptable(size))
+			return persistentChannel;
+		
+		if(persistentChannel instanceof FileInstanceReadableByteChannel)
+			return new PopulatingFileReadableByteChannel((FileInstanceReadableByteChannel)persistentChannel, (int)size, readGeneration);
+		return new PopulatingReadableByteChannel(persistentChannel, (int)size, readGeneration);
+	}
+	
+	@Override
+	public InstanceWritableByteChannel getWritableChannel() 
+	throws CacheException
+	{
+		tier.invalidate(key);
+		return writeThrough(persistentInstance.getWritableChannel());
+	}
+
+	@Override
+	public InstanceWritableByteChannel getWritableChannelNoWait() 
+	throws CacheException
+	{
+		tier.invalidate(key);
+		return writeThrough(persistentInstance.getWritableChannelNoWait());
+	}
+
+	private InstanceWritableByteChannel writeThrough(InstanceWritableByteChannel persistentChannel)
+	{
+		return persistentChannel == null ? null : new WriteThroughWritableByteChannel(persistentChannel);
+	}
+	
+	@Override
+	public Date getLastAccessed() 
+	throws CacheException
+	{
+		return persistentInstance.getLastAccessed();
+	}
+
+	@Override
+	public long getSize() 
+	throws CacheException
+	{
+		MemoryTier.Entry entry = tier.peek(key);
+		return entry != null ? entry.getSize() : persistentInstance.getSize();
+	}
+
+	@Override
+	public boolean isPersistent() 
+	throws CacheException
+	{
+		return persistentInstance.isPersistent();
+	}
+
+	@Override
+	public String getChecksumValue()
+	{
+		MemoryTier.Entry entry = tier.peek(key);
+		return entry != null && entry.getChecksumValue() != null ? entry.getChecksumValue() : persistentInstance.getChecksumValue();
+	}
+
+	@Override
+	public void delete(boolean forceDelete) 
+	throws CacheException
+	{
+		tier.invalidate(key);
+		persistentInstance.delete(forceDelete);
+	}
+
+	@Override
+	public void registerListener(InstanceLifecycleListener listener)
+	{
+		persistentInstance.registerListener(listener);
+	}
+
+	@Override
+	public void unregisterListener(InstanceLifecycleListener listener)
+	{
+		persistentInstance.unregisterListener(listener);
+	}
+
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName() + "[" + key + "]";
+	}
+
+	// ======================================================================================
+	// Channels
+	// ======================================================================================
+	/**
+	 * Reads resident content, no file handle or lock is held.
+	 */
+	private static class ResidentReadableByteChannel
+	implements SizedInstanceReadableByteChannel
+	{
+		private final ByteBuffer content;
+		private final long size;
+		private boolean open = true;
+		private long lastAccessedTime = System.currentTimeMillis();
+		
+		ResidentReadableByteChannel(MemoryTier.Entry entry)
+		{
+			this.content = entry.getContent();
+			this.size = this.content.remaining();
+		}
+
+		@Override
+		public long size()
+		{
+			return size;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) 
+		throws IOException
+		{
+			if(! open)
+				throw new ClosedChannelException();
+			lastAccessedTime = System.currentTimeMillis();
+			if(! content.hasRemaining())
+				return -1;
+			
+			int count = Math.min(dst.remaining(), content.remaining());
+			ByteBuffer slice = content.duplicate();
+			slice.limit(slice.position() + count);
+			dst.put(slice);
+			content.position(content.position() + count);
+			return count;
+		}
+
+		@Override
+		public boolean isOpen()
+		{
+			return open;
+		}
+
+		@Override
+		public void close() 
+		throws IOException
+		{
+			open = false;
+		}
+
+		@Override
+		public void error() 
+		throws IOException
+		{
+			close();
+		}
+
+		@Override
+		public Checksum getChecksum()
+		{
+			return null;
+		}
+
+		@Override
+		public long getLastAccessedTime()
+		{
+			return lastAccessedTime;
+		}
+
+		@Override
+		public StackTraceElement[] getInstantiatingStackTrace()
+		{
+			return null;
+		}
+	}
+	
+	/**
+	 * Reads from the persistent Instance, keeping a copy of the content.  The copy
+	 * is added to the memory tier if the channel is read to the end before it is closed.
+	 */
+	private class PopulatingReadableByteChannel
+	implements InstanceReadableByteChannel
+	{
+		private final InstanceReadableByteChannel persistentChannel;
+		private final long readGeneration;
+		private byte[] copy;
+		private int copyLength = 0;
+		private boolean endOfContent = false;
+		
+		PopulatingReadableByteChannel(InstanceReadableByteChannel persistentChannel, int size, long readGeneration)
+		{
+			this.persistentChannel = persistentChannel;
+			this.readGeneration = readGeneration;
+			this.copy = new byte[size];
+		}
+
+		@Override
+		public int read(ByteBuffer dst) 
+		throws IOException
+		{
+			int start = dst.position();
+			int count = persistentChannel.read(dst);
+			if(count < 0)
+				endOfContent = true;
+			else if(count > 0 && copy != null)
+			{
+				if(copyLength + count > copy.length)
+					copy = null;		// the content grew, it will not be kept
+				else
+				{
+					ByteBuffer readContent = dst.duplicate();
+					readContent.limit(start + count);
+					readContent.position(start);
+					readContent.get(copy, copyLength, count);
+					copyLength += count;
+				}
+			}
+			return count;
+		}
+
+		@Override
+		public boolean isOpen()
+		{
+			return persistentChannel.isOpen();
+		}
+
+		@Override
+		public void close() 
+		throws IOException
+		{
+			persistentChannel.close();
+			if(copy != null && (endOfContent || copyLength == copy.length))
+			{
+				if(tier.populate(key, copy, copyLength, persistentInstance.getMediaType(), persistentInstance.getChecksumValue(), readGeneration))
+					logger.debug("Added '" + key + "' (" + copyLength + " bytes) to the memory tier.");
+			}
+			copy = null;
+		}
+
+		@Override
+		public void error() 
+		throws IOException
+		{
+			copy = null;
+			persistentChannel.error();
+		}
+
+		@Override
+		public Checksum getChecksum()
+		{
+			return persistentChannel.getChecksum();
+		}
+
+		@Override
+		public long getLastAccessedTime()
+		{
+			return persistentChannel.getLastAccessedTime();
+		}
+
+		@Override
+		public StackTraceElement[] getInstantiatingStackTrace()
+		{
+			return persistentChannel.getInstantiatingStackTrace();
+		}
+	}
+	
+	/**
+	 * Reads a file of the persistent Instance, keeping a copy of the content that is read
+	 * through the channel.  Content that is read from the file directly is not copied, the
+	 * copy is then incomplete and is not added to the memory tier.
+	 */
+	private class PopulatingFileReadableByteChannel
+	extends PopulatingReadableByteChannel
+	implements FileInstanceReadableByteChannel
+	{
+		private final FileInstanceReadableByteChannel persistentFileChannel;
+		
+		PopulatingFileReadableByteChannel(FileInstanceReadableByteChannel persistentChannel, int size, long readGeneration)
+		{
+			super(persistentChannel, size, readGeneration);
+			this.persistentFileChannel = persistentChannel;
+		}
+
+		@Override
+		public File getFile()
+		{
+			return persistentFileChannel.getFile();
+		}
+
+		@Override
+		public long size() 
+		throws IOException
+		{
+			return persistentFileChannel.size();
+		}
+	}
+	
+	/**
+	 * Writes to the persistent Instance, keeping a copy of the content while it
+	 * fits in the memory tier.  The copy is added to the memory tier only after the
+	 * persistent channel has closed normally.
+	 */
+	private class WriteThroughWritableByteChannel
+	implements InstanceWritableByteChannel
+	{
+		private final InstanceWritableByteChannel persistentChannel;
+		private byte[] copy = new byte[4096];
+		private int copyLength = 0;
+		private boolean closed = false;
+		
+		WriteThroughWritableByteChannel(InstanceWritableByteChannel persistentChannel)
+		{
+			this.persistentChannel = persistentChannel;
+		}
+
+		@Override
+		public int write(ByteBuffer src) 
+		throws IOException
+		{
+			ByteBuffer written = src.duplicate();
+			int count = persistentChannel.write(src);
+			if(count > 0 && copy != null)
+			{
+				if(! tier.isAcceptable(copyLength + count))
+					copy = null;
+				else
+				{
+					if(copyLength + count > copy.length)
+					{
+						byte[] grown = new byte[Math.max(copy.length * 2, copyLength + count)];
+						System.arraycopy(copy, 0, grown, 0, copyLength);
+						copy = grown;
+					}
+					written.limit(written.position() + count);
+					written.get(copy, copyLength, count);
+					copyLength += count;
+				}
+			}
+			return count;
+		}
+
+		@Override
+		public boolean isOpen()
+		{
+			return persistentChannel.isOpen();
+		}
+
+		@Override
+		public void close() 
+		throws IOException
+		{
+			persistentChannel.close();
+			if(closed)
+				return;
+			closed = true;
+			if(copy != null)
+				tier.put(key, copy, copyLength, persistentInstance.getMediaType(), persistentInstance.getChecksumValue());
+			else
+				tier.reject(key);
+			copy = null;
+		}
+
+		@Override
+		public void error() 
+		throws IOException
+		{
+			closed = true;
+			copy = null;
+			tier.invalidate(key);
+			persistentChannel.error();
+		}
+
+		@Override
+		public Checksum getChecksum()
+		{
+			return persistentChannel.getChecksum();
+		}
+
+		@Override
+		public long getLastAccessedTime()
+		{
+			return persistentChannel.getLastAccessedTime();
+		}
+
+		@Override
+		public StackTraceElement[] getInstantiatingStackTrace()
+		{
+			return persistentChannel.getInstantiatingStackTrace();
+		}
+	}
+}
@@ -0,0 +1,314 @@
+/**
+ * 
+ */
+package gov.va.med.imaging.storage.cache.impl.eviction;
+
+import gov.va.med.imaging.storage.cache.impl.GroupAccessStatistics;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replays a recorded access trace against a simulated cache of a fixed capacity
+ * using the victim selection of each eviction strategy, and reports the hit ratios.
+ * 
+ * The trace is a transaction log dump, one TransactionLogEntry.toString() per line,
+ * e.g. as written by the transaction log listing.  Lines with an image URN and a
+ * non-zero FacadeBytesSent are replayed in order.  An image is cached in the group
+ * of its study, as it is in the cache.
+ * 
+ * Usage: EvictionStrategyReplay <trace file> <capacity in bytes> [protected percentage] [protected access count]
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class EvictionStrategyReplay
+{
+	private final static Pattern urnPattern = Pattern.compile("\\bURN=(\\S+)");
+	private final static Pattern bytesPattern = Pattern.compile("\\bFacadeBytesSent=(\\d+)");
+	private final static Pattern qualityPattern = Pattern.compile("\\bQuality=(\\S+)");
+	private final static String imageUrnPrefix = "urn:vaimage:";
+	
+	// the free space, as a percentage of capacity, at which eviction starts and that eviction frees up
+	private final static int minimumFreePercentage = 5;
+	private final static int targetFreePercentage = 10;
+	
+	public static void main(String[] args) 
+	throws IOException
+	{
+		if(args.length < 2)
+		{
+			System.out.println("Usage: EvictionStrategyReplay <trace file> <capacity in bytes> [protected percentage] [protected access count]");
+			return;
+		}
+		
+		List<Access> trace = readTrace(args[0]);
+		long capacity = Long.parseLong(args[1]);
+		int protectedSegmentPercentage = args.length > 2 ? Integer.parseInt(args[2]) : SegmentedLruEvictionStrategy.defaultProtectedSegmentPercentage;
+		int protectedAccessCount = args.length > 3 ? Integer.parseInt(args[3]) : SegmentedLruEvictionStrategy.defaultProtectedAccessCount;
+		
+		System.out.println(trace.size() + " accesses replayed against a capacity of " + capacity + " bytes.");
+		System.out.println( replay(trace, capacity, new LeastRecentlyAccessedSelector()) );
+		System.out.println( replay(trace, capacity, new SegmentedLruSelector(new SegmentedLruPolicy(protectedSegmentPercentage, protectedAccessCount))) );
+	}
+	
+	/**
+	 * Read the image accesses from a transaction log dump.
+	 */
+	static List<Access> readTrace(String traceFileName) 
+	throws IOException
+	{
+		List<Access> trace = new ArrayList<Access>();
+		BufferedReader reader = new BufferedReader(new FileReader(traceFileName));
+		try
+		{
+			for(String line = reader.readLine(); line != null; line = reader.readLine())
+			{
+				Matcher urnMatcher = urnPattern.matcher(line);
+				Matcher bytesMatcher = bytesPattern.matcher(line);
+				if( !urnMatcher.find() || !bytesMatcher.find() )
+					continue;
+				String urn = urnMatcher.group(1);
+				long size = Long.parseLong(bytesMatcher.group(1));
+				if( !urn.startsWith(imageUrnPrefix) || size <= 0L )
+					continue;
+				
+				Matcher qualityMatcher = qualityPattern.matcher(line);
+				String quality = qualityMatcher.find() ? qualityMatcher.group(1) : "";
+				trace.add( new Access(getStudyKey(urn), urn + "/" + quality, size) );
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+		return trace;
+	}
+	
+	/**
+	 * urn:vaimage:<site>-<image>-<study>-<icn>[-<modality>] is cached in the group of
+	 * <site>-<study>.
+	 */
+	private static String getStudyKey(String imageUrn)
+	{
+		String[] parts = imageUrn.substring(imageUrnPrefix.length()).split("-");
+		return parts.length < 3 ? imageUrn : parts[0] + "-" + parts[2];
+	}
+	
+	/**
+	 * Replay the trace against a cache of the given capacity.  When the cache is fuller
+	 * than (100 - minimumFreePercentage)% the selector chooses groups to evict to bring it 
+	 * to (100 - targetFreePercentage)%, as the storage threshold sweep does.
+	 */
+	static ReplayResult replay(List<Access> trace, long capacity, VictimSelector selector)
+	{
+		Map<String, SimulatedGroup> groups = new HashMap<String, SimulatedGroup>();
+		ReplayResult result = new ReplayResult(selector.toString());
+		long usedSpace = 0L;
+		long clock = 0L;
+		
+		for(Access access : trace)
+		{
+			++clock;
+			SimulatedGroup group = groups.get(access.groupKey);
+			if(group == null)
+			{
+				group = new SimulatedGroup(access.groupKey);
+				groups.put(access.groupKey, group);
+			}
+			group.lastAccessed = clock;
+			
+			Integer accessCount = group.instanceAccessCounts.get(access.instanceKey);
+			if(accessCount != null)
+			{
+				group.instanceAccessCounts.put(access.instanceKey, accessCount + 1);
+				result.hit(access.size);
+				continue;
+			}
+			
+			result.miss(access.size);
+			group.instanceAccessCounts.put(access.instanceKey, 1);
+			group.size += access.size;
+			usedSpace += access.size;
+			
+			if(usedSpace > capacity / 100L * (100 - minimumFreePercentage))
+			{
+				long evictSize = usedSpace - capacity / 100L * (100 - targetFreePercentage);
+				List<GroupAccessStatistics> statistics = new ArrayList<GroupAccessStatistics>(groups.size());
+				for(SimulatedGroup candidate : groups.values())
+					statistics.add(candidate.getStatistics());
+				for(GroupAccessStatistics victim : selector.selectVictims(statistics, evictSize))
+				{
+					groups.remove(victim.getGroupPath());
+					usedSpace -= victim.getSize();
+					result.evicted();
+				}
+			}
+		}
+		
+		return result;
+	}
+	
+	// =====================================================================================================
+	static class Access
+	{
+		final String groupKey;
+		final String instanceKey;
+		final long size;
+		
+		Access(String groupKey, String instanceKey, long size)
+		{
+			this.groupKey = groupKey;
+			this.instanceKey = instanceKey;
+			this.size = size;
+		}
+	}
+	
+	private static class SimulatedGroup
+	{
+		private final String key;
+		private final Map<String, Integer> instanceAccessCounts = new HashMap<String, Integer>();
+		private long size = 0L;
+		private long lastAccessed = 0L;
+		
+		SimulatedGroup(String key)
+		{
+			this.key = key;
+		}
+		
+		GroupAccessStatistics getStatistics()
+		{
+			int accessCount = 0;
+			for(Integer instanceAccessCount : instanceAccessCounts.values())
+				accessCount = Math.max(accessCount, instanceAccessCount);
+			return new GroupAccessStatistics(key, size, lastAccessed, accessCount);
+		}
+	}
+	
+	static class ReplayResult
+	{
+		private final String strategy;
+		private long requests = 0L;
+		private long hits = 0L;
+		private long requestedBytes = 0L;
+		private long hitBytes = 0L;
+		private long evictedGroups = 0L;
+		
+		ReplayResult(String strategy)
+		{
+			this.strategy = strategy;
+		}
+		
+		void hit(long size)
+		{
+			++requests;
+			++hits;
+			requestedBytes += size;
+			hitBytes += size;
+		}
+		
+		void miss(long size)
+		{
+			++requests;
+			requestedBytes += size;
+		}
+		
+		void evicted()
+		{
+			++evictedGroups;
+		}
+		
+		double getHitRatio()
+		{
+			return requests == 0L ? 0.0 : (double)hits / requests;
+		}
+		
+		double getByteHitRatio()
+		{
+			return requestedBytes == 0L ? 0.0 : (double)hitBytes / requestedBytes;
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format("%-40s hit ratio %6.2f%%, byte hit ratio %6.2f%%, %d groups evicted", 
+				strategy, getHitRatio() * 100.0, getByteHitRatio() * 100.0, evictedGroups);
+		}
+	}
+	
+	// =====================================================================================================
+	// The victim selection of each strategy
+	// =====================================================================================================
+	interface VictimSelector
+	{
+		List<GroupAccessStatistics> selectVictims(List<GroupAccessStatistics> groups, long evictSize);
+	}
+	
+	/**
+	 * The selection of the StorageThresholdEvictionStrategy, least recently accessed first.
+	 */
+	static class LeastRecentlyAccessedSelector
+	implements VictimSelector
+	{
+		public List<GroupAccessStatistics> selectVictims(List<GroupAccessStatistics> groups, long evictSize)
+		{
+			List<GroupAccessStatistics> byRecency = new ArrayList<GroupAccessStatistics>(groups);
+			Collections.sort(byRecency, new Comparator<GroupAccessStatistics>()
+			{
+				public int compare(GroupAccessStatistics group1, GroupAccessStatistics group2)
+				{
+					return group1.getLastAccessed() < group2.getLastAccessed() ? -1 : group1.getLastAccessed() > group2.getLastAccessed() ? 1 : 0;
+				}
+			});
+			
+			List<GroupAccessStatistics> victims = new ArrayList<GroupAccessStatistics>();
+			long victimSize = 0L;
+			for(GroupAccessStatistics group : byRecency)
+			{
+				if(victimSize >= evictSize)
+					break;
+				victims.add(group);
+				victimSize += group.getSize();
+			}
+			return victims;
+		}
+
+		@Override
+		public String toString()
+		{
+			return StorageThresholdEvictionStrategy.class.getSimpleName();
+		}
+	}
+	
+	static class SegmentedLruSelector
+	implements VictimSelector
+	{
+		private final SegmentedLruPolicy policy;
+		
+		SegmentedLruSelector(SegmentedLruPolicy policy)
+		{
+			this.policy = policy;
+		}
+		
+		public List<GroupAccessStatistics> selectVictims(List<GroupAccessStatistics> groups, long evictSize)
+		{
+			return policy.selectVictims(groups, evictSize);
+		}
+
+		@Override
+		public String toString()
+		{
+			return SegmentedLruEvictionStrategy.class.getSimpleName() + 
+				"(" + policy.getProtectedSegmentPercentage() + "%, " + policy.getProtectedAccessCount() + ")";
+		}
+	}
+}
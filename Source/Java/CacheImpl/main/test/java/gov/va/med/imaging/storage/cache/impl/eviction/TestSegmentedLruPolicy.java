@@ -0,0 +1,98 @@
+/**
+ * 
+ */
+package gov.va.med.imaging.storage.cache.impl.eviction;
+
+import gov.va.med.imaging.storage.cache.impl.GroupAccessStatistics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Test the victim selection of the segmented LRU eviction strategy.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TestSegmentedLruPolicy 
+extends TestCase
+{
+	private List<String> paths(List<GroupAccessStatistics> groups)
+	{
+		List<String> result = new ArrayList<String>();
+		for(GroupAccessStatistics group : groups)
+			result.add(group.getGroupPath());
+		return result;
+	}
+	
+	public void testProbationaryGroupsEvictedFirst()
+	{
+		SegmentedLruPolicy policy = new SegmentedLruPolicy(80, 2);
+		List<GroupAccessStatistics> groups = Arrays.asList(
+			new GroupAccessStatistics("hot-old", 100L, 1000L, 5),
+			new GroupAccessStatistics("prefetch-1", 100L, 2000L, 1),
+			new GroupAccessStatistics("prefetch-2", 100L, 3000L, 1),
+			new GroupAccessStatistics("hot-new", 100L, 4000L, 3) );
+		
+		assertEquals(Arrays.asList("prefetch-1"), paths(policy.selectVictims(groups, 100L)));
+		assertEquals(Arrays.asList("prefetch-1", "prefetch-2", "hot-old"), paths(policy.selectVictims(groups, 250L)));
+	}
+	
+	public void testProtectedSegmentIsLimited()
+	{
+		// only 50% may be protected, so the older of the two frequently accessed groups is probationary
+		// and, being the least recently accessed, is evicted first
+		SegmentedLruPolicy policy = new SegmentedLruPolicy(50, 2);
+		List<GroupAccessStatistics> groups = Arrays.asList(
+			new GroupAccessStatistics("hot-old", 100L, 1000L, 5),
+			new GroupAccessStatistics("prefetch", 100L, 2000L, 1),
+			new GroupAccessStatistics("hot-new", 200L, 4000L, 3) );
+		
+		assertEquals(Arrays.asList("hot-old", "prefetch"), paths(policy.selectVictims(groups, 200L)));
+	}
+	
+	public void testNothingToEvict()
+	{
+		SegmentedLruPolicy policy = new SegmentedLruPolicy(80, 2);
+		assertTrue(policy.selectVictims(new ArrayList<GroupAccessStatistics>(), 100L).isEmpty());
+		assertTrue(policy.selectVictims(Arrays.asList(new GroupAccessStatistics("a", 1L, 1L, 1)), 0L).isEmpty());
+	}
+	
+	/**
+	 * A working set of studies that is re-read, interleaved with a scan of prefetched studies
+	 * that are never read again.  LRU lets the scan flush the working set, segmented LRU does not.
+	 */
+	public void testReplayWithPrefetchScan()
+	{
+		List<EvictionStrategyReplay.Access> trace = new ArrayList<EvictionStrategyReplay.Access>();
+		Random random = new Random(7L);
+		int prefetched = 0;
+		for(int index = 0; index < 20000; ++index)
+		{
+			if(index % 2 == 0)
+			{
+				int study = random.nextInt(40);
+				trace.add( new EvictionStrategyReplay.Access("hot-" + study, "hot-" + study + "/image", 1000L) );
+			}
+			else
+			{
+				++prefetched;
+				trace.add( new EvictionStrategyReplay.Access("prefetch-" + prefetched, "prefetch-" + prefetched + "/image", 1000L) );
+			}
+		}
+		
+		long capacity = 50000L;
+		EvictionStrategyReplay.ReplayResult lru = 
+			EvictionStrategyReplay.replay(trace, capacity, new EvictionStrategyReplay.LeastRecentlyAccessedSelector());
+		EvictionStrategyReplay.ReplayResult slru = 
+			EvictionStrategyReplay.replay(trace, capacity, new EvictionStrategyReplay.SegmentedLruSelector(new SegmentedLruPolicy(80, 2)));
+		
+		assertTrue(slru + " is not better than " + lru, slru.getHitRatio() > lru.getHitRatio());
+		// nearly all of the working set accesses should hit
+		assertTrue(slru.toString(), slru.getHitRatio() > 0.45);
+	}
+}
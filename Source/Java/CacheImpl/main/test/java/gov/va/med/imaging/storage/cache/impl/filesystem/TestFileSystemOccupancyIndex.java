@@ -0,0 +1,258 @@
+/**
+ * 
+ */
+package gov.va.med.imaging.storage.cache.impl.filesystem;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import gov.va.med.imaging.storage.cache.InstanceWritableByteChannel;
+import gov.va.med.imaging.storage.cache.impl.GroupAccessStatistics;
+
+/**
+ * Test that the occupancy index tracks instance sizes and group last access,
+ * and that it survives being closed and reopened.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TestFileSystemOccupancyIndex 
+extends TestCase
+{
+	private File regionDirectory;
+	private FileSystemOccupancyIndex index;
+	
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		regionDirectory = File.createTempFile(getClass().getSimpleName(), ".region");
+		regionDirectory.delete();
+		regionDirectory.mkdirs();
+		index = FileSystemOccupancyIndex.open(regionDirectory);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		index.close();
+		delete(regionDirectory);
+		super.tearDown();
+	}
+	
+	private void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if(children != null)
+			for(File child : children)
+				delete(child);
+		file.delete();
+	}
+
+	public void testInstanceWriteUpdatesIndex() 
+	throws Exception
+	{
+		File instanceFile = new File(regionDirectory, "group1/group2/instance1");
+		FileSystemInstance instance = FileSystemInstance.getOrCreateInstance(instanceFile, FileSystemByteChannelFactory.create(), 60, false);
+		InstanceWritableByteChannel writable = instance.getWritableChannel();
+		writable.write(ByteBuffer.wrap(new byte[1000]));
+		writable.close();
+		
+		assertEquals(1, index.getInstanceCount());
+		assertEquals(1, index.getGroupCount());
+		assertEquals(1000L, index.getUsedSpace());
+		assertEquals(Arrays.asList("group1/group2"), index.getLeastRecentlyAccessedGroups(1000L));
+	}
+	
+	public void testUpdateReadDelete()
+	{
+		index.instanceUpdated("a/i1", 100L, 1000L);
+		index.instanceUpdated("a/i2", 200L, 2000L);
+		index.instanceUpdated("b/i1", 400L, 1500L);
+		assertEquals(700L, index.getUsedSpace());
+		assertEquals(2, index.getGroupCount());
+		assertEquals(Arrays.asList("b", "a"), index.getGroupsLastAccessedBefore(3000L));
+		
+		index.instanceRead("b/i1", null, 2500L);
+		assertEquals(Arrays.asList("a", "b"), index.getGroupsLastAccessedBefore(3000L));
+		assertEquals(Arrays.asList("a"), index.getGroupsLastAccessedBefore(2500L));
+		
+		index.instanceUpdated("a/i1", 50L, 3000L);
+		assertEquals(650L, index.getUsedSpace());
+		
+		index.instanceDeleted("b/i1");
+		assertEquals(250L, index.getUsedSpace());
+		assertEquals(1, index.getGroupCount());
+		assertEquals(2, index.getInstanceCount());
+	}
+
+	public void testLeastRecentlyAccessedGroups()
+	{
+		index.instanceUpdated("a/i1", 100L, 1000L);
+		index.instanceUpdated("b/i1", 500L, 2000L);
+		index.instanceUpdated("c/i1", 100L, 3000L);
+		index.instanceUpdated("d/i1", 100L, 4000L);
+		
+		// b does not fit in the target but the newer, smaller, groups do
+		List<String> groups = index.getLeastRecentlyAccessedGroups(300L);
+		assertEquals(Arrays.asList("a", "c", "d"), groups);
+		assertEquals(Arrays.asList("a", "b"), index.getLeastRecentlyAccessedGroups(600L));
+	}
+	
+	public void testReplayAfterReopen() 
+	throws Exception
+	{
+		index.instanceUpdated("a/i1", 100L, 1000L);
+		index.instanceUpdated("a/i2", 200L, 2000L);
+		index.instanceUpdated("b/c/i1", 400L, 1500L);
+		index.instanceRead("b/c/i1", null, 2500L);
+		index.instanceDeleted("a/i2");
+		index.close();
+		
+		// simulate a crash in the middle of writing a record
+		FileOutputStream partial = new FileOutputStream(new File(regionDirectory, FileSystemOccupancyIndex.indexFileName), true);
+		partial.write(new byte[]{'U', 0, 10, 'a'});
+		partial.close();
+		
+		index = FileSystemOccupancyIndex.open(regionDirectory);
+		assertEquals(500L, index.getUsedSpace());
+		assertEquals(2, index.getInstanceCount());
+		assertEquals(Arrays.asList("a", "b/c"), index.getGroupsLastAccessedBefore(3000L));
+		
+		// the partial record must be gone, else this record would be lost on the next replay
+		index.instanceUpdated("d/i1", 10L, 500L);
+		index.close();
+		index = FileSystemOccupancyIndex.open(regionDirectory);
+		assertEquals(510L, index.getUsedSpace());
+		assertEquals(Arrays.asList("d", "a", "b/c"), index.getGroupsLastAccessedBefore(3000L));
+	}
+	
+	public void testGroupAccessCounts() 
+	throws Exception
+	{
+		index.instanceUpdated("a/i1", 100L, 1000L);
+		index.instanceUpdated("a/i2", 100L, 1000L);
+		index.instanceUpdated("b/i1", 100L, 1500L);
+		index.instanceRead("a/i2", null, 2000L);
+		index.instanceRead("a/i2", null, 2100L);
+		index.close();
+		
+		index = FileSystemOccupancyIndex.open(regionDirectory);
+		List<GroupAccessStatistics> groups = index.getGroupAccessStatistics();
+		assertEquals(2, groups.size());
+		assertEquals("b", groups.get(0).getGroupPath());
+		assertEquals(1, groups.get(0).getAccessCount());
+		assertEquals("a", groups.get(1).getGroupPath());
+		assertEquals(3, groups.get(1).getAccessCount());
+		assertEquals(200L, groups.get(1).getSize());
+		assertEquals(2100L, groups.get(1).getLastAccessed());
+	}
+	
+	public void testSnapshotAfterReopen() 
+	throws Exception
+	{
+		index.instanceUpdated("a/i1", 100L, 1000L);
+		index.instanceUpdated("a/i2", 200L, 2000L);
+		index.instanceRead("a/i2", null, 2100L);
+		long generation = index.getGeneration();
+		index.writeSnapshot();
+		assertEquals(generation + 1L, index.getGeneration());
+		
+		// the log after the snapshot is replayed on top of it
+		index.instanceUpdated("b/c/i1", 400L, 1500L);
+		index.instanceDeleted("a/i1");
+		index.close();
+		
+		index = FileSystemOccupancyIndex.open(regionDirectory);
+		assertEquals(generation + 1L, index.getGeneration());
+		assertEquals(600L, index.getUsedSpace());
+		assertEquals(2, index.getInstanceCount());
+		assertEquals(Arrays.asList("b/c", "a"), index.getGroupsLastAccessedBefore(3000L));
+		assertEquals(2, index.getGroupAccessStatistics().get(1).getAccessCount());
+		
+		// only the snapshot in use is kept
+		index.writeSnapshot();
+		String[] snapshots = regionDirectory.list(new FilenameFilter()
+		{
+			@Override
+			public boolean accept(File dir, String name)
+			{
+				return name.startsWith(FileSystemOccupancyIndex.snapshotFileName);
+			}
+		});
+		assertEquals(Arrays.asList(FileSystemOccupancyIndex.snapshotFileName + '.' + (generation + 2L)), Arrays.asList(snapshots));
+	}
+	
+	public void testDamagedSnapshotIsRebuilt() 
+	throws Exception
+	{
+		File groupDirectory = new File(regionDirectory, "a");
+		groupDirectory.mkdirs();
+		FileOutputStream out = new FileOutputStream(new File(groupDirectory, "i1"));
+		out.write(new byte[100]);
+		out.close();
+		index.instanceUpdated("a/i1", 100L, 1000L);
+		index.instanceUpdated("a/i2", 200L, 2000L);
+		index.writeSnapshot();
+		long generation = index.getGeneration();
+		index.close();
+		
+		RandomAccessFile snapshot = new RandomAccessFile(new File(regionDirectory, FileSystemOccupancyIndex.snapshotFileName + '.' + generation), "rw");
+		snapshot.seek(snapshot.length() / 2L);
+		int b = snapshot.read();
+		snapshot.seek(snapshot.length() / 2L);
+		snapshot.write(b ^ 0xFF);
+		snapshot.close();
+		
+		// the log follows a snapshot that cannot be used, so the file system is walked
+		index = FileSystemOccupancyIndex.open(regionDirectory);
+		assertEquals(1, index.getInstanceCount());
+		assertEquals(100L, index.getUsedSpace());
+		assertTrue(index.getGeneration() > generation);
+	}
+	
+	public void testIndexedDirectories() 
+	throws Exception
+	{
+		index.instanceUpdated("a/b/i1", 100L, 1000L);
+		index.instanceUpdated("a/i1", 100L, 1000L);
+		
+		assertTrue(index.isIndexedDirectory(new File(regionDirectory, "a")));
+		assertTrue(index.isIndexedDirectory(new File(regionDirectory, "a/b")));
+		assertFalse(index.isIndexedDirectory(new File(regionDirectory, "c")));
+		assertTrue(index.isIndexedInstance(new File(regionDirectory, "a/b/i1")));
+		assertFalse(index.isIndexedInstance(new File(regionDirectory, "a/b/i2")));
+		assertSame(index, FileSystemOccupancyIndex.findByDirectory(new File(regionDirectory, "a/b")));
+		
+		index.instanceDeleted("a/b/i1");
+		assertFalse(index.isIndexedDirectory(new File(regionDirectory, "a/b")));
+		assertTrue(index.isIndexedDirectory(new File(regionDirectory, "a")));
+		index.instanceDeleted("a/i1");
+		assertFalse(index.isIndexedDirectory(new File(regionDirectory, "a")));
+	}
+	
+	public void testRebuildFromFileSystem() 
+	throws Exception
+	{
+		File groupDirectory = new File(regionDirectory, "a/b");
+		groupDirectory.mkdirs();
+		FileOutputStream out = new FileOutputStream(new File(groupDirectory, "i1"));
+		out.write(new byte[123]);
+		out.close();
+		out = new FileOutputStream(new File(groupDirectory, "i1" + FileSystemInstance.checksumFileExtension));
+		out.write(new byte[10]);
+		out.close();
+		
+		index.rebuild();
+		assertEquals(123L, index.getUsedSpace());
+		assertEquals(1, index.getInstanceCount());
+		assertEquals(Arrays.asList("a/b"), index.getLeastRecentlyAccessedGroups(1000L));
+	}
+}
@@ -0,0 +1,350 @@
+/**
+ * 
+ */
+package gov.va.med.imaging.storage.cache.impl.filesystem;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+
+import junit.framework.TestCase;
+
+import gov.va.med.imaging.storage.cache.Group;
+import gov.va.med.imaging.storage.cache.Instance;
+import gov.va.med.imaging.storage.cache.InstanceReadableByteChannel;
+import gov.va.med.imaging.storage.cache.InstanceWritableByteChannel;
+import gov.va.med.imaging.storage.cache.Region;
+import gov.va.med.imaging.storage.cache.impl.CacheFactory;
+
+/**
+ * Test the placement of groups across the volumes of a FileSystemCache, the
+ * per-volume I/O permits and the rebalancing of groups onto an added volume.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TestFileSystemVolumes 
+extends TestCase
+{
+	private File testDirectory;
+	private List<FileSystemCache> caches = new ArrayList<FileSystemCache>();
+	
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		testDirectory = File.createTempFile(getClass().getSimpleName(), ".volumes");
+		testDirectory.delete();
+		testDirectory.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		for(FileSystemCache cache : caches)
+			for(FileSystemVolume volume : cache.getVolumes())
+				for(Region region : cache.getRegions())
+				{
+					FileSystemOccupancyIndex index = FileSystemOccupancyIndex.find(new File(volume.getRegionDirectory(region.getName()), "x"));
+					if(index != null)
+						index.close();
+				}
+		delete(testDirectory);
+		super.tearDown();
+	}
+	
+	private void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if(children != null)
+			for(File child : children)
+				delete(child);
+		file.delete();
+	}
+	
+	private FileSystemVolume createVolume(String name, int maxConcurrentIo)
+	{
+		File root = new File(testDirectory, name);
+		root.mkdirs();
+		return new FileSystemVolume(root, maxConcurrentIo, 50L);
+	}
+	
+	private FileSystemCache createCache(String... additionalVolumes) 
+	throws Exception
+	{
+		FileSystemCache cache = (FileSystemCache)CacheFactory.getSingleton().createCache("volume-test", new File(testDirectory, "volume0").toURI(), (String)null);
+		for(String additionalVolume : additionalVolumes)
+			cache.addVolume(new File(testDirectory, additionalVolume).getAbsolutePath());
+		cache.addRegion(cache.createRegion("region", new String[]{}));
+		cache.setInitialized(true);
+		caches.add(cache);
+		return cache;
+	}
+	
+	private void writeInstance(Group group, String instanceName, int size) 
+	throws Exception
+	{
+		Instance instance = ((FileSystemGroup)group).getOrCreateChildInstance(instanceName);
+		InstanceWritableByteChannel writable = instance.getWritableChannel();
+		writable.write(ByteBuffer.wrap(new byte[size]));
+		writable.close();
+	}
+	
+	private int readInstance(Group group, String instanceName) 
+	throws Exception
+	{
+		Instance instance = ((FileSystemGroup)group).getChildInstance(instanceName);
+		if(instance == null)
+			return -1;
+		InstanceReadableByteChannel readable = instance.getReadableChannel();
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		int total = 0;
+		for(int read = readable.read(buffer); read > 0; read = readable.read(buffer))
+		{
+			total += read;
+			buffer.clear();
+		}
+		readable.close();
+		return total;
+	}
+
+	public void testHomeVolumeIsStableAndSpread()
+	{
+		FileSystemVolumeSet volumes = new FileSystemVolumeSet(createVolume("a", 0));
+		volumes.add(createVolume("b", 0));
+		volumes.add(createVolume("c", 0));
+		assertFalse( volumes.add(createVolume("c", 0)) );
+		assertEquals(3, volumes.size());
+		
+		Map<String, FileSystemVolume> homes = new HashMap<String, FileSystemVolume>();
+		Map<FileSystemVolume, Integer> counts = new HashMap<FileSystemVolume, Integer>();
+		for(int index = 0; index < 300; ++index)
+		{
+			String name = "group" + index;
+			FileSystemVolume home = volumes.getHomeVolume(name);
+			assertSame(home, volumes.getHomeVolume(name));
+			assertSame(home, volumes.getProbeOrder(name).get(0));
+			homes.put(name, home);
+			counts.put(home, counts.containsKey(home) ? counts.get(home) + 1 : 1);
+		}
+		for(FileSystemVolume volume : volumes)
+			assertTrue(volume.getRootDirectory().getName() + " has too few groups", counts.get(volume) > 50);
+		
+		// adding a volume only moves groups onto the new volume
+		FileSystemVolume added = createVolume("d", 0);
+		volumes.add(added);
+		int moved = 0;
+		for(Map.Entry<String, FileSystemVolume> entry : homes.entrySet())
+		{
+			FileSystemVolume home = volumes.getHomeVolume(entry.getKey());
+			if(home != entry.getValue())
+			{
+				assertSame(added, home);
+				++moved;
+			}
+		}
+		assertTrue(moved > 30 && moved < 120);
+	}
+	
+	public void testGetVolumeOfFile()
+	{
+		FileSystemVolume a = createVolume("a", 0);
+		FileSystemVolume ab = createVolume("a/b", 0);
+		FileSystemVolumeSet volumes = new FileSystemVolumeSet(a);
+		volumes.add(ab);
+		
+		assertSame(a, volumes.getVolume(new File(a.getRootDirectory(), "region/group/instance")));
+		assertSame(ab, volumes.getVolume(new File(ab.getRootDirectory(), "region/group/instance")));
+		assertNull(volumes.getVolume(new File(testDirectory, "ab/region/group/instance")));
+	}
+	
+	public void testIoPermits() 
+	throws Exception
+	{
+		FileSystemVolume volume = createVolume("a", 1);
+		assertTrue(volume.acquireIo());
+		assertEquals(1, volume.getActiveIo());
+		assertFalse(volume.acquireIo());
+		assertEquals(1L, volume.getIoPermitTimeouts());
+		volume.releaseIo();
+		assertEquals(0, volume.getActiveIo());
+		
+		FileSystemVolume unlimited = createVolume("b", 0);
+		assertFalse(unlimited.acquireIo());
+		assertEquals(0L, unlimited.getIoPermitTimeouts());
+		
+		// channels hold a permit of their volume until they are closed
+		FileSystemByteChannelFactory factory = FileSystemByteChannelFactory.create();
+		factory.setVolumes(new FileSystemVolumeSet(volume));
+		FileSystemInstance instance = FileSystemInstance.getOrCreateInstance(new File(volume.getRootDirectory(), "region/group/instance"), factory, 60, false);
+		InstanceWritableByteChannel writable = instance.getWritableChannel();
+		assertEquals(1, volume.getActiveIo());
+		writable.write(ByteBuffer.wrap(new byte[100]));
+		writable.close();
+		assertEquals(0, volume.getActiveIo());
+		assertEquals(2L, volume.getIoPermitsGranted());
+	}
+	
+	public void testGroupsAreSpreadAcrossVolumes() 
+	throws Exception
+	{
+		FileSystemCache cache = createCache("volume1", "volume2");
+		FileSystemRegion region = (FileSystemRegion)cache.getRegion("region");
+		FileSystemVolumeSet volumes = cache.getVolumes();
+		assertEquals(3, volumes.size());
+		assertEquals(3, region.getVolumeCount());
+		
+		for(int index = 0; index < 30; ++index)
+			writeInstance(region.getOrCreateChildGroup("group" + index), "instance", 100);
+		
+		for(int index = 0; index < 30; ++index)
+		{
+			String name = "group" + index;
+			File home = new File(volumes.getHomeVolume(name).getRegionDirectory("region"), name);
+			assertTrue(home.getPath(), home.isDirectory());
+			assertEquals(100, readInstance(region.getChildGroup(name), "instance"));
+		}
+		assertEquals(30, region.getOccupancyIndexInstanceCount());
+		assertEquals(3000L, region.getUsedSpace());
+		assertTrue(region.getFreeSpace() > 0L);
+	}
+	
+	public void testAddVolumeAndRebalance() 
+	throws Exception
+	{
+		FileSystemCache cache = createCache();
+		FileSystemRegion region = (FileSystemRegion)cache.getRegion("region");
+		for(int index = 0; index < 30; ++index)
+			writeInstance(region.getOrCreateChildGroup("group" + index), "instance", 100);
+		
+		assertTrue( cache.addVolume(new File(testDirectory, "volume1").getAbsolutePath()) );
+		assertFalse( cache.addVolume(new File(testDirectory, "volume1").getAbsolutePath()) );
+		FileSystemVolumeSet volumes = cache.getVolumes();
+		assertEquals(2, region.getVolumeCount());
+		FileSystemVolume added = volumes.getVolume(new File(testDirectory, "volume1/x"));
+		
+		// before rebalancing the groups are found on the original volume
+		List<String> movers = new ArrayList<String>();
+		for(int index = 0; index < 30; ++index)
+		{
+			String name = "group" + index;
+			assertEquals(100, readInstance(region.getChildGroup(name), "instance"));
+			if(volumes.getHomeVolume(name) == added)
+				movers.add(name);
+		}
+		assertFalse(movers.isEmpty());
+		
+		Thread.sleep(20L);
+		FileSystemVolumeRebalancer rebalancer = new FileSystemVolumeRebalancer(cache, volumes, 10L);
+		rebalancer.run();
+		assertEquals(movers.size(), rebalancer.getGroupsMoved());
+		assertEquals(0, rebalancer.getGroupsBusy());
+		
+		for(int index = 0; index < 30; ++index)
+		{
+			String name = "group" + index;
+			FileSystemVolume home = volumes.getHomeVolume(name);
+			for(FileSystemVolume volume : volumes)
+				assertEquals(name, volume == home, new File(volume.getRegionDirectory("region"), name).isDirectory());
+			assertEquals(100, readInstance(region.getChildGroup(name), "instance"));
+		}
+		assertEquals(30, region.getOccupancyIndexInstanceCount());
+		assertEquals(3000L, region.getUsedSpace());
+		
+		// the added volume is remembered
+		assertEquals(1, cache.createMemento().getAdditionalVolumeLocations().size());
+	}
+	
+	/**
+	 * A file copied with the group and since evicted from the home volume is not copied back,
+	 * a file written to the source after the copy is.
+	 */
+	public void testEvictedInstanceIsNotCopiedBack() 
+	throws Exception
+	{
+		File source = new File(testDirectory, "source/group");
+		File target = new File(testDirectory, "target/group");
+		writeFile(new File(source, "kept"));
+		writeFile(new File(source, "evicted"));
+		writeFile(new File(source, "child/evicted"));
+		writeFile(new File(target, "kept"));
+		
+		Set<String> copied = new HashSet<String>();
+		FileSystemVolumeRebalancer.listFiles(source, "", copied);
+		assertEquals(3, copied.size());
+		
+		writeFile(new File(source, "written"));
+		writeFile(new File(source, "child/written"));
+		FileSystemVolumeRebalancer.copyNewer(source, target, "", copied);
+		
+		assertTrue(new File(target, "kept").exists());
+		assertFalse(new File(target, "evicted").exists());
+		assertFalse(new File(target, "child/evicted").exists());
+		assertTrue(new File(target, "written").exists());
+		assertTrue(new File(target, "child/written").exists());
+		
+		// when what was copied is not known only the files still on the target are refreshed
+		File unknownTarget = new File(testDirectory, "unknown/group");
+		writeFile(new File(unknownTarget, "kept"));
+		FileSystemVolumeRebalancer.copyNewer(source, unknownTarget, "", null);
+		assertEquals(1, unknownTarget.list().length);
+	}
+	
+	/**
+	 * No channel can be opened while the rebalancer holds the exclusion lock.
+	 */
+	public void testChannelOpenExclusion() 
+	throws Exception
+	{
+		final FileSystemCache cache = createCache();
+		final FileSystemRegion region = (FileSystemRegion)cache.getRegion("region");
+		writeInstance(region.getOrCreateChildGroup("group"), "instance", 100);
+		
+		Lock exclusion = ((FileSystemByteChannelFactory)cache.getInstanceByteChannelFactory()).getChannelOpenExclusionLock();
+		final int[] read = new int[]{0};
+		Thread reader = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					read[0] = readInstance(region.getChildGroup("group"), "instance");
+				}
+				catch (Exception x)
+				{
+					read[0] = -1;
+				}
+			}
+		};
+		exclusion.lock();
+		try
+		{
+			reader.start();
+			reader.join(200L);
+			assertTrue(reader.isAlive());
+		}
+		finally
+		{
+			exclusion.unlock();
+		}
+		reader.join(10000L);
+		assertEquals(100, read[0]);
+	}
+	
+	private void writeFile(File file) 
+	throws Exception
+	{
+		file.getParentFile().mkdirs();
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(new byte[10]);
+		out.close();
+	}
+}
@@ -0,0 +1,273 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.storage.cache.impl.filesystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import gov.va.med.imaging.storage.cache.InstanceReadableByteChannel;
+import gov.va.med.imaging.storage.cache.InstanceWritableByteChannel;
+import gov.va.med.imaging.storage.cache.exceptions.CacheException;
+import gov.va.med.imaging.storage.cache.exceptions.InstanceUnavailableException;
+import gov.va.med.imaging.storage.cache.exceptions.SimultaneousWriteException;
+import gov.va.med.imaging.storage.cache.impl.PersistentInstance.InstanceState;
+
+/**
+ * Exercises the instance state machine, readers of a complete instance must not block
+ * each other, writers must wait for readers and the removal of an instance must wait
+ * for its last reader.  The stress test runs readers and writers against one instance
+ * and checks that every read sees exactly one complete version of the content.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TestInstanceConcurrency 
+extends TestCase
+{
+	private final static int CONTENT_SIZE = 32 * 1024;
+	
+	private FileSystemByteChannelFactory channelFactory;
+	private File instanceFile;
+	
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		channelFactory = FileSystemByteChannelFactory.create();
+		instanceFile = File.createTempFile(getClass().getSimpleName(), ".instance");
+		instanceFile.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		instanceFile.delete();
+		super.tearDown();
+	}
+	
+	private FileSystemInstance createInstance(int version) 
+	throws CacheException, IOException
+	{
+		FileSystemInstance instance = FileSystemInstance.getOrCreateInstance(instanceFile, channelFactory, 5, false);
+		write(instance.getWritableChannel(), version);
+		return instance;
+	}
+	
+	private static void write(InstanceWritableByteChannel writable, int version) 
+	throws IOException
+	{
+		byte[] content = new byte[CONTENT_SIZE];
+		Arrays.fill(content, (byte)version);
+		ByteBuffer buffer = ByteBuffer.wrap(content);
+		try
+		{
+			while(buffer.hasRemaining())
+			{
+				buffer.limit(Math.min(buffer.position() + 4096, content.length));
+				writable.write(buffer);
+				buffer.limit(content.length);
+				Thread.yield();
+			}
+		}
+		finally
+		{
+			writable.close();
+		}
+	}
+	
+	/**
+	 * Read the whole content and return its version, throws an AssertionFailedError
+	 * if the content is not exactly one complete version.
+	 */
+	private static int read(InstanceReadableByteChannel readable) 
+	throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(CONTENT_SIZE + 1);
+		try
+		{
+			while(readable.read(buffer) >= 0 && buffer.hasRemaining())
+				Thread.yield();
+		}
+		finally
+		{
+			readable.close();
+		}
+		buffer.flip();
+		assertEquals("read a partially written or overwritten instance", CONTENT_SIZE, buffer.remaining());
+		byte version = buffer.get(0);
+		for(int index = 1; index < CONTENT_SIZE; ++index)
+			if(buffer.get(index) != version)
+				fail("read content mixed from two versions at offset " + index);
+		return version;
+	}
+	
+	public void testConcurrentReadersDoNotBlock() 
+	throws Exception
+	{
+		FileSystemInstance instance = createInstance(1);
+		
+		InstanceReadableByteChannel first = instance.getReadableChannelNoWait();
+		InstanceReadableByteChannel second = instance.getReadableChannelNoWait();
+		assertNotNull(first);
+		assertNotNull(second);
+		assertEquals(InstanceState.COMPLETE, instance.getState());
+		assertEquals(2, instance.getOpenReaderCount());
+		
+		assertEquals(1, read(second));
+		assertEquals(1, read(first));
+		assertEquals(0, instance.getOpenReaderCount());
+	}
+	
+	public void testWriterWaitsForReaders() 
+	throws Exception
+	{
+		FileSystemInstance instance = createInstance(1);
+		
+		InstanceReadableByteChannel readable = instance.getReadableChannel();
+		assertNull(instance.getWritableChannelNoWait());
+		readable.close();
+		
+		InstanceWritableByteChannel writable = instance.getWritableChannelNoWait();
+		assertNotNull(writable);
+		assertEquals(InstanceState.WRITING, instance.getState());
+		assertNull(instance.getReadableChannelNoWait());
+		write(writable, 2);
+		
+		assertEquals(InstanceState.COMPLETE, instance.getState());
+		assertEquals(2, read(instance.getReadableChannel()));
+	}
+	
+	public void testRemovalDeferredUntilLastReaderCloses() 
+	throws Exception
+	{
+		FileSystemInstance instance = createInstance(1);
+		
+		InstanceReadableByteChannel first = instance.getReadableChannel();
+		InstanceReadableByteChannel second = instance.getReadableChannel();
+		try
+		{
+			instance.delete(false);
+			fail("delete with open readers should have been deferred");
+		}
+		catch (SimultaneousWriteException swX)
+		{
+			// expected, the instance still exists
+		}
+		assertEquals(InstanceState.EVICTING, instance.getState());
+		assertTrue(instanceFile.exists());
+		
+		try
+		{
+			instance.getReadableChannelNoWait();
+			fail("an instance being evicted should not be readable");
+		}
+		catch (InstanceUnavailableException iuX)
+		{
+			// expected
+		}
+		
+		// open readers still see the complete content
+		assertEquals(1, read(first));
+		assertTrue(instanceFile.exists());
+		assertEquals(1, read(second));
+		
+		assertFalse(instanceFile.exists());
+		assertEquals(InstanceState.ABSENT, instance.getState());
+	}
+	
+	public void testReadersAndWritersStress() 
+	throws Exception
+	{
+		final FileSystemInstance instance = createInstance(1);
+		final int readerCount = 8;
+		final int writerCount = 2;
+		final long endTime = System.currentTimeMillis() + 3000L;
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger reads = new AtomicInteger();
+		final AtomicInteger writes = new AtomicInteger();
+		final AtomicInteger versions = new AtomicInteger(1);
+		final Throwable[] failure = new Throwable[1];
+		
+		Thread[] threads = new Thread[readerCount + writerCount];
+		for(int index = 0; index < threads.length; ++index)
+		{
+			final boolean writer = index < writerCount;
+			threads[index] = new Thread("stress-" + (writer ? "writer-" : "reader-") + index)
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						start.await();
+						while(System.currentTimeMillis() < endTime)
+							try
+							{
+								if(writer)
+								{
+									write(instance.getWritableChannel(), versions.incrementAndGet() % 100 + 1);
+									writes.incrementAndGet();
+								}
+								else
+								{
+									read(instance.getReadableChannel());
+									reads.incrementAndGet();
+								}
+							}
+							catch (CacheException cX)
+							{
+								// a timed out wait is allowed under load, an incomplete read is not
+							}
+					}
+					catch (Throwable t)
+					{
+						synchronized(failure)
+						{
+							if(failure[0] == null)
+								failure[0] = t;
+						}
+					}
+				}
+			};
+			threads[index].start();
+		}
+		start.countDown();
+		for(Thread thread : threads)
+			thread.join(30000L);
+		
+		if(failure[0] != null)
+			throw new AssertionError(failure[0]);
+		assertTrue("no reads completed", reads.get() > 0);
+		assertTrue("no writes completed, writers were starved", writes.get() > 0);
+		assertEquals(0, instance.getOpenReaderCount());
+		assertEquals(InstanceState.COMPLETE, instance.getState());
+	}
+}
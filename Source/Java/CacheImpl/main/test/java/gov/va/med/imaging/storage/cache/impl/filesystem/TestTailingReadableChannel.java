@@ -0,0 +1,178 @@
+/**
+ * 
+ */
+package gov.va.med.imaging.storage.cache.impl.filesystem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import gov.va.med.imaging.storage.cache.InstanceReadableByteChannel;
+import gov.va.med.imaging.storage.cache.InstanceWritableByteChannel;
+import gov.va.med.imaging.storage.cache.impl.PersistentInstance;
+
+/**
+ * Test that a tailing readable channel reads the content of an instance
+ * while it is being written.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TestTailingReadableChannel 
+extends TestCase
+{
+	private FileSystemByteChannelFactory channelFactory;
+	private File instanceFile;
+	
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		channelFactory = FileSystemByteChannelFactory.create();
+		instanceFile = File.createTempFile(getClass().getSimpleName(), ".instance");
+		instanceFile.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		instanceFile.delete();
+		super.tearDown();
+	}
+
+	public void testTailCompleteWrite() 
+	throws Exception
+	{
+		byte[] data = new byte[64 * 1024];
+		new Random(7L).nextBytes(data);
+		FileSystemInstance instance = FileSystemInstance.getOrCreateInstance(instanceFile, channelFactory, 60, false);
+		
+		InstanceWritableByteChannel writable = instance.getWritableChannel();
+		writable.write(ByteBuffer.wrap(data, 0, 1000));
+		
+		InstanceReadableByteChannel tailing = instance.getTailingReadableChannel();
+		TailReader reader = new TailReader(tailing);
+		reader.start();
+		
+		for(int offset = 1000; offset < data.length; offset += 4096)
+		{
+			writable.write(ByteBuffer.wrap(data, offset, Math.min(4096, data.length - offset)));
+			Thread.sleep(10L);
+		}
+		writable.close();
+		reader.join(10000L);
+		
+		assertNull(reader.exception);
+		assertTrue( Arrays.equals(data, reader.content.toByteArray()) );
+		tailing.close();
+		
+		// once the write is complete the instance may be written again, i.e. the tailing reader is not left open
+		InstanceWritableByteChannel rewritable = instance.getWritableChannelNoWait();
+		assertNotNull(rewritable);
+		rewritable.close();
+	}
+
+	public void testTailFailedWrite() 
+	throws Exception
+	{
+		FileSystemInstance instance = FileSystemInstance.getOrCreateInstance(instanceFile, channelFactory, 60, false);
+		InstanceWritableByteChannel writable = instance.getWritableChannel();
+		writable.write(ByteBuffer.wrap(new byte[1000]));
+		
+		InstanceReadableByteChannel tailing = instance.getTailingReadableChannel();
+		TailReader reader = new TailReader(tailing);
+		reader.start();
+		
+		Thread.sleep(100L);
+		writable.error();
+		reader.join(10000L);
+		
+		assertNotNull(reader.exception);
+		assertEquals(1000, reader.content.size());
+		tailing.close();
+		assertFalse(instanceFile.exists());
+	}
+	
+	/**
+	 * A tailing reader waiting at the end of the content is woken by the write, 
+	 * it does not wait out the timeout for each write.
+	 */
+	public void testTailIsSignalledByWrite() 
+	throws Exception
+	{
+		final int writes = 40;
+		FileSystemInstance instance = FileSystemInstance.getOrCreateInstance(instanceFile, channelFactory, 60, false);
+		InstanceWritableByteChannel writable = instance.getWritableChannel();
+		
+		InstanceReadableByteChannel tailing = instance.getTailingReadableChannel();
+		TailReader reader = new TailReader(tailing);
+		reader.start();
+		
+		long start = System.currentTimeMillis();
+		for(int write = 1; write <= writes; write++)
+		{
+			// give the reader time to block before each write
+			Thread.sleep(5L);
+			writable.write(ByteBuffer.wrap(new byte[100]));
+			while(reader.getContentSize() < write * 100 && reader.isAlive())
+				Thread.yield();
+		}
+		long elapsed = System.currentTimeMillis() - start;
+		writable.close();
+		reader.join(10000L);
+		tailing.close();
+		
+		assertNull(reader.exception);
+		assertEquals(writes * 100, reader.getContentSize());
+		assertTrue("tailing reader waited out the timeout, " + elapsed + "ms", 
+			elapsed < writes * PersistentInstance.tailingReadTimeoutMilliseconds / 2);
+	}
+	
+	private static class TailReader
+	extends Thread
+	{
+		private final InstanceReadableByteChannel channel;
+		private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+		private IOException exception = null;
+		
+		TailReader(InstanceReadableByteChannel channel)
+		{
+			this.channel = channel;
+		}
+		
+		int getContentSize()
+		{
+			synchronized(content)
+			{
+				return content.size();
+			}
+		}
+		
+		@Override
+		public void run()
+		{
+			ByteBuffer buffer = ByteBuffer.allocate(1500);
+			try
+			{
+				while(channel.read(buffer) >= 0)
+				{
+					buffer.flip();
+					synchronized(content)
+					{
+						content.write(buffer.array(), 0, buffer.limit());
+					}
+					buffer.clear();
+				}
+			}
+			catch (IOException ioX)
+			{
+				exception = ioX;
+			}
+		}
+	}
+}
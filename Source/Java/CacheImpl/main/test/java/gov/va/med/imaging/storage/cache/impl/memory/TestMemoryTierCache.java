@@ -0,0 +1,247 @@
+/**
+ * 
+ */
+package gov.va.med.imaging.storage.cache.impl.memory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import gov.va.med.imaging.storage.cache.Cache;
+import gov.va.med.imaging.storage.cache.CacheLifecycleEvent;
+import gov.va.med.imaging.storage.cache.FileInstanceReadableByteChannel;
+import gov.va.med.imaging.storage.cache.Instance;
+import gov.va.med.imaging.storage.cache.InstanceReadableByteChannel;
+import gov.va.med.imaging.storage.cache.InstanceWritableByteChannel;
+import gov.va.med.imaging.storage.cache.Region;
+import gov.va.med.imaging.storage.cache.SizedInstanceReadableByteChannel;
+import gov.va.med.imaging.storage.cache.events.InstanceLifecycleEvent;
+import gov.va.med.imaging.storage.cache.events.InstanceLifecycleListener;
+import gov.va.med.imaging.storage.cache.events.LifecycleEvent;
+import gov.va.med.imaging.storage.cache.exceptions.CacheException;
+import gov.va.med.imaging.storage.cache.impl.filesystem.FileSystemCache;
+import gov.va.med.imaging.storage.cache.timer.EvictionTimerImpl;
+
+/**
+ * Test that the memory tier serves reads from memory after the first read or write,
+ * that writes, deletes and group deletes are seen through the memory tier, and
+ * that the tier stays within its size limit.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TestMemoryTierCache 
+extends TestCase
+{
+	private static final String REGION_NAME = "thumbnails";
+	private static final String[] GROUP = new String[]{"patient", "study"};
+	
+	private File cacheDirectory;
+	private Cache persistentCache;
+	private MemoryTierCache cache;
+	
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		cacheDirectory = File.createTempFile(getClass().getSimpleName(), ".cache");
+		cacheDirectory.delete();
+		cacheDirectory.mkdirs();
+		
+		persistentCache = FileSystemCache.create(getName(), cacheDirectory.toURI(), 
+			EvictionTimerImpl.createDefault());
+		Region region = persistentCache.createRegion(REGION_NAME, new String[]{});
+		persistentCache.addRegion(region);
+		persistentCache.setInitialized(true);
+		persistentCache.setEnabled(true);
+		
+		cache = new MemoryTierCache(persistentCache, 4096L, 1024L);
+		cache.cacheLifecycleEvent(CacheLifecycleEvent.START);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		cache.cacheLifecycleEvent(CacheLifecycleEvent.STOP);
+		delete(cacheDirectory);
+		super.tearDown();
+	}
+	
+	private void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if(children != null)
+			for(File child : children)
+				delete(child);
+		file.delete();
+	}
+	
+	private byte[] createContent(int length, int seed)
+	{
+		byte[] content = new byte[length];
+		for(int index=0; index < length; ++index)
+			content[index] = (byte)((index + seed) % 256);
+		return content;
+	}
+	
+	private void write(Cache target, String key, byte[] content) 
+	throws CacheException, IOException
+	{
+		Instance instance = target.getOrCreateInstance(REGION_NAME, GROUP, key);
+		InstanceWritableByteChannel channel = instance.getWritableChannel();
+		channel.write(ByteBuffer.wrap(content));
+		channel.close();
+	}
+	
+	private byte[] read(Cache target, String key) 
+	throws CacheException, IOException
+	{
+		Instance instance = target.getInstance(REGION_NAME, GROUP, key);
+		if(instance == null)
+			return null;
+		InstanceReadableByteChannel channel = instance.getReadableChannel();
+		ByteBuffer buffer = ByteBuffer.allocate((int)instance.getSize());
+		ByteBuffer small = ByteBuffer.allocate(100);
+		while(channel.read(small) >= 0)
+		{
+			small.flip();
+			buffer.put(small);
+			small.clear();
+		}
+		channel.close();
+		return buffer.array();
+	}
+	
+	public void testReadThrough() 
+	throws CacheException, IOException
+	{
+		byte[] content = createContent(700, 1);
+		write(persistentCache, "thumb", content);
+		
+		assertEquals(0, cache.getEntryCount().intValue());
+		assertTrue( Arrays.equals(content, read(cache, "thumb")) );
+		assertEquals(1L, cache.getMissCount().longValue());
+		assertEquals(1, cache.getEntryCount().intValue());
+		
+		assertTrue( Arrays.equals(content, read(cache, "thumb")) );
+		assertEquals(1L, cache.getHitCount().longValue());
+	}
+	
+	public void testResidentReadIsRecordedInPersistentTier() 
+	throws CacheException, IOException
+	{
+		byte[] content = createContent(700, 4);
+		write(persistentCache, "thumb", content);
+		assertTrue( Arrays.equals(content, read(cache, "thumb")) );
+		
+		final int[] reads = new int[]{0};
+		Instance persistentInstance = persistentCache.getInstance(REGION_NAME, GROUP, "thumb");
+		persistentInstance.registerListener(new InstanceLifecycleListener()
+		{
+			@Override
+			public void notify(InstanceLifecycleEvent event)
+			{
+				if(event.getLifecycleEvent() == LifecycleEvent.READ)
+					++reads[0];
+			}
+		});
+		
+		// served from memory, the persistent tier still sees the read
+		assertTrue( Arrays.equals(content, read(cache, "thumb")) );
+		assertEquals(1L, cache.getHitCount().longValue());
+		assertEquals(1, reads[0]);
+	}
+	
+	public void testWriteThrough() 
+	throws CacheException, IOException
+	{
+		byte[] content = createContent(500, 2);
+		write(cache, "metadata", content);
+		assertEquals(1, cache.getEntryCount().intValue());
+		assertTrue( Arrays.equals(content, read(persistentCache, "metadata")) );
+		
+		byte[] replacement = createContent(600, 3);
+		write(cache, "metadata", replacement);
+		assertTrue( Arrays.equals(replacement, read(cache, "metadata")) );
+		assertEquals(1L, cache.getHitCount().longValue());
+		assertEquals(600L, cache.getUsedBytes().longValue());
+	}
+	
+	public void testDeleteInvalidates() 
+	throws CacheException, IOException
+	{
+		write(cache, "one", createContent(100, 4));
+		write(cache, "two", createContent(100, 5));
+		assertEquals(2, cache.getEntryCount().intValue());
+		
+		cache.deleteInstance(REGION_NAME, GROUP, "one", true);
+		assertEquals(1, cache.getEntryCount().intValue());
+		assertNull( read(cache, "one") );
+		
+		cache.deleteGroup(REGION_NAME, new String[]{GROUP[0]}, true);
+		assertEquals(0, cache.getEntryCount().intValue());
+		assertNull( read(cache, "two") );
+	}
+	
+	public void testStaleContentIsNotServed() 
+	throws CacheException, IOException
+	{
+		write(cache, "thumb", createContent(300, 6));
+		
+		// written around the memory tier, the size no longer agrees
+		byte[] replacement = createContent(400, 7);
+		write(persistentCache, "thumb", replacement);
+		
+		assertTrue( Arrays.equals(replacement, read(cache, "thumb")) );
+		assertEquals(1L, cache.getInvalidationCount().longValue());
+	}
+	
+	public void testFileChannelIsNotHidden() 
+	throws CacheException, IOException
+	{
+		byte[] content = createContent(700, 9);
+		write(persistentCache, "thumb", content);
+		
+		// content read from the file directly is not read through the channel and is not kept
+		Instance instance = cache.getInstance(REGION_NAME, GROUP, "thumb");
+		InstanceReadableByteChannel channel = instance.getReadableChannel();
+		assertTrue(channel instanceof FileInstanceReadableByteChannel);
+		FileInstanceReadableByteChannel fileChannel = (FileInstanceReadableByteChannel)channel;
+		assertEquals(700L, fileChannel.size());
+		assertEquals(700L, fileChannel.getFile().length());
+		channel.close();
+		assertEquals(0, cache.getEntryCount().intValue());
+		
+		// content read through the channel is kept, and read back with its size known
+		assertTrue( Arrays.equals(content, read(cache, "thumb")) );
+		assertEquals(1, cache.getEntryCount().intValue());
+		channel = cache.getInstance(REGION_NAME, GROUP, "thumb").getReadableChannel();
+		assertFalse(channel instanceof FileInstanceReadableByteChannel);
+		assertTrue(channel instanceof SizedInstanceReadableByteChannel);
+		assertEquals(700L, ((SizedInstanceReadableByteChannel)channel).size());
+		channel.close();
+	}
+	
+	public void testSizeLimits() 
+	throws CacheException, IOException
+	{
+		write(cache, "too-big", createContent(2000, 8));
+		assertEquals(0, cache.getEntryCount().intValue());
+		assertEquals(1L, cache.getRejectionCount().longValue());
+		
+		for(int index=0; index < 8; ++index)
+			write(cache, "thumb" + index, createContent(1000, index));
+		assertEquals(4, cache.getEntryCount().intValue());
+		assertTrue(cache.getUsedBytes().longValue() <= 4096L);
+		assertEquals(4L, cache.getEvictionCount().longValue());
+		
+		// the least recently written were evicted
+		read(cache, "thumb7");
+		assertEquals(1L, cache.getHitCount().longValue());
+		read(cache, "thumb0");
+		assertEquals(1L, cache.getMissCount().longValue());
+	}
+}
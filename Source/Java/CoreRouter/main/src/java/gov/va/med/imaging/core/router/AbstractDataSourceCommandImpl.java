@@ -29,8 +29,11 @@ import gov.va.med.imaging.artifactsource.ResolvedArtifactSource;
 import gov.va.med.imaging.core.interfaces.exceptions.*;
 import gov.va.med.imaging.core.interfaces.router.AsynchronousCommandResult;
 import gov.va.med.imaging.core.interfaces.router.Command;
+import gov.va.med.imaging.core.router.breaker.SiteCircuitBreaker;
+import gov.va.med.imaging.core.router.breaker.SiteCircuitBreakerRegistry;
 import gov.va.med.imaging.core.router.queue.ScheduledPriorityQueueElement;
 import gov.va.med.imaging.datasource.DataSourceProvider;
+import gov.va.med.imaging.datasource.DataSourceTimeoutContext;
 import gov.va.med.imaging.datasource.VersionableDataSourceSpi;
 import gov.va.med.imaging.transactioncontext.TransactionContext;
 import gov.va.med.imaging.transactioncontext.TransactionContextFactory;
@@ -48,6 +51,11 @@ import java.util.concurrent.Callable;
  * 
  * Derived classes need to implement the getResolvedSite and getCommandResult methods.
  * 
+ * Calls to the data source go through the SiteCircuitBreaker of the routing token, while
+ * the breaker is open the command fails with a MethodConnectionException without calling
+ * the data source.  The data source is given the connect timeout the breaker derives from
+ * the time the site takes to start answering through the DataSourceTimeoutContext.
+ * 
  * @author VHAISWLOUTHJ
  *
  */
@@ -137,75 +145,127 @@ implements Command<R>, Callable<AsynchronousCommandResult<R>>, ScheduledPriority
 				metadataUrls == null ? "<null>" : metadataUrls.size() +
 				" URLs to attempt communication on.");
 			CompositeMethodException compositeException = new CompositeMethodException();
-
-			// try each of the configured protocols in turn
-			for(URL metadataUrl : metadataUrls )
+			
+			SiteCircuitBreaker circuitBreaker = SiteCircuitBreakerRegistry.getSingleton().getCircuitBreaker(getRoutingToken());
+			if(circuitBreaker != null && !circuitBreaker.allowRequest())
+			{
+				String msg = "The circuit breaker for site '" + getSiteNumber() + "' is open, " + 
+					getSpiMethodName() + " was not attempted.";
+				getLogger().warn(msg);
+				transactionContext.addDebugInformation(msg);
+				compositeException.addException(new MethodConnectionException(new ConnectionException(msg)));
+				throw compositeException;
+			}
+			
+			// the latency of the call if the site answered it, with a result or an error,
+			// the circuit breaker is only told of a failure if the site could not be reached
+			long latency = -1L;
+			boolean connectionFailed = false;
+			long startTime = System.currentTimeMillis();
+			DataSourceTimeoutContext.setConnectTimeoutMs(circuitBreaker == null ? 0 : circuitBreaker.getConnectTimeoutMs());
+			try
 			{
-				getLogger().info("Attempting data source creation to [" +
-					metadataUrl == null ? "<null>" : metadataUrl.toString() + "].");
-				String protocol = metadataUrl.getProtocol();
-				try
+				// try each of the configured protocols in turn
+				for(URL metadataUrl : metadataUrls )
 				{
-					S spi = getDataSourceSpi(protocol);
-					if(spi != null)
+					getLogger().info("Attempting data source creation to [" +
+						metadataUrl == null ? "<null>" : metadataUrl.toString() + "].");
+					String protocol = metadataUrl.getProtocol();
+					try
 					{
-						getLogger().info("Data source of type " + spi.getClass().getSimpleName() + " created using [" +
-							metadataUrl == null ? "<null>" : metadataUrl.toString() + "].");
-						transactionContext.setDatasourceProtocol(protocol);
-						R result = getCommandResultHandleCredentialsException(metadataUrl, spi);
-						return postProcessResult(result);
-					}
-					else
-						getLogger().info("Failed to create data source for [" +
-							metadataUrl == null ? "<null>" : metadataUrl.toString() + 
-							"].");
+						S spi = getDataSourceSpi(protocol);
+						if(spi != null)
+						{
+							getLogger().info("Data source of type " + spi.getClass().getSimpleName() + " created using [" +
+								metadataUrl == null ? "<null>" : metadataUrl.toString() + "].");
+							transactionContext.setDatasourceProtocol(protocol);
+							R result = null;
+							try
+							{
+								result = getCommandResultHandleCredentialsException(metadataUrl, spi);
+							}
+							catch(MethodConnectionException mcX)
+							{
+								connectionFailed = true;
+								throw mcX;
+							}
+							catch(MethodException mX)
+							{
+								latency = System.currentTimeMillis() - startTime;
+								throw mX;
+							}
+							latency = System.currentTimeMillis() - startTime;
+							return postProcessResult(result);
+						}
+						else
+							getLogger().info("Failed to create data source for [" +
+								metadataUrl == null ? "<null>" : metadataUrl.toString() + 
+								"].");
 						
-					/*
-					//R result = getCommandResultHandleCredentialsException(interfaceUrls.getMetadataUrl());
+						/*
+						//R result = getCommandResultHandleCredentialsException(interfaceUrls.getMetadataUrl());
 					
-					if(result != null)
-						return postProcessResult(result);
-					else
-						// if a null result is returned this means the URL used could not create a data source for the site
-						throw new ConnectionException("No data source available for method '" + getSpiMethodName() + 
-								"' on URL '" + interfaceUrls.getMetadataUrl().toExternalForm() + "'.");
-								*/
-				}
-				catch(UnsupportedOperationException uoX)
-				{
-					compositeException.addException(metadataUrl, new MethodConnectionException(new ConnectionException(uoX)));
-					getLogger().error(
-							"Failed to contact site'" + getSiteNumber() + "' using '" + metadataUrl.toExternalForm() + "'.\n" +
-							"Exception details follow.", 
-							uoX);
+						if(result != null)
+							return postProcessResult(result);
+						else
+							// if a null result is returned this means the URL used could not create a data source for the site
+							throw new ConnectionException("No data source available for method '" + getSpiMethodName() + 
+									"' on URL '" + interfaceUrls.getMetadataUrl().toExternalForm() + "'.");
+									*/
+					}
+					catch(UnsupportedOperationException uoX)
+					{
+						compositeException.addException(metadataUrl, new MethodConnectionException(new ConnectionException(uoX)));
+						getLogger().error(
+								"Failed to contact site'" + getSiteNumber() + "' using '" + metadataUrl.toExternalForm() + "'.\n" +
+								"Exception details follow.", 
+								uoX);
+					}
+					catch(ConnectionException cX)
+					{
+						connectionFailed = true;
+						compositeException.addException(metadataUrl, new MethodConnectionException(cX));
+						getLogger().error(
+								"Failed to contact site'" + getSiteNumber() + "' using '" + metadataUrl.toExternalForm() + "': " + (cX == null ? "" : cX.getMessage()));
+					}
 				}
-				catch(ConnectionException cX)
+			
+				// if we get here then we were unable to connect to a data source
+				// to satisfy the request
+				String errorMsg =
+					"Unsuccessfully tried all configured protocols for site '" + getSiteNumber() + "'.\n" +
+					"Please check that the protocol handlers are properly installed and that the \n" +
+					"protocol preferences for the site specify valid protocols.";
+				getLogger().error(errorMsg);
+			
+				// JMW 9/29/2010 P104
+				if(compositeException.size() == 0)
 				{
-					compositeException.addException(metadataUrl, new MethodConnectionException(cX));
-					getLogger().error(
-							"Failed to contact site'" + getSiteNumber() + "' using '" + metadataUrl.toExternalForm() + "': " + (cX == null ? "" : cX.getMessage()));
+					// if there were no exceptions but we got here that means all sources of data were attempted 
+					// but none were compatible
+					// add an exception manually here so the exception list is not empty
+					compositeException.addException(new MethodException(errorMsg));
+				
 				}
+
+				throw compositeException;
 			}
-			
-			// if we get here then we were unable to connect to a data source
-			// to satisfy the request
-			String errorMsg =
-				"Unsuccessfully tried all configured protocols for site '" + getSiteNumber() + "'.\n" +
-				"Please check that the protocol handlers are properly installed and that the \n" +
-				"protocol preferences for the site specify valid protocols.";
-			getLogger().error(errorMsg);
-			
-			// JMW 9/29/2010 P104
-			if(compositeException.size() == 0)
+			finally
 			{
-				// if there were no exceptions but we got here that means all sources of data were attempted 
-				// but none were compatible
-				// add an exception manually here so the exception list is not empty
-				compositeException.addException(new MethodException(errorMsg));
-				
+				// the connect timeout is derived from the time the site took to start answering,
+				// not from the whole call which includes reading the result and processing it
+				long firstResponse = DataSourceTimeoutContext.getFirstResponseMs();
+				DataSourceTimeoutContext.clearConnectTimeoutMs();
+				if(circuitBreaker != null)
+				{
+					if(latency >= 0L)
+						circuitBreaker.recordSuccess(latency, firstResponse);
+					else if(connectionFailed)
+						circuitBreaker.recordFailure();
+					else
+						circuitBreaker.release();
+				}
 			}
-
-			throw compositeException;
 		}
 		catch (ApplicationConfigurationException acX)
 		{
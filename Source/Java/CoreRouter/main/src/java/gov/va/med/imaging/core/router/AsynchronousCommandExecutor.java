@@ -1,68 +1,151 @@
 package gov.va.med.imaging.core.router;
 
+import gov.va.med.imaging.ImagingMBean;
 import gov.va.med.imaging.core.interfaces.router.AsynchronousCommandResult;
 import gov.va.med.imaging.core.interfaces.router.Command;
 import gov.va.med.imaging.core.interfaces.router.CommandStatus;
 import gov.va.med.imaging.core.router.commands.configuration.CommandConfiguration;
-import gov.va.med.imaging.core.router.queue.AsynchronousCommandProcessorPriorityBlockingQueue;
+import gov.va.med.imaging.core.router.queue.AsynchronousCommandQueue;
+import gov.va.med.imaging.core.router.queue.AsynchronousCommandQueueType;
+import gov.va.med.imaging.core.router.queue.ScheduledPriorityQueueElement.Priority;
 
+import java.lang.management.ManagementFactory;
+import java.util.Hashtable;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.apache.log4j.Logger;
 
 /**
  * Thread pool manager to handle worker threads and process them as they are requested.
  * This class is similar to a java.util.ExecutorCompletionService implementation
- * but does not derive or use that class. 
- * 
+ * but does not derive or use that class.
+ *
+ * The worker threads take commands from an AsynchronousCommandQueue, the implementation of which
+ * is selected by the CommandConfiguration asynchronousCommandQueueType.  The priority and scheduled
+ * accessibility semantics of the queue determine the order of execution.  In addition:
+ * 1.) the number of worker threads floats between the minimum and maximum thread count,
+ *     threads in excess of the minimum are retired after being idle for the keep-alive time
+ * 2.) the number of commands of each priority executing concurrently may be limited, commands
+ *     that would exceed the limit are deferred until a command of the same priority completes
+ * 3.) the number of queued commands may be limited, commands submitted when the queue is full
+ *     are handled according to the AsynchronousCommandRejectionPolicy
+ * 4.) the worker threads are created by a pluggable ThreadFactory, by default an
+ *     AsynchronousCommandThreadFactory which may create virtual threads
+ *
+ * The state counts (busy, waiting, queued, etc...) are maintained as commands move through
+ * the executor and are exposed through the AsynchronousCommandExecutorMBean interface.
+ *
  * @author VHAISWWERFEJ
  * @author VHAISWBECKEC
  *
  */
 public class AsynchronousCommandExecutor
+implements AsynchronousCommandExecutorMBean
 {
-	private enum AsynchronousCommandExecutorThreadState {NEW, WAITING, BUSY};
-	
-	private final AsynchronousCommandProcessorPriorityBlockingQueue workQueue;
-	private final ThreadGroup threadGroup;
+	private final AsynchronousCommandQueue workQueue;
+	private final ThreadFactory threadFactory;
 	private final Queue<AsynchronousCommandResult<?>> resultsQueue;
 	private final Logger logger = Logger.getLogger(this.getClass());
-	private Integer threadSerialNumber = 0;
-	private boolean shuttingDown = false;
-	
+	private volatile boolean shuttingDown = false;
+
 	private int minimumThreadCount = -1; // default to 100 minimum threads
 	private final int bareMinimumThreadCount = 100; // if it can't read from config file, use this value
-	
+	private int maximumThreadCount = 0;
+	private long threadKeepAliveMs = 60000L;
+	private int maximumQueuedCommands = 0;
+	private AsynchronousCommandRejectionPolicy rejectionPolicy = AsynchronousCommandRejectionPolicy.REJECT;
+	// indexed by Priority.ordinal(), a value <= 0 is unlimited
+	private final int[] priorityConcurrencyLimits = new int[Priority.values().length];
+
+	// the state counts, these are the values reported through JMX
+	private final AtomicInteger workerThreadCount = new AtomicInteger(0);
+	private final AtomicInteger waitingThreadCount = new AtomicInteger(0);
+	private final AtomicInteger busyThreadCount = new AtomicInteger(0);
+	private final AtomicIntegerArray busyPriorityCount = new AtomicIntegerArray(Priority.values().length);
+	private final AtomicInteger deferredCommandCount = new AtomicInteger(0);
+	private final AtomicLong executedCommandCount = new AtomicLong(0L);
+	private final AtomicLong rejectedCommandCount = new AtomicLong(0L);
+
+	// the commands currently executing, keyed by the worker executing them
+	private final ConcurrentHashMap<AsynchronousCommandExecutorWorker, AbstractCommandImpl<?>> executingCommands =
+		new ConcurrentHashMap<AsynchronousCommandExecutorWorker, AbstractCommandImpl<?>>();
+	// commands taken from the work queue while their priority was at its concurrency limit
+	private final Queue<AbstractCommandImpl<?>>[] deferredCommands;
+
+	private ObjectName mBeanName = null;
+
 	/**
 	 * Create an instance with no results queue.
 	 * Results will not be available.
 	 */
 	public AsynchronousCommandExecutor()
 	{
-		this.workQueue = new AsynchronousCommandProcessorPriorityBlockingQueue();
-		this.threadGroup = new ThreadGroup("AsynchronousCommandExecutor");
-		this.resultsQueue = null;
+		this(null);
 	}
-	
+
 	/**
-	 * 
+	 *
 	 * @param resultsQueue
 	 */
 	public AsynchronousCommandExecutor(Queue<AsynchronousCommandResult<?>> resultsQueue)
 	{
-		this.workQueue = new AsynchronousCommandProcessorPriorityBlockingQueue();
-		this.threadGroup = new ThreadGroup("AsynchronousCommandExecutor");
+		this(resultsQueue, null);
+	}
+
+	/**
+	 *
+	 * @param resultsQueue - the queue to put results into, may be null
+	 * @param threadFactory - the factory of worker threads, if null then an AsynchronousCommandThreadFactory is used
+	 */
+	@SuppressWarnings("unchecked")
+	public AsynchronousCommandExecutor(Queue<AsynchronousCommandResult<?>> resultsQueue, ThreadFactory threadFactory)
+	{
 		this.resultsQueue = resultsQueue;
+
+		this.deferredCommands = new Queue[Priority.values().length];
+		for(int index = 0; index < deferredCommands.length; ++index)
+			deferredCommands[index] = new ConcurrentLinkedQueue<AbstractCommandImpl<?>>();
+
+		CommandConfiguration configuration = CommandConfiguration.getCommandConfiguration();
+		this.workQueue = AsynchronousCommandQueueType.valueOfOrDefault(
+			configuration == null ? null : configuration.getAsynchronousCommandQueueType()).createQueue();
+		if(configuration != null)
+		{
+			this.maximumThreadCount = configuration.getMaximumThreadCount();
+			this.threadKeepAliveMs = configuration.getThreadKeepAliveMs();
+			this.maximumQueuedCommands = configuration.getMaximumQueuedCommands();
+			this.rejectionPolicy = AsynchronousCommandRejectionPolicy.valueOfOrDefault(configuration.getRejectionPolicy());
+			this.priorityConcurrencyLimits[Priority.LOW.ordinal()] = configuration.getLowPriorityConcurrencyLimit();
+			this.priorityConcurrencyLimits[Priority.NORMAL.ordinal()] = configuration.getNormalPriorityConcurrencyLimit();
+			this.priorityConcurrencyLimits[Priority.HIGH.ordinal()] = configuration.getHighPriorityConcurrencyLimit();
+		}
+
+		this.threadFactory = threadFactory != null ?
+			threadFactory :
+			new AsynchronousCommandThreadFactory("AsynchronousCommandExecutor", configuration != null && configuration.isUseVirtualThreads());
+
+		registerMBean();
 	}
 
-    private AsynchronousCommandProcessorPriorityBlockingQueue getWorkQueue()
+    private AsynchronousCommandQueue getWorkQueue()
     {
     	return workQueue;
     }
 
-    private ThreadGroup getThreadGroup()
+    private ThreadFactory getThreadFactory()
     {
-    	return threadGroup;
+    	return threadFactory;
     }
 
 	private Queue<AsynchronousCommandResult<?>> getResultsQueue()
@@ -80,22 +163,91 @@ public class AsynchronousCommandExecutor
     	return shuttingDown;
     }
 
-	private int getMinimumThreadCount()
+	@Override
+	public int getMinimumThreadCount()
     {
 		if(minimumThreadCount <= 0)
 		{
-			minimumThreadCount = CommandConfiguration.getCommandConfiguration().getMinimumThreadCount();
+			CommandConfiguration configuration = CommandConfiguration.getCommandConfiguration();
+			minimumThreadCount = configuration == null ? 0 : configuration.getMinimumThreadCount();
 			if(minimumThreadCount <= 0)
 				minimumThreadCount = bareMinimumThreadCount;
 		}
 	    return minimumThreadCount;
     }
-	
-	public void setMinimumThreadCount(int minimumThreadCount) 
+
+	public void setMinimumThreadCount(int minimumThreadCount)
 	{
 		this.minimumThreadCount = minimumThreadCount;
 	}
 
+	/**
+	 * The maximum thread count is never less than the minimum thread count.
+	 */
+	@Override
+	public int getMaximumThreadCount()
+	{
+		return Math.max(maximumThreadCount, getMinimumThreadCount());
+	}
+
+	public void setMaximumThreadCount(int maximumThreadCount)
+	{
+		this.maximumThreadCount = maximumThreadCount;
+	}
+
+	public long getThreadKeepAliveMs()
+	{
+		return threadKeepAliveMs;
+	}
+
+	public void setThreadKeepAliveMs(long threadKeepAliveMs)
+	{
+		this.threadKeepAliveMs = threadKeepAliveMs;
+	}
+
+	@Override
+	public int getMaximumQueuedCommands()
+	{
+		return maximumQueuedCommands;
+	}
+
+	public void setMaximumQueuedCommands(int maximumQueuedCommands)
+	{
+		this.maximumQueuedCommands = maximumQueuedCommands;
+	}
+
+	@Override
+	public String getRejectionPolicy()
+	{
+		return rejectionPolicy.name();
+	}
+
+	public void setRejectionPolicy(AsynchronousCommandRejectionPolicy rejectionPolicy)
+	{
+		this.rejectionPolicy = rejectionPolicy == null ? AsynchronousCommandRejectionPolicy.REJECT : rejectionPolicy;
+	}
+
+	/**
+	 * @return the maximum number of commands of the given priority that may execute
+	 * concurrently, a value <= 0 means unlimited
+	 */
+	public int getPriorityConcurrencyLimit(Priority priority)
+	{
+		return priorityConcurrencyLimits[priority.ordinal()];
+	}
+
+	public void setPriorityConcurrencyLimit(Priority priority, int limit)
+	{
+		this.priorityConcurrencyLimits[priority.ordinal()] = limit;
+	}
+
+	@Override
+	public boolean isVirtualThreads()
+	{
+		return getThreadFactory() instanceof AsynchronousCommandThreadFactory &&
+			((AsynchronousCommandThreadFactory)getThreadFactory()).isVirtual();
+	}
+
 	/**
 	 * Get the status of the given command.
 	 * NOTE: this uses the Command interface and the .equals() as defined in
@@ -105,9 +257,9 @@ public class AsynchronousCommandExecutor
 	 * it attempt to synchronize the state of the various queues involved.  Practically this
 	 * means that the status of a command as returned from this command may not follow
 	 * the expected lifecycle, nor will a command between states be correctly reported.
-	 * 
+	 *
 	 * The result may be either WAITING, EXECUTING, COMPLETE or UNKNOWN.
-	 * 
+	 *
 	 * @param command
 	 * @return
 	 */
@@ -115,221 +267,449 @@ public class AsynchronousCommandExecutor
 	{
 		// check the queues in order of operation for most consistent
 		// results
-		if( getWorkQueue().contains(command) )
+		if( getWorkQueue().contains(command) || isCommandDeferred(command) )
 			return CommandStatus.WAITING;
-		
+
 		if(isCommandExecuting(command))
 			return CommandStatus.EXECUTING;
-		
+
 		if( isCommandInCompleteQueue(command) )
 			return CommandStatus.COMPLETE;
-		
+
 		return CommandStatus.UNKNOWN;
 	}
 
 	public boolean isCommandInCompleteQueue(Command<?> command)
 	{
 		if(command != null && getResultsQueue() != null)
-			for(AsynchronousCommandResult<?> result : (AsynchronousCommandResult<?> [])getResultsQueue().toArray() )
-				if(command .equals( result.getCommand() ) )
+			for(Object result : getResultsQueue().toArray() )
+				if(command .equals( ((AsynchronousCommandResult<?>)result).getCommand() ) )
 					return true;
-		
+
 		return false;
 	}
-	
+
 	/**
-	 * 
+	 * Submit a command for asynchronous execution.
+	 * If the work queue is at its maximum size then the command is handled according
+	 * to the rejection policy.  HIGH priority commands and periodic commands are
+	 * always admitted.
+	 *
 	 * @param commandProcessor
 	 */
 	public void execute(AbstractCommandImpl<?> commandProcessor)
     {
 		if(isShuttingDown())
 			return;
-		
+
+		if(! isAdmissible(commandProcessor))
+		{
+			reject(commandProcessor);
+			return;
+		}
+
     	workQueue.offer(commandProcessor);
-    	
+
     	adjustThreadPool();
     }
-	
+
+	private boolean isAdmissible(AbstractCommandImpl<?> commandProcessor)
+	{
+		if(getMaximumQueuedCommands() <= 0)
+			return true;
+		if(commandProcessor.getPriority() == Priority.HIGH || commandProcessor.isPeriodic())
+			return true;
+
+		return getQueuedCommandCount() < getMaximumQueuedCommands();
+	}
+
+	private void reject(AbstractCommandImpl<?> commandProcessor)
+	{
+		rejectedCommandCount.incrementAndGet();
+
+		switch(rejectionPolicy)
+		{
+		case CALLER_RUNS:
+			logger.warn("Work queue is full (" + getQueuedCommandCount() + " commands), executing '" +
+				commandProcessor.toString() + "' on the submitting thread.");
+			executeCommand(commandProcessor);
+			break;
+		case DISCARD:
+			logger.warn("Work queue is full (" + getQueuedCommandCount() + " commands), discarding '" +
+				commandProcessor.toString() + "'.");
+			break;
+		default:
+			logger.warn("Work queue is full (" + getQueuedCommandCount() + " commands), rejecting '" +
+				commandProcessor.toString() + "'.");
+			if(getResultsQueue() != null)
+				getResultsQueue().add( createErrorResult(commandProcessor,
+					new RejectedExecutionException("The asynchronous command work queue is full (" + getMaximumQueuedCommands() + " commands).")) );
+		}
+	}
+
+	private <R> AsynchronousCommandResult<R> createErrorResult(AbstractCommandImpl<R> commandProcessor, Throwable t)
+	{
+		return new AsynchronousCommandResult<R>(commandProcessor, t);
+	}
+
 	/**
-	 * Someday, replace this method with a Thread Management Strategy
+	 * Start a new worker thread if there is no waiting worker and the maximum
+	 * thread count has not been reached, or if the minimum thread count has not been reached.
 	 */
 	private void adjustThreadPool()
     {
-    	//int highPriorityElements = workQueue.accessibleOfPriority(ScheduledPriorityQueueElement.Priority.HIGH);
-    	//if(highPriorityElements > 0)
-    	//	getLogger().warn("There are currently " + highPriorityElements + " high priority elements waiting for procesing.");
-    	
-		for(int activeCount = getThreadGroup().activeCount(); activeCount < getMinimumThreadCount(); ++activeCount)
-			startNewThread();
-		
+		for(int workerCount = workerThreadCount.get();
+			workerCount < getMinimumThreadCount() || (waitingThreadCount.get() == 0 && workerCount < getMaximumThreadCount());
+			workerCount = workerThreadCount.get())
+		{
+			if(workerThreadCount.compareAndSet(workerCount, workerCount + 1))
+			{
+				startNewThread();
+				// only start more than one thread at a time when filling the minimum pool
+				if(workerCount + 1 >= getMinimumThreadCount())
+					break;
+			}
+		}
     }
 
 	public void shutdown()
     {
 		this.shuttingDown = true;
+		unregisterMBean();
     }
-	
+
+	// ===================================================================================
+	// AsynchronousCommandExecutorMBean implementation
+	// ===================================================================================
+	@Override
 	public int getWaitingThreadCount()
 	{
-		return getThreadCountInState(AsynchronousCommandExecutorThreadState.WAITING);
+		return waitingThreadCount.get();
 	}
-	
+
+	@Override
 	public int getBusyThreadCount()
 	{
-		return getThreadCountInState(AsynchronousCommandExecutorThreadState.BUSY);
+		return busyThreadCount.get();
+	}
+
+	@Override
+	public int getWorkerThreadCount()
+	{
+		return workerThreadCount.get();
+	}
+
+	@Override
+	public int getQueuedCommandCount()
+	{
+		return getWorkQueue().size() + getDeferredCommandCount();
+	}
+
+	@Override
+	public int getDeferredCommandCount()
+	{
+		return deferredCommandCount.get();
+	}
+
+	@Override
+	public int getBusyLowPriorityCount()
+	{
+		return busyPriorityCount.get(Priority.LOW.ordinal());
+	}
+
+	@Override
+	public int getBusyNormalPriorityCount()
+	{
+		return busyPriorityCount.get(Priority.NORMAL.ordinal());
+	}
+
+	@Override
+	public int getBusyHighPriorityCount()
+	{
+		return busyPriorityCount.get(Priority.HIGH.ordinal());
+	}
+
+	@Override
+	public long getExecutedCommandCount()
+	{
+		return executedCommandCount.get();
+	}
+
+	@Override
+	public long getRejectedCommandCount()
+	{
+		return rejectedCommandCount.get();
 	}
-	
-    private int getThreadCountInState(AsynchronousCommandExecutorThreadState state)
-    {
-    	Thread[] threads = new Thread[getThreadGroup().activeCount() + 10];
-    	int countInState = 0;
-    	getThreadGroup().enumerate(threads);
-    	
-    	for(Thread thread : threads)
-    		if( ((AsynchronousCommandExecutorThread)thread).getThreadState() == state )
-    			countInState++;
-    	
-    	return countInState;
-    }
 
+	/**
+	 * The set of executing commands is never larger than the number of busy threads,
+	 * the commands must be compared using equals() (rather than a hash lookup) because
+	 * the Command implementations are not required to implement a consistent hashCode().
+	 */
     private boolean isCommandExecuting(Command<?> command)
     {
     	if(command == null)
     		return false;
-    	
-    	Thread[] threads = new Thread[getThreadGroup().activeCount() + 10];
-    	getThreadGroup().enumerate(threads);
-    	
-    	for(Thread thread : threads)
-    		if( command.equals( ((AsynchronousCommandExecutorThread)thread).getExecutingCommand() ) )
+
+    	for(AbstractCommandImpl<?> executingCommand : executingCommands.values())
+    		if( command.equals(executingCommand) )
     			return true;
-    	
+
     	return false;
     }
-    
+
+    private boolean isCommandDeferred(Command<?> command)
+    {
+    	if(command == null || getDeferredCommandCount() == 0)
+    		return false;
+
+    	for(Queue<AbstractCommandImpl<?>> deferred : deferredCommands)
+    		for(AbstractCommandImpl<?> deferredCommand : deferred)
+    			if( command.equals(deferredCommand) )
+    				return true;
+
+    	return false;
+    }
+
+	// ===================================================================================
+	// Priority concurrency limits
+	// ===================================================================================
+    /**
+     * Increment the busy count of the priority if it is below the priority concurrency limit.
+     * @return true if the count was incremented, false if the limit has been reached
+     */
+	private boolean tryAcquirePriority(Priority priority)
+	{
+		int index = priority.ordinal();
+		int limit = priorityConcurrencyLimits[index];
+
+		for(int busy = busyPriorityCount.get(index); limit <= 0 || busy < limit; busy = busyPriorityCount.get(index))
+			if(busyPriorityCount.compareAndSet(index, busy, busy + 1))
+				return true;
+
+		return false;
+	}
+
+	private void releasePriority(Priority priority)
+	{
+		busyPriorityCount.decrementAndGet(priority.ordinal());
+	}
+
+	private void deferCommand(AbstractCommandImpl<?> command)
+	{
+		deferredCommandCount.incrementAndGet();
+		deferredCommands[command.getPriority().ordinal()].add(command);
+	}
+
+	/**
+	 * Get a deferred command of the given priority if the concurrency limit of the priority permits.
+	 * If a command is returned then the priority has been acquired on its behalf.
+	 * This must be called after a command of the priority has been deferred and after a command
+	 * of the priority has completed, so that a deferred command is never stranded.
+	 */
+	private AbstractCommandImpl<?> undeferCommand(Priority priority)
+	{
+		Queue<AbstractCommandImpl<?>> deferred = deferredCommands[priority.ordinal()];
+		if(deferred.isEmpty() || !tryAcquirePriority(priority))
+			return null;
+
+		AbstractCommandImpl<?> command = deferred.poll();
+		if(command == null)
+			releasePriority(priority);
+		else
+			deferredCommandCount.decrementAndGet();
+
+		return command;
+	}
+
     /**
-     * 
-     * @return
+     * Start a worker thread, the worker thread count must have been incremented by the caller.
      */
 	private void startNewThread()
 	{
-		AsynchronousCommandExecutorThread thread = null;
-		synchronized (threadSerialNumber)
+		try
 		{
-			// this will happen sometime around the time the sun collapses to a brown dwarf
-			if(threadSerialNumber.intValue() == Integer.MAX_VALUE)
-				threadSerialNumber = 0;
-			
-			thread = 
-				new AsynchronousCommandExecutorThread(threadGroup, threadGroup.getName() + "-" + threadSerialNumber);
-			thread.setDaemon(true);
+			Thread thread = getThreadFactory().newThread(new AsynchronousCommandExecutorWorker());
 			thread.start();
-			
-			threadSerialNumber = threadSerialNumber.intValue() + 1;
+		}
+		catch(RuntimeException rX)
+		{
+			workerThreadCount.decrementAndGet();
+			getLogger().error("Unable to start asynchronous command executor thread, " + rX.getMessage());
 		}
     }
-	
+
 	/**
-	 * 
-	 * @author VHAISWBECKEC
+	 * Execute a command on the current thread, posting the result to the results queue.
+	 *
+	 * @param command
 	 */
-	class AsynchronousCommandExecutorThread
-	extends Thread
+	private void executeCommand(AbstractCommandImpl<?> command)
 	{
-		private AbstractCommandImpl<?> executingCommand = null;
-		private AsynchronousCommandExecutorThreadState state;
-		private boolean sepuku = false;
-
-		AsynchronousCommandExecutorThread(ThreadGroup group, String name)
-        {
-	        super(group, name);
-	        this.state  = AsynchronousCommandExecutorThreadState.NEW;
-        }
+		try
+		{
+			boolean executeCommand = true;
+			if(command.isPeriodic())
+			{
+				if(command.isPeriodicProcessingTerminated())
+				{
+					// make sure this is removed from the list of executing commands
+					PeriodicCommandList.get().removeScheduledCommand(command);
+					executeCommand = false;
+					logger.warn("Periodic Command '" + command.getClass().getName() + "' has been terminated and will not execute.");
+				}
+				else
+				{
+					// if the executing command is not already in the list of scheduled commands, add it to track it while it runs
+					PeriodicCommandList.get().addIfNotAlreadyScheduled(command);
+				}
+			}
+			if(executeCommand)
+			{
+				AsynchronousCommandResult<?> result = command.call();
+				executedCommandCount.incrementAndGet();
+				if(getResultsQueue() != null)
+					getResultsQueue().add(result);
+			}
+		}
+		catch(Throwable t)
+		{
+			getLogger().error(
+				t.getClass().getName() +
+				" '" + t.getMessage() + "'" +
+				(t.getCause() != null ? (" caused by '" + t.getCause().getClass().getName() + "'") : "")
+			);
 
-		protected AsynchronousCommandExecutorThreadState getThreadState()
-        {
-        	return state;
-        }
+			if(t.getCause() != null)
+				t.getCause().printStackTrace();
+			else
+				t.printStackTrace();
+		}
+	}
 
-		void hariKari()
+	// ===================================================================================
+	// JMX registration
+	// ===================================================================================
+	private synchronized void registerMBean()
+	{
+		try
 		{
-			sepuku = true;
-			if( this.getState() == Thread.State.WAITING && this.getThreadState() == AsynchronousCommandExecutorThreadState.WAITING )
-				this.interrupt();
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			Hashtable<String, String> mBeanProperties = new Hashtable<String, String>();
+			mBeanProperties.put( "type", "AsynchronousCommandExecutor" );
+			mBeanProperties.put( "name", Integer.toHexString(this.hashCode()) );
+			ObjectName name = new ObjectName(ImagingMBean.VIX_MBEAN_DOMAIN_NAME, mBeanProperties);
+			mBeanServer.registerMBean(this, name);
+			mBeanName = name;
 		}
-		
-		protected boolean isSepuku()
-        {
-        	return sepuku;
-        }
+		catch(Exception x)
+		{
+			logger.error("Error registering AsynchronousCommandExecutor with JMX, " + x.getMessage());
+		}
+	}
 
-		/**
-		 * @return the executingCommand or null if thread is waiting for a task
-		 */
-		public AbstractCommandImpl<?> getExecutingCommand()
+	private synchronized void unregisterMBean()
+	{
+		if(mBeanName == null)
+			return;
+		try
 		{
-			return this.executingCommand;
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(mBeanName);
 		}
+		catch(Exception x)
+		{
+			logger.warn("Error unregistering AsynchronousCommandExecutor from JMX, " + x.getMessage());
+		}
+		mBeanName = null;
+	}
 
+	/**
+	 * The worker that runs on each executor thread, taking commands from the
+	 * work queue and executing them.
+	 *
+	 * @author VHAISWBECKEC
+	 */
+	class AsynchronousCommandExecutorWorker
+	implements Runnable
+	{
 		@Override
         public void run()
         {
-			while(! isShuttingDown() && !isSepuku())
+			boolean retired = false;
+			try
 			{
-				try
-	            {
-					this.state = AsynchronousCommandExecutorThreadState.WAITING;
-					// will wait here for the next work queue item
-					executingCommand = getWorkQueue().take();
+				while(! isShuttingDown())
+				{
+					AbstractCommandImpl<?> command = null;
+
+					waitingThreadCount.incrementAndGet();
 					try
+		            {
+						// will wait here for the next work queue item
+						command = getWorkQueue().poll(getThreadKeepAliveMs(), TimeUnit.MILLISECONDS);
+		            }
+					catch (InterruptedException e)
+					{
+						logger.warn("Unexpected InterruptedException, ignoring ....");
+					}
+					finally
+					{
+						waitingThreadCount.decrementAndGet();
+					}
+
+					if(command == null)
+					{
+						retired = isRetirementEligible();
+						if(retired)
+							return;
+						continue;
+					}
+
+					Priority priority = command.getPriority();
+					if(! tryAcquirePriority(priority))
+					{
+						deferCommand(command);
+						command = undeferCommand(priority);
+					}
+
+					// a command is only non-null here if its priority has been acquired,
+					// after it completes run any commands of the same priority that were deferred
+					while(command != null)
 					{
-						this.state = AsynchronousCommandExecutorThreadState.BUSY;
-						boolean executeCommand = true;
-						if(executingCommand.isPeriodic())
+						busyThreadCount.incrementAndGet();
+						executingCommands.put(this, command);
+						try
 						{
-							if(executingCommand.isPeriodicProcessingTerminated())
-							{
-								// make sure this is removed from the list of executing commands
-								PeriodicCommandList.get().removeScheduledCommand(executingCommand);
-								executeCommand = false;
-								logger.warn("Periodic Command '" + executingCommand.getClass().getName() + "' has been terminated and will not execute.");
-							}
-							else
-							{
-								// if the executing command is not already in the list of scheduled commands, add it to track it while it runs
-								PeriodicCommandList.get().addIfNotAlreadyScheduled(executingCommand);
-							}
+							executeCommand(command);
 						}
-						if(executeCommand)
+						finally
 						{
-							AsynchronousCommandResult<?> result = executingCommand.call();
-							if(getResultsQueue() != null)
-								getResultsQueue().add(result);	
-						}						
-					}
-					catch(Throwable t)
-					{
-						getLogger().error(
-							t.getClass().getName() + 
-							" '" + t.getMessage() + "'" + 
-							(t.getCause() != null ? (" caused by '" + t.getCause().getClass().getName() + "'") : "")
-						);
-						
-						if(t.getCause() != null)
-							t.getCause().printStackTrace();
-						else
-							t.printStackTrace();
+							executingCommands.remove(this);
+							busyThreadCount.decrementAndGet();
+							releasePriority(priority);
+						}
+						command = undeferCommand(priority);
 					}
-	            } 
-				catch (InterruptedException e)
-				{
-					if(! isSepuku())
-						logger.warn("Unexpected InterruptedException, ignoring ....");
 				}
-				
-				executingCommand = null;
+			}
+			finally
+			{
+				// the retirement path has already decremented the worker count
+				if(! retired)
+					workerThreadCount.decrementAndGet();
 			}
         }
+
+		/**
+		 * If the worker thread count is above the minimum then decrement it and return true,
+		 * the calling worker must then exit.
+		 */
+		private boolean isRetirementEligible()
+		{
+			for(int workerCount = workerThreadCount.get(); workerCount > getMinimumThreadCount(); workerCount = workerThreadCount.get())
+				if(workerThreadCount.compareAndSet(workerCount, workerCount - 1))
+					return true;
+			return false;
+		}
 	}
-}
\ No newline at end of file
+}
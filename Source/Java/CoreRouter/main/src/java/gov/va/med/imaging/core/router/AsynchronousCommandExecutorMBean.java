@@ -0,0 +1,70 @@
+package gov.va.med.imaging.core.router;
+
+/**
+ * The JMX management interface of the AsynchronousCommandExecutor.
+ * All of the counts are maintained as the commands move through the executor
+ * and are available without enumerating the worker threads or the work queue.
+ * 
+ * @author VHAISWBECKEC
+ *
+ */
+public interface AsynchronousCommandExecutorMBean
+{
+	/**
+	 * @return the number of worker threads currently waiting for a command
+	 */
+	public abstract int getWaitingThreadCount();
+
+	/**
+	 * @return the number of worker threads currently executing a command
+	 */
+	public abstract int getBusyThreadCount();
+
+	/**
+	 * @return the number of worker threads, busy or waiting
+	 */
+	public abstract int getWorkerThreadCount();
+
+	/**
+	 * @return the number of commands waiting for execution, including those
+	 * whose accessibility date has not passed and those deferred by a priority concurrency limit
+	 */
+	public abstract int getQueuedCommandCount();
+
+	/**
+	 * @return the number of commands deferred because their priority concurrency limit was reached
+	 */
+	public abstract int getDeferredCommandCount();
+
+	public abstract int getBusyLowPriorityCount();
+
+	public abstract int getBusyNormalPriorityCount();
+
+	public abstract int getBusyHighPriorityCount();
+
+	/**
+	 * @return the total number of commands executed since the executor was created
+	 */
+	public abstract long getExecutedCommandCount();
+
+	/**
+	 * @return the total number of commands refused admission to the work queue
+	 */
+	public abstract long getRejectedCommandCount();
+
+	public abstract int getMinimumThreadCount();
+
+	public abstract int getMaximumThreadCount();
+
+	public abstract int getMaximumQueuedCommands();
+
+	/**
+	 * @return the name of the AsynchronousCommandRejectionPolicy in effect
+	 */
+	public abstract String getRejectionPolicy();
+
+	/**
+	 * @return true if the worker threads are virtual threads
+	 */
+	public abstract boolean isVirtualThreads();
+}
@@ -0,0 +1,39 @@
+package gov.va.med.imaging.core.router;
+
+/**
+ * The action taken by the AsynchronousCommandExecutor when a command is submitted
+ * and the work queue has reached its configured maximum size.
+ * 
+ * @author VHAISWBECKEC
+ *
+ */
+public enum AsynchronousCommandRejectionPolicy
+{
+	REJECT("The command is not executed, its listeners are notified with a RejectedExecutionException."),
+	CALLER_RUNS("The command is executed synchronously on the thread that submitted it."),
+	DISCARD("The command is not executed and its listeners are not notified.");
+	
+	public final String description;
+	
+	AsynchronousCommandRejectionPolicy(String description)
+	{
+		this.description = description;
+	}
+	
+	/**
+	 * Return the policy with the given name, or REJECT if the name 
+	 * is null or unrecognized.
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public static AsynchronousCommandRejectionPolicy valueOfOrDefault(String name)
+	{
+		if(name != null)
+			for(AsynchronousCommandRejectionPolicy policy : values())
+				if(policy.name().equalsIgnoreCase(name.trim()))
+					return policy;
+		
+		return REJECT;
+	}
+}
@@ -0,0 +1,96 @@
+package gov.va.med.imaging.core.router;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The ThreadFactory used by the AsynchronousCommandExecutor to create its worker threads.
+ * By default this creates daemon platform threads in a named ThreadGroup.
+ * If virtual threads are requested and the JVM supports them (Thread.ofVirtual() exists) then 
+ * virtual threads are created instead.  The virtual thread support is resolved reflectively so
+ * that this class will load in a JVM that predates virtual threads, in which case
+ * platform threads are used.
+ * 
+ * @author VHAISWBECKEC
+ *
+ */
+public class AsynchronousCommandThreadFactory
+implements ThreadFactory
+{
+	private final static Logger logger = Logger.getLogger(AsynchronousCommandThreadFactory.class);
+	
+	private final String name;
+	private final ThreadGroup threadGroup;
+	private final ThreadFactory virtualThreadFactory;
+	private final AtomicInteger threadSerialNumber = new AtomicInteger(0);
+
+	/**
+	 * 
+	 * @param name - the prefix of the thread names and the name of the thread group
+	 * @param useVirtualThreads - if true, try to create virtual threads
+	 */
+	public AsynchronousCommandThreadFactory(String name, boolean useVirtualThreads)
+	{
+		this.name = name;
+		this.threadGroup = new ThreadGroup(name);
+		this.virtualThreadFactory = useVirtualThreads ? createVirtualThreadFactory(name) : null;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * @return true if this factory is creating virtual threads
+	 */
+	public boolean isVirtual()
+	{
+		return virtualThreadFactory != null;
+	}
+
+	@Override
+	public Thread newThread(Runnable runnable)
+	{
+		// roll the serial number over well before it goes negative
+		int serialNumber = threadSerialNumber.getAndIncrement() & Integer.MAX_VALUE;
+		
+		if(virtualThreadFactory != null)
+		{
+			Thread thread = virtualThreadFactory.newThread(runnable);
+			thread.setName(getName() + "-virtual-" + serialNumber);
+			return thread;
+		}
+		
+		Thread thread = new Thread(threadGroup, runnable, getName() + "-" + serialNumber);
+		thread.setDaemon(true);
+		return thread;
+	}
+	
+	/**
+	 * Get the virtual thread factory, i.e. Thread.ofVirtual().factory(), if the
+	 * JVM supports virtual threads.
+	 * 
+	 * @return a ThreadFactory that creates virtual threads or null if not supported
+	 */
+	private static ThreadFactory createVirtualThreadFactory(String name)
+	{
+		try
+		{
+			Method ofVirtual = Thread.class.getMethod("ofVirtual");
+			Object builder = ofVirtual.invoke(null);
+			Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+			logger.info("AsynchronousCommandExecutor '" + name + "' is using virtual threads.");
+			return (ThreadFactory)factory.invoke(builder);
+		}
+		catch(Exception x)
+		{
+			logger.warn("Virtual threads requested for '" + name + "' but are not supported by this JVM (" + 
+				x.getClass().getSimpleName() + "), using platform threads.");
+			return null;
+		}
+	}
+}
@@ -0,0 +1,406 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.core.router.breaker;
+
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The circuit breaker of one site.  A command asks the breaker for permission before 
+ * it calls the site's data source and tells it the outcome afterward.
+ * 
+ * The breaker opens when the number of consecutive connection failures reaches the
+ * failure threshold or, if a latency threshold is set, when the latency percentile 
+ * of a full window of successful calls exceeds it.  While it is open calls are refused
+ * so that they fail at once rather than waiting for a connect timeout.  Once the open 
+ * period has passed the breaker lets a single probe call through, if the probe succeeds 
+ * the breaker closes, if it fails the breaker opens for another open period.  A probe
+ * whose outcome is never reported is replaced by another after the open period.
+ * 
+ * The breaker also derives a connect timeout from the time the site took to start answering
+ * the successful calls, a multiple of the 99th percentile clamped to the configured range, 
+ * so that a site that normally answers in a second is not given the configured maximum to 
+ * connect.  These first response times are kept apart from the latency of the whole call, 
+ * which includes reading and processing the result, a call that returns a large result 
+ * would otherwise raise the connect timeout.  Calls whose data source does not report a 
+ * first response time do not change the connect timeout.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class SiteCircuitBreaker
+implements SiteCircuitBreakerMBean
+{
+	private final static Logger logger = Logger.getLogger(SiteCircuitBreaker.class);
+	// the number of first response samples needed before a connect timeout is derived from them
+	final static int MINIMUM_TIMEOUT_SAMPLES = 10;
+	private final static int TIMEOUT_PERCENTILE = 99;
+	
+	private final String routingToken;
+	private final int failureThreshold;
+	private final long openMs;
+	private final int latencyPercentile;
+	private final long latencyThresholdMs;
+	private final int minimumConnectTimeoutMs;
+	private final int maximumConnectTimeoutMs;
+	private final int connectTimeoutMultiplier;
+	
+	// all of the following are guarded by this
+	private SiteCircuitBreakerState state = SiteCircuitBreakerState.CLOSED;
+	private int consecutiveFailureCount = 0;
+	private long openedTime = 0L;
+	private boolean probeInProgress = false;
+	private long probeStartTime = 0L;
+	private final long[] latencies;
+	private int latencyCount = 0;
+	private int nextLatencyIndex = 0;
+	private final long[] firstResponses;
+	private int firstResponseCount = 0;
+	private int nextFirstResponseIndex = 0;
+	private int connectTimeoutMs = 0;
+	private boolean connectTimeoutCurrent = true;
+	
+	private long successCount = 0L;
+	private long failureCount = 0L;
+	private long openCount = 0L;
+	private long fastFailureCount = 0L;
+	private long probeCount = 0L;
+	
+	/**
+	 * 
+	 * @param routingToken the routing token string of the site
+	 * @param failureThreshold the number of consecutive failures that opens the breaker
+	 * @param openMs how long the breaker stays open before a probe is let through
+	 * @param latencyPercentile the latency percentile (1 to 100) compared to the latency threshold
+	 * @param latencyThresholdMs the latency percentile that opens the breaker, <= 0 if latency does not open it
+	 * @param latencyWindowSize the number of successful calls whose latency is kept
+	 * @param minimumConnectTimeoutMs the least connect timeout derived from the first response times
+	 * @param maximumConnectTimeoutMs the greatest connect timeout derived from the first response times
+	 * @param connectTimeoutMultiplier the multiple of the first response time used as the connect timeout
+	 */
+	public SiteCircuitBreaker(String routingToken, 
+		int failureThreshold, long openMs, 
+		int latencyPercentile, long latencyThresholdMs, int latencyWindowSize,
+		int minimumConnectTimeoutMs, int maximumConnectTimeoutMs, int connectTimeoutMultiplier)
+	{
+		this.routingToken = routingToken;
+		this.failureThreshold = Math.max(1, failureThreshold);
+		this.openMs = Math.max(0L, openMs);
+		this.latencyPercentile = Math.min(100, Math.max(1, latencyPercentile));
+		this.latencyThresholdMs = latencyThresholdMs;
+		this.latencies = new long[Math.max(MINIMUM_TIMEOUT_SAMPLES, latencyWindowSize)];
+		this.firstResponses = new long[this.latencies.length];
+		this.minimumConnectTimeoutMs = Math.max(0, minimumConnectTimeoutMs);
+		this.maximumConnectTimeoutMs = Math.max(this.minimumConnectTimeoutMs, maximumConnectTimeoutMs);
+		this.connectTimeoutMultiplier = Math.max(1, connectTimeoutMultiplier);
+	}
+	
+	/**
+	 * The current time, may be overridden for testing.
+	 */
+	protected long currentTimeMillis()
+	{
+		return System.currentTimeMillis();
+	}
+	
+	/**
+	 * Ask whether a call may be made to the site.  A caller that is allowed must 
+	 * report the outcome of the call to recordSuccess, recordFailure or release.
+	 * 
+	 * @return true if the call may be made, false if it must fail without contacting the site
+	 */
+	public synchronized boolean allowRequest()
+	{
+		long now = currentTimeMillis();
+		switch(state)
+		{
+			case CLOSED:
+				return true;
+			case OPEN:
+				if(now - openedTime >= openMs)
+				{
+					state = SiteCircuitBreakerState.HALF_OPEN;
+					startProbe(now);
+					return true;
+				}
+				break;
+			case HALF_OPEN:
+				if(!probeInProgress || now - probeStartTime >= openMs)
+				{
+					startProbe(now);
+					return true;
+				}
+				break;
+		}
+		fastFailureCount++;
+		return false;
+	}
+	
+	private void startProbe(long now)
+	{
+		probeInProgress = true;
+		probeStartTime = now;
+		probeCount++;
+		logger.info("Circuit breaker for site '" + routingToken + "' is letting a probe through.");
+	}
+	
+	/**
+	 * Report that a call to the site completed, the site answered whether or not 
+	 * the answer was an error.
+	 * 
+	 * @param latencyMs the time the call took
+	 */
+	public void recordSuccess(long latencyMs)
+	{
+		recordSuccess(latencyMs, -1L);
+	}
+	
+	/**
+	 * Report that a call to the site completed, the site answered whether or not 
+	 * the answer was an error.
+	 * 
+	 * @param latencyMs the time the call took
+	 * @param firstResponseMs the time the site took to connect and start answering, 
+	 * or a negative value if the data source did not measure it
+	 */
+	public synchronized void recordSuccess(long latencyMs, long firstResponseMs)
+	{
+		successCount++;
+		consecutiveFailureCount = 0;
+		addLatency(latencyMs);
+		if(firstResponseMs >= 0L)
+			addFirstResponse(firstResponseMs);
+		if(state == SiteCircuitBreakerState.HALF_OPEN)
+		{
+			state = SiteCircuitBreakerState.CLOSED;
+			probeInProgress = false;
+			logger.info("Circuit breaker for site '" + routingToken + "' closed after a successful probe.");
+		}
+		else if(state == SiteCircuitBreakerState.CLOSED && latencyThresholdMs > 0 && latencyCount == latencies.length)
+		{
+			long percentileLatency = getLatencyPercentile(latencyPercentile);
+			if(percentileLatency > latencyThresholdMs)
+			{
+				// the window is discarded so that the slow calls do not reopen the breaker once it closes
+				clearLatencies();
+				open("its " + latencyPercentile + "th percentile latency of " + percentileLatency + 
+					" ms exceeded " + latencyThresholdMs + " ms");
+			}
+		}
+	}
+	
+	/**
+	 * Report that a call could not connect to the site.
+	 */
+	public synchronized void recordFailure()
+	{
+		failureCount++;
+		consecutiveFailureCount++;
+		if(state == SiteCircuitBreakerState.HALF_OPEN)
+			open("the probe failed");
+		else if(state == SiteCircuitBreakerState.CLOSED && consecutiveFailureCount >= failureThreshold)
+			open(consecutiveFailureCount + " consecutive calls failed");
+	}
+	
+	/**
+	 * Report that an allowed call was not made or that its outcome says nothing
+	 * about the site.
+	 */
+	public synchronized void release()
+	{
+		if(state == SiteCircuitBreakerState.HALF_OPEN)
+			probeInProgress = false;
+	}
+	
+	private void open(String reason)
+	{
+		state = SiteCircuitBreakerState.OPEN;
+		openedTime = currentTimeMillis();
+		probeInProgress = false;
+		openCount++;
+		logger.warn("Circuit breaker for site '" + routingToken + "' opened for " + openMs + " ms because " + reason + ".");
+	}
+	
+	private void addLatency(long latencyMs)
+	{
+		latencies[nextLatencyIndex] = Math.max(0L, latencyMs);
+		nextLatencyIndex = (nextLatencyIndex + 1) % latencies.length;
+		if(latencyCount < latencies.length)
+			latencyCount++;
+	}
+	
+	private void addFirstResponse(long firstResponseMs)
+	{
+		firstResponses[nextFirstResponseIndex] = firstResponseMs;
+		nextFirstResponseIndex = (nextFirstResponseIndex + 1) % firstResponses.length;
+		if(firstResponseCount < firstResponses.length)
+			firstResponseCount++;
+		connectTimeoutCurrent = false;
+	}
+	
+	private void clearLatencies()
+	{
+		latencyCount = 0;
+		nextLatencyIndex = 0;
+	}
+	
+	private void clearFirstResponses()
+	{
+		firstResponseCount = 0;
+		nextFirstResponseIndex = 0;
+		connectTimeoutCurrent = false;
+	}
+	
+	/**
+	 * Nearest rank percentile of the latency window, 0 if it is empty.
+	 */
+	private long getLatencyPercentile(int percentile)
+	{
+		return getPercentile(latencies, latencyCount, percentile);
+	}
+	
+	private static long getPercentile(long[] samples, int sampleCount, int percentile)
+	{
+		if(sampleCount == 0)
+			return 0L;
+		long[] sorted = Arrays.copyOf(samples, sampleCount);
+		Arrays.sort(sorted);
+		int rank = (int)Math.ceil(percentile / 100.0 * sampleCount);
+		return sorted[Math.max(0, rank - 1)];
+	}
+	
+	public synchronized SiteCircuitBreakerState getBreakerState()
+	{
+		return state;
+	}
+	
+	/**
+	 * @return the connect timeout derived from the first response times of the site, or 0 
+	 * if there are not yet enough of them to derive one
+	 */
+	@Override
+	public synchronized int getConnectTimeoutMs()
+	{
+		if(!connectTimeoutCurrent)
+		{
+			if(firstResponseCount < MINIMUM_TIMEOUT_SAMPLES)
+				connectTimeoutMs = 0;
+			else
+			{
+				long timeout = getPercentile(firstResponses, firstResponseCount, TIMEOUT_PERCENTILE) * connectTimeoutMultiplier;
+				connectTimeoutMs = (int)Math.min(maximumConnectTimeoutMs, Math.max(minimumConnectTimeoutMs, timeout));
+			}
+			connectTimeoutCurrent = true;
+		}
+		return connectTimeoutMs;
+	}
+	
+	// ====================================================================================
+	// SiteCircuitBreakerMBean implementation
+	// ====================================================================================
+	@Override
+	public String getRoutingToken()
+	{
+		return routingToken;
+	}
+
+	@Override
+	public String getState()
+	{
+		return getBreakerState().toString();
+	}
+
+	@Override
+	public synchronized int getConsecutiveFailureCount()
+	{
+		return consecutiveFailureCount;
+	}
+
+	@Override
+	public synchronized long getSuccessCount()
+	{
+		return successCount;
+	}
+
+	@Override
+	public synchronized long getFailureCount()
+	{
+		return failureCount;
+	}
+
+	@Override
+	public synchronized long getOpenCount()
+	{
+		return openCount;
+	}
+
+	@Override
+	public synchronized long getFastFailureCount()
+	{
+		return fastFailureCount;
+	}
+
+	@Override
+	public synchronized long getProbeCount()
+	{
+		return probeCount;
+	}
+
+	@Override
+	public synchronized int getLatencySampleCount()
+	{
+		return latencyCount;
+	}
+
+	@Override
+	public synchronized int getFirstResponseSampleCount()
+	{
+		return firstResponseCount;
+	}
+
+	@Override
+	public synchronized long getMedianLatencyMs()
+	{
+		return getLatencyPercentile(50);
+	}
+
+	@Override
+	public synchronized long getLatencyPercentileMs()
+	{
+		return getLatencyPercentile(latencyPercentile);
+	}
+
+	@Override
+	public synchronized void reset()
+	{
+		state = SiteCircuitBreakerState.CLOSED;
+		consecutiveFailureCount = 0;
+		probeInProgress = false;
+		clearLatencies();
+		clearFirstResponses();
+		logger.info("Circuit breaker for site '" + routingToken + "' reset.");
+	}
+}
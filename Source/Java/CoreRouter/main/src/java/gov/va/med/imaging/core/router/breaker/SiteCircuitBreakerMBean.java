@@ -0,0 +1,59 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.core.router.breaker;
+
+/**
+ * JMX view of the circuit breaker of one site.  Latencies are those of the successful
+ * calls in the latency window, the connect timeout is 0 until the data source has reported
+ * enough first response times to derive it from.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public interface SiteCircuitBreakerMBean
+{
+	public String getRoutingToken();
+	
+	public String getState();
+	
+	public int getConsecutiveFailureCount();
+	
+	public long getSuccessCount();
+	public long getFailureCount();
+	public long getOpenCount();
+	public long getFastFailureCount();
+	public long getProbeCount();
+	
+	public int getLatencySampleCount();
+	public long getMedianLatencyMs();
+	public long getLatencyPercentileMs();
+	public int getFirstResponseSampleCount();
+	public int getConnectTimeoutMs();
+	
+	/**
+	 * Close the breaker and discard the latency and first response windows.
+	 */
+	public void reset();
+}
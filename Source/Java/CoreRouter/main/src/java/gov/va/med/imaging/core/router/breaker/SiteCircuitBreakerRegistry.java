@@ -0,0 +1,129 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.core.router.breaker;
+
+import gov.va.med.RoutingToken;
+import gov.va.med.imaging.ImagingMBean;
+import gov.va.med.imaging.core.router.commands.configuration.CommandConfiguration;
+
+import java.lang.management.ManagementFactory;
+import java.util.Hashtable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The SiteCircuitBreaker instances of the sites the router calls, one per routing 
+ * token.  A breaker is created and registered with JMX the first time a site is called,
+ * using the CommandConfiguration in effect at that time.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class SiteCircuitBreakerRegistry
+{
+	private final static Logger logger = Logger.getLogger(SiteCircuitBreakerRegistry.class);
+	
+	private static SiteCircuitBreakerRegistry singleton;
+	
+	public static synchronized SiteCircuitBreakerRegistry getSingleton()
+	{
+		if(singleton == null)
+			singleton = new SiteCircuitBreakerRegistry();
+		return singleton;
+	}
+	
+	private final ConcurrentMap<String, SiteCircuitBreaker> breakers = 
+		new ConcurrentHashMap<String, SiteCircuitBreaker>();
+	
+	private SiteCircuitBreakerRegistry()
+	{
+	}
+	
+	/**
+	 * Get the breaker of the site, creating it if this is the first call to the site.
+	 * 
+	 * @param routingToken
+	 * @return the breaker or null if circuit breakers are not enabled
+	 */
+	public SiteCircuitBreaker getCircuitBreaker(RoutingToken routingToken)
+	{
+		CommandConfiguration configuration = CommandConfiguration.getCommandConfiguration();
+		if(routingToken == null || configuration == null || !configuration.isCircuitBreakerEnabled())
+			return null;
+		
+		String key = routingToken.toRoutingTokenString();
+		SiteCircuitBreaker breaker = breakers.get(key);
+		if(breaker == null)
+		{
+			SiteCircuitBreaker newBreaker = new SiteCircuitBreaker(key, 
+				configuration.getCircuitBreakerFailureThreshold(),
+				configuration.getCircuitBreakerOpenMs(),
+				configuration.getCircuitBreakerLatencyPercentile(),
+				configuration.getCircuitBreakerLatencyThresholdMs(),
+				configuration.getCircuitBreakerLatencyWindowSize(),
+				configuration.getMinimumAdaptiveConnectTimeoutMs(),
+				configuration.getMaximumAdaptiveConnectTimeoutMs(),
+				configuration.getAdaptiveConnectTimeoutMultiplier());
+			breaker = breakers.putIfAbsent(key, newBreaker);
+			if(breaker == null)
+			{
+				breaker = newBreaker;
+				registerBreaker(breaker);
+			}
+		}
+		return breaker;
+	}
+	
+	/**
+	 * @param routingToken
+	 * @return the state of the breaker of the site, CLOSED if the site has no breaker
+	 */
+	public SiteCircuitBreakerState getState(RoutingToken routingToken)
+	{
+		SiteCircuitBreaker breaker = routingToken == null ? null : breakers.get(routingToken.toRoutingTokenString());
+		return breaker == null ? SiteCircuitBreakerState.CLOSED : breaker.getBreakerState();
+	}
+	
+	private void registerBreaker(SiteCircuitBreaker breaker)
+	{
+		try
+		{
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			Hashtable<String, String> mBeanProperties = new Hashtable<String, String>();
+			mBeanProperties.put( "type", "SiteCircuitBreaker" );
+			mBeanProperties.put( "name", ObjectName.quote(breaker.getRoutingToken()) );
+			mBeanServer.registerMBean(breaker, new ObjectName(ImagingMBean.VIX_MBEAN_DOMAIN_NAME, mBeanProperties));
+		}
+		catch(Exception ex)
+		{
+			logger.error("Error registering circuit breaker for site '" + breaker.getRoutingToken() + "' with JMX", ex);
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+
+ */
+package gov.va.med.imaging.core.router.commands;
+
+import gov.va.med.imaging.access.TransactionLogRollup;
+import gov.va.med.imaging.core.interfaces.exceptions.CompositeMethodException;
+import gov.va.med.imaging.core.interfaces.exceptions.ConnectionException;
+import gov.va.med.imaging.core.interfaces.exceptions.MethodConnectionException;
+import gov.va.med.imaging.core.interfaces.exceptions.MethodException;
+import gov.va.med.imaging.core.router.AbstractCommandImpl;
+import gov.va.med.imaging.exchange.enums.DatasourceProtocol;
+
+import java.util.Date;
+
+/**
+ * A Command implementation for getting the pre-aggregated statistics of the
+ * Transaction Log records in a period.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class GetTransactionLogRollupCommandImpl
+extends AbstractCommandImpl<TransactionLogRollup>
+{
+	private static final long serialVersionUID = 1L;
+	private final Date startDate;
+	private final Date endDate;
+	private final String commandClassName;
+	private final String site;
+	private final DatasourceProtocol datasourceProtocol;
+	
+	public GetTransactionLogRollupCommandImpl(
+			Date               startDate,
+			Date               endDate,
+			String             commandClassName,
+			String             site,
+			DatasourceProtocol datasourceProtocol)
+	{
+		super();
+		this.startDate = startDate;
+		this.endDate = endDate;
+		this.commandClassName = commandClassName;
+		this.site = site;
+		this.datasourceProtocol = datasourceProtocol;
+	}
+
+	@Override
+	public TransactionLogRollup callSynchronouslyInTransactionContext() 
+	throws MethodException, ConnectionException
+	{
+		getLogger ().info ("Synchronous Command [" + this.getClass().getSimpleName() + "] - processing.");
+
+		// The CompositeMethodException collects the exceptions from each
+		// attempt. If some attempt succeeds then this instance is silently
+		// discarded, else if all attempts fail this instance is thrown.
+		CompositeMethodException compositeException = new CompositeMethodException();
+
+		try
+		{
+			return getCommandContext ().getTransactionLoggerService ().getLogRollup (
+				startDate, endDate, commandClassName, site, datasourceProtocol);
+		}
+
+		// ConnectionException instances are always collected into the
+		// CompositeMethodException
+		catch (ConnectionException cX)
+		{
+			compositeException.addException(new MethodConnectionException(cX));
+		}
+
+		// a MethodException is immediately re-thrown if
+		// FailoverOnMethodException is false
+		catch (MethodException mX)
+		{
+			getLogger().error(
+					"Failed To Get Log Rollup.\n" +
+					"Exception details follow.",
+					mX);
+			compositeException.addException(mX);
+			if (! getCommandContext().getRouter().isFailoverOnMethodException())
+				throw mX;
+		}
+
+		throw compositeException;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		return false;
+	}
+
+	@Override
+	protected String parameterToString()
+	{
+		StringBuffer sb = new StringBuffer();
+		sb.append(startDate == null ? "<null startDate>" : startDate.toString());
+		sb.append(',');
+		sb.append(endDate == null ? "<null endDate>" : endDate.toString());
+		sb.append(',');
+		sb.append(commandClassName == null ? "<null commandClassName>" : commandClassName);
+		sb.append(',');
+		sb.append(site == null ? "<null site>" : site);
+		sb.append(',');
+		sb.append(datasourceProtocol == null ? "<null datasourceProtocol>" : datasourceProtocol.name());
+
+		return sb.toString();
+	}
+}
@@ -43,6 +43,30 @@ extends AbstractBaseFacadeConfiguration
 	private int minimumThreadCount;
 	private boolean ensurePatientSeenAtDoD = true;
 	
+	// asynchronous command executor tuning, a value <= 0 means "not limited"
+	private int maximumThreadCount = 0;
+	private long threadKeepAliveMs = 60000L;
+	private int maximumQueuedCommands = 0;
+	private String rejectionPolicy = "REJECT";
+	private int lowPriorityConcurrencyLimit = 0;
+	private int normalPriorityConcurrencyLimit = 0;
+	private int highPriorityConcurrencyLimit = 0;
+	private boolean useVirtualThreads = false;
+	private String asynchronousCommandQueueType = "PRIORITY_BLOCKING";
+	private boolean streamThroughOnCacheMiss = true;
+	private long coalescedImageRequestWaitMs = 120000L;
+	
+	// per-site circuit breakers and the connect timeouts derived from site latency
+	private boolean circuitBreakerEnabled = true;
+	private int circuitBreakerFailureThreshold = 5;
+	private long circuitBreakerOpenMs = 30000L;
+	private int circuitBreakerLatencyPercentile = 95;
+	private long circuitBreakerLatencyThresholdMs = 0L;
+	private int circuitBreakerLatencyWindowSize = 100;
+	private int minimumAdaptiveConnectTimeoutMs = 2000;
+	private int maximumAdaptiveConnectTimeoutMs = 30000;
+	private int adaptiveConnectTimeoutMultiplier = 3;
+	
 	public CommandConfiguration()
 	{
 		super();	
@@ -115,6 +139,270 @@ extends AbstractBaseFacadeConfiguration
 		this.ensurePatientSeenAtDoD = ensurePatientSeenAtDoD;
 	}
 
+	/**
+	 * The maximum number of asynchronous command executor threads.
+	 * A value less than or equal to the minimum thread count results in a
+	 * fixed size pool of minimum thread count threads.
+	 */
+	public int getMaximumThreadCount()
+	{
+		return maximumThreadCount;
+	}
+
+	public void setMaximumThreadCount(int maximumThreadCount)
+	{
+		this.maximumThreadCount = maximumThreadCount;
+	}
+
+	/**
+	 * The time an idle executor thread in excess of the minimum thread count
+	 * waits for work before it is retired.
+	 */
+	public long getThreadKeepAliveMs()
+	{
+		return threadKeepAliveMs;
+	}
+
+	public void setThreadKeepAliveMs(long threadKeepAliveMs)
+	{
+		this.threadKeepAliveMs = threadKeepAliveMs;
+	}
+
+	/**
+	 * The maximum number of asynchronous commands that may be queued, waiting for execution.
+	 * HIGH priority and periodic commands are always admitted.
+	 */
+	public int getMaximumQueuedCommands()
+	{
+		return maximumQueuedCommands;
+	}
+
+	public void setMaximumQueuedCommands(int maximumQueuedCommands)
+	{
+		this.maximumQueuedCommands = maximumQueuedCommands;
+	}
+
+	/**
+	 * The name of the AsynchronousCommandRejectionPolicy applied when the
+	 * maximum queued commands has been reached.
+	 */
+	public String getRejectionPolicy()
+	{
+		return rejectionPolicy;
+	}
+
+	public void setRejectionPolicy(String rejectionPolicy)
+	{
+		this.rejectionPolicy = rejectionPolicy;
+	}
+
+	public int getLowPriorityConcurrencyLimit()
+	{
+		return lowPriorityConcurrencyLimit;
+	}
+
+	public void setLowPriorityConcurrencyLimit(int lowPriorityConcurrencyLimit)
+	{
+		this.lowPriorityConcurrencyLimit = lowPriorityConcurrencyLimit;
+	}
+
+	public int getNormalPriorityConcurrencyLimit()
+	{
+		return normalPriorityConcurrencyLimit;
+	}
+
+	public void setNormalPriorityConcurrencyLimit(int normalPriorityConcurrencyLimit)
+	{
+		this.normalPriorityConcurrencyLimit = normalPriorityConcurrencyLimit;
+	}
+
+	public int getHighPriorityConcurrencyLimit()
+	{
+		return highPriorityConcurrencyLimit;
+	}
+
+	public void setHighPriorityConcurrencyLimit(int highPriorityConcurrencyLimit)
+	{
+		this.highPriorityConcurrencyLimit = highPriorityConcurrencyLimit;
+	}
+
+	/**
+	 * If true and the JVM supports them, the asynchronous command executor
+	 * runs commands on virtual threads rather than platform threads.
+	 */
+	public boolean isUseVirtualThreads()
+	{
+		return useVirtualThreads;
+	}
+
+	public void setUseVirtualThreads(boolean useVirtualThreads)
+	{
+		this.useVirtualThreads = useVirtualThreads;
+	}
+
+	/**
+	 * The name of the AsynchronousCommandQueueType used as the asynchronous command executor work queue.
+	 */
+	public String getAsynchronousCommandQueueType()
+	{
+		return asynchronousCommandQueueType;
+	}
+
+	public void setAsynchronousCommandQueueType(String asynchronousCommandQueueType)
+	{
+		this.asynchronousCommandQueueType = asynchronousCommandQueueType;
+	}
+
+	/**
+	 * If true, an image that is not in the cache is written to the client and into the cache
+	 * as it is read from the data source, rather than being cached completely and then
+	 * streamed to the client from the cache.
+	 */
+	public boolean isStreamThroughOnCacheMiss()
+	{
+		return streamThroughOnCacheMiss;
+	}
+
+	public void setStreamThroughOnCacheMiss(boolean streamThroughOnCacheMiss)
+	{
+		this.streamThroughOnCacheMiss = streamThroughOnCacheMiss;
+	}
+
+	/**
+	 * The maximum time a request for an image that is already being retrieved from a data source
+	 * waits for that retrieval to start writing the image to the cache, after which it fetches
+	 * the image itself.  If 0, concurrent requests for an image are not coalesced.
+	 */
+	public long getCoalescedImageRequestWaitMs()
+	{
+		return coalescedImageRequestWaitMs;
+	}
+
+	public void setCoalescedImageRequestWaitMs(long coalescedImageRequestWaitMs)
+	{
+		this.coalescedImageRequestWaitMs = coalescedImageRequestWaitMs;
+	}
+
+	/**
+	 * If true, calls to the data source of a site are refused while the circuit breaker
+	 * of the site is open, and data sources are given a connect timeout derived from the 
+	 * latency of the site.
+	 */
+	public boolean isCircuitBreakerEnabled()
+	{
+		return circuitBreakerEnabled;
+	}
+
+	public void setCircuitBreakerEnabled(boolean circuitBreakerEnabled)
+	{
+		this.circuitBreakerEnabled = circuitBreakerEnabled;
+	}
+
+	/**
+	 * The number of consecutive failures to connect to a site that opens its circuit breaker.
+	 */
+	public int getCircuitBreakerFailureThreshold()
+	{
+		return circuitBreakerFailureThreshold;
+	}
+
+	public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold)
+	{
+		this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+	}
+
+	/**
+	 * How long a circuit breaker stays open before a probe call is let through to the site.
+	 */
+	public long getCircuitBreakerOpenMs()
+	{
+		return circuitBreakerOpenMs;
+	}
+
+	public void setCircuitBreakerOpenMs(long circuitBreakerOpenMs)
+	{
+		this.circuitBreakerOpenMs = circuitBreakerOpenMs;
+	}
+
+	/**
+	 * The percentile of the latency window compared to the circuit breaker latency threshold.
+	 */
+	public int getCircuitBreakerLatencyPercentile()
+	{
+		return circuitBreakerLatencyPercentile;
+	}
+
+	public void setCircuitBreakerLatencyPercentile(int circuitBreakerLatencyPercentile)
+	{
+		this.circuitBreakerLatencyPercentile = circuitBreakerLatencyPercentile;
+	}
+
+	/**
+	 * The latency percentile of a site that opens its circuit breaker.
+	 * If 0, latency does not open a circuit breaker.
+	 */
+	public long getCircuitBreakerLatencyThresholdMs()
+	{
+		return circuitBreakerLatencyThresholdMs;
+	}
+
+	public void setCircuitBreakerLatencyThresholdMs(long circuitBreakerLatencyThresholdMs)
+	{
+		this.circuitBreakerLatencyThresholdMs = circuitBreakerLatencyThresholdMs;
+	}
+
+	/**
+	 * The number of successful calls to a site whose latency is kept.
+	 */
+	public int getCircuitBreakerLatencyWindowSize()
+	{
+		return circuitBreakerLatencyWindowSize;
+	}
+
+	public void setCircuitBreakerLatencyWindowSize(int circuitBreakerLatencyWindowSize)
+	{
+		this.circuitBreakerLatencyWindowSize = circuitBreakerLatencyWindowSize;
+	}
+
+	/**
+	 * The least connect timeout derived from the time a site takes to start answering.
+	 */
+	public int getMinimumAdaptiveConnectTimeoutMs()
+	{
+		return minimumAdaptiveConnectTimeoutMs;
+	}
+
+	public void setMinimumAdaptiveConnectTimeoutMs(int minimumAdaptiveConnectTimeoutMs)
+	{
+		this.minimumAdaptiveConnectTimeoutMs = minimumAdaptiveConnectTimeoutMs;
+	}
+
+	/**
+	 * The greatest connect timeout derived from the time a site takes to start answering.
+	 */
+	public int getMaximumAdaptiveConnectTimeoutMs()
+	{
+		return maximumAdaptiveConnectTimeoutMs;
+	}
+
+	public void setMaximumAdaptiveConnectTimeoutMs(int maximumAdaptiveConnectTimeoutMs)
+	{
+		this.maximumAdaptiveConnectTimeoutMs = maximumAdaptiveConnectTimeoutMs;
+	}
+
+	/**
+	 * The multiple of the 99th percentile time a site takes to start answering used as its connect timeout.
+	 */
+	public int getAdaptiveConnectTimeoutMultiplier()
+	{
+		return adaptiveConnectTimeoutMultiplier;
+	}
+
+	public void setAdaptiveConnectTimeoutMultiplier(int adaptiveConnectTimeoutMultiplier)
+	{
+		this.adaptiveConnectTimeoutMultiplier = adaptiveConnectTimeoutMultiplier;
+	}
+
 	public synchronized static CommandConfiguration getCommandConfiguration()
 	{
 		try
@@ -140,6 +428,26 @@ extends AbstractBaseFacadeConfiguration
 		this.asynchronousCommandWaiterTimeoutMs = 120000L;
 		this.minimumThreadCount = 100;
 		this.ensurePatientSeenAtDoD = true;
+		this.maximumThreadCount = 0;
+		this.threadKeepAliveMs = 60000L;
+		this.maximumQueuedCommands = 0;
+		this.rejectionPolicy = "REJECT";
+		this.lowPriorityConcurrencyLimit = 0;
+		this.normalPriorityConcurrencyLimit = 0;
+		this.highPriorityConcurrencyLimit = 0;
+		this.useVirtualThreads = false;
+		this.asynchronousCommandQueueType = "PRIORITY_BLOCKING";
+		this.streamThroughOnCacheMiss = true;
+		this.coalescedImageRequestWaitMs = 120000L;
+		this.circuitBreakerEnabled = true;
+		this.circuitBreakerFailureThreshold = 5;
+		this.circuitBreakerOpenMs = 30000L;
+		this.circuitBreakerLatencyPercentile = 95;
+		this.circuitBreakerLatencyThresholdMs = 0L;
+		this.circuitBreakerLatencyWindowSize = 100;
+		this.minimumAdaptiveConnectTimeoutMs = 2000;
+		this.maximumAdaptiveConnectTimeoutMs = 30000;
+		this.adaptiveConnectTimeoutMultiplier = 3;
 		return this;
 	}
 	
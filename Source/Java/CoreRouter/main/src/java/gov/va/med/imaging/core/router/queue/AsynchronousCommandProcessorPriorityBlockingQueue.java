@@ -8,7 +8,6 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.PriorityQueue;
 import java.util.Queue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -51,7 +50,7 @@ import org.apache.log4j.Logger;
  * @param <E>
  */
 public class AsynchronousCommandProcessorPriorityBlockingQueue
-implements BlockingQueue<AbstractCommandImpl<?>>
+implements AsynchronousCommandQueue
 {
 	//private final ClusterablePriorityBlockingQueue<AbstractCommandImpl<?>> priorityQueue;
 	private final PriorityBlockingQueue<AbstractCommandImpl<?>> priorityQueue;
@@ -378,6 +377,7 @@ implements BlockingQueue<AbstractCommandImpl<?>>
 		return priorityQueue.size() + scheduledQueue.size();
     }
 
+	@Override
     public int accessibleSize()
     {
 		return priorityQueue.size();
@@ -390,6 +390,7 @@ implements BlockingQueue<AbstractCommandImpl<?>>
      * @param priority
      * @return
      */
+	@Override
     public int accessibleOfPriority(ScheduledPriorityQueueElement.Priority priority)
     {
     	AbstractCommandImpl<?>[] queueElements = 
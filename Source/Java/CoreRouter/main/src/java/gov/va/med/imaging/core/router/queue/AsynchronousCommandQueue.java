@@ -0,0 +1,31 @@
+package gov.va.med.imaging.core.router.queue;
+
+import gov.va.med.imaging.core.router.AbstractCommandImpl;
+
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The work queue of the AsynchronousCommandExecutor.
+ * Implementations combine a priority queue with scheduled availability, elements 
+ * are not available from take() and poll() until their accessibility date has passed.
+ * 
+ * @author VHAISWBECKEC
+ *
+ */
+public interface AsynchronousCommandQueue
+extends BlockingQueue<AbstractCommandImpl<?>>
+{
+	/**
+	 * @return the number of elements whose accessibility date has passed
+	 */
+	public abstract int accessibleSize();
+	
+    /**
+     * Return the number of accessible queue elements of at least the 
+     * specified priority
+     * 
+     * @param priority
+     * @return
+     */
+	public abstract int accessibleOfPriority(ScheduledPriorityQueueElement.Priority priority);
+}
@@ -0,0 +1,49 @@
+package gov.va.med.imaging.core.router.queue;
+
+/**
+ * The available AsynchronousCommandQueue implementations, selected by
+ * the asynchronousCommandQueueType in the CommandConfiguration.
+ * 
+ * @author VHAISWBECKEC
+ *
+ */
+public enum AsynchronousCommandQueueType
+{
+	PRIORITY_BLOCKING("A PriorityBlockingQueue of accessible elements and a transfer thread for scheduled elements."),
+	STRIPED("Lock-free per-priority lanes of accessible elements and a delay ordered set of scheduled elements.");
+	
+	public final String description;
+	
+	AsynchronousCommandQueueType(String description)
+	{
+		this.description = description;
+	}
+	
+	public AsynchronousCommandQueue createQueue()
+	{
+		switch(this)
+		{
+		case STRIPED:
+			return new StripedScheduledPriorityBlockingQueue();
+		default:
+			return new AsynchronousCommandProcessorPriorityBlockingQueue();
+		}
+	}
+	
+	/**
+	 * Return the queue type with the given name, or PRIORITY_BLOCKING if the name 
+	 * is null or unrecognized.
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public static AsynchronousCommandQueueType valueOfOrDefault(String name)
+	{
+		if(name != null)
+			for(AsynchronousCommandQueueType type : values())
+				if(type.name().equalsIgnoreCase(name.trim()))
+					return type;
+		
+		return PRIORITY_BLOCKING;
+	}
+}
@@ -0,0 +1,572 @@
+package gov.va.med.imaging.core.router.queue;
+
+import gov.va.med.imaging.GUID;
+import gov.va.med.imaging.core.router.AbstractCommandImpl;
+import gov.va.med.imaging.core.router.queue.ScheduledPriorityQueueElement.Priority;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+
+/**
+ * An AsynchronousCommandQueue that does not use locks or monitors on the element paths.
+ *
+ * Accessible elements are kept in one lane per priority, each lane is a ConcurrentSkipListSet
+ * ordered by processing commencement target date (then by insertion order).  The head of the queue
+ * is the head of the highest priority non-empty lane.  Where the AsynchronousCommandProcessorPriorityBlockingQueue
+ * allows a lower priority element to precede a higher priority element when their estimated processing
+ * would not overlap, this queue is strictly priority ordered.  When no processing duration estimate is
+ * provided, which is the default, the two orderings are the same.
+ *
+ * Scheduled (not yet accessible) elements are kept in a ConcurrentSkipListSet ordered by accessibility
+ * date, which acts as a delay heap.  Elements whose accessibility date has passed are promoted to their lane
+ * by the consumers as they poll and by a promoter thread that parks until the next accessibility date.
+ *
+ * The count of accessible elements is held in a Semaphore, on which take() and poll(long, TimeUnit) wait.
+ *
+ * Elements are indexed by their command identifier, so contains() and remove() are constant time
+ * (remove() is logarithmic in the size of the lane).  Note that contains() is an identity test
+ * (the same command instance), not the equals() test of the PriorityBlockingQueue implementation.
+ * The same command instance may not be queued more than once, offer() returns false if it is already queued.
+ *
+ * @author VHAISWBECKEC
+ *
+ */
+public class StripedScheduledPriorityBlockingQueue
+extends AbstractQueue<AbstractCommandImpl<?>>
+implements AsynchronousCommandQueue
+{
+	private final static Priority[] priorities = Priority.values();
+
+	private final Logger logger = Logger.getLogger(this.getClass());
+
+	// indexed by Priority.ordinal()
+	private final ConcurrentSkipListSet<QueueEntry>[] lanes;
+	private final AtomicIntegerArray laneSizes;
+	private final ConcurrentSkipListSet<QueueEntry> scheduled;
+	private final AtomicInteger scheduledSize = new AtomicInteger(0);
+	private final ConcurrentHashMap<GUID, QueueEntry> index = new ConcurrentHashMap<GUID, QueueEntry>();
+	// the number of accessible elements
+	private final Semaphore accessible = new Semaphore(0);
+	private final AtomicLong sequence = new AtomicLong(0L);
+
+	private final SchedulePromoterThread promoterThread = new SchedulePromoterThread();
+	private final AtomicBoolean promoterThreadStarted = new AtomicBoolean(false);
+
+	@SuppressWarnings("unchecked")
+	public StripedScheduledPriorityBlockingQueue()
+	{
+		lanes = new ConcurrentSkipListSet[priorities.length];
+		for(int index = 0; index < lanes.length; ++index)
+			lanes[index] = new ConcurrentSkipListSet<QueueEntry>(new CommencementDateComparator());
+		laneSizes = new AtomicIntegerArray(priorities.length);
+
+		scheduled = new ConcurrentSkipListSet<QueueEntry>(new AccessibilityDateComparator());
+	}
+
+	// ==============================================================================
+	// Queue Addition Methods
+	// The queue is unbounded so the behavior of add(), put() and offer() is
+	// identical.
+	// ==============================================================================
+
+	/**
+	 * Add an element to the queue, making it immediately accessible if its accessibility
+	 * date has passed, else scheduling it.
+	 *
+	 * @return false if the element is already in the queue
+	 */
+	@Override
+	public boolean offer(AbstractCommandImpl<?> e)
+	{
+		if(e == null)
+			throw new NullPointerException("StripedScheduledPriorityBlockingQueue does not permit null elements.");
+
+		QueueEntry entry = new QueueEntry(e, sequence.incrementAndGet());
+		if(index.putIfAbsent(entry.getCommandIdentifier(), entry) != null)
+		{
+			logger.warn("Command '" + e.toString() + "' is already queued, not adding it again.");
+			return false;
+		}
+
+		if(entry.getAccessibilityTime() > System.currentTimeMillis())
+		{
+			scheduledSize.incrementAndGet();
+			scheduled.add(entry);
+			startPromoterThread();
+			LockSupport.unpark(promoterThread);
+		}
+		else
+			addAccessible(entry);
+
+		return true;
+	}
+
+	/**
+	 * Same as offer(), provided for compatibility with the AsynchronousCommandProcessorPriorityBlockingQueue,
+	 * which returns false rather than throwing an exception when the element is not added.
+	 */
+	@Override
+	public boolean add(AbstractCommandImpl<?> e)
+	{
+		return offer(e);
+	}
+
+	/**
+	 * As the queue is unbounded this method always returns immediately.
+	 * The timeout and time unit parameters are ignored.
+	 */
+	@Override
+	public boolean offer(AbstractCommandImpl<?> e, long timeout, TimeUnit unit)
+	{
+		return offer(e);
+	}
+
+	/**
+	 * As the queue is unbounded this method always returns immediately.
+	 */
+	@Override
+	public void put(AbstractCommandImpl<?> e)
+	{
+		offer(e);
+	}
+
+	private void addAccessible(QueueEntry entry)
+	{
+		int lane = entry.getPriority().ordinal();
+		laneSizes.incrementAndGet(lane);
+		lanes[lane].add(entry);
+		accessible.release();
+	}
+
+	// ==========================================================================================
+	// Element retrieval methods.
+	// ==========================================================================================
+
+	/**
+	 * Retrieves and removes the head of this queue, or returns null if no element is accessible.
+	 */
+	@Override
+	public AbstractCommandImpl<?> poll()
+	{
+		promoteAccessibleElements();
+		return accessible.tryAcquire() ? pollLanes() : null;
+	}
+
+	/**
+	 * Retrieves and removes the head of this queue, waiting if necessary until an element becomes accessible.
+	 */
+	@Override
+	public AbstractCommandImpl<?> take()
+	throws InterruptedException
+	{
+		for(;;)
+		{
+			promoteAccessibleElements();
+			accessible.acquire();
+			// a null result means that the element counted by the permit was removed by remove(Object)
+			AbstractCommandImpl<?> command = pollLanes();
+			if(command != null)
+				return command;
+		}
+	}
+
+	/**
+	 * Retrieves and removes the head of this queue, waiting up to the specified wait
+	 * time if necessary for an element to become accessible.
+	 */
+	@Override
+	public AbstractCommandImpl<?> poll(long timeout, TimeUnit unit)
+	throws InterruptedException
+	{
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for(long remaining = unit.toNanos(timeout); remaining > 0L; remaining = deadline - System.nanoTime())
+		{
+			promoteAccessibleElements();
+			if(! accessible.tryAcquire(remaining, TimeUnit.NANOSECONDS))
+				return null;
+			AbstractCommandImpl<?> command = pollLanes();
+			if(command != null)
+				return command;
+		}
+		return null;
+	}
+
+	/**
+	 * Retrieves, but does not remove, the head of this queue, or returns null if no element is accessible.
+	 */
+	@Override
+	public AbstractCommandImpl<?> peek()
+	{
+		promoteAccessibleElements();
+		for(int lane = lanes.length - 1; lane >= 0; --lane)
+		{
+			try
+			{
+				if(! lanes[lane].isEmpty())
+					return lanes[lane].first().getCommand();
+			}
+			catch(NoSuchElementException nseX)
+			{
+				// the lane was emptied after the isEmpty() test, try the next lane
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Remove the head of the highest priority non-empty lane, the caller
+	 * must have acquired a permit from the accessible Semaphore.
+	 */
+	private AbstractCommandImpl<?> pollLanes()
+	{
+		for(int lane = lanes.length - 1; lane >= 0; --lane)
+		{
+			QueueEntry entry = lanes[lane].pollFirst();
+			if(entry != null)
+			{
+				laneSizes.decrementAndGet(lane);
+				index.remove(entry.getCommandIdentifier(), entry);
+				return entry.getCommand();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Move all of the scheduled elements whose accessibility date has passed to their lanes.
+	 * The ConcurrentSkipListSet.remove() assures that exactly one thread moves each element.
+	 *
+	 * @return the accessibility time of the next scheduled element or Long.MAX_VALUE if
+	 * there are no scheduled elements
+	 */
+	private long promoteAccessibleElements()
+	{
+		if(scheduledSize.get() == 0)
+			return Long.MAX_VALUE;
+
+		long now = System.currentTimeMillis();
+		for(;;)
+		{
+			QueueEntry head;
+			try
+			{
+				head = scheduled.first();
+			}
+			catch(NoSuchElementException nseX)
+			{
+				return Long.MAX_VALUE;
+			}
+
+			if(head.getAccessibilityTime() > now)
+				return head.getAccessibilityTime();
+
+			if(scheduled.remove(head))
+			{
+				scheduledSize.decrementAndGet();
+				addAccessible(head);
+			}
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<? super AbstractCommandImpl<?>> c)
+	{
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super AbstractCommandImpl<?>> c, int maxElements)
+	{
+		if(c == this)
+			throw new IllegalArgumentException();
+
+		int drained = 0;
+		for(AbstractCommandImpl<?> command = null; drained < maxElements && (command = poll()) != null; ++drained)
+			c.add(command);
+		return drained;
+	}
+
+	// ==========================================================================================
+	// Collection methods
+	// ==========================================================================================
+
+	/**
+	 * An identity test, constant time.
+	 */
+	@Override
+	public boolean contains(Object o)
+	{
+		return o instanceof AbstractCommandImpl<?> &&
+			index.get( ((AbstractCommandImpl<?>)o).getCommandIdentifier() ) == o;
+	}
+
+	@Override
+	public boolean remove(Object o)
+	{
+		if(! (o instanceof AbstractCommandImpl<?>))
+			return false;
+
+		QueueEntry entry = index.get( ((AbstractCommandImpl<?>)o).getCommandIdentifier() );
+		if(entry == null || entry.getCommand() != o)
+			return false;
+
+		// the entry may be moving from the scheduled set to a lane, keep trying while it is indexed
+		while(index.get(entry.getCommandIdentifier()) == entry)
+		{
+			if(scheduled.remove(entry))
+			{
+				scheduledSize.decrementAndGet();
+				index.remove(entry.getCommandIdentifier(), entry);
+				return true;
+			}
+
+			int lane = entry.getPriority().ordinal();
+			if(lanes[lane].remove(entry))
+			{
+				laneSizes.decrementAndGet(lane);
+				// if no permit is available then a consumer has acquired the permit for
+				// this element, that consumer will find the lanes empty and wait again
+				accessible.tryAcquire();
+				index.remove(entry.getCommandIdentifier(), entry);
+				return true;
+			}
+			Thread.yield();
+		}
+		return false;
+	}
+
+	/**
+	 * Clear the entire queue, regardless of the elements accessibility date.
+	 */
+	@Override
+	public void clear()
+	{
+		for(QueueEntry entry : index.values())
+			remove(entry.getCommand());
+	}
+
+	/**
+	 * The number of elements, regardless of accessibility date.
+	 */
+	@Override
+	public int size()
+	{
+		return accessibleSize() + scheduledSize.get();
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return size() == 0;
+	}
+
+	@Override
+	public int accessibleSize()
+	{
+		int size = 0;
+		for(int lane = 0; lane < lanes.length; ++lane)
+			size += laneSizes.get(lane);
+		return size;
+	}
+
+	@Override
+	public int accessibleOfPriority(Priority priority)
+	{
+		int count = 0;
+		for(int lane = priority.ordinal(); lane < lanes.length; ++lane)
+			count += laneSizes.get(lane);
+		return count;
+	}
+
+	/**
+	 * The queue is unbounded.
+	 */
+	@Override
+	public int remainingCapacity()
+	{
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Iterate over a snapshot of all elements regardless of accessibility date.
+	 * The accessible elements are returned first, in the order they would be taken,
+	 * followed by the scheduled elements in order of accessibility date.
+	 */
+	@Override
+	public Iterator<AbstractCommandImpl<?>> iterator()
+	{
+		List<AbstractCommandImpl<?>> snapshot = new ArrayList<AbstractCommandImpl<?>>(size());
+		for(int lane = lanes.length - 1; lane >= 0; --lane)
+			for(QueueEntry entry : lanes[lane])
+				snapshot.add(entry.getCommand());
+		for(QueueEntry entry : scheduled)
+			snapshot.add(entry.getCommand());
+
+		final Iterator<AbstractCommandImpl<?>> wrappedIter = snapshot.iterator();
+		return new Iterator<AbstractCommandImpl<?>>()
+		{
+			private AbstractCommandImpl<?> current = null;
+
+			@Override
+			public boolean hasNext()
+			{
+				return wrappedIter.hasNext();
+			}
+
+			@Override
+			public AbstractCommandImpl<?> next()
+			{
+				current = wrappedIter.next();
+				return current;
+			}
+
+			@Override
+			public void remove()
+			{
+				if(current == null)
+					throw new IllegalStateException();
+				StripedScheduledPriorityBlockingQueue.this.remove(current);
+				current = null;
+			}
+		};
+	}
+
+	private void startPromoterThread()
+	{
+		if(promoterThreadStarted.compareAndSet(false, true))
+			promoterThread.start();
+	}
+
+	/**
+	 * A queue element, the ordering properties of the command are captured
+	 * when the element is added so that they cannot change while it is in the
+	 * ordered sets.
+	 */
+	private static class QueueEntry
+	{
+		private final AbstractCommandImpl<?> command;
+		private final GUID commandIdentifier;
+		private final Priority priority;
+		private final long accessibilityTime;
+		private final long commencementTime;
+		private final long sequence;
+
+		QueueEntry(AbstractCommandImpl<?> command, long sequence)
+		{
+			this.command = command;
+			this.commandIdentifier = command.getCommandIdentifier();
+			this.priority = command.getPriority() == null ? Priority.NORMAL : command.getPriority();
+			this.accessibilityTime = command.getAccessibilityDate() == null ? 0L : command.getAccessibilityDate().getTime();
+			this.commencementTime = command.getProcessingCommencementTargetDate() == null ? 0L : command.getProcessingCommencementTargetDate().getTime();
+			this.sequence = sequence;
+		}
+
+		AbstractCommandImpl<?> getCommand()
+		{
+			return command;
+		}
+
+		GUID getCommandIdentifier()
+		{
+			return commandIdentifier;
+		}
+
+		Priority getPriority()
+		{
+			return priority;
+		}
+
+		long getAccessibilityTime()
+		{
+			return accessibilityTime;
+		}
+
+		long getCommencementTime()
+		{
+			return commencementTime;
+		}
+
+		long getSequence()
+		{
+			return sequence;
+		}
+	}
+
+	/**
+	 * Orders the lanes, earliest processing commencement target date first, then first in first out.
+	 */
+	private static class CommencementDateComparator
+	implements Comparator<QueueEntry>
+	{
+		@Override
+		public int compare(QueueEntry entry1, QueueEntry entry2)
+		{
+			if(entry1.getCommencementTime() != entry2.getCommencementTime())
+				return entry1.getCommencementTime() < entry2.getCommencementTime() ? -1 : 1;
+			return entry1.getSequence() < entry2.getSequence() ? -1 : entry1.getSequence() > entry2.getSequence() ? 1 : 0;
+		}
+	}
+
+	/**
+	 * Orders the scheduled elements, earliest accessibility date first, then first in first out.
+	 */
+	private static class AccessibilityDateComparator
+	implements Comparator<QueueEntry>
+	{
+		@Override
+		public int compare(QueueEntry entry1, QueueEntry entry2)
+		{
+			if(entry1.getAccessibilityTime() != entry2.getAccessibilityTime())
+				return entry1.getAccessibilityTime() < entry2.getAccessibilityTime() ? -1 : 1;
+			return entry1.getSequence() < entry2.getSequence() ? -1 : entry1.getSequence() > entry2.getSequence() ? 1 : 0;
+		}
+	}
+
+	/**
+	 * Promotes scheduled elements as their accessibility date passes, so that consumers
+	 * blocked in take() are released.  The thread parks until the accessibility date of the
+	 * earliest scheduled element and is unparked whenever an element is scheduled.
+	 */
+	private class SchedulePromoterThread
+	extends Thread
+	{
+		SchedulePromoterThread()
+		{
+			super("StripedScheduledPriorityBlockingQueue-Promoter");
+			setDaemon(true);
+		}
+
+		@Override
+		public void run()
+		{
+			for(;;)
+			{
+				long next = promoteAccessibleElements();
+				if(next == Long.MAX_VALUE)
+					LockSupport.park(this);
+				else
+				{
+					long delay = next - System.currentTimeMillis();
+					if(delay > 0L)
+						LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(delay));
+				}
+			}
+		}
+	}
+}
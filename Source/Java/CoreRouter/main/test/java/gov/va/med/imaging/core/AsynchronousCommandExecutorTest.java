@@ -4,11 +4,18 @@
 package gov.va.med.imaging.core;
 
 import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 
+import gov.va.med.imaging.core.interfaces.router.AsynchronousCommandResult;
 import gov.va.med.imaging.core.interfaces.router.CommandContext;
+import gov.va.med.imaging.core.interfaces.router.CommandStatus;
 import gov.va.med.imaging.core.router.AbstractCommandImpl;
 import gov.va.med.imaging.core.router.AsynchronousCommandExecutor;
+import gov.va.med.imaging.core.router.AsynchronousCommandRejectionPolicy;
 import gov.va.med.imaging.core.router.queue.MockCommandImpl;
+import gov.va.med.imaging.core.router.queue.ScheduledPriorityQueueElement.Priority;
 import gov.va.med.imaging.transactioncontext.ClientPrincipal;
 import gov.va.med.imaging.transactioncontext.TransactionContextFactory;
 import junit.framework.TestCase;
@@ -47,6 +54,51 @@ extends TestCase
 		Thread.sleep(3000L);
 		
 		assertTrue(cmd.isExecuted());
+		assertEquals(1L, executor.getExecutedCommandCount());
+		assertEquals(0, executor.getBusyThreadCount());
+	}
+
+	/**
+	 * Once the work queue is full, NORMAL priority commands are rejected and their
+	 * listeners notified while HIGH priority commands are still admitted.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void testBoundedAdmission() 
+	throws InterruptedException
+	{
+		LinkedBlockingQueue<AsynchronousCommandResult<?>> resultsQueue = new LinkedBlockingQueue<AsynchronousCommandResult<?>>();
+		AsynchronousCommandExecutor boundedExecutor = new AsynchronousCommandExecutor(resultsQueue);
+		try
+		{
+			boundedExecutor.setMinimumThreadCount(1);
+			boundedExecutor.setMaximumQueuedCommands(1);
+			boundedExecutor.setRejectionPolicy(AsynchronousCommandRejectionPolicy.REJECT);
+			
+			// not accessible for an hour, so it will occupy the only queue slot
+			Date future = new Date(System.currentTimeMillis() + 3600000L);
+			MockCommandImpl scheduled = new MockCommandImpl("scheduled", Priority.NORMAL, future);
+			MockCommandImpl rejected = new MockCommandImpl("rejected", Priority.NORMAL, future);
+			MockCommandImpl high = new MockCommandImpl("high", Priority.HIGH, future);
+			
+			boundedExecutor.execute(scheduled);
+			boundedExecutor.execute(rejected);
+			boundedExecutor.execute(high);
+			
+			assertEquals(1L, boundedExecutor.getRejectedCommandCount());
+			assertEquals(2, boundedExecutor.getQueuedCommandCount());
+			assertEquals(CommandStatus.WAITING, boundedExecutor.getCommandStatus(scheduled));
+			assertEquals(CommandStatus.WAITING, boundedExecutor.getCommandStatus(high));
+			
+			AsynchronousCommandResult<?> result = resultsQueue.poll();
+			assertNotNull(result);
+			assertEquals(rejected, result.getCommand());
+			assertTrue(result.getThrowable() instanceof RejectedExecutionException);
+		}
+		finally
+		{
+			boundedExecutor.shutdown();
+		}
 	}
 
 	/*
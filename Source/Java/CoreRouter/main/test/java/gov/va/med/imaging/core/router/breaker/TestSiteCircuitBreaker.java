@@ -0,0 +1,168 @@
+/**
+ * 
+ */
+package gov.va.med.imaging.core.router.breaker;
+
+import junit.framework.TestCase;
+
+/**
+ * @author vhaiswwerfej
+ *
+ */
+public class TestSiteCircuitBreaker 
+extends TestCase
+{
+	private final static long OPEN_MS = 1000L;
+	
+	/**
+	 * A breaker whose clock is set by the test.
+	 */
+	private static class ClockedSiteCircuitBreaker
+	extends SiteCircuitBreaker
+	{
+		private long now = 100000L;
+		
+		ClockedSiteCircuitBreaker(long latencyThresholdMs)
+		{
+			super("icn(CVIX)", 3, OPEN_MS, 90, latencyThresholdMs, 20, 2000, 30000, 3);
+		}
+		
+		@Override
+		protected long currentTimeMillis()
+		{
+			return now;
+		}
+		
+		void advance(long ms)
+		{
+			now += ms;
+		}
+	}
+	
+	public void testOpensOnConsecutiveFailures()
+	{
+		ClockedSiteCircuitBreaker breaker = new ClockedSiteCircuitBreaker(0L);
+		for(int index = 0; index < 2; ++index)
+		{
+			assertTrue(breaker.allowRequest());
+			breaker.recordFailure();
+		}
+		// a success resets the count of consecutive failures
+		assertTrue(breaker.allowRequest());
+		breaker.recordSuccess(50L);
+		for(int index = 0; index < 2; ++index)
+		{
+			assertTrue(breaker.allowRequest());
+			breaker.recordFailure();
+		}
+		assertEquals(SiteCircuitBreakerState.CLOSED, breaker.getBreakerState());
+		
+		assertTrue(breaker.allowRequest());
+		breaker.recordFailure();
+		assertEquals(SiteCircuitBreakerState.OPEN, breaker.getBreakerState());
+		assertFalse(breaker.allowRequest());
+		assertEquals(1L, breaker.getOpenCount());
+		assertEquals(1L, breaker.getFastFailureCount());
+	}
+	
+	public void testProbeClosesOrReopens()
+	{
+		ClockedSiteCircuitBreaker breaker = new ClockedSiteCircuitBreaker(0L);
+		for(int index = 0; index < 3; ++index)
+			breaker.recordFailure();
+		assertEquals(SiteCircuitBreakerState.OPEN, breaker.getBreakerState());
+		
+		breaker.advance(OPEN_MS);
+		assertTrue(breaker.allowRequest());
+		assertEquals(SiteCircuitBreakerState.HALF_OPEN, breaker.getBreakerState());
+		// only the probe is let through
+		assertFalse(breaker.allowRequest());
+		breaker.recordFailure();
+		assertEquals(SiteCircuitBreakerState.OPEN, breaker.getBreakerState());
+		
+		breaker.advance(OPEN_MS - 1);
+		assertFalse(breaker.allowRequest());
+		breaker.advance(1);
+		assertTrue(breaker.allowRequest());
+		breaker.recordSuccess(20L);
+		assertEquals(SiteCircuitBreakerState.CLOSED, breaker.getBreakerState());
+		assertTrue(breaker.allowRequest());
+		assertEquals(2L, breaker.getProbeCount());
+	}
+	
+	public void testReleasedOrAbandonedProbe()
+	{
+		ClockedSiteCircuitBreaker breaker = new ClockedSiteCircuitBreaker(0L);
+		for(int index = 0; index < 3; ++index)
+			breaker.recordFailure();
+		breaker.advance(OPEN_MS);
+		assertTrue(breaker.allowRequest());
+		breaker.release();
+		assertEquals(SiteCircuitBreakerState.HALF_OPEN, breaker.getBreakerState());
+		assertTrue(breaker.allowRequest());
+		
+		// the outcome of this probe is never reported
+		assertFalse(breaker.allowRequest());
+		breaker.advance(OPEN_MS);
+		assertTrue(breaker.allowRequest());
+		assertEquals(3L, breaker.getProbeCount());
+	}
+	
+	public void testOpensOnLatencyPercentile()
+	{
+		ClockedSiteCircuitBreaker breaker = new ClockedSiteCircuitBreaker(500L);
+		for(int index = 0; index < 17; ++index)
+			breaker.recordSuccess(100L);
+		for(int index = 0; index < 2; ++index)
+			breaker.recordSuccess(5000L);
+		// the window is not full yet
+		assertEquals(SiteCircuitBreakerState.CLOSED, breaker.getBreakerState());
+		breaker.recordSuccess(100L);
+		// 2 of 20 slow calls leaves the 90th percentile at 100 ms
+		assertEquals(SiteCircuitBreakerState.CLOSED, breaker.getBreakerState());
+		assertEquals(100L, breaker.getLatencyPercentileMs());
+		
+		breaker.recordSuccess(5000L);
+		assertEquals(SiteCircuitBreakerState.OPEN, breaker.getBreakerState());
+		assertEquals(0, breaker.getLatencySampleCount());
+	}
+	
+	public void testConnectTimeout()
+	{
+		ClockedSiteCircuitBreaker breaker = new ClockedSiteCircuitBreaker(0L);
+		for(int index = 1; index < SiteCircuitBreaker.MINIMUM_TIMEOUT_SAMPLES; ++index)
+			breaker.recordSuccess(20000L, 1000L);
+		assertEquals(0, breaker.getConnectTimeoutMs());
+		
+		// derived from the first response times, not from the long calls
+		breaker.recordSuccess(20000L, 1500L);
+		assertEquals(4500, breaker.getConnectTimeoutMs());
+		
+		// clamped to the minimum and maximum
+		breaker.reset();
+		for(int index = 0; index < SiteCircuitBreaker.MINIMUM_TIMEOUT_SAMPLES; ++index)
+			breaker.recordSuccess(10L, 10L);
+		assertEquals(2000, breaker.getConnectTimeoutMs());
+		for(int index = 0; index < SiteCircuitBreaker.MINIMUM_TIMEOUT_SAMPLES; ++index)
+			breaker.recordSuccess(60000L, 60000L);
+		assertEquals(30000, breaker.getConnectTimeoutMs());
+	}
+	
+	public void testCallLatencyDoesNotSetConnectTimeout()
+	{
+		ClockedSiteCircuitBreaker breaker = new ClockedSiteCircuitBreaker(0L);
+		for(int index = 0; index < SiteCircuitBreaker.MINIMUM_TIMEOUT_SAMPLES; ++index)
+			breaker.recordSuccess(1000L);
+		// the data source did not report when the site started answering
+		assertEquals(0, breaker.getConnectTimeoutMs());
+		assertEquals(SiteCircuitBreaker.MINIMUM_TIMEOUT_SAMPLES, breaker.getLatencySampleCount());
+		assertEquals(0, breaker.getFirstResponseSampleCount());
+		
+		for(int index = 0; index < SiteCircuitBreaker.MINIMUM_TIMEOUT_SAMPLES; ++index)
+			breaker.recordSuccess(1000L, 200L);
+		assertEquals(2000, breaker.getConnectTimeoutMs());
+		// calls without a first response time leave the connect timeout alone
+		breaker.recordSuccess(60000L);
+		assertEquals(2000, breaker.getConnectTimeoutMs());
+	}
+}
@@ -0,0 +1,106 @@
+package gov.va.med.imaging.core.router.queue;
+
+import gov.va.med.imaging.core.router.AbstractCommandImpl;
+
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A stand-alone benchmark comparing the AsynchronousCommandQueue implementations
+ * with 1k, 10k and 100k queued LOW priority (prefetch) commands.  
+ * For each queue type and size the benchmark measures:
+ * - the time to enqueue the commands, a tenth of them scheduled in the near future
+ * - the time for a command status inquiry (contains()) of a command at the tail of the queue
+ * - the time for 8 consumer threads to take all of the commands
+ * 
+ * Run as a Java application, this is not a unit test.
+ * 
+ * @author VHAISWBECKEC
+ *
+ */
+public class AsynchronousCommandQueueBenchmark
+{
+	private final static int[] queueSizes = new int[]{1000, 10000, 100000};
+	private final static int consumerCount = 8;
+	private final static int warmupIterations = 2;
+	private final static int measuredIterations = 5;
+	
+	public static void main(String[] args) 
+	throws InterruptedException
+	{
+		for(AsynchronousCommandQueueType type : AsynchronousCommandQueueType.values())
+			for(int queueSize : queueSizes)
+			{
+				for(int iteration = 0; iteration < warmupIterations; ++iteration)
+					run(type, queueSize);
+				
+				long[] totals = new long[3];
+				for(int iteration = 0; iteration < measuredIterations; ++iteration)
+				{
+					long[] result = run(type, queueSize);
+					for(int index = 0; index < totals.length; ++index)
+						totals[index] += result[index];
+				}
+				System.out.println(
+					type.name() + " " + queueSize + " commands: " +
+					"enqueue " + (totals[0] / measuredIterations / 1000L) + " us, " +
+					"status " + (totals[1] / measuredIterations / 1000L) + " us, " +
+					"drain " + (totals[2] / measuredIterations / 1000L) + " us"
+				);
+			}
+	}
+	
+	/**
+	 * @return the enqueue, status and drain times in nanoseconds
+	 */
+	private static long[] run(AsynchronousCommandQueueType type, int queueSize) 
+	throws InterruptedException
+	{
+		final AsynchronousCommandQueue queue = type.createQueue();
+		long now = System.currentTimeMillis();
+		AbstractCommandImpl<?>[] commands = new AbstractCommandImpl<?>[queueSize];
+		for(int index = 0; index < queueSize; ++index)
+			commands[index] = new MockCommandImpl(
+				"Prefetch" + index, 
+				ScheduledPriorityQueueElement.Priority.LOW, 
+				new Date(index % 10 == 0 ? now + 50L : now), 
+				new Date(now), 
+				-1L);
+		
+		long start = System.nanoTime();
+		for(AbstractCommandImpl<?> command : commands)
+			queue.offer(command);
+		long enqueue = System.nanoTime() - start;
+		
+		start = System.nanoTime();
+		queue.contains(commands[queueSize - 1]);
+		long status = System.nanoTime() - start;
+		
+		final CountDownLatch remaining = new CountDownLatch(queueSize);
+		start = System.nanoTime();
+		for(int consumer = 0; consumer < consumerCount; ++consumer)
+		{
+			Thread thread = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						while(remaining.getCount() > 0)
+							if(queue.poll(100L, TimeUnit.MILLISECONDS) != null)
+								remaining.countDown();
+					}
+					catch(InterruptedException iX){}
+				}
+			};
+			thread.setDaemon(true);
+			thread.start();
+		}
+		remaining.await();
+		long drain = System.nanoTime() - start;
+		
+		return new long[]{enqueue, status, drain};
+	}
+}
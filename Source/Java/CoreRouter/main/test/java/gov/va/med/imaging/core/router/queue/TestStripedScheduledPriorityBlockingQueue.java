@@ -0,0 +1,97 @@
+package gov.va.med.imaging.core.router.queue;
+
+import gov.va.med.imaging.core.router.AbstractCommandImpl;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * @author VHAISWBECKEC
+ *
+ */
+public class TestStripedScheduledPriorityBlockingQueue 
+extends TestCase
+{
+	/**
+	 * Accessible elements are taken strictly by priority, first in first out within a priority.
+	 * @throws InterruptedException 
+	 */
+	public final void testPriorityOrdering() 
+	throws InterruptedException
+	{
+		StripedScheduledPriorityBlockingQueue queue = new StripedScheduledPriorityBlockingQueue();
+		long now = System.currentTimeMillis();
+		
+		queue.add(new MockCommandImpl("Low", ScheduledPriorityQueueElement.Priority.LOW, new Date(now), new Date(now), -1L));
+		queue.add(new MockCommandImpl("Normal1", ScheduledPriorityQueueElement.Priority.NORMAL, new Date(now), new Date(now), -1L));
+		queue.add(new MockCommandImpl("High", ScheduledPriorityQueueElement.Priority.HIGH, new Date(now), new Date(now), -1L));
+		queue.add(new MockCommandImpl("Normal2", ScheduledPriorityQueueElement.Priority.NORMAL, new Date(now), new Date(now), -1L));
+		
+		assertEquals(4, queue.size());
+		assertEquals(3, queue.accessibleOfPriority(ScheduledPriorityQueueElement.Priority.NORMAL));
+		
+		assertEquals("High", ((MockCommandImpl)queue.take()).getName());
+		assertEquals("Normal1", ((MockCommandImpl)queue.take()).getName());
+		assertEquals("Normal2", ((MockCommandImpl)queue.take()).getName());
+		assertEquals("Low", ((MockCommandImpl)queue.take()).getName());
+		assertTrue(queue.isEmpty());
+		assertNull(queue.poll());
+	}
+	
+	/**
+	 * A scheduled element is not accessible until its accessibility date passes.
+	 * @throws InterruptedException 
+	 */
+	public final void testTakeWithScheduledElement() 
+	throws InterruptedException
+	{
+		StripedScheduledPriorityBlockingQueue queue = new StripedScheduledPriorityBlockingQueue();
+
+		AbstractCommandImpl<String> cmd1 = new MockCommandImpl("One", ScheduledPriorityQueueElement.Priority.NORMAL);
+		AbstractCommandImpl<String> cmd2 = new MockCommandImpl("Two",
+			ScheduledPriorityQueueElement.Priority.HIGH, new Date(System.currentTimeMillis() + 1000L));
+
+		queue.add(cmd1);
+		queue.add(cmd2);
+		assertEquals(1, queue.accessibleSize());
+		
+		MockCommandImpl element = (MockCommandImpl)queue.poll(3000L, TimeUnit.MILLISECONDS);
+		assertNotNull("Timed out waiting for queue element", element);
+		assertEquals("One", element.getName());
+		assertNull(queue.poll());
+		
+		// the promoter thread must release the blocked take()
+		element = (MockCommandImpl)queue.take();
+		assertEquals("Two", element.getName());
+	}
+	
+	/**
+	 * contains() and remove() use the command identity and work for accessible and scheduled elements.
+	 */
+	public final void testContainsAndRemove()
+	{
+		StripedScheduledPriorityBlockingQueue queue = new StripedScheduledPriorityBlockingQueue();
+		
+		AbstractCommandImpl<String> accessible = new MockCommandImpl("Accessible", ScheduledPriorityQueueElement.Priority.NORMAL);
+		AbstractCommandImpl<String> scheduled = new MockCommandImpl("Scheduled",
+			ScheduledPriorityQueueElement.Priority.NORMAL, new Date(System.currentTimeMillis() + 3600000L));
+		
+		assertTrue(queue.add(accessible));
+		assertTrue(queue.add(scheduled));
+		assertFalse(queue.add(accessible));
+		
+		assertTrue(queue.contains(accessible));
+		assertTrue(queue.contains(scheduled));
+		assertEquals(2, queue.size());
+		
+		assertTrue(queue.remove(scheduled));
+		assertFalse(queue.contains(scheduled));
+		assertTrue(queue.remove(accessible));
+		assertFalse(queue.remove(accessible));
+		
+		assertTrue(queue.isEmpty());
+		assertNull(queue.poll());
+	}
+}
@@ -0,0 +1,161 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+
+ */
+package gov.va.med.imaging.access;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A mergeable sketch of the distribution of non-negative values, used to estimate quantiles
+ * (i.e. the median) of transaction log values without keeping the values.
+ * 
+ * Values are counted in logarithmically sized bins, each bin covers the values within the relative
+ * accuracy of the bin value, so a quantile estimate is within the relative accuracy of the actual
+ * value.  Two sketches are merged by adding the bin counts, so the sketch of a period is the merge
+ * of the sketches of its sub-periods.
+ * 
+ * NOT THREAD SAFE
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TransactionLogQuantileSketch
+implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+	
+	public final static double RELATIVE_ACCURACY = 0.02d;
+	private final static double GAMMA = (1.0d + RELATIVE_ACCURACY) / (1.0d - RELATIVE_ACCURACY);
+	private final static double LOG_GAMMA = Math.log(GAMMA);
+	
+	private long zeroCount = 0L;
+	private final TreeMap<Integer, Long> binCounts = new TreeMap<Integer, Long>();
+	
+	public TransactionLogQuantileSketch()
+	{
+	}
+	
+	/**
+	 * Create a sketch from the values of getBinIndexes(), getBinCounts() and getZeroCount().
+	 */
+	public TransactionLogQuantileSketch(int[] binIndexes, long[] binCounts, long zeroCount)
+	{
+		this.zeroCount = zeroCount;
+		if(binIndexes != null && binCounts != null)
+			for(int index = 0; index < binIndexes.length && index < binCounts.length; index++)
+				this.binCounts.put(binIndexes[index], binCounts[index]);
+	}
+	
+	/**
+	 * Add a value, negative values are counted as zero.
+	 * 
+	 * @param value
+	 */
+	public void add(long value)
+	{
+		if(value <= 0L)
+		{
+			zeroCount++;
+			return;
+		}
+		int binIndex = (int)Math.ceil(Math.log(value) / LOG_GAMMA);
+		Long count = binCounts.get(binIndex);
+		binCounts.put(binIndex, count == null ? 1L : count + 1L);
+	}
+	
+	/**
+	 * Add the counts of another sketch to this one.
+	 * 
+	 * @param that
+	 */
+	public void merge(TransactionLogQuantileSketch that)
+	{
+		if(that == null)
+			return;
+		zeroCount += that.zeroCount;
+		for(Map.Entry<Integer, Long> bin : that.binCounts.entrySet())
+		{
+			Long count = binCounts.get(bin.getKey());
+			binCounts.put(bin.getKey(), count == null ? bin.getValue() : count + bin.getValue());
+		}
+	}
+	
+	public long getCount()
+	{
+		long count = zeroCount;
+		for(Long binCount : binCounts.values())
+			count += binCount;
+		return count;
+	}
+	
+	/**
+	 * 
+	 * @param quantile a value between 0.0 and 1.0, i.e. 0.5 for the median
+	 * @return the estimated value at the quantile, 0 if the sketch is empty
+	 */
+	public long getQuantile(double quantile)
+	{
+		long count = getCount();
+		if(count == 0L)
+			return 0L;
+		
+		long rank = (long)Math.floor(Math.max(0.0d, Math.min(1.0d, quantile)) * (count - 1));
+		if(rank < zeroCount)
+			return 0L;
+		long cumulative = zeroCount;
+		for(Map.Entry<Integer, Long> bin : binCounts.entrySet())
+		{
+			cumulative += bin.getValue();
+			if(rank < cumulative)
+				return Math.round(2.0d * Math.pow(GAMMA, bin.getKey()) / (GAMMA + 1.0d));
+		}
+		return Math.round(2.0d * Math.pow(GAMMA, binCounts.lastKey()) / (GAMMA + 1.0d));
+	}
+	
+	public long getZeroCount()
+	{
+		return zeroCount;
+	}
+	
+	public int[] getBinIndexes()
+	{
+		int[] result = new int[binCounts.size()];
+		int index = 0;
+		for(Integer binIndex : binCounts.keySet())
+			result[index++] = binIndex;
+		return result;
+	}
+	
+	public long[] getBinCounts()
+	{
+		long[] result = new long[binCounts.size()];
+		int index = 0;
+		for(Long binCount : binCounts.values())
+			result[index++] = binCount;
+		return result;
+	}
+}
@@ -0,0 +1,225 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+
+ */
+package gov.va.med.imaging.access;
+
+import java.io.Serializable;
+
+/**
+ * Pre-aggregated statistics of the transaction log entries of one period, optionally restricted to
+ * one command class, responding site and data source protocol.  The transaction logger keeps rollups 
+ * of each minute and hour as entries are written, the statistics of a longer period are the merge of 
+ * the rollups in the period, so the cost of the statistics does not depend on the number of entries.
+ * 
+ * NOT THREAD SAFE
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TransactionLogRollup
+implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * The transaction log values aggregated in a rollup.
+	 */
+	public enum Measure
+	{
+		ELAPSED_TIME,
+		FACADE_BYTES_SENT,
+		FACADE_BYTES_RECEIVED,
+		DATASOURCE_BYTES_SENT,
+		DATASOURCE_BYTES_RECEIVED,
+		ITEM_COUNT,
+		DATASOURCE_ITEMS_RECEIVED;
+		
+		public Long getValue(TransactionLogEntry entry)
+		{
+			switch(this)
+			{
+			case ELAPSED_TIME:
+				return entry.getElapsedTime();
+			case FACADE_BYTES_SENT:
+				return entry.getFacadeBytesSent();
+			case FACADE_BYTES_RECEIVED:
+				return entry.getFacadeBytesReceived();
+			case DATASOURCE_BYTES_SENT:
+				return entry.getDataSourceBytesSent();
+			case DATASOURCE_BYTES_RECEIVED:
+				return entry.getDataSourceBytesReceived();
+			case ITEM_COUNT:
+				return entry.getItemCount() == null ? null : entry.getItemCount().longValue();
+			case DATASOURCE_ITEMS_RECEIVED:
+				return entry.getDataSourceItemsReceived() == null ? null : entry.getDataSourceItemsReceived().longValue();
+			default:
+				return null;
+			}
+		}
+	}
+	
+	private final Long startTime;
+	private final Long endTime;
+	private final String commandClassName;
+	private final String site;
+	private final String datasourceProtocol;
+	private long entryCount = 0L;
+	private long errorCount = 0L;
+	private final TransactionLogRollupMeasure[] measures = new TransactionLogRollupMeasure[Measure.values().length];
+	
+	/**
+	 * 
+	 * @param startTime the start of the period, null if not known
+	 * @param endTime the end (exclusive) of the period, null if not known
+	 * @param commandClassName the command class name of the entries, null for all
+	 * @param site the responding site of the entries, null for all
+	 * @param datasourceProtocol the data source protocol of the entries, null for all
+	 */
+	public TransactionLogRollup(Long startTime, Long endTime, 
+		String commandClassName, String site, String datasourceProtocol)
+	{
+		this.startTime = startTime;
+		this.endTime = endTime;
+		this.commandClassName = commandClassName;
+		this.site = site;
+		this.datasourceProtocol = datasourceProtocol;
+		for(int index = 0; index < measures.length; index++)
+			measures[index] = new TransactionLogRollupMeasure();
+	}
+	
+	/**
+	 * Add one entry to the rollup.
+	 * 
+	 * @param entry
+	 */
+	public void update(TransactionLogEntry entry)
+	{
+		if(entry == null)
+			return;
+		entryCount++;
+		if(entry.getErrorMessage() != null && entry.getErrorMessage().length() > 0)
+			errorCount++;
+		for(Measure measure : Measure.values())
+			measures[measure.ordinal()].add(measure.getValue(entry));
+	}
+	
+	/**
+	 * Add the entries of another rollup to this one.
+	 * 
+	 * @param that
+	 */
+	public void merge(TransactionLogRollup that)
+	{
+		if(that == null)
+			return;
+		entryCount += that.entryCount;
+		errorCount += that.errorCount;
+		for(int index = 0; index < measures.length; index++)
+			measures[index].merge(that.measures[index]);
+	}
+	
+	/**
+	 * Set the entry counts, used when reading a stored rollup.
+	 */
+	public void setCounts(long entryCount, long errorCount)
+	{
+		this.entryCount = entryCount;
+		this.errorCount = errorCount;
+	}
+	
+	/**
+	 * Set the aggregate of one measure, used when reading a stored rollup.
+	 */
+	public void setMeasure(Measure measure, TransactionLogRollupMeasure value)
+	{
+		this.measures[measure.ordinal()] = value == null ? new TransactionLogRollupMeasure() : value;
+	}
+
+	public Long getStartTime()
+	{
+		return startTime;
+	}
+
+	public Long getEndTime()
+	{
+		return endTime;
+	}
+
+	public String getCommandClassName()
+	{
+		return commandClassName;
+	}
+
+	public String getSite()
+	{
+		return site;
+	}
+
+	public String getDatasourceProtocol()
+	{
+		return datasourceProtocol;
+	}
+
+	public long getEntryCount()
+	{
+		return entryCount;
+	}
+
+	public long getErrorCount()
+	{
+		return errorCount;
+	}
+	
+	public TransactionLogRollupMeasure getMeasure(Measure measure)
+	{
+		return measures[measure.ordinal()];
+	}
+	
+	// the statistics views used by the transaction log statistics tags
+	public TransactionLogStatistics getMeanValues()
+	{
+		return new TransactionLogRollupStatistics(this, TransactionLogRollupStatistics.Statistic.MEAN);
+	}
+	
+	public TransactionLogStatistics getMedianValues()
+	{
+		return new TransactionLogRollupStatistics(this, TransactionLogRollupStatistics.Statistic.MEDIAN);
+	}
+	
+	public TransactionLogStatistics getSumValues()
+	{
+		return new TransactionLogRollupStatistics(this, TransactionLogRollupStatistics.Statistic.SUM);
+	}
+	
+	public TransactionLogStatistics getMinimumValues()
+	{
+		return new TransactionLogRollupStatistics(this, TransactionLogRollupStatistics.Statistic.MINIMUM);
+	}
+	
+	public TransactionLogStatistics getMaximumValues()
+	{
+		return new TransactionLogRollupStatistics(this, TransactionLogRollupStatistics.Statistic.MAXIMUM);
+	}
+}
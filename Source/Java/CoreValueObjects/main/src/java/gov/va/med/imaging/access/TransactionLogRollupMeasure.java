@@ -0,0 +1,137 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+
+ */
+package gov.va.med.imaging.access;
+
+import java.io.Serializable;
+
+/**
+ * The count, sum, minimum, maximum and distribution of one transaction log value 
+ * (i.e. the elapsed time) over some number of transaction log entries.
+ * 
+ * NOT THREAD SAFE
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TransactionLogRollupMeasure
+implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+	
+	private long count = 0L;
+	private long sum = 0L;
+	private long minimum = Long.MAX_VALUE;
+	private long maximum = Long.MIN_VALUE;
+	private final TransactionLogQuantileSketch sketch;
+	
+	public TransactionLogRollupMeasure()
+	{
+		this.sketch = new TransactionLogQuantileSketch();
+	}
+	
+	public TransactionLogRollupMeasure(long count, long sum, long minimum, long maximum, 
+		TransactionLogQuantileSketch sketch)
+	{
+		this.count = count;
+		this.sum = sum;
+		this.minimum = minimum;
+		this.maximum = maximum;
+		this.sketch = sketch == null ? new TransactionLogQuantileSketch() : sketch;
+	}
+	
+	public void add(Long value)
+	{
+		if(value == null)
+			return;
+		count++;
+		sum += value;
+		if(value < minimum)
+			minimum = value;
+		if(value > maximum)
+			maximum = value;
+		sketch.add(value);
+	}
+	
+	public void merge(TransactionLogRollupMeasure that)
+	{
+		if(that == null || that.count == 0L)
+			return;
+		count += that.count;
+		sum += that.sum;
+		if(that.minimum < minimum)
+			minimum = that.minimum;
+		if(that.maximum > maximum)
+			maximum = that.maximum;
+		sketch.merge(that.sketch);
+	}
+
+	public long getCount()
+	{
+		return count;
+	}
+
+	public long getSum()
+	{
+		return sum;
+	}
+
+	/**
+	 * @return the minimum value, null if there are no values
+	 */
+	public Long getMinimum()
+	{
+		return count == 0L ? null : minimum;
+	}
+
+	/**
+	 * @return the maximum value, null if there are no values
+	 */
+	public Long getMaximum()
+	{
+		return count == 0L ? null : maximum;
+	}
+	
+	/**
+	 * @return the arithmetic mean, 0 if there are no values
+	 */
+	public long getMean()
+	{
+		return count == 0L ? 0L : sum / count;
+	}
+	
+	/**
+	 * @return the estimated median, 0 if there are no values
+	 */
+	public long getMedian()
+	{
+		return sketch.getQuantile(0.5d);
+	}
+
+	public TransactionLogQuantileSketch getSketch()
+	{
+		return sketch;
+	}
+}
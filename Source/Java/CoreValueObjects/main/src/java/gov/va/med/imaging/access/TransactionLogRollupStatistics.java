@@ -0,0 +1,177 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+
+ */
+package gov.va.med.imaging.access;
+
+import gov.va.med.imaging.access.TransactionLogRollup.Measure;
+
+/**
+ * A TransactionLogStatistics derivation that presents one statistic of a TransactionLogRollup,
+ * so that the statistics of a rollup may be displayed in place of the statistics calculated
+ * from individual entries.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TransactionLogRollupStatistics
+extends TransactionLogStatistics
+{
+	public enum Statistic
+	{
+		MEAN("Arithmetic Mean"),
+		MEDIAN("Median"),
+		SUM("Sum"),
+		MINIMUM("Minima"),
+		MAXIMUM("Maxima");
+		
+		private final String description;
+		
+		Statistic(String description)
+		{
+			this.description = description;
+		}
+
+		public String getDescription()
+		{
+			return description;
+		}
+	}
+	
+	private final TransactionLogRollup rollup;
+	private final Statistic statistic;
+	
+	public TransactionLogRollupStatistics(TransactionLogRollup rollup, Statistic statistic)
+	{
+		this.rollup = rollup;
+		this.statistic = statistic;
+	}
+	
+	/**
+	 * @see gov.va.med.imaging.access.TransactionLogStatistics#update(gov.va.med.imaging.access.TransactionLogEntry)
+	 */
+	@Override
+	public void update(TransactionLogEntry entry)
+	{
+		rollup.update(entry);
+	}
+	
+	private Long getValue(Measure measure)
+	{
+		TransactionLogRollupMeasure value = rollup.getMeasure(measure);
+		switch(statistic)
+		{
+		case MEAN:
+			return value.getMean();
+		case MEDIAN:
+			return value.getMedian();
+		case SUM:
+			return value.getSum();
+		case MINIMUM:
+			return value.getMinimum();
+		case MAXIMUM:
+			return value.getMaximum();
+		default:
+			return null;
+		}
+	}
+	
+	private Integer getIntegerValue(Measure measure)
+	{
+		Long value = getValue(measure);
+		return value == null ? null : value.intValue();
+	}
+
+	@Override
+	public Long getFacadeBytesSent()
+	{
+		return getValue(Measure.FACADE_BYTES_SENT);
+	}
+
+	@Override
+	public Long getFacadeBytesReceived()
+	{
+		return getValue(Measure.FACADE_BYTES_RECEIVED);
+	}
+
+	@Override
+	public Long getDataSourceBytesSent()
+	{
+		return getValue(Measure.DATASOURCE_BYTES_SENT);
+	}
+
+	@Override
+	public Long getDataSourceBytesReceived()
+	{
+		return getValue(Measure.DATASOURCE_BYTES_RECEIVED);
+	}
+
+	@Override
+	public Long getElapsedTime()
+	{
+		return getValue(Measure.ELAPSED_TIME);
+	}
+
+	@Override
+	public Integer getItemCount()
+	{
+		return getIntegerValue(Measure.ITEM_COUNT);
+	}
+
+	@Override
+	public Integer getDataSourceItemsReceived()
+	{
+		return getIntegerValue(Measure.DATASOURCE_ITEMS_RECEIVED);
+	}
+
+	@Override
+	public String getCommandClassName()
+	{
+		return rollup.getCommandClassName();
+	}
+
+	@Override
+	public String getRespondingSite()
+	{
+		return rollup.getSite();
+	}
+
+	@Override
+	public String getDatasourceProtocol()
+	{
+		return rollup.getDatasourceProtocol();
+	}
+
+	@Override
+	public Long getStartTime()
+	{
+		return rollup.getStartTime();
+	}
+
+	@Override
+	public String getTransactionId()
+	{
+		return statistic.getDescription();
+	}
+}
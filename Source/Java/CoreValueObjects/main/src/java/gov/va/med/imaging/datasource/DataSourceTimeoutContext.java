@@ -0,0 +1,100 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.datasource;
+
+/**
+ * Makes the connect timeout the router expects a data source to use available on the 
+ * thread that is calling the data source, without adding a parameter to every SPI.  The
+ * router derives the timeout from the latency it has observed for the site, a data source 
+ * that opens its own connections should use it in place of its configured connect timeout 
+ * when there is one, a data source that cannot simply ignores it.
+ * 
+ * A data source that measures how long the site took to connect and start answering a 
+ * request reports it with recordFirstResponseMs(), the router derives the connect timeout 
+ * from these times rather than from the duration of the whole call.
+ * 
+ * Whoever sets the timeout must clear it when the data source call returns.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class DataSourceTimeoutContext
+{
+	private static ThreadLocal<Integer> connectTimeoutMs = new ThreadLocal<Integer>();
+	private static ThreadLocal<Long> firstResponseMs = new ThreadLocal<Long>();
+	
+	private DataSourceTimeoutContext()
+	{
+	}
+	
+	/**
+	 * @param defaultConnectTimeoutMs the connect timeout the data source would otherwise use
+	 * @return the connect timeout for the current thread, or the given default if there is none
+	 */
+	public static int getConnectTimeoutMs(int defaultConnectTimeoutMs)
+	{
+		Integer timeout = connectTimeoutMs.get();
+		return timeout == null || timeout.intValue() <= 0 ? defaultConnectTimeoutMs : timeout.intValue();
+	}
+	
+	public static void setConnectTimeoutMs(int timeoutMs)
+	{
+		if(timeoutMs > 0)
+			connectTimeoutMs.set(timeoutMs);
+		else
+			connectTimeoutMs.remove();
+		firstResponseMs.remove();
+	}
+	
+	public static void clearConnectTimeoutMs()
+	{
+		connectTimeoutMs.remove();
+		firstResponseMs.remove();
+	}
+	
+	/**
+	 * Report the time from the start of a request to the site until the start of its
+	 * response, which is the connect time plus the time the site takes to start answering.
+	 * If the data source makes several requests the longest is kept.
+	 * 
+	 * @param ms
+	 */
+	public static void recordFirstResponseMs(long ms)
+	{
+		Long recorded = firstResponseMs.get();
+		if(recorded == null || recorded.longValue() < ms)
+			firstResponseMs.set(Math.max(0L, ms));
+	}
+	
+	/**
+	 * @return the longest time to a first response reported since the connect timeout 
+	 * was set, or -1 if the data source reported none
+	 */
+	public static long getFirstResponseMs()
+	{
+		Long recorded = firstResponseMs.get();
+		return recorded == null ? -1L : recorded.longValue();
+	}
+}
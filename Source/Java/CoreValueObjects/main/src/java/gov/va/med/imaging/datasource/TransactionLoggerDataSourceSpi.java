@@ -32,6 +32,7 @@ import gov.va.med.imaging.core.interfaces.exceptions.ConnectionException;
 import gov.va.med.imaging.core.interfaces.exceptions.MethodException;
 import gov.va.med.imaging.datasource.annotations.SPI;
 import gov.va.med.imaging.access.TransactionLogEntry;
+import gov.va.med.imaging.access.TransactionLogRollup;
 import gov.va.med.imaging.access.TransactionLogWriter;
 import gov.va.med.imaging.exchange.enums.DatasourceProtocol;
 import gov.va.med.imaging.exchange.enums.ImageQuality;
@@ -113,6 +114,28 @@ extends LocalDataSourceSpi
 	throws MethodException, ConnectionException;
 
 
+	/**
+	 * Get the pre-aggregated statistics of the Transaction Log records in a period.  
+	 * The statistics are read from rollups kept as the records are written, the cost 
+	 * does not depend on the number of records.
+	 * @param startDate the start of the period, null for the oldest record
+	 * @param endDate the end of the period, null for now
+	 * @param commandClassName the command class of the records, null for all
+	 * @param site the responding site of the records, null for all
+	 * @param datasourceProtocol the data source protocol of the records, null for all
+	 * @return the statistics of the records in the period
+	 * @throws MethodException
+	 * @throws ConnectionException
+	 */
+	public abstract TransactionLogRollup getLogRollup(
+			Date               startDate,
+			Date               endDate,
+			String             commandClassName,
+			String             site,
+			DatasourceProtocol datasourceProtocol)
+	throws MethodException, ConnectionException;
+
+
 	/**
 	 * Get rid of old Transaction Log records.
 	 * @param maxDaysAllowed The maximum number of days allowed before a TransactionLog record is deleted.
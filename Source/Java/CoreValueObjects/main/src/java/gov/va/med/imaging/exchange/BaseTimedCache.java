@@ -34,7 +34,6 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
 
-import gov.va.med.imaging.ReadWriteLockCollections;
 import gov.va.med.imaging.core.interfaces.ITimedCache;
 
 /**
@@ -55,13 +54,9 @@ public class BaseTimedCache<K, BaseTimedCacheValueItem> extends TimerTask implem
 		super();
 		this.parentClassName = parent;
 		retentionPeriod = 1000 * 60 * 15; // 15 minutes
-		try {
-			map = (Map<K, BaseTimedCacheValueItem>)ReadWriteLockCollections.readWriteLockMap(new ConcurrentHashMap<K, BaseTimedCacheValueItem>());
-		}
-		catch(Exception eX) {
-			map = null;
-			eX.printStackTrace();
-		}		
+		// a ConcurrentHashMap needs no further locking, reads and the purge iterator
+		// never block the threads updating the cache
+		map = new ConcurrentHashMap<K, BaseTimedCacheValueItem>();
 	}
 
 	/* (non-Javadoc)
@@ -1047,10 +1047,16 @@ extends BufferedInputStream
 	public synchronized long skip(long distance) 
 	throws IOException
 	{
+		// read() and read(byte[], int, int) maintain runningLength
+		byte[] skipBuffer = new byte[(int)Math.min(distance, 8192L)];
 		long n = 0;
-		for(n=0; (n < distance) && (read() >= 0) ; ++n );
-		
-		runningLength += n;
+		while(n < distance)
+		{
+			int bytesRead = read(skipBuffer, 0, (int)Math.min(distance - n, skipBuffer.length));
+			if(bytesRead < 0)
+				break;
+			n += bytesRead;
+		}
 
 		return n;
 	}
@@ -1068,9 +1074,11 @@ extends BufferedInputStream
 	public synchronized int read() throws IOException
 	{
 		int value = super.read();
-		++runningLength;
-		
-		runningChecksum.update(value);
+		if(value >= 0)
+		{
+			++runningLength;
+			runningChecksum.update(value);
+		}
 		return value;
 	}
 
@@ -1082,8 +1090,11 @@ extends BufferedInputStream
 	public synchronized int read(byte[] b, int off, int len) throws IOException
 	{
 		int bytesRead = super.read(b, off, len);
-		runningChecksum.update(b, off, len);
-		runningLength += bytesRead;
+		if(bytesRead > 0)
+		{
+			runningChecksum.update(b, off, bytesRead);
+			runningLength += bytesRead;
+		}
 		
 		return bytesRead;
 	}
@@ -1095,11 +1106,8 @@ extends BufferedInputStream
 	 */
 	public int read(byte[] b) throws IOException
 	{
-		int bytesRead = super.read(b);
-		runningChecksum.update(b);
-		runningLength += bytesRead;
-		
-		return bytesRead;
+		// FilterInputStream.read(byte[]) calls read(byte[], int, int), which maintains the checksum
+		return read(b, 0, b.length);
 	}
 	
 }
@@ -0,0 +1,44 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.exchange.business;
+
+/**
+ * Receives studies for a patient as they become available, before the complete StudySetResult 
+ * for the patient has been returned.  A partial result contains studies not previously delivered,
+ * the complete result returned when the request finishes is still the authoritative result.
+ * 
+ * Partial results from different sites are delivered on different threads, one at a time.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public interface StudySetResultListener
+{
+	/**
+	 * 
+	 * @param partialResult studies that are now available
+	 */
+	public abstract void studySetResultAvailable(StudySetResult partialResult);
+}
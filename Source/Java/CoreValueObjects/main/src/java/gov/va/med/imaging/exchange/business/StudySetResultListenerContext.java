@@ -0,0 +1,64 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.exchange.business;
+
+/**
+ * Makes a StudySetResultListener available to a data source on the thread that is 
+ * getting studies from it, without adding a parameter to every StudyGraphDataSourceSpi.  
+ * A data source that can deliver studies before it has finished should deliver them to
+ * the listener if there is one, a data source that cannot simply ignores it.
+ * 
+ * Whoever sets the listener must clear it when the data source call returns.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class StudySetResultListenerContext
+{
+	private static ThreadLocal<StudySetResultListener> studySetResultListener = 
+		new ThreadLocal<StudySetResultListener>();
+	
+	private StudySetResultListenerContext()
+	{
+	}
+	
+	/**
+	 * @return the listener for the current thread, or null if studies are not being delivered early
+	 */
+	public static StudySetResultListener getListener()
+	{
+		return studySetResultListener.get();
+	}
+	
+	public static void setListener(StudySetResultListener listener)
+	{
+		studySetResultListener.set(listener);
+	}
+	
+	public static void clearListener()
+	{
+		studySetResultListener.remove();
+	}
+}
@@ -0,0 +1,68 @@
+package gov.va.med.imaging.access;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class TransactionLogQuantileSketchTest 
+extends TestCase
+{
+	private static final double TOLERANCE = TransactionLogQuantileSketch.RELATIVE_ACCURACY + 0.001d;
+	
+	public void testQuantilesWithinRelativeAccuracy()
+	{
+		Random random = new Random(17L);
+		long[] values = new long[100000];
+		TransactionLogQuantileSketch sketch = new TransactionLogQuantileSketch();
+		for(int index = 0; index < values.length; index++)
+		{
+			// a long-tailed distribution, like elapsed times
+			values[index] = (long)Math.exp(random.nextGaussian() * 2.0d + 6.0d);
+			sketch.add(values[index]);
+		}
+		Arrays.sort(values);
+		
+		assertEquals(values.length, sketch.getCount());
+		for(double quantile : new double[]{0.0d, 0.25d, 0.5d, 0.9d, 0.99d, 1.0d})
+		{
+			long exact = values[(int)Math.floor(quantile * (values.length - 1))];
+			long estimate = sketch.getQuantile(quantile);
+			assertTrue("quantile " + quantile + ": " + estimate + " vs " + exact,
+				Math.abs(estimate - exact) <= Math.max(1L, (long)Math.ceil(exact * TOLERANCE)));
+		}
+	}
+	
+	public void testMergeEqualsCombinedSketch()
+	{
+		TransactionLogQuantileSketch combined = new TransactionLogQuantileSketch();
+		TransactionLogQuantileSketch first = new TransactionLogQuantileSketch();
+		TransactionLogQuantileSketch second = new TransactionLogQuantileSketch();
+		for(long value = 0L; value < 5000L; value++)
+		{
+			combined.add(value);
+			(value % 3L == 0L ? first : second).add(value);
+		}
+		first.merge(second);
+		
+		assertEquals(combined.getCount(), first.getCount());
+		assertEquals(combined.getZeroCount(), first.getZeroCount());
+		assertTrue(Arrays.equals(combined.getBinIndexes(), first.getBinIndexes()));
+		assertTrue(Arrays.equals(combined.getBinCounts(), first.getBinCounts()));
+		assertEquals(combined.getQuantile(0.5d), first.getQuantile(0.5d));
+	}
+	
+	public void testRestoredFromArrays()
+	{
+		TransactionLogQuantileSketch sketch = new TransactionLogQuantileSketch();
+		for(long value : new long[]{0L, 0L, 12L, 250L, 250L, 9000L})
+			sketch.add(value);
+		TransactionLogQuantileSketch restored = new TransactionLogQuantileSketch(
+			sketch.getBinIndexes(), sketch.getBinCounts(), sketch.getZeroCount());
+		
+		assertEquals(6L, restored.getCount());
+		assertEquals(0L, restored.getQuantile(0.0d));
+		assertEquals(sketch.getQuantile(0.6d), restored.getQuantile(0.6d));
+		assertEquals(sketch.getQuantile(1.0d), restored.getQuantile(1.0d));
+	}
+}
@@ -45,6 +45,7 @@ import gov.va.med.imaging.exchange.business.PassthroughInputMethod;
 import gov.va.med.imaging.exchange.business.Study;
 import gov.va.med.imaging.exchange.business.StudyFilter;
 import gov.va.med.imaging.exchange.business.StudySetResult;
+import gov.va.med.imaging.exchange.business.StudySetResultListener;
 import gov.va.med.imaging.exchange.business.documents.DocumentRetrieveResult;
 import gov.va.med.imaging.exchange.business.documents.DocumentSet;
 import gov.va.med.imaging.exchange.business.documents.DocumentSetResult;
@@ -595,6 +596,21 @@ extends gov.va.med.imaging.BaseWebFacadeRouter
 	public abstract StudySetResult getStudySetResultForPatient(PatientIdentifier patientIdentifier, StudyFilter studyFilter)
 	throws MethodException, ConnectionException;
 	
+	/**
+	 * Get fully loaded studies for the patient from all sites, passing the studies to the listener
+	 * as they become available so that they can be sent to the client before the complete result.
+	 * @param patientId
+	 * @param studyFilter
+	 * @param studySetResultListener
+	 * @return the complete result
+	 * @throws MethodException
+	 * @throws ConnectionException
+	 */
+	@FacadeRouterMethod(asynchronous=false, commandClassName="GetStudySetResultForPatientCommand")
+	public abstract StudySetResult getStudySetResultForPatient(PatientIdentifier patientIdentifier, StudyFilter studyFilter, 
+		StudySetResultListener studySetResultListener)
+	throws MethodException, ConnectionException;
+	
 	/**
 	 * Get studies with reports for the patient from all sites
 	 * @param patientId
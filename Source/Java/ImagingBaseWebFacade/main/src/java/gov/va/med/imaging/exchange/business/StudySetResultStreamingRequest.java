@@ -0,0 +1,192 @@
+/**
+ * Package: MAG - VistA Imaging
+ * WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+ * Date Created: Oct 18, 2026
+ * Site Name:  Washington OI Field Office, Silver Spring, MD
+ * @author vhaiswwerfej
+ * @version 1.0
+ *
+ * ----------------------------------------------------------------
+ * Property of the US Government.
+ * No permission to copy or redistribute this software is given.
+ * Use of unreleased versions of this software requires the user
+ * to execute a written test agreement with the VistA Imaging
+ * Development Office of the Department of Veterans Affairs,
+ * telephone (301) 734-0100.
+ * 
+ * The Food and Drug Administration classifies this software as
+ * a Class II medical device.  As such, it may not be changed
+ * in any way.  Modifications to this software may result in an
+ * adulterated medical device under 21CFR820, the use of which
+ * is considered to be a violation of US Federal Statutes.
+ * ----------------------------------------------------------------
+ */
+package gov.va.med.imaging.exchange.business;
+
+import gov.va.med.PatientIdentifier;
+import gov.va.med.imaging.ImagingBaseWebFacadeRouter;
+import gov.va.med.imaging.core.FacadeRouterUtility;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Returns the studies of a patient from all sites, writing the studies of each site to the
+ * response as soon as that site has answered rather than when the slowest site has answered.
+ * The status of the complete result is written after the studies of the last site.
+ * 
+ * This servlet is not mapped in any web.xml in this tree, the web applications that host the
+ * ImagingBaseWebFacade servlets map it as they do PrefetchStudiesRequest.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class StudySetResultStreamingRequest 
+extends AbstractBaseServlet
+{
+	private static final long serialVersionUID = 1L;
+	private final static String PATIENT_ICN_PARAMETER_NAME = "patientIcn";
+	
+	public StudySetResultStreamingRequest()
+	{
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp) 
+	throws ServletException, IOException
+	{
+		String patientIcn = req.getParameter(PATIENT_ICN_PARAMETER_NAME);
+		if(patientIcn == null)
+		{
+			resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+			resp.setContentType("text/xml");
+			PrintWriter writer = resp.getWriter();
+			writer.write("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>");
+			writer.write("<study-set-result>");
+			writeStatus(writer, "ERROR", "Required parameters '" + PATIENT_ICN_PARAMETER_NAME + "' was not provided.");
+			writer.write("</study-set-result>");
+			return;
+		}
+		ImagingBaseWebFacadeRouter router = getRouter();
+		if(router == null)
+			throw new ServletException("Unable to get the facade router.");
+		
+		resp.setStatus(HttpServletResponse.SC_OK);
+		resp.setContentType("text/xml");
+		final PrintWriter writer = resp.getWriter();
+		writer.write("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>");
+		writer.write("<study-set-result>");
+		writer.flush();
+		
+		StudiesWriter studiesWriter = new StudiesWriter(writer);
+		try
+		{
+			StudySetResult result = router.getStudySetResultForPatient(
+				PatientIdentifier.icnPatientIdentifier(patientIcn), null, studiesWriter);
+			synchronized(writer)
+			{
+				studiesWriter.close();
+				writeStatus(writer, result == null || result.getArtifactResultStatus() == null ? 
+					"SUCCESS" : result.getArtifactResultStatus().name(), null);
+				writer.write("</study-set-result>");
+			}
+		}
+		catch(Exception x)
+		{
+			// the studies already written stay with the response, the status tells the client they are not all of them
+			getLogger().error("Error getting the studies for patient '" + patientIcn + "', " + x.getMessage());
+			synchronized(writer)
+			{
+				studiesWriter.close();
+				writeStatus(writer, "ERROR", x.getMessage());
+				writer.write("</study-set-result>");
+			}
+		}
+	}
+	
+	/**
+	 * Writes the studies of one site and flushes them to the client. Once closed, studies from sites
+	 * that answer late are dropped, the response may by then belong to another request.
+	 */
+	private static class StudiesWriter
+	implements StudySetResultListener
+	{
+		private final PrintWriter writer;
+		// guarded by the writer
+		private boolean closed = false;
+		
+		StudiesWriter(PrintWriter writer)
+		{
+			this.writer = writer;
+		}
+		
+		/**
+		 * The caller holds the writer lock.
+		 */
+		void close()
+		{
+			closed = true;
+		}
+
+		@Override
+		public void studySetResultAvailable(StudySetResult partialResult)
+		{
+			synchronized(writer)
+			{
+				if(closed)
+					return;
+				writer.write("<studies>");
+				for(Study study : partialResult.getArtifacts())
+				{
+					writer.write("<study urn=\"" + escape(String.valueOf(study.getStudyUrn())) + 
+						"\" siteNumber=\"" + escape(study.getSiteNumber()) + 
+						"\" procedureDate=\"" + escape(study.getProcedureDateString()) + 
+						"\" description=\"" + escape(study.getDescription()) + "\"/>");
+				}
+				writer.write("</studies>");
+				writer.flush();
+			}
+		}
+	}
+	
+	private void writeStatus(PrintWriter writer, String status, String message)
+	{
+		writer.write("<status>");
+		writer.write(status);
+		writer.write("</status>");
+		if(message != null)
+		{
+			writer.write("<message>");
+			writer.write(escape(message));
+			writer.write("</message>");
+		}
+	}
+	
+	private static String escape(String value)
+	{
+		if(value == null)
+			return "";
+		return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+	}
+	
+	protected synchronized ImagingBaseWebFacadeRouter getRouter()
+	throws ServletException
+	{
+		ImagingBaseWebFacadeRouter router;
+		try
+		{
+			router = FacadeRouterUtility.getFacadeRouter(ImagingBaseWebFacadeRouter.class);
+		} 
+		catch (Exception x)
+		{
+			getLogger().error("Exception getting the facade router implementation.", x);
+			return null;
+		}
+		
+		return router;
+	}
+}
@@ -49,6 +49,11 @@ extends AbstractBaseServlet
 	private static final long serialVersionUID = 1L;
 	private final static Logger logger = Logger.getLogger(AbstractBaseImageServlet.class);
 	
+	// the image of an identifier and quality does not change, but it is patient information 
+	// so only the client may keep it
+	public final static String CACHE_CONTROL_INIT_PARAMETER = "cacheControl";
+	public final static String DEFAULT_CACHE_CONTROL = "private, max-age=86400";
+	
 	protected Logger getLogger()
 	{
 		return logger;
@@ -87,6 +92,35 @@ extends AbstractBaseServlet
     protected abstract void doGet(HttpServletRequest req, HttpServletResponse resp) 
 	throws ServletException, IOException;
 	
+	/**
+	 * The stream that an image response is written to when the request may be conditional
+	 * (If-None-Match, If-Modified-Since) or for a byte range (Range, If-Range).  The
+	 * metadata notification of the request must be wrapped by the stream's 
+	 * getMetadataNotification().
+	 * 
+	 * @param req
+	 * @param resp
+	 * @return
+	 * @throws IOException
+	 */
+	protected ConditionalImageOutputStream getConditionalImageOutputStream(HttpServletRequest req, HttpServletResponse resp)
+	throws IOException
+	{
+		return new ConditionalImageOutputStream(req, resp, resp.getOutputStream(), getCacheControl());
+	}
+	
+	/**
+	 * The Cache-Control header value sent with images, the servlet init parameter 
+	 * "cacheControl" overrides the default.
+	 * 
+	 * @return
+	 */
+	protected String getCacheControl()
+	{
+		String cacheControl = getInitParameter(CACHE_CONTROL_INIT_PARAMETER);
+		return cacheControl == null || cacheControl.length() == 0 ? DEFAULT_CACHE_CONTROL : cacheControl;
+	}
+	
 	/**
 	 * 
 	 * @param resp
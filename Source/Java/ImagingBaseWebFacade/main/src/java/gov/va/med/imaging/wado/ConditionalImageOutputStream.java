@@ -0,0 +1,478 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.wado;
+
+import gov.va.med.imaging.channels.ChecksumValue;
+import gov.va.med.imaging.channels.FileTransferTarget;
+import gov.va.med.imaging.channels.exceptions.ChecksumFormatException;
+import gov.va.med.imaging.core.interfaces.ImageMetadataNotification;
+import gov.va.med.imaging.exchange.enums.ImageFormat;
+import gov.va.med.imaging.exchange.enums.ImageQuality;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The output stream of an image response that honors the conditional (If-None-Match, 
+ * If-Modified-Since) and byte range (Range, If-Range) request headers.
+ * 
+ * The decision is made when the image metadata is known, that is when the metadata 
+ * notification returned by getMetadataNotification() is called before the image is written.
+ * The strong ETag is the checksum of the image in the cache metadata, it is only sent when
+ * the reported checksum is a ChecksumValue.  An image streamed from a data source reports
+ * the result of its checksum test ("ok" or "not ok") rather than a checksum, so it has no 
+ * ETag and is always sent in full, as is an image whose size is not known (not in a file 
+ * based cache).
+ * 
+ * When a range is requested and the image is in a file based cache the range is read from 
+ * the file at the range offset, the rest of the file is not read.  Otherwise the image is 
+ * written through this stream and the bytes outside of the range are discarded.
+ * When the response is 304 (Not Modified) or 416 (Range Not Satisfiable) the image is discarded.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class ConditionalImageOutputStream
+extends OutputStream
+implements FileTransferTarget
+{
+	public final static String HEADER_ETAG = "ETag";
+	public final static String HEADER_CACHE_CONTROL = "Cache-Control";
+	public final static String HEADER_LAST_MODIFIED = "Last-Modified";
+	public final static String HEADER_ACCEPT_RANGES = "Accept-Ranges";
+	public final static String HEADER_CONTENT_RANGE = "Content-Range";
+	public final static String HEADER_RANGE = "Range";
+	public final static String HEADER_IF_RANGE = "If-Range";
+	public final static String HEADER_IF_NONE_MATCH = "If-None-Match";
+	public final static String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+	
+	private final static String BYTES_UNIT = "bytes";
+	private final static Logger logger = Logger.getLogger(ConditionalImageOutputStream.class);
+	
+	enum ResponseType
+	{
+		FULL(HttpServletResponse.SC_OK), 
+		PARTIAL(HttpServletResponse.SC_PARTIAL_CONTENT), 
+		NOT_MODIFIED(HttpServletResponse.SC_NOT_MODIFIED), 
+		NOT_SATISFIABLE(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+		
+		private final int statusCode;
+		
+		ResponseType(int statusCode)
+		{
+			this.statusCode = statusCode;
+		}
+
+		public int getStatusCode()
+		{
+			return statusCode;
+		}
+	}
+	
+	private final HttpServletRequest req;
+	private final HttpServletResponse resp;
+	private final OutputStream outStream;
+	private final String cacheControl;
+	
+	private ResponseType responseType = ResponseType.FULL;
+	private boolean evaluated = false;
+	private String entityTag = null;
+	private long rangeStart = 0L;
+	private long rangeEnd = -1L;		// inclusive
+	private long contentPosition = 0L;	// the position of the next byte written in the complete content
+	private long bytesSent = 0L;
+	
+	/**
+	 * 
+	 * @param req
+	 * @param resp
+	 * @param outStream the stream the response content is written to, i.e. the response output stream
+	 * @param cacheControl the Cache-Control header value to send with an ETag, or null to send none
+	 */
+	public ConditionalImageOutputStream(HttpServletRequest req, HttpServletResponse resp, OutputStream outStream, String cacheControl)
+	{
+		this.req = req;
+		this.resp = resp;
+		this.outStream = outStream;
+		this.cacheControl = cacheControl;
+	}
+	
+	/**
+	 * Wrap the given notification so that the request headers are evaluated against the 
+	 * image metadata, the given notification is called first.
+	 * 
+	 * @param notification
+	 * @return
+	 */
+	public ImageMetadataNotification getMetadataNotification(final ImageMetadataNotification notification)
+	{
+		return new ImageMetadataNotification()
+		{
+			@Override
+			public void imageMetadata(String checksumValue, ImageFormat imageFormat, int fileSize, ImageQuality imageQuality)
+			{
+				if(notification != null)
+					notification.imageMetadata(checksumValue, imageFormat, fileSize, imageQuality);
+				evaluate(checksumValue, fileSize);
+			}
+		};
+	}
+	
+	/**
+	 * @return the HTTP status of the response
+	 */
+	public int getStatusCode()
+	{
+		return responseType.getStatusCode();
+	}
+	
+	ResponseType getResponseType()
+	{
+		return responseType;
+	}
+	
+	/**
+	 * @return the number of content bytes sent to the client, which is less than the bytes 
+	 * written to this stream when a range is sent or the image is discarded
+	 */
+	public long getBytesSent()
+	{
+		return bytesSent;
+	}
+	
+	/**
+	 * The checksum of an entity tag must be a checksum of the image content, a value that
+	 * is the same for different images (e.g. "ok" from a data source) must never be used.
+	 * 
+	 * @param checksumValue the checksum as reported in the image metadata
+	 * @return the checksum in its string form, or null if the value is not a ChecksumValue
+	 */
+	static String getEntityTagChecksum(String checksumValue)
+	{
+		if(checksumValue == null || checksumValue.length() == 0)
+			return null;
+		String checksum;
+		try
+		{
+			checksum = new ChecksumValue(checksumValue).toString();
+		}
+		catch(ChecksumFormatException cfX)
+		{
+			return null;
+		}
+		return checksum.indexOf('"') >= 0 ? null : checksum;
+	}
+	
+	/**
+	 * Decide the response from the request headers and the image checksum and size.  Only the
+	 * first call has any effect, the metadata may be reported more than once for a single image. 
+	 * 
+	 * @param checksumValue
+	 * @param size the size of the image, zero or less if not known
+	 */
+	void evaluate(String checksumValue, long size)
+	{
+		if(evaluated || resp.isCommitted())
+			return;
+		evaluated = true;
+		
+		String checksum = getEntityTagChecksum(checksumValue);
+		if(checksum == null)
+			return;
+		entityTag = "\"" + checksum + "\"";
+		resp.setHeader(HEADER_ETAG, entityTag);
+		if(cacheControl != null)
+			resp.setHeader(HEADER_CACHE_CONTROL, cacheControl);
+		
+		String ifNoneMatch = req.getHeader(HEADER_IF_NONE_MATCH);
+		if(ifNoneMatch != null)
+		{
+			if(matchesAny(ifNoneMatch, entityTag))
+			{
+				logger.debug("Entity tag " + entityTag + " matches If-None-Match, the image is not modified.");
+				setResponseType(ResponseType.NOT_MODIFIED);
+				return;
+			}
+		}
+		
+		if(size <= 0L)
+			return;
+		resp.setHeader(HEADER_ACCEPT_RANGES, BYTES_UNIT);
+		
+		String range = req.getHeader(HEADER_RANGE);
+		if(range == null)
+			return;
+		// a range is only sent if the client has the same image
+		String ifRange = req.getHeader(HEADER_IF_RANGE);
+		if(ifRange != null && !ifRange.trim().equals(entityTag))
+			return;
+		
+		long[] byteRange = parseRange(range, size);
+		if(byteRange == null)
+			return;
+		if(byteRange.length == 0)
+		{
+			resp.setHeader(HEADER_CONTENT_RANGE, BYTES_UNIT + " */" + size);
+			resp.setContentLength(0);
+			setResponseType(ResponseType.NOT_SATISFIABLE);
+			return;
+		}
+		
+		rangeStart = byteRange[0];
+		rangeEnd = byteRange[1];
+		resp.setHeader(HEADER_CONTENT_RANGE, BYTES_UNIT + " " + rangeStart + "-" + rangeEnd + "/" + size);
+		resp.setContentLength((int)(rangeEnd - rangeStart + 1L));
+		setResponseType(ResponseType.PARTIAL);
+		logger.debug("Sending bytes [" + rangeStart + "-" + rangeEnd + "] of [" + size + "].");
+	}
+	
+	private void setResponseType(ResponseType responseType)
+	{
+		this.responseType = responseType;
+		resp.setStatus(responseType.getStatusCode());
+	}
+	
+	/**
+	 * If-None-Match uses the weak comparison, a "W/" prefix is ignored.
+	 * 
+	 * @param entityTags the comma separated entity tags of the header, or "*"
+	 * @param entityTag
+	 * @return
+	 */
+	static boolean matchesAny(String entityTags, String entityTag)
+	{
+		for(String candidate : entityTags.split(","))
+		{
+			candidate = candidate.trim();
+			if(candidate.startsWith("W/"))
+				candidate = candidate.substring(2);
+			if("*".equals(candidate) || entityTag.equals(candidate))
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Parse a single byte range, multiple ranges are not supported and are answered with the
+	 * complete content, as they may be.
+	 * 
+	 * @param range the Range header value
+	 * @param size the size of the content
+	 * @return the first and last (inclusive) byte positions, an empty array if the range 
+	 * cannot be satisfied or null if the header is not a single valid byte range and is to be ignored
+	 */
+	static long[] parseRange(String range, long size)
+	{
+		range = range.trim();
+		if(!range.startsWith(BYTES_UNIT + "=") || range.indexOf(',') >= 0)
+			return null;
+		String spec = range.substring(BYTES_UNIT.length() + 1).trim();
+		int dash = spec.indexOf('-');
+		if(dash < 0)
+			return null;
+		
+		try
+		{
+			String first = spec.substring(0, dash).trim();
+			String last = spec.substring(dash + 1).trim();
+			long start;
+			long end;
+			if(first.length() == 0)
+			{
+				// suffix range, the last n bytes
+				if(last.length() == 0)
+					return null;
+				long suffixLength = Long.parseLong(last);
+				if(suffixLength < 0L)
+					return null;
+				if(suffixLength == 0L)
+					return new long[0];
+				start = Math.max(0L, size - suffixLength);
+				end = size - 1L;
+			}
+			else
+			{
+				start = Long.parseLong(first);
+				end = last.length() == 0 ? Long.MAX_VALUE : Long.parseLong(last);
+				if(start < 0L || end < start)
+					return null;
+				if(start >= size)
+					return new long[0];
+				end = Math.min(end, size - 1L);
+			}
+			return new long[]{start, end};
+		}
+		catch(NumberFormatException nfX)
+		{
+			return null;
+		}
+	}
+	
+	/**
+	 * Evaluate If-Modified-Since against the last modified time of the file, which is only 
+	 * known for a file based cache.  If-Modified-Since is ignored when If-None-Match is present.
+	 * 
+	 * @param file
+	 */
+	private void evaluateLastModified(File file)
+	{
+		long lastModified = file.lastModified();
+		if(lastModified <= 0L || resp.isCommitted())
+			return;
+		resp.setDateHeader(HEADER_LAST_MODIFIED, lastModified);
+		
+		if(responseType != ResponseType.FULL || req.getHeader(HEADER_IF_NONE_MATCH) != null)
+			return;
+		try
+		{
+			long ifModifiedSince = req.getDateHeader(HEADER_IF_MODIFIED_SINCE);
+			// HTTP dates have a one second resolution
+			if(ifModifiedSince >= 0L && lastModified / 1000L <= ifModifiedSince / 1000L)
+			{
+				logger.debug("'" + file.getName() + "' is not modified since If-Modified-Since.");
+				setResponseType(ResponseType.NOT_MODIFIED);
+			}
+		}
+		catch(IllegalArgumentException iaX)
+		{
+			// not a date, ignore the header
+		}
+	}
+	
+	/**
+	 * A range is transferred from the file here, the rest of the file is not read.  Nothing is 
+	 * read when the image is not to be sent.  The complete image is not taken, it is written
+	 * through this stream.
+	 * 
+	 * @see gov.va.med.imaging.channels.FileTransferTarget#transferFile(java.io.File, long, long)
+	 */
+	@Override
+	public boolean transferFile(File file, long position, long count) 
+	throws IOException
+	{
+		if(contentPosition > 0L)
+			return false;
+		evaluateLastModified(file);
+		
+		switch(responseType)
+		{
+		case NOT_MODIFIED:
+		case NOT_SATISFIABLE:
+			contentPosition = count;
+			return true;
+		case PARTIAL:
+			long length = Math.min(rangeEnd + 1L, count) - rangeStart;
+			if(length <= 0L)
+				return false;
+			transferRange(file, position + rangeStart, length);
+			contentPosition = count;
+			bytesSent = length;
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	private void transferRange(File file, long position, long length) 
+	throws IOException
+	{
+		FileInputStream fileInStream = new FileInputStream(file);
+		try
+		{
+			FileChannel fileChannel = fileInStream.getChannel();
+			WritableByteChannel targetChannel = Channels.newChannel(outStream);
+			long transferred = 0L;
+			while(transferred < length)
+			{
+				long bytes = fileChannel.transferTo(position + transferred, length - transferred, targetChannel);
+				if(bytes <= 0L)
+					throw new IOException("Transfer of '" + file.getPath() + "' stopped after [" + transferred + "] of [" + length + "] bytes.");
+				transferred += bytes;
+			}
+		}
+		finally
+		{
+			fileInStream.close();
+		}
+	}
+
+	@Override
+	public void write(int b) 
+	throws IOException
+	{
+		write(new byte[]{(byte)b}, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) 
+	throws IOException
+	{
+		long position = contentPosition;
+		contentPosition += len;
+		switch(responseType)
+		{
+		case FULL:
+			outStream.write(b, off, len);
+			bytesSent += len;
+			break;
+		case PARTIAL:
+			long first = Math.max(position, rangeStart);
+			long last = Math.min(position + len - 1L, rangeEnd);
+			if(first <= last)
+			{
+				outStream.write(b, off + (int)(first - position), (int)(last - first + 1L));
+				bytesSent += last - first + 1L;
+			}
+			break;
+		default:
+			// the image is not sent
+			break;
+		}
+	}
+
+	@Override
+	public void flush() 
+	throws IOException
+	{
+		outStream.flush();
+	}
+
+	@Override
+	public void close() 
+	throws IOException
+	{
+		outStream.close();
+	}
+}
@@ -51,11 +51,12 @@ extends AbstractBaseImageServlet
 			try
 	        {
 		        ImageURN imageUrn = URNFactory.create(imageIdentifier, ImageURN.class);
+		    	ConditionalImageOutputStream imageOutStream = getConditionalImageOutputStream(req, resp);
 		    	long bytesTransferred = streamImageInstanceByUrn(
 		    			imageUrn, ImageQuality.DIAGNOSTIC,
 		    			diagnosticResponseType, 
-		    			resp.getOutputStream(),
-		    			new MetadataNotification(resp));
+		    			imageOutStream,
+		    			imageOutStream.getMetadataNotification(new MetadataNotification(resp)));
 	        } 
 			catch (URNFormatException e)
 	        {
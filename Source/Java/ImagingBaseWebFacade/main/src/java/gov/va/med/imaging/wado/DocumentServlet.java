@@ -100,6 +100,9 @@ extends AbstractBaseImageServlet
 			
 			ByteStreamPump pump = ByteStreamPump.getByteStreamPump(TRANSFER_TYPE.NetworkToNetwork);
 			resp.setContentType( drr.getDocumentStream().getImageFormat().getMime() );
+			// the checksum and length of a document are only known once it has been read, so
+			// there is no ETag and ranges are not supported, but the client may keep the document
+			resp.setHeader(ConditionalImageOutputStream.HEADER_CACHE_CONTROL, getCacheControl());
 			pump.xfer( drr.getDocumentStream(), resp.getOutputStream() );
         } 
 		catch (ImageServletException isX)
@@ -53,11 +53,12 @@ extends AbstractBaseImageServlet
 			try
 	        {
 		        ImageURN imageUrn = URNFactory.create(imageIdentifier, ImageURN.class);
+		    	ConditionalImageOutputStream imageOutStream = getConditionalImageOutputStream(req, resp);
 		    	long bytesTransferred = streamImageInstanceByUrn(
 		    			imageUrn, ImageQuality.REFERENCE,
 		    			referenceResponseType, 
-		    			resp.getOutputStream(),
-		    			new MetadataNotification(resp) );
+		    			imageOutStream,
+		    			imageOutStream.getMetadataNotification(new MetadataNotification(resp)) );
 	        } 
 			catch (URNFormatException e)
 	        {
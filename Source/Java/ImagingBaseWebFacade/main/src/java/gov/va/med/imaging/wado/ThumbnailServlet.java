@@ -51,15 +51,16 @@ extends AbstractBaseImageServlet
 	        {
 		        ImageURN imageUrn = URNFactory.create(imageIdentifier, ImageURN.class);
 		        TransactionContextHelper.setTransactionContextFields("getThumbnail", imageUrn.getPatientId(), imageIdentifier);
+		    	ConditionalImageOutputStream imageOutStream = getConditionalImageOutputStream(req, resp);
 		    	long bytesTransferred = streamImageInstanceByUrn(
 		    			imageUrn, ImageQuality.THUMBNAIL,
 		    			thumbnailResponseType, 
-		    			resp.getOutputStream(),
-		    			new MetadataNotification(resp) );
+		    			imageOutStream,
+		    			imageOutStream.getMetadataNotification(new MetadataNotification(resp)) );
 		    	
 		    	transactionContext.setEntriesReturned( bytesTransferred==0 ? 0 : 1 );
-				transactionContext.setFacadeBytesSent(bytesTransferred);
-				transactionContext.setResponseCode(HttpServletResponse.SC_OK + "");
+				transactionContext.setFacadeBytesSent(imageOutStream.getBytesSent());
+				transactionContext.setResponseCode(imageOutStream.getStatusCode() + "");
 	        } 
 			catch (URNFormatException e)
 	        {
@@ -0,0 +1,288 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.wado;
+
+import gov.va.med.imaging.core.interfaces.ImageMetadataNotification;
+import gov.va.med.imaging.exchange.enums.ImageFormat;
+import gov.va.med.imaging.exchange.enums.ImageQuality;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import junit.framework.TestCase;
+
+/**
+ * Test the conditional and byte range handling of image responses.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TestConditionalImageOutputStream 
+extends TestCase
+{
+	private final static String CHECKSUM = "{Adler32}1234567";
+	private final static String ENTITY_TAG = "\"" + CHECKSUM + "\"";
+	private final static String CACHE_CONTROL = "private, max-age=3600";
+	
+	private Map<String, String> requestHeaders;
+	private Map<String, Object> responseHeaders;
+	private int[] status;
+	private byte[] content;
+	
+	@Override
+	protected void setUp() 
+	throws Exception
+	{
+		super.setUp();
+		requestHeaders = new HashMap<String, String>();
+		responseHeaders = new HashMap<String, Object>();
+		status = new int[]{HttpServletResponse.SC_OK};
+		content = new byte[1000];
+		for(int index=0; index < content.length; ++index)
+			content[index] = (byte)index;
+	}
+	
+	private HttpServletRequest createRequest()
+	{
+		return (HttpServletRequest)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{HttpServletRequest.class}, 
+			new InvocationHandler()
+			{
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args) 
+				{
+					if("getHeader".equals(method.getName()))
+						return requestHeaders.get(args[0]);
+					if("getDateHeader".equals(method.getName()))
+					{
+						String value = requestHeaders.get(args[0]);
+						return value == null ? -1L : Long.parseLong(value);
+					}
+					return null;
+				}
+			});
+	}
+	
+	private HttpServletResponse createResponse()
+	{
+		return (HttpServletResponse)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{HttpServletResponse.class}, 
+			new InvocationHandler()
+			{
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args) 
+				{
+					String name = method.getName();
+					if("setHeader".equals(name) || "setDateHeader".equals(name))
+						responseHeaders.put((String)args[0], args[1]);
+					else if("setContentLength".equals(name))
+						responseHeaders.put("Content-Length", args[0]);
+					else if("setStatus".equals(name))
+						status[0] = (Integer)args[0];
+					else if("isCommitted".equals(name))
+						return Boolean.FALSE;
+					return null;
+				}
+			});
+	}
+	
+	/**
+	 * Write the content the way the router does, the metadata first and then the content 
+	 * in pieces through the stream.
+	 */
+	private ConditionalImageOutputStream stream(ByteArrayOutputStream out)
+	throws Exception
+	{
+		return stream(out, CHECKSUM);
+	}
+	
+	private ConditionalImageOutputStream stream(ByteArrayOutputStream out, String checksum)
+	throws Exception
+	{
+		ConditionalImageOutputStream imageOutStream = 
+			new ConditionalImageOutputStream(createRequest(), createResponse(), out, CACHE_CONTROL);
+		ImageMetadataNotification notification = imageOutStream.getMetadataNotification(null);
+		notification.imageMetadata(checksum, ImageFormat.JPEG, content.length, ImageQuality.REFERENCE);
+		for(int offset=0; offset < content.length; offset += 300)
+			imageOutStream.write(content, offset, Math.min(300, content.length - offset));
+		imageOutStream.close();
+		return imageOutStream;
+	}
+	
+	private byte[] range(int start, int end)
+	{
+		return Arrays.copyOfRange(content, start, end + 1);
+	}
+	
+	public void testParseRange()
+	{
+		assertTrue(Arrays.equals(new long[]{0, 99}, ConditionalImageOutputStream.parseRange("bytes=0-99", 1000)));
+		assertTrue(Arrays.equals(new long[]{500, 999}, ConditionalImageOutputStream.parseRange("bytes=500-", 1000)));
+		assertTrue(Arrays.equals(new long[]{900, 999}, ConditionalImageOutputStream.parseRange("bytes=-100", 1000)));
+		assertTrue(Arrays.equals(new long[]{0, 999}, ConditionalImageOutputStream.parseRange("bytes=-5000", 1000)));
+		assertTrue(Arrays.equals(new long[]{990, 999}, ConditionalImageOutputStream.parseRange("bytes=990-5000", 1000)));
+		assertEquals(0, ConditionalImageOutputStream.parseRange("bytes=1000-", 1000).length);
+		assertEquals(0, ConditionalImageOutputStream.parseRange("bytes=-0", 1000).length);
+		assertNull(ConditionalImageOutputStream.parseRange("bytes=5-1", 1000));
+		assertNull(ConditionalImageOutputStream.parseRange("bytes=0-1,5-9", 1000));
+		assertNull(ConditionalImageOutputStream.parseRange("items=0-1", 1000));
+		assertNull(ConditionalImageOutputStream.parseRange("bytes=a-b", 1000));
+	}
+	
+	public void testFullResponse() 
+	throws Exception
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ConditionalImageOutputStream imageOutStream = stream(out);
+		assertEquals(HttpServletResponse.SC_OK, status[0]);
+		assertEquals(ENTITY_TAG, responseHeaders.get(ConditionalImageOutputStream.HEADER_ETAG));
+		assertEquals(CACHE_CONTROL, responseHeaders.get(ConditionalImageOutputStream.HEADER_CACHE_CONTROL));
+		assertEquals("bytes", responseHeaders.get(ConditionalImageOutputStream.HEADER_ACCEPT_RANGES));
+		assertTrue(Arrays.equals(content, out.toByteArray()));
+		assertEquals(content.length, imageOutStream.getBytesSent());
+	}
+	
+	public void testNotModified() 
+	throws Exception
+	{
+		requestHeaders.put(ConditionalImageOutputStream.HEADER_IF_NONE_MATCH, "\"{Adler32}1\", W/" + ENTITY_TAG);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ConditionalImageOutputStream imageOutStream = stream(out);
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, status[0]);
+		assertEquals(0, out.size());
+		assertEquals(0L, imageOutStream.getBytesSent());
+		
+		setUp();
+		requestHeaders.put(ConditionalImageOutputStream.HEADER_IF_NONE_MATCH, "\"{Adler32}1\"");
+		out = new ByteArrayOutputStream();
+		stream(out);
+		assertEquals(HttpServletResponse.SC_OK, status[0]);
+		assertEquals(content.length, out.size());
+	}
+	
+	public void testChecksumTestResultIsNotAnEntityTag() 
+	throws Exception
+	{
+		assertEquals(CHECKSUM, ConditionalImageOutputStream.getEntityTagChecksum(CHECKSUM));
+		assertNull(ConditionalImageOutputStream.getEntityTagChecksum("ok"));
+		assertNull(ConditionalImageOutputStream.getEntityTagChecksum("not ok"));
+		assertNull(ConditionalImageOutputStream.getEntityTagChecksum(""));
+		assertNull(ConditionalImageOutputStream.getEntityTagChecksum(null));
+		
+		// an image streamed from a data source reports "ok", a client must not get a 304 for it
+		requestHeaders.put(ConditionalImageOutputStream.HEADER_IF_NONE_MATCH, "\"ok\"");
+		requestHeaders.put(ConditionalImageOutputStream.HEADER_RANGE, "bytes=0-99");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		stream(out, "ok");
+		assertEquals(HttpServletResponse.SC_OK, status[0]);
+		assertNull(responseHeaders.get(ConditionalImageOutputStream.HEADER_ETAG));
+		assertNull(responseHeaders.get(ConditionalImageOutputStream.HEADER_CACHE_CONTROL));
+		assertTrue(Arrays.equals(content, out.toByteArray()));
+	}
+	
+	public void testRange() 
+	throws Exception
+	{
+		requestHeaders.put(ConditionalImageOutputStream.HEADER_RANGE, "bytes=250-649");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ConditionalImageOutputStream imageOutStream = stream(out);
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, status[0]);
+		assertEquals("bytes 250-649/1000", responseHeaders.get(ConditionalImageOutputStream.HEADER_CONTENT_RANGE));
+		assertEquals(400, responseHeaders.get("Content-Length"));
+		assertTrue(Arrays.equals(range(250, 649), out.toByteArray()));
+		assertEquals(400L, imageOutStream.getBytesSent());
+	}
+	
+	public void testIfRange() 
+	throws Exception
+	{
+		// the client has a different image, send all of this one
+		requestHeaders.put(ConditionalImageOutputStream.HEADER_RANGE, "bytes=250-");
+		requestHeaders.put(ConditionalImageOutputStream.HEADER_IF_RANGE, "\"{Adler32}1\"");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		stream(out);
+		assertEquals(HttpServletResponse.SC_OK, status[0]);
+		assertTrue(Arrays.equals(content, out.toByteArray()));
+		
+		setUp();
+		requestHeaders.put(ConditionalImageOutputStream.HEADER_RANGE, "bytes=250-");
+		requestHeaders.put(ConditionalImageOutputStream.HEADER_IF_RANGE, ENTITY_TAG);
+		out = new ByteArrayOutputStream();
+		stream(out);
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, status[0]);
+		assertTrue(Arrays.equals(range(250, 999), out.toByteArray()));
+	}
+	
+	public void testRangeNotSatisfiable() 
+	throws Exception
+	{
+		requestHeaders.put(ConditionalImageOutputStream.HEADER_RANGE, "bytes=1000-");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		stream(out);
+		assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, status[0]);
+		assertEquals("bytes */1000", responseHeaders.get(ConditionalImageOutputStream.HEADER_CONTENT_RANGE));
+		assertEquals(0, out.size());
+	}
+	
+	public void testRangeFromFile() 
+	throws Exception
+	{
+		File file = File.createTempFile("conditional", ".img");
+		file.deleteOnExit();
+		FileOutputStream fileOutStream = new FileOutputStream(file);
+		fileOutStream.write(content);
+		fileOutStream.close();
+		
+		requestHeaders.put(ConditionalImageOutputStream.HEADER_RANGE, "bytes=-100");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ConditionalImageOutputStream imageOutStream = 
+			new ConditionalImageOutputStream(createRequest(), createResponse(), out, null);
+		imageOutStream.getMetadataNotification(null).imageMetadata(CHECKSUM, ImageFormat.JPEG, content.length, ImageQuality.REFERENCE);
+		assertTrue(imageOutStream.transferFile(file, 0L, file.length()));
+		
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, status[0]);
+		assertNull(responseHeaders.get(ConditionalImageOutputStream.HEADER_CACHE_CONTROL));
+		assertNotNull(responseHeaders.get(ConditionalImageOutputStream.HEADER_LAST_MODIFIED));
+		assertTrue(Arrays.equals(range(900, 999), out.toByteArray()));
+		
+		// not modified since the last modified time of the file, the file is not read
+		setUp();
+		requestHeaders.put(ConditionalImageOutputStream.HEADER_IF_MODIFIED_SINCE, "" + (file.lastModified() + 1000L));
+		out = new ByteArrayOutputStream();
+		imageOutStream = new ConditionalImageOutputStream(createRequest(), createResponse(), out, null);
+		imageOutStream.getMetadataNotification(null).imageMetadata(CHECKSUM, ImageFormat.JPEG, content.length, ImageQuality.REFERENCE);
+		assertTrue(imageOutStream.transferFile(file, 0L, file.length()));
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, status[0]);
+		assertEquals(0, out.size());
+	}
+}
@@ -185,6 +185,9 @@ public class OctetSequenceEscaping
 	private final List<Character> blacklist;
 	private final char escapeChar;
 	private final Pattern octetSequencePattern;
+	// the legality of the ASCII characters, looked up rather than searched for in the lists
+	// because every URN that is created or parsed checks every character of its NSS
+	private final boolean[] legalAsciiCharacters;
 
 	
 	private OctetSequenceEscaping(List<Character> whitelist, List<Character> blacklist, char escapeChar)
@@ -194,6 +197,9 @@ public class OctetSequenceEscaping
 		this.blacklist = blacklist;
 		this.escapeChar = escapeChar;
 		this.octetSequencePattern = Pattern.compile(getEscapeChar() + OCTET_SEQUENCE_SUFFIX);
+		this.legalAsciiCharacters = new boolean[128];
+		for(char ch = 0; ch < legalAsciiCharacters.length; ++ch)
+			legalAsciiCharacters[ch] = isListedLegalCharacter(ch);
 	}
 	
 	/**
@@ -237,6 +243,13 @@ public class OctetSequenceEscaping
 	 * @return
 	 */
 	private boolean isLegalCharacter(char ch)
+	{
+		return ch < legalAsciiCharacters.length ? 
+			legalAsciiCharacters[ch] : 
+			isListedLegalCharacter(ch);
+	}
+	
+	private boolean isListedLegalCharacter(char ch)
 	{
 		return getWhitelist() != null ?  
 			getWhitelist().contains( new Character(ch) ):
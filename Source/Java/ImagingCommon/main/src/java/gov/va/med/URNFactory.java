@@ -52,6 +52,11 @@ public class URNFactory
 
 	protected static Map<NamespaceIdentifier, Class<? extends URN>> urnClasses = 
 		Collections.synchronizedMap(new HashMap<NamespaceIdentifier, Class<? extends URN>>());
+	
+	// the create(URNComponents, SERIALIZATION_FORMAT) method of each registered class, looking
+	// the method up costs more than parsing the URN and every cached Study parses one per image
+	private static Map<Class<? extends URN>, Method> factoryMethods = 
+		Collections.synchronizedMap(new HashMap<Class<? extends URN>, Method>());
 
 	// Register all of the urn derived classes that we know of.
 	// Registered classes can be created by this class based on 
@@ -203,10 +208,10 @@ public class URNFactory
 	public static <T extends URN> T create(String urnAsString) 
 	throws URNFormatException
 	{
-		logger.trace("Creating URN from string '" + urnAsString + "'.");
 		URNComponents urnComponents = URNComponents.parse(urnAsString);
 		//urnComponents = URN.escapeIllegalCharacters(urnComponents);
-		logger.trace("Creating URN from string '" + urnAsString + "' - parsed into URNComponents '" + urnComponents.toString() + "'.");
+		if(logger.isTraceEnabled())
+			logger.trace("Creating URN from string '" + urnAsString + "' - parsed into URNComponents '" + urnComponents.toString() + "'.");
 		return (T)create(urnComponents);
 	}
 
@@ -259,8 +264,9 @@ public class URNFactory
 	throws URNFormatException
 	{
 		Class<? extends URN> registeredClass = getRegisteredUrnClass(urnComponents.getNamespaceIdentifier());
-		logger.trace("Creating URN from string '" + urnComponents.toString() + "' - registered class is '" + 
-			(registeredClass == null ? "null" : registeredClass.getSimpleName()) + "'.");
+		if(logger.isTraceEnabled())
+			logger.trace("Creating URN from string '" + urnComponents.toString() + "' - registered class is '" + 
+				(registeredClass == null ? "null" : registeredClass.getSimpleName()) + "'.");
 		
 		if(registeredClass == null)
 			return (T)( new URN(urnComponents, SERIALIZATION_FORMAT.NATIVE) );
@@ -296,11 +302,11 @@ public class URNFactory
 		SERIALIZATION_FORMAT serializationFormat)
 	throws URNFormatException
 	{
-		logger.trace("Creating URN from string '" + urnAsString + "'.");
 		// if the serialization format is VFTP then have the URNComponents unescape before parsing the NSS
 		URNComponents urnComponents = URNComponents.parse( urnAsString, serializationFormat );
 		//urnComponents = URN.escapeIllegalCharacters(urnComponents);
-		logger.trace("Creating URN from string '" + urnAsString + "' - parsed into URNComponents '" + urnComponents.toString() + "'.");
+		if(logger.isTraceEnabled())
+			logger.trace("Creating URN from string '" + urnAsString + "' - parsed into URNComponents '" + urnComponents.toString() + "'.");
 		T urn = (T)create(urnComponents, serializationFormat);
 
 		return urn;
@@ -342,8 +348,9 @@ public class URNFactory
 	throws URNFormatException
 	{
 		Class<? extends URN> registeredClass = getRegisteredUrnClass(urnComponents.getNamespaceIdentifier());
-		logger.trace("Creating URN from string '" + urnComponents.toString() + "' - registered class is '" + 
-			(registeredClass == null ? "null" : registeredClass.getSimpleName()) + "'.");
+		if(logger.isTraceEnabled())
+			logger.trace("Creating URN from string '" + urnComponents.toString() + "' - registered class is '" + 
+				(registeredClass == null ? "null" : registeredClass.getSimpleName()) + "'.");
 		
 		if(registeredClass == null)
 			return (T)( new URN(urnComponents, serializationFormat) );
@@ -373,7 +380,8 @@ public class URNFactory
 		assert(parameterTypes.length == parameters.length);
 		
 		// build a string used to identify the URN we are creating for logging
-		String msgIdentifier = buildMessageIdentifier(parameterTypes, parameters);
+		// URNs are created for every identifier in every study, only pay for the message when it is logged
+		String msgIdentifier = logger.isTraceEnabled() ? buildMessageIdentifier(parameterTypes, parameters) : null;
 		
 		try
 		{
@@ -383,9 +391,18 @@ public class URNFactory
 			// of derived classes rather than creating the registered class.
 			try
 			{
-				Method factoryMethod = registeredClass.getDeclaredMethod(createMethodName, parameterTypes);
+				boolean standardFactoryMethod = 
+					FACTORY_METHOD_NAME.equals(createMethodName) && Arrays.equals(FACTORY_METHOD_PARAMETERS, parameterTypes);
+				Method factoryMethod = standardFactoryMethod ? factoryMethods.get(registeredClass) : null;
+				if(factoryMethod == null)
+				{
+					factoryMethod = registeredClass.getDeclaredMethod(createMethodName, parameterTypes);
+					if(standardFactoryMethod)
+						factoryMethods.put(registeredClass, factoryMethod);
+				}
 				T urn = (T)( factoryMethod.invoke(null, parameters) );
-				logger.trace("Creating URN from parameters " + msgIdentifier + ", created '" + urn.toString() + "' using factory method.");
+				if(logger.isTraceEnabled())
+					logger.trace("Creating URN from parameters " + msgIdentifier + ", created '" + urn.toString() + "' using factory method.");
 				return urn;
 			}
 			catch (NoSuchMethodException x)
@@ -393,7 +410,8 @@ public class URNFactory
 				// no create method, call the constructor directly
 				Constructor<? extends URN> urnConstructor = registeredClass.getConstructor(parameterTypes);
 				T urn = (T)( urnConstructor.newInstance(parameters) );
-				logger.trace("Creating URN from parameters " + msgIdentifier + ", created '" + urn.toString() + "' using constructor.");
+				if(logger.isTraceEnabled())
+					logger.trace("Creating URN from parameters " + msgIdentifier + ", created '" + urn.toString() + "' using constructor.");
 				return urn;
 			}
 		}
@@ -34,6 +34,9 @@ public class ClonableAdler32
 		implements Cloneable, Checksum
 {
 	private static final int BIGPRIME = 65521;
+	// the largest number of bytes that may be summed before the modulo must be applied,
+	// see the class comment
+	private static final int NMAX = 5552;
 	private int s1;
 	private int s2;
 	
@@ -78,12 +81,27 @@ public class ClonableAdler32
 	}
 	
 	/**
-	 * 
+	 * Sums the bytes in runs of NMAX, applying the modulo once per run
+	 * rather than once per byte.
 	 */
 	public void update(byte[] b, int off, int len)
 	{
-		for(int n=off; n < off+len; ++n)
-			update((int)b[n]);
+		long sum1 = s1;
+		long sum2 = s2;
+		int end = off + len;
+		while(off < end)
+		{
+			int runEnd = Math.min(end, off + NMAX);
+			for(; off < runEnd; ++off)
+			{
+				sum1 += b[off] & 0xFF;
+				sum2 += sum1;
+			}
+			sum1 %= BIGPRIME;
+			sum2 %= BIGPRIME;
+		}
+		s1 = (int)sum1;
+		s2 = (int)sum2;
 	}
 
 	/**
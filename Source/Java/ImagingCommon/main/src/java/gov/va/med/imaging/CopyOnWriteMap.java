@@ -0,0 +1,151 @@
+package gov.va.med.imaging;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A ReadWriteLockMap for data that is read constantly and replaced rarely, for 
+ * example the site and region maps that are reloaded from the site service once a day.
+ * The contents are held in an immutable snapshot. Reads go to the current snapshot
+ * without taking any lock. Writes copy the snapshot, modify the copy and then publish
+ * it, serialized with respect to each other only. clearAndPutAll() publishes the new 
+ * contents in a single step, so a reader sees either all of the old map or all of
+ * the new one.
+ * The key set, values and entry set are views of the snapshot current when they
+ * were requested. They are read only and are not affected by later writes, so
+ * iterating over them is always safe.
+ * 
+ * @author vhaiswwerfej
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class CopyOnWriteMap<K, V> 
+implements ReadWriteLockMap<K, V>
+{
+	private volatile Map<K, V> snapshot;
+	
+	public CopyOnWriteMap()
+	{
+		this.snapshot = Collections.emptyMap();
+	}
+	
+	public CopyOnWriteMap(Map<? extends K, ? extends V> map)
+	{
+		this.snapshot = Collections.unmodifiableMap(new HashMap<K, V>(map));
+	}
+	
+	/**
+	 * @return a modifiable copy of the current snapshot, must be called while 
+	 * synchronized on this instance
+	 */
+	private Map<K, V> copy()
+	{
+		return new HashMap<K, V>(snapshot);
+	}
+	
+	private void publish(Map<K, V> map)
+	{
+		this.snapshot = Collections.unmodifiableMap(map);
+	}
+
+	public synchronized void clear()
+	{
+		this.snapshot = Collections.emptyMap();
+	}
+
+	public void clearAndPutAll(Map<K, V> map)
+	{
+		Map<K, V> replacement = new HashMap<K, V>(map);
+		synchronized(this)
+		{
+			publish(replacement);
+		}
+	}
+
+	public synchronized V put(K key, V value)
+	{
+		Map<K, V> map = copy();
+		V previous = map.put(key, value);
+		publish(map);
+		return previous;
+	}
+
+	public synchronized void putAll(Map<? extends K, ? extends V> m)
+	{
+		Map<K, V> map = copy();
+		map.putAll(m);
+		publish(map);
+	}
+
+	public synchronized V remove(Object key)
+	{
+		if(! snapshot.containsKey(key))
+			return null;
+		Map<K, V> map = copy();
+		V previous = map.remove(key);
+		publish(map);
+		return previous;
+	}
+
+	public boolean containsKey(Object key)
+	{
+		return snapshot.containsKey(key);
+	}
+
+	public boolean containsValue(Object value)
+	{
+		return snapshot.containsValue(value);
+	}
+
+	public V get(Object key)
+	{
+		return snapshot.get(key);
+	}
+
+	public boolean isEmpty()
+	{
+		return snapshot.isEmpty();
+	}
+
+	public int size()
+	{
+		return snapshot.size();
+	}
+
+	public Set<Map.Entry<K, V>> entrySet()
+	{
+		return snapshot.entrySet();
+	}
+
+	public Set<K> keySet()
+	{
+		return snapshot.keySet();
+	}
+
+	public Collection<V> values()
+	{
+		return snapshot.values();
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		return obj == this || snapshot.equals(obj);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return snapshot.hashCode();
+	}
+
+	@Override
+	public String toString()
+	{
+		return snapshot.toString();
+	}
+}
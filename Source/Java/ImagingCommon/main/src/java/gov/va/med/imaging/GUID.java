@@ -648,6 +648,21 @@ public class GUID implements Serializable
 		return clone;
 	}
 	
+	/**
+	 * Consistent with equals(), uses the same discriminator values.
+	 */
+	@Override
+	public int hashCode()
+	{
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + (int)(hostDiscriminator ^ (hostDiscriminator >>> 32));
+		result = prime * result + processDiscriminator;
+		result = prime * result + (int)(timeDiscriminator ^ (timeDiscriminator >>> 32));
+		result = prime * result + sequenceDiscriminator;
+		return result;
+	}
+	
 	/**
 	 * GUIDs are considered equal if all discriminiators are equal.
 	 * A GUID created using the one-string arg constructor will always
@@ -1,9 +1,6 @@
 package gov.va.med.imaging;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Proxy;
 import java.util.List;
 import java.util.Map;
 
@@ -13,9 +10,13 @@ import java.util.Map;
  * Set, List and Map instances that synchronize using ReadWriteLock implementations so that 
  * multiple read operations may occur simultaneously.  Write operations must be executed serially
  * with respect to both read and write operations.
- * This class creates proxy instances that provide the correct locking and then delegate to the 
- * underlying Set, List or Map instance.
+ * This class creates wrapper instances that provide the correct locking and then delegate to the 
+ * underlying Set, List or Map instance. These used to be dynamic proxies, the wrappers do the same
+ * locking without a reflective call on every access. The reflective exceptions remain in the
+ * signatures so that existing callers compile unchanged, they are no longer thrown.
  * 
+ * Maps that are read far more often than they are written, and that are replaced as a whole
+ * when they are written, are better served by copyOnWriteMap(), which does not lock on reads.
  * 
  * @author vhaiswbeckec
  * @since 1.0
@@ -23,8 +24,6 @@ import java.util.Map;
  */
 public class ReadWriteLockCollections
 {
-	private static Class<?>[] listInterfaces = new Class[]{ReadWriteLockList.class};
-	
 	/**
 	 * 
 	 * @param target
@@ -36,25 +35,12 @@ public class ReadWriteLockCollections
 	 * @throws InvocationTargetException
 	 * @throws NoSuchMethodException
 	 */
-	@SuppressWarnings("unchecked")
 	public static <T extends Object> ReadWriteLockList<T> readWriteLockList(List<T> target) 
 	throws IllegalArgumentException, SecurityException, InstantiationException, IllegalAccessException, InvocationTargetException, NoSuchMethodException
 	{
-		InvocationHandler handler = new ListReadWriteLockProxyHandler<T>(target);
-		
-	    Class<?> proxyClass = Proxy.getProxyClass(
-	      ReadWriteLockCollections.class.getClassLoader(), 
-	      listInterfaces
-	    );
-	    
-	    Constructor<?> proxyConstructor = proxyClass.getConstructor(new Class[] { InvocationHandler.class });
-	    ReadWriteLockList<T> lockList = (ReadWriteLockList<T>) proxyConstructor.newInstance( new Object[] { handler } );
-	     
-	    return lockList;
+		return new ReadWriteLockListWrapper<T>(target);
 	}
 
-	private static Class<?>[] mapInterfaces = new Class[]{ReadWriteLockMap.class};
-	
 	/**
 	 * 
 	 * @param target
@@ -66,20 +52,19 @@ public class ReadWriteLockCollections
 	 * @throws InvocationTargetException
 	 * @throws NoSuchMethodException
 	 */
-	@SuppressWarnings("unchecked")
 	public static <K extends Object, V extends Object> ReadWriteLockMap<K, V> readWriteLockMap(Map<K, V> target) 
 	throws IllegalArgumentException, SecurityException, InstantiationException, IllegalAccessException, InvocationTargetException, NoSuchMethodException
 	{
-		InvocationHandler handler = new MapReadWriteLockProxyHandler<K,V>(target);
-		
-	    Class<?> proxyClass = Proxy.getProxyClass(
-	      ReadWriteLockCollections.class.getClassLoader(), 
-	      mapInterfaces 
-	    );
-	    
-	    Constructor<?> proxyConstructor = proxyClass.getConstructor(new Class[] { InvocationHandler.class }); 
-	    ReadWriteLockMap<K,V> lockMap = (ReadWriteLockMap<K,V>) proxyConstructor.newInstance(new Object[] { handler });
-	     
-	    return lockMap;
+		return new ReadWriteLockMapWrapper<K, V>(target);
+	}
+	
+	/**
+	 * 
+	 * @param initialContent - copied into the map, may be empty but not null
+	 * @return a copy on write map that does not lock on reads
+	 */
+	public static <K extends Object, V extends Object> ReadWriteLockMap<K, V> copyOnWriteMap(Map<K, V> initialContent)
+	{
+		return new CopyOnWriteMap<K, V>(initialContent);
 	}
 }
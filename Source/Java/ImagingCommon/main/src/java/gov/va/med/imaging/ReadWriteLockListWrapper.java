@@ -191,7 +191,7 @@ implements ReadWriteLockList<E>
 	{
 		try
 		{
-			readWriteLock.writeLock().lock();
+			readWriteLock.readLock().lock();
 			return wrappedList.get(index);
 		}
 		catch(RuntimeException rX)
@@ -200,7 +200,7 @@ implements ReadWriteLockList<E>
 		}
 		finally
 		{
-			readWriteLock.writeLock().unlock();
+			readWriteLock.readLock().unlock();
 		}
 	}
 
@@ -381,7 +381,7 @@ implements ReadWriteLockList<E>
 	{
 		try
 		{
-			readWriteLock.writeLock().lock();
+			readWriteLock.readLock().lock();
 			return wrappedList.toArray();
 		}
 		catch(RuntimeException rX)
@@ -390,7 +390,7 @@ implements ReadWriteLockList<E>
 		}
 		finally
 		{
-			readWriteLock.writeLock().unlock();
+			readWriteLock.readLock().unlock();
 		}
 	}
 
@@ -399,7 +399,7 @@ implements ReadWriteLockList<E>
 	{
 		try
 		{
-			readWriteLock.writeLock().lock();
+			readWriteLock.readLock().lock();
 			return wrappedList.toArray(a);
 		}
 		catch(RuntimeException rX)
@@ -408,7 +408,7 @@ implements ReadWriteLockList<E>
 		}
 		finally
 		{
-			readWriteLock.writeLock().unlock();
+			readWriteLock.readLock().unlock();
 		}
 	}
 	
@@ -448,7 +448,8 @@ implements ReadWriteLockList<E>
 		ListReadWriteLockIterator(ReadWriteLockListWrapper<E> list, int initialIndex)
 		{
 			this.list = list;
-			this.wrappedIterator = this.list.listIterator(initialIndex);
+			// the wrapped list's iterator, asking the wrapper would recurse
+			this.wrappedIterator = this.list.wrappedList.listIterator(initialIndex);
 		}
 		
 		public void add(E o)
@@ -591,7 +592,7 @@ implements ReadWriteLockList<E>
 		{
 			try
 			{
-				list.readWriteLock.readLock().lock();
+				list.readWriteLock.writeLock().lock();
 				wrappedIterator.set(o);
 			}
 			catch(RuntimeException rX)
@@ -600,7 +601,7 @@ implements ReadWriteLockList<E>
 			}
 			finally
 			{
-				list.readWriteLock.readLock().unlock();
+				list.readWriteLock.writeLock().unlock();
 			}
 		}
 		
@@ -0,0 +1,249 @@
+package gov.va.med.imaging;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A Map that guards a wrapped Map with a ReadWriteLock, so that multiple read
+ * operations may occur simultaneously while writes are serialized with respect to
+ * both reads and writes.
+ * This replaces the dynamic proxy that ReadWriteLockCollections used to build around
+ * MapReadWriteLockProxyHandler, which paid for a reflective invocation and an
+ * enum lookup by method name on every call. The locking of each method is the same
+ * as the proxy's was.
+ * As with the proxy, the key set, values and entry set views are those of the 
+ * wrapped map and are not themselves guarded by the lock.
+ * 
+ * @author vhaiswwerfej
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class ReadWriteLockMapWrapper<K, V> 
+implements ReadWriteLockMap<K, V>
+{
+	private final Map<K, V> wrappedMap;
+	private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+	
+	ReadWriteLockMapWrapper(Map<K, V> wrappedMap)
+	{
+		this.wrappedMap = wrappedMap;
+	}
+
+	public void clear()
+	{
+		readWriteLock.writeLock().lock();
+		try
+		{
+			wrappedMap.clear();
+		}
+		finally
+		{
+			readWriteLock.writeLock().unlock();
+		}
+	}
+
+	public void clearAndPutAll(Map<K, V> map)
+	{
+		readWriteLock.writeLock().lock();
+		try
+		{
+			wrappedMap.clear();
+			wrappedMap.putAll(map);
+		}
+		finally
+		{
+			readWriteLock.writeLock().unlock();
+		}
+	}
+
+	public boolean containsKey(Object key)
+	{
+		readWriteLock.readLock().lock();
+		try
+		{
+			return wrappedMap.containsKey(key);
+		}
+		finally
+		{
+			readWriteLock.readLock().unlock();
+		}
+	}
+
+	public boolean containsValue(Object value)
+	{
+		readWriteLock.readLock().lock();
+		try
+		{
+			return wrappedMap.containsValue(value);
+		}
+		finally
+		{
+			readWriteLock.readLock().unlock();
+		}
+	}
+
+	public Set<Map.Entry<K, V>> entrySet()
+	{
+		readWriteLock.readLock().lock();
+		try
+		{
+			return wrappedMap.entrySet();
+		}
+		finally
+		{
+			readWriteLock.readLock().unlock();
+		}
+	}
+
+	public V get(Object key)
+	{
+		readWriteLock.readLock().lock();
+		try
+		{
+			return wrappedMap.get(key);
+		}
+		finally
+		{
+			readWriteLock.readLock().unlock();
+		}
+	}
+
+	public boolean isEmpty()
+	{
+		readWriteLock.readLock().lock();
+		try
+		{
+			return wrappedMap.isEmpty();
+		}
+		finally
+		{
+			readWriteLock.readLock().unlock();
+		}
+	}
+
+	public Set<K> keySet()
+	{
+		readWriteLock.readLock().lock();
+		try
+		{
+			return wrappedMap.keySet();
+		}
+		finally
+		{
+			readWriteLock.readLock().unlock();
+		}
+	}
+
+	public V put(K key, V value)
+	{
+		readWriteLock.writeLock().lock();
+		try
+		{
+			return wrappedMap.put(key, value);
+		}
+		finally
+		{
+			readWriteLock.writeLock().unlock();
+		}
+	}
+
+	public void putAll(Map<? extends K, ? extends V> map)
+	{
+		readWriteLock.writeLock().lock();
+		try
+		{
+			wrappedMap.putAll(map);
+		}
+		finally
+		{
+			readWriteLock.writeLock().unlock();
+		}
+	}
+
+	public V remove(Object key)
+	{
+		readWriteLock.writeLock().lock();
+		try
+		{
+			return wrappedMap.remove(key);
+		}
+		finally
+		{
+			readWriteLock.writeLock().unlock();
+		}
+	}
+
+	public int size()
+	{
+		readWriteLock.readLock().lock();
+		try
+		{
+			return wrappedMap.size();
+		}
+		finally
+		{
+			readWriteLock.readLock().unlock();
+		}
+	}
+
+	public Collection<V> values()
+	{
+		readWriteLock.readLock().lock();
+		try
+		{
+			return wrappedMap.values();
+		}
+		finally
+		{
+			readWriteLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if(obj == this)
+			return true;
+		readWriteLock.readLock().lock();
+		try
+		{
+			return wrappedMap.equals(obj);
+		}
+		finally
+		{
+			readWriteLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int hashCode()
+	{
+		readWriteLock.readLock().lock();
+		try
+		{
+			return wrappedMap.hashCode();
+		}
+		finally
+		{
+			readWriteLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		readWriteLock.readLock().lock();
+		try
+		{
+			return wrappedMap.toString();
+		}
+		finally
+		{
+			readWriteLock.readLock().unlock();
+		}
+	}
+}
@@ -4,8 +4,8 @@
 package gov.va.med.imaging.channels;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author VHAISWBECKEC
@@ -13,7 +13,8 @@ import java.util.Map;
  */
 public abstract class AbstractBytePump
 {
-	static Map<PumpClass, BUFFER_SIZE> nameToBufferSizeMap = new HashMap<PumpClass, BUFFER_SIZE>();
+	// read on every transfer by every pump, so it must not be a point of contention
+	static ConcurrentMap<PumpClass, BUFFER_SIZE> nameToBufferSizeMap = new ConcurrentHashMap<PumpClass, BUFFER_SIZE>();
 	
 	static int avgThresholdPercent = 75;
 	static int maxThresholdPercent = 90;
@@ -119,15 +120,11 @@ public abstract class AbstractBytePump
 	
 	protected static BUFFER_SIZE getBufferSize(PumpClass pumpClass)
 	{
-		BUFFER_SIZE bufferSize;
-		synchronized(nameToBufferSizeMap)
+		BUFFER_SIZE bufferSize = nameToBufferSizeMap.get(pumpClass);
+		if(bufferSize == null)
 		{
-			bufferSize = nameToBufferSizeMap.get(pumpClass);
-			if(bufferSize == null)
-			{
-				nameToBufferSizeMap.put(pumpClass, BUFFER_SIZE.defaultBufferSize);
-				bufferSize = BUFFER_SIZE.defaultBufferSize;
-			}
+			BUFFER_SIZE existing = nameToBufferSizeMap.putIfAbsent(pumpClass, BUFFER_SIZE.defaultBufferSize);
+			bufferSize = existing == null ? BUFFER_SIZE.defaultBufferSize : existing;
 		}
 		return bufferSize;
 	}
@@ -193,10 +190,7 @@ public abstract class AbstractBytePump
 				targetBufferSize = currentBufferSize.nextLarger();
 			
 			if(targetBufferSize != null)
-				synchronized(nameToBufferSizeMap)
-				{
-					nameToBufferSizeMap.put(pumpClass, targetBufferSize);
-				}
+				nameToBufferSizeMap.put(pumpClass, targetBufferSize);
 		}
 	}
 }
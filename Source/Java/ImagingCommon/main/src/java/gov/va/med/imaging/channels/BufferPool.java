@@ -0,0 +1,589 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.channels;
+
+import gov.va.med.imaging.ImagingMBean;
+import gov.va.med.imaging.channels.AbstractBytePump.BUFFER_SIZE;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A pool of transfer buffers, organized by the BUFFER_SIZE size classes that the
+ * byte pumps tune themselves to.
+ * 
+ * Each thread keeps at most one buffer of each size class (up to a configurable
+ * largest size class) in a thread local cache, which is where a pump that runs one
+ * transfer at a time on a request thread finds its buffer again without touching any
+ * shared state. Buffers released when the thread's slot is already occupied go to a
+ * lock-free shared overflow queue per size class, bounded by the high water mark;
+ * anything released beyond that is left to the garbage collector.
+ * 
+ * Buffers that sit in the shared overflow through a whole trim interval without being
+ * asked for are idle and are released on the next trim. A thread cache that is not used 
+ * through a whole trim interval is emptied into the shared overflow, so that the buffers
+ * of request threads that have gone idle are trimmed with the rest rather than being held 
+ * for as long as the thread lives. Trims happen as a side effect of releasing a buffer 
+ * once the interval has elapsed, or on demand through JMX.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public abstract class BufferPool<T>
+implements BufferPoolMBean
+{
+	public final static int DEFAULT_HIGH_WATER_MARK = 32;
+	public final static long DEFAULT_TRIM_INTERVAL = 60000L;
+	// a thread that pumps images holds at most one of each of these,
+	// larger buffers are only ever pooled in the shared overflow
+	public final static BUFFER_SIZE DEFAULT_THREAD_CACHE_LIMIT = BUFFER_SIZE.SixtyFourK;
+	
+	private final static Logger logger = Logger.getLogger(BufferPool.class);
+	private final static BUFFER_SIZE[] sizeClasses = BUFFER_SIZE.values();
+	
+	// created eagerly, the pumps get these on every transfer and a synchronized
+	// lazy getter would put back the monitor that the pool is here to remove
+	private final static BufferPool<byte[]> byteArrayPool = registerMBeanServer(
+		new ByteArrayBufferPool("ByteArray", DEFAULT_HIGH_WATER_MARK, DEFAULT_THREAD_CACHE_LIMIT, DEFAULT_TRIM_INTERVAL) );
+	private final static BufferPool<ByteBuffer> directByteBufferPool = registerMBeanServer(
+		new DirectByteBufferPool("DirectByteBuffer", DEFAULT_HIGH_WATER_MARK, DEFAULT_THREAD_CACHE_LIMIT, DEFAULT_TRIM_INTERVAL) );
+	
+	/**
+	 * @return the pool of byte arrays used by the stream pumps
+	 */
+	public static BufferPool<byte[]> getByteArrayPool()
+	{
+		return byteArrayPool;
+	}
+	
+	/**
+	 * @return the pool of direct ByteBuffer used by the channel pumps
+	 */
+	public static BufferPool<ByteBuffer> getDirectByteBufferPool()
+	{
+		return directByteBufferPool;
+	}
+	
+	private static <T> BufferPool<T> registerMBeanServer(BufferPool<T> pool)
+	{
+		logger.info("Registering buffer pool '" + pool.getName() + "' with JMX");
+		try
+		{
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			Hashtable<String, String> mBeanProperties = new Hashtable<String, String>();
+			mBeanProperties.put( "type", "BufferPool" );
+			mBeanProperties.put( "name", pool.getName() );
+			mBeanServer.registerMBean(pool, new ObjectName(ImagingMBean.VIX_MBEAN_DOMAIN_NAME, mBeanProperties));
+		}
+		catch(Exception ex)
+		{
+			logger.error("Error registering buffer pool '" + pool.getName() + "' with JMX", ex);
+		}
+		return pool;
+	}
+	
+	/**
+	 * @param capacity
+	 * @return the size class of a buffer with exactly the given capacity, or null if
+	 * the capacity is not one of the BUFFER_SIZE values
+	 */
+	static BUFFER_SIZE getSizeClass(int capacity)
+	{
+		for(BUFFER_SIZE sizeClass : sizeClasses)
+			if(sizeClass.getSize() == capacity)
+				return sizeClass;
+		return null;
+	}
+	
+	// ============================================================================================================
+	// Instance Fields and Methods
+	// ============================================================================================================
+	private final String name;
+	private final int threadCacheLimit;
+	private final SharedPool<T>[] sharedPools;
+	// every thread cache, so that a trim can empty the caches of idle threads, 
+	// the caches of threads that have ended are dropped by the next trim
+	private final Queue<WeakReference<ThreadCache>> allThreadCaches = new ConcurrentLinkedQueue<WeakReference<ThreadCache>>();
+	private final ThreadLocal<ThreadCache> threadCaches = new ThreadLocal<ThreadCache>()
+	{
+		@Override
+		protected ThreadCache initialValue()
+		{
+			ThreadCache threadCache = new ThreadCache(threadCacheLimit + 1);
+			allThreadCaches.offer(new WeakReference<ThreadCache>(threadCache));
+			return threadCache;
+		}
+	};
+	
+	private volatile int highWaterMark;
+	private volatile long trimInterval;
+	private final AtomicLong lastTrim = new AtomicLong(System.currentTimeMillis());
+	
+	private final AtomicLong allocations = new AtomicLong(0L);
+	private final AtomicLong threadCacheHits = new AtomicLong(0L);
+	private final AtomicLong threadCacheMisses = new AtomicLong(0L);
+	private final AtomicLong poolHits = new AtomicLong(0L);
+	private final AtomicLong poolMisses = new AtomicLong(0L);
+	private final AtomicLong discards = new AtomicLong(0L);
+	private final AtomicLong trimmed = new AtomicLong(0L);
+	
+	/**
+	 * 
+	 * @param name - the JMX name of the pool
+	 * @param highWaterMark - the most buffers of each size class kept in the shared overflow
+	 * @param threadCacheLimit - the largest size class kept in the thread local caches,
+	 * null to disable the thread local caches
+	 * @param trimInterval - milliseconds a shared buffer may sit unused before it is released
+	 */
+	@SuppressWarnings("unchecked")
+	protected BufferPool(String name, int highWaterMark, BUFFER_SIZE threadCacheLimit, long trimInterval)
+	{
+		this.name = name;
+		this.highWaterMark = highWaterMark;
+		this.threadCacheLimit = threadCacheLimit == null ? -1 : threadCacheLimit.ordinal();
+		this.trimInterval = trimInterval;
+		this.sharedPools = new SharedPool[sizeClasses.length];
+		for(int index = 0; index < sizeClasses.length; ++index)
+			this.sharedPools[index] = new SharedPool<T>();
+	}
+	
+	/**
+	 * Create a new, empty, buffer of the given capacity.
+	 */
+	protected abstract T allocate(int capacity);
+	
+	/**
+	 * @return the capacity of the buffer
+	 */
+	protected abstract int capacity(T buffer);
+	
+	/**
+	 * Prepare a pooled buffer for reuse, the default does nothing.
+	 */
+	protected T reset(T buffer)
+	{
+		return buffer;
+	}
+	
+	@Override
+	public String getName()
+	{
+		return this.name;
+	}
+	
+	/**
+	 * Get a buffer of the given size class, from the calling thread's cache if it has one,
+	 * else from the shared overflow, else newly allocated.
+	 * 
+	 * @param bufferSize
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public T getBuffer(BUFFER_SIZE bufferSize)
+	{
+		int index = bufferSize.ordinal();
+		if(index <= threadCacheLimit)
+		{
+			T buffer = (T)threadCaches.get().take(index);
+			if(buffer != null)
+			{
+				threadCacheHits.incrementAndGet();
+				return reset(buffer);
+			}
+			threadCacheMisses.incrementAndGet();
+		}
+		
+		SharedPool<T> sharedPool = sharedPools[index];
+		T buffer = sharedPool.poll();
+		if(buffer != null)
+		{
+			poolHits.incrementAndGet();
+			return reset(buffer);
+		}
+		
+		poolMisses.incrementAndGet();
+		allocations.incrementAndGet();
+		return allocate(bufferSize.getSize());
+	}
+	
+	/**
+	 * Return a buffer to the pool. Buffers whose capacity is not one of the BUFFER_SIZE
+	 * values, or that would take the shared overflow over the high water mark, are dropped.
+	 * 
+	 * @param buffer
+	 */
+	public void release(T buffer)
+	{
+		if(buffer == null)
+			return;
+		
+		BUFFER_SIZE sizeClass = getSizeClass(capacity(buffer));
+		if(sizeClass == null)
+		{
+			discards.incrementAndGet();
+			return;
+		}
+		
+		int index = sizeClass.ordinal();
+		if(index > threadCacheLimit || ! threadCaches.get().put(index, buffer))
+		{
+			if(! sharedPools[index].offer(buffer, highWaterMark))
+				discards.incrementAndGet();
+		}
+		
+		trimIfDue();
+	}
+	
+	private void trimIfDue()
+	{
+		long now = System.currentTimeMillis();
+		long last = lastTrim.get();
+		if(now - last >= trimInterval && lastTrim.compareAndSet(last, now))
+			trim();
+	}
+	
+	/**
+	 * Move the buffers of the thread caches that have not been used since the last trim
+	 * to the shared overflow, then release the shared buffers that have not been asked 
+	 * for since the last trim. A buffer moved from a thread cache is released by the next
+	 * trim if it is still not asked for.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public void trim()
+	{
+		lastTrim.set(System.currentTimeMillis());
+		for(Iterator<WeakReference<ThreadCache>> iter = allThreadCaches.iterator(); iter.hasNext(); )
+		{
+			ThreadCache threadCache = iter.next().get();
+			if(threadCache == null)
+				iter.remove();
+			else if(! threadCache.clearUsed())
+				for(int index = 0; index <= threadCacheLimit; ++index)
+				{
+					T buffer = (T)threadCache.remove(index);
+					if(buffer != null && ! sharedPools[index].offer(buffer, highWaterMark))
+						trimmed.incrementAndGet();
+				}
+		}
+		for(SharedPool<T> sharedPool : sharedPools)
+			trimmed.addAndGet(sharedPool.trim());
+	}
+	
+	@Override
+	public long getAllocations()
+	{
+		return allocations.get();
+	}
+
+	@Override
+	public long getReuses()
+	{
+		return threadCacheHits.get() + poolHits.get();
+	}
+
+	@Override
+	public long getThreadCacheHits()
+	{
+		return threadCacheHits.get();
+	}
+
+	@Override
+	public long getThreadCacheMisses()
+	{
+		return threadCacheMisses.get();
+	}
+
+	@Override
+	public long getPoolMisses()
+	{
+		return poolMisses.get();
+	}
+
+	@Override
+	public long getDiscards()
+	{
+		return discards.get();
+	}
+
+	@Override
+	public long getTrimmed()
+	{
+		return trimmed.get();
+	}
+
+	@Override
+	public int getPooledBufferCount()
+	{
+		int count = 0;
+		for(SharedPool<T> sharedPool : sharedPools)
+			count += sharedPool.size();
+		return count;
+	}
+
+	@Override
+	public int getThreadCachedBufferCount()
+	{
+		int count = 0;
+		for(WeakReference<ThreadCache> reference : allThreadCaches)
+		{
+			ThreadCache threadCache = reference.get();
+			if(threadCache != null)
+				count += threadCache.size();
+		}
+		return count;
+	}
+
+	@Override
+	public long getPooledBytes()
+	{
+		long bytes = 0L;
+		for(int index = 0; index < sizeClasses.length; ++index)
+			bytes += (long)sharedPools[index].size() * sizeClasses[index].getSize();
+		return bytes;
+	}
+
+	@Override
+	public int getHighWaterMark()
+	{
+		return this.highWaterMark;
+	}
+
+	@Override
+	public void setHighWaterMark(int highWaterMark)
+	{
+		this.highWaterMark = highWaterMark;
+	}
+
+	@Override
+	public long getTrimInterval()
+	{
+		return this.trimInterval;
+	}
+
+	@Override
+	public void setTrimInterval(long trimInterval)
+	{
+		this.trimInterval = trimInterval;
+	}
+
+	@Override
+	public void resetStatistics()
+	{
+		allocations.set(0L);
+		threadCacheHits.set(0L);
+		threadCacheMisses.set(0L);
+		poolHits.set(0L);
+		poolMisses.set(0L);
+		discards.set(0L);
+		trimmed.set(0L);
+	}
+	
+	/**
+	 * The cache of one thread, at most one buffer of each size class. Only its thread puts
+	 * buffers into it, a trim on another thread may take them out. used is set whenever
+	 * the thread uses its cache and cleared by each trim, a cache that is still clear at
+	 * the next trim has been idle for the whole interval.
+	 */
+	private static class ThreadCache
+	{
+		private final AtomicReferenceArray<Object> slots;
+		private volatile boolean used = false;
+		
+		ThreadCache(int length)
+		{
+			this.slots = new AtomicReferenceArray<Object>(length);
+		}
+		
+		Object take(int index)
+		{
+			markUsed();
+			return slots.getAndSet(index, null);
+		}
+		
+		/**
+		 * Take a buffer out for a trim, which does not count as a use.
+		 */
+		Object remove(int index)
+		{
+			return slots.getAndSet(index, null);
+		}
+		
+		boolean put(int index, Object buffer)
+		{
+			markUsed();
+			return slots.compareAndSet(index, null, buffer);
+		}
+		
+		private void markUsed()
+		{
+			if(! used)
+				used = true;
+		}
+		
+		/**
+		 * @return true if the cache was used since the last call
+		 */
+		boolean clearUsed()
+		{
+			boolean wasUsed = used;
+			used = false;
+			return wasUsed;
+		}
+		
+		int size()
+		{
+			int size = 0;
+			for(int index = 0; index < slots.length(); ++index)
+				if(slots.get(index) != null)
+					size++;
+			return size;
+		}
+	}
+	
+	/**
+	 * The shared overflow of one size class.
+	 * The count is kept separately from the queue because ConcurrentLinkedQueue.size()
+	 * walks the queue. idleLowWater is the fewest buffers the queue held since the last 
+	 * trim, that many buffers were never asked for in the interval. It is updated without
+	 * synchronization and so is approximate, which is all a trim needs.
+	 */
+	private static class SharedPool<T>
+	{
+		private final Queue<T> queue = new ConcurrentLinkedQueue<T>();
+		private final AtomicInteger count = new AtomicInteger(0);
+		private volatile int idleLowWater = 0;
+		
+		T poll()
+		{
+			T buffer = queue.poll();
+			if(buffer != null)
+			{
+				int remaining = count.decrementAndGet();
+				if(remaining < idleLowWater)
+					idleLowWater = remaining;
+			}
+			return buffer;
+		}
+		
+		boolean offer(T buffer, int highWaterMark)
+		{
+			if(count.incrementAndGet() > highWaterMark)
+			{
+				count.decrementAndGet();
+				return false;
+			}
+			queue.offer(buffer);
+			return true;
+		}
+		
+		int size()
+		{
+			return count.get();
+		}
+		
+		int trim()
+		{
+			int released = 0;
+			for(int idle = idleLowWater; released < idle && queue.poll() != null; ++released)
+				count.decrementAndGet();
+			idleLowWater = count.get();
+			return released;
+		}
+	}
+	
+	// ============================================================================================================
+	// Pool Implementations
+	// ============================================================================================================
+	/**
+	 * A pool of heap byte arrays, used by ByteStreamPump.
+	 */
+	public static class ByteArrayBufferPool
+	extends BufferPool<byte[]>
+	{
+		public ByteArrayBufferPool(String name, int highWaterMark, BUFFER_SIZE threadCacheLimit, long trimInterval)
+		{
+			super(name, highWaterMark, threadCacheLimit, trimInterval);
+		}
+
+		@Override
+		protected byte[] allocate(int capacity)
+		{
+			return new byte[capacity];
+		}
+
+		@Override
+		protected int capacity(byte[] buffer)
+		{
+			return buffer.length;
+		}
+	}
+	
+	/**
+	 * A pool of direct ByteBuffer, used by ByteChannelPump.
+	 * Direct buffers are expensive to allocate and are only freed when the garbage
+	 * collector gets to them, which is where pooling pays off the most.
+	 */
+	public static class DirectByteBufferPool
+	extends BufferPool<ByteBuffer>
+	{
+		public DirectByteBufferPool(String name, int highWaterMark, BUFFER_SIZE threadCacheLimit, long trimInterval)
+		{
+			super(name, highWaterMark, threadCacheLimit, trimInterval);
+		}
+
+		@Override
+		protected ByteBuffer allocate(int capacity)
+		{
+			return ByteBuffer.allocateDirect(capacity);
+		}
+
+		@Override
+		protected int capacity(ByteBuffer buffer)
+		{
+			return buffer.capacity();
+		}
+
+		@Override
+		protected ByteBuffer reset(ByteBuffer buffer)
+		{
+			buffer.clear();
+			return buffer;
+		}
+	}
+}
@@ -0,0 +1,62 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.channels;
+
+/**
+ * JMX view of a BufferPool.
+ * A "thread cache miss" is a request of a thread cached size class that the calling 
+ * thread's own cache could not satisfy, so the shared overflow was consulted; a "pool miss" 
+ * is a request that the shared overflow could not satisfy, so a new buffer was allocated. 
+ * Reuses counts the requests served from either tier. The pooled buffer count and bytes are those of the shared overflow, the
+ * thread cached buffer count is of the buffers held in thread caches.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public interface BufferPoolMBean
+{
+	public String getName();
+	
+	public long getAllocations();
+	public long getReuses();
+	public long getThreadCacheHits();
+	public long getThreadCacheMisses();
+	public long getPoolMisses();
+	public long getDiscards();
+	public long getTrimmed();
+	
+	public int getPooledBufferCount();
+	public int getThreadCachedBufferCount();
+	public long getPooledBytes();
+	
+	public int getHighWaterMark();
+	public void setHighWaterMark(int highWaterMark);
+	
+	public long getTrimInterval();
+	public void setTrimInterval(long trimInterval);
+	
+	public void trim();
+	public void resetStatistics();
+}
@@ -8,8 +8,6 @@ import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.WritableByteChannel;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * A class that is used to push bytes from an input stream to an output stream.
@@ -59,23 +57,9 @@ extends AbstractBytePump
 	// =================================================================================================
 	// Buffer Pool Management
 	// =================================================================================================
-	private static List<ByteBuffer> bufferPool = new ArrayList<ByteBuffer>();
-	
 	private static ByteBuffer getBuffer(BUFFER_SIZE bufferSize)
 	{
-		int desiredCapacity = bufferSize.getSize();
-		synchronized(bufferPool)
-		{
-			for(ByteBuffer buffer : bufferPool)
-			{
-				if(buffer.capacity() == desiredCapacity)
-				{
-					bufferPool.remove(buffer);
-					return buffer;
-				}
-			}
-			return ByteBuffer.allocateDirect(desiredCapacity);
-		}
+		return BufferPool.getDirectByteBufferPool().getBuffer(bufferSize);
 	}
 	
 	private static ByteBuffer getBuffer(String name)
@@ -94,10 +78,7 @@ extends AbstractBytePump
 			int totalBytesRead, int readCount,
 			long elapsedTime)
 	{
-		synchronized(bufferPool)
-		{
-			bufferPool.add(buffer);
-		}
+		BufferPool.getDirectByteBufferPool().release(buffer);
 		
 		if(name != null)
 			adjustBufferUsage(name, MEDIUM.ChannelToChannel, smallestChunkSize, largestChunkSize, totalBytesRead, readCount, elapsedTime);
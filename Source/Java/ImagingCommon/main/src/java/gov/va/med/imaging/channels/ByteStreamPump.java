@@ -3,11 +3,9 @@
  */
 package gov.va.med.imaging.channels;
 
-import java.util.List;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.ArrayList;
 
 /**
  * A class that is used to push bytes from an input stream to an output stream.
@@ -34,23 +32,9 @@ extends AbstractBytePump
 	// =================================================================================================
 	// Buffer Pool Management
 	// =================================================================================================
-	private static List<byte[]> bufferPool = new ArrayList<byte[]>();
-	
 	private static byte[] getBuffer(BUFFER_SIZE bufferSize)
 	{
-		int size = bufferSize.getSize();
-		synchronized(bufferPool)
-		{
-			for(byte[] buffer : bufferPool)
-			{
-				if(buffer.length == size)
-				{
-					bufferPool.remove(buffer);
-					return buffer;
-				}
-			}
-			return new byte[size];
-		}
+		return BufferPool.getByteArrayPool().getBuffer(bufferSize);
 	}
 	
 	private static byte[] getBuffer(String name)
@@ -69,10 +53,7 @@ extends AbstractBytePump
 			int totalBytesRead, int readCount,
 			long elapsedTime)
 	{
-		synchronized(bufferPool)
-		{
-			bufferPool.add(buffer);
-		}
+		BufferPool.getByteArrayPool().release(buffer);
 		
 		if(name != null)
 			adjustBufferUsage(name, MEDIUM.StreamToStream, smallestChunkSize, largestChunkSize, totalBytesRead, readCount, elapsedTime);
@@ -42,6 +42,24 @@ public class ChecksumFactory
 		// for them in java.util.zip anyway.  Having them here just makes it clearer to read.
 		addNameChecksumMapping("Adler32", java.util.zip.Adler32.class);
 		addNameChecksumMapping("CRC32", java.util.zip.CRC32.class);
+		// CRC32C is hardware accelerated on most processors but only exists from Java 9
+		addOptionalNameChecksumMapping("CRC32C", "java.util.zip.CRC32C");
+	}
+	
+	/**
+	 * Add a mapping to a checksum class that may not exist in this JVM.
+	 * 
+	 * @param algorithmName
+	 * @param algorithmClassname
+	 */
+	private void addOptionalNameChecksumMapping(String algorithmName, String algorithmClassname)
+	{
+		try
+		{
+			addNameChecksumMapping(algorithmName, Class.forName(algorithmClassname).asSubclass(Checksum.class));
+		}
+		catch (ClassNotFoundException x){}		// don't do anything, this JVM does not have the class
+		catch (ClassCastException x){}			// don't do anything, we found the class but it does not implement Checksum
 	}
 	
 	/**
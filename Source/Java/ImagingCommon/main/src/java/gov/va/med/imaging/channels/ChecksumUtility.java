@@ -0,0 +1,89 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.channels;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * Static methods for updating a Checksum from a ByteBuffer in bulk rather 
+ * than a byte at a time.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class ChecksumUtility
+{
+	public static final int DEFAULT_SCRATCH_BUFFER_SIZE = 8192;
+	
+	private ChecksumUtility()
+	{
+	}
+	
+	/**
+	 * Update the checksum with length bytes of the buffer starting at position. 
+	 * The position and limit of the buffer are not changed.
+	 * Heap buffers update the checksum directly from the backing array, other buffers
+	 * are copied through the scratch array, which must not be null if the buffer
+	 * does not have an accessible backing array.
+	 * 
+	 * @param checksum
+	 * @param buffer
+	 * @param position
+	 * @param length
+	 * @param scratch
+	 */
+	public static void update(Checksum checksum, ByteBuffer buffer, int position, int length, byte[] scratch)
+	{
+		if(buffer.hasArray())
+		{
+			checksum.update(buffer.array(), buffer.arrayOffset() + position, length);
+			return;
+		}
+		
+		ByteBuffer view = buffer.duplicate();
+		view.limit(position + length);
+		view.position(position);
+		while(view.hasRemaining())
+		{
+			int chunk = Math.min(view.remaining(), scratch.length);
+			view.get(scratch, 0, chunk);
+			checksum.update(scratch, 0, chunk);
+		}
+	}
+	
+	/**
+	 * Update the checksum with the remaining bytes of the buffer.
+	 * The position and limit of the buffer are not changed.
+	 * 
+	 * @param checksum
+	 * @param buffer
+	 * @param scratch
+	 */
+	public static void update(Checksum checksum, ByteBuffer buffer, byte[] scratch)
+	{
+		update(checksum, buffer, buffer.position(), buffer.remaining(), scratch);
+	}
+}
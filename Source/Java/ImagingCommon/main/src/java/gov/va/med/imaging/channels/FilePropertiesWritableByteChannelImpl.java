@@ -147,7 +147,7 @@ implements WritableByteChannel, StorageByteChannelEventObservable, FilePropertie
 			src.get(sampleBuffer, 0, readableBytes);
 			
 			// do the calculations on our byte array
-			getChecksum().update(sampleBuffer, 0, sampleBuffer.length);
+			getChecksum().update(sampleBuffer, 0, readableBytes);
 			
 			// keep a running total of bytes written on this invocation only
 			bytesWrittenThisInvocation += readableBytes;
@@ -0,0 +1,58 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.channels;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Implemented by OutputStream realizations that can take the content of a file
+ * as a file, e.g. to read only part of it.  A writer that has its content in a 
+ * file checks whether its destination stream implements this interface and, if it does,
+ * first offers the file with transferFile(), and only then writes the content through the stream.
+ * 
+ * transferFile() may not be used once anything has been written through the stream.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public interface FileTransferTarget
+{
+	/**
+	 * Offer count bytes of the given file, starting at position, as the entire content 
+	 * to be written to this target.  If accepted, the content has been written by the time
+	 * this method returns.  The target must not defer reading the file (e.g. to a servlet 
+	 * container sendfile), the caller holds the file only until this method returns, a cache 
+	 * may evict it after that.
+	 * 
+	 * @param file
+	 * @param position
+	 * @param count
+	 * @return true if the target has taken the file, false if the caller must write the content
+	 * @throws IOException
+	 */
+	public boolean transferFile(File file, long position, long count)
+	throws IOException;
+}
@@ -73,8 +73,10 @@ implements WritableByteChannel
 		for(int channelIndex=1; channelIndex<writeChannels.length; ++channelIndex)
 			bufferViews[channelIndex] = buffy.duplicate();
 		
+		// a channel may write fewer bytes than are remaining, keep writing until the view is drained
 		for(int channelIndex=0; channelIndex<writeChannels.length; ++channelIndex)
-			writeChannels[channelIndex].write(bufferViews[channelIndex]);
+			while(bufferViews[channelIndex].hasRemaining())
+				writeChannels[channelIndex].write(bufferViews[channelIndex]);
 	}
 	
 	/**
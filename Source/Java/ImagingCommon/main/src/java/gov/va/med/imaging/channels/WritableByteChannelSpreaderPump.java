@@ -84,6 +84,7 @@ public class WritableByteChannelSpreaderPump
 	private ReadableByteChannel inChannel = null;
 	private WritableByteChannel[] outChannels = null;
 	private int bufferSize = DEFAULT_BUFFER_SIZE;
+	private boolean concurrentWrites = true;
 	private FilePropertiesWritableByteChannelImpl typer = null;
 	
 	/**
@@ -221,6 +222,30 @@ public class WritableByteChannelSpreaderPump
 		this.bufferSize = bufferSize;
 	}
 	
+	/**
+	 * 
+	 * @return
+	 */
+	public boolean isConcurrentWrites()
+	{
+		return concurrentWrites;
+	}
+	
+	/**
+	 * If true (the default) each buffer is written to the output channels by
+	 * the WritableByteChannelSpreader worker threads.  If false the buffer is 
+	 * written to each output channel in turn on the calling thread, which is 
+	 * preferable when there are only a couple of output channels (e.g. a cache 
+	 * instance and a client) and many copies may be running at once, since the 
+	 * spreader worker threads are a small shared pool.
+	 * 
+	 * @param concurrentWrites
+	 */
+	public void setConcurrentWrites(boolean concurrentWrites)
+	{
+		this.concurrentWrites = concurrentWrites;
+	}
+	
 	/**
 	 * Return the number of bytes read into the internal buffer.
 	 * When the copy() method returns then this will reliably 
@@ -273,10 +298,50 @@ public class WritableByteChannelSpreaderPump
 	throws IOException
 	{
 		typer = new FilePropertiesWritableByteChannelImpl();
+		if(!isConcurrentWrites())
+			return this.pumpReadableByteChannelToWritableChannels(sourceChannel, destinationChannels, typer);
+		
 		WritableByteChannelSpreader spreader = 
 			new WritableByteChannelSpreader(destinationChannels, typer);
 		return this.pumpReadableByteChannelToWritableChannel(sourceChannel, spreader);
 	}
+	
+	/**
+	 * Pump the read channel to each of the destination channels on the calling thread.
+	 * Any exception writing to any of the destination channels stops the pump, the 
+	 * caller is responsible for deciding what to do with the (partially written) 
+	 * destinations.
+	 * 
+	 * @return the number of bytes moved through from the read channel
+	 * @param readChannel
+	 * @param destinationChannels
+	 * @param sampleChannel
+	 * @throws IOException
+	 */
+	private long pumpReadableByteChannelToWritableChannels(
+		ReadableByteChannel readChannel,
+		WritableByteChannel[] destinationChannels,
+		WritableByteChannel sampleChannel) 
+	throws IOException
+	{
+		long bytesMoved = 0L;
+		
+		ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+		buffer.clear();
+		while (readChannel.read (buffer) >= 0) 
+		{
+			buffer.flip(  );
+			bytesMoved += buffer.remaining();
+			
+			WritableByteChannelSpreader.write(buffer.duplicate(), destinationChannels);
+			while(buffer.hasRemaining())
+				sampleChannel.write(buffer);
+			
+			buffer.clear(  );
+		}
+		
+		return bytesMoved;
+	}
 
 	/**
 	 * @return the number of bytes moved through from the read channel
@@ -295,8 +360,8 @@ public class WritableByteChannelSpreaderPump
 		buffer.clear();
 		while (readChannel.read (buffer) >= 0) 
 		{
-			bytesMoved += buffer.limit();
 			buffer.flip(  );
+			bytesMoved += buffer.remaining();
 			clientChannel.write (buffer);
 			buffer.clear(  );
 		}
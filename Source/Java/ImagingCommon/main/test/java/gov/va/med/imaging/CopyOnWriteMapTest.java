@@ -0,0 +1,151 @@
+package gov.va.med.imaging;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+/**
+ * @author vhaiswwerfej
+ *
+ */
+public class CopyOnWriteMapTest 
+extends TestCase
+{
+	public void testPutGetRemove()
+	{
+		ReadWriteLockMap<String, String> map = ReadWriteLockCollections.copyOnWriteMap(new HashMap<String, String>());
+		assertTrue(map.isEmpty());
+		
+		assertNull(map.put("660", "Salt Lake City"));
+		assertEquals("Salt Lake City", map.put("660", "SLC"));
+		map.put("688", "Washington");
+		assertEquals(2, map.size());
+		assertEquals("SLC", map.get("660"));
+		assertTrue(map.containsKey("688"));
+		assertTrue(map.containsValue("Washington"));
+		
+		assertEquals("SLC", map.remove("660"));
+		assertNull(map.remove("660"));
+		assertEquals(1, map.size());
+		
+		map.clear();
+		assertTrue(map.isEmpty());
+	}
+	
+	public void testInitialContentIsCopied()
+	{
+		Map<String, String> initial = new HashMap<String, String>();
+		initial.put("660", "Salt Lake City");
+		ReadWriteLockMap<String, String> map = ReadWriteLockCollections.copyOnWriteMap(initial);
+		initial.put("688", "Washington");
+		
+		assertEquals(1, map.size());
+		assertNull(map.get("688"));
+	}
+	
+	public void testViewsAreStableSnapshots()
+	{
+		ReadWriteLockMap<String, String> map = new CopyOnWriteMap<String, String>();
+		map.put("660", "Salt Lake City");
+		map.put("688", "Washington");
+		
+		Iterator<String> keys = map.keySet().iterator();
+		map.put("756", "El Paso");
+		map.remove("660");
+		
+		int count = 0;
+		while(keys.hasNext())
+		{
+			keys.next();
+			count++;
+		}
+		assertEquals(2, count);
+		assertEquals(2, map.keySet().size());
+		assertTrue(map.keySet().contains("756"));
+	}
+	
+	public void testViewsAreReadOnly()
+	{
+		ReadWriteLockMap<String, String> map = new CopyOnWriteMap<String, String>();
+		map.put("660", "Salt Lake City");
+		try
+		{
+			map.values().clear();
+			fail("values() of a copy on write map must be read only");
+		}
+		catch(UnsupportedOperationException uoX)
+		{
+			assertEquals(1, map.size());
+		}
+	}
+	
+	public void testClearAndPutAll()
+	{
+		ReadWriteLockMap<String, String> map = new CopyOnWriteMap<String, String>();
+		map.put("660", "Salt Lake City");
+		
+		Map<String, String> replacement = new HashMap<String, String>();
+		replacement.put("688", "Washington");
+		replacement.put("756", "El Paso");
+		map.clearAndPutAll(replacement);
+		
+		assertEquals(2, map.size());
+		assertNull(map.get("660"));
+		assertEquals(replacement, map);
+		assertEquals(replacement.hashCode(), map.hashCode());
+	}
+	
+	/**
+	 * Readers must see either all of one generation of the map or all of the next,
+	 * never a partly cleared or partly filled map.
+	 */
+	public void testReadersNeverSeePartialReplacement() 
+	throws InterruptedException
+	{
+		final int entries = 100;
+		final ReadWriteLockMap<String, Integer> map = new CopyOnWriteMap<String, Integer>(generation(0, entries));
+		final AtomicReference<String> failure = new AtomicReference<String>();
+		final long endTime = System.currentTimeMillis() + 500L;
+		
+		Thread[] readers = new Thread[4];
+		for(int index = 0; index < readers.length; ++index)
+		{
+			readers[index] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					while(System.currentTimeMillis() < endTime && failure.get() == null)
+					{
+						Map<String, Integer> snapshot = new HashMap<String, Integer>(map);
+						if(snapshot.size() != entries)
+							failure.compareAndSet(null, "saw " + snapshot.size() + " entries");
+						else if(! snapshot.containsKey("0") || ! snapshot.containsKey(Integer.toString(entries - 1)))
+							failure.compareAndSet(null, "saw a map without its first or last entry");
+						else if(! snapshot.get("0").equals(snapshot.get(Integer.toString(entries - 1))))
+							failure.compareAndSet(null, "saw entries from two generations");
+					}
+				}
+			};
+			readers[index].start();
+		}
+		
+		for(int generation = 1; System.currentTimeMillis() < endTime; ++generation)
+			map.clearAndPutAll(generation(generation, entries));
+		
+		for(Thread reader : readers)
+			reader.join();
+		assertNull(failure.get(), failure.get());
+	}
+	
+	private static Map<String, Integer> generation(int generation, int entries)
+	{
+		Map<String, Integer> map = new HashMap<String, Integer>();
+		for(int index = 0; index < entries; ++index)
+			map.put(Integer.toString(index), Integer.valueOf(generation));
+		return map;
+	}
+}
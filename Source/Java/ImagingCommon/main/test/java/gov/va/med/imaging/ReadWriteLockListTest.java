@@ -6,6 +6,7 @@ package gov.va.med.imaging;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.ListIterator;
 
 import junit.framework.TestCase;
 
@@ -121,6 +122,35 @@ extends TestCase
 	}
 
 
+	/**
+	 * @throws NoSuchMethodException 
+	 * @throws InvocationTargetException 
+	 * @throws IllegalAccessException 
+	 * @throws InstantiationException 
+	 * @throws SecurityException 
+	 * @throws IllegalArgumentException 
+	 */
+	public void testIterator() 
+	throws IllegalArgumentException, SecurityException, InstantiationException, IllegalAccessException, InvocationTargetException, NoSuchMethodException
+	{
+		List<String> list = createList();
+		list.add("a");
+		list.add("b");
+		list.add("c");
+		
+		StringBuilder sb = new StringBuilder();
+		for(String element : list)
+			sb.append(element);
+		assertEquals("abc", sb.toString());
+		
+		ListIterator<String> iterator = list.listIterator(1);
+		assertEquals("b", iterator.next());
+		iterator.set("B");
+		iterator.remove();
+		assertEquals(2, list.size());
+		assertEquals("c", list.get(1));
+	}
+
 	/**
 	 * @throws NoSuchMethodException 
 	 * @throws InvocationTargetException 
@@ -0,0 +1,162 @@
+package gov.va.med.imaging;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compares the lookup latency of a site map sized Map behind the dynamic proxy that
+ * ReadWriteLockCollections used to return, the ReadWriteLockMapWrapper that replaced
+ * it, a CopyOnWriteMap and a plain ConcurrentHashMap, from one thread and from several.
+ * The proxy is rebuilt here as it was, a read lock plus a reflective invocation.
+ * 
+ * Run as a Java application, this is not a unit test.
+ * usage: ReadWriteLockMapBenchmark [iterations [threads [lookupsPerThread]]]
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class ReadWriteLockMapBenchmark
+{
+	// about the number of entries in the site map
+	private final static int ENTRIES = 1500;
+	
+	public static void main(String[] args) 
+	throws Exception
+	{
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		int lookups = args.length > 2 ? Integer.parseInt(args[2]) : 1000000;
+		
+		Map<String, String> content = new HashMap<String, String>();
+		String[] keys = new String[ENTRIES];
+		for(int index = 0; index < ENTRIES; ++index)
+		{
+			keys[index] = Integer.toString(500 + index);
+			content.put(keys[index], "site " + keys[index]);
+		}
+		
+		String[] labels = new String[]{"reflective proxy", "ReadWriteLockMapWrapper", "CopyOnWriteMap", "ConcurrentHashMap"};
+		Map<?, ?>[] maps = new Map<?, ?>[]
+		{
+			legacyProxy(new HashMap<String, String>(content)),
+			ReadWriteLockCollections.readWriteLockMap(new HashMap<String, String>(content)),
+			ReadWriteLockCollections.copyOnWriteMap(content),
+			new ConcurrentHashMap<String, String>(content)
+		};
+		
+		for(int threadCount : new int[]{1, threads})
+		{
+			for(int index = 0; index < maps.length; ++index)
+			{
+				// the first pass is a warm up
+				long nanos = 0L;
+				for(int iteration = 0; iteration <= iterations; ++iteration)
+				{
+					long elapsed = run(maps[index], keys, threadCount, lookups);
+					if(iteration > 0)
+						nanos += elapsed;
+				}
+				double totalLookups = (double)threadCount * lookups * iterations;
+				// elapsed time over all lookups, the per thread latency when there are
+				// at least as many processors as threads is this times the thread count
+				System.out.println(String.format("%d thread(s), %s: %.1f ns/lookup, %.0f lookups/s", 
+					threadCount, labels[index], 
+					nanos / totalLookups, 
+					totalLookups / (nanos / 1000000000.0)));
+			}
+		}
+	}
+	
+	private static long run(final Map<?, ?> map, final String[] keys, int threadCount, final int lookups) 
+	throws InterruptedException
+	{
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threadCount);
+		for(int index = 0; index < threadCount; ++index)
+		{
+			final int seed = index;
+			new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						start.await();
+						int found = 0;
+						for(int lookup = 0; lookup < lookups; ++lookup)
+							if(map.get(keys[(seed + lookup) % keys.length]) != null)
+								found++;
+						if(found != lookups)
+							System.err.println("Found only " + found + " of " + lookups);
+					}
+					catch(InterruptedException iX)
+					{
+						iX.printStackTrace();
+					}
+					finally
+					{
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		
+		long startTime = System.nanoTime();
+		start.countDown();
+		done.await();
+		return System.nanoTime() - startTime;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Map<String, String> legacyProxy(final Map<String, String> target)
+	{
+		final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+		return (Map<String, String>)Proxy.newProxyInstance(
+			ReadWriteLockMapBenchmark.class.getClassLoader(), 
+			new Class<?>[]{ReadWriteLockMap.class}, 
+			new InvocationHandler()
+			{
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args) 
+				throws Throwable
+				{
+					// the proxy looked up its locking by method name
+					boolean write = ! LegacyMethodLocks.valueOf(method.getName()).read;
+					if(write)
+						readWriteLock.writeLock().lock();
+					else
+						readWriteLock.readLock().lock();
+					try
+					{
+						return method.invoke(target, args);
+					}
+					finally
+					{
+						if(write)
+							readWriteLock.writeLock().unlock();
+						else
+							readWriteLock.readLock().unlock();
+					}
+				}
+			});
+	}
+	
+	enum LegacyMethodLocks
+	{
+		get(true), put(false);
+		
+		final boolean read;
+		LegacyMethodLocks(boolean read)
+		{
+			this.read = read;
+		}
+	}
+}
@@ -0,0 +1,220 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.channels;
+
+import gov.va.med.imaging.channels.AbstractBytePump.BUFFER_SIZE;
+import gov.va.med.imaging.channels.BufferPool.ByteArrayBufferPool;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares the throughput of 200 concurrent stream transfers drawing their buffers
+ * from the single synchronized list the byte pumps used to share against the size
+ * class BufferPool. The transfers are a mix of thumbnail (10 KB) and reference 
+ * (100 KB) sized images read from memory and written to a discarding stream, so
+ * that the buffer handling is a noticeable part of the cost, as it is for cache hits.
+ * 
+ * Run as a Java application, this is not a unit test.
+ * usage: BufferPoolBenchmark [iterations [threads [transfersPerThread]]]
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class BufferPoolBenchmark
+{
+	private final static int[] IMAGE_SIZES = new int[]{10 * 1024, 100 * 1024};
+	private final static BUFFER_SIZE[] BUFFER_SIZES = new BUFFER_SIZE[]{BUFFER_SIZE.FourK, BUFFER_SIZE.EightK, BUFFER_SIZE.SixteenK};
+	
+	interface Pool
+	{
+		public byte[] getBuffer(BUFFER_SIZE bufferSize);
+		public void release(byte[] buffer);
+	}
+	
+	public static void main(String[] args) 
+	throws Exception
+	{
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		int transfers = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+		
+		byte[][] images = new byte[IMAGE_SIZES.length][];
+		for(int index = 0; index < images.length; ++index)
+		{
+			images[index] = new byte[IMAGE_SIZES[index]];
+			new Random(index).nextBytes(images[index]);
+		}
+		
+		final List<byte[]> legacyList = new ArrayList<byte[]>();
+		Pool legacy = new Pool()
+		{
+			@Override
+			public byte[] getBuffer(BUFFER_SIZE bufferSize)
+			{
+				int size = bufferSize.getSize();
+				synchronized(legacyList)
+				{
+					for(byte[] buffer : legacyList)
+					{
+						if(buffer.length == size)
+						{
+							legacyList.remove(buffer);
+							return buffer;
+						}
+					}
+					return new byte[size];
+				}
+			}
+
+			@Override
+			public void release(byte[] buffer)
+			{
+				synchronized(legacyList)
+				{
+					legacyList.add(buffer);
+				}
+			}
+		};
+		
+		final BufferPool<byte[]> bufferPool = new ByteArrayBufferPool("benchmark", 
+			BufferPool.DEFAULT_HIGH_WATER_MARK, BufferPool.DEFAULT_THREAD_CACHE_LIMIT, BufferPool.DEFAULT_TRIM_INTERVAL);
+		Pool sizeClass = new Pool()
+		{
+			@Override
+			public byte[] getBuffer(BUFFER_SIZE bufferSize)
+			{
+				return bufferPool.getBuffer(bufferSize);
+			}
+
+			@Override
+			public void release(byte[] buffer)
+			{
+				bufferPool.release(buffer);
+			}
+		};
+		
+		// the first pass of each is a warm up
+		long legacyNanos = 0L;
+		long pooledNanos = 0L;
+		for(int iteration = 0; iteration <= iterations; ++iteration)
+		{
+			long elapsed = run(legacy, images, threads, transfers);
+			if(iteration > 0)
+				legacyNanos += elapsed;
+			
+			elapsed = run(sizeClass, images, threads, transfers);
+			if(iteration > 0)
+				pooledNanos += elapsed;
+		}
+		
+		double totalTransfers = (double)threads * transfers * iterations;
+		System.out.println(String.format("%d threads x %d transfers: synchronized list %.0f transfers/s (%d buffers pooled), size class pool %.0f transfers/s", 
+			threads, transfers,
+			totalTransfers / (legacyNanos / 1000000000.0), legacyList.size(),
+			totalTransfers / (pooledNanos / 1000000000.0) ));
+		System.out.println(String.format("size class pool: %d allocations, %d reuses (%d thread cache), %d thread cache misses, %d pool misses, %d discards, %d buffers pooled", 
+			bufferPool.getAllocations(), bufferPool.getReuses(), bufferPool.getThreadCacheHits(), bufferPool.getThreadCacheMisses(), 
+			bufferPool.getPoolMisses(), bufferPool.getDiscards(), bufferPool.getPooledBufferCount()));
+	}
+	
+	private static long run(final Pool pool, final byte[][] images, int threadCount, final int transfers) 
+	throws InterruptedException
+	{
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threadCount);
+		for(int index = 0; index < threadCount; ++index)
+		{
+			final int seed = index;
+			Thread thread = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					OutputStream sink = new DiscardingOutputStream();
+					try
+					{
+						start.await();
+						for(int transfer = 0; transfer < transfers; ++transfer)
+						{
+							int selector = seed + transfer;
+							xfer(pool, BUFFER_SIZES[selector % BUFFER_SIZES.length], 
+								new ByteArrayInputStream(images[selector % images.length]), sink);
+						}
+					}
+					catch(Exception x)
+					{
+						x.printStackTrace();
+					}
+					finally
+					{
+						done.countDown();
+					}
+				}
+			};
+			thread.start();
+		}
+		
+		long startTime = System.nanoTime();
+		start.countDown();
+		done.await();
+		return System.nanoTime() - startTime;
+	}
+	
+	// the ByteStreamPump transfer loop, less the buffer size tuning
+	private static int xfer(Pool pool, BUFFER_SIZE bufferSize, InputStream inStream, OutputStream outStream) 
+	throws IOException
+	{
+		byte[] buffy = pool.getBuffer(bufferSize);
+		int totalBytesRead = 0;
+		for(int bytesRead=inStream.read(buffy); bytesRead > 0; bytesRead=inStream.read(buffy))
+		{
+			totalBytesRead += bytesRead;
+			outStream.write(buffy, 0, bytesRead);
+		}
+		pool.release(buffy);
+		return totalBytesRead;
+	}
+	
+	private static class DiscardingOutputStream
+	extends OutputStream
+	{
+		@Override
+		public void write(int b)
+		{
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len)
+		{
+		}
+	}
+}
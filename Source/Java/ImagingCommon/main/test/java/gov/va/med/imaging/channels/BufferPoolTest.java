@@ -0,0 +1,289 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.channels;
+
+import gov.va.med.imaging.channels.AbstractBytePump.BUFFER_SIZE;
+import gov.va.med.imaging.channels.BufferPool.ByteArrayBufferPool;
+import gov.va.med.imaging.channels.BufferPool.DirectByteBufferPool;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+/**
+ * @author vhaiswwerfej
+ *
+ */
+public class BufferPoolTest 
+extends TestCase
+{
+	private final static long NEVER = Long.MAX_VALUE;
+	
+	public void testThreadCacheReuse()
+	{
+		BufferPool<byte[]> pool = new ByteArrayBufferPool("test", 4, BUFFER_SIZE.SixtyFourK, NEVER);
+		byte[] first = pool.getBuffer(BUFFER_SIZE.EightK);
+		assertEquals(8 * 1024, first.length);
+		pool.release(first);
+		
+		assertSame(first, pool.getBuffer(BUFFER_SIZE.EightK));
+		assertEquals(1L, pool.getAllocations());
+		assertEquals(1L, pool.getThreadCacheHits());
+		assertEquals(1L, pool.getReuses());
+		assertEquals(1L, pool.getThreadCacheMisses());
+		assertEquals(1L, pool.getPoolMisses());
+		assertEquals(0, pool.getPooledBufferCount());
+	}
+	
+	public void testSizeClassesAreSeparate()
+	{
+		BufferPool<byte[]> pool = new ByteArrayBufferPool("test", 4, BUFFER_SIZE.SixtyFourK, NEVER);
+		pool.release(pool.getBuffer(BUFFER_SIZE.FourK));
+		
+		byte[] buffer = pool.getBuffer(BUFFER_SIZE.SixteenK);
+		assertEquals(16 * 1024, buffer.length);
+		assertEquals(2L, pool.getAllocations());
+	}
+	
+	public void testSharedOverflowAcrossThreads() 
+	throws InterruptedException
+	{
+		final BufferPool<byte[]> pool = new ByteArrayBufferPool("test", 4, BUFFER_SIZE.SixtyFourK, NEVER);
+		final byte[] released = pool.getBuffer(BUFFER_SIZE.EightK);
+		// fill this thread's cache so that the next release goes to the shared overflow
+		final byte[] cached = pool.getBuffer(BUFFER_SIZE.EightK);
+		pool.release(cached);
+		pool.release(released);
+		assertEquals(1, pool.getPooledBufferCount());
+		
+		final AtomicReference<byte[]> otherThreadBuffer = new AtomicReference<byte[]>();
+		Thread other = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				otherThreadBuffer.set(pool.getBuffer(BUFFER_SIZE.EightK));
+			}
+		};
+		other.start();
+		other.join();
+		
+		assertSame(released, otherThreadBuffer.get());
+		assertEquals(0, pool.getPooledBufferCount());
+		assertEquals(2L, pool.getAllocations());
+		assertEquals(1L, pool.getReuses());
+		// the other thread missed its own cache but the shared overflow supplied the buffer
+		assertEquals(3L, pool.getThreadCacheMisses());
+		assertEquals(2L, pool.getPoolMisses());
+	}
+	
+	public void testLargeBuffersBypassThreadCache()
+	{
+		BufferPool<byte[]> pool = new ByteArrayBufferPool("test", 4, BUFFER_SIZE.SixtyFourK, NEVER);
+		pool.release(pool.getBuffer(BUFFER_SIZE.TwoFiftySixK));
+		assertEquals(1, pool.getPooledBufferCount());
+		assertEquals(256L * 1024L, pool.getPooledBytes());
+		
+		pool.getBuffer(BUFFER_SIZE.TwoFiftySixK);
+		assertEquals(0L, pool.getThreadCacheHits());
+		assertEquals(0L, pool.getThreadCacheMisses());
+		assertEquals(1L, pool.getReuses());
+		assertEquals(1L, pool.getPoolMisses());
+	}
+	
+	public void testHighWaterMark()
+	{
+		BufferPool<byte[]> pool = new ByteArrayBufferPool("test", 2, null, NEVER);
+		byte[][] buffers = new byte[5][];
+		for(int index = 0; index < buffers.length; ++index)
+			buffers[index] = pool.getBuffer(BUFFER_SIZE.OneK);
+		for(byte[] buffer : buffers)
+			pool.release(buffer);
+		
+		assertEquals(2, pool.getPooledBufferCount());
+		assertEquals(3L, pool.getDiscards());
+	}
+	
+	public void testUnknownCapacityIsDiscarded()
+	{
+		BufferPool<byte[]> pool = new ByteArrayBufferPool("test", 2, BUFFER_SIZE.SixtyFourK, NEVER);
+		pool.release(new byte[1000]);
+		assertEquals(1L, pool.getDiscards());
+		assertEquals(1024, pool.getBuffer(BUFFER_SIZE.OneK).length);
+		assertEquals(1L, pool.getAllocations());
+	}
+	
+	public void testTrimReleasesIdleBuffers()
+	{
+		BufferPool<byte[]> pool = new ByteArrayBufferPool("test", 8, null, NEVER);
+		byte[][] buffers = new byte[4][];
+		for(int index = 0; index < buffers.length; ++index)
+			buffers[index] = pool.getBuffer(BUFFER_SIZE.TwoK);
+		for(byte[] buffer : buffers)
+			pool.release(buffer);
+		
+		// the buffers have not been idle for a whole interval yet
+		pool.trim();
+		assertEquals(4, pool.getPooledBufferCount());
+		
+		// one is asked for during the interval, the other three are idle
+		pool.release(pool.getBuffer(BUFFER_SIZE.TwoK));
+		pool.trim();
+		assertEquals(1, pool.getPooledBufferCount());
+		assertEquals(3L, pool.getTrimmed());
+		
+		pool.trim();
+		assertEquals(0, pool.getPooledBufferCount());
+	}
+	
+	public void testTrimEmptiesIdleThreadCaches() 
+	throws InterruptedException
+	{
+		final BufferPool<byte[]> pool = new ByteArrayBufferPool("test", 8, BUFFER_SIZE.SixtyFourK, NEVER);
+		final CountDownLatch cached = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(1);
+		// a request thread that transfers once and then sits idle in its thread pool
+		Thread idle = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				pool.release(pool.getBuffer(BUFFER_SIZE.SixtyFourK));
+				cached.countDown();
+				try
+				{
+					done.await();
+				}
+				catch(InterruptedException iX)
+				{
+				}
+			}
+		};
+		idle.start();
+		cached.await();
+		// this thread keeps using its cache
+		pool.release(pool.getBuffer(BUFFER_SIZE.EightK));
+		assertEquals(2, pool.getThreadCachedBufferCount());
+		assertEquals(0, pool.getPooledBufferCount());
+		
+		// both caches were used during the first interval
+		pool.trim();
+		assertEquals(2, pool.getThreadCachedBufferCount());
+		
+		// the idle thread's buffer moves to the shared overflow, then is released
+		pool.release(pool.getBuffer(BUFFER_SIZE.EightK));
+		pool.trim();
+		assertEquals(1, pool.getThreadCachedBufferCount());
+		assertEquals(1, pool.getPooledBufferCount());
+		assertEquals(0L, pool.getTrimmed());
+		pool.release(pool.getBuffer(BUFFER_SIZE.EightK));
+		pool.trim();
+		assertEquals(1, pool.getThreadCachedBufferCount());
+		assertEquals(0, pool.getPooledBufferCount());
+		assertEquals(1L, pool.getTrimmed());
+		
+		done.countDown();
+		idle.join();
+	}
+	
+	public void testTrimOnRelease() 
+	throws InterruptedException
+	{
+		BufferPool<byte[]> pool = new ByteArrayBufferPool("test", 8, null, 1L);
+		byte[] first = pool.getBuffer(BUFFER_SIZE.OneK);
+		byte[] second = pool.getBuffer(BUFFER_SIZE.OneK);
+		pool.release(first);
+		Thread.sleep(5L);
+		pool.release(second);
+		Thread.sleep(5L);
+		pool.release(pool.getBuffer(BUFFER_SIZE.FourK));
+		
+		assertTrue(pool.getTrimmed() > 0L);
+	}
+	
+	public void testDirectBuffersAreCleared()
+	{
+		BufferPool<ByteBuffer> pool = new DirectByteBufferPool("test", 4, BUFFER_SIZE.SixtyFourK, NEVER);
+		ByteBuffer buffer = pool.getBuffer(BUFFER_SIZE.FourK);
+		assertTrue(buffer.isDirect());
+		assertEquals(4 * 1024, buffer.capacity());
+		buffer.put(new byte[100]);
+		buffer.flip();
+		pool.release(buffer);
+		
+		ByteBuffer reused = pool.getBuffer(BUFFER_SIZE.FourK);
+		assertSame(buffer, reused);
+		assertEquals(0, reused.position());
+		assertEquals(reused.capacity(), reused.limit());
+	}
+	
+	public void testConcurrentUse() 
+	throws InterruptedException
+	{
+		final BufferPool<byte[]> pool = new ByteArrayBufferPool("test", 16, BUFFER_SIZE.SixtyFourK, NEVER);
+		final BUFFER_SIZE[] sizes = new BUFFER_SIZE[]{BUFFER_SIZE.EightK, BUFFER_SIZE.SixtyFourK, BUFFER_SIZE.TwoFiftySixK};
+		final int iterations = 2000;
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread[] threads = new Thread[16];
+		for(int index = 0; index < threads.length; ++index)
+		{
+			final int seed = index;
+			threads[index] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						for(int iteration = 0; iteration < iterations; ++iteration)
+						{
+							BUFFER_SIZE size = sizes[(seed + iteration) % sizes.length];
+							byte[] first = pool.getBuffer(size);
+							byte[] second = pool.getBuffer(size);
+							assertNotSame(first, second);
+							assertEquals(size.getSize(), first.length);
+							pool.release(second);
+							pool.release(first);
+						}
+					}
+					catch(Throwable t)
+					{
+						failure.compareAndSet(null, t);
+					}
+				}
+			};
+			threads[index].start();
+		}
+		for(Thread thread : threads)
+			thread.join();
+		
+		if(failure.get() != null)
+			fail(failure.get().toString());
+		assertEquals(threads.length * iterations * 2L, pool.getAllocations() + pool.getReuses());
+		assertTrue(pool.getPooledBufferCount() <= 16 * sizes.length);
+	}
+}
@@ -0,0 +1,129 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.channels;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.Checksum;
+
+/**
+ * Compares the CPU cost of the per-byte checksum loop the cache byte channels used
+ * to run (a read-only view of each buffer, one get() and one update(int) per byte)
+ * against the bulk update in ChecksumUtility, for heap and direct buffers of a
+ * small (100 KB) and a large (50 MB) image.
+ * 
+ * Run as a Java application, this is not a unit test.
+ * usage: ChecksumBenchmark [iterations]
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class ChecksumBenchmark
+{
+	private final static int[] SIZES = new int[]{100 * 1024, 50 * 1024 * 1024};
+	private final static String[] ALGORITHMS = new String[]{"Adler32", "CRC32", "gov.va.med.imaging.ClonableAdler32", "CRC32C"};
+	private final static double GIGABYTE = 1024.0 * 1024.0 * 1024.0;
+	// the channels see buffers of about this size on each write()
+	private final static int CHANNEL_BUFFER_SIZE = 64 * 1024;
+	
+	public static void main(String[] args) 
+	throws Exception
+	{
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		
+		for(int size : SIZES)
+		{
+			byte[] data = new byte[size];
+			new Random(size).nextBytes(data);
+			ByteBuffer heap = ByteBuffer.wrap(data);
+			ByteBuffer direct = ByteBuffer.allocateDirect(size);
+			direct.put(data);
+			direct.flip();
+			
+			for(String algorithm : ALGORITHMS)
+			{
+				if(ChecksumFactory.getFactory().get(algorithm) == null)
+				{
+					System.out.println(algorithm + " is not available in this JVM, skipping.");
+					continue;
+				}
+				for(ByteBuffer buffer : new ByteBuffer[]{heap, direct})
+				{
+					String label = algorithm + " " + size + " bytes " + (buffer.isDirect() ? "direct" : "heap");
+					long legacyValue = 0L;
+					long bulkValue = 0L;
+					
+					// the first pass of each is a warm up
+					long legacyCpu = 0L;
+					long bulkCpu = 0L;
+					for(int iteration = 0; iteration <= iterations; ++iteration)
+					{
+						long start = threadBean.getCurrentThreadCpuTime();
+						legacyValue = legacy(ChecksumFactory.getFactory().get(algorithm), buffer);
+						long elapsed = threadBean.getCurrentThreadCpuTime() - start;
+						if(iteration > 0)
+							legacyCpu += elapsed;
+						
+						start = threadBean.getCurrentThreadCpuTime();
+						bulkValue = bulk(ChecksumFactory.getFactory().get(algorithm), buffer);
+						elapsed = threadBean.getCurrentThreadCpuTime() - start;
+						if(iteration > 0)
+							bulkCpu += elapsed;
+					}
+					if(legacyValue != bulkValue)
+						throw new IllegalStateException(label + " checksums differ, " + legacyValue + " != " + bulkValue);
+					
+					double gigabytes = (double)size * iterations / GIGABYTE;
+					System.out.println(String.format("%s: per-byte %.1f CPU ms/GB, bulk %.1f CPU ms/GB", 
+						label, legacyCpu / 1000000.0 / gigabytes, bulkCpu / 1000000.0 / gigabytes));
+				}
+			}
+		}
+	}
+	
+	private static long legacy(Checksum checksum, ByteBuffer buffer)
+	{
+		for(int position = 0; position < buffer.limit(); position += CHANNEL_BUFFER_SIZE)
+		{
+			ByteBuffer view = buffer.asReadOnlyBuffer();
+			view.position(position);
+			view.limit(Math.min(buffer.limit(), position + CHANNEL_BUFFER_SIZE));
+			while(view.hasRemaining())
+				checksum.update(view.get());
+		}
+		return checksum.getValue();
+	}
+	
+	private static long bulk(Checksum checksum, ByteBuffer buffer)
+	{
+		byte[] scratch = new byte[ChecksumUtility.DEFAULT_SCRATCH_BUFFER_SIZE];
+		for(int position = 0; position < buffer.limit(); position += CHANNEL_BUFFER_SIZE)
+			ChecksumUtility.update(checksum, buffer, position, Math.min(CHANNEL_BUFFER_SIZE, buffer.limit() - position), scratch);
+		return checksum.getValue();
+	}
+}
@@ -0,0 +1,81 @@
+/**
+ * 
+ */
+package gov.va.med.imaging.channels;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+import gov.va.med.imaging.ClonableAdler32;
+import junit.framework.TestCase;
+
+/**
+ * @author vhaiswwerfej
+ *
+ */
+public class ChecksumUtilityTest 
+extends TestCase
+{
+	private byte[] data;
+	
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		data = new byte[100000];
+		new Random(11L).nextBytes(data);
+	}
+
+	/**
+	 * The bulk ClonableAdler32 update must give the same value as java.util.zip.Adler32,
+	 * including runs of 0xFF that maximize the sums between modulo operations.
+	 */
+	public void testClonableAdler32MatchesAdler32()
+	{
+		byte[] ones = new byte[20000];
+		Arrays.fill(ones, (byte)0xFF);
+		for(byte[] source : new byte[][]{data, ones})
+		{
+			ClonableAdler32 clonable = new ClonableAdler32();
+			Adler32 adler = new Adler32();
+			for(int offset = 0; offset < source.length; offset += 7919)
+			{
+				int length = Math.min(7919, source.length - offset);
+				clonable.update(source, offset, length);
+				adler.update(source, offset, length);
+			}
+			assertEquals(adler.getValue(), clonable.getValue());
+		}
+		
+		ClonableAdler32 byteAtATime = new ClonableAdler32();
+		for(int index = 0; index < 10000; ++index)
+			byteAtATime.update(data[index]);
+		ClonableAdler32 bulk = new ClonableAdler32();
+		bulk.update(data, 0, 10000);
+		assertEquals(byteAtATime.getValue(), bulk.getValue());
+	}
+	
+	public void testHeapAndDirectBuffers()
+	{
+		CRC32 expected = new CRC32();
+		expected.update(data, 100, 50000);
+		
+		ByteBuffer heap = ByteBuffer.wrap(data);
+		CRC32 heapChecksum = new CRC32();
+		ChecksumUtility.update(heapChecksum, heap, 100, 50000, null);
+		assertEquals(expected.getValue(), heapChecksum.getValue());
+		assertEquals(0, heap.position());
+		
+		ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+		direct.put(data);
+		direct.position(100);
+		direct.limit(50100);
+		CRC32 directChecksum = new CRC32();
+		ChecksumUtility.update(directChecksum, direct, new byte[ChecksumUtility.DEFAULT_SCRATCH_BUFFER_SIZE]);
+		assertEquals(expected.getValue(), directChecksum.getValue());
+		assertEquals(100, direct.position());
+		assertEquals(50100, direct.limit());
+	}
+}
@@ -29,9 +29,13 @@
 package gov.va.med.imaging.channels;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Random;
 
+import gov.va.med.imaging.ClonableAdler32;
 import gov.va.med.imaging.StorageTestUtility;
 
 /**
@@ -119,6 +123,50 @@ extends AbstractByteChannelTest
 			X.printStackTrace();
 		}
 	}	
-}
-
 
+	/**
+	 * Copy on the calling thread to a channel that accepts the whole buffer and
+	 * one that accepts only part of the buffer on each write.
+	 * 
+	 * @throws IOException
+	 */
+	public void testSequentialCopy() 
+	throws IOException
+	{
+		byte[] source = new byte[WritableByteChannelSpreaderPump.DEFAULT_BUFFER_SIZE * 2 + 1000];
+		new Random(42L).nextBytes(source);
+		ByteArrayOutputStream wholeWrites = new ByteArrayOutputStream();
+		final ByteArrayOutputStream partialWrites = new ByteArrayOutputStream();
+		final WritableByteChannel partialWritesChannel = Channels.newChannel(partialWrites);
+		
+		WritableByteChannelSpreaderPump pump = new WritableByteChannelSpreaderPump(
+			Channels.newChannel(new ByteArrayInputStream(source)),
+			new WritableByteChannel[] 
+			{
+				Channels.newChannel(wholeWrites),
+				new WritableByteChannel()
+				{
+					public int write(ByteBuffer src) throws IOException
+					{
+						ByteBuffer part = src.duplicate();
+						part.limit( part.position() + Math.min(part.remaining(), 1000) );
+						int written = partialWritesChannel.write(part);
+						src.position(src.position() + written);
+						return written;
+					}
+					public boolean isOpen(){return true;}
+					public void close(){}
+				}
+			}
+		);
+		pump.setConcurrentWrites(false);
+		
+		assertEquals(source.length, pump.copy());
+		assertTrue( Arrays.equals(source, wholeWrites.toByteArray()) );
+		assertTrue( Arrays.equals(source, partialWrites.toByteArray()) );
+		
+		ClonableAdler32 expected = new ClonableAdler32();
+		expected.update(source, 0, source.length);
+		assertEquals(expected.getValue(), pump.getChecksum().getValue());
+	}
+}
@@ -10,6 +10,7 @@ import gov.va.med.imaging.core.interfaces.exceptions.ImageNearLineException;
 import gov.va.med.imaging.core.interfaces.exceptions.ImageNotFoundException;
 import gov.va.med.imaging.core.interfaces.exceptions.MethodException;
 import gov.va.med.imaging.core.interfaces.exceptions.SecurityCredentialsExpiredException;
+import gov.va.med.imaging.datasource.DataSourceTimeoutContext;
 import gov.va.med.imaging.exchange.business.ImageFormatQualityList;
 import gov.va.med.imaging.exchange.business.Requestor;
 import gov.va.med.imaging.exchange.enums.ImageFormat;
@@ -312,7 +313,9 @@ public abstract class ImagingProxy
 		try
 		{
 			client = new HttpClient();
-			client.getHttpConnectionManager().getParams().setConnectionTimeout(30000); // DKB - 30 sec to get a connection
+			// DKB - 30 sec to get a connection, less if the router has derived a shorter timeout for the site
+			client.getHttpConnectionManager().getParams().setConnectionTimeout(
+				Math.min(30000, DataSourceTimeoutContext.getConnectTimeoutMs(30000)));
             client.getHttpConnectionManager().getParams().setSoTimeout(120000); // 120 sec to wait for data
 			client.getParams().setAuthenticationPreemptive(true);
 			//getMethod = new GetMethod(imageUrlString);
@@ -345,7 +348,10 @@ public abstract class ImagingProxy
 			
 			addOptionalGetInstanceHeaders(getMethod);
 			
+			long requestStartTime = System.currentTimeMillis();
 			result = client.executeMethod(getMethod);
+			// executeMethod returns once the response headers are read, before the image is
+			DataSourceTimeoutContext.recordFirstResponseMs(System.currentTimeMillis() - requestStartTime);
 
             // How many bytes received?
             transactionContext.setDataSourceBytesReceived (getMethod.getBytesReceived ());
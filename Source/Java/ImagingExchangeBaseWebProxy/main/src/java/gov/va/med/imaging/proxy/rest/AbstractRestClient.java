@@ -36,6 +36,7 @@ import gov.va.med.imaging.core.interfaces.exceptions.InsufficientPatientSensitiv
 import gov.va.med.imaging.core.interfaces.exceptions.MethodException;
 import gov.va.med.imaging.core.interfaces.exceptions.PatientNotFoundException;
 import gov.va.med.imaging.core.interfaces.exceptions.SecurityCredentialsExpiredException;
+import gov.va.med.imaging.datasource.DataSourceTimeoutContext;
 import gov.va.med.imaging.exchange.business.PatientSensitiveValue;
 import gov.va.med.imaging.exchange.enums.PatientSensitivityLevel;
 import gov.va.med.imaging.rest.exceptions.RestExceptionCodes;
@@ -64,10 +65,14 @@ public abstract class AbstractRestClient
 	private final static Logger logger = Logger.getLogger(AbstractRestClient.class);
 	protected final WebResource.Builder request;	
 	private final int metadataTimeoutMs;
+	private final int connectTimeoutMs;
+	private final static int defaultConnectTimeoutMs = 30000;
+	// connect timeouts given by the router are rounded up to this so that the pool stays small
+	private final static int connectTimeoutGranularityMs = 1000;
 	
 	// ok to have one single client for the entire application, it is thread safe (see comment below)
 	//private static Client client = null;
-	private static Map<Integer, Client> clientPool = new HashMap<Integer, Client>();
+	private static Map<String, Client> clientPool = new HashMap<String, Client>();
 	
 	/**
 	 * According to https://jersey.dev.java.net/nonav/documentation/latest/user-guide.html#d4e604
@@ -76,16 +81,17 @@ public abstract class AbstractRestClient
 	 * @param federationConfiguration
 	 * @return
 	 */
-	private static synchronized Client getClient(int metadataTimeoutMs)
+	private static synchronized Client getClient(int connectTimeoutMs, int metadataTimeoutMs)
 	{
-		// use a map to pool connections based on the timeout
-		Client client = clientPool.get(metadataTimeoutMs);
+		// use a map to pool connections based on the timeouts
+		String clientKey = connectTimeoutMs + ":" + metadataTimeoutMs;
+		Client client = clientPool.get(clientKey);
 		if(client == null)
 		{
 			DefaultClientConfig clientConfig = new DefaultClientConfig();
 			
 			clientConfig.getProperties().put(
-			        ClientConfig.PROPERTY_CONNECT_TIMEOUT, 30000);
+			        ClientConfig.PROPERTY_CONNECT_TIMEOUT, connectTimeoutMs);
 			clientConfig.getProperties().put(
 			        ClientConfig.PROPERTY_READ_TIMEOUT, metadataTimeoutMs);
 			// According to http://jersey.java.net/nonav/apidocs/1.2/contribs/jersey-apache-client/com/sun/jersey/client/apache/ApacheHttpClient.html
@@ -104,7 +110,7 @@ public abstract class AbstractRestClient
 			// using HTTP Commons Client in order to take advantage of configuration for certificate
 			//client = ApacheHttpClient.create();
 			
-			clientPool.put(metadataTimeoutMs, client);
+			clientPool.put(clientKey, client);
 		}
 		return client;
 	}	
@@ -112,6 +118,7 @@ public abstract class AbstractRestClient
 	public AbstractRestClient(String url, String mediaType, int metadataTimeoutMs)
 	{
 		this.metadataTimeoutMs = metadataTimeoutMs;
+		this.connectTimeoutMs = getConnectTimeoutMs();
 		WebResource webResource = createWebResource(url);
 		getLogger().info("Creating web request to URL '" + url + "'.");
 		gov.va.med.imaging.transactioncontext.TransactionContext transactionContext = TransactionContextFactory.get();
@@ -130,9 +137,20 @@ public abstract class AbstractRestClient
 		return logger;
 	}
 	
+	/**
+	 * The connect timeout the router derived from the latency of the site, if it gave one, 
+	 * otherwise the default.
+	 */
+	private static int getConnectTimeoutMs()
+	{
+		int timeout = DataSourceTimeoutContext.getConnectTimeoutMs(defaultConnectTimeoutMs);
+		timeout = ((timeout + connectTimeoutGranularityMs - 1) / connectTimeoutGranularityMs) * connectTimeoutGranularityMs;
+		return Math.min(timeout, defaultConnectTimeoutMs);
+	}
+	
 	private WebResource createWebResource(String url)
 	{
-		Client client = getClient(this.metadataTimeoutMs);		
+		Client client = getClient(this.connectTimeoutMs, this.metadataTimeoutMs);		
 		return client.resource(url);
 	}
 	
@@ -164,7 +182,10 @@ public abstract class AbstractRestClient
 		{
 			try
 			{
+				long requestStartTime = System.currentTimeMillis();
 				clientResponse = executeMethodInternal(c);
+				// the response has started, its entity has not been read yet
+				DataSourceTimeoutContext.recordFirstResponseMs(System.currentTimeMillis() - requestStartTime);
 				if(clientResponse.getStatus() == Status.OK.getStatusCode())
 				{
 					// not sure if this should be here - this maybe only applies to Federation
@@ -6,15 +6,20 @@ import gov.va.med.PatientArtifactIdentifier;
 import gov.va.med.imaging.AbstractImagingURN;
 import gov.va.med.imaging.BhieImageURN;
 import gov.va.med.imaging.ImageURN;
+import gov.va.med.imaging.exchange.business.Image;
 import gov.va.med.imaging.exchange.business.documents.Document;
 import gov.va.med.imaging.exchange.business.vistarad.ExamSite;
 import gov.va.med.imaging.exchange.business.vistarad.PatientEnterpriseExams;
 import gov.va.med.imaging.storage.cache.Cache;
 import gov.va.med.imaging.storage.cache.Instance;
 import gov.va.med.imaging.storage.cache.exceptions.CacheException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
@@ -277,6 +282,55 @@ implements RealizedCache
 		return getMetadata(gov.va.med.imaging.exchange.business.Study.class, groups, groupKey);
 	}
 
+	/**
+	 * Get a single Image from a cached Study without decoding the rest of the Study graph.
+	 * Studies cached before the binary codec was introduced are decoded completely.
+	 * 
+	 * @param groups
+	 * @param groupKey
+	 * @param imageIdentifier
+	 * @return the Image or null if the Study is not cached or does not contain the Image
+	 * @throws CacheException
+	 */
+	protected Image getStudyImage(String[] groups, String groupKey, GlobalArtifactIdentifier imageIdentifier)
+	throws CacheException
+	{
+		InputStream metadataInStream = null;
+		try
+		{
+			Instance studyMetadataInstance = getWrappedCache().getInstance(
+					getMetadataRegionName(), 
+					groups, 
+					groupKey);
+			
+			if(studyMetadataInstance != null)
+			{
+				metadataInStream = new BufferedInputStream(Channels.newInputStream(studyMetadataInstance.getReadableChannel()));
+				if(StudyGraphCodec.isEncoded(metadataInStream))
+					return StudyGraphCodec.decodeImage(metadataInStream, imageIdentifier);
+			}
+		} 
+		catch (IOException e)
+		{
+			logger.warn("Unable to read image '" + imageIdentifier + "' from the cached study, " + e.getMessage());
+			return null;
+		}
+		finally
+		{
+			try{if(metadataInStream != null)metadataInStream.close();}
+			catch(Throwable t){}
+		}
+		
+		// the study was cached in the object stream format
+		gov.va.med.imaging.exchange.business.Study study = getStudy(groups, groupKey);
+		if(study != null)
+			for(gov.va.med.imaging.exchange.business.Series series : study)
+				for(Image image : series)
+					if(imageIdentifier.equals(image.getGlobalArtifactIdentifier()))
+						return image;
+		return null;
+	}
+
 	// ===============================================================================================
 	// Enterprise Exams Metadata Caching
 	// ===============================================================================================
@@ -428,7 +482,7 @@ implements RealizedCache
 		T result = null;
 		
 		ReadableByteChannel metadataReadable = null;
-		ObjectInputStream metadataInStream = null;
+		InputStream metadataInStream = null;
 		try
 		{
 			Instance studyMetadataInstance = getWrappedCache().getInstance(
@@ -440,9 +494,21 @@ implements RealizedCache
 			{
 				metadataReadable = studyMetadataInstance.getReadableChannel();
 				
-				metadataInStream = new ObjectInputStream(Channels.newInputStream(metadataReadable));
+				metadataInStream = new BufferedInputStream(Channels.newInputStream(metadataReadable));
+				
+				// Study graphs are written with the binary codec, anything else (including 
+				// Study graphs cached by earlier versions) is a serialized object
+				if(StudyGraphCodec.isEncoded(metadataInStream))
+				{
+					if( expectedResultClass.isAssignableFrom(gov.va.med.imaging.exchange.business.Study.class) )
+						return expectedResultClass.cast( StudyGraphCodec.decode(metadataInStream) );
+					logger.warn("Cached metadata '" + groupKey + "' is a Study graph, '" + expectedResultClass.getName() + "' was expected.");
+					return null;
+				}
+				
+				metadataInStream = new ObjectInputStream(metadataInStream);
 				
-				return expectedResultClass.cast( metadataInStream.readObject() );
+				return expectedResultClass.cast( ((ObjectInputStream)metadataInStream).readObject() );
 			}
 		} 
 		catch (IOException e)
@@ -477,7 +543,7 @@ implements RealizedCache
 	throws CacheException
 	{
 		WritableByteChannel metadataWritable = null;
-		ObjectOutputStream metadataOutStream = null;
+		OutputStream metadataOutStream = null;
 		try
 		{
 			if( getWrappedCache().isEnabled().booleanValue() )
@@ -489,9 +555,16 @@ implements RealizedCache
 				if(metadataInstance != null)
 				{
 					metadataWritable = metadataInstance.getWritableChannel();
-					metadataOutStream = new ObjectOutputStream(Channels.newOutputStream(metadataWritable));
-					
-					metadataOutStream.writeObject(metadata);
+					if(metadata instanceof gov.va.med.imaging.exchange.business.Study)
+					{
+						metadataOutStream = new BufferedOutputStream(Channels.newOutputStream(metadataWritable));
+						StudyGraphCodec.encode((gov.va.med.imaging.exchange.business.Study)metadata, metadataOutStream);
+					}
+					else
+					{
+						metadataOutStream = new ObjectOutputStream(Channels.newOutputStream(metadataWritable));
+						((ObjectOutputStream)metadataOutStream).writeObject(metadata);
+					}
 				}
 				else
 					logger.warn("Unable to write to cache and cache is enabled.  Application will continue to operate with reduced performance.");
@@ -28,6 +28,7 @@ import gov.va.med.GlobalArtifactIdentifier;
 import gov.va.med.RoutingToken;
 import gov.va.med.RoutingTokenImpl;
 import gov.va.med.exceptions.RoutingTokenFormatException;
+import gov.va.med.imaging.exchange.business.Image;
 import gov.va.med.imaging.exchange.business.Study;
 import gov.va.med.imaging.exchange.business.documents.Document;
 import gov.va.med.imaging.storage.cache.Cache;
@@ -156,6 +157,13 @@ implements RealizedCache
 		return getMappedCache(gaid).getStudy(gaid);
 	}
 
+	@Override
+	public Image getStudyImage(GlobalArtifactIdentifier studyGaid, GlobalArtifactIdentifier imageGaid) 
+	throws CacheException
+	{
+		return getMappedCache(studyGaid).getStudyImage(studyGaid, imageGaid);
+	}
+
 	/**
 	 * 
 	 */
@@ -1,6 +1,7 @@
 package gov.va.med.imaging.exchange.storage.cache;
 
 import gov.va.med.GlobalArtifactIdentifier;
+import gov.va.med.imaging.exchange.business.Image;
 import gov.va.med.imaging.exchange.business.Study;
 import gov.va.med.imaging.exchange.business.documents.Document;
 import gov.va.med.imaging.storage.cache.Cache;
@@ -84,6 +85,19 @@ implements DODSourcedCache
 		
 		return getStudy(groupKeys, instanceKey);
 	}
+
+	/**
+	 * 
+	 */
+	@Override
+	public Image getStudyImage(GlobalArtifactIdentifier studyGaid, GlobalArtifactIdentifier imageGaid) 
+	throws CacheException
+	{
+		String[] groupKeys = AbstractCacheDecorator.createExternalInstanceGroupKeys(studyGaid, true);
+		String instanceKey = AbstractCacheDecorator.createStudyKey(studyGaid);
+		
+		return getStudyImage(groupKeys, instanceKey, imageGaid);
+	}
 	
 	// =======================================================================================
 	// Document Caching
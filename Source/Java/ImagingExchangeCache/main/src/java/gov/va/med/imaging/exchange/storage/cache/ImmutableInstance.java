@@ -34,6 +34,12 @@ public class ImmutableInstance
 		return wrappedInstance.getReadableChannel();
 	}
 	
+	public InstanceReadableByteChannel getTailingReadableChannel() 
+	throws CacheException
+	{
+		return wrappedInstance.getTailingReadableChannel();
+	}
+	
 	public long getSize() 
 	throws CacheException
 	{
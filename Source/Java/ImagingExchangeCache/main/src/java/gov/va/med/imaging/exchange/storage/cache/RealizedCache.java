@@ -5,6 +5,7 @@ package gov.va.med.imaging.exchange.storage.cache;
 
 import java.io.Serializable;
 import gov.va.med.GlobalArtifactIdentifier;
+import gov.va.med.imaging.exchange.business.Image;
 import gov.va.med.imaging.exchange.business.Study;
 import gov.va.med.imaging.exchange.business.documents.Document;
 import gov.va.med.imaging.storage.cache.exceptions.CacheException;
@@ -40,6 +41,17 @@ public interface RealizedCache
 	public Study getStudy(GlobalArtifactIdentifier gai) 
 	throws CacheException;
 	
+	/**
+	 * Find a single Image of a cached Study without getting the whole Study graph.
+	 * 
+	 * @param studyGai the Study global artifact identifier (the study URN)
+	 * @param imageGai the Image global artifact identifier (the image URN)
+	 * @return the Image or null if the Study is not cached or does not contain the Image
+	 * @throws CacheException
+	 */
+	public Image getStudyImage(GlobalArtifactIdentifier studyGai, GlobalArtifactIdentifier imageGai) 
+	throws CacheException;
+	
 	/**
 	 * @param homeCommunityId
 	 * @param siteNumber
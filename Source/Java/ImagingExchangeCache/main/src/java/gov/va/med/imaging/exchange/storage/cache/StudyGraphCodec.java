@@ -0,0 +1,813 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.exchange.storage.cache;
+
+import gov.va.med.GlobalArtifactIdentifier;
+import gov.va.med.GlobalArtifactIdentifierFactory;
+import gov.va.med.SERIALIZATION_FORMAT;
+import gov.va.med.imaging.exchange.business.Image;
+import gov.va.med.imaging.exchange.business.Series;
+import gov.va.med.imaging.exchange.business.Study;
+import gov.va.med.imaging.exchange.enums.ObjectOrigin;
+import gov.va.med.imaging.exchange.enums.ObjectStatus;
+import gov.va.med.imaging.exchange.enums.StudyDeletedImageState;
+import gov.va.med.imaging.exchange.enums.StudyLoadLevel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary encoding of a Study graph (Study, Series and Image) for the cache.
+ * 
+ * The encoding is:
+ * <pre>
+ * int      magic ("VISG")
+ * short    version
+ * varint   string count, then for each string: varint UTF-8 length + 1 (0 for null) and the UTF-8 bytes
+ * varint   image count, then for each image: varint identifier string index and varint offset of its record in the body
+ * varint   body length, then the body
+ * </pre>
+ * The body is the Study record, then the Series records, then the Image records.
+ * Every record is prefixed with its length.  Fields are only ever added to the end of a record, 
+ * so a reader skips fields written by a later version and defaults fields that an earlier version 
+ * did not write.  Every String, including enum names and identifiers, is written once to the string 
+ * table and referenced by index + 1 (0 for null).  Indexes, counts and lengths are unsigned variable 
+ * length integers (7 bits per byte, high bit set on all but the last byte) so repeated site, patient 
+ * and location values usually cost one or two bytes.  Other ints are zig-zag encoded variable length 
+ * integers and dates are 8 byte longs.
+ * 
+ * The image directory allows a single Image to be decoded without decoding the rest of the graph,
+ * see decodeImage().
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class StudyGraphCodec
+{
+	public final static int MAGIC = 0x56495347;		// "VISG"
+	public final static short VERSION = 1;
+	
+	private final static Charset UTF8 = Charset.forName("UTF-8");
+	private final static long NULL_DATE = Long.MIN_VALUE;
+	
+	private final static byte NO_FIRST_IMAGE = 0;
+	private final static byte FIRST_IMAGE_REFERENCE = 1;
+	private final static byte FIRST_IMAGE_INLINE = 2;
+	
+	private StudyGraphCodec()
+	{
+	}
+	
+	/**
+	 * Return true if the given stream starts with the codec magic number, the stream
+	 * must support mark() and is reset to its starting position.
+	 * 
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public static boolean isEncoded(InputStream in) 
+	throws IOException
+	{
+		if(! in.markSupported())
+			throw new IllegalArgumentException("The input stream must support mark().");
+		in.mark(4);
+		try
+		{
+			int magic = 0;
+			for(int index=0; index < 4; ++index)
+			{
+				int b = in.read();
+				if(b < 0)
+					return false;
+				magic = (magic << 8) | b;
+			}
+			return magic == MAGIC;
+		}
+		finally
+		{
+			in.reset();
+		}
+	}
+	
+	// ===========================================================================================
+	// Encoding
+	// ===========================================================================================
+	/**
+	 * Write the Study graph to the given stream.  The stream is not closed.
+	 * 
+	 * @param study
+	 * @param out
+	 * @throws IOException
+	 */
+	public static void encode(Study study, OutputStream out) 
+	throws IOException
+	{
+		Encoder encoder = new Encoder();
+		byte[] body = encoder.encodeBody(study);
+		
+		DataOutputStream dataOut = new DataOutputStream(out);
+		dataOut.writeInt(MAGIC);
+		dataOut.writeShort(VERSION);
+		
+		writeVarInt(dataOut, encoder.strings.size());
+		for(String value : encoder.strings)
+		{
+			if(value == null)
+				writeVarInt(dataOut, 0);
+			else
+			{
+				byte[] bytes = value.getBytes(UTF8);
+				writeVarInt(dataOut, bytes.length + 1);
+				dataOut.write(bytes);
+			}
+		}
+		
+		writeVarInt(dataOut, encoder.imageIdentifiers.size());
+		for(int ordinal=0; ordinal < encoder.imageIdentifiers.size(); ++ordinal)
+		{
+			writeVarInt(dataOut, encoder.imageIdentifiers.get(ordinal));
+			writeVarInt(dataOut, encoder.imageOffsets.get(ordinal));
+		}
+		
+		writeVarInt(dataOut, body.length);
+		dataOut.write(body);
+		dataOut.flush();
+	}
+	
+	/**
+	 * Holds the string table and image directory while a body is encoded.
+	 */
+	private static class Encoder
+	{
+		private final List<String> strings = new ArrayList<String>();
+		private final Map<String, Integer> stringIndex = new HashMap<String, Integer>();
+		private final List<Integer> imageIdentifiers = new ArrayList<Integer>();
+		private final List<Integer> imageOffsets = new ArrayList<Integer>();
+		private final Map<Image, Integer> imageOrdinals = new IdentityHashMap<Image, Integer>();
+		private final List<Image> images = new ArrayList<Image>();
+		
+		private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(512);
+		private final DataOutputStream record = new DataOutputStream(recordBuffer);
+		
+		byte[] encodeBody(Study study) 
+		throws IOException
+		{
+			// assign image ordinals first so that series and the first image may reference them
+			for(Series series : study)
+				for(Image image : series)
+					ordinal(image);
+			Image firstImage = study.getFirstImage();
+			
+			ByteArrayOutputStream bodyBuffer = new ByteArrayOutputStream(4096);
+			DataOutputStream body = new DataOutputStream(bodyBuffer);
+			
+			writeStudy(study);
+			if(firstImage == null)
+				record.writeByte(NO_FIRST_IMAGE);
+			else if(imageOrdinals.containsKey(firstImage))
+			{
+				record.writeByte(FIRST_IMAGE_REFERENCE);
+				writeVarInt(record, imageOrdinals.get(firstImage));
+			}
+			else
+			{
+				record.writeByte(FIRST_IMAGE_INLINE);
+				writeVarInt(record, ordinal(firstImage));
+			}
+			flushRecord(body);
+			
+			writeVarInt(body, study.getSeriesCount());
+			for(Series series : study)
+			{
+				writeSeries(series);
+				flushRecord(body);
+			}
+			
+			for(Image image : images)
+			{
+				imageOffsets.add(body.size());
+				writeImage(image);
+				flushRecord(body);
+			}
+			
+			body.flush();
+			return bodyBuffer.toByteArray();
+		}
+		
+		private int ordinal(Image image)
+		{
+			Integer ordinal = imageOrdinals.get(image);
+			if(ordinal == null)
+			{
+				ordinal = images.size();
+				images.add(image);
+				imageOrdinals.put(image, ordinal);
+				imageIdentifiers.add(index(identifier(image.getGlobalArtifactIdentifier())));
+			}
+			return ordinal;
+		}
+		
+		private void flushRecord(DataOutputStream body) 
+		throws IOException
+		{
+			record.flush();
+			writeVarInt(body, recordBuffer.size());
+			recordBuffer.writeTo(body);
+			recordBuffer.reset();
+		}
+		
+		private int index(String value)
+		{
+			Integer index = stringIndex.get(value);
+			if(index == null)
+			{
+				index = strings.size();
+				strings.add(value);
+				stringIndex.put(value, index);
+			}
+			return index;
+		}
+		
+		private void writeString(String value) 
+		throws IOException
+		{
+			writeVarInt(record, value == null ? 0 : index(value) + 1);
+		}
+		
+		private void writeEnum(Enum<?> value) 
+		throws IOException
+		{
+			writeString(value == null ? null : value.name());
+		}
+		
+		private void writeDate(Date value) 
+		throws IOException
+		{
+			record.writeLong(value == null ? NULL_DATE : value.getTime());
+		}
+		
+		// version 1 Study fields, new fields must be added at the end
+		private void writeStudy(Study study) 
+		throws IOException
+		{
+			writeString(identifier(study.getGlobalArtifactIdentifier()));
+			writeEnum(study.getStudyLoadLevel());
+			writeEnum(study.getStudyDeletedImageState());
+			writeString(study.getRadiologyReport());
+			writeString(study.getPatientName());
+			writeString(study.getStudyUid());
+			writeString(study.getFirstImageIen());
+			writeString(study.getSiteName());
+			writeString(study.getSiteAbbr());
+			writeString(study.getRpcResponseMsg());
+			writeString(study.getErrorMessage());
+			writeString(study.getAlienSiteNumber());
+			writeEnum(study.getStudyStatus());
+			writeEnum(study.getStudyViewStatus());
+			record.writeBoolean(study.isSensitive());
+			writeDate(study.getProcedureDate());
+			writeDate(study.getDocumentDate());
+			writeString(study.getCptCode());
+			writeString(study.getConsolidatedSiteNumber());
+			writeString(identifier(study.getAlternateArtifactIdentifier()));
+			record.writeBoolean(study.isStudyImagesHaveAnnotations());
+			
+			List<String> keys = new ArrayList<String>();
+			for(Enumeration<String> enumeration = study.getKeys(); enumeration.hasMoreElements(); )
+				keys.add(enumeration.nextElement());
+			writeVarInt(record, keys.size());
+			for(String key : keys)
+			{
+				writeString(key);
+				writeString(study.getValue(key));
+			}
+			
+			if(study.getModalities() == null)
+				writeVarInt(record, 0);
+			else
+			{
+				writeVarInt(record, study.getModalities().size() + 1);
+				for(String modality : study.getModalities())
+					writeString(modality);
+			}
+		}
+		
+		// version 1 Series fields, new fields must be added at the end
+		private void writeSeries(Series series) 
+		throws IOException
+		{
+			writeString(series.getSeriesUid());
+			writeString(series.getSeriesIen());
+			writeString(series.getSeriesNumber());
+			writeString(series.getModality());
+			writeEnum(series.getObjectOrigin());
+			writeVarInt(record, series.getImageCount());
+			for(Image image : series)
+				writeVarInt(record, imageOrdinals.get(image));
+		}
+		
+		// version 1 Image fields, new fields must be added at the end
+		private void writeImage(Image image) 
+		throws IOException
+		{
+			writeString(identifier(image.getGlobalArtifactIdentifier()));
+			writeString(image.getAbsFilename());
+			writeString(image.getFullFilename());
+			writeString(image.getBigFilename());
+			writeString(image.getDescription());
+			writeDate(image.getProcedureDate());
+			writeString(image.getProcedure());
+			writeSignedVarInt(record, image.getImgType());
+			writeString(image.getAbsLocation());
+			writeString(image.getFullLocation());
+			writeString(image.getDicomSequenceNumberForDisplay());
+			writeString(image.getDicomImageNumberForDisplay());
+			writeString(image.getPatientDFN());
+			writeString(image.getPatientName());
+			writeString(image.getImageClass());
+			writeString(image.getSiteAbbr());
+			writeString(image.getImageUid());
+			writeString(image.getImageNumber());
+			writeString(image.getQaMessage());
+			writeEnum(image.getObjectOrigin());
+			writeString(image.getErrorMessage());
+			writeString(image.getAlienSiteNumber());
+			writeEnum(image.getImageStatus());
+			writeEnum(image.getImageViewStatus());
+			record.writeBoolean(image.isSensitive());
+			writeDate(image.getDocumentDate());
+			writeDate(image.getCaptureDate());
+			writeString(image.getConsolidatedSiteNumber());
+			record.writeBoolean(image.isImageHasAnnotations());
+			writeString(image.getAssociatedNoteResulted());
+			writeSignedVarInt(record, image.getImageAnnotationStatus());
+			writeString(image.getImageAnnotationStatusDescription());
+			writeString(image.getImagePackage());
+		}
+	}
+	
+	/**
+	 * Write an unsigned variable length int, 7 bits per byte with the high bit set on all but the last byte.
+	 */
+	static void writeVarInt(DataOutput out, int value) 
+	throws IOException
+	{
+		while((value & ~0x7F) != 0)
+		{
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+	
+	/**
+	 * Write a signed variable length int, zig-zag encoded so that small negative values are short.
+	 */
+	static void writeSignedVarInt(DataOutput out, int value) 
+	throws IOException
+	{
+		writeVarInt(out, (value << 1) ^ (value >> 31));
+	}
+	
+	// the RAW format includes the additional identifiers (i.e. the patient identifier type)
+	private static String identifier(GlobalArtifactIdentifier identifier)
+	{
+		return identifier == null ? null : identifier.toString(SERIALIZATION_FORMAT.RAW);
+	}
+	
+	// ===========================================================================================
+	// Decoding
+	// ===========================================================================================
+	/**
+	 * Read a Study graph from the given stream.  The stream is not closed.
+	 * 
+	 * @param in
+	 * @return
+	 * @throws IOException if the stream is not a Study graph, was written by an unknown 
+	 * version or is corrupt
+	 */
+	public static Study decode(InputStream in) 
+	throws IOException
+	{
+		Header header = new Header(in);
+		byte[] body = new byte[readVarInt(header.dataIn)];
+		header.dataIn.readFully(body);
+		
+		Decoder decoder = new Decoder(header, ByteBuffer.wrap(body));
+		return decoder.decodeStudy();
+	}
+	
+	/**
+	 * Read a single Image from a Study graph without decoding the rest of the graph.
+	 * 
+	 * @param in
+	 * @param imageIdentifier
+	 * @return the Image or null if the Study graph does not contain the Image
+	 * @throws IOException if the stream is not a Study graph, was written by an unknown 
+	 * version or is corrupt
+	 */
+	public static Image decodeImage(InputStream in, GlobalArtifactIdentifier imageIdentifier) 
+	throws IOException
+	{
+		Header header = new Header(in);
+		String identifier = identifier(imageIdentifier);
+		
+		int ordinal = -1;
+		for(int index=0; index < header.imageIdentifiers.length && ordinal < 0; ++index)
+			if(header.imageIdentifiers[index] >= 0 && header.strings[header.imageIdentifiers[index]].equals(identifier))
+				ordinal = index;
+		if(ordinal < 0)
+			return null;
+		
+		readVarInt(header.dataIn);
+		skipFully(header.dataIn, header.imageOffsets[ordinal]);
+		byte[] record = new byte[readVarInt(header.dataIn)];
+		header.dataIn.readFully(record);
+		
+		Decoder decoder = new Decoder(header, ByteBuffer.wrap(record));
+		decoder.beginRecord(record.length);
+		return decoder.readImageFields();
+	}
+	
+	private static void skipFully(InputStream in, long count) 
+	throws IOException
+	{
+		while(count > 0)
+		{
+			long skipped = in.skip(count);
+			if(skipped <= 0)
+			{
+				if(in.read() < 0)
+					throw new EOFException("Unexpected end of Study graph.");
+				skipped = 1;
+			}
+			count -= skipped;
+		}
+	}
+	
+	/**
+	 * The magic number, version, string table and image directory.
+	 */
+	private static class Header
+	{
+		private final DataInputStream dataIn;
+		private final short version;
+		private final String[] strings;
+		private final int[] imageIdentifiers;
+		private final int[] imageOffsets;
+		
+		Header(InputStream in) 
+		throws IOException
+		{
+			dataIn = new DataInputStream(in);
+			if(dataIn.readInt() != MAGIC)
+				throw new IOException("The stream is not an encoded Study graph.");
+			version = dataIn.readShort();
+			if(version < 1 || version > VERSION)
+				throw new IOException("The Study graph was written by version " + version + ", this reader understands versions through " + VERSION + ".");
+			
+			strings = new String[readVarInt(dataIn)];
+			byte[] scratch = new byte[256];
+			for(int index=0; index < strings.length; ++index)
+			{
+				int length = readVarInt(dataIn) - 1;
+				if(length >= 0)
+				{
+					if(length > scratch.length)
+						scratch = new byte[Math.max(length, scratch.length * 2)];
+					dataIn.readFully(scratch, 0, length);
+					strings[index] = new String(scratch, 0, length, UTF8);
+				}
+			}
+			
+			int imageCount = readVarInt(dataIn);
+			imageIdentifiers = new int[imageCount];
+			imageOffsets = new int[imageCount];
+			for(int index=0; index < imageCount; ++index)
+			{
+				imageIdentifiers[index] = readVarInt(dataIn);
+				imageOffsets[index] = readVarInt(dataIn);
+			}
+		}
+	}
+	
+	static int readVarInt(DataInput in) 
+	throws IOException
+	{
+		int value = 0;
+		for(int shift=0; shift < 35; shift += 7)
+		{
+			byte b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			if((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Malformed variable length int, the Study graph is corrupt.");
+	}
+	
+	static int readVarInt(ByteBuffer in) 
+	throws IOException
+	{
+		int value = 0;
+		for(int shift=0; shift < 35; shift += 7)
+		{
+			byte b = in.get();
+			value |= (b & 0x7F) << shift;
+			if((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Malformed variable length int, the Study graph is corrupt.");
+	}
+	
+	static int readSignedVarInt(ByteBuffer in) 
+	throws IOException
+	{
+		int value = readVarInt(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+	/**
+	 * Decodes records from the body.
+	 */
+	private static class Decoder
+	{
+		private final Header header;
+		private final ByteBuffer body;
+		private int recordEnd;
+		private Image[] images;
+		
+		Decoder(Header header, ByteBuffer body)
+		{
+			this.header = header;
+			this.body = body;
+		}
+		
+		Study decodeStudy() 
+		throws IOException
+		{
+			images = new Image[header.imageOffsets.length];
+			for(int ordinal=0; ordinal < images.length; ++ordinal)
+			{
+				body.position(header.imageOffsets[ordinal]);
+				images[ordinal] = readImage();
+			}
+			
+			body.position(0);
+			Study study = readStudy();
+			
+			int seriesCount = readVarInt(body);
+			for(int index=0; index < seriesCount; ++index)
+				study.addSeries(readSeries());
+			
+			return study;
+		}
+		
+		private void beginRecord() 
+		throws IOException
+		{
+			beginRecord(readVarInt(body));
+		}
+		
+		void beginRecord(int length)
+		{
+			recordEnd = body.position() + length;
+		}
+		
+		/**
+		 * @return true if the current record has more fields, that is it was written by a 
+		 * version that knew about the next field
+		 */
+		private boolean hasMore()
+		{
+			return body.position() < recordEnd;
+		}
+		
+		private void endRecord()
+		{
+			// skip any fields written by a later version
+			body.position(recordEnd);
+		}
+		
+		private String readString() 
+		throws IOException
+		{
+			int index = readVarInt(body) - 1;
+			if(index < 0)
+				return null;
+			if(index >= header.strings.length)
+				throw new IOException("String index " + index + " is out of range, the Study graph is corrupt.");
+			return header.strings[index];
+		}
+		
+		private <E extends Enum<E>> E readEnum(Class<E> enumClass) 
+		throws IOException
+		{
+			String name = readString();
+			if(name == null)
+				return null;
+			try
+			{
+				return Enum.valueOf(enumClass, name);
+			}
+			catch(IllegalArgumentException iaX)
+			{
+				throw new IOException("Unknown " + enumClass.getSimpleName() + " value '" + name + "'.");
+			}
+		}
+		
+		private Date readDate()
+		{
+			long value = body.getLong();
+			return value == NULL_DATE ? null : new Date(value);
+		}
+		
+		private boolean readBoolean()
+		{
+			return body.get() != 0;
+		}
+		
+		private GlobalArtifactIdentifier readIdentifier() 
+		throws IOException
+		{
+			String identifier = readString();
+			if(identifier == null)
+				return null;
+			try
+			{
+				return GlobalArtifactIdentifierFactory.create(identifier, SERIALIZATION_FORMAT.RAW);
+			}
+			catch(Exception x)
+			{
+				throw new IOException("Unable to parse identifier '" + identifier + "', " + x.getMessage());
+			}
+		}
+		
+		private Study readStudy() 
+		throws IOException
+		{
+			beginRecord();
+			GlobalArtifactIdentifier identifier = readIdentifier();
+			StudyLoadLevel studyLoadLevel = readEnum(StudyLoadLevel.class);
+			StudyDeletedImageState studyDeletedImageState = readEnum(StudyDeletedImageState.class);
+			Study study = Study.create(identifier, studyLoadLevel, studyDeletedImageState);
+			if(study == null)
+				throw new IOException("Unable to create a Study from the encoded identifier and load level.");
+			
+			// setting a report promotes the load level, the encoded load level already reflects that
+			// so only set a report that does not promote, or one that differs from the constructor default
+			String radiologyReport = readString();
+			if(radiologyReport == null || !"".equals(radiologyReport) || 
+				StudyLoadLevel.promoteWithReport(studyLoadLevel) == studyLoadLevel)
+				study.setRadiologyReport(radiologyReport);
+			
+			study.setPatientName(readString());
+			study.setStudyUid(readString());
+			study.setFirstImageIen(readString());
+			study.setSiteName(readString());
+			study.setSiteAbbr(readString());
+			study.setRpcResponseMsg(readString());
+			study.setErrorMessage(readString());
+			study.setAlienSiteNumber(readString());
+			study.setStudyStatus(readEnum(ObjectStatus.class));
+			study.setStudyViewStatus(readEnum(ObjectStatus.class));
+			study.setSensitive(readBoolean());
+			study.setProcedureDate(readDate());
+			study.setDocumentDate(readDate());
+			study.setCptCode(readString());
+			study.setConsolidatedSiteNumber(readString());
+			study.setAlternateArtifactIdentifier(readIdentifier());
+			study.setStudyImagesHaveAnnotations(readBoolean());
+			
+			int valueCount = readVarInt(body);
+			for(int index=0; index < valueCount; ++index)
+			{
+				String key = readString();
+				String value = readString();
+				if(key != null && value != null)
+					study.setValue(key, value);
+			}
+			
+			int modalityCount = readVarInt(body) - 1;
+			for(int index=0; index < modalityCount; ++index)
+				study.addModality(readString());
+			
+			byte firstImageKind = body.get();
+			if(firstImageKind == FIRST_IMAGE_REFERENCE || firstImageKind == FIRST_IMAGE_INLINE)
+				study.setFirstImage(image(readVarInt(body)));
+			
+			endRecord();
+			return study;
+		}
+		
+		private Series readSeries() 
+		throws IOException
+		{
+			beginRecord();
+			Series series = new Series();
+			series.setSeriesUid(readString());
+			series.setSeriesIen(readString());
+			series.setSeriesNumber(readString());
+			series.setModality(readString());
+			series.setObjectOrigin(readEnum(ObjectOrigin.class));
+			int imageCount = readVarInt(body);
+			for(int index=0; index < imageCount; ++index)
+				series.addImage(image(readVarInt(body)));
+			endRecord();
+			return series;
+		}
+		
+		private Image image(int ordinal) 
+		throws IOException
+		{
+			if(ordinal < 0 || ordinal >= images.length)
+				throw new IOException("Image ordinal " + ordinal + " is out of range, the Study graph is corrupt.");
+			return images[ordinal];
+		}
+		
+		private Image readImage() 
+		throws IOException
+		{
+			beginRecord();
+			return readImageFields();
+		}
+		
+		Image readImageFields() 
+		throws IOException
+		{
+			Image image = Image.create(readIdentifier());
+			image.setAbsFilename(readString());
+			image.setFullFilename(readString());
+			image.setBigFilename(readString());
+			image.setDescription(readString());
+			image.setProcedureDate(readDate());
+			image.setProcedure(readString());
+			image.setImgType(readSignedVarInt(body));
+			image.setAbsLocation(readString());
+			image.setFullLocation(readString());
+			image.setDicomSequenceNumberForDisplay(readString());
+			image.setDicomImageNumberForDisplay(readString());
+			image.setPatientDFN(readString());
+			image.setPatientName(readString());
+			image.setImageClass(readString());
+			image.setSiteAbbr(readString());
+			image.setImageUid(readString());
+			image.setImageNumber(readString());
+			image.setQaMessage(readString());
+			image.setObjectOrigin(readEnum(ObjectOrigin.class));
+			image.setErrorMessage(readString());
+			image.setAlienSiteNumber(readString());
+			image.setImageStatus(readEnum(ObjectStatus.class));
+			image.setImageViewStatus(readEnum(ObjectStatus.class));
+			image.setSensitive(readBoolean());
+			image.setDocumentDate(readDate());
+			image.setCaptureDate(readDate());
+			image.setConsolidatedSiteNumber(readString());
+			image.setImageHasAnnotations(readBoolean());
+			image.setAssociatedNoteResulted(readString());
+			image.setImageAnnotationStatus(readSignedVarInt(body));
+			image.setImageAnnotationStatusDescription(readString());
+			image.setImagePackage(readString());
+			endRecord();
+			return image;
+		}
+	}
+}
@@ -4,6 +4,7 @@ import gov.va.med.GlobalArtifactIdentifier;
 import gov.va.med.PatientIdentifier;
 import gov.va.med.RoutingToken;
 import gov.va.med.imaging.GUID;
+import gov.va.med.imaging.exchange.business.Image;
 import gov.va.med.imaging.exchange.business.Study;
 import gov.va.med.imaging.exchange.business.vistarad.ExamSite;
 import gov.va.med.imaging.exchange.business.vistarad.PatientEnterpriseExams;
@@ -104,6 +105,15 @@ implements VASourcedCache
 		return getStudy(groups, groupKey);
 	}
 
+	public Image getStudyImage(GlobalArtifactIdentifier studyGaid, GlobalArtifactIdentifier imageGaid) 
+	throws CacheException
+	{
+		String[] groups = AbstractCacheDecorator.createInternalInstanceGroupKeys(studyGaid, true);
+		String groupKey = AbstractCacheDecorator.createStudyKey(studyGaid);
+		
+		return getStudyImage(groups, groupKey, imageGaid);
+	}
+
 	private String createPatientEnterpriseExamsKey(String patientICN)
 	{
 		return "patientEnterpriseExams.xml";
@@ -26,6 +26,7 @@ package gov.va.med.imaging.exchange.storage.cache.mock;
 
 import java.io.Serializable;
 import gov.va.med.GlobalArtifactIdentifier;
+import gov.va.med.imaging.exchange.business.Image;
 import gov.va.med.imaging.exchange.business.Study;
 import gov.va.med.imaging.exchange.business.documents.Document;
 import gov.va.med.imaging.exchange.enums.StudyDeletedImageState;
@@ -59,6 +60,14 @@ implements RealizedCache
 				StudyDeletedImageState.cannotIncludeDeletedImages);
 	}
 
+	public Image getStudyImage(GlobalArtifactIdentifier studyGai, GlobalArtifactIdentifier imageGai) throws CacheException
+	{
+		if( MockCacheConfigurator.getGetStudyCacheException() != null)
+			throw MockCacheConfigurator.getGetStudyCacheException();
+		
+		return null;
+	}
+
 	public ImmutableInstance createDocumentContent(GlobalArtifactIdentifier gaid) throws CacheException
 	{
 		if( MockCacheConfigurator.getCreateImageCacheException() != null)
@@ -103,6 +103,15 @@ implements Instance
 	{
 		return new MockInstanceReadableByteChannel();
 	}
+	
+	/**
+	 * @see gov.va.med.imaging.storage.cache.Instance#getTailingReadableChannel()
+	 */
+	@Override
+	public InstanceReadableByteChannel getTailingReadableChannel() throws CacheException
+	{
+		return new MockInstanceReadableByteChannel();
+	}
 
 	/**
 	 * @see gov.va.med.imaging.storage.cache.Instance#getSize()
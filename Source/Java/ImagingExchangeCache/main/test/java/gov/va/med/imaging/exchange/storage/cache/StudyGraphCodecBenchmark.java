@@ -0,0 +1,133 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.exchange.storage.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import gov.va.med.GlobalArtifactIdentifier;
+import gov.va.med.imaging.exchange.business.Image;
+import gov.va.med.imaging.exchange.business.Series;
+import gov.va.med.imaging.exchange.business.Study;
+
+/**
+ * Compares Java serialization of a large Study graph, the way the metadata regions
+ * stored it before, against StudyGraphCodec: the encoded size, the CPU time to
+ * encode and decode the whole graph and the CPU time to get one Image out of the
+ * cached graph.
+ * 
+ * Run as a Java application, this is not a unit test.
+ * usage: StudyGraphCodecBenchmark [iterations] [series] [images per series]
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class StudyGraphCodecBenchmark
+{
+	public static void main(String[] args) 
+	throws Exception
+	{
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		int seriesCount = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		int imagesPerSeries = args.length > 2 ? Integer.parseInt(args[2]) : 250;
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		
+		Study study = TestStudyGraphCodec.createStudy(seriesCount, imagesPerSeries);
+		// an image from the middle of the study
+		Image middleImage = null;
+		int seriesIndex = 0;
+		for(Series series : study)
+			if(seriesIndex++ == seriesCount / 2)
+				middleImage = series.iterator().next();
+		GlobalArtifactIdentifier imageIdentifier = middleImage.getGlobalArtifactIdentifier();
+		
+		byte[] serialized = null;
+		byte[] encoded = null;
+		long serializeCpu = 0L, deserializeCpu = 0L, encodeCpu = 0L, decodeCpu = 0L, serializedImageCpu = 0L, decodeImageCpu = 0L;
+		
+		// the first pass is a warm up
+		for(int iteration = 0; iteration <= iterations; ++iteration)
+		{
+			long start = threadBean.getCurrentThreadCpuTime();
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ObjectOutputStream objectOut = new ObjectOutputStream(out);
+			objectOut.writeObject(study);
+			objectOut.close();
+			serialized = out.toByteArray();
+			long serialize = threadBean.getCurrentThreadCpuTime() - start;
+			
+			start = threadBean.getCurrentThreadCpuTime();
+			Study deserialized = (Study)new ObjectInputStream(new ByteArrayInputStream(serialized)).readObject();
+			long deserialize = threadBean.getCurrentThreadCpuTime() - start;
+			
+			// before the codec the only way to one image was the whole graph
+			start = threadBean.getCurrentThreadCpuTime();
+			deserialized = (Study)new ObjectInputStream(new ByteArrayInputStream(serialized)).readObject();
+			Image serializedImage = null;
+			for(Series series : deserialized)
+				for(Image image : series)
+					if(imageIdentifier.equals(image.getGlobalArtifactIdentifier()))
+						serializedImage = image;
+			long serializedImageTime = threadBean.getCurrentThreadCpuTime() - start;
+			
+			start = threadBean.getCurrentThreadCpuTime();
+			out = new ByteArrayOutputStream();
+			StudyGraphCodec.encode(study, out);
+			encoded = out.toByteArray();
+			long encode = threadBean.getCurrentThreadCpuTime() - start;
+			
+			start = threadBean.getCurrentThreadCpuTime();
+			Study decoded = StudyGraphCodec.decode(new ByteArrayInputStream(encoded));
+			long decode = threadBean.getCurrentThreadCpuTime() - start;
+			
+			start = threadBean.getCurrentThreadCpuTime();
+			Image decodedImage = StudyGraphCodec.decodeImage(new ByteArrayInputStream(encoded), imageIdentifier);
+			long decodeImage = threadBean.getCurrentThreadCpuTime() - start;
+			
+			if(decoded.getSeriesCount() != deserialized.getSeriesCount() || decodedImage == null || serializedImage == null)
+				throw new IllegalStateException("The decoded study does not match the serialized study.");
+			
+			if(iteration > 0)
+			{
+				serializeCpu += serialize;
+				deserializeCpu += deserialize;
+				serializedImageCpu += serializedImageTime;
+				encodeCpu += encode;
+				decodeCpu += decode;
+				decodeImageCpu += decodeImage;
+			}
+		}
+		
+		System.out.println("Study of " + seriesCount + " series, " + (seriesCount * imagesPerSeries) + " images, " + iterations + " iterations.");
+		System.out.println(String.format("Serialization: %d bytes, write %.2f CPU ms, read %.2f CPU ms, one image %.2f CPU ms", 
+			serialized.length, serializeCpu / 1000000.0 / iterations, deserializeCpu / 1000000.0 / iterations, serializedImageCpu / 1000000.0 / iterations));
+		System.out.println(String.format("Codec:         %d bytes, write %.2f CPU ms, read %.2f CPU ms, one image %.2f CPU ms", 
+			encoded.length, encodeCpu / 1000000.0 / iterations, decodeCpu / 1000000.0 / iterations, decodeImageCpu / 1000000.0 / iterations));
+	}
+}
@@ -0,0 +1,254 @@
+/**
+ * 
+ */
+package gov.va.med.imaging.exchange.storage.cache;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+
+import gov.va.med.ImageURNFactory;
+import gov.va.med.PatientIdentifier;
+import gov.va.med.PatientIdentifierType;
+import gov.va.med.imaging.ImageURN;
+import gov.va.med.imaging.exchange.business.Image;
+import gov.va.med.imaging.exchange.business.Series;
+import gov.va.med.imaging.exchange.business.Study;
+import gov.va.med.imaging.exchange.enums.ObjectOrigin;
+import gov.va.med.imaging.exchange.enums.ObjectStatus;
+import gov.va.med.imaging.exchange.enums.StudyDeletedImageState;
+import gov.va.med.imaging.exchange.enums.StudyLoadLevel;
+
+/**
+ * Test that a Study graph survives encoding and decoding, that a single Image
+ * may be decoded from the graph and that unknown versions are rejected.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TestStudyGraphCodec 
+extends TestCase
+{
+	/**
+	 * Values parsed from a VistA response are distinct String instances even when 
+	 * they are equal, Java serialization only shares identical instances.
+	 */
+	private static String parsed(String value)
+	{
+		return new String(value);
+	}
+	
+	/**
+	 * Create a Study with the given number of Series and Images, the values 
+	 * repeat the way a real Study does (same site, patient and location).
+	 */
+	static Study createStudy(int seriesCount, int imagesPerSeries) 
+	throws Exception
+	{
+		PatientIdentifier patientIdentifier = PatientIdentifier.icnPatientIdentifier("1008523099V750710");
+		Study study = Study.create(ObjectOrigin.VA, "660", "7654", patientIdentifier, 
+				StudyLoadLevel.STUDY_AND_IMAGES, StudyDeletedImageState.cannotIncludeDeletedImages);
+		study.setPatientName("IMAGPATIENT1055,1055");
+		study.setSiteName("Salt Lake City");
+		study.setSiteAbbr("SLC");
+		study.setStudyUid("1.2.840.113754.1.4.660.6879389.8733.1.111208.7654");
+		study.setFirstImageIen("7655");
+		study.setProcedureDate(new Date(1323360000000L));
+		study.setDescription("CT CHEST W/O CONTRAST");
+		study.setStudyClass("CLIN");
+		study.setImageCount(seriesCount * imagesPerSeries);
+		study.addModality("CT");
+		study.setStudyStatus(ObjectStatus.VIEWABLE);
+		study.setSensitive(true);
+		study.setConsolidatedSiteNumber("660");
+		
+		int imageIen = 7655;
+		for(int seriesIndex=0; seriesIndex < seriesCount; ++seriesIndex)
+		{
+			Series series = Series.create(ObjectOrigin.VA, "" + seriesIndex, "" + (seriesIndex + 1));
+			series.setModality("CT");
+			series.setSeriesUid("1.2.840.113754.1.4.660.6879389.8733.2." + seriesIndex);
+			for(int imageIndex=0; imageIndex < imagesPerSeries; ++imageIndex, ++imageIen)
+			{
+				ImageURN imageUrn = ImageURNFactory.create("660", "" + imageIen, "7654", 
+						patientIdentifier.getValue(), "CT", ImageURN.class);
+				imageUrn.setPatientIdentifierTypeIfNecessary(PatientIdentifierType.dfn);
+				Image image = Image.create(imageUrn);
+				image.setAbsFilename("\\\\vhaislimm1\\image1$\\SLC\\00\\07\\65\\SLC0007" + imageIen + ".ABS");
+				image.setFullFilename("\\\\vhaislimm1\\image1$\\SLC\\00\\07\\65\\SLC0007" + imageIen + ".DCM");
+				image.setBigFilename(parsed(""));
+				image.setAbsLocation(parsed("M"));
+				image.setFullLocation(parsed("M"));
+				image.setDescription(parsed("CT CHEST W/O CONTRAST"));
+				image.setProcedure(parsed("RAD CT"));
+				image.setProcedureDate(new Date(study.getProcedureDate().getTime()));
+				image.setImgType(100);
+				image.setPatientDFN(parsed("1055"));
+				image.setPatientName(parsed("IMAGPATIENT1055,1055"));
+				image.setImageClass(parsed("CLIN"));
+				image.setSiteAbbr(parsed("SLC"));
+				image.setImageUid("1.2.840.113754.1.4.660.6879389.8733.3." + imageIen);
+				image.setImageNumber("" + (imageIndex + 1));
+				image.setDicomSequenceNumberForDisplay("" + (seriesIndex + 1));
+				image.setDicomImageNumberForDisplay("" + (imageIndex + 1));
+				image.setObjectOrigin(ObjectOrigin.VA);
+				image.setImageStatus(ObjectStatus.VIEWABLE);
+				image.setCaptureDate(new Date(1323363600000L + imageIndex));
+				series.addImage(image);
+				if(seriesIndex == 0 && imageIndex == 0)
+					study.setFirstImage(image);
+			}
+			study.addSeries(series);
+		}
+		return study;
+	}
+	
+	private static byte[] encode(Study study) 
+	throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		StudyGraphCodec.encode(study, out);
+		return out.toByteArray();
+	}
+	
+	private void assertImageEquals(Image expected, Image actual)
+	{
+		assertEquals(expected.getGlobalArtifactIdentifier(), actual.getGlobalArtifactIdentifier());
+		assertEquals(expected.getPatientIdentifierType(), actual.getPatientIdentifierType());
+		assertEquals(expected.getAbsFilename(), actual.getAbsFilename());
+		assertEquals(expected.getFullFilename(), actual.getFullFilename());
+		assertEquals(expected.getDescription(), actual.getDescription());
+		assertEquals(expected.getProcedureDate(), actual.getProcedureDate());
+		assertEquals(expected.getImgType(), actual.getImgType());
+		assertEquals(expected.getImageUid(), actual.getImageUid());
+		assertEquals(expected.getImageStatus(), actual.getImageStatus());
+		assertEquals(expected.getImageViewStatus(), actual.getImageViewStatus());
+		assertEquals(expected.getCaptureDate(), actual.getCaptureDate());
+		assertEquals(expected.getDocumentDate(), actual.getDocumentDate());
+		assertEquals(expected.getConsolidatedSiteNumber(), actual.getConsolidatedSiteNumber());
+		assertEquals(expected.getImagePackage(), actual.getImagePackage());
+	}
+	
+	public void testRoundTrip() 
+	throws Exception
+	{
+		Study study = createStudy(3, 20);
+		byte[] encoded = encode(study);
+		Study decoded = StudyGraphCodec.decode(new ByteArrayInputStream(encoded));
+		
+		assertEquals(study.getGlobalArtifactIdentifier(), decoded.getGlobalArtifactIdentifier());
+		assertEquals(study.getStudyLoadLevel(), decoded.getStudyLoadLevel());
+		assertEquals(study.getStudyDeletedImageState(), decoded.getStudyDeletedImageState());
+		assertEquals(study.getPatientName(), decoded.getPatientName());
+		assertEquals(study.getStudyUid(), decoded.getStudyUid());
+		assertEquals(study.getDescription(), decoded.getDescription());
+		assertEquals(study.getImageCount(), decoded.getImageCount());
+		assertEquals(study.getProcedureDate(), decoded.getProcedureDate());
+		assertEquals(study.getModalities(), decoded.getModalities());
+		assertEquals(study.getStudyStatus(), decoded.getStudyStatus());
+		assertEquals(study.isSensitive(), decoded.isSensitive());
+		assertEquals(study.getRadiologyReport(), decoded.getRadiologyReport());
+		assertEquals(study.getSeriesCount(), decoded.getSeriesCount());
+		
+		Iterator<Series> decodedSeriesIter = decoded.iterator();
+		for(Series series : study)
+		{
+			Series decodedSeries = decodedSeriesIter.next();
+			assertEquals(series.getSeriesUid(), decodedSeries.getSeriesUid());
+			assertEquals(series.getImageCount(), decodedSeries.getImageCount());
+			Iterator<Image> decodedImageIter = decodedSeries.iterator();
+			for(Image image : series)
+				assertImageEquals(image, decodedImageIter.next());
+		}
+		
+		// the first image is the same object as the image in the series
+		assertSame(decoded.iterator().next().iterator().next(), decoded.getFirstImage());
+	}
+	
+	public void testRepeatedValuesAreWrittenOnce() 
+	throws Exception
+	{
+		byte[] oneImage = encode(createStudy(1, 1));
+		byte[] twoImages = encode(createStudy(1, 2));
+		
+		// the second image adds its own identifiers and file names, the repeated values are references
+		String patientName = "IMAGPATIENT1055,1055";
+		assertEquals(1, count(twoImages, patientName.getBytes("UTF-8")));
+		assertTrue(twoImages.length - oneImage.length < 600);
+	}
+	
+	private int count(byte[] content, byte[] pattern)
+	{
+		int count = 0;
+		for(int index=0; index <= content.length - pattern.length; ++index)
+		{
+			int match = 0;
+			while(match < pattern.length && content[index + match] == pattern[match])
+				++match;
+			if(match == pattern.length)
+				++count;
+		}
+		return count;
+	}
+	
+	public void testLoadLevelIsNotPromoted() 
+	throws Exception
+	{
+		Study study = Study.create(ObjectOrigin.VA, "660", "1", PatientIdentifier.icnPatientIdentifier("1008"), 
+				StudyLoadLevel.STUDY_ONLY, StudyDeletedImageState.cannotIncludeDeletedImages);
+		Study decoded = StudyGraphCodec.decode(new ByteArrayInputStream(encode(study)));
+		assertEquals(StudyLoadLevel.STUDY_ONLY, decoded.getStudyLoadLevel());
+		assertEquals("", decoded.getRadiologyReport());
+		
+		study.setRadiologyReport("NO ACUTE FINDINGS");
+		decoded = StudyGraphCodec.decode(new ByteArrayInputStream(encode(study)));
+		assertEquals(StudyLoadLevel.STUDY_AND_REPORT, decoded.getStudyLoadLevel());
+		assertEquals("NO ACUTE FINDINGS", decoded.getRadiologyReport());
+	}
+	
+	public void testDecodeImage() 
+	throws Exception
+	{
+		Study study = createStudy(4, 25);
+		byte[] encoded = encode(study);
+		
+		Image expected = null;
+		Iterator<Series> seriesIter = study.iterator();
+		seriesIter.next();
+		seriesIter.next();
+		Iterator<Image> imageIter = seriesIter.next().iterator();
+		for(int index=0; index < 10; ++index)
+			expected = imageIter.next();
+		
+		Image decoded = StudyGraphCodec.decodeImage(new ByteArrayInputStream(encoded), expected.getGlobalArtifactIdentifier());
+		assertNotNull(decoded);
+		assertImageEquals(expected, decoded);
+		
+		ImageURN unknown = ImageURNFactory.create("660", "1", "7654", "1008523099V750710", "CT", ImageURN.class);
+		assertNull( StudyGraphCodec.decodeImage(new ByteArrayInputStream(encoded), unknown) );
+	}
+	
+	public void testFormatDetection() 
+	throws Exception
+	{
+		byte[] encoded = encode(createStudy(1, 1));
+		assertTrue( StudyGraphCodec.isEncoded(new BufferedInputStream(new ByteArrayInputStream(encoded))) );
+		assertFalse( StudyGraphCodec.isEncoded(new BufferedInputStream(new ByteArrayInputStream(new byte[]{(byte)0xAC, (byte)0xED, 0, 5}))) );
+		
+		// a version written by a later release is rejected rather than misread
+		encoded[5] = (byte)(StudyGraphCodec.VERSION + 1);
+		try
+		{
+			StudyGraphCodec.decode(new ByteArrayInputStream(encoded));
+			fail("A later version should not be decoded.");
+		}
+		catch(IOException ioX)
+		{
+		}
+	}
+}
@@ -18,6 +18,8 @@ import gov.va.med.imaging.exchange.business.Series;
 import gov.va.med.imaging.exchange.business.Study;
 import gov.va.med.imaging.exchange.business.StudyFilter;
 import gov.va.med.imaging.exchange.business.StudySetResult;
+import gov.va.med.imaging.exchange.business.StudySetResultListener;
+import gov.va.med.imaging.exchange.business.StudySetResultListenerContext;
 import gov.va.med.imaging.exchange.enums.StudyLoadLevel;
 import gov.va.med.imaging.router.facade.ImagingContext;
 import gov.va.med.imaging.transactioncontext.TransactionContext;
@@ -90,11 +92,35 @@ extends AbstractImagingCommandImpl<R>
 		
 		try
 		{
-			StudySetResult studySet = ImagingContext.getRouter().getStudySet(
-				routingToken, 
-				patientIdentifier, 
-				filter, 
-				studyLoadLevel);				
+			// if the studies are wanted before this command completes, make the listener available
+			// to the data source, with the same consolidated site updates as the complete result
+			final StudySetResultListener studySetResultListener = getStudySetResultListener();
+			StudySetResultListener previousListener = StudySetResultListenerContext.getListener();
+			if(studySetResultListener != null)
+				StudySetResultListenerContext.setListener(new StudySetResultListener()
+				{
+					@Override
+					public void studySetResultAvailable(StudySetResult partialResult)
+					{
+						studySetResultListener.studySetResultAvailable(
+							CommonStudyFunctions.updateConsolidatedSitesInStudySetResult(partialResult, 
+								getCommandContext()));
+					}
+				});
+			StudySetResult studySet = null;
+			try
+			{
+				studySet = ImagingContext.getRouter().getStudySet(
+					routingToken, 
+					patientIdentifier, 
+					filter, 
+					studyLoadLevel);
+			}
+			finally
+			{
+				if(studySetResultListener != null)
+					StudySetResultListenerContext.setListener(previousListener);
+			}
 			getLogger().info("Got " + ((studySet == null || studySet.getArtifacts() == null || studySet.getArtifacts().size() == 0) ? "no" : studySet.getArtifacts().size()) + 
 					" patient '" + patientIdentifier + "' studies.");
 			
@@ -158,6 +184,19 @@ extends AbstractImagingCommandImpl<R>
 		}
 	}
 	
+	/**
+	 * 
+	 * @return the listener of this command that receives studies before the command completes,
+	 * or null if there is none
+	 */
+	protected StudySetResultListener getStudySetResultListener()
+	{
+		for(Object listener : getListeners())
+			if(listener instanceof StudySetResultListener)
+				return (StudySetResultListener)listener;
+		return null;
+	}
+	
 	private void startAsyncFullStudyGraphRequest(RoutingToken routingToken, PatientIdentifier patientIdentifier, 
 			StudyFilter filter)
 	{
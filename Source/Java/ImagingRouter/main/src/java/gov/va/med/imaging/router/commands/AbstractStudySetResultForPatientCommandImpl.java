@@ -40,6 +40,7 @@ import gov.va.med.imaging.exchange.business.ArtifactResultError;
 import gov.va.med.imaging.exchange.business.Study;
 import gov.va.med.imaging.exchange.business.StudyFilter;
 import gov.va.med.imaging.exchange.business.StudySetResult;
+import gov.va.med.imaging.exchange.business.StudySetResultListener;
 import gov.va.med.imaging.exchange.enums.ArtifactResultStatus;
 import gov.va.med.imaging.exchange.enums.StudyLoadLevel;
 import gov.va.med.imaging.router.facade.ImagingContext;
@@ -48,6 +49,8 @@ import gov.va.med.imaging.router.facade.ImagingContext;
  * This command calls GetCumulativeStatisticsStudySetResultForPatientCommand which is called for each
  * site the patient has been seen at. Then this command rolls up the result into a single
  * StudySetResult object which will indicate if the result is a partial result or not.
+ * If a StudySetResultListener is given, the studies from each site are also passed to it as 
+ * soon as they are available.
  * 
  * @author vhaiswwerfej
  *
@@ -60,13 +63,21 @@ extends AbstractCommandImpl<StudySetResult>
 	private final PatientIdentifier patientIdentifier;
 	private final StudyFilter studyFilter;
 	private final StudyLoadLevel studyLoadLevel;
+	private final transient StudySetResultListener studySetResultListener;
 	
 	public AbstractStudySetResultForPatientCommandImpl(PatientIdentifier patientIdentifier, StudyFilter studyFilter, 
 			StudyLoadLevel studyLoadLevel)
+	{
+		this(patientIdentifier, studyFilter, studyLoadLevel, null);
+	}
+	
+	public AbstractStudySetResultForPatientCommandImpl(PatientIdentifier patientIdentifier, StudyFilter studyFilter, 
+			StudyLoadLevel studyLoadLevel, StudySetResultListener studySetResultListener)
 	{
 		this.patientIdentifier = patientIdentifier;
 		this.studyFilter = studyFilter;
 		this.studyLoadLevel = studyLoadLevel;
+		this.studySetResultListener = studySetResultListener;
 	}
 	
 	@Override
@@ -75,8 +86,11 @@ extends AbstractCommandImpl<StudySetResult>
 	{
 		@SuppressWarnings("unchecked")
 		CumulativeCommandStatistics<StudySetResult> cumulativeCommandStatistics = 
-			ImagingContext.getRouter().getCumulativeStatisticsStudySetResultForPatient(getPatientIdentifier(), 
-					getStudyFilter(), getStudyLoadLevel());
+			getStudySetResultListener() == null ?
+				ImagingContext.getRouter().getCumulativeStatisticsStudySetResultForPatient(getPatientIdentifier(), 
+					getStudyFilter(), getStudyLoadLevel()) :
+				ImagingContext.getRouter().getCumulativeStatisticsStudySetResultForPatient(getPatientIdentifier(), 
+					getStudyFilter(), getStudyLoadLevel(), getStudySetResultListener());
 		SortedSet<Study> fullResults = new TreeSet<Study>();
 		List<ArtifactResultError> errors = new ArrayList<ArtifactResultError>();
 		boolean partialResults = false;
@@ -134,4 +148,9 @@ extends AbstractCommandImpl<StudySetResult>
 	{
 		return studyLoadLevel;
 	}
+
+	public StudySetResultListener getStudySetResultListener()
+	{
+		return studySetResultListener;
+	}
 }
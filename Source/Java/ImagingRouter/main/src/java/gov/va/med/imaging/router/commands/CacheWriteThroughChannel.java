@@ -0,0 +1,169 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.router.commands;
+
+import gov.va.med.imaging.storage.cache.InstanceWritableByteChannel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The cache side of an image that is streamed to the client and the cache at the same time.
+ * A failure to write the cache instance (e.g. a full disk or a removed cache volume) must not
+ * fail the client response, so the first failure abandons the cache instance with error() and
+ * the rest of the image is discarded rather than written to the cache.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+class CacheWriteThroughChannel
+implements WritableByteChannel
+{
+	private final static Logger logger = Logger.getLogger(CacheWriteThroughChannel.class);
+	
+	private final InstanceWritableByteChannel cacheChannel;
+	private final String instanceName;
+	private boolean abandoned = false;
+	private boolean open = true;
+	
+	/**
+	 * 
+	 * @param cacheChannel the writable channel of the cache instance
+	 * @param instanceName the name of the image, for logging
+	 */
+	CacheWriteThroughChannel(InstanceWritableByteChannel cacheChannel, String instanceName)
+	{
+		this.cacheChannel = cacheChannel;
+		this.instanceName = instanceName;
+	}
+	
+	/**
+	 * @return true if writing to the cache instance failed and the instance was abandoned
+	 */
+	boolean isAbandoned()
+	{
+		return abandoned;
+	}
+
+	/**
+	 * Once the cache instance has been abandoned the bytes are discarded, the whole
+	 * buffer is always consumed.
+	 * 
+	 * @see java.nio.channels.WritableByteChannel#write(java.nio.ByteBuffer)
+	 */
+	@Override
+	public int write(ByteBuffer src) 
+	throws IOException
+	{
+		if(!open)
+			throw new IOException("The cache channel of '" + instanceName + "' is closed.");
+		int remaining = src.remaining();
+		if(!abandoned)
+		{
+			try
+			{
+				while(src.hasRemaining())
+					cacheChannel.write(src);
+				return remaining;
+			}
+			catch(IOException ioX)
+			{
+				abandon("writing", ioX);
+			}
+		}
+		src.position(src.limit());
+		return remaining;
+	}
+
+	@Override
+	public boolean isOpen()
+	{
+		return open;
+	}
+
+	/**
+	 * Publish the cache instance, unless it has been abandoned.  A failure to close the
+	 * cache instance abandons it.
+	 * 
+	 * @see java.nio.channels.Channel#close()
+	 */
+	@Override
+	public void close()
+	{
+		if(!open)
+			return;
+		open = false;
+		if(abandoned)
+			return;
+		try
+		{
+			cacheChannel.close();
+		}
+		catch(IOException ioX)
+		{
+			abandon("closing", ioX);
+		}
+	}
+	
+	/**
+	 * Abandon the cache instance so that it is never published, e.g. when the content
+	 * does not match the checksum from the data source.
+	 */
+	void error()
+	{
+		if(!open)
+			return;
+		open = false;
+		if(abandoned)
+			return;
+		abandoned = true;
+		try
+		{
+			cacheChannel.error();
+		}
+		catch(IOException ioX)
+		{
+			logger.warn("Error abandoning the cache instance of '" + instanceName + "', " + ioX.getMessage());
+		}
+	}
+	
+	private void abandon(String operation, IOException cause)
+	{
+		logger.error("Error " + operation + " the cache instance of '" + instanceName + 
+			"', abandoning the cache instance and continuing to stream to the client, " + cause.getMessage());
+		abandoned = true;
+		try
+		{
+			cacheChannel.error();
+		}
+		catch(IOException ioX)
+		{
+			logger.warn("Error abandoning the cache instance of '" + instanceName + "', " + ioX.getMessage());
+		}
+	}
+}
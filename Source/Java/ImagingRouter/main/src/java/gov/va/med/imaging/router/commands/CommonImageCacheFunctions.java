@@ -29,6 +29,7 @@ import gov.va.med.PatientIdentifier;
 import gov.va.med.imaging.DocumentURN;
 import gov.va.med.imaging.ImageURN;
 import gov.va.med.imaging.channels.ByteStreamPump;
+import gov.va.med.imaging.channels.FileTransferTarget;
 import gov.va.med.imaging.router.commands.provider.ImagingCommandContext;
 import gov.va.med.imaging.core.StreamImageFromCacheResponse;
 import gov.va.med.imaging.core.interfaces.ImageMetadataNotification;
@@ -41,9 +42,11 @@ import gov.va.med.imaging.exchange.enums.ImageQuality;
 import gov.va.med.imaging.exchange.storage.ByteBufferBackedInputStream;
 import gov.va.med.imaging.exchange.storage.DataSourceInputStream;
 import gov.va.med.imaging.exchange.storage.cache.ImmutableInstance;
+import gov.va.med.imaging.storage.cache.FileInstanceReadableByteChannel;
 import gov.va.med.imaging.storage.cache.InstanceReadableByteChannel;
 import gov.va.med.imaging.storage.cache.InstanceReadableVO;
 import gov.va.med.imaging.storage.cache.InstanceWritableByteChannel;
+import gov.va.med.imaging.storage.cache.SizedInstanceReadableByteChannel;
 import gov.va.med.imaging.storage.cache.exceptions.CacheException;
 import gov.va.med.imaging.storage.cache.exceptions.InstanceInaccessibleException;
 import gov.va.med.imaging.storage.cache.exceptions.InstanceUnavailableException;
@@ -333,9 +336,41 @@ public class CommonImageCacheFunctions
 		{
 			// image is in the cache and we have a usable ReadableByteChannel, 
 			// notify the checksum notification listener if it exists
-			//TODO: actually know the file length and set it here so that we can respond with the correct file length!
+			// the length is only known when the cache channel knows its size, e.g. when it is file based
 			if(callback != null)
-				callback.imageMetadata(readableVO.getChecksumValue(), imageFormat, 0, imageQuality);
+			{
+				long fileSize = 0L;
+				if(cacheReadChannel instanceof SizedInstanceReadableByteChannel)
+				{
+					try{fileSize = ((SizedInstanceReadableByteChannel)cacheReadChannel).size();}
+					catch(IOException ioX){getLogger().warn("Unable to get the size of '" + imageUrn.toString() + "-" + imageQuality + "', " + ioX.getMessage());}
+				}
+				callback.imageMetadata(readableVO.getChecksumValue(), imageFormat, (int)fileSize, imageQuality);
+			}
+			
+			// if the destination takes the cache file (e.g. for a range), it is not streamed
+			long bytesTransferred = -1L;
+			try
+			{
+				bytesTransferred = transferFromCache(cacheReadChannel, outStream);
+			}
+			catch(IOException ioX) 
+			{
+				getLogger().error(ioX);
+				try{cacheReadChannel.close();}
+				catch(IOException cioX){getLogger().warn("IOException caught when closing '" + imageUrn.toString() + "-" + imageQuality + "', " + cioX.getMessage());}
+				throw ioX;
+			}
+			if(bytesTransferred >= 0L)
+			{
+				try{cacheReadChannel.close();}
+				catch(IOException ioX)
+				{
+					getLogger().warn("IOException caught when closing '" + imageUrn.toString() + "-" + imageQuality + "', channel may have been closed earlier with a timeout.");
+				}
+				getLogger().debug("Returning [" + bytesTransferred + "] bytes taken from the cache file");
+				return (int)bytesTransferred;
+			}
 
 			// image is in the cache and we have a usable ReadableByteChannel, stream the image
 			InputStream cacheInStream = Channels.newInputStream(cacheReadChannel);
@@ -372,6 +407,37 @@ public class CommonImageCacheFunctions
 		return bytesOut;
 	}
 	
+	/**
+	 * Offer the file of a file based cache instance to the output stream when the output stream
+	 * is a FileTransferTarget, e.g. so that only a requested range of the file is read, or none of
+	 * it when the client already has the image.  The output stream is done with the file before
+	 * this method returns, the cache channel (and so the hold on the cache instance) is closed only afterward.
+	 * The checksum is not calculated, the checksum value in the cache metadata is reported instead.
+	 * 
+	 * @param cacheReadChannel
+	 * @param outStream
+	 * @return the size of the file taken by the output stream, or -1 if the content must be streamed 
+	 * @throws IOException
+	 */
+	private static long transferFromCache(InstanceReadableByteChannel cacheReadChannel, OutputStream outStream)
+	throws IOException
+	{
+		if( !(cacheReadChannel instanceof FileInstanceReadableByteChannel) || 
+			!(outStream instanceof FileTransferTarget) )
+			return -1L;
+		
+		FileInstanceReadableByteChannel fileChannel = (FileInstanceReadableByteChannel)cacheReadChannel;
+		FileTransferTarget target = (FileTransferTarget)outStream;
+		long size = fileChannel.size();
+		
+		if( target.transferFile(fileChannel.getFile(), 0L, size) )
+		{
+			getLogger().debug("Handed [" + size + "] bytes of '" + fileChannel.getFile().getPath() + "' to the output stream");
+			return size;
+		}
+		return -1L;
+	}
+	
 	// ========================================================================================================
 	// parameters affecting the retries for cache access
 	// ========================================================================================================
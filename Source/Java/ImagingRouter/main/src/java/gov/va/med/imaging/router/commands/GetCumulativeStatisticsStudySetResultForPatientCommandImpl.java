@@ -29,12 +29,16 @@ import gov.va.med.PatientIdentifier;
 import gov.va.med.RoutingToken;
 import gov.va.med.RoutingTokenImpl;
 import gov.va.med.exceptions.RoutingTokenFormatException;
+import gov.va.med.imaging.core.interfaces.exceptions.ConnectionException;
 import gov.va.med.imaging.core.interfaces.exceptions.MethodException;
+import gov.va.med.imaging.core.interfaces.router.AsynchronousCommandResult;
 import gov.va.med.imaging.core.interfaces.router.AsynchronousCommandResultListener;
+import gov.va.med.imaging.core.interfaces.router.CumulativeCommandStatistics;
 import gov.va.med.imaging.core.router.commands.AbstractCumulativeStatisticsCommandImpl;
 import gov.va.med.imaging.core.router.commands.configuration.CommandConfiguration;
 import gov.va.med.imaging.exchange.business.StudyFilter;
 import gov.va.med.imaging.exchange.business.StudySetResult;
+import gov.va.med.imaging.exchange.business.StudySetResultListener;
 import gov.va.med.imaging.exchange.enums.ImagingSecurityContextType;
 import gov.va.med.imaging.exchange.enums.StudyLoadLevel;
 import gov.va.med.imaging.router.facade.ImagingContext;
@@ -55,20 +59,41 @@ extends AbstractCumulativeStatisticsCommandImpl<StudySetResult>
 	private final PatientIdentifier patientIdentifier;
 	private final StudyFilter studyFilter;
 	private final StudyLoadLevel studyLoadLevel;
+	private final transient StudySetResultListener studySetResultListener;
+	// set, under the command lock, once the cumulative result has been returned
+	private transient boolean closed = false;
 	
 	public GetCumulativeStatisticsStudySetResultForPatientCommandImpl(PatientIdentifier patientIdentifier, 
 			StudyFilter studyFilter, StudyLoadLevel studyLoadLevel)
+	{
+		this(patientIdentifier, studyFilter, studyLoadLevel, null);
+	}
+	
+	/**
+	 * 
+	 * @param patientIdentifier
+	 * @param studyFilter
+	 * @param studyLoadLevel
+	 * @param studySetResultListener receives the studies from each site as they become available
+	 */
+	public GetCumulativeStatisticsStudySetResultForPatientCommandImpl(PatientIdentifier patientIdentifier, 
+			StudyFilter studyFilter, StudyLoadLevel studyLoadLevel, StudySetResultListener studySetResultListener)
 	{
 		super(true);
 		this.patientIdentifier = patientIdentifier;
 		this.studyFilter = studyFilter;
 		this.studyLoadLevel = studyLoadLevel;
+		this.studySetResultListener = studySetResultListener;
 	}
 
+	@SuppressWarnings("unchecked")
 	@Override
 	protected void callChildCommandAsync(RoutingToken routingToken,
 			AsynchronousCommandResultListener listener)
 	{
+		if(getStudySetResultListener() != null)
+			listener = new StudySetResultChildListener(listener, routingToken);
+		
 		if(getStudyLoadLevel() == StudyLoadLevel.STUDY_ONLY)
 		{
 			ImagingContext.getRouter().getShallowStudySetResultBySiteNumber(routingToken, 
@@ -91,6 +116,35 @@ extends AbstractCumulativeStatisticsCommandImpl<StudySetResult>
 		}			
 	}
 
+	/**
+	 * Child commands that did not complete before the cumulative result was returned keep running,
+	 * once the result has been returned their studies are no longer delivered to the listener.
+	 * 
+	 * @see gov.va.med.imaging.core.router.commands.AbstractCumulativeStatisticsCommandImpl#callSynchronouslyInTransactionContext()
+	 */
+	@Override
+	public CumulativeCommandStatistics<StudySetResult> callSynchronouslyInTransactionContext()
+	throws MethodException, ConnectionException
+	{
+		try
+		{
+			return super.callSynchronouslyInTransactionContext();
+		}
+		finally
+		{
+			closeStudySetResultListener();
+		}
+	}
+	
+	/**
+	 * Stop delivering studies to the StudySetResultListener, studies from child commands
+	 * that complete later are only logged.
+	 */
+	synchronized void closeStudySetResultListener()
+	{
+		closed = true;
+	}
+
 	@Override
 	protected boolean shouldCallChildCommandForRoutingToken(RoutingToken routingToken)
 	{
@@ -118,6 +172,78 @@ extends AbstractCumulativeStatisticsCommandImpl<StudySetResult>
 		return studyLoadLevel;
 	}
 
+	public StudySetResultListener getStudySetResultListener()
+	{
+		return studySetResultListener;
+	}
+	
+	/**
+	 * Deliver studies to the StudySetResultListener, one site at a time.
+	 * 
+	 * @param partialResult
+	 * @param routingToken the site the studies are from
+	 * @return true if there were studies to deliver
+	 */
+	private synchronized boolean deliverStudySetResult(StudySetResult partialResult, RoutingToken routingToken)
+	{
+		if(closed)
+		{
+			getLogger().info("Studies from site '" + routingToken.toRoutingTokenString() + 
+				"' arrived after the complete result was returned, not delivering them.");
+			return false;
+		}
+		if(partialResult == null || partialResult.getArtifacts() == null || partialResult.getArtifacts().size() == 0)
+			return false;
+		try
+		{
+			studySetResultListener.studySetResultAvailable(partialResult);
+		}
+		catch(Throwable t)
+		{
+			// the studies are still part of the complete result
+			getLogger().warn("Error delivering studies from site '" + routingToken.toRoutingTokenString() + 
+				"' before the complete result, " + t.getMessage());
+		}
+		return true;
+	}
+	
+	/**
+	 * The listener of a child command when the studies are wanted as they become available.
+	 * A data source that can deliver its studies before it completes does so through this
+	 * listener, the studies from any other data source are delivered when its command completes.
+	 * Either way the result of the child command is then passed on to the cumulative listener.
+	 */
+	class StudySetResultChildListener
+	implements AsynchronousCommandResultListener<StudySetResult>, StudySetResultListener
+	{
+		private final AsynchronousCommandResultListener<StudySetResult> cumulativeListener;
+		private final RoutingToken routingToken;
+		private volatile boolean partialResultDelivered = false;
+		
+		StudySetResultChildListener(AsynchronousCommandResultListener<StudySetResult> cumulativeListener, 
+			RoutingToken routingToken)
+		{
+			this.cumulativeListener = cumulativeListener;
+			this.routingToken = routingToken;
+		}
+
+		@Override
+		public void studySetResultAvailable(StudySetResult partialResult)
+		{
+			// an empty partial result must not keep the complete result of the site from being delivered
+			if(deliverStudySetResult(partialResult, routingToken))
+				partialResultDelivered = true;
+		}
+
+		@Override
+		public void commandComplete(AsynchronousCommandResult<StudySetResult> result)
+		{
+			if(result.isSuccess() && !partialResultDelivered)
+				deliverStudySetResult(result.getResult(), routingToken);
+			cumulativeListener.commandComplete(result);
+		}
+	}
+
 	@Override
 	protected void setInitialImagingSecurityContext()
 	{
@@ -182,6 +308,8 @@ extends AbstractCumulativeStatisticsCommandImpl<StudySetResult>
 		}
 		else if (!studyLoadLevel.equals(other.studyLoadLevel))
 			return false;
+		if (studySetResultListener != other.studySetResultListener)
+			return false;
 		return true;
 	}
 
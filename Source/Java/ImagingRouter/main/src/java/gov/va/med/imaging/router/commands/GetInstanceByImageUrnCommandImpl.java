@@ -7,6 +7,7 @@ import gov.va.med.imaging.ImageURN;
 import gov.va.med.imaging.channels.ByteStreamPump;
 import gov.va.med.imaging.channels.ChecksumValue;
 import gov.va.med.imaging.channels.CompositeIOException;
+import gov.va.med.imaging.channels.WritableByteChannelSpreaderPump;
 import gov.va.med.imaging.channels.exceptions.ChecksumFormatException;
 import gov.va.med.imaging.core.StreamImageFromCacheResponse;
 import gov.va.med.imaging.core.interfaces.ImageMetadataNotification;
@@ -14,6 +15,7 @@ import gov.va.med.imaging.core.interfaces.exceptions.ImageConversionException;
 import gov.va.med.imaging.core.interfaces.exceptions.ImageNearLineException;
 import gov.va.med.imaging.core.interfaces.exceptions.ImageNotFoundException;
 import gov.va.med.imaging.core.interfaces.exceptions.MethodException;
+import gov.va.med.imaging.core.router.commands.configuration.CommandConfiguration;
 import gov.va.med.imaging.exchange.business.Image;
 import gov.va.med.imaging.exchange.business.ImageFormatQualityList;
 import gov.va.med.imaging.exchange.business.ImageStreamResponse;
@@ -21,7 +23,9 @@ import gov.va.med.imaging.exchange.business.util.ExchangeUtil;
 import gov.va.med.imaging.exchange.enums.ImageFormat;
 import gov.va.med.imaging.exchange.enums.ImageQuality;
 import gov.va.med.imaging.exchange.storage.cache.ImmutableInstance;
+import gov.va.med.imaging.router.commands.InFlightImageRetrievals.InFlightImageRetrieval;
 import gov.va.med.imaging.router.facade.ImagingContext;
+import gov.va.med.imaging.storage.cache.InstanceReadableByteChannel;
 import gov.va.med.imaging.storage.cache.InstanceWritableByteChannel;
 import gov.va.med.imaging.storage.cache.exceptions.CacheException;
 import gov.va.med.imaging.storage.cache.exceptions.InstanceInaccessibleException;
@@ -32,6 +36,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.Checksum;
 
 /**
  * @author vhaiswbeckec
@@ -215,6 +221,19 @@ extends AbstractImageCommandImpl<Long>
 		if( cacheThisInstance ) 
 		{
 			getLogger().info("Image '" + imageUrn.toString() + "' caching enabled.");
+			
+			// if the image is being retrieved for another request then read it as it is written,
+			// reading it from the cache would wait for the write to complete
+			long coalescedWaitMs = getCoalescedImageRequestWaitMs();
+			String inFlightKey = InFlightImageRetrievals.createKey(imageUrn, getRequestedFormatQuality());
+			if(coalescedWaitMs > 0L)
+			{
+				Long bytesStreamed = streamFromInFlightRetrieval(
+					InFlightImageRetrievals.getSingleton().follow(inFlightKey), coalescedWaitMs);
+				if(bytesStreamed != null)
+					return bytesStreamed;
+			}
+			
 			try
 			{
 				StreamImageFromCacheResponse response = 
@@ -279,6 +298,21 @@ extends AbstractImageCommandImpl<Long>
 			}
 
 			// if we get here then caching is enabled but the instance was not found in the cache
+			// register as the retrieval of this image so that concurrent requests wait for this one
+			// rather than retrieving it again, unless another request has just done so
+			InFlightImageRetrieval inFlightRetrieval = null;
+			if(coalescedWaitMs > 0L)
+			{
+				inFlightRetrieval = InFlightImageRetrievals.getSingleton().lead(inFlightKey);
+				if(inFlightRetrieval == null)
+				{
+					Long bytesStreamed = streamFromInFlightRetrieval(
+						InFlightImageRetrievals.getSingleton().follow(inFlightKey), coalescedWaitMs);
+					if(bytesStreamed != null)
+						return bytesStreamed;
+				}
+			}
+			
 			// we try to grab the writable byte channel as soon as possible to lock other threads from writing to
 			// it
 			transactionContext.setItemCached(Boolean.FALSE);
@@ -290,6 +324,7 @@ extends AbstractImageCommandImpl<Long>
 			// image (format/quality) from the datasource to find it in the cache
 			ImageFormat dataSourceImageFormat = null;
 			ImageQuality dataSourceImageQuality = null;
+			boolean streamedThrough = false;
 			
 			try
 			{
@@ -314,6 +349,20 @@ extends AbstractImageCommandImpl<Long>
 				}
 
 				instanceWritableChannel = instance.getWritableChannel();
+				if(inFlightRetrieval != null)
+					inFlightRetrieval.instanceCreated(instance, dataSourceImageFormat, dataSourceImageQuality, 
+						datasourceResponse.getProvidedImageChecksum());
+				
+				if(isStreamThroughOnCacheMiss())
+				{
+					// from here on bytes may have been written to the client, an IOException
+					// cannot be recovered by streaming from the cache or the data source again
+					streamedThrough = true;
+					bytesReturned = streamThroughToCacheAndClient(datasourceResponse, instance, instanceWritableChannel);
+					getLogger().info("Image '" + imageUrn.toString() + "' streamed to the destination and the cache.");
+					return new Long(bytesReturned);
+				}
+				
 				cacheOutStream = Channels.newOutputStream(instanceWritableChannel);
 				
 				InputStream imageStream = datasourceResponse.getImageStream().getInputStream();
@@ -335,46 +384,7 @@ extends AbstractImageCommandImpl<Long>
 				}				
 				String responseChecksum = datasourceResponse.getProvidedImageChecksum();
 				cacheOutStream.close();
-				boolean noResponseChecksum = false;
-				if(responseChecksum != null)
-				{
-					noResponseChecksum = (responseChecksum.equals("ok") || responseChecksum.equals("not ok"));
-				}					
-				String cacheChecksum = instance.getChecksumValue();
-				if(responseChecksum != null && cacheChecksum != null)
-				{
-					try
-					{
-						ChecksumValue responseCV;
-						if (noResponseChecksum) responseCV = new ChecksumValue("");
-						else responseCV = new ChecksumValue(responseChecksum);
-						ChecksumValue cacheCV = new ChecksumValue(cacheChecksum);
-
-						if (noResponseChecksum) {
-
-							if (responseChecksum.equals("ok"))
-								getLogger().info("Checksum for inStream '" + imageUrn + "' equals to data source cheksum.");
-							else // "not ok"
-								getLogger().info("Checksum for inStream '" + imageUrn + "' IS Not Equal to data source cheksum.");
-						}
-						else if (responseCV.getAlgorithm().equals(cacheCV.getAlgorithm())) {
-
-							if (! responseCV.equals(cacheCV) )
-								getLogger().error("Checksums for instance '" + imageUrn + "' ARE NOT EQUAL.");
-							else
-								getLogger().info("Checksums for instance '" + imageUrn + "' are equal.");
-						}
-						else
-							getLogger().warn("Checksums not compared for instance '" + imageUrn + 
-									"' because response algorithm is '" + responseCV.getAlgorithm() + 
-									"' and cache algorithm is '" + cacheCV.getAlgorithm() + "'.");
-					} 
-					catch (ChecksumFormatException x)
-					{
-						getLogger().error("Invalidly formatted checksum value, either response header checksum '" + responseChecksum + 
-								"' or cache calculated checksum '" + cacheChecksum + "'");
-					}
-				}
+				logChecksumComparison(responseChecksum, instance.getChecksumValue());
 			}
 			catch(InstanceInaccessibleException iaX)
 			{
@@ -530,6 +540,13 @@ extends AbstractImageCommandImpl<Long>
 				cacheOutStream = null;
 				try{instanceWritableChannel.error();}catch(Throwable t){}
 				getLogger().error(ioX);
+				if(streamedThrough)
+					throw new MethodException(
+						"IO Exception when streaming from the data source to the client and cache, cannot continue because some bytes may be written, " + 
+						"continuing could result in corrupted image. " +
+						"Caused by : [" + ioX.getMessage() +
+						"] at " + getClass().getName() + ".callSynchronouslyInTransactionContext()"
+					);
 			} 
 			catch (ImageNotFoundException e)
             {
@@ -549,6 +566,9 @@ extends AbstractImageCommandImpl<Long>
 					getLogger().error("Cache instance writable byte channel being closed with error on unknown exception");
 					try{instanceWritableChannel.error();}catch(Throwable t){}
 				}
+				// release any requests waiting on this retrieval, the write is complete or failed
+				if(inFlightRetrieval != null)
+					InFlightImageRetrievals.getSingleton().complete(inFlightRetrieval);
 			}
 
 			// the image is now in the cache, the streams and channels are closed
@@ -606,6 +626,240 @@ extends AbstractImageCommandImpl<Long>
 		return streamFromDataSource();
 	}
 
+	/**
+	 * The maximum time to wait for an in flight retrieval of the image to create the cache
+	 * instance, 0 if concurrent requests are not coalesced.
+	 */
+	private long getCoalescedImageRequestWaitMs()
+	{
+		CommandConfiguration configuration = CommandConfiguration.getCommandConfiguration();
+		return configuration == null ? 0L : configuration.getCoalescedImageRequestWaitMs();
+	}
+	
+	/**
+	 * Stream the image from the cache instance another request is writing, reading the content 
+	 * as it is written.
+	 * 
+	 * @param inFlightRetrieval the retrieval to follow, may be null
+	 * @param maximumWaitMilliseconds the maximum time to wait for the cache instance to be created
+	 * @return the number of bytes streamed or null if the in flight retrieval did not create
+	 * a cache instance, in which case nothing has been written to the output stream
+	 * @throws MethodException if an error occurs after bytes may have been written to the output stream
+	 */
+	private Long streamFromInFlightRetrieval(InFlightImageRetrieval inFlightRetrieval, long maximumWaitMilliseconds)
+	throws MethodException
+	{
+		if(inFlightRetrieval == null)
+			return null;
+		
+		InstanceReadableByteChannel tailingChannel = null;
+		try
+		{
+			getLogger().info("Image '" + imageUrn.toString() + "' is being retrieved by another request, waiting for it.");
+			if(! inFlightRetrieval.awaitInstance(maximumWaitMilliseconds))
+				return null;
+			tailingChannel = inFlightRetrieval.getInstance().getTailingReadableChannel();
+		}
+		catch (InterruptedException iX)
+		{
+			throw new MethodException("Interrupted waiting for retrieval of image '" + imageUrn.toString() + "' by another request.", iX);
+		}
+		catch (CacheException cX)
+		{
+			getLogger().warn("Unable to read image '" + imageUrn.toString() + "' being retrieved by another request, retrieving it.", cX);
+			return null;
+		}
+		
+		if(getMetadataCallback() != null)
+		{
+			getMetadataCallback().imageMetadata(inFlightRetrieval.getProvidedImageChecksum(), 
+				inFlightRetrieval.getImageFormat(), 0, inFlightRetrieval.getImageQuality());
+		}
+		
+		InputStream cacheInStream = Channels.newInputStream(tailingChannel);
+		try
+		{
+			ByteStreamPump pump = ByteStreamPump.getByteStreamPump(ByteStreamPump.TRANSFER_TYPE.FileToNetwork);
+			int bytesReturned = pump.xfer(cacheInStream, outStream);
+			TransactionContextFactory.get().setItemCached(Boolean.TRUE);
+			getLogger().info("Image '" + imageUrn.toString() + "' streamed to the destination as it was written to the cache by another request.");
+			return new Long(bytesReturned);
+		}
+		catch (IOException ioX)
+		{
+			// exception occurred, we can't continue because the image may be partially written
+			getLogger().error(ioX);
+			throw new MethodException(
+				"IO Exception when reading image being written to the cache, cannot continue because some bytes may be written, " +
+				"continuing could result in corrupted image. " +
+				"Caused by : [" + ioX.getMessage() +
+				"] at " + getClass().getName() + ".streamFromInFlightRetrieval()"
+			);
+		}
+		finally
+		{
+			try{cacheInStream.close();}
+			catch(IOException ioX){getLogger().warn(ioX);}
+		}
+	}
+	
+	/**
+	 * Determines whether an image missing from the cache is streamed to the client as it is
+	 * written to the cache, see CommandConfiguration.isStreamThroughOnCacheMiss().
+	 */
+	private boolean isStreamThroughOnCacheMiss()
+	{
+		CommandConfiguration configuration = CommandConfiguration.getCommandConfiguration();
+		return configuration == null ? false : configuration.isStreamThroughOnCacheMiss();
+	}
+	
+	/**
+	 * Stream the image from the data source to the output stream and the cache instance at the same
+	 * time, each buffer read from the data source is written to both before the next is read.
+	 * The cache instance is closed, and so made available to readers, only if the data source stream 
+	 * was read completely and its checksum does not contradict the streamed bytes. Otherwise it is 
+	 * closed with error() so a partially written or corrupt instance is never published.
+	 * A failure to write the cache instance abandons it, the image is still streamed to the client.
+	 * An IOException from this method means that some bytes may have been written to the output stream.
+	 * 
+	 * @param datasourceResponse
+	 * @param instance
+	 * @param instanceWritableChannel
+	 * @return the number of bytes written to the output stream
+	 * @throws IOException
+	 */
+	private int streamThroughToCacheAndClient(
+		ImageStreamResponse datasourceResponse, 
+		ImmutableInstance instance,
+		InstanceWritableByteChannel instanceWritableChannel)
+	throws IOException
+	{
+		String responseChecksum = datasourceResponse.getProvidedImageChecksum();
+		if(getMetadataCallback() != null)
+		{
+			getMetadataCallback().imageMetadata(responseChecksum, 
+				datasourceResponse.getImageFormat(), 0, datasourceResponse.getImageQuality());
+		}
+		
+		getLogger().info("Pumping response to client and cache");
+		InputStream imageStream = datasourceResponse.getImageStream().getInputStream();
+		CacheWriteThroughChannel cacheChannel = new CacheWriteThroughChannel(instanceWritableChannel, imageUrn.toString());
+		WritableByteChannelSpreaderPump pump = null;
+		long bytesReturned = 0L;
+		try
+		{
+			pump = new WritableByteChannelSpreaderPump(
+				Channels.newChannel(imageStream), 
+				new WritableByteChannel[]{cacheChannel, Channels.newChannel(outStream)} );
+			// the cache and the client are written on this thread rather than the shared spreader threads
+			pump.setConcurrentWrites(false);
+			bytesReturned = pump.copy();
+		}
+		finally
+		{
+			try{imageStream.close();}
+			catch(IOException ioX){getLogger().warn(ioX);}
+		}
+		
+		if(cacheChannel.isAbandoned())
+		{
+			getLogger().warn("Image '" + imageUrn + "' was streamed to the client but could not be cached.");
+		}
+		else if(isDataSourceChecksumContradicted(responseChecksum, pump.getChecksum()))
+		{
+			getLogger().error("Checksum for instance '" + imageUrn + "' from data source '" + responseChecksum + 
+				"' does not match the streamed image, the instance will not be cached.");
+			cacheChannel.error();
+		}
+		else
+		{
+			cacheChannel.close();
+			if(!cacheChannel.isAbandoned())
+				logChecksumComparison(responseChecksum, instance.getChecksumValue());
+		}
+		
+		return (int)bytesReturned;
+	}
+	
+	/**
+	 * Returns true if the data source has reported that the image checksum did not verify or 
+	 * if the data source provided a checksum of the same algorithm as the streamed checksum and 
+	 * the values are different.
+	 * 
+	 * @param responseChecksum
+	 * @param streamedChecksum
+	 * @return
+	 */
+	private boolean isDataSourceChecksumContradicted(String responseChecksum, Checksum streamedChecksum)
+	{
+		if(responseChecksum == null || responseChecksum.equals("ok"))
+			return false;
+		if(responseChecksum.equals("not ok"))
+			return true;
+		if(streamedChecksum == null)
+			return false;
+		try
+		{
+			ChecksumValue responseCV = new ChecksumValue(responseChecksum);
+			ChecksumValue streamedCV = new ChecksumValue(streamedChecksum);
+			return responseCV.getAlgorithm().equals(streamedCV.getAlgorithm()) && !responseCV.equals(streamedCV);
+		}
+		catch (ChecksumFormatException x)
+		{
+			return false;
+		}
+	}
+	
+	/**
+	 * Log the result of comparing the checksum provided by the data source with the
+	 * checksum the cache calculated for the instance.
+	 * 
+	 * @param responseChecksum
+	 * @param cacheChecksum
+	 */
+	private void logChecksumComparison(String responseChecksum, String cacheChecksum)
+	{
+		boolean noResponseChecksum = false;
+		if(responseChecksum != null)
+		{
+			noResponseChecksum = (responseChecksum.equals("ok") || responseChecksum.equals("not ok"));
+		}					
+		if(responseChecksum != null && cacheChecksum != null)
+		{
+			try
+			{
+				ChecksumValue responseCV;
+				if (noResponseChecksum) responseCV = new ChecksumValue("");
+				else responseCV = new ChecksumValue(responseChecksum);
+				ChecksumValue cacheCV = new ChecksumValue(cacheChecksum);
+
+				if (noResponseChecksum) {
+
+					if (responseChecksum.equals("ok"))
+						getLogger().info("Checksum for inStream '" + imageUrn + "' equals to data source cheksum.");
+					else // "not ok"
+						getLogger().info("Checksum for inStream '" + imageUrn + "' IS Not Equal to data source cheksum.");
+				}
+				else if (responseCV.getAlgorithm().equals(cacheCV.getAlgorithm())) {
+
+					if (! responseCV.equals(cacheCV) )
+						getLogger().error("Checksums for instance '" + imageUrn + "' ARE NOT EQUAL.");
+					else
+						getLogger().info("Checksums for instance '" + imageUrn + "' are equal.");
+				}
+				else
+					getLogger().warn("Checksums not compared for instance '" + imageUrn + 
+							"' because response algorithm is '" + responseCV.getAlgorithm() + 
+							"' and cache algorithm is '" + cacheCV.getAlgorithm() + "'.");
+			} 
+			catch (ChecksumFormatException x)
+			{
+				getLogger().error("Invalidly formatted checksum value, either response header checksum '" + responseChecksum + 
+						"' or cache calculated checksum '" + cacheChecksum + "'");
+			}
+		}
+	}
+
 	/**
 	 * Stream the image from the data source and put it into the output stream. This method DOES NOT use the
 	 * cache so it should only be called after cache attempts have failed.
@@ -8,6 +8,8 @@ import gov.va.med.imaging.artifactsource.ResolvedArtifactSource;
 import gov.va.med.imaging.core.interfaces.exceptions.ConnectionException;
 import gov.va.med.imaging.core.interfaces.exceptions.MethodException;
 import gov.va.med.imaging.core.router.AbstractDataSourceExceptionHandler;
+import gov.va.med.imaging.core.router.breaker.SiteCircuitBreakerRegistry;
+import gov.va.med.imaging.core.router.breaker.SiteCircuitBreakerState;
 import gov.va.med.imaging.datasource.DataSourceProvider;
 import gov.va.med.imaging.datasource.StudyGraphDataSourceSpi;
 import gov.va.med.imaging.exchange.enums.SiteConnectivityStatus;
@@ -17,6 +19,9 @@ import java.net.URL;
 import java.util.List;
 
 /**
+ * Determines whether the site can be reached.  A site whose circuit breaker is
+ * open is reported as DATASOURCE_UNAVAILABLE without creating a data source for it.
+ * 
  * @author vhaiswbeckec
  *
  */
@@ -76,6 +81,13 @@ extends AbstractDataSourceExceptionHandler<SiteConnectivityStatus>
 					"protocol preferences for the site specify valid protocols.");
 			return SiteConnectivityStatus.VIX_UNAVAILABLE;
 		}
+		SiteCircuitBreakerState breakerState = SiteCircuitBreakerRegistry.getSingleton().getState(getRoutingToken());
+		context.addDebugInformation("Circuit breaker for site '" + getSiteNumber() + "' is " + breakerState + ".");
+		if(breakerState == SiteCircuitBreakerState.OPEN)
+		{
+			getLogger().info("Circuit breaker for site '" + getSiteNumber() + "' is open, returning Datasource Unavailable");
+			return SiteConnectivityStatus.DATASOURCE_UNAVAILABLE;
+		}
 		Exception lastException = null;
 		// try each of the configured protocols in turn
 		for(URL url : metadataUrls )
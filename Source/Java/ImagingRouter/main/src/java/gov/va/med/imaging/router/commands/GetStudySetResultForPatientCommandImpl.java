@@ -27,6 +27,7 @@ package gov.va.med.imaging.router.commands;
 
 import gov.va.med.PatientIdentifier;
 import gov.va.med.imaging.exchange.business.StudyFilter;
+import gov.va.med.imaging.exchange.business.StudySetResultListener;
 import gov.va.med.imaging.exchange.enums.StudyLoadLevel;
 
 /**
@@ -42,4 +43,16 @@ extends AbstractStudySetResultForPatientCommandImpl
 	{
 		super(patientIdentifier, studyFilter, StudyLoadLevel.FULL);
 	}
+	
+	/**
+	 * 
+	 * @param patientIdentifier
+	 * @param studyFilter
+	 * @param studySetResultListener receives the studies as they become available, before the complete result is returned
+	 */
+	public GetStudySetResultForPatientCommandImpl(PatientIdentifier patientIdentifier, StudyFilter studyFilter, 
+			StudySetResultListener studySetResultListener)
+	{
+		super(patientIdentifier, studyFilter, StudyLoadLevel.FULL, studySetResultListener);
+	}
 }
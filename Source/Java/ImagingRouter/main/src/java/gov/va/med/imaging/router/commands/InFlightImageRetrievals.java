@@ -0,0 +1,226 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.router.commands;
+
+import gov.va.med.imaging.ImageURN;
+import gov.va.med.imaging.exchange.business.ImageFormatQualityList;
+import gov.va.med.imaging.exchange.enums.ImageFormat;
+import gov.va.med.imaging.exchange.enums.ImageQuality;
+import gov.va.med.imaging.exchange.storage.cache.ImmutableInstance;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A registry of the image retrievals that are currently fetching an image from a 
+ * data source into the cache, keyed by image URN and requested format/quality.
+ * The first request for an image that is not in the cache becomes the leader and
+ * fetches the image, requests for the same image while the leader is fetching it 
+ * become followers and read the cache instance as the leader writes it rather than
+ * fetching the image again.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class InFlightImageRetrievals
+{
+	private final static Logger logger = Logger.getLogger(InFlightImageRetrievals.class);
+	private final static InFlightImageRetrievals singleton = new InFlightImageRetrievals();
+	
+	public static InFlightImageRetrievals getSingleton()
+	{
+		return singleton;
+	}
+	
+	/**
+	 * 
+	 * @param imageUrn
+	 * @param requestedFormatQuality
+	 * @return the key identifying retrievals of the same image in the same requested formats and qualities
+	 */
+	public static String createKey(ImageURN imageUrn, ImageFormatQualityList requestedFormatQuality)
+	{
+		return imageUrn.toString() + "|" + requestedFormatQuality.getAcceptString(true, true);
+	}
+	
+	private final ConcurrentHashMap<String, InFlightImageRetrieval> retrievals = 
+		new ConcurrentHashMap<String, InFlightImageRetrieval>();
+	private final AtomicLong leaderCount = new AtomicLong(0L);
+	private final AtomicLong followerCount = new AtomicLong(0L);
+	
+	private InFlightImageRetrievals()
+	{
+	}
+	
+	/**
+	 * Register the caller as the leader of the retrieval of the given key.
+	 * The leader must call complete() when it is done, whether or not it succeeded.
+	 * 
+	 * @param key
+	 * @return the registered retrieval or null if a retrieval of the key is already in flight
+	 */
+	public InFlightImageRetrieval lead(String key)
+	{
+		InFlightImageRetrieval retrieval = new InFlightImageRetrieval(key);
+		if(retrievals.putIfAbsent(key, retrieval) != null)
+			return null;
+		leaderCount.incrementAndGet();
+		return retrieval;
+	}
+	
+	/**
+	 * 
+	 * @param key
+	 * @return the retrieval of the given key in flight, or null if there is none
+	 */
+	public InFlightImageRetrieval follow(String key)
+	{
+		InFlightImageRetrieval retrieval = retrievals.get(key);
+		if(retrieval != null)
+			followerCount.incrementAndGet();
+		return retrieval;
+	}
+	
+	/**
+	 * Remove the retrieval from the registry and release any followers waiting for
+	 * the cache instance.
+	 * 
+	 * @param retrieval
+	 */
+	public void complete(InFlightImageRetrieval retrieval)
+	{
+		retrievals.remove(retrieval.getKey(), retrieval);
+		retrieval.complete();
+	}
+	
+	public int getInFlightCount()
+	{
+		return retrievals.size();
+	}
+	
+	public long getLeaderCount()
+	{
+		return leaderCount.get();
+	}
+	
+	public long getFollowerCount()
+	{
+		return followerCount.get();
+	}
+	
+	/**
+	 * The state of one image retrieval shared between the leader and its followers.
+	 * The leader publishes the cache instance it is writing, followers wait for 
+	 * the cache instance or for the leader to complete without one.
+	 */
+	public static class InFlightImageRetrieval
+	{
+		private final String key;
+		private ImmutableInstance instance = null;
+		private ImageFormat imageFormat = null;
+		private ImageQuality imageQuality = null;
+		private String providedImageChecksum = null;
+		private boolean complete = false;
+		
+		InFlightImageRetrieval(String key)
+		{
+			this.key = key;
+		}
+		
+		public String getKey()
+		{
+			return key;
+		}
+		
+		/**
+		 * Called by the leader when the cache instance writable channel is open.
+		 * 
+		 * @param instance
+		 * @param imageFormat
+		 * @param imageQuality
+		 * @param providedImageChecksum
+		 */
+		public synchronized void instanceCreated(ImmutableInstance instance, 
+			ImageFormat imageFormat, ImageQuality imageQuality, String providedImageChecksum)
+		{
+			this.instance = instance;
+			this.imageFormat = imageFormat;
+			this.imageQuality = imageQuality;
+			this.providedImageChecksum = providedImageChecksum;
+			notifyAll();
+		}
+		
+		synchronized void complete()
+		{
+			this.complete = true;
+			notifyAll();
+		}
+		
+		/**
+		 * Wait for the leader to create the cache instance.
+		 * 
+		 * @param maximumWaitMilliseconds
+		 * @return true if the cache instance is available, false if the leader completed without 
+		 * creating it or the wait timed out
+		 * @throws InterruptedException
+		 */
+		public synchronized boolean awaitInstance(long maximumWaitMilliseconds) 
+		throws InterruptedException
+		{
+			long waitUntil = System.currentTimeMillis() + maximumWaitMilliseconds;
+			for(long remaining = maximumWaitMilliseconds; 
+				instance == null && !complete && remaining > 0L; 
+				remaining = waitUntil - System.currentTimeMillis())
+			{
+				wait(remaining);
+			}
+			if(instance == null)
+				logger.debug("In flight retrieval '" + key + "' " + (complete ? "completed without a cache instance." : "did not create a cache instance in time."));
+			return instance != null;
+		}
+		
+		public synchronized ImmutableInstance getInstance()
+		{
+			return instance;
+		}
+
+		public synchronized ImageFormat getImageFormat()
+		{
+			return imageFormat;
+		}
+
+		public synchronized ImageQuality getImageQuality()
+		{
+			return imageQuality;
+		}
+
+		public synchronized String getProvidedImageChecksum()
+		{
+			return providedImageChecksum;
+		}
+	}
+}
@@ -33,6 +33,8 @@ import gov.va.med.imaging.artifactsource.ResolvedArtifactSource;
 import gov.va.med.imaging.core.interfaces.exceptions.ConnectionException;
 import gov.va.med.imaging.core.interfaces.exceptions.MethodException;
 import gov.va.med.imaging.core.router.AbstractDataSourceExceptionHandler;
+import gov.va.med.imaging.core.router.breaker.SiteCircuitBreakerRegistry;
+import gov.va.med.imaging.core.router.breaker.SiteCircuitBreakerState;
 import gov.va.med.imaging.datasource.DataSourceProvider;
 import gov.va.med.imaging.datasource.VistaRadDataSourceSpi;
 import gov.va.med.imaging.exchange.enums.SiteConnectivityStatus;
@@ -43,7 +45,8 @@ import gov.va.med.imaging.transactioncontext.TransactionContextFactory;
  * Command that gets the connectivity status of a remote site.  This command is functionaly the same
  * as the GetSiteConnectivityStatusCommandImpl except this one creates a VistARad SPI method
  * instead of a study graph SPI.  Creating the SPI makes isVersionCompatible which tests to see
- * if the VIX can communicate with the site.
+ * if the VIX can communicate with the site.  As in GetSiteConnectivityStatusCommandImpl, a site 
+ * whose circuit breaker is open is reported as DATASOURCE_UNAVAILABLE without creating the SPI.
  * 
  * @author vhaiswwerfej
  *
@@ -107,6 +110,13 @@ extends AbstractDataSourceExceptionHandler<SiteConnectivityStatus>
 					"protocol preferences for the site specify valid protocols.");
 			return SiteConnectivityStatus.VIX_UNAVAILABLE;
 		}
+		SiteCircuitBreakerState breakerState = SiteCircuitBreakerRegistry.getSingleton().getState(getRoutingToken());
+		context.addDebugInformation("Circuit breaker for site '" + getSiteNumber() + "' is " + breakerState + ".");
+		if(breakerState == SiteCircuitBreakerState.OPEN)
+		{
+			getLogger().info("Circuit breaker for site '" + getSiteNumber() + "' is open, returning Datasource Unavailable");
+			return SiteConnectivityStatus.DATASOURCE_UNAVAILABLE;
+		}
 		Exception lastException = null;
 		// try each of the configured protocols in turn
 		for(URL url : resolvedUrls )
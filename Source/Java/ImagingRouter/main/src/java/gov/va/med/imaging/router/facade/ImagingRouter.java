@@ -57,6 +57,7 @@ import gov.va.med.imaging.exchange.business.Patient;
 import gov.va.med.imaging.exchange.business.Study;
 import gov.va.med.imaging.exchange.business.StudyFilter;
 import gov.va.med.imaging.exchange.business.StudySetResult;
+import gov.va.med.imaging.exchange.business.StudySetResultListener;
 import gov.va.med.imaging.exchange.business.annotations.ImageAnnotation;
 import gov.va.med.imaging.exchange.business.annotations.ImageAnnotationDetails;
 import gov.va.med.imaging.exchange.business.annotations.ImageAnnotationSource;
@@ -258,6 +259,22 @@ extends FacadeRouter
 	public abstract CumulativeCommandStatistics getCumulativeStatisticsStudySetResultForPatient(PatientIdentifier patientIdentifier, StudyFilter studyFilter, StudyLoadLevel studyLoadLevel)
 	throws MethodException, ConnectionException;
 	
+	/**
+	 * This method returns CumulativeCommandStatistics<StudySetResult> but isn't defined that way because it confuses the CoreRouterAnnotationProcessor
+	 * The studies from each site are delivered to the listener as they become available.
+	 * @param patientId
+	 * @param studyFilter
+	 * @param studyLoadLevel
+	 * @param studySetResultListener
+	 * @return
+	 * @throws MethodException
+	 * @throws ConnectionException
+	 */
+	@FacadeRouterMethod(asynchronous=false, commandClassName="GetCumulativeStatisticsStudySetResultForPatientCommand", isChildCommand=true)
+	public abstract CumulativeCommandStatistics getCumulativeStatisticsStudySetResultForPatient(PatientIdentifier patientIdentifier, StudyFilter studyFilter, StudyLoadLevel studyLoadLevel, 
+		StudySetResultListener studySetResultListener)
+	throws MethodException, ConnectionException;
+	
 	@FacadeRouterMethod(asynchronous=true, isChildCommand=true, commandClassName="GetDocumentSetResultBySiteNumberCommand", asynchronousCommandResultListenerParameterName="listener", priority=2)
 	public abstract void getDocumentSetResultBySiteNumber(RoutingToken routingToken, DocumentFilter filter, AsynchronousCommandResultListener<?> listener);
 	
@@ -0,0 +1,190 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+
+ */
+package gov.va.med.imaging.router.commands;
+
+import static org.junit.Assert.*;
+import gov.va.med.imaging.channels.WritableByteChannelSpreaderPump;
+import gov.va.med.imaging.storage.cache.InstanceWritableByteChannel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.zip.Checksum;
+
+import org.junit.Test;
+
+/**
+ * Tests that a failure to write the cache does not fail an image streamed to the client
+ * and the cache at the same time.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class CacheWriteThroughChannelTest
+{
+	/**
+	 * A cache instance channel that fails once a given number of bytes has been written.
+	 */
+	private static class FailingCacheChannel
+	implements InstanceWritableByteChannel
+	{
+		private final int failAfter;
+		private final boolean failOnClose;
+		private int written = 0;
+		private boolean closed = false;
+		private boolean errored = false;
+		
+		FailingCacheChannel(int failAfter, boolean failOnClose)
+		{
+			this.failAfter = failAfter;
+			this.failOnClose = failOnClose;
+		}
+
+		@Override
+		public int write(ByteBuffer src) 
+		throws IOException
+		{
+			if(written + src.remaining() > failAfter)
+				throw new IOException("No space left on device");
+			int count = src.remaining();
+			src.position(src.limit());
+			written += count;
+			return count;
+		}
+
+		@Override
+		public boolean isOpen()
+		{
+			return !closed && !errored;
+		}
+
+		@Override
+		public void close() 
+		throws IOException
+		{
+			if(failOnClose)
+				throw new IOException("No space left on device");
+			closed = true;
+		}
+
+		@Override
+		public void error()
+		{
+			errored = true;
+		}
+
+		@Override
+		public Checksum getChecksum()
+		{
+			return null;
+		}
+
+		@Override
+		public long getLastAccessedTime()
+		{
+			return 0L;
+		}
+
+		@Override
+		public StackTraceElement[] getInstantiatingStackTrace()
+		{
+			return null;
+		}
+	}
+	
+	private byte[] createContent(int length)
+	{
+		byte[] content = new byte[length];
+		for(int index = 0; index < length; ++index)
+			content[index] = (byte)index;
+		return content;
+	}
+	
+	private long stream(byte[] content, CacheWriteThroughChannel cacheChannel, ByteArrayOutputStream client)
+	throws IOException
+	{
+		WritableByteChannelSpreaderPump pump = new WritableByteChannelSpreaderPump(
+			Channels.newChannel(new ByteArrayInputStream(content)), 
+			new WritableByteChannel[]{cacheChannel, Channels.newChannel(client)} );
+		pump.setConcurrentWrites(false);
+		return pump.copy();
+	}
+	
+	@Test
+	public void testCacheWriteFailureDoesNotFailClient()
+	throws IOException
+	{
+		byte[] content = createContent(100000);
+		FailingCacheChannel cacheInstance = new FailingCacheChannel(10000, false);
+		CacheWriteThroughChannel cacheChannel = new CacheWriteThroughChannel(cacheInstance, "image");
+		ByteArrayOutputStream client = new ByteArrayOutputStream();
+		
+		assertEquals(content.length, stream(content, cacheChannel, client));
+		assertTrue(Arrays.equals(content, client.toByteArray()));
+		assertTrue(cacheChannel.isAbandoned());
+		assertTrue(cacheInstance.errored);
+		
+		// an abandoned instance is never published
+		cacheChannel.close();
+		assertFalse(cacheInstance.closed);
+	}
+	
+	@Test
+	public void testCacheCloseFailureAbandonsInstance()
+	throws IOException
+	{
+		byte[] content = createContent(1000);
+		FailingCacheChannel cacheInstance = new FailingCacheChannel(Integer.MAX_VALUE, true);
+		CacheWriteThroughChannel cacheChannel = new CacheWriteThroughChannel(cacheInstance, "image");
+		ByteArrayOutputStream client = new ByteArrayOutputStream();
+		
+		assertEquals(content.length, stream(content, cacheChannel, client));
+		assertFalse(cacheChannel.isAbandoned());
+		cacheChannel.close();
+		assertTrue(cacheChannel.isAbandoned());
+		assertTrue(cacheInstance.errored);
+		assertTrue(Arrays.equals(content, client.toByteArray()));
+	}
+	
+	@Test
+	public void testSuccessfulWriteIsPublished()
+	throws IOException
+	{
+		byte[] content = createContent(1000);
+		FailingCacheChannel cacheInstance = new FailingCacheChannel(Integer.MAX_VALUE, false);
+		CacheWriteThroughChannel cacheChannel = new CacheWriteThroughChannel(cacheInstance, "image");
+		
+		assertEquals(content.length, stream(content, cacheChannel, new ByteArrayOutputStream()));
+		cacheChannel.close();
+		assertFalse(cacheChannel.isAbandoned());
+		assertTrue(cacheInstance.closed);
+		assertEquals(content.length, cacheInstance.written);
+	}
+}
@@ -0,0 +1,196 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+
+ */
+package gov.va.med.imaging.router.commands;
+
+import static org.junit.Assert.*;
+import gov.va.med.PatientIdentifier;
+import gov.va.med.RoutingToken;
+import gov.va.med.RoutingTokenImpl;
+import gov.va.med.imaging.core.interfaces.router.AsynchronousCommandResult;
+import gov.va.med.imaging.core.interfaces.router.AsynchronousCommandResultListener;
+import gov.va.med.imaging.core.interfaces.router.Command;
+import gov.va.med.imaging.exchange.business.Study;
+import gov.va.med.imaging.exchange.business.StudySetResult;
+import gov.va.med.imaging.exchange.business.StudySetResultListener;
+import gov.va.med.imaging.exchange.enums.ObjectOrigin;
+import gov.va.med.imaging.exchange.enums.StudyDeletedImageState;
+import gov.va.med.imaging.exchange.enums.StudyLoadLevel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the delivery of the studies of each site to the StudySetResultListener
+ * before the cumulative result is complete.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class GetCumulativeStatisticsStudySetResultForPatientCommandTest
+{
+	private final List<String> events = new ArrayList<String>();
+	private GetCumulativeStatisticsStudySetResultForPatientCommandImpl command;
+	private AsynchronousCommandResultListener<StudySetResult> cumulativeListener;
+	
+	@Before
+	public void setUp()
+	{
+		command = new GetCumulativeStatisticsStudySetResultForPatientCommandImpl(
+			getPatientIdentifier(), null, StudyLoadLevel.FULL, 
+			new StudySetResultListener()
+			{
+				@Override
+				public void studySetResultAvailable(StudySetResult partialResult)
+				{
+					events.add("partial:" + partialResult.getArtifactSize());
+				}
+			});
+		cumulativeListener = new AsynchronousCommandResultListener<StudySetResult>()
+		{
+			@Override
+			public void commandComplete(AsynchronousCommandResult<StudySetResult> result)
+			{
+				events.add("complete:" + result.getResult().getArtifactSize());
+			}
+		};
+	}
+	
+	private PatientIdentifier getPatientIdentifier()
+	{
+		return PatientIdentifier.icnPatientIdentifier("1006184063V088473");
+	}
+	
+	private StudySetResult createStudySetResult(String siteNumber, int count, boolean partial)
+	throws Exception
+	{
+		SortedSet<Study> studies = new TreeSet<Study>();
+		for(int index = 0; index < count; ++index)
+			studies.add(Study.create(ObjectOrigin.VA, siteNumber, "" + (index + 1), getPatientIdentifier(), 
+				StudyLoadLevel.FULL, StudyDeletedImageState.cannotIncludeDeletedImages));
+		return partial ? StudySetResult.createPartialResult(studies, null) : StudySetResult.createFullResult(studies);
+	}
+	
+	// the child listener does not look at the child command
+	private AsynchronousCommandResult<StudySetResult> createChildCommandResult(StudySetResult studySetResult)
+	{
+		Command<StudySetResult> childCommand = null;
+		return new AsynchronousCommandResult<StudySetResult>(childCommand, studySetResult);
+	}
+	
+	private AsynchronousCommandResult<StudySetResult> createChildCommandResult(Throwable t)
+	{
+		Command<StudySetResult> childCommand = null;
+		return new AsynchronousCommandResult<StudySetResult>(childCommand, t);
+	}
+	
+	private GetCumulativeStatisticsStudySetResultForPatientCommandImpl.StudySetResultChildListener createChildListener(String siteNumber)
+	throws Exception
+	{
+		RoutingToken routingToken = RoutingTokenImpl.createVARadiologySite(siteNumber);
+		return command.new StudySetResultChildListener(cumulativeListener, routingToken);
+	}
+	
+	@Test
+	public void testSiteResultsReachListenerBeforeCompletion()
+	throws Exception
+	{
+		GetCumulativeStatisticsStudySetResultForPatientCommandImpl.StudySetResultChildListener fast = createChildListener("660");
+		GetCumulativeStatisticsStudySetResultForPatientCommandImpl.StudySetResultChildListener slow = createChildListener("661");
+		
+		// the first site delivers its studies before it completes
+		fast.studySetResultAvailable(createStudySetResult("660", 2, true));
+		assertEquals(1, events.size());
+		assertEquals("partial:2", events.get(0));
+		fast.commandComplete(createChildCommandResult(createStudySetResult("660", 2, false)));
+		
+		// the other site only has its complete result
+		slow.commandComplete(createChildCommandResult(createStudySetResult("661", 3, false)));
+		
+		// studies reach the listener before the cumulative listener hears of each site, and only once
+		String [] expected = new String[]{"partial:2", "complete:2", "partial:3", "complete:3"};
+		assertEquals(expected.length, events.size());
+		for(int index = 0; index < expected.length; ++index)
+			assertEquals(expected[index], events.get(index));
+	}
+	
+	@Test
+	public void testEmptyPartialResultDoesNotSuppressCompleteResult()
+	throws Exception
+	{
+		GetCumulativeStatisticsStudySetResultForPatientCommandImpl.StudySetResultChildListener listener = createChildListener("660");
+		listener.studySetResultAvailable(createStudySetResult("660", 0, true));
+		assertTrue(events.isEmpty());
+		
+		listener.commandComplete(createChildCommandResult(createStudySetResult("660", 2, false)));
+		assertEquals(2, events.size());
+		assertEquals("partial:2", events.get(0));
+		assertEquals("complete:2", events.get(1));
+	}
+	
+	@Test
+	public void testOrphanedSiteResultsAreDroppedOnceClosed()
+	throws Exception
+	{
+		GetCumulativeStatisticsStudySetResultForPatientCommandImpl.StudySetResultChildListener listener = createChildListener("660");
+		GetCumulativeStatisticsStudySetResultForPatientCommandImpl.StudySetResultChildListener orphan = createChildListener("661");
+		listener.commandComplete(createChildCommandResult(createStudySetResult("660", 2, false)));
+		
+		// the cumulative result was returned before the other site answered
+		command.closeStudySetResultListener();
+		orphan.studySetResultAvailable(createStudySetResult("661", 3, true));
+		orphan.commandComplete(createChildCommandResult(createStudySetResult("661", 3, false)));
+		
+		String [] expected = new String[]{"partial:2", "complete:2", "complete:3"};
+		assertEquals(expected.length, events.size());
+		for(int index = 0; index < expected.length; ++index)
+			assertEquals(expected[index], events.get(index));
+	}
+	
+	@Test
+	public void testFailedSiteIsOnlyPassedToCumulativeListener()
+	throws Exception
+	{
+		final List<AsynchronousCommandResult<StudySetResult>> results = new ArrayList<AsynchronousCommandResult<StudySetResult>>();
+		cumulativeListener = new AsynchronousCommandResultListener<StudySetResult>()
+		{
+			@Override
+			public void commandComplete(AsynchronousCommandResult<StudySetResult> result)
+			{
+				results.add(result);
+			}
+		};
+		GetCumulativeStatisticsStudySetResultForPatientCommandImpl.StudySetResultChildListener listener = createChildListener("660");
+		listener.commandComplete(createChildCommandResult(new Exception("site unavailable")));
+		assertTrue(events.isEmpty());
+		assertEquals(1, results.size());
+		assertFalse(results.get(0).isSuccess());
+	}
+}
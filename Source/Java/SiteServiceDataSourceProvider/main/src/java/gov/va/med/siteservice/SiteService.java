@@ -130,8 +130,9 @@ implements Iterable<Site>
 	{
 		assert configuration != null;
 		this.configuration = configuration;
-		siteMap = (ReadWriteLockMap<String, Site>)ReadWriteLockCollections.readWriteLockMap(new HashMap<String, Site>());
-		regionMap = (ReadWriteLockMap<String, Region>)ReadWriteLockCollections.readWriteLockMap(new HashMap<String, Region>());
+		// read on every request and replaced as a whole once a day, so copy on write
+		siteMap = ReadWriteLockCollections.copyOnWriteMap(new HashMap<String, Site>());
+		regionMap = ReadWriteLockCollections.copyOnWriteMap(new HashMap<String, Region>());
 		initialLoadComplete = false;
 		
 		getSiteServiceUri();		// here to force an error in the initializer if the URI is not formatted properly
@@ -307,9 +308,8 @@ implements Iterable<Site>
 	{
 		logger.debug("getAllRegions ()");
 		List<Region> regions = new ArrayList<Region>();
-		for(String key : regionMap.keySet())
+		for(Region region : regionMap.values())
 		{
-			Region region = regionMap.get(key);
 			regions.add(getRegionByNumber(region.getRegionNumber()));
 		}
 		logger.debug("Found [" + regions.size() + "] regions");
@@ -327,9 +327,8 @@ implements Iterable<Site>
 		Region result = new RegionImpl(region.getRegionName(), region.getRegionNumber());
 		
 		// find all the sites for this region
-		for(String key : this.siteMap.keySet())
+		for(Site site : this.siteMap.values())
 		{
-			Site site = this.siteMap.get(key);
 			if(regionNumber.equals(site.getRegionId()))
 			{
 				result.getSites().add(site);
@@ -348,18 +347,18 @@ implements Iterable<Site>
     {
 		return new Iterator<Site>()
 		{
-			private Iterator<String> keysetIterator = siteMap.keySet().iterator();
+			private Iterator<Site> siteIterator = siteMap.values().iterator();
 			
 			@Override
             public boolean hasNext()
             {
-	            return keysetIterator.hasNext();
+	            return siteIterator.hasNext();
             }
 
 			@Override
             public Site next()
             {
-	            return siteMap.get(keysetIterator.next());
+	            return siteIterator.next();
             }
 
 			@Override
@@ -66,7 +66,7 @@ import static com.sleepycat.persist.model.Relationship.*;
  * @author VHAISWBECKEC
  *
  */
-@Entity(version=17)
+@Entity(version=18)
 public class TransactionLogEntryImpl 
 implements TransactionLogEntry,
 java.io.Serializable
@@ -94,10 +94,17 @@ java.io.Serializable
 	private String quality;
 	private String requestingSite;
 	private String originatingHost;
+	@SecondaryKey(relate=MANY_TO_ONE)
 	private String user;
+	@SecondaryKey(relate=MANY_TO_ONE)
 	private String urn;
 	private Boolean cacheHit;
 	private String errorMessage;
+	// derived from errorMessage so that entries with errors can be found without reading every entry,
+	// null for entries written before version 18
+	@SecondaryKey(relate=MANY_TO_ONE)
+	private Boolean errorPresent;
+	@SecondaryKey(relate=MANY_TO_ONE)
 	private String modality;
 	private String purposeOfUse;
 	private String imageThroughput;
@@ -200,7 +207,7 @@ java.io.Serializable
 		this.transactionId = transactionId;
 		this.urn = urn;
 		this.cacheHit = cacheHit;
-		this.errorMessage = errorMessage;
+		setErrorMessage(errorMessage);
 		this.modality = modality;
 		this.purposeOfUse = purposeOfUse;
 		this.datasourceProtocol = datasourceProtocol;
@@ -506,6 +513,28 @@ java.io.Serializable
 	public void setErrorMessage(String errorMessage)
 	{
 		this.errorMessage = errorMessage;
+		this.errorPresent = Boolean.valueOf(isErrorPresent(errorMessage));
+	}
+	
+	/**
+	 * 
+	 * @return True if this entry has an error message, null if the entry was written before
+	 * the error presence was recorded
+	 */
+	public Boolean getErrorPresent()
+	{
+		return errorPresent;
+	}
+	
+	/**
+	 * The definition of an error message used for the errorPresent secondary key.
+	 * 
+	 * @param errorMessage
+	 * @return
+	 */
+	public static boolean isErrorPresent(String errorMessage)
+	{
+		return errorMessage != null && errorMessage.length() > 0;
 	}
 
 	/**
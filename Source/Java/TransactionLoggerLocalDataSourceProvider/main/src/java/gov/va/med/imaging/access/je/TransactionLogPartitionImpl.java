@@ -0,0 +1,84 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.access.je;
+
+import com.sleepycat.persist.model.Entity;
+import com.sleepycat.persist.model.PrimaryKey;
+
+/**
+ * The catalog entry of one transaction log partition, a store holding the log entries
+ * that start within a period (normally one day).
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+@Entity(version=0)
+public class TransactionLogPartitionImpl
+{
+	@PrimaryKey
+	private Long startTime;
+	private long endTime;
+	private String storeName;
+	private long createdTime;
+	
+	// required by the persistence layer
+	TransactionLogPartitionImpl()
+	{
+	}
+	
+	public TransactionLogPartitionImpl(long startTime, long endTime, String storeName)
+	{
+		this.startTime = startTime;
+		this.endTime = endTime;
+		this.storeName = storeName;
+		this.createdTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * @return the start of the period of the entries in the partition, inclusive
+	 */
+	public long getStartTime()
+	{
+		return startTime;
+	}
+
+	/**
+	 * @return the end of the period of the entries in the partition, exclusive
+	 */
+	public long getEndTime()
+	{
+		return endTime;
+	}
+
+	public String getStoreName()
+	{
+		return storeName;
+	}
+
+	public long getCreatedTime()
+	{
+		return createdTime;
+	}
+}
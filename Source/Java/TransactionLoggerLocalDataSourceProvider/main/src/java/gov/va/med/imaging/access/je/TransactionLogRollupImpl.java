@@ -0,0 +1,132 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+
+ */
+package gov.va.med.imaging.access.je;
+
+import gov.va.med.imaging.access.TransactionLogQuantileSketch;
+import gov.va.med.imaging.access.TransactionLogRollup;
+import gov.va.med.imaging.access.TransactionLogRollupMeasure;
+
+import com.sleepycat.persist.model.Entity;
+import com.sleepycat.persist.model.Persistent;
+import com.sleepycat.persist.model.PrimaryKey;
+
+/**
+ * The stored form of a TransactionLogRollup, the rollup of one minute or one hour 
+ * of transaction log entries of one command class, site and data source protocol.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+@Entity(version=0)
+public class TransactionLogRollupImpl
+{
+	@PrimaryKey
+	private TransactionLogRollupKey key;
+	private long entryCount;
+	private long errorCount;
+	private MeasureImpl[] measures;
+	
+	// required by the persistence layer
+	TransactionLogRollupImpl()
+	{
+	}
+	
+	public TransactionLogRollupImpl(TransactionLogRollupKey key, TransactionLogRollup rollup)
+	{
+		this.key = key;
+		this.entryCount = rollup.getEntryCount();
+		this.errorCount = rollup.getErrorCount();
+		TransactionLogRollup.Measure[] measureTypes = TransactionLogRollup.Measure.values();
+		this.measures = new MeasureImpl[measureTypes.length];
+		for(TransactionLogRollup.Measure measureType : measureTypes)
+			this.measures[measureType.ordinal()] = new MeasureImpl(rollup.getMeasure(measureType));
+	}
+	
+	public TransactionLogRollupKey getKey()
+	{
+		return key;
+	}
+	
+	/**
+	 * 
+	 * @return a new TransactionLogRollup with the values of this rollup
+	 */
+	public TransactionLogRollup toRollup()
+	{
+		TransactionLogRollup rollup = new TransactionLogRollup(key.getPeriodStart(), key.getPeriodEnd(), 
+			emptyToNull(key.getCommandClassName()), emptyToNull(key.getSite()), emptyToNull(key.getDatasourceProtocol()));
+		rollup.setCounts(entryCount, errorCount);
+		for(TransactionLogRollup.Measure measureType : TransactionLogRollup.Measure.values())
+		{
+			// measures added in later versions are not in older rollups
+			if(measures != null && measureType.ordinal() < measures.length && measures[measureType.ordinal()] != null)
+				rollup.setMeasure(measureType, measures[measureType.ordinal()].toMeasure());
+		}
+		return rollup;
+	}
+	
+	private static String emptyToNull(String value)
+	{
+		return value == null || value.length() == 0 ? null : value;
+	}
+	
+	/**
+	 * The stored form of a TransactionLogRollupMeasure.
+	 */
+	@Persistent(version=0)
+	static class MeasureImpl
+	{
+		private long count;
+		private long sum;
+		private long minimum;
+		private long maximum;
+		private long zeroCount;
+		private int[] binIndexes;
+		private long[] binCounts;
+		
+		// required by the persistence layer
+		MeasureImpl()
+		{
+		}
+		
+		MeasureImpl(TransactionLogRollupMeasure measure)
+		{
+			this.count = measure.getCount();
+			this.sum = measure.getSum();
+			this.minimum = measure.getMinimum() == null ? Long.MAX_VALUE : measure.getMinimum();
+			this.maximum = measure.getMaximum() == null ? Long.MIN_VALUE : measure.getMaximum();
+			this.zeroCount = measure.getSketch().getZeroCount();
+			this.binIndexes = measure.getSketch().getBinIndexes();
+			this.binCounts = measure.getSketch().getBinCounts();
+		}
+		
+		TransactionLogRollupMeasure toMeasure()
+		{
+			return new TransactionLogRollupMeasure(count, sum, minimum, maximum, 
+				new TransactionLogQuantileSketch(binIndexes, binCounts, zeroCount));
+		}
+	}
+}
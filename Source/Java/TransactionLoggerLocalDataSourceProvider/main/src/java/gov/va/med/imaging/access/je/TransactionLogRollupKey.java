@@ -0,0 +1,135 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+
+ */
+package gov.va.med.imaging.access.je;
+
+import com.sleepycat.persist.model.KeyField;
+import com.sleepycat.persist.model.Persistent;
+
+/**
+ * The primary key of a transaction log rollup, the period and the grouping of the entries.
+ * The key fields are ordered so that the rollups of one resolution are stored in period order.
+ * The grouping fields are never null, an empty String is stored for an entry without the value.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+@Persistent(version=0)
+public class TransactionLogRollupKey
+{
+	@KeyField(1)
+	private int resolutionMinutes;
+	@KeyField(2)
+	private long periodStart;
+	@KeyField(3)
+	private String commandClassName;
+	@KeyField(4)
+	private String site;
+	@KeyField(5)
+	private String datasourceProtocol;
+	
+	// required by the persistence layer
+	TransactionLogRollupKey()
+	{
+	}
+	
+	public TransactionLogRollupKey(int resolutionMinutes, long periodStart, 
+		String commandClassName, String site, String datasourceProtocol)
+	{
+		this.resolutionMinutes = resolutionMinutes;
+		this.periodStart = periodStart;
+		this.commandClassName = commandClassName == null ? "" : commandClassName;
+		this.site = site == null ? "" : site;
+		this.datasourceProtocol = datasourceProtocol == null ? "" : datasourceProtocol;
+	}
+	
+	/**
+	 * The key of the same grouping in the period of another resolution that contains this period.
+	 */
+	public TransactionLogRollupKey toResolution(int resolutionMinutes)
+	{
+		long periodLength = resolutionMinutes * 60000L;
+		return new TransactionLogRollupKey(resolutionMinutes, periodStart - (periodStart % periodLength), 
+			commandClassName, site, datasourceProtocol);
+	}
+
+	public int getResolutionMinutes()
+	{
+		return resolutionMinutes;
+	}
+
+	public long getPeriodStart()
+	{
+		return periodStart;
+	}
+	
+	public long getPeriodEnd()
+	{
+		return periodStart + resolutionMinutes * 60000L;
+	}
+
+	public String getCommandClassName()
+	{
+		return commandClassName;
+	}
+
+	public String getSite()
+	{
+		return site;
+	}
+
+	public String getDatasourceProtocol()
+	{
+		return datasourceProtocol;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + resolutionMinutes;
+		result = prime * result + (int)(periodStart ^ (periodStart >>> 32));
+		result = prime * result + commandClassName.hashCode();
+		result = prime * result + site.hashCode();
+		result = prime * result + datasourceProtocol.hashCode();
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (!(obj instanceof TransactionLogRollupKey))
+			return false;
+		final TransactionLogRollupKey other = (TransactionLogRollupKey) obj;
+		return resolutionMinutes == other.resolutionMinutes &&
+			periodStart == other.periodStart &&
+			commandClassName.equals(other.commandClassName) &&
+			site.equals(other.site) &&
+			datasourceProtocol.equals(other.datasourceProtocol);
+	}
+}
@@ -42,6 +42,12 @@ implements Serializable
 	private Boolean periodicPurgeEnabled = null;
 	private Boolean addTransactionLogToJmx = null;
 	private Long maxPurgeRuntime = null;
+	private Boolean asynchronousWriteEnabled = null;
+	private String writeDurability = null;
+	private Integer writeQueueCapacity = null;
+	private Integer maxWriteBatchSize = null;
+	private Integer maxIndexedQueryResults = null;
+	private Integer minuteRollupRetentionDays = null;
 	
 	public TransactionLoggerDataSourceProviderConfiguration()
 	{
@@ -50,6 +56,12 @@ implements Serializable
 		this.periodicPurgeEnabled = null;
 		this.addTransactionLogToJmx = null;
 		this.maxPurgeRuntime = null;
+		this.asynchronousWriteEnabled = null;
+		this.writeDurability = null;
+		this.writeQueueCapacity = null;
+		this.maxWriteBatchSize = null;
+		this.maxIndexedQueryResults = null;
+		this.minuteRollupRetentionDays = null;
 	}
 	
 	/**
@@ -126,6 +138,119 @@ implements Serializable
 		this.maxPurgeRuntime = maxPurgeRuntime;
 	}
 
+	/**
+	 * If true (or null) log entries are queued and written in batches by a 
+	 * single writer thread, else each entry is written on the calling thread.
+	 * 
+	 * @return the asynchronousWriteEnabled
+	 */
+	public Boolean getAsynchronousWriteEnabled()
+	{
+		return asynchronousWriteEnabled;
+	}
+
+	/**
+	 * @param asynchronousWriteEnabled the asynchronousWriteEnabled to set
+	 */
+	public void setAsynchronousWriteEnabled(Boolean asynchronousWriteEnabled)
+	{
+		this.asynchronousWriteEnabled = asynchronousWriteEnabled;
+	}
+
+	/**
+	 * The durability of the batch commits, one of SYNC, WRITE_NO_SYNC or NO_SYNC.
+	 * A null value is SYNC.
+	 * 
+	 * @return the writeDurability
+	 */
+	public String getWriteDurability()
+	{
+		return writeDurability;
+	}
+
+	/**
+	 * @param writeDurability the writeDurability to set
+	 */
+	public void setWriteDurability(String writeDurability)
+	{
+		this.writeDurability = writeDurability;
+	}
+
+	/**
+	 * The number of log entries that may be queued in memory before 
+	 * entries are spilled to disk.
+	 * 
+	 * @return the writeQueueCapacity
+	 */
+	public Integer getWriteQueueCapacity()
+	{
+		return writeQueueCapacity;
+	}
+
+	/**
+	 * @param writeQueueCapacity the writeQueueCapacity to set
+	 */
+	public void setWriteQueueCapacity(Integer writeQueueCapacity)
+	{
+		this.writeQueueCapacity = writeQueueCapacity;
+	}
+
+	/**
+	 * The maximum number of log entries committed in one database transaction.
+	 * 
+	 * @return the maxWriteBatchSize
+	 */
+	public Integer getMaxWriteBatchSize()
+	{
+		return maxWriteBatchSize;
+	}
+
+	/**
+	 * @param maxWriteBatchSize the maxWriteBatchSize to set
+	 */
+	public void setMaxWriteBatchSize(Integer maxWriteBatchSize)
+	{
+		this.maxWriteBatchSize = maxWriteBatchSize;
+	}
+
+	/**
+	 * The maximum number of entries a query will read by index and sort, queries that would
+	 * read more are read in date order instead.
+	 * 
+	 * @return the maxIndexedQueryResults
+	 */
+	public Integer getMaxIndexedQueryResults()
+	{
+		return maxIndexedQueryResults;
+	}
+
+	/**
+	 * @param maxIndexedQueryResults the maxIndexedQueryResults to set
+	 */
+	public void setMaxIndexedQueryResults(Integer maxIndexedQueryResults)
+	{
+		this.maxIndexedQueryResults = maxIndexedQueryResults;
+	}
+
+	/**
+	 * The number of days the per-minute statistics rollups are kept, the per-hour
+	 * rollups are kept for the retention period of the log entries.
+	 * 
+	 * @return the minuteRollupRetentionDays
+	 */
+	public Integer getMinuteRollupRetentionDays()
+	{
+		return minuteRollupRetentionDays;
+	}
+
+	/**
+	 * @param minuteRollupRetentionDays the minuteRollupRetentionDays to set
+	 */
+	public void setMinuteRollupRetentionDays(Integer minuteRollupRetentionDays)
+	{
+		this.minuteRollupRetentionDays = minuteRollupRetentionDays;
+	}
+
 	public static TransactionLoggerDataSourceProviderConfiguration createDefaultConfiguration()
 	{
 		TransactionLoggerDataSourceProviderConfiguration configuration = 
@@ -135,6 +260,12 @@ implements Serializable
 		configuration.setPeriodicPurgeEnabled(true);
 		configuration.setAddTransactionLogToJmx(true);
 		configuration.setMaxPurgeRuntime(600000L); // a value of 0 indicates the purge will run forever
+		configuration.setAsynchronousWriteEnabled(true);
+		configuration.setWriteDurability("SYNC");
+		configuration.setWriteQueueCapacity(8192);
+		configuration.setMaxWriteBatchSize(256);
+		configuration.setMaxIndexedQueryResults(50000);
+		configuration.setMinuteRollupRetentionDays(7);
 		return configuration;
 	}	
 }
@@ -0,0 +1,117 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.transactionlogger.datasource;
+
+import java.util.regex.Pattern;
+
+/**
+ * Matches a transaction log field against a query expression.  The query expressions are
+ * regular expressions, but most queries are for an exact value (i.e. a user name or a transaction ID).
+ * An expression without any regular expression meta-characters is compared as a literal, which 
+ * avoids compiling a pattern and allows the value to be looked up in a secondary index.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TransactionLogFieldMatcher
+{
+	private static final String REGEX_META_CHARACTERS = "\\^$.|?*+()[]{}";
+	
+	private final String literal;
+	private final Pattern pattern;
+	
+	/**
+	 * 
+	 * @param expression
+	 * @return a matcher for the expression, or null if the expression is null or empty (matches everything)
+	 */
+	public static TransactionLogFieldMatcher create(String expression)
+	{
+		if(expression == null || expression.length() == 0)
+			return null;
+		return new TransactionLogFieldMatcher(expression);
+	}
+	
+	private TransactionLogFieldMatcher(String expression)
+	{
+		if(isLiteral(expression))
+		{
+			this.literal = expression;
+			this.pattern = null;
+		}
+		else
+		{
+			this.literal = null;
+			this.pattern = Pattern.compile(expression);
+		}
+	}
+	
+	public static boolean isLiteral(String expression)
+	{
+		for(int index = 0; index < expression.length(); index++)
+		{
+			if(REGEX_META_CHARACTERS.indexOf(expression.charAt(index)) >= 0)
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * 
+	 * @return True if the expression is compared as an exact value
+	 */
+	public boolean isLiteral()
+	{
+		return literal != null;
+	}
+
+	/**
+	 * @return the exact value to match, null if the expression is a regular expression
+	 */
+	public String getLiteral()
+	{
+		return literal;
+	}
+	
+	/**
+	 * 
+	 * @param value
+	 * @return True if the value matches the expression, a null value never matches
+	 */
+	public boolean matches(String value)
+	{
+		if(value == null)
+			return false;
+		if(literal != null)
+			return literal.equals(value);
+		return pattern.matcher(value).matches();
+	}
+
+	@Override
+	public String toString()
+	{
+		return literal != null ? "'" + literal + "'" : "/" + pattern.pattern() + "/";
+	}
+}
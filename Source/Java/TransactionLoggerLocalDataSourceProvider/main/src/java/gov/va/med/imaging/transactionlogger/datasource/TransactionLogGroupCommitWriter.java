@@ -0,0 +1,853 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.transactionlogger.datasource;
+
+import gov.va.med.imaging.access.je.TransactionLogEntryImpl;
+import gov.va.med.imaging.monitorederrors.MonitoredErrors;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.je.DeadlockException;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.Transaction;
+
+/**
+ * Writes transaction log entries to the database on a single writer thread so that the
+ * threads creating the entries (i.e. the request threads) never wait on the database.
+ * 
+ * Entries are added to a bounded ring buffer.  The writer thread drains the buffer and commits
+ * the entries in batches, each batch in one database transaction with the configured durability.
+ * When the buffer is full, entries are spilled to files on disk rather than blocking the caller,
+ * the spill files are written to the database once the writer has caught up.  Entries that cannot
+ * be committed are also spilled, and the remaining buffered entries are spilled when the VM shuts down.
+ * Spill files left by a previous run are written to the database after startup.  A spill file is 
+ * deleted only once all of its entries have been committed, if a commit fails the entries of the file 
+ * that were not committed are spilled to a new file and the replay backs off.
+ * 
+ * The writer thread is never interrupted, an interrupt during a database write invalidates the 
+ * Environment.  It is stopped by clearing the running flag and queueing a marker entry to wake it.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TransactionLogGroupCommitWriter
+implements TransactionLogGroupCommitWriterMBean
+{
+	private final static Logger logger = Logger.getLogger(TransactionLogGroupCommitWriter.class);
+	
+	private static final int MAX_DEADLOCK_RETRIES = 3;
+	private static final long POLL_INTERVAL_MS = 1000L;
+	// after a commit fails, do not replay the spilled entries for this long
+	private static final long FAILURE_BACKOFF_MS = 60000L;
+	private static final String SPILL_FILE_PREFIX = "transactionLogSpill-";
+	private static final String SPILL_FILE_SUFFIX = ".ser";
+	// spill files that cannot be read are renamed with this suffix and kept for inspection
+	private static final String UNREADABLE_SPILL_FILE_SUFFIX = ".unreadable";
+	// queued to wake the writer thread when it is shut down, never written
+	private static final TransactionLogEntryImpl SHUTDOWN_MARKER = new TransactionLogEntryImpl();
+	
+	private final Environment environment;
+	private final TransactionLogPartitionCatalog partitionCatalog;
+	private final TransactionLoggerStatistics statistics;
+	private final TransactionLogWriteDurability durability;
+	private final BlockingQueue<TransactionLogEntryImpl> ringBuffer;
+	private final int queueCapacity;
+	private final int maxBatchSize;
+	private final File spillDirectory;
+	
+	private final Object spillLock = new Object();
+	private ObjectOutputStream spillStream = null;
+	private File spillStreamFile = null;
+	private long spillFileSerialNumber = 0L;
+	// the number of entries in each spill file not yet written, by file name, guarded by spillLock
+	private final Map<String, Long> spillFileEntryCounts = new TreeMap<String, Long>();
+	private final AtomicLong spilledEntries = new AtomicLong(0L);
+	private final AtomicLong totalSpilledEntries = new AtomicLong(0L);
+	
+	private final WriterThread writerThread;
+	// held while a batch is committed and the commit listener told of it
+	private final ReentrantLock batchLock = new ReentrantLock();
+	private volatile TransactionLogCommitListener commitListener = null;
+	private volatile boolean running = true;
+	private long backoffUntil = 0L;
+	
+	// statistics, written only by the writer thread
+	private volatile long batchesCommitted = 0L;
+	private volatile long entriesCommitted = 0L;
+	private volatile long batchCommitErrors = 0L;
+	private volatile int lastBatchSize = 0;
+	private volatile int largestBatchSize = 0;
+	private volatile long lastCommitLatencyMs = 0L;
+	private volatile long maxCommitLatencyMs = 0L;
+	private volatile long totalCommitLatencyMs = 0L;
+	
+	public TransactionLogGroupCommitWriter(
+		Environment environment, 
+		TransactionLogPartitionCatalog partitionCatalog,
+		TransactionLoggerStatistics statistics,
+		TransactionLogWriteDurability durability,
+		int queueCapacity,
+		int maxBatchSize,
+		File spillDirectory)
+	{
+		this.environment = environment;
+		this.partitionCatalog = partitionCatalog;
+		this.statistics = statistics;
+		this.durability = durability == null ? TransactionLogWriteDurability.SYNC : durability;
+		this.queueCapacity = queueCapacity > 0 ? queueCapacity : 8192;
+		this.maxBatchSize = maxBatchSize > 0 ? maxBatchSize : 256;
+		this.ringBuffer = new ArrayBlockingQueue<TransactionLogEntryImpl>(this.queueCapacity);
+		this.spillDirectory = spillDirectory;
+		if(!spillDirectory.exists()) 
+			spillDirectory.mkdirs();
+		
+		File[] existingSpillFiles = listSpillFiles();
+		for(File spillFile : existingSpillFiles)
+		{
+			long count = countSpillFileEntries(spillFile);
+			spillFileEntryCounts.put(spillFile.getName(), count);
+			spilledEntries.addAndGet(count);
+		}
+		if(existingSpillFiles.length > 0)
+			logger.info("Found '" + existingSpillFiles.length + "' transaction log spill files holding '" + 
+				spilledEntries.get() + "' entries, they will be written to the log.");
+		
+		this.writerThread = new WriterThread();
+	}
+	
+	/**
+	 * Start the writer thread and register a shutdown hook to spill the
+	 * buffered entries when the VM exits.
+	 */
+	public void start()
+	{
+		writerThread.start();
+		Runtime.getRuntime().addShutdownHook(new Thread("TransactionLogGroupCommitWriter-Shutdown")
+		{
+			@Override
+			public void run()
+			{
+				shutdown();
+			}
+		});
+		logger.info("Transaction log group commit writer started, durability '" + durability + "', queue capacity '" + 
+			queueCapacity + "', maximum batch size '" + maxBatchSize + "'.");
+	}
+	
+	/**
+	 * Stop the writer and spill any buffered entries to disk.
+	 * The writer thread finishes the batch it is committing, it is not interrupted.
+	 */
+	public synchronized void shutdown()
+	{
+		if(!running)
+			return;
+		running = false;
+		// wake the writer if it is waiting for an entry, if the buffer is full it is not waiting
+		ringBuffer.offer(SHUTDOWN_MARKER);
+		try
+		{
+			writerThread.join();
+		}
+		catch(InterruptedException iX)
+		{
+			logger.warn("Interrupted waiting for the transaction log writer to stop.");
+			Thread.currentThread().interrupt();
+		}
+		
+		List<TransactionLogEntryImpl> remaining = new ArrayList<TransactionLogEntryImpl>();
+		ringBuffer.drainTo(remaining);
+		removeShutdownMarker(remaining);
+		if(remaining.size() > 0)
+		{
+			logger.info("Spilling '" + remaining.size() + "' unwritten transaction log entries at shutdown.");
+			spill(remaining);
+		}
+		closeSpillStream();
+	}
+	
+	/**
+	 * Set the listener told of the entries in each batch after the batch is committed, 
+	 * including the entries written from the spill files.
+	 * 
+	 * @param commitListener
+	 */
+	public void setCommitListener(TransactionLogCommitListener commitListener)
+	{
+		this.commitListener = commitListener;
+	}
+	
+	/**
+	 * Run the task while no batch is being committed, i.e. every entry is either committed 
+	 * and the commit listener told of it, or not yet written.
+	 * 
+	 * @param task
+	 */
+	public void runBetweenBatches(Runnable task)
+	{
+		batchLock.lock();
+		try
+		{
+			task.run();
+		}
+		finally
+		{
+			batchLock.unlock();
+		}
+	}
+	
+	/**
+	 * Queue the entry to be written, this never blocks on the database.
+	 * If the ring buffer is full the entry is spilled to disk.
+	 * 
+	 * @param entry
+	 */
+	public void write(TransactionLogEntryImpl entry)
+	{
+		if(running && ringBuffer.offer(entry))
+			return;
+		
+		spill(Arrays.asList(entry));
+	}
+	
+	// ===============================================================================================
+	// Spill to disk
+	// ===============================================================================================
+	/**
+	 * 
+	 * @param entries
+	 * @return true if the entries were spilled, false if they are lost
+	 */
+	private boolean spill(List<TransactionLogEntryImpl> entries)
+	{
+		synchronized(spillLock)
+		{
+			try
+			{
+				if(spillStream == null)
+				{
+					File spillFile = new File(spillDirectory, 
+						SPILL_FILE_PREFIX + System.currentTimeMillis() + "-" + (spillFileSerialNumber++) + SPILL_FILE_SUFFIX);
+					spillStream = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile)));
+					spillStreamFile = spillFile;
+					spillFileEntryCounts.put(spillFile.getName(), 0L);
+					logger.info("Spilling transaction log entries to '" + spillFile.getAbsolutePath() + "'.");
+				}
+				for(TransactionLogEntryImpl entry : entries)
+				{
+					spillStream.writeObject(entry);
+					// do not retain references to the written entries
+					spillStream.reset();
+				}
+				spillStream.flush();
+				Long count = spillFileEntryCounts.get(spillStreamFile.getName());
+				spillFileEntryCounts.put(spillStreamFile.getName(), (count == null ? 0L : count) + entries.size());
+				spilledEntries.addAndGet(entries.size());
+				totalSpilledEntries.addAndGet(entries.size());
+				return true;
+			}
+			catch(IOException ioX)
+			{
+				statistics.incrementTransactionWriteErrors();
+				logger.error("Unable to spill '" + entries.size() + "' transaction log entries to disk, they are lost, " + ioX.getMessage(), ioX);
+				// the next spill starts a new file rather than appending to a broken stream
+				closeSpillStream();
+				return false;
+			}
+		}
+	}
+	
+	private void closeSpillStream()
+	{
+		synchronized(spillLock)
+		{
+			if(spillStream != null)
+			{
+				try
+				{
+					spillStream.close();
+				}
+				catch(IOException ioX)
+				{
+					logger.warn("Error closing transaction log spill file, " + ioX.getMessage());
+				}
+				spillStream = null;
+				spillStreamFile = null;
+			}
+		}
+	}
+	
+	private boolean hasSpillFiles()
+	{
+		synchronized(spillLock)
+		{
+			return !spillFileEntryCounts.isEmpty();
+		}
+	}
+	
+	/**
+	 * Forget a spill file that has been written to the database (or set aside), 
+	 * subtracting its entries from the spilled entry count.
+	 */
+	private void removeSpillFileEntryCount(File spillFile)
+	{
+		synchronized(spillLock)
+		{
+			Long count = spillFileEntryCounts.remove(spillFile.getName());
+			if(count != null)
+				spilledEntries.addAndGet(-count);
+		}
+	}
+	
+	/**
+	 * Count the entries of a spill file left by a previous run, the count 
+	 * ends at the first entry that cannot be read.
+	 */
+	private long countSpillFileEntries(File spillFile)
+	{
+		long count = 0L;
+		ObjectInputStream in = null;
+		try
+		{
+			in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(spillFile)));
+			while(readSpilledEntry(in) != null)
+				count++;
+		}
+		catch(Exception x)
+		{
+			logger.warn("Error counting the entries of transaction log spill file '" + spillFile.getName() + "' after '" + count + "' entries, " + x.getMessage());
+		}
+		finally
+		{
+			try {if(in != null) in.close();}
+			catch(IOException ioX){}
+		}
+		return count;
+	}
+	
+	/**
+	 * @return the next entry or null at the end of the file
+	 */
+	private static TransactionLogEntryImpl readSpilledEntry(ObjectInputStream in)
+	throws IOException, ClassNotFoundException
+	{
+		try
+		{
+			return (TransactionLogEntryImpl)in.readObject();
+		}
+		catch(EOFException eofX)
+		{
+			return null;
+		}
+	}
+	
+	private File[] listSpillFiles()
+	{
+		File[] files = spillDirectory.listFiles(new FileFilter()
+		{
+			@Override
+			public boolean accept(File file)
+			{
+				return file.isFile() && file.getName().startsWith(SPILL_FILE_PREFIX) && file.getName().endsWith(SPILL_FILE_SUFFIX);
+			}
+		});
+		if(files == null)
+			return new File[0];
+		Arrays.sort(files);
+		return files;
+	}
+	
+	/**
+	 * Write the oldest spill file to the database.
+	 * The current spill file is closed first so that it is complete, new spills
+	 * go to a new file.  The file is deleted once all of its entries have been committed.  If a 
+	 * batch cannot be committed, or the writer is shut down, the entries not yet committed are 
+	 * spilled to a new file before the file is deleted, if they cannot be the file is kept and 
+	 * replayed again later (writing the committed entries again).  A file that cannot be read 
+	 * to the end (i.e. the VM died while spilling) is renamed once the entries before the 
+	 * unreadable one have been handled.
+	 */
+	private void replaySpillFile()
+	{
+		closeSpillStream();
+		File spillFile = null;
+		synchronized(spillLock)
+		{
+			File[] spillFiles = listSpillFiles();
+			if(spillFiles.length == 0)
+			{
+				// the files were removed from outside
+				spillFileEntryCounts.clear();
+				spilledEntries.set(0L);
+				return;
+			}
+			// an overflowing write() may have started a new file since the stream was closed
+			for(File candidate : spillFiles)
+				if(spillStreamFile == null || !spillStreamFile.getName().equals(candidate.getName()))
+				{
+					spillFile = candidate;
+					break;
+				}
+		}
+		if(spillFile == null)
+			return;
+		
+		int replayed = 0;
+		boolean readError = false;
+		List<TransactionLogEntryImpl> uncommitted = null;
+		ObjectInputStream in = null;
+		try
+		{
+			in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(spillFile)));
+			List<TransactionLogEntryImpl> batch = new ArrayList<TransactionLogEntryImpl>(maxBatchSize);
+			for(;;)
+			{
+				TransactionLogEntryImpl entry = null;
+				try
+				{
+					entry = readSpilledEntry(in);
+				}
+				catch(Exception x)
+				{
+					readError = true;
+					logger.error("Error reading transaction log spill file '" + spillFile.getName() + "' after '" + 
+						(replayed + batch.size()) + "' entries, " + x.getMessage());
+				}
+				if(entry != null)
+					batch.add(entry);
+				if(batch.size() >= maxBatchSize || (entry == null && batch.size() > 0))
+				{
+					if(!running || !commitBatch(batch, false))
+					{
+						// keep the entries not yet committed, including the rest of the file
+						uncommitted = new ArrayList<TransactionLogEntryImpl>(batch);
+						if(!readError && entry != null)
+							readError = !readRemaining(in, uncommitted);
+						break;
+					}
+					replayed += batch.size();
+					batch.clear();
+				}
+				if(entry == null)
+					break;
+			}
+		}
+		catch(IOException ioX)
+		{
+			// the file could not be opened, it is tried again after the back off
+			backoffUntil = System.currentTimeMillis() + FAILURE_BACKOFF_MS;
+			logger.error("Error opening transaction log spill file '" + spillFile.getName() + "', " + ioX.getMessage());
+			return;
+		}
+		finally
+		{
+			try {if(in != null) in.close();}
+			catch(IOException ioX){}
+		}
+		
+		if(uncommitted != null)
+		{
+			logger.warn("Wrote '" + replayed + "' transaction log entries from spill file '" + spillFile.getName() + 
+				"', spilling the '" + uncommitted.size() + "' entries not written to a new file.");
+			if(!spill(uncommitted))
+			{
+				// the whole file is replayed again
+				logger.error("Keeping transaction log spill file '" + spillFile.getName() + "', its first '" + replayed + "' entries will be written again.");
+				closeSpillStream();
+				return;
+			}
+			closeSpillStream();
+		}
+		else
+			logger.info("Wrote '" + replayed + "' transaction log entries from spill file '" + spillFile.getName() + "'.");
+		
+		removeSpillFileEntryCount(spillFile);
+		if(readError)
+		{
+			File unreadable = new File(spillFile.getPath() + UNREADABLE_SPILL_FILE_SUFFIX);
+			if(spillFile.renameTo(unreadable))
+				logger.error("Transaction log spill file '" + spillFile.getName() + "' could not be read to the end, renamed to '" + unreadable.getName() + "'.");
+			else if(!spillFile.delete())
+				logger.warn("Unable to rename or delete transaction log spill file '" + spillFile.getAbsolutePath() + "'.");
+		}
+		else if(!spillFile.delete())
+			logger.warn("Unable to delete transaction log spill file '" + spillFile.getAbsolutePath() + "'.");
+	}
+	
+	/**
+	 * Read the rest of a spill file into the given list.
+	 * 
+	 * @return true if the file was read to the end
+	 */
+	private boolean readRemaining(ObjectInputStream in, List<TransactionLogEntryImpl> entries)
+	{
+		try
+		{
+			for(TransactionLogEntryImpl entry = readSpilledEntry(in); entry != null; entry = readSpilledEntry(in))
+				entries.add(entry);
+			return true;
+		}
+		catch(Exception x)
+		{
+			logger.error("Error reading the rest of a transaction log spill file after '" + entries.size() + "' entries, " + x.getMessage());
+			return false;
+		}
+	}
+	
+	// ===============================================================================================
+	// Database writes
+	// ===============================================================================================
+	/**
+	 * Commit the entries in one transaction, retrying on deadlock.
+	 * If the entries cannot be committed they are spilled to disk.
+	 * 
+	 * @param batch
+	 * @param spillOnFailure - if false, entries that cannot be committed are left to the caller
+	 * @return true if the entries were committed
+	 */
+	private boolean commitBatch(List<TransactionLogEntryImpl> batch, boolean spillOnFailure)
+	{
+		batchLock.lock();
+		try
+		{
+			return commitBatchLocked(batch, spillOnFailure);
+		}
+		finally
+		{
+			batchLock.unlock();
+		}
+	}
+	
+	private boolean commitBatchLocked(List<TransactionLogEntryImpl> batch, boolean spillOnFailure)
+	{
+		for(int numTries = 1; ; ++numTries)
+		{
+			long start = System.currentTimeMillis();
+			Transaction txn = null;
+			// the partitions written by the batch, each acquired once
+			Map<TransactionLogPartition, TransactionLogPartition> partitions = 
+				new IdentityHashMap<TransactionLogPartition, TransactionLogPartition>();
+			List<TransactionLogEntryImpl> written = new ArrayList<TransactionLogEntryImpl>(batch.size());
+			try
+			{
+				txn = environment.beginTransaction(null, durability.createTransactionConfig());
+				for(TransactionLogEntryImpl entry : batch)
+				{
+					TransactionLogPartition partition = acquirePartition(entry, partitions);
+					if(partition != null)
+					{
+						partition.getTransactionLogBySequence().put(txn, entry);
+						written.add(entry);
+					}
+				}
+				txn.commit();
+				
+				recordCommit(batch, System.currentTimeMillis() - start);
+				notifyCommitListener(written);
+				return true;
+			}
+			catch(DeadlockException dlX)
+			{
+				abort(txn);
+				if(numTries >= MAX_DEADLOCK_RETRIES)
+				{
+					commitFailed(batch, spillOnFailure, dlX);
+					return false;
+				}
+				logger.warn("Deadlocked committing batch of '" + batch.size() + "' transaction log entries, current attempt '" + numTries + "', - Will Retry.");
+			}
+			catch(DatabaseException dX)
+			{
+				abort(txn);
+				commitFailed(batch, spillOnFailure, dX);
+				return false;
+			}
+			catch(RuntimeException rX)
+			{
+				abort(txn);
+				commitFailed(batch, spillOnFailure, rX);
+				return false;
+			}
+			finally
+			{
+				for(TransactionLogPartition partition : partitions.keySet())
+					partition.release();
+			}
+		}
+	}
+	
+	private void notifyCommitListener(List<TransactionLogEntryImpl> written)
+	{
+		TransactionLogCommitListener listener = commitListener;
+		if(listener == null || written.isEmpty())
+			return;
+		try
+		{
+			listener.entriesCommitted(written);
+		}
+		catch(RuntimeException rX)
+		{
+			logger.error("Error notifying the transaction log commit listener, " + rX.getMessage(), rX);
+		}
+	}
+	
+	/**
+	 * Acquire the partition of the entry if it has not already been acquired for the batch.
+	 * 
+	 * @return the partition or null if the partition of the entry has already been purged
+	 */
+	private TransactionLogPartition acquirePartition(TransactionLogEntryImpl entry, 
+		Map<TransactionLogPartition, TransactionLogPartition> partitions)
+	throws DatabaseException
+	{
+		long startTime = entry.getStartTime() == null ? System.currentTimeMillis() : entry.getStartTime();
+		TransactionLogPartition partition = partitionCatalog.acquireWritePartition(startTime);
+		if(partition == null)
+		{
+			logger.warn("Transaction (" + entry.getTransactionId() + ") started before the purged transaction log, it will not be written.");
+			return null;
+		}
+		if(partitions.put(partition, partition) != null)
+			partition.release();
+		return partition;
+	}
+	
+	private void abort(Transaction txn)
+	{
+		try
+		{
+			if(txn != null)
+				txn.abort();
+		}
+		catch(Exception x)
+		{
+			logger.warn("Exception aborting transaction, " + x.getMessage());
+		}
+	}
+	
+	private void commitFailed(List<TransactionLogEntryImpl> batch, boolean spillOnFailure, Exception x)
+	{
+		batchCommitErrors++;
+		statistics.incrementTransactionWriteErrors();
+		backoffUntil = System.currentTimeMillis() + FAILURE_BACKOFF_MS;
+		logger.error("Error committing batch of '" + batch.size() + "' transaction log entries, " + x.getMessage(), x);
+		if(spillOnFailure)
+			spill(batch);
+	}
+	
+	private void recordCommit(List<TransactionLogEntryImpl> batch, long latencyMs)
+	{
+		batchesCommitted++;
+		entriesCommitted += batch.size();
+		lastBatchSize = batch.size();
+		if(batch.size() > largestBatchSize)
+			largestBatchSize = batch.size();
+		lastCommitLatencyMs = latencyMs;
+		totalCommitLatencyMs += latencyMs;
+		if(latencyMs > maxCommitLatencyMs)
+			maxCommitLatencyMs = latencyMs;
+		
+		for(TransactionLogEntryImpl entry : batch)
+		{
+			statistics.incrementTransactionWritten();
+			if(entry.getErrorMessage() != null && entry.getErrorMessage().length() > 0)
+			{
+				statistics.incrementTransactionErrors();
+				try
+				{
+					MonitoredErrors.addIfMonitored(entry.getErrorMessage());
+				}
+				catch(Exception ex) {}
+			}
+		}
+	}
+	
+	/**
+	 * The single thread that writes to the database.
+	 */
+	private class WriterThread
+	extends Thread
+	{
+		WriterThread()
+		{
+			super("TransactionLogGroupCommitWriter");
+			setDaemon(true);
+		}
+		
+		@Override
+		public void run()
+		{
+			List<TransactionLogEntryImpl> batch = new ArrayList<TransactionLogEntryImpl>(maxBatchSize);
+			while(running)
+			{
+				try
+				{
+					TransactionLogEntryImpl first = ringBuffer.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+					if(first != null)
+					{
+						batch.add(first);
+						ringBuffer.drainTo(batch, maxBatchSize - 1);
+						removeShutdownMarker(batch);
+						if(batch.size() > 0)
+							commitBatch(batch, true);
+						batch.clear();
+					}
+					
+					// once the writer has caught up, write the spilled entries
+					if(running && hasSpillFiles() && ringBuffer.size() < queueCapacity / 2 && System.currentTimeMillis() >= backoffUntil)
+						replaySpillFile();
+				}
+				catch(InterruptedException iX)
+				{
+					// the writer is stopped with the running flag, not interrupted
+					logger.warn("Transaction log writer thread interrupted, ignoring.");
+				}
+				catch(Throwable t)
+				{
+					logger.error("Unexpected error in transaction log writer thread, " + t.getMessage(), t);
+				}
+			}
+		}
+	}
+	
+	private static void removeShutdownMarker(List<TransactionLogEntryImpl> entries)
+	{
+		for(int index = entries.size() - 1; index >= 0; --index)
+			if(entries.get(index) == SHUTDOWN_MARKER)
+				entries.remove(index);
+	}
+	
+	// ===============================================================================================
+	// TransactionLogGroupCommitWriterMBean implementation
+	// ===============================================================================================
+	@Override
+	public int getQueueDepth()
+	{
+		return ringBuffer.size();
+	}
+
+	@Override
+	public int getQueueCapacity()
+	{
+		return queueCapacity;
+	}
+
+	@Override
+	public long getSpilledEntries()
+	{
+		return spilledEntries.get();
+	}
+
+	@Override
+	public long getTotalSpilledEntries()
+	{
+		return totalSpilledEntries.get();
+	}
+
+	@Override
+	public long getBatchesCommitted()
+	{
+		return batchesCommitted;
+	}
+
+	@Override
+	public long getEntriesCommitted()
+	{
+		return entriesCommitted;
+	}
+
+	@Override
+	public long getBatchCommitErrors()
+	{
+		return batchCommitErrors;
+	}
+
+	@Override
+	public int getLastBatchSize()
+	{
+		return lastBatchSize;
+	}
+
+	@Override
+	public int getLargestBatchSize()
+	{
+		return largestBatchSize;
+	}
+
+	@Override
+	public double getAverageBatchSize()
+	{
+		long batches = batchesCommitted;
+		return batches == 0L ? 0.0d : (double)entriesCommitted / (double)batches;
+	}
+
+	@Override
+	public long getLastCommitLatencyMs()
+	{
+		return lastCommitLatencyMs;
+	}
+
+	@Override
+	public long getMaxCommitLatencyMs()
+	{
+		return maxCommitLatencyMs;
+	}
+
+	@Override
+	public double getAverageCommitLatencyMs()
+	{
+		long batches = batchesCommitted;
+		return batches == 0L ? 0.0d : (double)totalCommitLatencyMs / (double)batches;
+	}
+
+	@Override
+	public String getDurability()
+	{
+		return durability.name();
+	}
+}
@@ -0,0 +1,73 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.transactionlogger.datasource;
+
+/**
+ * @author vhaiswwerfej
+ *
+ */
+public interface TransactionLogGroupCommitWriterMBean
+{
+	/**
+	 * The number of entries waiting in memory to be written
+	 * @return
+	 */
+	public abstract int getQueueDepth();
+	
+	public abstract int getQueueCapacity();
+	
+	/**
+	 * The number of entries spilled to disk and not yet written to the database
+	 * @return
+	 */
+	public abstract long getSpilledEntries();
+	
+	/**
+	 * The total number of entries spilled to disk since startup
+	 * @return
+	 */
+	public abstract long getTotalSpilledEntries();
+	
+	public abstract long getBatchesCommitted();
+	
+	public abstract long getEntriesCommitted();
+	
+	public abstract long getBatchCommitErrors();
+	
+	public abstract int getLastBatchSize();
+	
+	public abstract int getLargestBatchSize();
+	
+	public abstract double getAverageBatchSize();
+	
+	public abstract long getLastCommitLatencyMs();
+	
+	public abstract long getMaxCommitLatencyMs();
+	
+	public abstract double getAverageCommitLatencyMs();
+	
+	public abstract String getDurability();
+
+}
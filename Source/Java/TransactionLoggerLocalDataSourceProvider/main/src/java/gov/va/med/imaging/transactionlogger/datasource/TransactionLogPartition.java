@@ -0,0 +1,243 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.transactionlogger.datasource;
+
+import gov.va.med.imaging.access.je.TransactionLogEntryImpl;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.log4j.Logger;
+
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.je.Environment;
+import com.sleepycat.persist.EntityStore;
+import com.sleepycat.persist.PrimaryIndex;
+import com.sleepycat.persist.SecondaryIndex;
+import com.sleepycat.persist.StoreConfig;
+
+/**
+ * One partition of the transaction log, a store with the entries that start within its period 
+ * and the indexes of those entries.
+ * 
+ * A partition must be acquired before it is read or written and released afterward.  Dropping
+ * a partition waits until it is released, then removes the databases of its store, the cost
+ * of which does not depend on the number of entries in the partition.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TransactionLogPartition
+{
+	private final static Logger logger = Logger.getLogger(TransactionLogPartition.class);
+	
+	// the prefix of the names of the databases of a store, see EntityStore
+	private final static String STORE_DATABASE_PREFIX = "persist#";
+	
+	private final String storeName;
+	private final long startTime;
+	private final long endTime;
+	private final EntityStore entityStore;
+	private final PrimaryIndex<Long, TransactionLogEntryImpl> transactionLogBySequence;
+	private final SecondaryIndex<Long, Long, TransactionLogEntryImpl> transactionByDate; 
+	private final SecondaryIndex<String, Long, TransactionLogEntryImpl> transactionByTransactionId;
+	private final SecondaryIndex<String, Long, TransactionLogEntryImpl> transactionByMachineName;
+	private final TransactionLogQueryPlanner queryPlanner;
+	
+	// readers and writers hold the read lock, dropping holds the write lock
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private volatile boolean dropped = false;
+	
+	TransactionLogPartition(Environment environment, StoreConfig storeConfig, 
+		String storeName, long startTime, long endTime, int maximumIndexedResults)
+	throws DatabaseException
+	{
+		this.storeName = storeName;
+		this.startTime = startTime;
+		this.endTime = endTime;
+		this.entityStore = new EntityStore (environment, storeName, storeConfig);
+		
+		this.transactionLogBySequence = entityStore.getPrimaryIndex (Long.class, TransactionLogEntryImpl.class);
+		this.transactionByDate = entityStore.getSecondaryIndex (transactionLogBySequence, Long.class, "startTime");
+		this.transactionByTransactionId = entityStore.getSecondaryIndex (transactionLogBySequence, String.class, "transactionId");
+		this.transactionByMachineName = entityStore.getSecondaryIndex (transactionLogBySequence, String.class, "machineName");
+		// the first open of a new secondary index populates it from the existing entries
+		SecondaryIndex<String, Long, TransactionLogEntryImpl> transactionByUser = 
+			entityStore.getSecondaryIndex (transactionLogBySequence, String.class, "user");
+		SecondaryIndex<String, Long, TransactionLogEntryImpl> transactionByUrn = 
+			entityStore.getSecondaryIndex (transactionLogBySequence, String.class, "urn");
+		SecondaryIndex<String, Long, TransactionLogEntryImpl> transactionByModality = 
+			entityStore.getSecondaryIndex (transactionLogBySequence, String.class, "modality");
+		SecondaryIndex<Boolean, Long, TransactionLogEntryImpl> transactionByErrorPresent = 
+			entityStore.getSecondaryIndex (transactionLogBySequence, Boolean.class, "errorPresent");
+		this.queryPlanner = new TransactionLogQueryPlanner(transactionLogBySequence, transactionByDate, 
+			transactionByTransactionId, transactionByUser, transactionByUrn, transactionByModality, transactionByErrorPresent,
+			maximumIndexedResults);
+	}
+	
+	/**
+	 * Acquire the partition for reading or writing, every successful acquire must be followed by a release.
+	 * 
+	 * @return false if the partition has been dropped and must not be used
+	 */
+	public boolean acquire()
+	{
+		lock.readLock().lock();
+		if(dropped)
+		{
+			lock.readLock().unlock();
+			return false;
+		}
+		return true;
+	}
+	
+	public void release()
+	{
+		lock.readLock().unlock();
+	}
+	
+	/**
+	 * Close the store and remove its databases once no one is using the partition.
+	 * 
+	 * @param environment
+	 * @throws DatabaseException
+	 */
+	void drop(Environment environment)
+	throws DatabaseException
+	{
+		lock.writeLock().lock();
+		try
+		{
+			if(dropped)
+				return;
+			dropped = true;
+			entityStore.close();
+			removeStoreDatabases(environment, storeName);
+			logger.info("Dropped transaction log partition " + this + ".");
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+	
+	void close()
+	throws DatabaseException
+	{
+		lock.writeLock().lock();
+		try
+		{
+			if(dropped)
+				return;
+			dropped = true;
+			entityStore.close();
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Remove the databases of a closed store.
+	 * 
+	 * @param environment
+	 * @param storeName
+	 * @throws DatabaseException
+	 */
+	static void removeStoreDatabases(Environment environment, String storeName)
+	throws DatabaseException
+	{
+		String prefix = STORE_DATABASE_PREFIX + storeName + "#";
+		List<String> databaseNames = environment.getDatabaseNames();
+		for(String databaseName : databaseNames)
+		{
+			if(databaseName.startsWith(prefix))
+				environment.removeDatabase(null, databaseName);
+		}
+	}
+
+	public String getStoreName()
+	{
+		return storeName;
+	}
+
+	/**
+	 * @return the start of the period of the entries in the partition, inclusive
+	 */
+	public long getStartTime()
+	{
+		return startTime;
+	}
+
+	/**
+	 * @return the end of the period of the entries in the partition, exclusive
+	 */
+	public long getEndTime()
+	{
+		return endTime;
+	}
+	
+	/**
+	 * @return True if the partition has entries in the period from fromTime to toTime inclusive
+	 */
+	public boolean overlaps(long fromTime, long toTime)
+	{
+		return startTime <= toTime && endTime > fromTime;
+	}
+
+	public PrimaryIndex<Long, TransactionLogEntryImpl> getTransactionLogBySequence()
+	{
+		return transactionLogBySequence;
+	}
+
+	public SecondaryIndex<Long, Long, TransactionLogEntryImpl> getTransactionByDate()
+	{
+		return transactionByDate;
+	}
+
+	public SecondaryIndex<String, Long, TransactionLogEntryImpl> getTransactionByTransactionId()
+	{
+		return transactionByTransactionId;
+	}
+
+	public SecondaryIndex<String, Long, TransactionLogEntryImpl> getTransactionByMachineName()
+	{
+		return transactionByMachineName;
+	}
+
+	public TransactionLogQueryPlanner getQueryPlanner()
+	{
+		return queryPlanner;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "'" + storeName + "' [" + new Date(startTime) + " - " + new Date(endTime) + ")";
+	}
+}
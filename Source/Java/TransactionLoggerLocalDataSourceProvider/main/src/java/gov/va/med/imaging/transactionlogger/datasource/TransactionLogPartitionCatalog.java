@@ -0,0 +1,305 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.transactionlogger.datasource;
+
+import gov.va.med.imaging.access.je.TransactionLogPartitionImpl;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.je.Environment;
+import com.sleepycat.persist.EntityCursor;
+import com.sleepycat.persist.EntityStore;
+import com.sleepycat.persist.PrimaryIndex;
+import com.sleepycat.persist.StoreConfig;
+
+/**
+ * The transaction log is partitioned by the start time of the entries, one store per day.  
+ * The catalog records the partitions (in its own store), routes each new entry to the partition 
+ * of its day, creating the partition when the first entry of the day is written, and lists the 
+ * partitions in the period of a query.  Purging drops the partitions older than the retention 
+ * period, which does not read or lock the entries.
+ * 
+ * The store of the transaction log from before it was partitioned, if any, is the legacy partition,
+ * holding the entries before the time the catalog was created.  It is purged entry by entry until
+ * all of its period is older than the retention period, then dropped like the other partitions.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TransactionLogPartitionCatalog
+{
+	private final static Logger logger = Logger.getLogger(TransactionLogPartitionCatalog.class);
+	
+	public final static String LEGACY_STORE_NAME = "transactionLog";
+	private final static String PARTITION_STORE_PREFIX = "transactionLog-";
+	private final static String CATALOG_STORE_NAME = "transactionLogCatalog";
+	private final static long LEGACY_PARTITION_START = 0L;
+	
+	private final Environment environment;
+	private final StoreConfig partitionStoreConfig;
+	private final int maximumIndexedResults;
+	private final EntityStore catalogEntityStore;
+	private final PrimaryIndex<Long, TransactionLogPartitionImpl> partitionByStartTime;
+	
+	// the open partitions by start time, guarded by this
+	private final TreeMap<Long, TransactionLogPartition> partitions = new TreeMap<Long, TransactionLogPartition>();
+	private TransactionLogPartition legacyPartition = null;
+	// the end of the last dropped partition, entries before this are not written
+	private long droppedBefore = Long.MIN_VALUE;
+	
+	/**
+	 * Open the catalog and the partitions in it.
+	 * 
+	 * @param environment
+	 * @param partitionStoreConfig - the configuration of the partition stores
+	 * @param maximumIndexedResults - see TransactionLogQueryPlanner
+	 * @throws DatabaseException
+	 */
+	public TransactionLogPartitionCatalog(Environment environment, StoreConfig partitionStoreConfig, int maximumIndexedResults)
+	throws DatabaseException
+	{
+		this.environment = environment;
+		this.partitionStoreConfig = partitionStoreConfig;
+		this.maximumIndexedResults = maximumIndexedResults;
+		
+		StoreConfig storeConfig = new StoreConfig ();
+		storeConfig.setAllowCreate (true);
+		storeConfig.setTransactional (true);
+		this.catalogEntityStore = new EntityStore (environment, CATALOG_STORE_NAME, storeConfig);
+		this.partitionByStartTime = catalogEntityStore.getPrimaryIndex(Long.class, TransactionLogPartitionImpl.class);
+		
+		Set<String> storeNames = EntityStore.getStoreNames(environment);
+		Set<String> catalogedStoreNames = new HashSet<String>();
+		List<TransactionLogPartitionImpl> partitionImpls = new ArrayList<TransactionLogPartitionImpl>();
+		EntityCursor<TransactionLogPartitionImpl> cursor = partitionByStartTime.entities();
+		try
+		{
+			for(TransactionLogPartitionImpl partitionImpl = cursor.first(); partitionImpl != null; partitionImpl = cursor.next())
+				partitionImpls.add(partitionImpl);
+		}
+		finally
+		{
+			cursor.close();
+		}
+		for(TransactionLogPartitionImpl partitionImpl : partitionImpls)
+		{
+			if(!storeNames.contains(partitionImpl.getStoreName()))
+			{
+				logger.warn("Transaction log partition store '" + partitionImpl.getStoreName() + "' does not exist, removing it from the catalog.");
+				partitionByStartTime.delete(partitionImpl.getStartTime());
+				continue;
+			}
+			catalogedStoreNames.add(partitionImpl.getStoreName());
+			open(partitionImpl);
+		}
+		
+		// the log from before the catalog existed
+		if(storeNames.contains(LEGACY_STORE_NAME) && !catalogedStoreNames.contains(LEGACY_STORE_NAME))
+		{
+			TransactionLogPartitionImpl legacyImpl = new TransactionLogPartitionImpl(
+				LEGACY_PARTITION_START, System.currentTimeMillis(), LEGACY_STORE_NAME);
+			partitionByStartTime.put(legacyImpl);
+			catalogedStoreNames.add(LEGACY_STORE_NAME);
+			open(legacyImpl);
+			logger.info("Transaction log before " + legacyPartition + " is the legacy partition.");
+		}
+		
+		// a partition that was removed from the catalog but not completely dropped
+		for(String storeName : storeNames)
+		{
+			if(storeName.startsWith(PARTITION_STORE_PREFIX) && !catalogedStoreNames.contains(storeName))
+			{
+				logger.info("Removing the databases of dropped transaction log partition '" + storeName + "'.");
+				TransactionLogPartition.removeStoreDatabases(environment, storeName);
+			}
+		}
+		logger.info("Opened '" + getPartitionCount() + "' transaction log partitions.");
+	}
+	
+	private void open(TransactionLogPartitionImpl partitionImpl)
+	throws DatabaseException
+	{
+		TransactionLogPartition partition = new TransactionLogPartition(environment, partitionStoreConfig, 
+			partitionImpl.getStoreName(), partitionImpl.getStartTime(), partitionImpl.getEndTime(), maximumIndexedResults);
+		if(LEGACY_STORE_NAME.equals(partition.getStoreName()))
+			legacyPartition = partition;
+		else
+			partitions.put(partition.getStartTime(), partition);
+	}
+	
+	/**
+	 * Acquire the partition an entry starting at the given time is written to, creating it if necessary.
+	 * The partition must be released after writing.
+	 * 
+	 * @param time
+	 * @return the acquired partition or null if the partition of the time has been dropped
+	 * @throws DatabaseException
+	 */
+	public TransactionLogPartition acquireWritePartition(long time)
+	throws DatabaseException
+	{
+		while(true)
+		{
+			TransactionLogPartition partition = getWritePartition(time);
+			if(partition == null || partition.acquire())
+				return partition;
+			// dropped between getting and acquiring it
+		}
+	}
+	
+	private synchronized TransactionLogPartition getWritePartition(long time)
+	throws DatabaseException
+	{
+		if(time < droppedBefore)
+			return null;
+		if(legacyPartition != null && time < legacyPartition.getEndTime())
+			return legacyPartition;
+		
+		long dayStart = getDayStart(time);
+		TransactionLogPartition partition = partitions.get(dayStart);
+		if(partition == null)
+		{
+			Calendar cal = new GregorianCalendar();
+			cal.setTimeInMillis(dayStart);
+			cal.add(Calendar.DAY_OF_YEAR, 1);
+			String storeName = PARTITION_STORE_PREFIX + new SimpleDateFormat("yyyyMMdd").format(new Date(dayStart));
+			
+			// cataloged before the store is created so that an interrupted creation is removed at startup
+			TransactionLogPartitionImpl partitionImpl = new TransactionLogPartitionImpl(dayStart, cal.getTimeInMillis(), storeName);
+			partitionByStartTime.put(partitionImpl);
+			partition = new TransactionLogPartition(environment, partitionStoreConfig, 
+				storeName, dayStart, cal.getTimeInMillis(), maximumIndexedResults);
+			partitions.put(dayStart, partition);
+			logger.info("Created transaction log partition " + partition + ".");
+		}
+		return partition;
+	}
+	
+	private static long getDayStart(long time)
+	{
+		Calendar cal = new GregorianCalendar();
+		cal.setTimeInMillis(time);
+		cal.set(Calendar.HOUR_OF_DAY, 0);
+		cal.set(Calendar.MINUTE, 0);
+		cal.set(Calendar.SECOND, 0);
+		cal.set(Calendar.MILLISECOND, 0);
+		return cal.getTimeInMillis();
+	}
+	
+	/**
+	 * The partitions that may have entries starting in the period, in date order. 
+	 * The partitions must be acquired before they are read.
+	 * 
+	 * @param fromTime inclusive
+	 * @param toTime inclusive
+	 * @param forward - if false the partitions are listed in reverse date order
+	 * @return
+	 */
+	public synchronized List<TransactionLogPartition> getPartitions(long fromTime, long toTime, boolean forward)
+	{
+		List<TransactionLogPartition> result = new ArrayList<TransactionLogPartition>();
+		if(legacyPartition != null && legacyPartition.overlaps(fromTime, toTime))
+			result.add(legacyPartition);
+		for(TransactionLogPartition partition : partitions.values())
+		{
+			if(partition.overlaps(fromTime, toTime))
+				result.add(partition);
+		}
+		if(!forward)
+			Collections.reverse(result);
+		return result;
+	}
+	
+	public synchronized List<TransactionLogPartition> getPartitions()
+	{
+		return getPartitions(Long.MIN_VALUE, Long.MAX_VALUE, true);
+	}
+	
+	public synchronized TransactionLogPartition getLegacyPartition()
+	{
+		return legacyPartition;
+	}
+	
+	public synchronized int getPartitionCount()
+	{
+		return partitions.size() + (legacyPartition == null ? 0 : 1);
+	}
+	
+	/**
+	 * Drop the partitions with all of their period before the cutoff.  The partitions are 
+	 * removed from the catalog immediately, the databases of each are removed once 
+	 * the queries reading it have finished.
+	 * 
+	 * @param cutoff
+	 * @return the number of partitions dropped
+	 * @throws DatabaseException
+	 */
+	public int dropPartitionsBefore(long cutoff)
+	throws DatabaseException
+	{
+		List<TransactionLogPartition> dropping = new ArrayList<TransactionLogPartition>();
+		synchronized(this)
+		{
+			for(TransactionLogPartition partition : getPartitions())
+			{
+				if(partition.getEndTime() > cutoff)
+					continue;
+				partitionByStartTime.delete(partition.getStartTime());
+				if(partition == legacyPartition)
+					legacyPartition = null;
+				else
+					partitions.remove(partition.getStartTime());
+				droppedBefore = Math.max(droppedBefore, partition.getEndTime());
+				dropping.add(partition);
+			}
+		}
+		
+		for(TransactionLogPartition partition : dropping)
+			partition.drop(environment);
+		return dropping.size();
+	}
+	
+	public synchronized void close()
+	throws DatabaseException
+	{
+		for(TransactionLogPartition partition : getPartitions())
+			partition.close();
+		partitions.clear();
+		legacyPartition = null;
+		catalogEntityStore.close();
+	}
+}
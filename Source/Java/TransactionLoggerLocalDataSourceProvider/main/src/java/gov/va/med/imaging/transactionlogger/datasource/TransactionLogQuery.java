@@ -0,0 +1,202 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.transactionlogger.datasource;
+
+import gov.va.med.imaging.access.je.TransactionLogEntryImpl;
+import gov.va.med.imaging.exchange.enums.DatasourceProtocol;
+import gov.va.med.imaging.exchange.enums.ImageQuality;
+
+import java.util.Date;
+
+/**
+ * The criteria of a transaction log query.  A null or empty criteria matches all entries, the 
+ * String criteria are regular expressions that must match the entire field.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TransactionLogQuery
+{
+	private final long fromTime;
+	private final long toTime;
+	private final ImageQuality imageQuality;
+	private final DatasourceProtocol datasourceProtocol;
+	private final TransactionLogFieldMatcher userMatcher;
+	private final TransactionLogFieldMatcher modalityMatcher;
+	private final TransactionLogFieldMatcher errorMessageMatcher;
+	private final TransactionLogFieldMatcher imageUrnMatcher;
+	private final TransactionLogFieldMatcher transactionIdMatcher;
+	private final boolean forward;
+	private final Integer startIndex;
+	private final Integer endIndex;
+	
+	public TransactionLogQuery(Date startDate, Date endDate, 
+		ImageQuality imageQuality, String user, String modality, DatasourceProtocol datasourceProtocol,
+		String errorMessage, String imageUrn, String transactionId, 
+		Boolean forward, Integer startIndex, Integer endIndex)
+	{
+		this.fromTime = startDate == null ? 0L : startDate.getTime();
+		this.toTime = endDate == null ? Long.MAX_VALUE : endDate.getTime();
+		this.imageQuality = imageQuality;
+		this.datasourceProtocol = datasourceProtocol;
+		this.userMatcher = TransactionLogFieldMatcher.create(user);
+		this.modalityMatcher = TransactionLogFieldMatcher.create(modality);
+		this.errorMessageMatcher = TransactionLogFieldMatcher.create(errorMessage);
+		this.imageUrnMatcher = TransactionLogFieldMatcher.create(imageUrn);
+		this.transactionIdMatcher = TransactionLogFieldMatcher.create(transactionId);
+		this.forward = forward == null ? true : forward.booleanValue();
+		this.startIndex = startIndex;
+		this.endIndex = endIndex;
+	}
+	
+	/**
+	 * Determine if the entry matches all of the criteria, including the date range.
+	 * 
+	 * @param entry
+	 * @return
+	 */
+	public boolean matches(TransactionLogEntryImpl entry)
+	{
+		Long startTime = entry.getStartTime();
+		if(startTime == null || startTime < fromTime || startTime > toTime)
+			return false;
+		
+		return 
+			isImageQualityMatch(entry) &&
+			(userMatcher == null || userMatcher.matches(entry.getUser())) &&
+			(modalityMatcher == null || modalityMatcher.matches(entry.getModality())) &&
+			(errorMessageMatcher == null || errorMessageMatcher.matches(entry.getErrorMessage())) &&
+			(imageUrnMatcher == null || imageUrnMatcher.matches(entry.getUrn())) &&
+			(transactionIdMatcher == null || transactionIdMatcher.matches(entry.getTransactionId())) &&
+			isDatasourceProtocolMatch(entry);
+	}
+	
+	private boolean isImageQualityMatch(TransactionLogEntryImpl entry)
+	{
+		try
+		{
+			return imageQuality == null ||
+				entry.getQuality() != null && imageQuality == ImageQuality.valueOf(entry.getQuality());
+		} 
+		catch (IllegalArgumentException iaX)
+		{
+			return true;
+		}
+	}
+	
+	private boolean isDatasourceProtocolMatch(TransactionLogEntryImpl entry)
+	{
+		try
+		{
+			return datasourceProtocol == null ||
+				entry.getDatasourceProtocol() != null &&
+				datasourceProtocol.equals( DatasourceProtocol.valueOf(entry.getDatasourceProtocol().toUpperCase()) );
+		} 
+		catch (RuntimeException e)
+		{
+			return true;
+		}
+	}
+	
+	/**
+	 * Determine if the matching entry at the given position should be returned.  This method handles the
+	 * start and end possibly being null.
+	 * 
+	 * @param position The position of the entry among all matching entries
+	 * @return True if the entry at the position should be included
+	 */
+	public boolean isIncludedInRange(int position)
+	{
+		if(startIndex != null && position < startIndex)
+			return false;
+		if(endIndex != null && position > endIndex)
+			return false;
+		return true;
+	}
+	
+	/**
+	 * 
+	 * @param position The position of the entry among all matching entries
+	 * @return True if no entry at or after the position can be included 
+	 */
+	public boolean isPastEndOfRange(int position)
+	{
+		return endIndex != null && position > endIndex;
+	}
+
+	public long getFromTime()
+	{
+		return fromTime;
+	}
+
+	public long getToTime()
+	{
+		return toTime;
+	}
+
+	public TransactionLogFieldMatcher getUserMatcher()
+	{
+		return userMatcher;
+	}
+
+	public TransactionLogFieldMatcher getModalityMatcher()
+	{
+		return modalityMatcher;
+	}
+
+	public TransactionLogFieldMatcher getErrorMessageMatcher()
+	{
+		return errorMessageMatcher;
+	}
+
+	public TransactionLogFieldMatcher getImageUrnMatcher()
+	{
+		return imageUrnMatcher;
+	}
+
+	public TransactionLogFieldMatcher getTransactionIdMatcher()
+	{
+		return transactionIdMatcher;
+	}
+
+	public boolean isForward()
+	{
+		return forward;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "from " + new Date(fromTime) + " to " + new Date(toTime) + " " +
+			"ImageQuality=" + (imageQuality == null ? "<null>" : imageQuality.name()) + " " +
+			"User=" + (userMatcher == null ? "<null>" : userMatcher) + " " + 
+			"Modality=" + (modalityMatcher == null ? "<null>" : modalityMatcher) + " " +
+			"DatasourceProtocol=" + (datasourceProtocol == null ? "<null>" : datasourceProtocol.toString()) + " " +
+			"ErrorMessage=" + (errorMessageMatcher == null ? "<null>" : errorMessageMatcher) + " " +
+			"ImageURN=" + (imageUrnMatcher == null ? "<null>" : imageUrnMatcher) + " " +
+			"TransactionID=" + (transactionIdMatcher == null ? "<null>" : transactionIdMatcher) + " " +
+			"Iteration=" + (forward ? "forward" : "backward");
+	}
+}
@@ -0,0 +1,350 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.transactionlogger.datasource;
+
+import gov.va.med.imaging.access.TransactionLogWriter;
+import gov.va.med.imaging.access.je.TransactionLogEntryImpl;
+import gov.va.med.imaging.core.interfaces.exceptions.MethodException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.persist.EntityCursor;
+import com.sleepycat.persist.EntityJoin;
+import com.sleepycat.persist.ForwardCursor;
+import com.sleepycat.persist.PrimaryIndex;
+import com.sleepycat.persist.SecondaryIndex;
+
+/**
+ * Chooses how a transaction log query reads the database.
+ * 
+ * Without any exact value criteria the entries are read in date order from the startTime index 
+ * and each entry is checked against the criteria.  When the query has exact values for indexed fields 
+ * (transaction ID, user, image URN, modality, error presence) the number of entries with each value is 
+ * read from the index, if the smallest is within the configured maximum the entries are read by 
+ * joining the indexes, checked against the remaining criteria and sorted into date order.  Otherwise 
+ * the date order scan is used, since sorting that many entries would use more memory than the scan.
+ * Each partition of the log has its own planner, so the choice is made for each partition.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TransactionLogQueryPlanner
+{
+	private final static Logger logger = Logger.getLogger(TransactionLogQueryPlanner.class);
+	
+	public final static int DEFAULT_MAXIMUM_INDEXED_RESULTS = 50000;
+	
+	private final PrimaryIndex<Long, TransactionLogEntryImpl> transactionLogBySequence;
+	private final SecondaryIndex<Long, Long, TransactionLogEntryImpl> transactionByDate;
+	private final SecondaryIndex<String, Long, TransactionLogEntryImpl> transactionByTransactionId;
+	private final SecondaryIndex<String, Long, TransactionLogEntryImpl> transactionByUser;
+	private final SecondaryIndex<String, Long, TransactionLogEntryImpl> transactionByUrn;
+	private final SecondaryIndex<String, Long, TransactionLogEntryImpl> transactionByModality;
+	private final SecondaryIndex<Boolean, Long, TransactionLogEntryImpl> transactionByErrorPresent;
+	private final int maximumIndexedResults;
+	
+	public TransactionLogQueryPlanner(
+		PrimaryIndex<Long, TransactionLogEntryImpl> transactionLogBySequence,
+		SecondaryIndex<Long, Long, TransactionLogEntryImpl> transactionByDate,
+		SecondaryIndex<String, Long, TransactionLogEntryImpl> transactionByTransactionId,
+		SecondaryIndex<String, Long, TransactionLogEntryImpl> transactionByUser,
+		SecondaryIndex<String, Long, TransactionLogEntryImpl> transactionByUrn,
+		SecondaryIndex<String, Long, TransactionLogEntryImpl> transactionByModality,
+		SecondaryIndex<Boolean, Long, TransactionLogEntryImpl> transactionByErrorPresent,
+		int maximumIndexedResults)
+	{
+		this.transactionLogBySequence = transactionLogBySequence;
+		this.transactionByDate = transactionByDate;
+		this.transactionByTransactionId = transactionByTransactionId;
+		this.transactionByUser = transactionByUser;
+		this.transactionByUrn = transactionByUrn;
+		this.transactionByModality = transactionByModality;
+		this.transactionByErrorPresent = transactionByErrorPresent;
+		this.maximumIndexedResults = maximumIndexedResults > 0 ? maximumIndexedResults : DEFAULT_MAXIMUM_INDEXED_RESULTS;
+	}
+	
+	/**
+	 * Write the entries matching the query to the writer.
+	 * 
+	 * @param query
+	 * @param writer
+	 * @return the number of matching entries read, this may be less than the total number of matching entries
+	 * if the query has an end index
+	 * @throws DatabaseException
+	 * @throws MethodException
+	 */
+	public int execute(TransactionLogQuery query, TransactionLogWriter writer)
+	throws DatabaseException, MethodException
+	{
+		return execute(query, writer, 0);
+	}
+	
+	/**
+	 * Write the entries matching the query to the writer, continuing a query of earlier partitions.
+	 * 
+	 * @param query
+	 * @param writer
+	 * @param position - the number of matching entries read from the earlier partitions
+	 * @return the position after the matching entries read from this partition
+	 * @throws DatabaseException
+	 * @throws MethodException
+	 */
+	public int execute(TransactionLogQuery query, TransactionLogWriter writer, int position)
+	throws DatabaseException, MethodException
+	{
+		List<IndexCondition<?>> conditions = getIndexConditions(query);
+		if(conditions.size() > 0)
+		{
+			long smallestCount = Long.MAX_VALUE;
+			IndexCondition<?> smallestCondition = null;
+			for(IndexCondition<?> condition : conditions)
+			{
+				long count = condition.count();
+				if(count < smallestCount)
+				{
+					smallestCount = count;
+					smallestCondition = condition;
+				}
+			}
+			
+			if(smallestCount == 0L)
+			{
+				logger.info("No entries with " + smallestCondition + ", query returns no entries.");
+				return position;
+			}
+			if(smallestCount <= maximumIndexedResults)
+			{
+				logger.info("Querying " + conditions + " by index, at most '" + smallestCount + "' entries with " + smallestCondition + ".");
+				return executeIndexed(query, conditions, writer, position);
+			}
+			logger.info("'" + smallestCount + "' entries with " + smallestCondition + 
+				" exceeds maximum indexed results '" + maximumIndexedResults + "', querying by date.");
+		}
+		
+		return executeByDate(query, writer, position);
+	}
+	
+	/**
+	 * The exact value criteria that can be looked up in a secondary index.
+	 */
+	private List<IndexCondition<?>> getIndexConditions(TransactionLogQuery query)
+	throws DatabaseException
+	{
+		List<IndexCondition<?>> conditions = new ArrayList<IndexCondition<?>>();
+		addLiteralCondition(conditions, "transactionId", transactionByTransactionId, query.getTransactionIdMatcher());
+		addLiteralCondition(conditions, "user", transactionByUser, query.getUserMatcher());
+		addLiteralCondition(conditions, "urn", transactionByUrn, query.getImageUrnMatcher());
+		addLiteralCondition(conditions, "modality", transactionByModality, query.getModalityMatcher());
+		
+		// only entries with an error message can match an error message that is not empty,
+		// those are all in the index once every entry has the errorPresent key
+		TransactionLogFieldMatcher errorMessageMatcher = query.getErrorMessageMatcher();
+		if(errorMessageMatcher != null && !errorMessageMatcher.matches("") && isErrorPresentIndexComplete())
+			conditions.add(new IndexCondition<Boolean>("errorPresent", transactionByErrorPresent, Boolean.TRUE));
+		
+		return conditions;
+	}
+	
+	private void addLiteralCondition(List<IndexCondition<?>> conditions, String name,
+		SecondaryIndex<String, Long, TransactionLogEntryImpl> index, TransactionLogFieldMatcher matcher)
+	{
+		if(matcher != null && matcher.isLiteral())
+			conditions.add(new IndexCondition<String>(name, index, matcher.getLiteral()));
+	}
+	
+	/**
+	 * Entries written before the errorPresent key was added are not in the errorPresent index.  
+	 * Entries are only added to the end of the log, so the index is complete when the oldest entry 
+	 * has the key, i.e. once the entries older than the key have been purged.
+	 */
+	private boolean isErrorPresentIndexComplete()
+	throws DatabaseException
+	{
+		EntityCursor<TransactionLogEntryImpl> cursor = transactionLogBySequence.entities();
+		try
+		{
+			TransactionLogEntryImpl oldest = cursor.first();
+			return oldest == null || oldest.getErrorPresent() != null;
+		}
+		finally
+		{
+			cursor.close();
+		}
+	}
+	
+	/**
+	 * Read the entries matching all of the conditions, then sort them in the date order
+	 * the date scan would return them.
+	 */
+	private int executeIndexed(TransactionLogQuery query, List<IndexCondition<?>> conditions, TransactionLogWriter writer, int position)
+	throws DatabaseException, MethodException
+	{
+		List<TransactionLogEntryImpl> matches = new ArrayList<TransactionLogEntryImpl>();
+		ForwardCursor<TransactionLogEntryImpl> cursor = null;
+		try
+		{
+			if(conditions.size() == 1)
+			{
+				cursor = conditions.get(0).entities();
+			}
+			else
+			{
+				// the join reads the condition with the fewest entries and checks the others
+				EntityJoin<Long, TransactionLogEntryImpl> join = new EntityJoin<Long, TransactionLogEntryImpl>(transactionLogBySequence);
+				for(IndexCondition<?> condition : conditions)
+					condition.addTo(join);
+				cursor = join.entities();
+			}
+			
+			for(TransactionLogEntryImpl entry = cursor.next(); entry != null; entry = cursor.next())
+			{
+				if(query.matches(entry))
+					matches.add(entry);
+			}
+		}
+		finally
+		{
+			if(cursor != null)
+				cursor.close();
+		}
+		
+		Collections.sort(matches, query.isForward() ? dateOrder : Collections.reverseOrder(dateOrder));
+		for(TransactionLogEntryImpl entry : matches)
+		{
+			if(query.isPastEndOfRange(position))
+				break;
+			if(query.isIncludedInRange(position))
+				writer.writeTransactionLogEntry(entry);
+			position++;
+		}
+		return position;
+	}
+	
+	/**
+	 * Read the entries in the date range in date order and check each against the criteria.
+	 */
+	private int executeByDate(TransactionLogQuery query, TransactionLogWriter writer, int position)
+	throws DatabaseException, MethodException
+	{
+		EntityCursor<TransactionLogEntryImpl> cursor = 
+			transactionByDate.entities(query.getFromTime(), true, query.getToTime(), true);
+		try
+		{
+			TransactionLogEntryImpl entry = query.isForward() ? cursor.first() : cursor.last();
+			while(entry != null)
+			{
+				if(query.matches(entry))
+				{
+					if(query.isIncludedInRange(position))
+						writer.writeTransactionLogEntry(entry);
+					
+					++position; // increment the count no matter what
+					// direction doesn't matter here since the first/last item is always the first index item
+					if(query.isPastEndOfRange(position))
+						break;
+				}
+				entry = query.isForward() ? cursor.next() : cursor.prev();
+			}
+		}
+		finally
+		{
+			cursor.close();
+		}
+		return position;
+	}
+	
+	/**
+	 * The order of the entries in the startTime index, duplicates are ordered by the primary key.
+	 */
+	private final static Comparator<TransactionLogEntryImpl> dateOrder = new Comparator<TransactionLogEntryImpl>()
+	{
+		@Override
+		public int compare(TransactionLogEntryImpl entry1, TransactionLogEntryImpl entry2)
+		{
+			int result = entry1.getStartTime().compareTo(entry2.getStartTime());
+			return result != 0 ? result : entry1.getSequenceNumber().compareTo(entry2.getSequenceNumber());
+		}
+	};
+	
+	/**
+	 * An exact value lookup in a secondary index.
+	 *
+	 * @param <K> the secondary key type
+	 */
+	private static class IndexCondition<K>
+	{
+		private final String name;
+		private final SecondaryIndex<K, Long, TransactionLogEntryImpl> index;
+		private final K key;
+		
+		IndexCondition(String name, SecondaryIndex<K, Long, TransactionLogEntryImpl> index, K key)
+		{
+			this.name = name;
+			this.index = index;
+			this.key = key;
+		}
+		
+		/**
+		 * The number of entries with the key, this reads the duplicate count 
+		 * from the index without reading the entries.
+		 */
+		long count()
+		throws DatabaseException
+		{
+			EntityCursor<K> cursor = index.keys(key, true, key, true);
+			try
+			{
+				return cursor.first() == null ? 0L : cursor.count();
+			}
+			finally
+			{
+				cursor.close();
+			}
+		}
+		
+		ForwardCursor<TransactionLogEntryImpl> entities()
+		throws DatabaseException
+		{
+			return index.entities(key, true, key, true);
+		}
+		
+		void addTo(EntityJoin<Long, TransactionLogEntryImpl> join)
+		{
+			join.addCondition(index, key);
+		}
+
+		@Override
+		public String toString()
+		{
+			return name + "='" + key + "'";
+		}
+	}
+}
@@ -0,0 +1,371 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.transactionlogger.datasource;
+
+import gov.va.med.imaging.access.TransactionLogEntry;
+import gov.va.med.imaging.access.TransactionLogRollup;
+import gov.va.med.imaging.access.je.TransactionLogRollupImpl;
+import gov.va.med.imaging.access.je.TransactionLogRollupKey;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.LockMode;
+import com.sleepycat.je.Transaction;
+import com.sleepycat.persist.EntityCursor;
+import com.sleepycat.persist.EntityStore;
+import com.sleepycat.persist.PrimaryIndex;
+import com.sleepycat.persist.StoreConfig;
+
+/**
+ * Keeps per-minute and per-hour rollups of the transaction log entries, grouped by command class, 
+ * responding site and data source protocol, in a store alongside the transaction log.
+ * 
+ * Entries are added to the rollups of the current minutes in memory as they are written, the in memory 
+ * rollups are merged into the stored minute and hour rollups when flushed (once a minute).  The rollup of
+ * a period is merged from the stored hour rollups of the whole hours in the period and the minute rollups 
+ * of the remainder, so the cost depends on the length of the period and not on the number of entries.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TransactionLogRollupStore
+{
+	private final static Logger logger = Logger.getLogger(TransactionLogRollupStore.class);
+	
+	public final static int MINUTE_RESOLUTION = 1;
+	public final static int HOUR_RESOLUTION = 60;
+	private final static long MINUTE = 60L * 1000L;
+	private final static long HOUR = 60L * MINUTE;
+	
+	private final Environment environment;
+	private final EntityStore rollupEntityStore;
+	private final PrimaryIndex<TransactionLogRollupKey, TransactionLogRollupImpl> rollupByKey;
+	
+	// the minute rollups not yet stored
+	private final Object pendingLock = new Object();
+	private Map<TransactionLogRollupKey, TransactionLogRollup> pending = new HashMap<TransactionLogRollupKey, TransactionLogRollup>();
+	// serializes flushing and reading the stored rollups so that a rollup is never counted twice 
+	private final Object flushLock = new Object();
+	
+	public TransactionLogRollupStore(Environment environment)
+	throws DatabaseException
+	{
+		this.environment = environment;
+		StoreConfig storeConfig = new StoreConfig ();
+		storeConfig.setAllowCreate (true);
+		storeConfig.setTransactional (true);
+		this.rollupEntityStore = new EntityStore (environment, "transactionLogRollup", storeConfig);
+		this.rollupByKey = rollupEntityStore.getPrimaryIndex(TransactionLogRollupKey.class, TransactionLogRollupImpl.class);
+	}
+	
+	/**
+	 * 
+	 * @return True if no rollups have been stored, i.e. the store was just created
+	 * @throws DatabaseException
+	 */
+	public boolean isEmpty()
+	throws DatabaseException
+	{
+		EntityCursor<TransactionLogRollupKey> cursor = rollupByKey.keys();
+		try
+		{
+			return cursor.first() == null;
+		}
+		finally
+		{
+			cursor.close();
+		}
+	}
+	
+	/**
+	 * Add an entry to the rollup of its minute.
+	 * 
+	 * @param entry
+	 */
+	public void update(TransactionLogEntry entry)
+	{
+		if(entry == null || entry.getStartTime() == null)
+			return;
+		long startTime = entry.getStartTime();
+		TransactionLogRollupKey key = new TransactionLogRollupKey(MINUTE_RESOLUTION, startTime - (startTime % MINUTE), 
+			entry.getCommandClassName(), entry.getRespondingSite(), entry.getDatasourceProtocol());
+		synchronized(pendingLock)
+		{
+			TransactionLogRollup rollup = pending.get(key);
+			if(rollup == null)
+			{
+				rollup = new TransactionLogRollup(key.getPeriodStart(), key.getPeriodEnd(), 
+					entry.getCommandClassName(), entry.getRespondingSite(), entry.getDatasourceProtocol());
+				pending.put(key, rollup);
+			}
+			rollup.update(entry);
+		}
+	}
+	
+	/**
+	 * Merge the in memory rollups into the stored minute and hour rollups.
+	 * 
+	 * @return the number of minute rollups stored
+	 * @throws DatabaseException
+	 */
+	public int flush()
+	throws DatabaseException
+	{
+		synchronized(flushLock)
+		{
+			Map<TransactionLogRollupKey, TransactionLogRollup> flushing = null;
+			synchronized(pendingLock)
+			{
+				if(pending.isEmpty())
+					return 0;
+				flushing = pending;
+				pending = new HashMap<TransactionLogRollupKey, TransactionLogRollup>();
+			}
+			
+			Map<TransactionLogRollupKey, TransactionLogRollup> hours = new HashMap<TransactionLogRollupKey, TransactionLogRollup>();
+			for(Map.Entry<TransactionLogRollupKey, TransactionLogRollup> minute : flushing.entrySet())
+			{
+				TransactionLogRollupKey hourKey = minute.getKey().toResolution(HOUR_RESOLUTION);
+				TransactionLogRollup hour = hours.get(hourKey);
+				if(hour == null)
+				{
+					hour = new TransactionLogRollup(hourKey.getPeriodStart(), hourKey.getPeriodEnd(), 
+						minute.getValue().getCommandClassName(), minute.getValue().getSite(), minute.getValue().getDatasourceProtocol());
+					hours.put(hourKey, hour);
+				}
+				hour.merge(minute.getValue());
+			}
+			
+			Transaction txn = environment.beginTransaction(null, null);
+			try
+			{
+				for(Map.Entry<TransactionLogRollupKey, TransactionLogRollup> minute : flushing.entrySet())
+					store(txn, minute.getKey(), minute.getValue());
+				for(Map.Entry<TransactionLogRollupKey, TransactionLogRollup> hour : hours.entrySet())
+					store(txn, hour.getKey(), hour.getValue());
+				txn.commit();
+				txn = null;
+			}
+			finally
+			{
+				if(txn != null)
+				{
+					try {txn.abort();}
+					catch(DatabaseException dX) {}
+					// keep the rollups for the next flush
+					synchronized(pendingLock)
+					{
+						for(Map.Entry<TransactionLogRollupKey, TransactionLogRollup> minute : flushing.entrySet())
+						{
+							TransactionLogRollup rollup = pending.get(minute.getKey());
+							if(rollup != null)
+								minute.getValue().merge(rollup);
+							pending.put(minute.getKey(), minute.getValue());
+						}
+					}
+				}
+			}
+			
+			return flushing.size();
+		}
+	}
+	
+	private void store(Transaction txn, TransactionLogRollupKey key, TransactionLogRollup rollup)
+	throws DatabaseException
+	{
+		TransactionLogRollupImpl stored = rollupByKey.get(txn, key, LockMode.RMW);
+		if(stored != null)
+		{
+			TransactionLogRollup merged = stored.toRollup();
+			merged.merge(rollup);
+			rollup = merged;
+		}
+		rollupByKey.put(txn, new TransactionLogRollupImpl(key, rollup));
+	}
+	
+	/**
+	 * Get the rollup of the entries in a period.  The period is extended to whole minutes.
+	 * 
+	 * @param startTime the start of the period
+	 * @param endTime the end (exclusive) of the period
+	 * @param commandClassName the command class name of the entries, null for all
+	 * @param site the responding site of the entries, null for all
+	 * @param datasourceProtocol the data source protocol of the entries, null for all
+	 * @return
+	 * @throws DatabaseException
+	 */
+	public TransactionLogRollup getRollup(long startTime, long endTime, 
+		String commandClassName, String site, String datasourceProtocol)
+	throws DatabaseException
+	{
+		long start = startTime - (startTime % MINUTE);
+		long end = endTime % MINUTE == 0L ? endTime : endTime - (endTime % MINUTE) + MINUTE;
+		TransactionLogRollup result = new TransactionLogRollup(start, end, commandClassName, site, datasourceProtocol);
+		
+		synchronized(flushLock)
+		{
+			long firstHour = start % HOUR == 0L ? start : start - (start % HOUR) + HOUR;
+			long lastHour = end - (end % HOUR);
+			if(firstHour < lastHour)
+			{
+				mergeStored(result, MINUTE_RESOLUTION, start, firstHour);
+				mergeStored(result, HOUR_RESOLUTION, firstHour, lastHour);
+				mergeStored(result, MINUTE_RESOLUTION, lastHour, end);
+			}
+			else
+			{
+				mergeStored(result, MINUTE_RESOLUTION, start, end);
+			}
+			
+			List<TransactionLogRollup> unstored = new ArrayList<TransactionLogRollup>();
+			synchronized(pendingLock)
+			{
+				for(TransactionLogRollup rollup : pending.values())
+					if(isIncluded(rollup, start, end, commandClassName, site, datasourceProtocol))
+					{
+						TransactionLogRollup copy = new TransactionLogRollup(rollup.getStartTime(), rollup.getEndTime(), 
+							rollup.getCommandClassName(), rollup.getSite(), rollup.getDatasourceProtocol());
+						copy.merge(rollup);
+						unstored.add(copy);
+					}
+			}
+			for(TransactionLogRollup rollup : unstored)
+				result.merge(rollup);
+		}
+		return result;
+	}
+	
+	private void mergeStored(TransactionLogRollup result, int resolutionMinutes, long start, long end)
+	throws DatabaseException
+	{
+		if(start >= end)
+			return;
+		EntityCursor<TransactionLogRollupImpl> cursor = rollupByKey.entities(
+			new TransactionLogRollupKey(resolutionMinutes, start, "", "", ""), true, 
+			new TransactionLogRollupKey(resolutionMinutes, end, "", "", ""), false);
+		try
+		{
+			for(TransactionLogRollupImpl stored = cursor.first(); stored != null; stored = cursor.next())
+			{
+				TransactionLogRollup rollup = stored.toRollup();
+				if(isIncluded(rollup, start, end, result.getCommandClassName(), result.getSite(), result.getDatasourceProtocol()))
+					result.merge(rollup);
+			}
+		}
+		finally
+		{
+			cursor.close();
+		}
+	}
+	
+	private static boolean isIncluded(TransactionLogRollup rollup, long start, long end, 
+		String commandClassName, String site, String datasourceProtocol)
+	{
+		return rollup.getStartTime() >= start && rollup.getStartTime() < end &&
+			(commandClassName == null || commandClassName.equals(rollup.getCommandClassName())) &&
+			(site == null || site.equals(rollup.getSite())) &&
+			(datasourceProtocol == null || datasourceProtocol.equalsIgnoreCase(rollup.getDatasourceProtocol()));
+	}
+	
+	/**
+	 * Delete the stored rollups of periods that start before the given times.
+	 * 
+	 * @param minuteCutoff
+	 * @param hourCutoff
+	 * @return the number of rollups deleted
+	 * @throws DatabaseException
+	 */
+	public int purge(long minuteCutoff, long hourCutoff)
+	throws DatabaseException
+	{
+		int deleted = purge(MINUTE_RESOLUTION, minuteCutoff) + purge(HOUR_RESOLUTION, hourCutoff);
+		logger.info("Deleted '" + deleted + "' transaction log rollups.");
+		return deleted;
+	}
+	
+	/**
+	 * Delete all of the stored and in memory rollups, before they are rebuilt.
+	 * 
+	 * @throws DatabaseException
+	 */
+	public void clear()
+	throws DatabaseException
+	{
+		synchronized(flushLock)
+		{
+			synchronized(pendingLock)
+			{
+				pending = new HashMap<TransactionLogRollupKey, TransactionLogRollup>();
+			}
+			int deleted = purge(MINUTE_RESOLUTION, Long.MAX_VALUE) + purge(HOUR_RESOLUTION, Long.MAX_VALUE);
+			logger.info("Cleared '" + deleted + "' transaction log rollups.");
+		}
+	}
+	
+	private int purge(int resolutionMinutes, long cutoff)
+	throws DatabaseException
+	{
+		int deleted = 0;
+		Transaction txn = environment.beginTransaction(null, null);
+		EntityCursor<TransactionLogRollupKey> cursor = null;
+		try
+		{
+			cursor = rollupByKey.keys(txn, 
+				new TransactionLogRollupKey(resolutionMinutes, Long.MIN_VALUE, "", "", ""), true, 
+				new TransactionLogRollupKey(resolutionMinutes, cutoff, "", "", ""), false, null);
+			for(TransactionLogRollupKey key = cursor.first(); key != null; key = cursor.next())
+			{
+				if(cursor.delete())
+					deleted++;
+			}
+			cursor.close();
+			cursor = null;
+			txn.commit();
+			txn = null;
+		}
+		finally
+		{
+			if(cursor != null)
+				cursor.close();
+			if(txn != null)
+				txn.abort();
+		}
+		return deleted;
+	}
+	
+	public void close()
+	throws DatabaseException
+	{
+		flush();
+		rollupEntityStore.close();
+	}
+}
@@ -0,0 +1,78 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.transactionlogger.datasource;
+
+import com.sleepycat.je.TransactionConfig;
+
+/**
+ * The durability of the transaction log batch commits.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public enum TransactionLogWriteDurability
+{
+	SYNC("The commit is written and flushed to disk before the commit returns."),
+	WRITE_NO_SYNC("The commit is written to the operating system but not flushed to disk before the commit returns."),
+	NO_SYNC("The commit is neither written nor flushed before the commit returns.");
+	
+	public final String description;
+	
+	TransactionLogWriteDurability(String description)
+	{
+		this.description = description;
+	}
+	
+	public TransactionConfig createTransactionConfig()
+	{
+		TransactionConfig config = new TransactionConfig();
+		switch(this)
+		{
+		case WRITE_NO_SYNC:
+			config.setWriteNoSync(true);
+			break;
+		case NO_SYNC:
+			config.setNoSync(true);
+			break;
+		default:
+			config.setSync(true);
+		}
+		return config;
+	}
+	
+	/**
+	 * Return the durability with the given name, or SYNC if the name 
+	 * is null or unrecognized.
+	 */
+	public static TransactionLogWriteDurability valueOfOrDefault(String name)
+	{
+		if(name != null)
+			for(TransactionLogWriteDurability durability : values())
+				if(durability.name().equalsIgnoreCase(name.trim()))
+					return durability;
+		
+		return SYNC;
+	}
+}
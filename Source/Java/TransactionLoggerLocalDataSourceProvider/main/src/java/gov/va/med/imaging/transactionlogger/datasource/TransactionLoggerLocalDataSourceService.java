@@ -27,6 +27,7 @@ package gov.va.med.imaging.transactionlogger.datasource;
 
 import gov.va.med.imaging.ImagingMBean;
 import gov.va.med.imaging.access.TransactionLogEntry;
+import gov.va.med.imaging.access.TransactionLogRollup;
 import gov.va.med.imaging.access.TransactionLogWriter;
 import gov.va.med.imaging.access.je.BDBRecoverer;
 import gov.va.med.imaging.access.je.TransactionLogEntryImpl;
@@ -40,12 +41,11 @@ import gov.va.med.imaging.exchange.enums.ImageQuality;
 import gov.va.med.imaging.monitorederrors.MonitoredErrors;
 import gov.va.med.imaging.transactionlogger.configuration.TransactionLoggerDataSourceProviderConfiguration;
 import java.io.File;
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.reflect.InvocationTargetException;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 import org.apache.log4j.Logger;
@@ -73,12 +73,21 @@ implements TransactionLoggerDataSourceSpi
 
 	// the DB values get created by either the createDatabase() or the openDatabase()
 	private static Environment logdbEnvironment = null;
-	private static EntityStore logdbEntityStore = null;
-	private static PrimaryIndex<Long, TransactionLogEntryImpl> transactionLogBySequence = null;
-	private static SecondaryIndex<Long, Long, TransactionLogEntryImpl> transactionByDate = null; 
-	private static SecondaryIndex<String, Long, TransactionLogEntryImpl> transactionByTransactionId = null;
-	private static SecondaryIndex<String, Long, TransactionLogEntryImpl> transactionByMachineName = null;
+	// the log is partitioned by day, see TransactionLogPartitionCatalog
+	private static TransactionLogPartitionCatalog partitionCatalog = null;
 	private static TransactionLoggerStatistics statistics = null;
+	private static TransactionLogGroupCommitWriter groupCommitWriter = null;
+	private static TransactionLogRollupStore rollupStore = null;
+	// entries committed before this is set are added to the rollups by the rebuild
+	private static volatile boolean rollupsLive = false;
+	// the read lock is held while an entry is committed and added to the rollups, the write lock 
+	// while the boundary between the rebuilt and the live rollups is set
+	private static final ReentrantReadWriteLock rollupBoundaryLock = new ReentrantReadWriteLock();
+	// exists while the rollups are rebuilt, so that an interrupted rebuild is run again
+	private static final String ROLLUP_REBUILD_MARKER_FILE_NAME = "rollupRebuild.pending";
+	private static final long ROLLUP_FLUSH_INTERVAL = 60 * 1000;
+	// the legacy partition is purged in transactions of this many entries
+	private static final int LEGACY_PURGE_BATCH_SIZE = 1000;
 
 	// Transaction Log Retention Period Before Purging, In Days.
 	// Default to one year.
@@ -90,7 +99,6 @@ implements TransactionLoggerDataSourceSpi
 
 	private static TransactionLogMaintenance transactionLogMaintenance = null;
 	
-	private static List<TransactionLogEntryImpl> cachedDuringPurgeEntries = new ArrayList<TransactionLogEntryImpl>();
 	private static boolean purgeRunning = false;
 	
 	public static TransactionLoggerLocalDataSourceService create()
@@ -123,6 +131,8 @@ implements TransactionLoggerDataSourceSpi
 		if (vixConfigPath == null) vixConfigPath = fileSep + "VixConfig";
 		File dbDir = new File (vixConfigPath + fileSep + "logs");
 		if (!dbDir.exists ()) dbDir.mkdirs ();
+		File rollupRebuildMarker = new File(dbDir, ROLLUP_REBUILD_MARKER_FILE_NAME);
+		boolean rebuildRollups = false;
 
 		try
 		{
@@ -168,14 +178,24 @@ implements TransactionLoggerDataSourceSpi
 			if (mutations != null && !mutations.isEmpty ())
 				storeConfig.setMutations (mutations);
 
-			logdbEntityStore = new EntityStore (logdbEnvironment, "transactionLog", storeConfig);
-			logger.info("DB entity store created");
-
-			transactionLogBySequence = logdbEntityStore.getPrimaryIndex (Long.class, TransactionLogEntryImpl.class);
-			transactionByDate = logdbEntityStore.getSecondaryIndex (transactionLogBySequence, Long.class, "startTime");
-			transactionByTransactionId = logdbEntityStore.getSecondaryIndex (transactionLogBySequence, String.class, "transactionId");
-			transactionByMachineName = logdbEntityStore.getSecondaryIndex (transactionLogBySequence, String.class, "machineName");
-			logger.info("Indexes created");	
+			partitionCatalog = new TransactionLogPartitionCatalog(logdbEnvironment, storeConfig, 
+				getConfiguration().getMaxIndexedQueryResults() == null ? 0 : getConfiguration().getMaxIndexedQueryResults());
+			logger.info("DB partition catalog created");
+			
+			rollupStore = new TransactionLogRollupStore(logdbEnvironment);
+			if(rollupRebuildMarker.exists())
+			{
+				logger.warn("The last transaction log rollup rebuild did not complete, the rollups will be rebuilt.");
+				rollupStore.clear();
+				rebuildRollups = true;
+			}
+			else
+				rebuildRollups = rollupStore.isEmpty();
+			if(!rebuildRollups)
+				rollupsLive = true;
+			TaskScheduler.getTaskScheduler().schedule(new TransactionLogRollupFlush(), 
+				ROLLUP_FLUSH_INTERVAL, ROLLUP_FLUSH_INTERVAL);
+			logger.info("Rollup store created");
 			displayDBSpace();
 		} 
 
@@ -221,6 +241,29 @@ implements TransactionLoggerDataSourceSpi
 	//		new Date (new Date ().getTime () + 30000), 30000);
 		}
 		statistics = new TransactionLoggerStatistics();
+		// null means the configuration predates the asynchronous writer, default to enabled
+		if((getConfiguration().getAsynchronousWriteEnabled() == null) || (getConfiguration().getAsynchronousWriteEnabled() == true))
+		{
+			groupCommitWriter = new TransactionLogGroupCommitWriter(logdbEnvironment, partitionCatalog, statistics, 
+				TransactionLogWriteDurability.valueOfOrDefault(getConfiguration().getWriteDurability()), 
+				getConfiguration().getWriteQueueCapacity() == null ? 0 : getConfiguration().getWriteQueueCapacity(), 
+				getConfiguration().getMaxWriteBatchSize() == null ? 0 : getConfiguration().getMaxWriteBatchSize(), 
+				new File(dbDir, "spill"));
+			groupCommitWriter.setCommitListener(new TransactionLogCommitListener()
+			{
+				@Override
+				public void entriesCommitted(List<TransactionLogEntryImpl> entries)
+				{
+					if(rollupsLive)
+						for(TransactionLogEntryImpl entry : entries)
+							rollupStore.update(entry);
+				}
+			});
+			groupCommitWriter.start();
+		}
+		// after the writer has started so that the spilled entries it writes are included
+		if(rebuildRollups)
+			startRollupRebuild(rollupRebuildMarker);
 		if((getConfiguration().getAddTransactionLogToJmx() != null) && (getConfiguration().getAddTransactionLogToJmx() == true))
 		{		
 			registerMBeanServer();
@@ -256,6 +299,14 @@ implements TransactionLoggerDataSourceSpi
 				mBeanProperties.put( "name", "Statistics");
 				transactionLoggerManagerMBeanName = new ObjectName(ImagingMBean.VIX_MBEAN_DOMAIN_NAME, mBeanProperties);
 				mBeanServer.registerMBean(statistics, transactionLoggerManagerMBeanName);
+				
+				if(groupCommitWriter != null)
+				{
+					Hashtable<String, String> writerMBeanProperties = new Hashtable<String, String>();
+					writerMBeanProperties.put( "type", "TransactionLogDatabase" );
+					writerMBeanProperties.put( "name", "Writer");
+					mBeanServer.registerMBean(groupCommitWriter, new ObjectName(ImagingMBean.VIX_MBEAN_DOMAIN_NAME, writerMBeanProperties));
+				}
 	            
 	            
 			}
@@ -297,17 +348,32 @@ implements TransactionLoggerDataSourceSpi
 
 		try
 		{
-			cursor = transactionLogBySequence.entities ();
-
-			TransactionLogEntryImpl tlei = cursor.first ();
-			while (tlei != null)
+			for(TransactionLogPartition partition : partitionCatalog.getPartitions())
 			{
-				writer.writeTransactionLogEntry(tlei);
-				tlei = cursor.next ();
+				if(!partition.acquire())
+					continue;
+				try
+				{
+					cursor = partition.getTransactionLogBySequence().entities ();
+	
+					TransactionLogEntryImpl tlei = cursor.first ();
+					while (tlei != null)
+					{
+						writer.writeTransactionLogEntry(tlei);
+						tlei = cursor.next ();
+					}
+	
+					cursor.close ();
+					cursor = null;
+				}
+				finally
+				{
+					try {if (cursor != null) cursor.close ();}
+					catch (DatabaseException dxClose) {}
+					cursor = null;
+					partition.release();
+				}
 			}
-
-			cursor.close ();
-			cursor = null;
 		}
 
 		catch (DatabaseException dx)
@@ -334,140 +400,30 @@ implements TransactionLoggerDataSourceSpi
 	{
 		logger.info ("getLogEntries (TransactionLogWriter writer, beaucoup criteria) From Local Host");
 
-		EntityCursor<TransactionLogEntryImpl> cursor = null;
 		int entryListCount = 0; 
-		boolean forward = true;
-		if(bForward != null)
-			forward = bForward.booleanValue ();
-
-		Pattern userPattern;
-		Pattern modalityPattern;
-		Pattern errorMessagePattern;
-		Pattern imageUrnPattern;
-		Pattern transactionIdPattern;
-
 		try
 		{
-			Date fromKey = startDate == null ? new Date (0L) : startDate;
-			Date toKey = endDate == null ? new Date (Long.MAX_VALUE) : endDate;
-
-			if(logger.isInfoEnabled())
-			{
-				DateFormat df = new SimpleDateFormat("dd-MM-yyyy:hh:mm:ss");
-				logger.info( "Generating transaction log cursor from " + df.format(fromKey) + " to " + df.format(toKey) +
-						"ImageQuality=" + (imageQuality == null ? "<null>" : imageQuality.name()) + " " +
-						"User=" + (user == null ? "<null>" : user) + " " + 
-						"Modality=" + (modality == null ? "<null>" : modality) + " " +
-						"DatasourceProtocol=" + (datasourceProtocol == null ? "<null>" : datasourceProtocol.toString()) + " " +
-						"ErrorMessage=" + (errorMessage == null ? "<null>" : errorMessage) + " " +
-						"ImageURN=" + (imageUrn == null ? "<null>" : imageUrn) + " " +
-						"TransactionID=" + (transactionId == null ? "<null>" : transactionId) + " " +
-						"Iteration=" + (forward ? "forward" : "backward")
-				);
-			}
-
-			userPattern = user == null || user.length() == 0 ? null : Pattern.compile(user);
-			modalityPattern = modality == null || modality.length() == 0 ? null : Pattern.compile(modality);
-			errorMessagePattern = errorMessage == null || errorMessage.length() == 0 ? null : Pattern.compile(errorMessage);
-			imageUrnPattern = imageUrn == null || imageUrn.length() == 0 ? null : Pattern.compile(imageUrn);
-			transactionIdPattern = transactionId == null || transactionId.length() == 0 ? null : Pattern.compile(transactionId);			
-			
-			cursor = transactionByDate.entities (fromKey.getTime (), true, toKey.getTime (), true);			
-			logger.info("Got entries cursor from database.");
+			TransactionLogQuery query = new TransactionLogQuery(startDate, endDate, imageQuality, user, modality, 
+				datasourceProtocol, errorMessage, imageUrn, transactionId, bForward, startIndex, endIndex);
+			logger.info("Querying transaction log " + query);
 			
-			TransactionLogEntryImpl tlei = null;		
-			
-			if (forward)
-				tlei = cursor.first ();
-			else
-				tlei = cursor.last ();			
-			
-			logger.debug("set cursor position, getting items.");
-
-			while (tlei != null)
+			// the partitions are read in the order of the query until the end of the requested range
+			for(TransactionLogPartition partition : 
+				partitionCatalog.getPartitions(query.getFromTime(), query.getToTime(), query.isForward()))
 			{
-				boolean imageQualityMatches = false;
-				try
-				{
-					imageQualityMatches = 
-						imageQuality == null ||
-						tlei.getQuality() != null && imageQuality == ImageQuality.valueOf(tlei.getQuality());
-				} 
-				catch (IllegalArgumentException iaX)
-				{
-					imageQualityMatches = true;
-				} 
-
-				boolean modalityMatches = 
-					modalityPattern == null ? true : 
-						tlei.getModality() == null ? false : 
-							modalityPattern.matcher(tlei.getModality()).matches();
-
-				boolean userMatches = 
-					userPattern == null ? true : 
-						tlei.getUser() == null ? false :
-							userPattern.matcher(tlei.getUser()).matches();
-
-				boolean errorMessageMatches = 
-					errorMessagePattern == null ? true : 
-						tlei.getErrorMessage() == null ? false :
-							errorMessagePattern.matcher(tlei.getErrorMessage()).matches();
-
-				boolean imageUrnMatches = 
-					imageUrnPattern == null ? true : 
-						tlei.getUrn() == null ? false :
-							imageUrnPattern.matcher(tlei.getUrn()).matches();
-
-				boolean transactionIdMatches = 
-					transactionIdPattern == null ? true : 
-						tlei.getTransactionId() == null ? false :
-							transactionIdPattern.matcher(tlei.getTransactionId()).matches();
-
-				boolean datasourceProtocolMatches = false;
+				if(query.isPastEndOfRange(entryListCount))
+					break;
+				if(!partition.acquire())
+					continue;
 				try
 				{
-					datasourceProtocolMatches = 
-						datasourceProtocol == null ||
-						tlei.getDatasourceProtocol() != null &&
-						datasourceProtocol.equals( DatasourceProtocol.valueOf(tlei.getDatasourceProtocol().toUpperCase()) );
-				} 
-				catch (RuntimeException e)
-				{
-					datasourceProtocolMatches = true;
+					entryListCount = partition.getQueryPlanner().execute(query, writer, entryListCount);
 				}
-
-				if( imageQualityMatches &&
-						userMatches &&
-						modalityMatches &&
-						errorMessageMatches &&
-						imageUrnMatches &&
-						transactionIdMatches &&
-						datasourceProtocolMatches )
+				finally
 				{
-					// check to see if current index is in requested range
-					if(isEntryIncludedInRange(startIndex, endIndex, entryListCount))
-					{
-						writer.writeTransactionLogEntry(tlei);
-					}
-											
-					++entryListCount; // increment the count no matter what
-					// if the end index is specified and the current index is above that, then break - never getting smaller
-					// direction doesn't matter here since the first/last item is always the first index item
-					if((endIndex != null) && (entryListCount > endIndex))
-					{
-						break;
-					}
+					partition.release();
 				}
-				if (forward)
-					tlei = cursor.next ();
-				else
-					tlei = cursor.prev ();
 			}
-			
-			// don't need to reverse the results since if wanted oldest first then the last item is added to the list first
-			
-			cursor.close ();
-			cursor = null;
 			statistics.incrementTransactionsQueried();
 		}
 
@@ -480,32 +436,191 @@ implements TransactionLoggerDataSourceSpi
 
 		finally
 		{
-			try {if (cursor != null) cursor.close ();}
-			catch (DatabaseException dxClose) {}
 			logger.info("Entry list count is '" + entryListCount + "'.");
 		}
 	}
+
+	/* (non-Javadoc)
+	 * @see gov.va.med.imaging.datasource.TransactionLoggerDataSourceSpi#getLogRollup(java.util.Date, java.util.Date, java.lang.String, java.lang.String, gov.va.med.imaging.exchange.enums.DatasourceProtocol)
+	 */
+	@Override
+	public TransactionLogRollup getLogRollup(Date startDate, Date endDate, 
+			String commandClassName, String site, DatasourceProtocol datasourceProtocol)
+	throws MethodException, ConnectionException
+	{
+		long startTime = startDate == null ? 0L : startDate.getTime();
+		long endTime = endDate == null ? System.currentTimeMillis() : endDate.getTime();
+		logger.info ("getLogRollup from " + new Date(startTime) + " to " + new Date(endTime) + 
+			" CommandClassName=" + (commandClassName == null ? "<null>" : commandClassName) +
+			" Site=" + (site == null ? "<null>" : site) +
+			" DatasourceProtocol=" + (datasourceProtocol == null ? "<null>" : datasourceProtocol.name()) + " From Local Host");
+		try
+		{
+			TransactionLogRollup rollup = rollupStore.getRollup(startTime, endTime, commandClassName, site, 
+				datasourceProtocol == null ? null : datasourceProtocol.name());
+			statistics.incrementTransactionsQueried();
+			return rollup;
+		}
+		catch (DatabaseException dx)
+		{
+			statistics.incrementTransactionReadErrors();
+			logger.error("Error reading transaction log rollups", dx);
+			throw new MethodException (dx);
+		}
+	}
+	
+	/**
+	 * Delete the hour rollups older than the log entries and the minute rollups 
+	 * older than the minute rollup retention period.
+	 * 
+	 * @param cutoff the time before which log entries were purged
+	 */
+	private void purgeRollups(long cutoff)
+	{
+		long minuteCutoff = cutoff;
+		Integer minuteRetentionDays = getConfiguration().getMinuteRollupRetentionDays();
+		if(minuteRetentionDays != null && minuteRetentionDays > 0)
+			minuteCutoff = Math.max(cutoff, System.currentTimeMillis() - minuteRetentionDays * MAINTENANCE_CYCLE);
+		try
+		{
+			rollupStore.purge(minuteCutoff, cutoff);
+		}
+		catch (DatabaseException dx)
+		{
+			logger.error("Error purging transaction log rollups", dx);
+		}
+	}
 	
 	/**
-	 * Determine if the current cursor index is within the specified range of start and end.  This method handles the
-	 * start and end possibly being null.
+	 * Build the rollups of the entries already in the log when the rollup store is created, 
+	 * on a separate thread so that the log is available meanwhile.  While no entry is being 
+	 * committed the last key of each partition is recorded and the live rollups started, every 
+	 * entry committed after that is added by the live rollups and every entry before it by 
+	 * the rebuild.  The marker file exists until the rebuild completes.
 	 * 
-	 * @param startIndex
-	 * @param endIndex
-	 * @param cursorIndex
-	 * @return True if the entry at the cursorIndex position should be included
+	 * @param marker
 	 */
-	private boolean isEntryIncludedInRange(Integer startIndex, Integer endIndex, int cursorIndex)
+	private static void startRollupRebuild(final File marker)
 	{
-		if(startIndex != null)
+		try
+		{
+			marker.createNewFile();
+		}
+		catch(IOException ioX)
 		{
-			if(cursorIndex < startIndex)
-				return false;
+			logger.warn("Unable to create the transaction log rollup rebuild marker '" + marker.getAbsolutePath() + 
+				"', an interrupted rebuild will not be run again, " + ioX.getMessage());
 		}
-		if(endIndex != null)
-			if(cursorIndex > endIndex)
-				return false;
-		return true;
+		
+		final Map<TransactionLogPartition, Long> rebuildLastKeys = new LinkedHashMap<TransactionLogPartition, Long>();
+		final List<DatabaseException> boundaryErrors = new ArrayList<DatabaseException>();
+		Runnable startLiveRollups = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				rollupBoundaryLock.writeLock().lock();
+				try
+				{
+					for(TransactionLogPartition partition : partitionCatalog.getPartitions())
+					{
+						if(!partition.acquire())
+							continue;
+						EntityCursor<Long> keys = null;
+						try
+						{
+							keys = partition.getTransactionLogBySequence().keys(null, CursorConfig.READ_COMMITTED);
+							Long lastKey = keys.last();
+							if(lastKey != null)
+								rebuildLastKeys.put(partition, lastKey);
+						}
+						catch(DatabaseException dX)
+						{
+							boundaryErrors.add(dX);
+						}
+						finally
+						{
+							try {if (keys != null) keys.close ();}
+							catch (Exception xClose) {}
+							partition.release();
+						}
+					}
+					rollupsLive = true;
+				}
+				finally
+				{
+					rollupBoundaryLock.writeLock().unlock();
+				}
+			}
+		};
+		if(groupCommitWriter != null)
+			groupCommitWriter.runBetweenBatches(startLiveRollups);
+		else
+			startLiveRollups.run();
+		if(boundaryErrors.size() > 0)
+		{
+			logger.error("Error reading the transaction log to rebuild the rollups, they will be rebuilt at the next startup", boundaryErrors.get(0));
+			return;
+		}
+		
+		Thread rebuild = new Thread("TransactionLogRollupRebuild")
+		{
+			@Override
+			public void run()
+			{
+				logger.info("Building transaction log rollups of the entries in '" + rebuildLastKeys.size() + "' partitions.");
+				long count = 0L;
+				EntityCursor<TransactionLogEntryImpl> cursor = null;
+				try
+				{
+					for(Map.Entry<TransactionLogPartition, Long> partitionLastKey : rebuildLastKeys.entrySet())
+					{
+						TransactionLogPartition partition = partitionLastKey.getKey();
+						// dropped by a purge since
+						if(!partition.acquire())
+							continue;
+						try
+						{
+							cursor = partition.getTransactionLogBySequence().entities (null, null, false, 
+								partitionLastKey.getValue(), true, CursorConfig.READ_COMMITTED);
+							for(TransactionLogEntryImpl entry = cursor.first(); entry != null; entry = cursor.next())
+							{
+								rollupStore.update(entry);
+								if((++count % 100000) == 0)
+								{
+									rollupStore.flush();
+									logger.info("Added '" + count + "' transaction log entries to the rollups so far...");
+								}
+							}
+							cursor.close();
+							cursor = null;
+						}
+						finally
+						{
+							try {if (cursor != null) cursor.close ();}
+							catch (Exception xClose) {}
+							cursor = null;
+							partition.release();
+						}
+					}
+					rollupStore.flush();
+					if(marker.exists() && !marker.delete())
+						logger.warn("Unable to delete the transaction log rollup rebuild marker '" + marker.getAbsolutePath() + "'.");
+					logger.info("Built transaction log rollups of '" + count + "' entries.");
+				}
+				catch(Exception ex)
+				{
+					logger.error("Error building transaction log rollups after '" + count + "' entries, they will be rebuilt at the next startup", ex);
+				}
+				finally
+				{
+					try {if (cursor != null) cursor.close ();}
+					catch (Exception xClose) {}
+				}
+			}
+		};
+		rebuild.setDaemon(true);
+		rebuild.start();
 	}
 
 	/* (non-Javadoc)
@@ -520,30 +635,46 @@ implements TransactionLoggerDataSourceSpi
 
 		EntityCursor<TransactionLogEntryImpl> cursor = null;
 
+		if (!"transactionId".equalsIgnoreCase (fieldName) && !"machineName".equalsIgnoreCase (fieldName))
+		{
+			throw new MethodException ("Unsupported Field Name: " + fieldName + "[" + fieldValue + "]");
+		}
+		
 		try
 		{
-			if ("transactionId".equalsIgnoreCase (fieldName))
-			{
-				cursor = transactionByTransactionId.entities (fieldValue, true, fieldValue, true);
-			}
-			else if ("machineName".equalsIgnoreCase (fieldName))
-			{
-				cursor = transactionByMachineName.entities(fieldValue, true, fieldValue, true);
-			}
-			else
-			{
-				throw new MethodException ("Unsupported Field Name: " + fieldName + "[" + fieldValue + "]");
-			}
-
-			TransactionLogEntryImpl tlei = cursor.first ();
-			while (tlei != null)
+			for(TransactionLogPartition partition : partitionCatalog.getPartitions())
 			{
-				writer.writeTransactionLogEntry(tlei);
-				tlei = cursor.next ();
+				if(!partition.acquire())
+					continue;
+				try
+				{
+					if ("transactionId".equalsIgnoreCase (fieldName))
+					{
+						cursor = partition.getTransactionByTransactionId().entities (fieldValue, true, fieldValue, true);
+					}
+					else
+					{
+						cursor = partition.getTransactionByMachineName().entities(fieldValue, true, fieldValue, true);
+					}
+		
+					TransactionLogEntryImpl tlei = cursor.first ();
+					while (tlei != null)
+					{
+						writer.writeTransactionLogEntry(tlei);
+						tlei = cursor.next ();
+					}
+		
+					cursor.close ();
+					cursor = null;
+				}
+				finally
+				{
+					try {if (cursor != null) cursor.close ();}
+					catch (DatabaseException dxClose) {}
+					cursor = null;
+					partition.release();
+				}
 			}
-
-			cursor.close ();
-			cursor = null;
 			statistics.incrementTransactionsQueried();
 		}
 
@@ -575,24 +706,9 @@ implements TransactionLoggerDataSourceSpi
 		
 		logger.info ("purgeLogEntries [Older Than " + maxDaysAllowed + " Days] From Local Host");
 
-		int numDeleted = 0;
-		int notDeletedCount = 0;
-		Transaction txn = null;
-		EntityCursor<TransactionLogEntryImpl> cursor = null;
-		
 		try
 		{
 			setPurgeRunning(true);
-			logger.info("Disabling checkpointer and cleaner during purge");
-			
-			EnvironmentMutableConfig mutableConfig = logdbEnvironment.getMutableConfig();			
-			mutableConfig.setConfigParam("je.env.runCheckpointer", "false");
-			mutableConfig.setConfigParam("je.env.runCleaner", "false");
-			logdbEnvironment.setMutableConfig(mutableConfig);
-			
-			String checkpointerValue = logdbEnvironment.getMutableConfig().getConfigParam("je.env.runCheckpointer");
-			String cleanerValue = logdbEnvironment.getMutableConfig().getConfigParam("je.env.runCleaner");
-			logger.info("Checkpointer enabled '" + checkpointerValue + "', cleaner enabled '" + cleanerValue + "'.");
 			
 			long purgeRuntime = 0L; // 0 means run forever
 			Long purgeRuntimeValue = getConfiguration().getMaxPurgeRuntime();
@@ -610,98 +726,110 @@ implements TransactionLoggerDataSourceSpi
 			{
 				purgeEndTime = startTime + purgeRuntime;
 			}
-			// set the transaction configuration to read uncommitted so we don't lock the database
-			/*
-			TransactionConfig config = new TransactionConfig();
-			config.setReadCommitted(true);
-			txn = logdbEnvironment.beginTransaction (null, config);
-			CursorConfig cursorConfig = new CursorConfig();
-			cursorConfig.setReadCommitted(true);			
-			cursor = transactionByDate.entities (txn, Long.MIN_VALUE, true, cal.getTimeInMillis (), false, cursorConfig);
-			*/
-			txn = logdbEnvironment.beginTransaction (null, null);
-			cursor = transactionByDate.entities (txn, Long.MIN_VALUE, true, cal.getTimeInMillis (), false, null);
 			
-			Object obj = cursor.first ();
-			while (obj != null)
+			// the partitions entirely before the cutoff are dropped without reading their entries,
+			// the partition containing the cutoff is dropped by a later purge
+			int numDropped = partitionCatalog.dropPartitionsBefore(cal.getTimeInMillis());
+			logger.info ("Dropped " + numDropped + " Local Transaction Log Partitions in '" + (System.currentTimeMillis() - startTime) + "' ms.");
+			
+			int numDeleted = purgeLegacyPartition(cal.getTimeInMillis(), purgeEndTime);
+			statistics.increaseTransactionsPurged(numDeleted);
+			purgeRollups(cal.getTimeInMillis());
+			if(numDropped > 0 || numDeleted > 0)
 			{
-				if(purgeEndTime > 0)
-				{
-					if(System.currentTimeMillis() >= purgeEndTime)
-					{
-						logger.info("Purging has run past the purge end time, purging will stop.");
-						break;
-					}
-				}				
-				
-				if(!cursor.delete ())
-				{
-					notDeletedCount++;
-				}
-				numDeleted++;				
-				if((numDeleted % 10000) == 0)
-				{
-					logger.info("Deleted '" + numDeleted + "' transaction log entries so far...");
-				}
-				obj = cursor.next ();
+				logger.info("About to compress");
+				logdbEnvironment.compress();
+				logger.info("Compress is done");
+				displayDBSpace();
+				cleanLog();
+				displayDBSpace();
 			}
-			cursor.close ();
-			cursor = null;
-
-			txn.commit ();
-			long endTime = System.currentTimeMillis();
-			logger.info ("Deleted " + numDeleted + " Local Transaction Log Records in '" + (endTime - startTime) + "' ms.");
-			logger.info( "Failed to delete '" + notDeletedCount + "' entries.");
-			statistics.increaseTransactionsPurged(numDeleted);
-			logger.info("About to compress");
-			logdbEnvironment.compress();
-			logger.info("Compress is done");
-			displayDBSpace();
-			cleanLog();
-			displayDBSpace();
-		
 		}
 		catch (DatabaseException dx)
 		{
-			numDeleted = -1;
-			try {txn.abort ();}
-			catch (DatabaseException dxAbort) {}
 			logger.error("Error purging log entries", dx);
 			throw new MethodException (dx);
 		}
 		catch(Exception ex)
 		{
-			numDeleted = -1;
-			try {txn.abort ();}
-			catch (DatabaseException dxAbort) {}
 			logger.error("Error purging log entries", ex);
 			throw new MethodException (ex);
 		}
 		finally
 		{
-			try {if (cursor != null) cursor.close ();}
-			catch (DatabaseException dxClose) {}
-			catch(Exception ex) {}
 			setPurgeRunning(false);
-			try
+		}
+	}
+	
+	/**
+	 * Delete the entries of the legacy partition (the log from before it was partitioned) 
+	 * older than the cutoff.  The entries are deleted in short transactions so that the 
+	 * purge does not hold locks on the log for long.
+	 * 
+	 * @param cutoff
+	 * @param purgeEndTime the time the purge must stop by, 0 to run until complete
+	 * @return the number of entries deleted
+	 * @throws DatabaseException
+	 */
+	private int purgeLegacyPartition(long cutoff, long purgeEndTime)
+	throws DatabaseException
+	{
+		TransactionLogPartition partition = partitionCatalog.getLegacyPartition();
+		if(partition == null || !partition.acquire())
+			return 0;
+		
+		int numDeleted = 0;
+		try
+		{
+			boolean moreEntries = true;
+			while(moreEntries)
 			{
-				logger.info("Re-enabling checkpointer and cleaner after purge.");
-				EnvironmentMutableConfig mutableConfig = logdbEnvironment.getMutableConfig();							
-				mutableConfig.setConfigParam("je.env.runCheckpointer", "true");
-				mutableConfig.setConfigParam("je.env.runCleaner", "true");
-				logdbEnvironment.setMutableConfig(mutableConfig);
+				if(purgeEndTime > 0 && System.currentTimeMillis() >= purgeEndTime)
+				{
+					logger.info("Purging has run past the purge end time, purging will stop.");
+					break;
+				}
 				
-				String checkpointerValue = logdbEnvironment.getMutableConfig().getConfigParam("je.env.runCheckpointer");
-				String cleanerValue = logdbEnvironment.getMutableConfig().getConfigParam("je.env.runCleaner");
-				logger.info("Checkpointer enabled '" + checkpointerValue + "', cleaner enabled '" + cleanerValue + "'.");
-			}
-			catch(Exception ex)
-			{
-				logger.fatal("Exception turning the checkpointer and cleaner back on, " + ex.getMessage(), ex);
+				Transaction txn = logdbEnvironment.beginTransaction (null, null);
+				EntityCursor<TransactionLogEntryImpl> cursor = null;
+				try
+				{
+					cursor = partition.getTransactionByDate().entities (txn, Long.MIN_VALUE, true, cutoff, false, null);
+					int batchDeleted = 0;
+					for(Object obj = cursor.first (); obj != null && batchDeleted < LEGACY_PURGE_BATCH_SIZE; obj = cursor.next ())
+					{
+						if(cursor.delete ())
+							batchDeleted++;
+					}
+					moreEntries = batchDeleted >= LEGACY_PURGE_BATCH_SIZE;
+					cursor.close ();
+					cursor = null;
+					txn.commit ();
+					txn = null;
+					numDeleted += batchDeleted;
+				}
+				finally
+				{
+					try {if (cursor != null) cursor.close ();}
+					catch (DatabaseException dxClose) {}
+					if(txn != null)
+					{
+						try {txn.abort ();}
+						catch (DatabaseException dxAbort) {}
+					}
+				}
+				if(moreEntries && (numDeleted % (10 * LEGACY_PURGE_BATCH_SIZE)) == 0)
+				{
+					logger.info("Deleted '" + numDeleted + "' legacy transaction log entries so far...");
+				}
 			}
-			
-			writeCachedEntries(this);
 		}
+		finally
+		{
+			partition.release();
+		}
+		logger.info ("Deleted " + numDeleted + " Local Transaction Log Records from the legacy partition.");
+		return numDeleted;
 	}
 	
 	private void cleanLog()
@@ -813,93 +941,112 @@ implements TransactionLoggerDataSourceSpi
 			return;
 		}
 		
-		// if the purge is running, then add the entry to 
-		if(isPurgeRunning())
+		// the group commit writer batches the entries on its own thread
+		if(groupCommitWriter != null)
 		{
-			addEntryToPurgeQueue(entry);
+			groupCommitWriter.write(entry);
+			return;
 		}
-		else
+		
+		logger.info("Writing transaction (" + entry.getTransactionId() + ") with command ID (" + entry.getCommandId() + ") to log with execution time of '" + entry.getElapsedTime() + "' ms. Ran on thread (" + entry.getThreadId() + ")");
+		int numTries = 0;
+		Transaction txn = null;
+
+		while (numTries < MAX_DEADLOCK_RETRIES)
 		{
-			logger.info("Writing transaction (" + entry.getTransactionId() + ") with command ID (" + entry.getCommandId() + ") to log with execution time of '" + entry.getElapsedTime() + "' ms. Ran on thread (" + entry.getThreadId() + ")");
-			int numTries = 0;
-			Transaction txn = null;
-	
-			while (numTries < MAX_DEADLOCK_RETRIES)
+			try
 			{
+				//TransactionConfig config = new TransactionConfig();
+				//config.setReadCommitted(true);
+				//txn = logdbEnvironment.beginTransaction (null, config);
+				txn = logdbEnvironment.beginTransaction (null, null);
+				TransactionLogPartition partition = partitionCatalog.acquireWritePartition(
+					entry.getStartTime() == null ? System.currentTimeMillis() : entry.getStartTime());
+				if(partition == null)
+				{
+					logger.warn("Transaction (" + entry.getTransactionId() + ") started before the purged transaction log, it will not be written.");
+					txn.abort();
+					return;
+				}
+				// added to the rollups only once committed, and not while the rebuild boundary is set
+				rollupBoundaryLock.readLock().lock();
 				try
 				{
-					//TransactionConfig config = new TransactionConfig();
-					//config.setReadCommitted(true);
-					//txn = logdbEnvironment.beginTransaction (null, config);
-					txn = logdbEnvironment.beginTransaction (null, null);
-					transactionLogBySequence.put (txn, (TransactionLogEntryImpl) entry);
+					partition.getTransactionLogBySequence().put (txn, (TransactionLogEntryImpl) entry);
 					txn.commit ();
-					statistics.incrementTransactionWritten();
-					if(entry.getErrorMessage() != null && entry.getErrorMessage().length() > 0)
-					{
-						statistics.incrementTransactionErrors();
-						try
-						{
-							MonitoredErrors.addIfMonitored(entry.getErrorMessage());
-						}
-						catch(Exception ex) {}
-					}
-					break;
+					if(rollupsLive)
+						rollupStore.update(entry);
 				}
-				//catch (LockConflictException lcX)
-				catch (DeadlockException dlx)
+				finally
 				{
-					statistics.incrementTransactionWriteErrors();
-					try {txn.abort ();}
-					catch (DatabaseException dlxAbort) {}
-	
-					numTries++;
-					if (numTries >= MAX_DEADLOCK_RETRIES)
-					{
-						dlx.printStackTrace ();
-						throw new MethodException (dlx);
-					}
-					else
-					{
-						logger.warn ("writeLogEntry: Deadlocked On Transaction Id [" + entry.getTransactionId () + "], current attempt '" + numTries + "', - Will Retry.");
-					}
+					rollupBoundaryLock.readLock().unlock();
+					partition.release();
 				}
-				catch (DatabaseException dx)
+				statistics.incrementTransactionWritten();
+				if(entry.getErrorMessage() != null && entry.getErrorMessage().length() > 0)
 				{
-					statistics.incrementTransactionWriteErrors();
-					try 
-					{
-						txn.abort ();
-					}
-					catch (DatabaseException dxAbort) 
-					{
-						logger.warn("DatabaseException aborting transaction, " + dxAbort.getMessage());
-					}
-					catch(Exception ex)
+					statistics.incrementTransactionErrors();
+					try
 					{
-						logger.warn("Exception aborting transaction, " + ex.getMessage());
+						MonitoredErrors.addIfMonitored(entry.getErrorMessage());
 					}
-					logger.error("DatabaseException writing transaction, " + dx.getMessage(), dx);
-					throw new MethodException (dx);
+					catch(Exception ex) {}
+				}
+				break;
+			}
+			//catch (LockConflictException lcX)
+			catch (DeadlockException dlx)
+			{
+				statistics.incrementTransactionWriteErrors();
+				try {txn.abort ();}
+				catch (DatabaseException dlxAbort) {}
+
+				numTries++;
+				if (numTries >= MAX_DEADLOCK_RETRIES)
+				{
+					dlx.printStackTrace ();
+					throw new MethodException (dlx);
+				}
+				else
+				{
+					logger.warn ("writeLogEntry: Deadlocked On Transaction Id [" + entry.getTransactionId () + "], current attempt '" + numTries + "', - Will Retry.");
+				}
+			}
+			catch (DatabaseException dx)
+			{
+				statistics.incrementTransactionWriteErrors();
+				try 
+				{
+					txn.abort ();
+				}
+				catch (DatabaseException dxAbort) 
+				{
+					logger.warn("DatabaseException aborting transaction, " + dxAbort.getMessage());
 				}
 				catch(Exception ex)
 				{
-					statistics.incrementTransactionWriteErrors();
-					try
-					{
-						txn.abort();
-					}
-					catch (DatabaseException dxAbort) 
-					{
-						logger.warn("DatabaseException aborting transaction, " + dxAbort.getMessage());
-					}
-					catch(Exception exAbort)
-					{
-						logger.warn("Exception aborting transaction, " + exAbort.getMessage());
-					}
-					logger.error("Exception writing transaction, " + ex.getMessage(), ex);
-					throw new MethodException (ex);
+					logger.warn("Exception aborting transaction, " + ex.getMessage());
 				}
+				logger.error("DatabaseException writing transaction, " + dx.getMessage(), dx);
+				throw new MethodException (dx);
+			}
+			catch(Exception ex)
+			{
+				statistics.incrementTransactionWriteErrors();
+				try
+				{
+					txn.abort();
+				}
+				catch (DatabaseException dxAbort) 
+				{
+					logger.warn("DatabaseException aborting transaction, " + dxAbort.getMessage());
+				}
+				catch(Exception exAbort)
+				{
+					logger.warn("Exception aborting transaction, " + exAbort.getMessage());
+				}
+				logger.error("Exception writing transaction, " + ex.getMessage(), ex);
+				throw new MethodException (ex);
 			}
 		}
 	}
@@ -925,6 +1072,25 @@ implements TransactionLoggerDataSourceSpi
 	
 	
 
+	/**
+	 * Periodically store the rollups of the entries written since the last flush.
+	 */
+	class TransactionLogRollupFlush
+	extends TimerTask
+	{
+		public void run()
+		{
+			try
+			{
+				rollupStore.flush();
+			}
+			catch(Exception ex)
+			{
+				logger.error("Error storing transaction log rollups, " + ex.getMessage(), ex);
+			}
+		}
+	}
+	
 	/**
 	 * Wake up every once and awhile and perform some TransactionLog maintenance operations.
 	 */
@@ -998,41 +1164,4 @@ implements TransactionLoggerDataSourceSpi
 	{
 		TransactionLoggerLocalDataSourceService.purgeRunning = purgeRunning;
 	}
-	
-	private static void addEntryToPurgeQueue(TransactionLogEntryImpl entry)
-	{
-		logger.info("Adding transaction log entry '" + entry.getTransactionId() + "' to list to be written to log when purge is completed.");
-		synchronized(cachedDuringPurgeEntries)
-		{
-			cachedDuringPurgeEntries.add(entry);
-		}
-	}
-	
-	private static synchronized void writeCachedEntries(TransactionLoggerLocalDataSourceService service)
-	{
-		synchronized(cachedDuringPurgeEntries)
-		{
-			logger.info("Writing '" + cachedDuringPurgeEntries.size() + "' cached log entries cached during purge.");
-			for(TransactionLogEntryImpl entry : cachedDuringPurgeEntries)
-			{
-				try
-				{
-					service.writeLogEntry(entry);
-				}
-				catch(ConnectionException cX)
-				{
-					logger.error("ConnectionException delayed writing of transaction (" + entry.getTransactionId()+ ")", cX);			
-				}
-				catch(MethodException mX)
-				{
-					logger.error("MethodException delayed writing of transaction (" + entry.getTransactionId()+ ")", mX);
-				}
-				catch(Exception x)
-				{
-					logger.error("Exception delayed writing of transaction (" + entry.getTransactionId()+ ")", x);
-				}
-			}
-			cachedDuringPurgeEntries.clear();
-		}
-	}
 }
@@ -0,0 +1,179 @@
+/**
+ * 
+ */
+package gov.va.med.imaging.transactionlogger.datasource;
+
+import gov.va.med.imaging.access.je.TransactionLogEntryImpl;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+import com.sleepycat.persist.StoreConfig;
+
+/**
+ * Tests the group commit writer against a database environment in a temporary directory.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TestTransactionLogGroupCommitWriter 
+extends TestCase
+{
+	private final static long WAIT_MS = 30000L;
+	
+	private File dbDir = null;
+	private File spillDir = null;
+	private Environment environment = null;
+	private TransactionLogPartitionCatalog catalog = null;
+	private TransactionLoggerStatistics statistics = null;
+	
+	@Override
+	protected void setUp() 
+	throws Exception
+	{
+		super.setUp();
+		dbDir = createTemporaryDirectory("transactionLogDb");
+		spillDir = new File(dbDir, "spill");
+		EnvironmentConfig envConfig = new EnvironmentConfig();
+		envConfig.setAllowCreate(true);
+		envConfig.setTransactional(true);
+		environment = new Environment(dbDir, envConfig);
+		StoreConfig storeConfig = new StoreConfig();
+		storeConfig.setAllowCreate(true);
+		storeConfig.setTransactional(true);
+		catalog = new TransactionLogPartitionCatalog(environment, storeConfig, 0);
+		statistics = new TransactionLoggerStatistics();
+	}
+	
+	@Override
+	protected void tearDown() 
+	throws Exception
+	{
+		catalog.close();
+		environment.close();
+		delete(dbDir);
+		super.tearDown();
+	}
+	
+	public void testGroupCommitBatches()
+	throws Exception
+	{
+		TransactionLogGroupCommitWriter writer = createWriter(100, 10);
+		// queued before the writer starts so that the batches are full
+		for(int index = 0; index < 25; ++index)
+			writer.write(createEntry(index));
+		assertEquals(25, writer.getQueueDepth());
+		
+		writer.start();
+		waitForCommittedEntries(writer, 25L);
+		writer.shutdown();
+		
+		assertEquals(3L, writer.getBatchesCommitted());
+		assertEquals(10, writer.getLargestBatchSize());
+		assertEquals(5, writer.getLastBatchSize());
+		assertEquals(0L, writer.getSpilledEntries());
+		assertEquals(25L, countEntries());
+	}
+	
+	public void testSpillOnOverflow()
+	throws Exception
+	{
+		TransactionLogGroupCommitWriter writer = createWriter(2, 10);
+		for(int index = 0; index < 5; ++index)
+			writer.write(createEntry(index));
+		assertEquals(2, writer.getQueueDepth());
+		assertEquals(3L, writer.getSpilledEntries());
+		
+		// the buffered entries are spilled when the writer stops
+		writer.shutdown();
+		assertEquals(5L, writer.getSpilledEntries());
+		assertEquals(5L, writer.getTotalSpilledEntries());
+		assertEquals(1, countSpillFiles());
+		assertEquals(0L, countEntries());
+	}
+	
+	public void testReplayAfterRestart()
+	throws Exception
+	{
+		TransactionLogGroupCommitWriter writer = createWriter(2, 10);
+		for(int index = 0; index < 5; ++index)
+			writer.write(createEntry(index));
+		writer.shutdown();
+		assertEquals(1, countSpillFiles());
+		
+		// the spill files of the previous writer are found and written
+		TransactionLogGroupCommitWriter restarted = createWriter(100, 10);
+		assertEquals(5L, restarted.getSpilledEntries());
+		restarted.start();
+		long waitUntil = System.currentTimeMillis() + WAIT_MS;
+		while(restarted.getSpilledEntries() > 0L && System.currentTimeMillis() < waitUntil)
+			Thread.sleep(100L);
+		restarted.shutdown();
+		
+		assertEquals(0L, restarted.getSpilledEntries());
+		assertEquals(5L, restarted.getEntriesCommitted());
+		assertEquals(0, countSpillFiles());
+		assertEquals(5L, countEntries());
+	}
+	
+	private TransactionLogGroupCommitWriter createWriter(int queueCapacity, int maxBatchSize)
+	{
+		return new TransactionLogGroupCommitWriter(environment, catalog, statistics, 
+			TransactionLogWriteDurability.NO_SYNC, queueCapacity, maxBatchSize, spillDir);
+	}
+	
+	private static TransactionLogEntryImpl createEntry(int index)
+	{
+		TransactionLogEntryImpl entry = new TransactionLogEntryImpl();
+		entry.setStartTime(System.currentTimeMillis());
+		entry.setElapsedTime(index);
+		entry.setQueryType("test");
+		return entry;
+	}
+	
+	private void waitForCommittedEntries(TransactionLogGroupCommitWriter writer, long count)
+	throws InterruptedException
+	{
+		long waitUntil = System.currentTimeMillis() + WAIT_MS;
+		while(writer.getEntriesCommitted() < count && System.currentTimeMillis() < waitUntil)
+			Thread.sleep(100L);
+		assertEquals(count, writer.getEntriesCommitted());
+	}
+	
+	private long countEntries()
+	throws Exception
+	{
+		long count = 0L;
+		for(TransactionLogPartition partition : catalog.getPartitions())
+			count += partition.getTransactionLogBySequence().count();
+		return count;
+	}
+	
+	private int countSpillFiles()
+	{
+		File[] files = spillDir.listFiles();
+		return files == null ? 0 : files.length;
+	}
+	
+	static File createTemporaryDirectory(String prefix)
+	throws IOException
+	{
+		File dir = File.createTempFile(prefix, "");
+		if(!dir.delete() || !dir.mkdirs())
+			throw new IOException("Unable to create temporary directory '" + dir.getAbsolutePath() + "'.");
+		return dir;
+	}
+	
+	static void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if(children != null)
+			for(File child : children)
+				delete(child);
+		file.delete();
+	}
+}
@@ -0,0 +1,164 @@
+/**
+ * 
+ */
+package gov.va.med.imaging.transactionlogger.datasource;
+
+import gov.va.med.imaging.access.je.TransactionLogEntryImpl;
+
+import java.io.File;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+import com.sleepycat.persist.EntityStore;
+import com.sleepycat.persist.StoreConfig;
+
+/**
+ * Tests the day partitions of the transaction log against a database environment in a temporary directory.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TestTransactionLogPartitionCatalog 
+extends TestCase
+{
+	private File dbDir = null;
+	private Environment environment = null;
+	private StoreConfig storeConfig = null;
+	
+	@Override
+	protected void setUp() 
+	throws Exception
+	{
+		super.setUp();
+		dbDir = TestTransactionLogGroupCommitWriter.createTemporaryDirectory("transactionLogCatalog");
+		EnvironmentConfig envConfig = new EnvironmentConfig();
+		envConfig.setAllowCreate(true);
+		envConfig.setTransactional(true);
+		environment = new Environment(dbDir, envConfig);
+		storeConfig = new StoreConfig();
+		storeConfig.setAllowCreate(true);
+		storeConfig.setTransactional(true);
+	}
+	
+	@Override
+	protected void tearDown() 
+	throws Exception
+	{
+		environment.close();
+		TestTransactionLogGroupCommitWriter.delete(dbDir);
+		super.tearDown();
+	}
+	
+	public void testPartitionRollover()
+	throws Exception
+	{
+		long dayOne = getTime(2026, Calendar.MARCH, 1, 10);
+		long dayOneLater = getTime(2026, Calendar.MARCH, 1, 23);
+		long dayTwo = getTime(2026, Calendar.MARCH, 2, 0);
+		
+		TransactionLogPartitionCatalog catalog = new TransactionLogPartitionCatalog(environment, storeConfig, 0);
+		try
+		{
+			assertEquals(0, catalog.getPartitionCount());
+			TransactionLogPartition first = write(catalog, dayOne);
+			assertSame(first, write(catalog, dayOneLater));
+			TransactionLogPartition second = write(catalog, dayTwo);
+			assertNotSame(first, second);
+			assertEquals(2, catalog.getPartitionCount());
+			
+			assertEquals("transactionLog-20260301", first.getStoreName());
+			assertEquals("transactionLog-20260302", second.getStoreName());
+			assertEquals(first.getEndTime(), second.getStartTime());
+			assertEquals(2L, first.getTransactionLogBySequence().count());
+			assertEquals(1L, second.getTransactionLogBySequence().count());
+			
+			List<TransactionLogPartition> reversed = catalog.getPartitions(dayOne, dayTwo, false);
+			assertEquals(2, reversed.size());
+			assertSame(second, reversed.get(0));
+			assertEquals(1, catalog.getPartitions(dayTwo, dayTwo, true).size());
+		}
+		finally
+		{
+			catalog.close();
+		}
+		
+		// the partitions are found in the catalog when it is opened again
+		catalog = new TransactionLogPartitionCatalog(environment, storeConfig, 0);
+		try
+		{
+			assertEquals(2, catalog.getPartitionCount());
+			assertEquals("transactionLog-20260301", catalog.getPartitions().get(0).getStoreName());
+		}
+		finally
+		{
+			catalog.close();
+		}
+	}
+	
+	public void testPurgeDropsPartitions()
+	throws Exception
+	{
+		long dayOne = getTime(2026, Calendar.MARCH, 1, 10);
+		long dayTwo = getTime(2026, Calendar.MARCH, 2, 10);
+		
+		TransactionLogPartitionCatalog catalog = new TransactionLogPartitionCatalog(environment, storeConfig, 0);
+		try
+		{
+			TransactionLogPartition first = write(catalog, dayOne);
+			write(catalog, dayTwo);
+			
+			// a cutoff inside the second day drops only the first
+			assertEquals(1, catalog.dropPartitionsBefore(dayTwo));
+			assertEquals(1, catalog.getPartitionCount());
+			assertEquals("transactionLog-20260302", catalog.getPartitions().get(0).getStoreName());
+			assertFalse(first.acquire());
+			assertFalse(EntityStore.getStoreNames(environment).contains("transactionLog-20260301"));
+			
+			// entries in a dropped period are not written
+			assertNull(catalog.acquireWritePartition(dayOne));
+		}
+		finally
+		{
+			catalog.close();
+		}
+		
+		catalog = new TransactionLogPartitionCatalog(environment, storeConfig, 0);
+		try
+		{
+			assertEquals(1, catalog.getPartitionCount());
+		}
+		finally
+		{
+			catalog.close();
+		}
+	}
+	
+	private static TransactionLogPartition write(TransactionLogPartitionCatalog catalog, long time)
+	throws Exception
+	{
+		TransactionLogPartition partition = catalog.acquireWritePartition(time);
+		assertNotNull(partition);
+		try
+		{
+			TransactionLogEntryImpl entry = new TransactionLogEntryImpl();
+			entry.setStartTime(time);
+			partition.getTransactionLogBySequence().put(entry);
+		}
+		finally
+		{
+			partition.release();
+		}
+		return partition;
+	}
+	
+	private static long getTime(int year, int month, int day, int hour)
+	{
+		Calendar cal = new GregorianCalendar(year, month, day, hour, 0, 0);
+		return cal.getTimeInMillis();
+	}
+}
@@ -0,0 +1,167 @@
+package gov.va.med.imaging.transactionlogger.datasource;
+
+import gov.va.med.imaging.access.TransactionLogEntry;
+import gov.va.med.imaging.access.TransactionLogWriter;
+import gov.va.med.imaging.access.je.TransactionLogEntryImpl;
+import gov.va.med.imaging.core.interfaces.exceptions.MethodException;
+
+import java.io.File;
+import java.util.Date;
+import java.util.Random;
+
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+import com.sleepycat.je.Transaction;
+import com.sleepycat.persist.EntityStore;
+import com.sleepycat.persist.PrimaryIndex;
+import com.sleepycat.persist.SecondaryIndex;
+import com.sleepycat.persist.StoreConfig;
+
+/**
+ * A stand-alone benchmark of transaction log queries over a generated log.
+ * The log is generated in a new database environment in the given directory (2,000,000 entries 
+ * over 30 days by default), then each query is run with the date order scan and with the planned
+ * (indexed) read, and the times and entry counts printed.
+ * 
+ * Run as a Java application, this is not a unit test.
+ * usage: TransactionLogQueryBenchmark <database directory> [entry count]
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TransactionLogQueryBenchmark
+{
+	private final static long DAY = 24L * 60L * 60L * 1000L;
+	private final static int DAYS = 30;
+	private final static int USERS = 2000;
+	private final static int STUDIES = 200000;
+	private final static String[] MODALITIES = new String[]{"CR", "CT", "MR", "US", "XA", "NM", "DX", "PT"};
+	private final static int measuredIterations = 3;
+	
+	public static void main(String[] args) 
+	throws Exception
+	{
+		if(args.length < 1)
+		{
+			System.out.println("usage: TransactionLogQueryBenchmark <database directory> [entry count]");
+			return;
+		}
+		File dbDir = new File(args[0]);
+		int entryCount = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+		dbDir.mkdirs();
+		
+		EnvironmentConfig envConfig = new EnvironmentConfig();
+		envConfig.setAllowCreate(true);
+		envConfig.setTransactional(true);
+		Environment environment = new Environment(dbDir, envConfig);
+		StoreConfig storeConfig = new StoreConfig();
+		storeConfig.setAllowCreate(true);
+		storeConfig.setTransactional(true);
+		EntityStore store = new EntityStore(environment, "transactionLog", storeConfig);
+		try
+		{
+			PrimaryIndex<Long, TransactionLogEntryImpl> bySequence = store.getPrimaryIndex(Long.class, TransactionLogEntryImpl.class);
+			SecondaryIndex<Long, Long, TransactionLogEntryImpl> byDate = store.getSecondaryIndex(bySequence, Long.class, "startTime");
+			SecondaryIndex<String, Long, TransactionLogEntryImpl> byTransactionId = store.getSecondaryIndex(bySequence, String.class, "transactionId");
+			SecondaryIndex<String, Long, TransactionLogEntryImpl> byUser = store.getSecondaryIndex(bySequence, String.class, "user");
+			SecondaryIndex<String, Long, TransactionLogEntryImpl> byUrn = store.getSecondaryIndex(bySequence, String.class, "urn");
+			SecondaryIndex<String, Long, TransactionLogEntryImpl> byModality = store.getSecondaryIndex(bySequence, String.class, "modality");
+			SecondaryIndex<Boolean, Long, TransactionLogEntryImpl> byErrorPresent = store.getSecondaryIndex(bySequence, Boolean.class, "errorPresent");
+			
+			long endTime = System.currentTimeMillis();
+			if(bySequence.count() == 0L)
+				generate(environment, bySequence, entryCount, endTime);
+			
+			// a maximum of 1 indexed result forces the date order scan
+			TransactionLogQueryPlanner scanPlanner = new TransactionLogQueryPlanner(bySequence, byDate, 
+				byTransactionId, byUser, byUrn, byModality, byErrorPresent, 1);
+			TransactionLogQueryPlanner indexedPlanner = new TransactionLogQueryPlanner(bySequence, byDate, 
+				byTransactionId, byUser, byUrn, byModality, byErrorPresent, TransactionLogQueryPlanner.DEFAULT_MAXIMUM_INDEXED_RESULTS);
+			
+			Date monthStart = new Date(endTime - DAYS * DAY);
+			Date weekStart = new Date(endTime - 7L * DAY);
+			Date end = new Date(endTime);
+			TransactionLogQuery[] queries = new TransactionLogQuery[]
+			{
+				new TransactionLogQuery(monthStart, end, null, "user17", null, null, null, null, null, true, null, null),
+				new TransactionLogQuery(weekStart, end, null, "user17", "CT", null, null, null, null, false, 0, 99),
+				new TransactionLogQuery(monthStart, end, null, null, null, null, null, "urn:vastudy:660-1234", null, true, null, null),
+				new TransactionLogQuery(monthStart, end, null, null, null, null, null, null, "transaction-1000000", true, null, null),
+				new TransactionLogQuery(monthStart, end, null, null, null, null, ".*timed out.*", null, null, true, null, null),
+				new TransactionLogQuery(weekStart, end, null, "user1.*", null, null, null, null, null, true, 0, 99),
+			};
+			
+			for(TransactionLogQuery query : queries)
+			{
+				System.out.println(query);
+				run("  scan   ", scanPlanner, query);
+				run("  planned", indexedPlanner, query);
+			}
+		}
+		finally
+		{
+			store.close();
+			environment.close();
+		}
+	}
+	
+	private static void run(String name, TransactionLogQueryPlanner planner, TransactionLogQuery query)
+	throws MethodException
+	{
+		CountingWriter writer = new CountingWriter();
+		planner.execute(query, writer); // warm up
+		long total = 0L;
+		for(int iteration = 0; iteration < measuredIterations; ++iteration)
+		{
+			writer.count = 0;
+			long start = System.nanoTime();
+			planner.execute(query, writer);
+			total += System.nanoTime() - start;
+		}
+		System.out.println(name + " " + writer.count + " entries in " + (total / measuredIterations / 1000000L) + " ms");
+	}
+	
+	private static void generate(Environment environment, PrimaryIndex<Long, TransactionLogEntryImpl> bySequence, 
+		int entryCount, long endTime)
+	{
+		System.out.println("Generating " + entryCount + " transaction log entries...");
+		Random random = new Random(42L);
+		long interval = DAYS * DAY / entryCount;
+		long startTime = endTime - DAYS * DAY;
+		int batchSize = 1000;
+		long start = System.currentTimeMillis();
+		for(int index = 0; index < entryCount; index += batchSize)
+		{
+			Transaction txn = environment.beginTransaction(null, TransactionLogWriteDurability.NO_SYNC.createTransactionConfig());
+			for(int entryIndex = index; entryIndex < Math.min(entryCount, index + batchSize); ++entryIndex)
+			{
+				String errorMessage = random.nextInt(100) == 0 ? "Connection timed out to site " + random.nextInt(100) : null;
+				TransactionLogEntryImpl entry = new TransactionLogEntryImpl();
+				entry.setStartTime(startTime + entryIndex * interval);
+				entry.setElapsedTime(random.nextInt(5000));
+				entry.setUser("user" + random.nextInt(USERS));
+				entry.setModality(MODALITIES[random.nextInt(MODALITIES.length)]);
+				entry.setUrn("urn:vastudy:660-" + random.nextInt(STUDIES));
+				entry.setTransactionId("transaction-" + entryIndex);
+				entry.setErrorMessage(errorMessage);
+				entry.setQuality("REFERENCE");
+				bySequence.put(txn, entry);
+			}
+			txn.commit();
+		}
+		System.out.println("Generated in " + (System.currentTimeMillis() - start) + " ms.");
+	}
+	
+	private static class CountingWriter
+	implements TransactionLogWriter
+	{
+		private int count = 0;
+		
+		@Override
+		public void writeTransactionLogEntry(TransactionLogEntry entry)
+		throws MethodException
+		{
+			count++;
+		}
+	}
+}
@@ -0,0 +1,228 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.vistadatasource.session;
+
+import gov.va.med.imaging.ImagingMBean;
+import gov.va.med.imaging.exchange.TaskScheduler;
+import gov.va.med.imaging.transactioncontext.TransactionContextFactory;
+import gov.va.med.imaging.url.vista.VistaQuery;
+import gov.va.med.imaging.vistadatasource.session.configuration.VistaRpcCacheConfiguration;
+import gov.va.med.imaging.vistadatasource.session.configuration.VistaSessionConfiguration;
+
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Caches the results of the RPCs that do not change during a session, such as site parameters, 
+ * network locations, installed versions and user keys.  VistaSession.call() answers a cached 
+ * RPC from this cache rather than sending it to VistA.  The cached RPCs and how long their 
+ * results are kept are declared in the VistaSessionConfiguration, each cached RPC is 
+ * registered with JMX so that its hit rate can be watched.
+ * 
+ * Results are cached per site and security context, results of user scoped RPCs are
+ * also cached per user.  Code that changes what a cached RPC returns should call one of 
+ * the invalidate methods.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class VistaRpcResultCache
+{
+	private final static long purgePeriod = 1000 * 60; // 1 minute (how often expired results are purged)
+	private final static Logger logger = Logger.getLogger(VistaRpcResultCache.class);
+	
+	/**
+	 * Created when the holder class is loaded, which the class loader does once, so that
+	 * VistaSession.call() does not have to synchronize to get the cache.
+	 */
+	private static class VistaRpcResultCacheHolder
+	{
+		private final static VistaRpcResultCache vistaRpcResultCache = new VistaRpcResultCache(getConfiguredRpcCaches());
+	}
+	
+	public static VistaRpcResultCache getVistaRpcResultCache()
+	{
+		return VistaRpcResultCacheHolder.vistaRpcResultCache;
+	}
+	
+	private static List<VistaRpcCacheConfiguration> getConfiguredRpcCaches()
+	{
+		VistaSessionConfiguration configuration = VistaSessionConfiguration.getConfiguration();
+		return configuration == null ? null : configuration.getRpcCaches();
+	}
+	
+	// created once and only read afterward
+	private final Map<String, VistaRpcResultCacheRegion> regions = new HashMap<String, VistaRpcResultCacheRegion>();
+	
+	/**
+	 * 
+	 * @param rpcCaches the RPCs to cache, any other RPC is always sent to VistA
+	 */
+	VistaRpcResultCache(List<VistaRpcCacheConfiguration> rpcCaches)
+	{
+		if(rpcCaches == null)
+			return;
+		for(VistaRpcCacheConfiguration rpcCache : rpcCaches)
+		{
+			if(rpcCache.getRpcName() == null || rpcCache.getTimeToLive() <= 0L || rpcCache.getMaximumEntries() <= 0)
+			{
+				logger.warn("Ignoring RPC cache configuration for '" + rpcCache.getRpcName() + "', the time to live and maximum entries must be positive.");
+				continue;
+			}
+			VistaRpcResultCacheRegion region = new VistaRpcResultCacheRegion(rpcCache);
+			regions.put(region.getRpcName(), region);
+			TaskScheduler.getTaskScheduler().schedule(region.getTimedCache(), purgePeriod, purgePeriod);
+			registerRegion(region);
+			logger.info("Caching results of RPC '" + region.getRpcName() + "' for " + region.getTimeToLive() + " ms, " + 
+				(region.isUserScoped() ? "per user." : "per site."));
+		}
+	}
+	
+	private void registerRegion(VistaRpcResultCacheRegion region)
+	{
+		try
+		{
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			Hashtable<String, String> mBeanProperties = new Hashtable<String, String>();
+			mBeanProperties.put( "type", "VistaRpcResultCache" );
+			mBeanProperties.put( "name", ObjectName.quote(region.getRpcName()) );
+			mBeanServer.registerMBean(region, new ObjectName(ImagingMBean.VIX_MBEAN_DOMAIN_NAME, mBeanProperties));
+		}
+		catch(Exception ex)
+		{
+			logger.error("Error registering RPC cache '" + region.getRpcName() + "' with JMX", ex);
+		}
+	}
+	
+	/**
+	 * Get the cached result of an RPC.
+	 * 
+	 * @param url the site the RPC is sent to
+	 * @param securityContext the security context of the session
+	 * @param vistaQuery
+	 * @return the cached result, or null if the RPC is not cached or has no current result
+	 */
+	String get(URL url, String securityContext, VistaQuery vistaQuery)
+	{
+		VistaRpcResultCacheRegion region = regions.get(vistaQuery.getRpcName());
+		if(region == null)
+			return null;
+		return region.get(createKey(region, url, securityContext, vistaQuery));
+	}
+	
+	/**
+	 * Cache the result of an RPC, if the RPC is cached.
+	 */
+	void put(URL url, String securityContext, VistaQuery vistaQuery, String result)
+	{
+		if(result == null)
+			return;
+		VistaRpcResultCacheRegion region = regions.get(vistaQuery.getRpcName());
+		if(region == null)
+			return;
+		region.put(createKey(region, url, securityContext, vistaQuery), result);
+	}
+	
+	/**
+	 * Remove the cached results of an RPC for all sites and users.
+	 * 
+	 * @param rpcName
+	 */
+	public void invalidate(String rpcName)
+	{
+		VistaRpcResultCacheRegion region = regions.get(rpcName);
+		if(region != null)
+		{
+			logger.info("Invalidating cached results of RPC '" + rpcName + "'.");
+			region.invalidate(null);
+		}
+	}
+	
+	/**
+	 * Remove the cached results of all RPCs from the site.
+	 * 
+	 * @param url
+	 */
+	public void invalidate(URL url)
+	{
+		logger.info("Invalidating cached RPC results of site '" + url.toExternalForm() + "'.");
+		for(VistaRpcResultCacheRegion region : regions.values())
+			region.invalidate(url.toExternalForm());
+	}
+	
+	/**
+	 * Remove all cached results.
+	 */
+	public void invalidateAll()
+	{
+		logger.info("Invalidating all cached RPC results.");
+		for(VistaRpcResultCacheRegion region : regions.values())
+			region.invalidate(null);
+	}
+	
+	private static VistaRpcResultCacheKey createKey(VistaRpcResultCacheRegion region, 
+		URL url, String securityContext, VistaQuery vistaQuery)
+	{
+		String securityHashCode = region.isUserScoped() ? 
+			TransactionContextFactory.get().getSecurityHashCode() : null;
+		return new VistaRpcResultCacheKey(url.toExternalForm(), securityContext, 
+			securityHashCode, createRequest(vistaQuery));
+	}
+	
+	/**
+	 * The RPC name and parameters as a string, list parameters are ordered by their subscript
+	 * so that equal lists give equal requests.
+	 */
+	private static String createRequest(VistaQuery vistaQuery)
+	{
+		StringBuilder sb = new StringBuilder(vistaQuery.getRpcName());
+		for(Object param : vistaQuery.getParams())
+		{
+			VistaQuery.Parameter parameter = (VistaQuery.Parameter)param;
+			sb.append('^');
+			sb.append(parameter.getType());
+			sb.append('|');
+			sb.append(parameter.getValue());
+			sb.append('|');
+			sb.append(parameter.getText());
+			if(parameter.getList() != null)
+			{
+				sb.append('|');
+				sb.append(new TreeMap<Object, Object>(parameter.getList()));
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,84 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.vistadatasource.session;
+
+/**
+ * The key of a cached RPC result.  The request is the RPC name and its parameters, 
+ * the security hash code is null for results that are the same for all users.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+final class VistaRpcResultCacheKey
+{
+	private final String url;
+	private final String securityContext;
+	private final String securityHashCode;
+	private final String request;
+	
+	VistaRpcResultCacheKey(String url, String securityContext, String securityHashCode, String request)
+	{
+		this.url = url;
+		this.securityContext = securityContext;
+		this.securityHashCode = securityHashCode;
+		this.request = request;
+	}
+
+	String getUrl()
+	{
+		return url;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		final int PRIME = 31;
+		int result = 1;
+		result = PRIME * result + ((url == null) ? 0 : url.hashCode());
+		result = PRIME * result + ((securityContext == null) ? 0 : securityContext.hashCode());
+		result = PRIME * result + ((securityHashCode == null) ? 0 : securityHashCode.hashCode());
+		result = PRIME * result + ((request == null) ? 0 : request.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		final VistaRpcResultCacheKey other = (VistaRpcResultCacheKey) obj;
+		return equals(url, other.url) 
+			&& equals(securityContext, other.securityContext) 
+			&& equals(securityHashCode, other.securityHashCode) 
+			&& equals(request, other.request);
+	}
+	
+	private static boolean equals(String a, String b)
+	{
+		return a == null ? b == null : a.equals(b);
+	}
+}
@@ -0,0 +1,255 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.vistadatasource.session;
+
+import gov.va.med.imaging.exchange.BaseTimedCache;
+import gov.va.med.imaging.exchange.BaseTimedCacheValueItem;
+import gov.va.med.imaging.vistadatasource.session.configuration.VistaRpcCacheConfiguration;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The cached results of one RPC.  Results are kept for the configured time to live
+ * and the region holds no more than the configured maximum entries, a result that 
+ * arrives while the region is full (after purging the expired results) is not cached.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class VistaRpcResultCacheRegion
+implements VistaRpcResultCacheRegionMBean
+{
+	private final String rpcName;
+	private final long timeToLive;
+	private final int maximumEntries;
+	private final boolean userScoped;
+	private final RpcResultTimedCache cache;
+	
+	private final AtomicLong hitCount = new AtomicLong(0L);
+	private final AtomicLong missCount = new AtomicLong(0L);
+	private final AtomicLong rejectedCount = new AtomicLong(0L);
+	private final AtomicLong invalidationCount = new AtomicLong(0L);
+	
+	VistaRpcResultCacheRegion(VistaRpcCacheConfiguration configuration)
+	{
+		this.rpcName = configuration.getRpcName();
+		this.timeToLive = configuration.getTimeToLive();
+		this.maximumEntries = configuration.getMaximumEntries();
+		this.userScoped = configuration.isUserScoped();
+		this.cache = new RpcResultTimedCache(rpcName);
+		this.cache.setRetentionPeriod(timeToLive);
+	}
+	
+	/**
+	 * The timer task that purges the expired results.
+	 */
+	BaseTimedCache<?, ?> getTimedCache()
+	{
+		return cache;
+	}
+	
+	/**
+	 * @param key
+	 * @return the cached result or null if the result is not cached or has expired
+	 */
+	String get(VistaRpcResultCacheKey key)
+	{
+		RpcResultItem item = (RpcResultItem)cache.getItem(key);
+		if(item != null && item.getRefreshTime() < System.currentTimeMillis() - timeToLive)
+		{
+			cache.remove(key);
+			item = null;
+		}
+		if(item == null)
+		{
+			missCount.incrementAndGet();
+			return null;
+		}
+		hitCount.incrementAndGet();
+		return item.getResult();
+	}
+	
+	void put(VistaRpcResultCacheKey key, String result)
+	{
+		if(cache.size() >= maximumEntries)
+		{
+			cache.purgeExpiredCacheItems();
+			if(cache.size() >= maximumEntries)
+			{
+				rejectedCount.incrementAndGet();
+				return;
+			}
+		}
+		cache.updateItem(new RpcResultItem(key, result));
+	}
+	
+	/**
+	 * Remove the results of the site, or of all sites if url is null.
+	 * 
+	 * @param url the external form of the site URL
+	 */
+	void invalidate(String url)
+	{
+		int removed = cache.removeSite(url);
+		if(removed > 0)
+			invalidationCount.addAndGet(removed);
+	}
+	
+	// ======================================================================================
+	// VistaRpcResultCacheRegionMBean
+	// ======================================================================================
+
+	@Override
+	public String getRpcName()
+	{
+		return rpcName;
+	}
+
+	@Override
+	public long getTimeToLive()
+	{
+		return timeToLive;
+	}
+
+	@Override
+	public int getMaximumEntries()
+	{
+		return maximumEntries;
+	}
+
+	@Override
+	public boolean isUserScoped()
+	{
+		return userScoped;
+	}
+
+	@Override
+	public int getEntryCount()
+	{
+		return cache.size();
+	}
+
+	@Override
+	public long getHitCount()
+	{
+		return hitCount.get();
+	}
+
+	@Override
+	public long getMissCount()
+	{
+		return missCount.get();
+	}
+
+	@Override
+	public double getHitRate()
+	{
+		long hits = hitCount.get();
+		long total = hits + missCount.get();
+		return total == 0L ? 0.0d : (100.0d * hits) / total;
+	}
+
+	@Override
+	public long getRejectedCount()
+	{
+		return rejectedCount.get();
+	}
+
+	@Override
+	public long getInvalidationCount()
+	{
+		return invalidationCount.get();
+	}
+
+	@Override
+	public void clear()
+	{
+		invalidate(null);
+	}
+
+	@Override
+	public void resetStatistics()
+	{
+		hitCount.set(0L);
+		missCount.set(0L);
+		rejectedCount.set(0L);
+		invalidationCount.set(0L);
+	}
+	
+	/**
+	 * Exposes the size of the BaseTimedCache and the removal of single items. 
+	 */
+	private static class RpcResultTimedCache
+	extends BaseTimedCache<VistaRpcResultCacheKey, RpcResultItem>
+	{
+		RpcResultTimedCache(String rpcName)
+		{
+			super(VistaRpcResultCacheRegion.class.getSimpleName() + " [" + rpcName + "]");
+		}
+		
+		int size()
+		{
+			return map.size();
+		}
+		
+		void remove(VistaRpcResultCacheKey key)
+		{
+			map.remove(key);
+		}
+		
+		int removeSite(String url)
+		{
+			int removed = 0;
+			for(Iterator<?> keys = map.keySet().iterator(); keys.hasNext(); )
+			{
+				VistaRpcResultCacheKey key = (VistaRpcResultCacheKey)keys.next();
+				if(url == null || url.equals(key.getUrl()))
+				{
+					keys.remove();
+					removed++;
+				}
+			}
+			return removed;
+		}
+	}
+	
+	private static class RpcResultItem
+	extends BaseTimedCacheValueItem
+	{
+		private final String result;
+		
+		RpcResultItem(VistaRpcResultCacheKey key, String result)
+		{
+			setKey(key);
+			this.result = result;
+		}
+
+		String getResult()
+		{
+			return result;
+		}
+	}
+}
@@ -0,0 +1,50 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.vistadatasource.session;
+
+/**
+ * JMX view of the cached results of one RPC.  A miss is a call that was sent to VistA,
+ * a rejected result is one that was not cached because the cache was full.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public interface VistaRpcResultCacheRegionMBean
+{
+	public String getRpcName();
+	public long getTimeToLive();
+	public int getMaximumEntries();
+	public boolean isUserScoped();
+	
+	public int getEntryCount();
+	public long getHitCount();
+	public long getMissCount();
+	public double getHitRate();
+	public long getRejectedCount();
+	public long getInvalidationCount();
+	
+	public void clear();
+	public void resetStatistics();
+}
@@ -54,6 +54,7 @@ import gov.va.med.imaging.vistadatasource.session.configuration.VistaSessionConf
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.log4j.Logger;
 
@@ -102,6 +103,9 @@ public class VistaSession
 	private String securityContext;
 	private String version = null;
 	
+	// true while this session is counted against the maximum sessions of its site in the VistaSessionPool
+	private final AtomicBoolean poolPermit = new AtomicBoolean(false);
+	
 	public static VistaSession getOrCreate(URL url, Site site) 
 	throws IOException, ConnectionException, MethodException, SecurityCredentialsExpiredException
 	{
@@ -138,18 +142,47 @@ public class VistaSession
 		else
 			securityContextToSet = getImagingSecurityContextType().getSecurityContext();
 		logger.info("getOrCreate(" + url.toExternalForm() + ") with security Context (" + securityContextToSet + ") and version (" + version + ").");
-		VistaSession session = VistaSessionCache.getSingleton().get(url, securityContextToSet, version);
+		VistaSessionPool pool = VistaSessionPool.getSingleton();
+		VistaSession session = pool.borrow(url, securityContextToSet, version);
 		logger.info("getOrCreate(" + url.toExternalForm() + ") " + 
-				(session == null ? "did not find" : "found") + " session in cache" );
+				(session == null ? "did not find" : "found") + " session in pool" );
 		
 		if(session == null)
 		{
-			session = new VistaSession(url, site, securityContextToSet, version);
-		
+			session = pool.borrowPreconnected(url, securityContextToSet, version);
 			if(session != null)
 			{
-				logger.info("getOrCreate(" + url.toExternalForm() + ") connecting new VistaSession.");
-				connectAndLogin(url, session);			
+				logger.info("getOrCreate(" + url.toExternalForm() + ") logging in pre-connected VistaSession.");
+				boolean loggedIn = false;
+				try
+				{
+					session.login();
+					loggedIn = true;
+				}
+				finally
+				{
+					if(!loggedIn)
+						session.abandon();
+				}
+			}
+		}
+		
+		if(session == null)
+		{
+			session = new VistaSession(url, site, securityContextToSet, version);
+			pool.acquirePermit(session);
+			
+			logger.info("getOrCreate(" + url.toExternalForm() + ") connecting new VistaSession.");
+			boolean loggedIn = false;
+			try
+			{
+				connectAndLogin(url, session);
+				loggedIn = true;
+			}
+			finally
+			{
+				if(!loggedIn)
+					session.abandon();
 			}
 		}
 		
@@ -307,9 +340,8 @@ public class VistaSession
 	throws IOException, MethodException, ConnectionException
 	{
 		logger.info("connectAndLogin(" + url.toExternalForm() + ") connecting VistaConnection." );
-		long startTime = System.currentTimeMillis();
-		session.connect();
-		logger.info("connectAndLogin(" + url.toExternalForm() + ") connected to Vista in '" + (System.currentTimeMillis() - startTime) + "' ms, now logging in...");
+		long connectMillis = connectPooled(url, session);
+		logger.info("connectAndLogin(" + url.toExternalForm() + ") connected to Vista in '" + connectMillis + "' ms, now logging in...");
 		try
         {
 			// another sacrifice to Vista, logging in too quickly after connecting sometimes causes problems
@@ -321,6 +353,110 @@ public class VistaSession
 		logger.info("connectAndLogin(" + url.toExternalForm() + ") VistaConnection connected, logged in." );	
 	}
 	
+	/**
+	 * Connect the session and record the connect time in the VistaSessionPool.
+	 * 
+	 * @return the time in ms it took to connect
+	 */
+	private static long connectPooled(URL url, VistaSession session)
+	throws IOException
+	{
+		long startTime = System.currentTimeMillis();
+		try
+		{
+			session.connect();
+		}
+		catch(IOException ioX)
+		{
+			VistaSessionPool.getSingleton().connectFailed(url);
+			throw ioX;
+		}
+		long connectMillis = System.currentTimeMillis() - startTime;
+		VistaSessionPool.getSingleton().connected(url, connectMillis);
+		return connectMillis;
+	}
+	
+	/**
+	 * Create a session that is connected to the broker but not logged in, the VistaSessionPool 
+	 * keeps these ready for the local site.  A pre-connected session is not associated with a 
+	 * user until it is adopted.
+	 * 
+	 * @param url
+	 * @param site
+	 * @return the connected session, or null if the site is at its maximum number of sessions
+	 * @throws IOException
+	 */
+	static VistaSession connectPreconnected(URL url, Site site)
+	throws IOException
+	{
+		VistaSession session = new VistaSession(url, site, null, null);
+		if(!VistaSessionPool.getSingleton().tryAcquirePermit(session))
+			return null;
+		boolean connected = false;
+		try
+		{
+			connectPooled(url, session);
+			connected = true;
+		}
+		finally
+		{
+			if(!connected)
+				session.abandon();
+		}
+		return session;
+	}
+	
+	/**
+	 * Take over a pre-connected session for the security context and version of a caller, 
+	 * the session must then be logged in.
+	 */
+	void adopt(String securityContext, String version)
+	{
+		this.securityContext = securityContext;
+		this.version = version;
+		setLastUsedTime();
+		logger.info("Adopted VistaSession (" + getSessionIndex() + ") with security context (" + securityContext + ") and version (" + version + ")");
+	}
+	
+	/**
+	 * Drop a session that failed to connect or login, disconnecting it if it got connected.
+	 */
+	void abandon()
+	{
+		if(isConnected())
+		{
+			try{disconnect(true);}
+			catch(Exception x){logger.warn(x.getMessage());}
+		}
+		else
+			VistaSessionPool.getSingleton().sessionDisconnected(this);
+	}
+	
+	// ============================================================================================
+	// VistaSessionPool permit, held from creation until the session is disconnected
+	// ============================================================================================
+	
+	boolean hasPoolPermit()
+	{
+		return poolPermit.get();
+	}
+	
+	/**
+	 * @return true if the permit was acquired, false if the session already held it
+	 */
+	boolean acquirePoolPermit()
+	{
+		return poolPermit.compareAndSet(false, true);
+	}
+	
+	/**
+	 * @return true if the permit was released, false if the session did not hold it
+	 */
+	boolean releasePoolPermit()
+	{
+		return poolPermit.compareAndSet(true, false);
+	}
+	
 	private VistaSession(URL url, Site site, String securityContext, String version)
 	{
 		this.site = site;
@@ -456,7 +592,7 @@ public class VistaSession
 	}
 	
 	/**
-	 * A close() just puts this instance in a cache
+	 * A close() just puts this instance in the VistaSessionPool
 	 * It may be picked up again if the same user makes another request, or
 	 * it will time out and really disconnect if they do not.
 	 * This is the method that should be called after a completing a client
@@ -470,7 +606,7 @@ public class VistaSession
 			disconnect(true);
 		}
 		else
-			VistaSessionCache.getSingleton().put(this);
+			VistaSessionPool.getSingleton().put(this);
 	}
 	
 	/**
@@ -702,6 +838,8 @@ public class VistaSession
 	
 	/**
 	 * Call an RPC on the Vista instance to which we are connected.
+	 * The result of an RPC that is configured to be cached is returned from the 
+	 * VistaRpcResultCache if it is there.
 	 * 
 	 * @throws IOException 
 	 * @throws InvalidVistaCredentialsException 
@@ -711,11 +849,21 @@ public class VistaSession
 	public synchronized String call(VistaQuery vistaQuery) 
 	throws IOException, InvalidVistaCredentialsException, VistaMethodException
 	{
+		VistaRpcResultCache rpcResultCache = VistaRpcResultCache.getVistaRpcResultCache();
+		String result = rpcResultCache.get(getURL(), getSecurityContext(), vistaQuery);
+		if(result != null)
+		{
+			logger.debug("RPC [" + vistaQuery.getRpcName() + "] result from cache.");
+			this.lastUsedTime = System.currentTimeMillis();
+			return result;
+		}
+		
 		displayVistaQuery(vistaQuery);
-		String result = getVistaConnection().call(vistaQuery);
+		result = getVistaConnection().call(vistaQuery);
 		displayVistaQueryResult(vistaQuery, result);
 		this.lastUsedTime = System.currentTimeMillis();
 		this.lastInternalTime = System.currentTimeMillis();
+		rpcResultCache.put(getURL(), getSecurityContext(), vistaQuery, result);
 		return result;
 	}
 	
@@ -825,15 +973,22 @@ public class VistaSession
 	
 	void disconnect(boolean disconnectImmediately)
 	{
-		// if a session was created on the VistA database for the user, close the session
-		if(isSessionCreated() && !disconnectImmediately)
+		try
 		{
-			magLogoff();
+			// if a session was created on the VistA database for the user, close the session
+			if(isSessionCreated() && !disconnectImmediately)
+			{
+				magLogoff();
+			}
+			if(disconnectImmediately)
+				getVistaConnection().disconnectImmediately();
+			else
+				getVistaConnection().disconnect();
+		}
+		finally
+		{
+			VistaSessionPool.getSingleton().sessionDisconnected(this);
 		}
-		if(disconnectImmediately)
-			getVistaConnection().disconnectImmediately();
-		else
-			getVistaConnection().disconnect();
 	}
 	
 	/**
@@ -0,0 +1,117 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.vistadatasource.session;
+
+import gov.va.med.imaging.transactioncontext.TransactionContext;
+import gov.va.med.imaging.transactioncontext.TransactionContextFactory;
+
+import java.net.URL;
+
+/**
+ * The key of the VistaSessionPool that determines whether a session can be re-used 
+ * for a subsequent call.  To be re-used a session must have the same URL, the same 
+ * security context and version, and must have been logged in by the same user.
+ * 
+ * The URL is compared by its external form, URL.equals() and URL.hashCode() 
+ * resolve the host name.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+final class VistaSessionContext
+{
+	/**
+	 * Create a VistaSessionContext for the given URL and the security context
+	 * of the current TransactionContext.
+	 * 
+	 * @param url
+	 * @param securityContext
+	 * @param version
+	 * @return
+	 */
+	static VistaSessionContext create(URL url, String securityContext, String version)
+	{
+		TransactionContext transactionContext = TransactionContextFactory.get();
+		return new VistaSessionContext(url, transactionContext.getSecurityHashCode(), securityContext, version);
+	}
+	
+	private final String url;
+	private final String securityHashCode;
+	private final String securityContext;
+	private final String version;
+	
+	VistaSessionContext(URL url, String securityHashCode, String securityContext, String version)
+	{
+		this.url = url == null ? null : url.toExternalForm();
+		this.securityHashCode = securityHashCode;
+		this.securityContext = securityContext;
+		this.version = version;
+	}
+
+	/**
+	 * @return the external form of the URL, which identifies the site in the pool
+	 */
+	String getUrl()
+	{
+		return url;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		final int PRIME = 31;
+		int result = 1;
+		result = PRIME * result + ((securityHashCode == null) ? 0 : securityHashCode.hashCode());
+		result = PRIME * result + ((url == null) ? 0 : url.hashCode());
+		result = PRIME * result + ((securityContext == null) ? 0 : securityContext.hashCode());
+		result = PRIME * result + ((version == null) ? 0 : version.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		final VistaSessionContext other = (VistaSessionContext) obj;
+		return equals(securityHashCode, other.securityHashCode) 
+			&& equals(url, other.url) 
+			&& equals(securityContext, other.securityContext) 
+			&& equals(version, other.version);
+	}
+	
+	private static boolean equals(String a, String b)
+	{
+		return a == null ? b == null : a.equals(b);
+	}
+
+	@Override
+	public String toString()
+	{
+		return url + " [" + securityContext + ", " + version + "]";
+	}
+}
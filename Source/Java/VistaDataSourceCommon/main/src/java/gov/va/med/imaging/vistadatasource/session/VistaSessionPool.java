@@ -0,0 +1,522 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.vistadatasource.session;
+
+import gov.va.med.imaging.ImagingMBean;
+import gov.va.med.imaging.core.interfaces.exceptions.ConnectionException;
+import gov.va.med.imaging.exchange.business.Site;
+import gov.va.med.imaging.vistadatasource.session.configuration.VistaSessionConfiguration;
+
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A pool of VistaSession instances, one VistaSessionPoolSite per VistA URL.
+ * This class maintains the open VistaSession instances that may be re-used
+ * if the same user invokes multiple calls in a short time.
+ * There are some security implications in re-using sessions and this class closes
+ * loopholes that could be created.  In particular it is important that the content
+ * of the pool not be exposed outside of this class, only the statistics of each
+ * site are published to JMX.
+ * 
+ * Borrowing and returning a session never waits on the maintenance of the pool.  
+ * A maintenance sweep closes sessions that have been idle too long and keeps the 
+ * broker connection of the others alive, each session is removed from the pool 
+ * before it is closed or kept alive on a worker thread and returned afterward.
+ * The sweep also keeps pre-connected sessions ready for the local site, those 
+ * that local users have logged in to, so that a new session does not wait for 
+ * the broker connect.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+class VistaSessionPool
+{
+	private final static Logger logger = Logger.getLogger(VistaSessionPool.class);
+	private final static long MAINTENANCE_DELAY = 30000L;
+	private final static long MAINTENANCE_PERIOD = 10000L;
+	private final static int MAINTENANCE_WORKER_COUNT = 4;
+	
+	private static VistaSessionPool singleton;
+	
+	/**
+	 * 
+	 * @return
+	 */
+	static synchronized VistaSessionPool getSingleton()
+	{
+		if(singleton == null)
+			singleton = new VistaSessionPool();
+		return singleton;
+	}
+	
+	private final ConcurrentMap<String, VistaSessionPoolSite> sites = 
+		new ConcurrentHashMap<String, VistaSessionPoolSite>();
+	private final ScheduledExecutorService maintenanceTimer;
+	private final ExecutorService maintenanceWorkers;
+	
+	private VistaSessionPool()
+	{
+		maintenanceTimer = new ScheduledThreadPoolExecutor(1, new PoolThreadFactory("VistaSessionPool"));
+		maintenanceWorkers = new ThreadPoolExecutor(MAINTENANCE_WORKER_COUNT, MAINTENANCE_WORKER_COUNT, 
+				60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), 
+				new PoolThreadFactory("VistaSessionPoolWorker"));
+		((ThreadPoolExecutor)maintenanceWorkers).allowCoreThreadTimeOut(true);
+		
+		// Sessions that get closed go into the pool and can get reclaimed
+		// by the same user for another request
+		maintenanceTimer.scheduleAtFixedRate(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					maintain();
+				}
+				catch(RuntimeException rX)
+				{
+					logger.error("Error maintaining VistaSessionPool, " + rX.getMessage(), rX);
+				}
+			}
+		}, MAINTENANCE_DELAY, MAINTENANCE_PERIOD, TimeUnit.MILLISECONDS);
+	}
+	
+	private VistaSessionConfiguration getVistaSessionConfiguration()
+	{
+		return VistaSessionConfiguration.getConfiguration();
+	}
+	
+	private boolean isBrokerKeepAliveEnabled()
+	{
+		VistaSessionConfiguration configuration = getVistaSessionConfiguration();
+		return configuration != null && configuration.isBrokerKeepAliveEnabled();
+	}
+	
+	/**
+	 * Get the pool of the site at the given URL, creating and registering it 
+	 * with JMX if this is the first session to the site.
+	 * 
+	 * @param url
+	 * @return
+	 */
+	private VistaSessionPoolSite getSite(URL url)
+	{
+		String key = url.toExternalForm();
+		VistaSessionPoolSite site = sites.get(key);
+		if(site == null)
+		{
+			VistaSessionConfiguration configuration = getVistaSessionConfiguration();
+			VistaSessionPoolSite newSite = configuration == null ? 
+				new VistaSessionPoolSite(key, 0, 0) :
+				new VistaSessionPoolSite(key, 
+					configuration.getSessionPoolMaxTotalPerSite(), 
+					configuration.getSessionPoolMinIdlePerSite());
+			site = sites.putIfAbsent(key, newSite);
+			if(site == null)
+			{
+				site = newSite;
+				registerSite(site);
+			}
+		}
+		return site;
+	}
+	
+	private void registerSite(VistaSessionPoolSite site)
+	{
+		try
+		{
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			Hashtable<String, String> mBeanProperties = new Hashtable<String, String>();
+			mBeanProperties.put( "type", "VistaSessionPool" );
+			mBeanProperties.put( "name", ObjectName.quote(site.getUrl()) );
+			mBeanServer.registerMBean(site, new ObjectName(ImagingMBean.VIX_MBEAN_DOMAIN_NAME, mBeanProperties));
+		}
+		catch(Exception ex)
+		{
+			logger.error("Error registering VistaSessionPool site '" + site.getUrl() + "' with JMX", ex);
+		}
+	}
+	
+	// ==============================================================================
+	// Session lifecycle, called from VistaSession
+	// ==============================================================================
+	
+	/**
+	 * Get a VistaSession connected to the given URL and operating in the SecurityContext
+	 * of the current caller.  Remove the VistaSession from the pool.
+	 * 
+	 * @param url
+	 * @param securityContext
+	 * @param version
+	 * @return a logged in session or null if there is no idle session for the caller
+	 */
+	VistaSession borrow(URL url, String securityContext, String version)
+	{
+		if(url == null)
+			return null;
+		VistaSessionPoolSite site = getSite(url);
+		VistaSessionContext context = VistaSessionContext.create(url, securityContext, version);
+		
+		for(VistaSession vistaSession = site.pollIdle(context); vistaSession != null; vistaSession = site.pollIdle(context))
+		{
+			logger.info("Removing VistaSession (" + vistaSession.getSessionIndex() + ") from VistaSessionPool for use.");
+			if(isBrokerKeepAliveEnabled() && (vistaSession.getSiteBrokerConnectionTimeout() > 0))
+			{
+				// check to be sure the session is still good before returning it from the pool
+				if(!vistaSession.isUserFullySignedOn())
+				{
+					logger.warn("Error checking if user fully signed on, disconnecting session rather than using it");
+					disconnect(vistaSession, false);
+					continue;
+				}
+			}
+			site.borrowed(true);
+			return vistaSession;
+		}
+		site.borrowed(false);
+		return null;
+	}
+	
+	/**
+	 * Get a pre-connected VistaSession for the given URL and adopt it for the security 
+	 * context and version.  The session is connected but must still be logged in.
+	 * 
+	 * @param url
+	 * @param securityContext
+	 * @param version
+	 * @return a connected session or null if there are no pre-connected sessions for the site
+	 */
+	VistaSession borrowPreconnected(URL url, String securityContext, String version)
+	{
+		if(url == null)
+			return null;
+		VistaSessionPoolSite site = getSite(url);
+		for(VistaSession vistaSession = site.pollPreconnected(); vistaSession != null; vistaSession = site.pollPreconnected())
+		{
+			if(!vistaSession.isConnected())
+			{
+				disconnect(vistaSession, true);
+				continue;
+			}
+			logger.info("Using pre-connected VistaSession (" + vistaSession.getSessionIndex() + ") from VistaSessionPool.");
+			site.preconnectedUsed();
+			vistaSession.adopt(securityContext, version);
+			return vistaSession;
+		}
+		return null;
+	}
+	
+	/**
+	 * Acquire a permit for a new session, waiting for the configured maximum wait
+	 * if the site has reached its maximum number of sessions.
+	 * 
+	 * @param vistaSession
+	 * @throws ConnectionException if the site did not drop below its maximum in time
+	 */
+	void acquirePermit(VistaSession vistaSession)
+	throws ConnectionException
+	{
+		VistaSessionConfiguration configuration = getVistaSessionConfiguration();
+		long maximumWait = configuration == null ? 0L : configuration.getSessionPoolMaxWait();
+		VistaSessionPoolSite site = getSite(vistaSession.getURL());
+		if(!site.acquire(maximumWait))
+			throw new ConnectionException("Site '" + site.getUrl() + "' has " + site.getOpenSessionCount() + 
+				" open VistA sessions, the maximum is " + site.getMaximumTotal() + 
+				", none were closed within " + maximumWait + " ms.");
+		if(!vistaSession.acquirePoolPermit())
+			site.release();
+	}
+	
+	/**
+	 * Acquire a permit for a session without waiting.
+	 * 
+	 * @param vistaSession
+	 * @return true if the session holds a permit
+	 */
+	boolean tryAcquirePermit(VistaSession vistaSession)
+	{
+		if(vistaSession.hasPoolPermit())
+			return true;
+		VistaSessionPoolSite site = getSite(vistaSession.getURL());
+		if(!site.acquire(0L))
+			return false;
+		if(!vistaSession.acquirePoolPermit())
+			site.release();
+		return true;
+	}
+	
+	/**
+	 * Record the time taken to connect a new session to the broker.
+	 */
+	void connected(URL url, long connectMillis)
+	{
+		getSite(url).connected(connectMillis);
+	}
+	
+	void connectFailed(URL url)
+	{
+		getSite(url).connectFailed();
+	}
+	
+	/**
+	 * Called by VistaSession.disconnect() to release the permit held by the session.
+	 */
+	void sessionDisconnected(VistaSession vistaSession)
+	{
+		if(vistaSession.releasePoolPermit())
+			getSite(vistaSession.getURL()).release();
+	}
+
+	/**
+	 * Put a VistaSession into the pool.  A session that was created outside of the
+	 * pool is disconnected if the site is at its maximum.
+	 * 
+	 * @param vistaSession
+	 */
+	void put(VistaSession vistaSession)
+	{
+		if(vistaSession == null)
+			return;
+		VistaSessionPoolSite site = getSite(vistaSession.getURL());
+		// a session created outside of the pool, e.g. by authenticateUser(), does not hold a permit yet
+		if(!tryAcquirePermit(vistaSession))
+		{
+			logger.info("Site '" + site.getUrl() + "' is at its maximum number of sessions, disconnecting VistaSession (" + 
+					vistaSession.getSessionIndex() + ") rather than putting it into the pool.");
+			disconnect(vistaSession, false);
+			return;
+		}
+		if(vistaSession.isLocalLogin())
+			site.enablePrewarm(vistaSession.getURL(), vistaSession.getSite());
+		
+		VistaSessionContext context = VistaSessionContext.create(vistaSession.getURL(), 
+				vistaSession.getSecurityContext(), vistaSession.getVersion());
+		site.offerIdle(context, vistaSession);
+		
+		logger.info("Added VistaSession (" + vistaSession.getSessionIndex() + ") to VistaSessionPool.");
+	}
+	
+	/**
+	 * Clear the open, unused VistaSession instances in the pool.
+	 */
+	void clear()
+	{
+		Collection<VistaSession> drain = new ArrayList<VistaSession>();
+		for(VistaSessionPoolSite site : sites.values())
+			site.drainIdle(drain);
+		for(VistaSession vistaSession : drain)
+			disconnectAsynchronously(vistaSession, false);
+	}
+	
+	// ==============================================================================
+	// Maintenance
+	// ==============================================================================
+	
+	private void maintain()
+	{
+		VistaSessionConfiguration configuration = getVistaSessionConfiguration();
+		if(configuration == null)
+			return;
+		maintain(configuration, System.currentTimeMillis());
+	}
+	
+	/**
+	 * Sweep the pool as of the given time, package visible for testing.
+	 * 
+	 * @param configuration
+	 * @param now
+	 */
+	void maintain(VistaSessionConfiguration configuration, long now)
+	{
+		for(VistaSessionPoolSite site : sites.values())
+		{
+			for(Map.Entry<VistaSessionContext, LinkedBlockingDeque<VistaSession>> entry : site.getIdleSessions().entrySet())
+				for(VistaSession vistaSession : entry.getValue())
+					maintainIdle(configuration, now, site, entry.getKey(), vistaSession);
+			site.removeEmptyContexts();
+			
+			maintainPreconnected(configuration, now, site);
+		}
+	}
+	
+	private void maintainIdle(VistaSessionConfiguration configuration, long now, 
+		final VistaSessionPoolSite site, final VistaSessionContext context, final VistaSession vistaSession)
+	{
+		// Close the sessions that have been open too long.
+		// NOTE: this is the normal way that things get closed, they get added
+		// to the pool when a call() is complete and then just time out.
+		long maximumIdleTime = configuration.getSessionMaxIdleTime();
+		int brokerTimeoutTime = vistaSession.getSiteBrokerConnectionTimeout();
+		if(vistaSession.getLastUsedTime() < now - maximumIdleTime)
+		{
+			// if the session was borrowed in the meantime then it is no longer idle
+			if(site.removeIdle(context, vistaSession))
+			{
+				logger.info("VistaSession instance '" + vistaSession.getSessionIndex() +  
+					"' has been connected and unused for " + ((now - vistaSession.getLastUsedTime()) / 1000) + 
+					" seconds, max connection time is " + (maximumIdleTime / 1000) + 
+					" seconds.  The session, and its associated connection, are being closed.");
+				site.idleClosed();
+				disconnectAsynchronously(vistaSession, false);
+			}
+		}
+		// if brokerTimeoutTime = 0 then didn't get real timeout value from VistA, cannot use it
+		else if(configuration.isBrokerKeepAliveEnabled() && (brokerTimeoutTime > 0) 
+			&& (vistaSession.getLastInternalTime() < now - (brokerTimeoutTime * 1000L)))
+		{
+			// the session is out of the pool while the keep alive runs, borrowers will not wait on it
+			if(site.removeIdle(context, vistaSession))
+			{
+				logger.info("VistaSession (" + vistaSession.getSessionIndex() + ")"
+					+ " instance has been idle for " + ((now - vistaSession.getLastInternalTime()) / 1000) 
+					+ " seconds, beyond broker keep alive time of " + brokerTimeoutTime + " seconds, refreshing connection");
+				maintenanceWorkers.execute(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						// the broker can still be open but a keep alive must be done to keep the connection active
+						boolean alive = vistaSession.keepAlive();
+						site.keptAlive(alive);
+						if(alive)
+							site.offerIdle(context, vistaSession);
+						else
+						{
+							// there was an error during the keep alive, the broker is now in an unstable state
+							logger.warn("There was an error keeping the broker connection alive, disconnecting NOW.");
+							disconnect(vistaSession, false);
+						}
+					}
+				});
+			}
+		}
+	}
+	
+	private void maintainPreconnected(VistaSessionConfiguration configuration, long now, final VistaSessionPoolSite site)
+	{
+		long maximumAge = configuration.getPreconnectedSessionMaxAge();
+		for(VistaSession vistaSession : site.getPreconnectedSessions())
+		{
+			if((vistaSession.getConnectTime() < now - maximumAge || !vistaSession.isConnected())
+				&& site.removePreconnected(vistaSession))
+			{
+				logger.debug("Replacing pre-connected VistaSession (" + vistaSession.getSessionIndex() + ").");
+				disconnectAsynchronously(vistaSession, true);
+			}
+		}
+		
+		final Site prewarmSite = site.getPrewarmSite();
+		final URL prewarmUrl = site.getPrewarmUrl();
+		if(prewarmSite == null)
+			return;
+		while(site.reservePreconnect())
+		{
+			maintenanceWorkers.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						VistaSession vistaSession = VistaSession.connectPreconnected(prewarmUrl, prewarmSite);
+						if(vistaSession != null)
+							site.offerPreconnected(vistaSession);
+					}
+					catch(Exception x)
+					{
+						logger.warn("Unable to pre-connect a VistaSession to '" + site.getUrl() + "', " + x.getMessage());
+					}
+					finally
+					{
+						site.preconnectComplete();
+					}
+				}
+			});
+		}
+	}
+	
+	private void disconnectAsynchronously(final VistaSession vistaSession, final boolean disconnectImmediately)
+	{
+		maintenanceWorkers.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				disconnect(vistaSession, disconnectImmediately);
+			}
+		});
+	}
+	
+	private static void disconnect(VistaSession vistaSession, boolean disconnectImmediately)
+	{
+		// even if the disconnect fails, the session has been dropped from the pool
+		try{vistaSession.disconnect(disconnectImmediately);}
+		catch(Exception x){logger.warn(x.getMessage());}
+	}
+	
+	/**
+	 * Creates the daemon threads of the pool, so that the pool does not keep the VM alive.
+	 */
+	private static class PoolThreadFactory
+	implements ThreadFactory
+	{
+		private final String name;
+		private final AtomicInteger threadCount = new AtomicInteger(0);
+		
+		PoolThreadFactory(String name)
+		{
+			this.name = name;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable)
+		{
+			Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,545 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.vistadatasource.session;
+
+import gov.va.med.imaging.exchange.business.Site;
+
+import java.net.URL;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The sessions of one site (one VistA URL) in the VistaSessionPool.
+ * 
+ * Idle sessions are kept in a deque per VistaSessionContext so that borrowing and
+ * returning a session only contends with the other users of the same context.  The most recently returned session
+ * is borrowed first so that surplus sessions age out.  Pre-connected sessions are 
+ * connected to the broker but not logged in and may be adopted by any user.
+ * 
+ * The maximum total is enforced with a semaphore, a session holds a permit from
+ * the time it is created until it is disconnected.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class VistaSessionPoolSite
+implements VistaSessionPoolSiteMBean
+{
+	private final String url;
+	private final int maximumTotal;
+	private final int minimumIdle;
+	private final Semaphore permits;
+	
+	private final ConcurrentMap<VistaSessionContext, LinkedBlockingDeque<VistaSession>> idleSessions = 
+		new ConcurrentHashMap<VistaSessionContext, LinkedBlockingDeque<VistaSession>>();
+	private final LinkedBlockingDeque<VistaSession> preconnectedSessions = 
+		new LinkedBlockingDeque<VistaSession>();
+	
+	private volatile URL prewarmUrl = null;
+	private volatile Site prewarmSite = null;
+	private final AtomicInteger pendingPreconnects = new AtomicInteger(0);
+	
+	private final AtomicInteger openSessionCount = new AtomicInteger(0);
+	private final AtomicInteger idleSessionCount = new AtomicInteger(0);
+	private final AtomicInteger preconnectedSessionCount = new AtomicInteger(0);
+	
+	private final AtomicLong borrowCount = new AtomicLong(0L);
+	private final AtomicLong reuseCount = new AtomicLong(0L);
+	private final AtomicLong preconnectedUseCount = new AtomicLong(0L);
+	private final AtomicLong waitCount = new AtomicLong(0L);
+	private final AtomicLong waitTimeoutCount = new AtomicLong(0L);
+	private final AtomicLong totalWaitMillis = new AtomicLong(0L);
+	private final AtomicLong maximumWaitMillis = new AtomicLong(0L);
+	private final AtomicLong connectCount = new AtomicLong(0L);
+	private final AtomicLong connectFailureCount = new AtomicLong(0L);
+	private final AtomicLong totalConnectMillis = new AtomicLong(0L);
+	private final AtomicLong maximumConnectMillis = new AtomicLong(0L);
+	private final AtomicLong keepAliveCount = new AtomicLong(0L);
+	private final AtomicLong keepAliveFailureCount = new AtomicLong(0L);
+	private final AtomicLong idleCloseCount = new AtomicLong(0L);
+	
+	VistaSessionPoolSite(String url, int maximumTotal, int minimumIdle)
+	{
+		this.url = url;
+		this.maximumTotal = maximumTotal > 0 ? maximumTotal : 0;
+		this.minimumIdle = minimumIdle > 0 ? minimumIdle : 0;
+		this.permits = this.maximumTotal > 0 ? new Semaphore(this.maximumTotal, true) : null;
+	}
+
+	// ======================================================================================
+	// Permits
+	// ======================================================================================
+	
+	/**
+	 * Acquire a permit to open a session to this site, waiting up to maximumWait ms
+	 * if the site has reached its maximum total.
+	 * 
+	 * @param maximumWait
+	 * @return true if a permit was acquired
+	 */
+	boolean acquire(long maximumWait)
+	{
+		if(permits != null && !permits.tryAcquire())
+		{
+			if(maximumWait <= 0L)
+				return false;
+			
+			long start = System.currentTimeMillis();
+			boolean acquired = false;
+			try
+			{
+				acquired = permits.tryAcquire(maximumWait, TimeUnit.MILLISECONDS);
+			}
+			catch(InterruptedException iX)
+			{
+				Thread.currentThread().interrupt();
+			}
+			long waitMillis = System.currentTimeMillis() - start;
+			waitCount.incrementAndGet();
+			totalWaitMillis.addAndGet(waitMillis);
+			updateMaximum(maximumWaitMillis, waitMillis);
+			if(!acquired)
+			{
+				waitTimeoutCount.incrementAndGet();
+				return false;
+			}
+		}
+		openSessionCount.incrementAndGet();
+		return true;
+	}
+	
+	/**
+	 * Release a permit acquired by acquire().
+	 */
+	void release()
+	{
+		openSessionCount.decrementAndGet();
+		if(permits != null)
+			permits.release();
+	}
+	
+	// ======================================================================================
+	// Idle sessions
+	// ======================================================================================
+	
+	/**
+	 * Remove and return the most recently returned idle session for the context.
+	 * 
+	 * @param context
+	 * @return an idle session or null if there is none
+	 */
+	VistaSession pollIdle(VistaSessionContext context)
+	{
+		LinkedBlockingDeque<VistaSession> sessions = idleSessions.get(context);
+		VistaSession session = sessions == null ? null : sessions.pollFirst();
+		if(session != null)
+			idleSessionCount.decrementAndGet();
+		return session;
+	}
+	
+	/**
+	 * Add an idle session for the context.
+	 * The deque of a context may be removed by removeEmptyContexts() between getting it
+	 * and adding to it, in which case the session is taken back and added again.  
+	 * If it cannot be taken back then removeEmptyContexts() has already moved it.
+	 * 
+	 * @param context
+	 * @param session
+	 */
+	void offerIdle(VistaSessionContext context, VistaSession session)
+	{
+		while(true)
+		{
+			LinkedBlockingDeque<VistaSession> sessions = idleSessions.get(context);
+			if(sessions == null)
+			{
+				LinkedBlockingDeque<VistaSession> newSessions = new LinkedBlockingDeque<VistaSession>();
+				sessions = idleSessions.putIfAbsent(context, newSessions);
+				if(sessions == null)
+					sessions = newSessions;
+			}
+			idleSessionCount.incrementAndGet();
+			sessions.offerFirst(session);
+			if(idleSessions.get(context) == sessions || !sessions.removeFirstOccurrence(session))
+				return;
+			idleSessionCount.decrementAndGet();
+		}
+	}
+	
+	/**
+	 * Remove a specific idle session, used by the maintenance sweep to take a session 
+	 * out of the pool before closing it or keeping it alive.
+	 * 
+	 * @return true if the session was removed, false if it had already been borrowed
+	 */
+	boolean removeIdle(VistaSessionContext context, VistaSession session)
+	{
+		LinkedBlockingDeque<VistaSession> sessions = idleSessions.get(context);
+		if(sessions != null && sessions.removeFirstOccurrence(session))
+		{
+			idleSessionCount.decrementAndGet();
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * @return a live view of the idle sessions by context, iteration is weakly consistent
+	 */
+	Map<VistaSessionContext, LinkedBlockingDeque<VistaSession>> getIdleSessions()
+	{
+		return idleSessions;
+	}
+	
+	/**
+	 * Remove the deques of contexts that no longer have idle sessions, so that the
+	 * pool does not keep an entry for every user that ever connected.
+	 */
+	void removeEmptyContexts()
+	{
+		for(Iterator<Map.Entry<VistaSessionContext, LinkedBlockingDeque<VistaSession>>> iter = 
+			idleSessions.entrySet().iterator(); iter.hasNext(); )
+		{
+			Map.Entry<VistaSessionContext, LinkedBlockingDeque<VistaSession>> entry = iter.next();
+			LinkedBlockingDeque<VistaSession> sessions = entry.getValue();
+			if(sessions.isEmpty() && idleSessions.remove(entry.getKey(), sessions))
+			{
+				// a session offered concurrently is moved to a new deque
+				for(VistaSession session = sessions.pollFirst(); session != null; session = sessions.pollFirst())
+				{
+					idleSessionCount.decrementAndGet();
+					offerIdle(entry.getKey(), session);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Remove all of the idle sessions, used when the pool is cleared.
+	 */
+	void drainIdle(Collection<VistaSession> drain)
+	{
+		for(VistaSessionContext context : idleSessions.keySet())
+			for(VistaSession session = pollIdle(context); session != null; session = pollIdle(context))
+				drain.add(session);
+		for(VistaSession session = pollPreconnected(); session != null; session = pollPreconnected())
+			drain.add(session);
+	}
+	
+	// ======================================================================================
+	// Pre-connected sessions
+	// ======================================================================================
+	
+	VistaSession pollPreconnected()
+	{
+		VistaSession session = preconnectedSessions.pollFirst();
+		if(session != null)
+			preconnectedSessionCount.decrementAndGet();
+		return session;
+	}
+	
+	void offerPreconnected(VistaSession session)
+	{
+		preconnectedSessionCount.incrementAndGet();
+		preconnectedSessions.offerLast(session);
+	}
+	
+	boolean removePreconnected(VistaSession session)
+	{
+		if(preconnectedSessions.removeFirstOccurrence(session))
+		{
+			preconnectedSessionCount.decrementAndGet();
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * @return a live view of the pre-connected sessions, oldest first
+	 */
+	Iterable<VistaSession> getPreconnectedSessions()
+	{
+		return preconnectedSessions;
+	}
+	
+	/**
+	 * Start keeping pre-connected sessions for this site, called when a user
+	 * has logged in locally to the site.
+	 * 
+	 * @param url
+	 * @param site
+	 */
+	void enablePrewarm(URL url, Site site)
+	{
+		if(prewarmSite == null && url != null && site != null && minimumIdle > 0)
+		{
+			prewarmUrl = url;
+			prewarmSite = site;
+		}
+	}
+	
+	URL getPrewarmUrl()
+	{
+		return prewarmUrl;
+	}
+	
+	Site getPrewarmSite()
+	{
+		return prewarmSite;
+	}
+	
+	/**
+	 * Reserve a pre-connect, so that the maintenance sweep does not start more 
+	 * pre-connects than are needed while earlier ones are still connecting.
+	 * 
+	 * @return true if another pre-connected session is needed
+	 */
+	boolean reservePreconnect()
+	{
+		while(true)
+		{
+			int pending = pendingPreconnects.get();
+			if(preconnectedSessionCount.get() + pending >= minimumIdle)
+				return false;
+			if(pendingPreconnects.compareAndSet(pending, pending + 1))
+				return true;
+		}
+	}
+	
+	void preconnectComplete()
+	{
+		pendingPreconnects.decrementAndGet();
+	}
+	
+	// ======================================================================================
+	// Statistics
+	// ======================================================================================
+	
+	void borrowed(boolean reused)
+	{
+		borrowCount.incrementAndGet();
+		if(reused)
+			reuseCount.incrementAndGet();
+	}
+	
+	void preconnectedUsed()
+	{
+		preconnectedUseCount.incrementAndGet();
+	}
+	
+	void connected(long connectMillis)
+	{
+		connectCount.incrementAndGet();
+		totalConnectMillis.addAndGet(connectMillis);
+		updateMaximum(maximumConnectMillis, connectMillis);
+	}
+	
+	void connectFailed()
+	{
+		connectFailureCount.incrementAndGet();
+	}
+	
+	void keptAlive(boolean success)
+	{
+		keepAliveCount.incrementAndGet();
+		if(!success)
+			keepAliveFailureCount.incrementAndGet();
+	}
+	
+	void idleClosed()
+	{
+		idleCloseCount.incrementAndGet();
+	}
+	
+	private static void updateMaximum(AtomicLong maximum, long value)
+	{
+		for(long current = maximum.get(); value > current; current = maximum.get())
+			if(maximum.compareAndSet(current, value))
+				return;
+	}
+	
+	private static long average(AtomicLong total, AtomicLong count)
+	{
+		long n = count.get();
+		return n == 0L ? 0L : total.get() / n;
+	}
+
+	// ======================================================================================
+	// VistaSessionPoolSiteMBean
+	// ======================================================================================
+	
+	@Override
+	public String getUrl()
+	{
+		return url;
+	}
+
+	@Override
+	public boolean isPrewarmed()
+	{
+		return prewarmSite != null;
+	}
+
+	@Override
+	public int getOpenSessionCount()
+	{
+		return openSessionCount.get();
+	}
+
+	@Override
+	public int getIdleSessionCount()
+	{
+		return idleSessionCount.get();
+	}
+
+	@Override
+	public int getPreconnectedSessionCount()
+	{
+		return preconnectedSessionCount.get();
+	}
+
+	@Override
+	public int getMaximumTotal()
+	{
+		return maximumTotal;
+	}
+
+	@Override
+	public int getMinimumIdle()
+	{
+		return minimumIdle;
+	}
+
+	@Override
+	public long getBorrowCount()
+	{
+		return borrowCount.get();
+	}
+
+	@Override
+	public long getReuseCount()
+	{
+		return reuseCount.get();
+	}
+
+	@Override
+	public long getPreconnectedUseCount()
+	{
+		return preconnectedUseCount.get();
+	}
+
+	@Override
+	public long getWaitCount()
+	{
+		return waitCount.get();
+	}
+
+	@Override
+	public long getWaitTimeoutCount()
+	{
+		return waitTimeoutCount.get();
+	}
+
+	@Override
+	public long getAverageWaitMillis()
+	{
+		return average(totalWaitMillis, waitCount);
+	}
+
+	@Override
+	public long getMaximumWaitMillis()
+	{
+		return maximumWaitMillis.get();
+	}
+
+	@Override
+	public long getConnectCount()
+	{
+		return connectCount.get();
+	}
+
+	@Override
+	public long getConnectFailureCount()
+	{
+		return connectFailureCount.get();
+	}
+
+	@Override
+	public long getAverageConnectMillis()
+	{
+		return average(totalConnectMillis, connectCount);
+	}
+
+	@Override
+	public long getMaximumConnectMillis()
+	{
+		return maximumConnectMillis.get();
+	}
+
+	@Override
+	public long getKeepAliveCount()
+	{
+		return keepAliveCount.get();
+	}
+
+	@Override
+	public long getKeepAliveFailureCount()
+	{
+		return keepAliveFailureCount.get();
+	}
+
+	@Override
+	public long getIdleCloseCount()
+	{
+		return idleCloseCount.get();
+	}
+
+	@Override
+	public void resetStatistics()
+	{
+		borrowCount.set(0L);
+		reuseCount.set(0L);
+		preconnectedUseCount.set(0L);
+		waitCount.set(0L);
+		waitTimeoutCount.set(0L);
+		totalWaitMillis.set(0L);
+		maximumWaitMillis.set(0L);
+		connectCount.set(0L);
+		connectFailureCount.set(0L);
+		totalConnectMillis.set(0L);
+		maximumConnectMillis.set(0L);
+		keepAliveCount.set(0L);
+		keepAliveFailureCount.set(0L);
+		idleCloseCount.set(0L);
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.vistadatasource.session;
+
+/**
+ * JMX view of the sessions of one site in the VistaSessionPool.
+ * Open sessions are those counted against the maximum total, whether idle, pre-connected
+ * or in use.  Wait times are those of callers waiting for the site to drop below its 
+ * maximum total, connect times are those of new connections including the login.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public interface VistaSessionPoolSiteMBean
+{
+	public String getUrl();
+	
+	public boolean isPrewarmed();
+	
+	public int getOpenSessionCount();
+	public int getIdleSessionCount();
+	public int getPreconnectedSessionCount();
+	public int getMaximumTotal();
+	public int getMinimumIdle();
+	
+	public long getBorrowCount();
+	public long getReuseCount();
+	public long getPreconnectedUseCount();
+	
+	public long getWaitCount();
+	public long getWaitTimeoutCount();
+	public long getAverageWaitMillis();
+	public long getMaximumWaitMillis();
+	
+	public long getConnectCount();
+	public long getConnectFailureCount();
+	public long getAverageConnectMillis();
+	public long getMaximumConnectMillis();
+	
+	public long getKeepAliveCount();
+	public long getKeepAliveFailureCount();
+	public long getIdleCloseCount();
+	
+	public void resetStatistics();
+}
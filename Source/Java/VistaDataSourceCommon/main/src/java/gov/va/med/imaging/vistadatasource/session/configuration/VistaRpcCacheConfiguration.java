@@ -0,0 +1,133 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.vistadatasource.session.configuration;
+
+import java.io.Serializable;
+
+/**
+ * Contains the configuration of the result cache for one RPC.  Results are cached
+ * per site and security context, and also per user when the RPC is user scoped.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class VistaRpcCacheConfiguration
+implements Serializable
+{
+	private static final long serialVersionUID = -3268105731842570214L;
+	
+	private String rpcName;
+	private long timeToLive;
+	private int maximumEntries;
+	private boolean userScoped;
+	
+	public VistaRpcCacheConfiguration()
+	{
+		super();
+	}
+	
+	public VistaRpcCacheConfiguration(String rpcName, long timeToLive, 
+			int maximumEntries, boolean userScoped)
+	{
+		super();
+		this.rpcName = rpcName;
+		this.timeToLive = timeToLive;
+		this.maximumEntries = maximumEntries;
+		this.userScoped = userScoped;
+	}
+
+	/**
+	 * Returns the name of the RPC whose results are cached
+	 * 
+	 * @return the rpcName
+	 */
+	public String getRpcName()
+	{
+		return rpcName;
+	}
+
+	/**
+	 * @param rpcName the rpcName to set
+	 */
+	public void setRpcName(String rpcName)
+	{
+		this.rpcName = rpcName;
+	}
+
+	/**
+	 * Returns the time in ms a result is kept
+	 * 
+	 * @return the timeToLive
+	 */
+	public long getTimeToLive()
+	{
+		return timeToLive;
+	}
+
+	/**
+	 * @param timeToLive the timeToLive to set
+	 */
+	public void setTimeToLive(long timeToLive)
+	{
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * Returns the maximum number of results kept, results are not cached while the cache is full
+	 * 
+	 * @return the maximumEntries
+	 */
+	public int getMaximumEntries()
+	{
+		return maximumEntries;
+	}
+
+	/**
+	 * @param maximumEntries the maximumEntries to set
+	 */
+	public void setMaximumEntries(int maximumEntries)
+	{
+		this.maximumEntries = maximumEntries;
+	}
+
+	/**
+	 * Returns true if the result depends on the user and must only be returned to the same user, 
+	 * false if the result is the same for all users of the site
+	 * 
+	 * @return the userScoped
+	 */
+	public boolean isUserScoped()
+	{
+		return userScoped;
+	}
+
+	/**
+	 * @param userScoped the userScoped to set
+	 */
+	public void setUserScoped(boolean userScoped)
+	{
+		this.userScoped = userScoped;
+	}
+}
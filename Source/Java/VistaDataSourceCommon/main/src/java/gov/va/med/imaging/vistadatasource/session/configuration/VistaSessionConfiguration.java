@@ -25,6 +25,9 @@
  */
 package gov.va.med.imaging.vistadatasource.session.configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import gov.va.med.imaging.facade.configuration.AbstractBaseFacadeConfiguration;
 import gov.va.med.imaging.facade.configuration.FacadeConfigurationFactory;
 import gov.va.med.imaging.facade.configuration.exceptions.CannotLoadConfigurationException;
@@ -43,8 +46,19 @@ extends AbstractBaseFacadeConfiguration
 	private boolean capriRemoteLoginEnabled;
 	private boolean bseRemoteLoginEnabled;
 	private boolean brokerKeepAliveEnabled;
+	private int sessionPoolMaxTotalPerSite;
+	private int sessionPoolMinIdlePerSite;
+	private long sessionPoolMaxWait;
+	private long preconnectedSessionMaxAge;
+	private List<VistaRpcCacheConfiguration> rpcCaches;
 	
 	private static final long DEFAULT_MAXIMUM_IDLE_TIME = 30000;
+	private static final int DEFAULT_POOL_MAXIMUM_TOTAL_PER_SITE = 0; // unlimited
+	private static final int DEFAULT_POOL_MINIMUM_IDLE_PER_SITE = 2;
+	private static final long DEFAULT_POOL_MAXIMUM_WAIT = 30000;
+	private static final long DEFAULT_PRECONNECTED_SESSION_MAXIMUM_AGE = 60000;
+	private static final long SITE_RPC_CACHE_TIME_TO_LIVE = 1000 * 60 * 30; // 30 minutes
+	private static final long USER_RPC_CACHE_TIME_TO_LIVE = 1000 * 60 * 5; // 5 minutes
 	
 	public VistaSessionConfiguration()
 	{
@@ -52,6 +66,29 @@ extends AbstractBaseFacadeConfiguration
 		capriRemoteLoginEnabled = true;
 		bseRemoteLoginEnabled = true;
 		brokerKeepAliveEnabled = false;
+		sessionPoolMaxTotalPerSite = DEFAULT_POOL_MAXIMUM_TOTAL_PER_SITE;
+		sessionPoolMinIdlePerSite = DEFAULT_POOL_MINIMUM_IDLE_PER_SITE;
+		sessionPoolMaxWait = DEFAULT_POOL_MAXIMUM_WAIT; // 30 seconds
+		preconnectedSessionMaxAge = DEFAULT_PRECONNECTED_SESSION_MAXIMUM_AGE; // 60 seconds
+		rpcCaches = createDefaultRpcCaches();
+	}
+	
+	/**
+	 * The RPCs whose results do not change during a session, these are the same
+	 * for all users of a site or for all sessions of a user.
+	 */
+	private static List<VistaRpcCacheConfiguration> createDefaultRpcCaches()
+	{
+		List<VistaRpcCacheConfiguration> rpcCaches = new ArrayList<VistaRpcCacheConfiguration>();
+		rpcCaches.add(new VistaRpcCacheConfiguration("MAG GET NETLOC", SITE_RPC_CACHE_TIME_TO_LIVE, 50, false));
+		rpcCaches.add(new VistaRpcCacheConfiguration("MAGG INSTALL", SITE_RPC_CACHE_TIME_TO_LIVE, 50, false));
+		rpcCaches.add(new VistaRpcCacheConfiguration("MAGG REASON LIST", SITE_RPC_CACHE_TIME_TO_LIVE, 200, false));
+		rpcCaches.add(new VistaRpcCacheConfiguration("MAGG GET TIMEOUT", SITE_RPC_CACHE_TIME_TO_LIVE, 200, false));
+		rpcCaches.add(new VistaRpcCacheConfiguration("MAGGUSER2", USER_RPC_CACHE_TIME_TO_LIVE, 1000, true));
+		rpcCaches.add(new VistaRpcCacheConfiguration("MAGGUSERKEYS", USER_RPC_CACHE_TIME_TO_LIVE, 1000, true));
+		rpcCaches.add(new VistaRpcCacheConfiguration("XUS DIVISION GET", USER_RPC_CACHE_TIME_TO_LIVE, 1000, true));
+		rpcCaches.add(new VistaRpcCacheConfiguration("MAG ANNOT IMAGE ALLOW", USER_RPC_CACHE_TIME_TO_LIVE, 1000, true));
+		return rpcCaches;
 	}
 
 	/**
@@ -112,6 +149,99 @@ extends AbstractBaseFacadeConfiguration
 		this.brokerKeepAliveEnabled = brokerKeepAliveEnabled;
 	}
 
+	/**
+	 * The maximum number of sessions (idle, pre-connected and in use) that may be open
+	 * to one site at a time, 0 means there is no limit.
+	 * 
+	 * @return the sessionPoolMaxTotalPerSite
+	 */
+	public int getSessionPoolMaxTotalPerSite()
+	{
+		return sessionPoolMaxTotalPerSite;
+	}
+
+	/**
+	 * @param sessionPoolMaxTotalPerSite the sessionPoolMaxTotalPerSite to set
+	 */
+	public void setSessionPoolMaxTotalPerSite(int sessionPoolMaxTotalPerSite)
+	{
+		this.sessionPoolMaxTotalPerSite = sessionPoolMaxTotalPerSite;
+	}
+
+	/**
+	 * The number of connected but not logged in sessions kept ready for the local site.
+	 * 
+	 * @return the sessionPoolMinIdlePerSite
+	 */
+	public int getSessionPoolMinIdlePerSite()
+	{
+		return sessionPoolMinIdlePerSite;
+	}
+
+	/**
+	 * @param sessionPoolMinIdlePerSite the sessionPoolMinIdlePerSite to set
+	 */
+	public void setSessionPoolMinIdlePerSite(int sessionPoolMinIdlePerSite)
+	{
+		this.sessionPoolMinIdlePerSite = sessionPoolMinIdlePerSite;
+	}
+
+	/**
+	 * The time in ms to wait for a site that has reached its maximum total.
+	 * 
+	 * @return the sessionPoolMaxWait
+	 */
+	public long getSessionPoolMaxWait()
+	{
+		return sessionPoolMaxWait;
+	}
+
+	/**
+	 * @param sessionPoolMaxWait the sessionPoolMaxWait to set
+	 */
+	public void setSessionPoolMaxWait(long sessionPoolMaxWait)
+	{
+		this.sessionPoolMaxWait = sessionPoolMaxWait;
+	}
+
+	/**
+	 * The time in ms a connected but not logged in session is kept before it is replaced,
+	 * the broker drops connections that do not sign on.
+	 * 
+	 * @return the preconnectedSessionMaxAge
+	 */
+	public long getPreconnectedSessionMaxAge()
+	{
+		return preconnectedSessionMaxAge;
+	}
+
+	/**
+	 * @param preconnectedSessionMaxAge the preconnectedSessionMaxAge to set
+	 */
+	public void setPreconnectedSessionMaxAge(long preconnectedSessionMaxAge)
+	{
+		this.preconnectedSessionMaxAge = preconnectedSessionMaxAge;
+	}
+
+	/**
+	 * The RPCs whose results are cached by VistaSession.call(), an RPC that is not
+	 * in the list is always sent to VistA.
+	 * 
+	 * @return the rpcCaches
+	 */
+	public List<VistaRpcCacheConfiguration> getRpcCaches()
+	{
+		return rpcCaches;
+	}
+
+	/**
+	 * @param rpcCaches the rpcCaches to set
+	 */
+	public void setRpcCaches(List<VistaRpcCacheConfiguration> rpcCaches)
+	{
+		this.rpcCaches = rpcCaches;
+	}
+
 	/* (non-Javadoc)
 	 * @see gov.va.med.imaging.facade.configuration.AbstractBaseFacadeConfiguration#loadDefaultConfiguration()
 	 */
@@ -121,6 +251,11 @@ extends AbstractBaseFacadeConfiguration
 		this.sessionMaxIdleTime = DEFAULT_MAXIMUM_IDLE_TIME; // 30 seconds
 		this.capriRemoteLoginEnabled = true;
 		this.bseRemoteLoginEnabled = true;
+		this.sessionPoolMaxTotalPerSite = DEFAULT_POOL_MAXIMUM_TOTAL_PER_SITE;
+		this.sessionPoolMinIdlePerSite = DEFAULT_POOL_MINIMUM_IDLE_PER_SITE;
+		this.sessionPoolMaxWait = DEFAULT_POOL_MAXIMUM_WAIT;
+		this.preconnectedSessionMaxAge = DEFAULT_PRECONNECTED_SESSION_MAXIMUM_AGE;
+		this.rpcCaches = createDefaultRpcCaches();
 		return this;
 	}
 	
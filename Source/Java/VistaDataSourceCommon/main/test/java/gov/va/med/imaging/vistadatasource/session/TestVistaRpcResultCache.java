@@ -0,0 +1,136 @@
+package gov.va.med.imaging.vistadatasource.session;
+
+import gov.va.med.ProtocolHandlerUtility;
+import gov.va.med.imaging.url.vista.VistaQuery;
+import gov.va.med.imaging.vistadatasource.session.configuration.VistaRpcCacheConfiguration;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the keys, the uncached RPCs and the expiry of the VistaRpcResultCache.
+ * Each test caches its own RPC so that the caches do not share an MBean name.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TestVistaRpcResultCache 
+extends TestCase
+{
+	private final static String MAG_WINDOWS_CONTEXT = "MAG WINDOWS";
+	
+	private URL url;
+	
+	@Override
+	protected void setUp() 
+	throws Exception
+	{
+		super.setUp();
+		ProtocolHandlerUtility.initialize(true);
+		url = new URL("vista://localhost:9300");
+	}
+	
+	private VistaRpcResultCache createCache(String rpcName, long timeToLive)
+	{
+		List<VistaRpcCacheConfiguration> rpcCaches = new ArrayList<VistaRpcCacheConfiguration>();
+		rpcCaches.add(new VistaRpcCacheConfiguration(rpcName, timeToLive, 100, false));
+		return new VistaRpcResultCache(rpcCaches);
+	}
+	
+	private VistaQuery createQuery(String rpcName, String... literals)
+	{
+		VistaQuery vistaQuery = new VistaQuery(rpcName);
+		for(String literal : literals)
+			vistaQuery.addParameter(VistaQuery.LITERAL, literal);
+		return vistaQuery;
+	}
+	
+	public void testKeyIsRpcNameAndParameters()
+	throws Exception
+	{
+		VistaRpcResultCache cache = createCache("MAG GET NETLOC", 60000L);
+		cache.put(url, MAG_WINDOWS_CONTEXT, createQuery("MAG GET NETLOC", "ALL"), "netlocs");
+		
+		assertEquals("netlocs", cache.get(url, MAG_WINDOWS_CONTEXT, createQuery("MAG GET NETLOC", "ALL")));
+		assertNull(cache.get(url, MAG_WINDOWS_CONTEXT, createQuery("MAG GET NETLOC", "LOCAL")));
+		assertNull(cache.get(url, MAG_WINDOWS_CONTEXT, createQuery("MAG GET NETLOC")));
+		assertNull(cache.get(url, MAG_WINDOWS_CONTEXT, createQuery("MAG GET NETLOC", "ALL", "ALL")));
+		// the site and the security context are part of the key
+		assertNull(cache.get(new URL("vista://localhost:9301"), MAG_WINDOWS_CONTEXT, createQuery("MAG GET NETLOC", "ALL")));
+		assertNull(cache.get(url, "MAG DICOM VISA", createQuery("MAG GET NETLOC", "ALL")));
+	}
+	
+	public void testListParametersInAnyOrderAreEqual()
+	throws Exception
+	{
+		VistaRpcResultCache cache = createCache("MAGGUSER2", 60000L);
+		
+		Map<String, String> list = new LinkedHashMap<String, String>();
+		list.put("1", "A");
+		list.put("2", "B");
+		VistaQuery vistaQuery = new VistaQuery("MAGGUSER2");
+		vistaQuery.addParameter(VistaQuery.LIST, list);
+		cache.put(url, MAG_WINDOWS_CONTEXT, vistaQuery, "parameters");
+		
+		Map<String, String> reversed = new LinkedHashMap<String, String>();
+		reversed.put("2", "B");
+		reversed.put("1", "A");
+		vistaQuery = new VistaQuery("MAGGUSER2");
+		vistaQuery.addParameter(VistaQuery.LIST, reversed);
+		assertEquals("parameters", cache.get(url, MAG_WINDOWS_CONTEXT, vistaQuery));
+		
+		Map<String, String> other = new HashMap<String, String>();
+		other.put("1", "A");
+		other.put("2", "C");
+		vistaQuery = new VistaQuery("MAGGUSER2");
+		vistaQuery.addParameter(VistaQuery.LIST, other);
+		assertNull(cache.get(url, MAG_WINDOWS_CONTEXT, vistaQuery));
+	}
+	
+	public void testUncachedRpcIsNotCached()
+	throws Exception
+	{
+		VistaRpcResultCache cache = createCache("MAG4 VERSION CHECK", 60000L);
+		
+		// an RPC that is not configured, such as one that changes VistA, is always sent to VistA
+		cache.put(url, MAG_WINDOWS_CONTEXT, createQuery("MAG4 ADD IMAGE", "1"), "1^added");
+		assertNull(cache.get(url, MAG_WINDOWS_CONTEXT, createQuery("MAG4 ADD IMAGE", "1")));
+		
+		// nothing is cached when no RPCs are configured
+		cache = new VistaRpcResultCache(null);
+		cache.put(url, MAG_WINDOWS_CONTEXT, createQuery("MAG4 VERSION CHECK"), "3.0");
+		assertNull(cache.get(url, MAG_WINDOWS_CONTEXT, createQuery("MAG4 VERSION CHECK")));
+	}
+	
+	public void testResultExpires()
+	throws Exception
+	{
+		VistaRpcResultCache cache = createCache("MAGGACTION", 100L);
+		cache.put(url, MAG_WINDOWS_CONTEXT, createQuery("MAGGACTION", "x"), "result");
+		assertEquals("result", cache.get(url, MAG_WINDOWS_CONTEXT, createQuery("MAGGACTION", "x")));
+		
+		Thread.sleep(250L);
+		assertNull(cache.get(url, MAG_WINDOWS_CONTEXT, createQuery("MAGGACTION", "x")));
+		
+		// a new result is cached again
+		cache.put(url, MAG_WINDOWS_CONTEXT, createQuery("MAGGACTION", "x"), "new result");
+		assertEquals("new result", cache.get(url, MAG_WINDOWS_CONTEXT, createQuery("MAGGACTION", "x")));
+	}
+	
+	public void testInvalidate()
+	throws Exception
+	{
+		VistaRpcResultCache cache = createCache("MAG GET TIMEOUT", 60000L);
+		cache.put(url, MAG_WINDOWS_CONTEXT, createQuery("MAG GET TIMEOUT", "DISPLAY"), "300");
+		cache.invalidate(new URL("vista://localhost:9301"));
+		assertEquals("300", cache.get(url, MAG_WINDOWS_CONTEXT, createQuery("MAG GET TIMEOUT", "DISPLAY")));
+		cache.invalidate(url);
+		assertNull(cache.get(url, MAG_WINDOWS_CONTEXT, createQuery("MAG GET TIMEOUT", "DISPLAY")));
+	}
+}
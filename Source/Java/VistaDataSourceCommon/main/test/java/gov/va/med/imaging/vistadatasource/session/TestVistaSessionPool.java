@@ -0,0 +1,201 @@
+package gov.va.med.imaging.vistadatasource.session;
+
+import gov.va.med.ProtocolHandlerUtility;
+import gov.va.med.imaging.exchange.business.Site;
+import gov.va.med.imaging.exchange.business.SiteImpl;
+import gov.va.med.imaging.exchange.enums.ImagingSecurityContextType;
+import gov.va.med.imaging.tomcat.vistarealm.VistaRealmRoles;
+import gov.va.med.imaging.tomcat.vistarealm.VistaRealmPrincipal.AuthenticationCredentialsType;
+import gov.va.med.imaging.transactioncontext.ClientPrincipal;
+import gov.va.med.imaging.transactioncontext.TransactionContextFactory;
+import gov.va.med.imaging.vistadatasource.session.configuration.VistaSessionConfiguration;
+
+import java.lang.reflect.Constructor;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the VistaSessionPool and its sites with sessions that are never connected.
+ * Each test uses its own URL so that it has its own site in the pool.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TestVistaSessionPool 
+extends TestCase
+{
+	private final static String MAG_WINDOWS_CONTEXT = "MAG WINDOWS";
+	private static int port = 9400;
+	
+	private URL url;
+	private Site site;
+	
+	@Override
+	protected void setUp() 
+	throws Exception
+	{
+		super.setUp();
+		ProtocolHandlerUtility.initialize(true);
+		
+		List<String> roles = new ArrayList<String>();
+		roles.add(VistaRealmRoles.VistaUserRole.getRoleName());
+		ClientPrincipal principal = new ClientPrincipal(
+				"660", true, AuthenticationCredentialsType.Password, 
+				"boating1", "boating1.", 
+				"126", "IMAGPROVIDERONETWOSIX,ONETWOSIX", "843924956", "660", "Salt lake City", 
+				roles, 
+				new HashMap<String, Object>()
+		);
+		TransactionContextFactory.createClientTransactionContext(principal);
+		TransactionContextFactory.get().setImagingSecurityContextType(ImagingSecurityContextType.MAG_WINDOWS.toString());
+		
+		port++;
+		url = new URL("vista://localhost:" + port);
+		site = new SiteImpl("660", "Salt Lake City", "SLC", "localhost", port, "localhost", 8080, "");
+	}
+	
+	public void testCheckoutAndReturn()
+	throws Exception
+	{
+		VistaSessionPool pool = VistaSessionPool.getSingleton();
+		assertNull(pool.borrow(url, MAG_WINDOWS_CONTEXT, "3.0"));
+		
+		VistaSession session = createSession(MAG_WINDOWS_CONTEXT, "3.0");
+		pool.put(session);
+		assertSame(session, pool.borrow(url, MAG_WINDOWS_CONTEXT, "3.0"));
+		// a borrowed session is out of the pool
+		assertNull(pool.borrow(url, MAG_WINDOWS_CONTEXT, "3.0"));
+		
+		pool.put(session);
+		assertSame(session, pool.borrow(url, MAG_WINDOWS_CONTEXT, "3.0"));
+	}
+	
+	public void testMostRecentlyReturnedFirst()
+	{
+		VistaSessionPoolSite poolSite = new VistaSessionPoolSite(url.toExternalForm(), 0, 0);
+		VistaSessionContext context = new VistaSessionContext(url, "user1", MAG_WINDOWS_CONTEXT, "3.0");
+		VistaSession first = createSession(MAG_WINDOWS_CONTEXT, "3.0");
+		VistaSession second = createSession(MAG_WINDOWS_CONTEXT, "3.0");
+		poolSite.offerIdle(context, first);
+		poolSite.offerIdle(context, second);
+		assertEquals(2, poolSite.getIdleSessionCount());
+		
+		assertSame(second, poolSite.pollIdle(context));
+		assertSame(first, poolSite.pollIdle(context));
+		assertNull(poolSite.pollIdle(context));
+		assertEquals(0, poolSite.getIdleSessionCount());
+	}
+	
+	public void testContextIsolation()
+	throws Exception
+	{
+		VistaSessionPoolSite poolSite = new VistaSessionPoolSite(url.toExternalForm(), 0, 0);
+		VistaSessionContext user1 = new VistaSessionContext(url, "user1", MAG_WINDOWS_CONTEXT, "3.0");
+		VistaSessionContext user2 = new VistaSessionContext(url, "user2", MAG_WINDOWS_CONTEXT, "3.0");
+		VistaSessionContext otherVersion = new VistaSessionContext(url, "user1", MAG_WINDOWS_CONTEXT, "3.1");
+		VistaSession session = createSession(MAG_WINDOWS_CONTEXT, "3.0");
+		poolSite.offerIdle(user1, session);
+		
+		assertNull(poolSite.pollIdle(user2));
+		assertNull(poolSite.pollIdle(otherVersion));
+		assertSame(session, poolSite.pollIdle(new VistaSessionContext(url, "user1", MAG_WINDOWS_CONTEXT, "3.0")));
+		
+		// the empty deque of the context is removed
+		poolSite.removeEmptyContexts();
+		assertTrue(poolSite.getIdleSessions().isEmpty());
+		
+		// through the pool, a session is not borrowed with another security context or version
+		VistaSessionPool pool = VistaSessionPool.getSingleton();
+		pool.put(session);
+		assertNull(pool.borrow(url, "MAG DICOM", "3.0"));
+		assertNull(pool.borrow(url, MAG_WINDOWS_CONTEXT, "3.1"));
+		assertSame(session, pool.borrow(url, MAG_WINDOWS_CONTEXT, "3.0"));
+	}
+	
+	public void testIdleExpiry()
+	throws Exception
+	{
+		VistaSessionPool pool = VistaSessionPool.getSingleton();
+		VistaSessionConfiguration configuration = new VistaSessionConfiguration();
+		configuration.setSessionMaxIdleTime(1000L);
+		configuration.setBrokerKeepAliveEnabled(false);
+		
+		VistaSession session = createSession(MAG_WINDOWS_CONTEXT, "3.0");
+		session.setLastUsedTime();
+		pool.put(session);
+		
+		// not yet idle for the maximum time
+		pool.maintain(configuration, session.getLastUsedTime() + 500L);
+		assertSame(session, pool.borrow(url, MAG_WINDOWS_CONTEXT, "3.0"));
+		
+		pool.put(session);
+		pool.maintain(configuration, session.getLastUsedTime() + 2000L);
+		assertNull(pool.borrow(url, MAG_WINDOWS_CONTEXT, "3.0"));
+	}
+	
+	public void testPreconnect()
+	{
+		VistaSessionPoolSite poolSite = new VistaSessionPoolSite(url.toExternalForm(), 0, 2);
+		// no pre-connects until a user has logged in locally to the site
+		assertNull(poolSite.getPrewarmSite());
+		poolSite.enablePrewarm(url, site);
+		assertSame(site, poolSite.getPrewarmSite());
+		
+		// only the minimum idle number of pre-connects are started
+		assertTrue(poolSite.reservePreconnect());
+		assertTrue(poolSite.reservePreconnect());
+		assertFalse(poolSite.reservePreconnect());
+		
+		VistaSession first = createSession(null, null);
+		VistaSession second = createSession(null, null);
+		poolSite.offerPreconnected(first);
+		poolSite.preconnectComplete();
+		poolSite.offerPreconnected(second);
+		poolSite.preconnectComplete();
+		assertFalse(poolSite.reservePreconnect());
+		
+		// the oldest pre-connected session is used first
+		assertSame(first, poolSite.pollPreconnected());
+		assertTrue(poolSite.reservePreconnect());
+		assertFalse(poolSite.reservePreconnect());
+		assertTrue(poolSite.removePreconnected(second));
+		assertFalse(poolSite.removePreconnected(second));
+		assertNull(poolSite.pollPreconnected());
+	}
+	
+	public void testMaximumTotal()
+	{
+		VistaSessionPoolSite poolSite = new VistaSessionPoolSite(url.toExternalForm(), 2, 0);
+		assertTrue(poolSite.acquire(0L));
+		assertTrue(poolSite.acquire(0L));
+		assertFalse(poolSite.acquire(0L));
+		assertFalse(poolSite.acquire(10L));
+		assertEquals(2, poolSite.getOpenSessionCount());
+		
+		poolSite.release();
+		assertTrue(poolSite.acquire(0L));
+	}
+	
+	/**
+	 * Create a session that is not connected to the broker.
+	 */
+	private VistaSession createSession(String securityContext, String version)
+	{
+		try
+		{
+			Constructor<VistaSession> constructor = 
+				VistaSession.class.getDeclaredConstructor(URL.class, Site.class, String.class, String.class);
+			constructor.setAccessible(true);
+			return constructor.newInstance(url, site, securityContext, version);
+		}
+		catch(Exception x)
+		{
+			fail("Unable to create a VistaSession, " + x.getMessage());
+			return null;
+		}
+	}
+}
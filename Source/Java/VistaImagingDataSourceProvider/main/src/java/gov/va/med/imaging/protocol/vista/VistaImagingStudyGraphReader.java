@@ -0,0 +1,351 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.protocol.vista;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Reads a study graph, as returned from VistA Imaging, one line at a time and tells a
+ * StudyGraphHandler about each study, series and image as soon as its lines have been
+ * read.  Unlike the VistaImagingParser the graph is not split into lines and no tree
+ * of the whole response is built, the reader keeps one node for each level of the
+ * hierarchy and re-uses it for every study, series and image.
+ * 
+ * The graph is described in VistaImagingTranslator.createStudiesFromGraph().  A
+ * NEXT_STUDY, NEXT_SERIES or NEXT_IMAGE line starts a node, the lines that follow
+ * are properties of the node.  STUDY_MODALITY is a property of the study wherever
+ * it appears, VistA sends it after the images of the study.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+class VistaImagingStudyGraphReader
+{
+	private final static Logger logger = Logger.getLogger(VistaImagingStudyGraphReader.class);
+	
+	private final static char PART_DELIMITER = '|';
+	
+	final static String STUDY_NEXT = "NEXT_STUDY";
+	final static String SERIES_NEXT = "NEXT_SERIES";
+	final static String IMAGE_NEXT = "NEXT_IMAGE";
+	final static String STUDY_MODALITY = "STUDY_MODALITY";
+	
+	/**
+	 * Receives the nodes of a study graph in the order they appear.  The nodes are
+	 * re-used by the reader and are only valid during the call.
+	 */
+	interface StudyGraphHandler
+	{
+		/**
+		 * A study and the properties that preceded its first series.
+		 */
+		void study(StudyGraphNode study);
+		
+		/**
+		 * A STUDY_MODALITY property that followed the first series of the study.
+		 */
+		void studyModality(String modalities);
+		
+		/**
+		 * A series and the properties that preceded its first image.
+		 */
+		void series(StudyGraphNode series);
+		
+		void image(StudyGraphNode image);
+		
+		void seriesComplete();
+		
+		void studyComplete();
+	}
+	
+	private final StudyGraphNode studyNode = new StudyGraphNode();
+	private final StudyGraphNode seriesNode = new StudyGraphNode();
+	private final StudyGraphNode imageNode = new StudyGraphNode();
+	
+	private StudyGraphHandler handler;
+	private boolean studyOpen;
+	private boolean studyReported;
+	private boolean studyModalityFound;
+	private boolean seriesOpen;
+	private boolean seriesReported;
+	private boolean imageOpen;
+	// the node that properties are added to, null before the first study
+	private StudyGraphNode currentNode;
+	
+	/**
+	 * Read the study graph.  The first line of the response is the number of lines that follow.
+	 * 
+	 * @param vistaResponse
+	 * @param handler
+	 */
+	void read(CharSequence vistaResponse, StudyGraphHandler handler)
+	{
+		this.handler = handler;
+		studyOpen = studyReported = studyModalityFound = false;
+		seriesOpen = seriesReported = imageOpen = false;
+		currentNode = null;
+		
+		VistaResponseCursor cursor = new VistaResponseCursor(vistaResponse);
+		if(!cursor.nextLine())
+			return;
+		String studyCountLine = cursor.getLine();
+		
+		while(cursor.nextLine())
+		{
+			if(cursor.isBlankLine())
+				continue;
+			
+			if(cursor.isFieldEqual(0, PART_DELIMITER, STUDY_NEXT))
+			{
+				closeStudy();
+				studyNode.reset(cursor);
+				studyOpen = true;
+				studyReported = false;
+				studyModalityFound = false;
+				currentNode = studyNode;
+			}
+			else if(cursor.isFieldEqual(0, PART_DELIMITER, SERIES_NEXT))
+			{
+				if(!studyOpen)
+				{
+					logger.warn("There is no study to add series line '" + cursor.getLine() + "' to, discarding.");
+					continue;
+				}
+				closeSeries();
+				reportStudy();
+				seriesNode.reset(cursor);
+				seriesOpen = true;
+				seriesReported = false;
+				currentNode = seriesNode;
+			}
+			else if(cursor.isFieldEqual(0, PART_DELIMITER, IMAGE_NEXT))
+			{
+				if(!studyOpen)
+				{
+					logger.warn("There is no study to add image line '" + cursor.getLine() + "' to, discarding.");
+					continue;
+				}
+				closeImage();
+				reportStudy();
+				if(!seriesOpen)
+				{
+					// an image without a series line belongs to an unnamed series
+					seriesNode.reset(cursor.getResponse());
+					seriesOpen = true;
+					seriesReported = false;
+				}
+				reportSeries();
+				imageNode.reset(cursor);
+				imageOpen = true;
+				currentNode = imageNode;
+			}
+			else if(studyOpen && cursor.isFieldEqual(0, PART_DELIMITER, STUDY_MODALITY))
+			{
+				if(!studyReported)
+					studyNode.addProperty(cursor);
+				else if(!studyModalityFound)
+					handler.studyModality(cursor.getField(1, PART_DELIMITER));
+				studyModalityFound = true;
+			}
+			else if(currentNode != null)
+				currentNode.addProperty(cursor);
+			else
+				logger.warn("There is no current line to add unknown line '" + cursor.getLine() + "' to, discarding.");
+		}
+		closeStudy();
+		
+		try
+		{
+			int expectedLineCount = Integer.parseInt(studyCountLine);
+			if(expectedLineCount != cursor.getLineNumber() - 1)
+				logger.warn("The expected number of lines (" + expectedLineCount + 
+					") does not match the actual number (" + (cursor.getLineNumber() - 1) + 
+					"), continuing.");
+		}
+		catch(NumberFormatException e)
+		{
+			logger.warn("Unable to parse the first line (containing number of lines) in the VistA response.  Line was '" + 
+				studyCountLine + "', continuing.");
+		}
+		this.handler = null;
+	}
+	
+	private void reportStudy()
+	{
+		if(!studyReported)
+		{
+			handler.study(studyNode);
+			studyReported = true;
+			if(studyNode.getProperty(STUDY_MODALITY) >= 0)
+				studyModalityFound = true;
+		}
+	}
+	
+	private void reportSeries()
+	{
+		if(!seriesReported)
+		{
+			handler.series(seriesNode);
+			seriesReported = true;
+		}
+	}
+	
+	private void closeImage()
+	{
+		if(imageOpen)
+		{
+			handler.image(imageNode);
+			imageOpen = false;
+		}
+	}
+	
+	private void closeSeries()
+	{
+		closeImage();
+		if(seriesOpen)
+		{
+			reportSeries();
+			handler.seriesComplete();
+			seriesOpen = false;
+		}
+	}
+	
+	private void closeStudy()
+	{
+		if(studyOpen)
+		{
+			closeSeries();
+			reportStudy();
+			handler.studyComplete();
+			studyOpen = false;
+		}
+		currentNode = null;
+	}
+	
+	/**
+	 * A NEXT_STUDY, NEXT_SERIES or NEXT_IMAGE line and its property lines.  Only the 
+	 * bounds of the lines are kept, values are copied out of the response when asked for.
+	 * Where a property appears more than once the first is used.
+	 */
+	static class StudyGraphNode
+	{
+		private CharSequence response;
+		private int lineStart;
+		private int lineEnd;
+		private int[] propertyStarts = new int[16];
+		private int[] propertyEnds = new int[16];
+		private int propertyCount;
+		
+		void reset(VistaResponseCursor cursor)
+		{
+			this.response = cursor.getResponse();
+			this.lineStart = cursor.getLineStart();
+			this.lineEnd = cursor.getLineEnd();
+			this.propertyCount = 0;
+		}
+		
+		/**
+		 * Reset to a node without a line of its own.
+		 */
+		void reset(CharSequence response)
+		{
+			this.response = response;
+			this.lineStart = 0;
+			this.lineEnd = 0;
+			this.propertyCount = 0;
+		}
+		
+		void addProperty(VistaResponseCursor cursor)
+		{
+			if(propertyCount == propertyStarts.length)
+			{
+				int[] starts = new int[propertyCount * 2];
+				int[] ends = new int[propertyCount * 2];
+				System.arraycopy(propertyStarts, 0, starts, 0, propertyCount);
+				System.arraycopy(propertyEnds, 0, ends, 0, propertyCount);
+				propertyStarts = starts;
+				propertyEnds = ends;
+			}
+			propertyStarts[propertyCount] = cursor.getLineStart();
+			propertyEnds[propertyCount] = cursor.getLineEnd();
+			propertyCount++;
+		}
+		
+		/**
+		 * @return the index of the first property with the key, or -1 if there is none
+		 */
+		private int getProperty(String key)
+		{
+			for(int index = 0; index < propertyCount; index++)
+				if(VistaResponseCursor.isFieldEqual(response, propertyStarts[index], propertyEnds[index], 0, PART_DELIMITER, key))
+					return index;
+			return -1;
+		}
+		
+		boolean isPropertyExists(String key)
+		{
+			return getProperty(key) >= 0;
+		}
+		
+		/**
+		 * Get a value of a property, the first value follows the key.
+		 * 
+		 * @return the value or null if the node has no such property or the property has no such value
+		 */
+		String getPropertyValue(String key, int index)
+		{
+			int property = getProperty(key);
+			if(property < 0)
+				return null;
+			return VistaResponseCursor.getField(response, propertyStarts[property], propertyEnds[property], 
+				index + 1, PART_DELIMITER);
+		}
+		
+		boolean isPropertyValueExists(String key, int index)
+		{
+			int property = getProperty(key);
+			if(property < 0 || index < 0)
+				return false;
+			return VistaResponseCursor.getFieldCount(response, propertyStarts[property], propertyEnds[property], 
+				PART_DELIMITER) > index + 1;
+		}
+		
+		/**
+		 * Get a value of the NEXT_STUDY, NEXT_SERIES or NEXT_IMAGE line, the first value follows the key.
+		 */
+		String getValue(int index)
+		{
+			if(lineStart >= lineEnd)
+				return null;
+			return VistaResponseCursor.getField(response, lineStart, lineEnd, index + 1, PART_DELIMITER);
+		}
+		
+		@Override
+		public String toString()
+		{
+			return lineStart >= lineEnd ? "" : response.subSequence(lineStart, lineEnd).toString();
+		}
+	}
+}
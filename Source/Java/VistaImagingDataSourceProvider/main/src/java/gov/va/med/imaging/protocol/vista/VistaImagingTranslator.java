@@ -633,6 +633,8 @@ public class VistaImagingTranslator
 	
 	/**
 	 * Convert a String, as returned from VistA Imaging, into a sorted set of Study instances.
+	 * The response is read in place, see createStudiesFromGraph(Site, String[], ...) for
+	 * a description of the study graph.
 	 * 
 	 * @param site
 	 * @param vistaResponse
@@ -642,21 +644,38 @@ public class VistaImagingTranslator
 	public static SortedSet<Study> createStudiesFromGraph(Site site, String vistaResponse, 
 			StudyLoadLevel studyLoadLevel, StudyDeletedImageState studyDeletedImageState) 
 	{
-		String details[] = StringUtils.Split(vistaResponse, StringUtils.NEW_LINE);
-		SortedSet<Study> studies = createStudiesFromGraph(site, details, studyLoadLevel, 
-				studyDeletedImageState);
-		return studies;
+		return createStudiesFromGraph(site, vistaResponse, studyLoadLevel, studyDeletedImageState, null);
 	}
 	
-
-	// the definition of the levels in teh hierarchy of data returned from the Vista RPC call
-	private static VistaImagingParser.OntologyDelimiterKey[] studyOntologyDelimiterKeys = 
-	new VistaImagingParser.OntologyDelimiterKey[] 
+	/**
+	 * Convert a String, as returned from VistA Imaging, into a sorted set of Study instances,
+	 * telling the listener about each Study as soon as it has been translated.
+	 * 
+	 * @param site
+	 * @param vistaResponse
+	 * @param studyLoadLevel
+	 * @param studyDeletedImageState
+	 * @param listener may be null
+	 * @return
+	 */
+	public static SortedSet<Study> createStudiesFromGraph(Site site, String vistaResponse, 
+			StudyLoadLevel studyLoadLevel, StudyDeletedImageState studyDeletedImageState, 
+			StudyGraphListener listener) 
+	{
+		StudyGraphTranslator translator = 
+			new StudyGraphTranslator(site, studyLoadLevel, studyDeletedImageState, listener);
+		if(vistaResponse != null)
+			new VistaImagingStudyGraphReader().read(vistaResponse, translator);
+		return translator.getStudies();
+	}
+	
+	/**
+	 * Told about each Study in a study graph once all of its series and images have been added.
+	 */
+	public interface StudyGraphListener
 	{
-		new VistaImagingParser.OntologyDelimiterKey(STUDY_NEXT, new String[] {STUDY_MODALITY}),
-		new VistaImagingParser.OntologyDelimiterKey(SERIES_NEXT),
-		new VistaImagingParser.OntologyDelimiterKey(IMAGE_NEXT)
-	};
+		public abstract void studyTranslated(Study study);
+	}
 	
 	/**
 	 * 
@@ -684,111 +703,180 @@ public class VistaImagingTranslator
 	 *  The first line is the number of lines in the response.
 	 *  
 	 *  The keys "NEXT_STUDY", "NEXT_SERIES", and "NEXT_IMAGE" make up the "study ontology" definition, really
-	 *  just the demarcation of the levels of the hierarchy.  The VistaImagingParser will use those keys as delimiters
-	 *  when parsing the String returned from Vista into a hierarchy of lines.
+	 *  just the demarcation of the levels of the hierarchy.  The VistaImagingStudyGraphReader uses those keys 
+	 *  as delimiters and reports each study, series and image as it is read, the Study instances are built
+	 *  from those reports without building a tree of the lines first.
 	 *       
 	 * @return
 	 */
 	public static SortedSet<Study> createStudiesFromGraph(Site site, String[] studyLines, 
 			StudyLoadLevel studyLoadLevel, StudyDeletedImageState studyDeletedImageState) 
 	{		
-		SortedSet<Study> studyList = new TreeSet<Study>();
 		if( studyLines == null || studyLines.length <= 1 )
-			return studyList;		// i.e. return an empty Set
-		
-		String studyCountLine = studyLines[0].trim();
-		try
-        {
-	        int expectedLineCount = Integer.parseInt( studyCountLine );
-	        if( expectedLineCount != studyLines.length-1 )
-				logger.warn("The expected number of lines (" + expectedLineCount + 
-						") does not match the actual number (" + (studyLines.length-1) + 
-						"', continuing.");
-        } 
-		catch (NumberFormatException e)
-        {
-			logger.warn("Unable to parse the first line (containing number of lines) in the VistA response.  Line was '" + 
-					studyCountLine + "', continuing.");
-        }
+			return new TreeSet<Study>();		// i.e. return an empty Set
 		
-		// drop the first line
-		String[] realLines = new String[studyLines.length-1];
-		System.arraycopy(studyLines, 1, realLines, 0, realLines.length);
+		StringBuilder vistaResponse = new StringBuilder(studyLines.length * 64);
+		for(String studyLine : studyLines)
+		{
+			if(studyLine != null)
+				vistaResponse.append(studyLine);
+			vistaResponse.append(VistaResponseCursor.LINE_DELIMITER);
+		}
+		StudyGraphTranslator translator = 
+			new StudyGraphTranslator(site, studyLoadLevel, studyDeletedImageState, null);
+		new VistaImagingStudyGraphReader().read(vistaResponse, translator);
+		return translator.getStudies();
+	}
+	
+	/**
+	 * Builds Study instances from the study graph as it is read.  A Study is added to the 
+	 * set, and the listener told about it, once all of its lines have been read.  A Study
+	 * that cannot be created is dropped. 
+	 */
+	private static class StudyGraphTranslator
+	implements VistaImagingStudyGraphReader.StudyGraphHandler
+	{
+		private final Site site;
+		private final StudyLoadLevel studyLoadLevel;
+		private final StudyDeletedImageState studyDeletedImageState;
+		private final StudyGraphListener listener;
+		private final SortedSet<Study> studies = new TreeSet<Study>();
 		
-		// create a Vista Parser using the hierarchy levels defined by the ontology delimiter keys 
-		VistaImagingParser parser = new VistaImagingParser(studyOntologyDelimiterKeys);
+		private Study study = null;
+		private Series series = null;
 		
-		List<VistaImagingParser.ParsedVistaLine> parsedStudyLines = parser.parse(realLines, true);
+		StudyGraphTranslator(Site site, StudyLoadLevel studyLoadLevel, 
+			StudyDeletedImageState studyDeletedImageState, StudyGraphListener listener)
+		{
+			this.site = site;
+			this.studyLoadLevel = studyLoadLevel;
+			this.studyDeletedImageState = studyDeletedImageState;
+			this.listener = listener;
+		}
+
+		SortedSet<Study> getStudies()
+		{
+			return studies;
+		}
 
-		// if there are any parsed lines that have the root key
-		if(parsedStudyLines != null && parsedStudyLines.size() > 0)
-			for(VistaImagingParser.ParsedVistaLine studyLine : parsedStudyLines)
+		@Override
+		public void study(VistaImagingStudyGraphReader.StudyGraphNode studyNode)
+		{
+			try
 			{
-				Study study;
-				try
-				{
-					study = createStudy(site, studyLine, studyLoadLevel, studyDeletedImageState);
-					if(study != null)
-						studyList.add(study);// createStudy(site, studyLine) );
-				}
-				catch (URNFormatException x)
-				{
-					logger.error("URNFormatException creating a Study from the VistAImaging study line '" + studyLine + "'.", x);
-				}
+				study = createStudy(site, studyNode, studyLoadLevel, studyDeletedImageState);
 			}
-			// add the complete Study with Series and Image instances attached
-			// to the list of Study
-		
-		return studyList;
+			catch (URNFormatException x)
+			{
+				logger.error("URNFormatException creating a Study from the VistAImaging study line '" + studyNode + "'.", x);
+				study = null;
+			}
+		}
+
+		@Override
+		public void studyModality(String modalities)
+		{
+			if(study != null && modalities != null)
+				addStudyModalities(study, modalities);
+		}
+
+		@Override
+		public void series(VistaImagingStudyGraphReader.StudyGraphNode seriesNode)
+		{
+			series = study == null ? null : createSeries(seriesNode);
+		}
+
+		@Override
+		public void image(VistaImagingStudyGraphReader.StudyGraphNode imageNode)
+		{
+			if(series == null)
+				return;
+			try
+			{
+				Image image = createImage(site, study, series, imageNode);
+				series.addImage(image);
+			}
+			catch(VistaParsingException vpX)
+			{
+				logger.error("VistaParsingException creating image, " + vpX.getMessage(), vpX);
+			}
+			catch (URNFormatException x)
+			{
+				// the study cannot be created without all of its images
+				logger.error("URNFormatException creating a Study from the VistAImaging study with image line '" + imageNode + "'.", x);
+				study = null;
+				series = null;
+			}
+		}
+
+		@Override
+		public void seriesComplete()
+		{
+			if(study != null && series != null)
+				study.addSeries(series);
+			series = null;
+		}
+
+		@Override
+		public void studyComplete()
+		{
+			if(study != null)
+			{
+				studies.add(study);
+				if(listener != null)
+					listener.studyTranslated(study);
+			}
+			study = null;
+		}
 	}
 
 	/**
+	 * Create a Study from the study line of the graph, the series are added as they are read.
 	 * 
 	 * @param site
-	 * @param studyLine
+	 * @param studyNode
 	 * @return
 	 * @throws URNFormatException 
 	 */
-	private static Study createStudy(Site site, VistaImagingParser.ParsedVistaLine studyLine, 
+	private static Study createStudy(Site site, VistaImagingStudyGraphReader.StudyGraphNode studyNode, 
 			StudyLoadLevel studyLoadLevel, StudyDeletedImageState studyDeletedImageState) 
 	throws URNFormatException
     {
-		VistaImagingParser.ParsedVistaLine ienProperty = studyLine.getProperty(STUDY_IEN_KEY);
 	    String ien = null;
 	    
 	    // we must have the IEN to create a Study
-	    if(ienProperty != null)
-	    	ien = ienProperty.getValueAtIndex(0);	// either the first value of the STUDY_IEN line
+	    if(studyNode.isPropertyExists(STUDY_IEN_KEY))
+	    	ien = studyNode.getPropertyValue(STUDY_IEN_KEY, 0);	// either the first value of the STUDY_IEN line
 	    else
-	    	ien = studyLine.getValueAtIndex(1);		// or the second value from the NEXT_STUDY line	    	   
+	    	ien = studyNode.getValue(1);		// or the second value from the NEXT_STUDY line	    	   
 	    
 	    int imageCount = 0;
 	    String firstImageIen = "";
 	    String cptCode = "";
 	    String consolidatedSiteNumber = "";
-	    if(ienProperty.isValueAtIndexExists(1))
+	    if(studyNode.isPropertyValueExists(STUDY_IEN_KEY, 1))
 	    {
-	    	String imageCountString = ienProperty.getValueAtIndex(1);
+	    	String imageCountString = studyNode.getPropertyValue(STUDY_IEN_KEY, 1);
 	    	if((imageCountString != null) && (imageCountString.length() > 0))
 	    	{
 	    		imageCount = Integer.parseInt(imageCountString);
 	    	}
 	    }
-	    if(ienProperty.isValueAtIndexExists(2))
+	    if(studyNode.isPropertyValueExists(STUDY_IEN_KEY, 2))
 	    {
 	    	// CTB 27Nov2009
 	    	//firstImageIen = Base32ConversionUtility.base32Encode(ienProperty.getValueAtIndex(2));
-	    	firstImageIen = ienProperty.getValueAtIndex(2);
+	    	firstImageIen = studyNode.getPropertyValue(STUDY_IEN_KEY, 2);
 	    }
 	    // JMW 10/6/2010 P104 - the CPT code is present in the 3rd piece of the STUDY_IEN field
-	    if(ienProperty.isValueAtIndexExists(3))
+	    if(studyNode.isPropertyValueExists(STUDY_IEN_KEY, 3))
 	    {
-	    	cptCode = ienProperty.getValueAtIndex(3);
+	    	cptCode = studyNode.getPropertyValue(STUDY_IEN_KEY, 3);
 	    }
 	    // JMW 10/29/2010 P104 - if site the image is physically stored at is in the 4th piece of the STUDY_IEN field 
-	    if(ienProperty.isValueAtIndexExists(4))
+	    if(studyNode.isPropertyValueExists(STUDY_IEN_KEY, 4))
 	    {
-	    	consolidatedSiteNumber = ienProperty.getValueAtIndex(4);
+	    	consolidatedSiteNumber = studyNode.getPropertyValue(STUDY_IEN_KEY, 4);
 	    }
 	    
 	    // CTB 29Nov2009
@@ -813,22 +901,16 @@ public class VistaImagingTranslator
 	    	}
 	    }
 	    
-	    //studyLine.getValueAtIndex(index)
-
-	    String studyUid = null;
-	    VistaImagingParser.ParsedVistaLine uidProperty = studyLine.getProperty(STUDY_UID_KEY);
-	    if(uidProperty != null)
-	    	studyUid = uidProperty.getValueAtIndex(0);
+	    String studyUid = studyNode.getPropertyValue(STUDY_UID_KEY, 0);
 	    
 	    String patientIcn = null;
 	    String patientName = null;
 	    String patientDfn = null;
-	    VistaImagingParser.ParsedVistaLine patientProperty = studyLine.getProperty(STUDY_PAT_KEY);
-	    if(patientProperty != null)
+	    if(studyNode.isPropertyExists(STUDY_PAT_KEY))
 	    {
-	    	patientDfn = patientProperty.getValueAtIndex(0);
-	    	patientIcn = patientProperty.getValueAtIndex(1);
-	    	patientName = patientProperty.getValueAtIndex(2);
+	    	patientDfn = studyNode.getPropertyValue(STUDY_PAT_KEY, 0);
+	    	patientIcn = studyNode.getPropertyValue(STUDY_PAT_KEY, 1);
+	    	patientName = studyNode.getPropertyValue(STUDY_PAT_KEY, 2);
 	    }
 	    
 	    PatientIdentifier patientIdentifier = null;
@@ -859,89 +941,51 @@ public class VistaImagingTranslator
 	    	study.setFirstImageIen(firstImageIen);
 	    }
 	    
-	    VistaImagingParser.ParsedVistaLine modalityProperty = studyLine.getProperty(STUDY_MODALITY);
-	    if(modalityProperty != null)
-	    {
-	    	String[] modalities = modalityProperty.getValueAtIndex(0).split(",", -1);
-	    	for(String modality : modalities)
-	    		study.addModality(modality);
-	    }
-	    VistaImagingParser.ParsedVistaLine errorProperty = studyLine.getProperty(STUDY_ERROR);
-	    if(errorProperty != null)
+	    // the STUDY_MODALITY line usually follows the images and is added when it is read
+	    String modalities = studyNode.getPropertyValue(STUDY_MODALITY, 0);
+	    if(modalities != null)
+	    	addStudyModalities(study, modalities);
+	    
+	    if(studyNode.isPropertyExists(STUDY_ERROR))
 	    {
-	    	studyUid = errorProperty.getValueAtIndex(0);
-	    	String errorMsg = errorProperty.getValueAtIndex(1);
+	    	studyUid = studyNode.getPropertyValue(STUDY_ERROR, 0);
+	    	String errorMsg = studyNode.getPropertyValue(STUDY_ERROR, 1);
 	    	logger.warn("STUDY Error for study Uid [" + studyUid + "], study Ien [" + ien + "], '" + errorMsg + "'." );
 	    	study.setErrorMessage(errorMsg);
 	    	// JMW 7/17/08 - we now return the study but keep the error message to use later
 	    	//return null;
 	    }
-
-	    for( Iterator<VistaImagingParser.ParsedVistaLine> seriesIter = studyLine.childIterator(); seriesIter.hasNext(); )
-	    {
-	    	VistaImagingParser.ParsedVistaLine seriesLine = seriesIter.next();
-	    	Series series = createSeries(site, study, seriesLine);
-	    	
-	    	study.addSeries(series);
-	    }
 	    
 	    return study;
     }
 	
+	private static void addStudyModalities(Study study, String modalities)
+	{
+    	for(String modality : modalities.split(",", -1))
+    		study.addModality(modality);
+	}
+	
 	/**
+	 * Create a Series from the series line of the graph, the images are added as they are read.
 	 * 
-	 * @param site
-	 * @param parentStudy
-	 * @param seriesLine
+	 * @param seriesNode
 	 * @return
-	 * @throws URNFormatException 
 	 */
-	private static Series createSeries(Site site, Study parentStudy, VistaImagingParser.ParsedVistaLine seriesLine) 
-	throws URNFormatException
+	private static Series createSeries(VistaImagingStudyGraphReader.StudyGraphNode seriesNode) 
     {
 		Series series = new Series();
 		
-		VistaImagingParser.ParsedVistaLine uidProperty = seriesLine.getProperty(SERIES_UID_KEY);
-	    if(uidProperty != null)
-	    {
-	    	String uid = uidProperty.getValueAtIndex(0);
-	    	series.setSeriesUid(uid);
-	    }
+	    if(seriesNode.isPropertyExists(SERIES_UID_KEY))
+	    	series.setSeriesUid(seriesNode.getPropertyValue(SERIES_UID_KEY, 0));
 	    
-	    VistaImagingParser.ParsedVistaLine ienProperty = seriesLine.getProperty(SERIES_IEN_KEY);
-	    if(ienProperty != null)
-	    {
-	    	String ien = ienProperty.getValueAtIndex(0);
-	    	series.setSeriesIen(ien);
-	    }
+	    if(seriesNode.isPropertyExists(SERIES_IEN_KEY))
+	    	series.setSeriesIen(seriesNode.getPropertyValue(SERIES_IEN_KEY, 0));
 	    
-	    VistaImagingParser.ParsedVistaLine numberProperty = seriesLine.getProperty(SERIES_NUMBER_KEY);
-	    if(numberProperty != null)
-	    {
-	    	String number = numberProperty.getValueAtIndex(0);
-	    	series.setSeriesNumber(number);
-	    }
+	    if(seriesNode.isPropertyExists(SERIES_NUMBER_KEY))
+	    	series.setSeriesNumber(seriesNode.getPropertyValue(SERIES_NUMBER_KEY, 0));
 	    
-	    VistaImagingParser.ParsedVistaLine modalityProperty = seriesLine.getProperty(SERIES_MODALITY);
-	    if(modalityProperty != null)
-	    {
-	    	String modality = modalityProperty.getValueAtIndex(0);
-	    	series.setModality(modality);
-	    }
-	    
-	    for( Iterator<VistaImagingParser.ParsedVistaLine> imageIter = seriesLine.childIterator(); imageIter.hasNext(); )
-	    {
-	    	VistaImagingParser.ParsedVistaLine imageLine = imageIter.next();
-	    	try
-	    	{
-	    		Image image = createImage(site, parentStudy, series, imageLine);	    	
-	    		series.addImage(image);
-	    	}
-	    	catch(VistaParsingException vpX)
-	    	{
-	    		logger.error("VistaParsingException creating image, " + vpX.getMessage(), vpX);
-	    	}
-	    }
+	    if(seriesNode.isPropertyExists(SERIES_MODALITY))
+	    	series.setModality(seriesNode.getPropertyValue(SERIES_MODALITY, 0));
 	    
 		return series;
     }
@@ -951,7 +995,7 @@ public class VistaImagingTranslator
 	 * @param site
 	 * @param parentStudy
 	 * @param parentSeries
-	 * @param seriesLine
+	 * @param imageNode
 	 * @return
 	 * @throws URNFormatException 
 	 */
@@ -959,69 +1003,39 @@ public class VistaImagingTranslator
 		Site site, 
 		Study parentStudy, 
 		Series parentSeries, 
-		VistaImagingParser.ParsedVistaLine imageLine) 
+		VistaImagingStudyGraphReader.StudyGraphNode imageNode) 
 	throws URNFormatException, VistaParsingException
     {
-		String imageIen = null;
 		String consolidatedSiteNumber = "";
-		VistaImagingParser.ParsedVistaLine ienProperty = imageLine.getProperty(IMAGE_IEN_KEY);
-	    if(ienProperty != null)
-	    {
-	    	//imageIen = Base32ConversionUtility.base32Encode(ienProperty.getValueAtIndex(0));
-	    	imageIen = ienProperty.getValueAtIndex(0);	    	
-	    }
-	    
+    	//imageIen = Base32ConversionUtility.base32Encode(ienProperty.getValueAtIndex(0));
+		String imageIen = imageNode.getPropertyValue(IMAGE_IEN_KEY, 0);
 	    
 	    String imageUid = "";
-    	VistaImagingParser.ParsedVistaLine uidProperty = imageLine.getProperty(IMAGE_UID_KEY);
-	    if(uidProperty != null)
-	    {
-	    	String uid = uidProperty.getValueAtIndex(0);
-	    	imageUid = uid;
-	    }
+	    if(imageNode.isPropertyExists(IMAGE_UID_KEY))
+	    	imageUid = imageNode.getPropertyValue(IMAGE_UID_KEY, 0);
 	    
 	    String imageNumber = "";	    
-	    VistaImagingParser.ParsedVistaLine numberProperty = imageLine.getProperty(IMAGE_NUMBER_KEY);
-	    if(numberProperty != null)
-	    {
-	    	String number = numberProperty.getValueAtIndex(0);
-	    	imageNumber = number;
-	    }	    
+	    if(imageNode.isPropertyExists(IMAGE_NUMBER_KEY))
+	    	imageNumber = imageNode.getPropertyValue(IMAGE_NUMBER_KEY, 0);
 	    
 	    String imageInfoLine = null;
-	    VistaImagingParser.ParsedVistaLine infoProperty = imageLine.getProperty(IMAGE_INFO_KEY);
-	    if(infoProperty != null)
+	    if(imageNode.isPropertyExists(IMAGE_INFO_KEY))
 	    {
-	    	String infoLine = infoProperty.getValueAtIndex(0);
-	    	imageInfoLine = infoLine;	    	
-	    	if(infoProperty.isValueAtIndexExists(1))
+	    	imageInfoLine = imageNode.getPropertyValue(IMAGE_INFO_KEY, 0);
+	    	if(imageNode.isPropertyValueExists(IMAGE_INFO_KEY, 1))
 	    	{
-	    		consolidatedSiteNumber = infoProperty.getValueAtIndex(1);
+	    		consolidatedSiteNumber = imageNode.getPropertyValue(IMAGE_INFO_KEY, 1);
 	    	}
 	    }
 	    
-	    String groupIen = null;
-	    VistaImagingParser.ParsedVistaLine groupIenProperty = imageLine.getProperty(GROUP_IEN_KEY);
-	    if(groupIenProperty != null)
-	    {
-	    	// CTB 27Nov2009
-	    	//String ien = Base32ConversionUtility.base32Encode(groupIenProperty.getValueAtIndex(0));
-	    	//image.setGroupIen(ien);
-	    	groupIen = groupIenProperty.getValueAtIndex(0);
-	    }
-	    else
-	    {
-	    	// if the GROUP_IEN key is missing that means this is a single image
-	    	// study with no child node, in this case the group IEN, image IEN, and STUDY IEN are all the same
-	    	//image.setGroupIen(parentStudy.getStudyIen());
-	    }
-	    VistaImagingParser.ParsedVistaLine imageErrorProperty = imageLine.getProperty(IMAGE_ERROR);
-	    String errorMessage = null;
-	    if(imageErrorProperty != null)
-	    {
-	    	String errorMsg = imageErrorProperty.getValueAtIndex(0);
-	    	errorMessage = errorMsg;
-	    }
+    	// CTB 27Nov2009
+    	//String ien = Base32ConversionUtility.base32Encode(groupIenProperty.getValueAtIndex(0));
+    	//image.setGroupIen(ien);
+	    // if the GROUP_IEN key is missing that means this is a single image
+	    // study with no child node, in this case the group IEN, image IEN, and STUDY IEN are all the same
+	    String groupIen = imageNode.getPropertyValue(GROUP_IEN_KEY, 0);
+	    
+	    String errorMessage = imageNode.getPropertyValue(IMAGE_ERROR, 0);
 	    // JMW 2/6/08 - No longer getting these values from the graph, getting them from the info key	 
 	    // JMW 3/7/08 - setting these values at the end so that they overwrite the values we got 
 	    // from VistA - not entirely sure about this but sometimes VistA doesn't have the right 
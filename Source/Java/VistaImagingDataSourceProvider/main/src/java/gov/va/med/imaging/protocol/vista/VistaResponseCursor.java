@@ -0,0 +1,239 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.protocol.vista;
+
+/**
+ * A cursor over the lines of an RPC response from VistA.  The response is not split, 
+ * the cursor keeps the bounds of the current line and the fields of the line are found 
+ * by scanning for their delimiter ('|', '^', '~' ...) when they are asked for.  A field 
+ * is only copied into a String by getField(), so that lines and fields that are only
+ * compared or skipped do not allocate.
+ * 
+ * Lines are delimited by '\n' and, like String.trim(), leading and trailing white space 
+ * (including a '\r') is not part of the line.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class VistaResponseCursor
+{
+	public final static char LINE_DELIMITER = '\n';
+	
+	private final CharSequence response;
+	private int nextLineStart = 0;
+	private int lineStart = 0;
+	private int lineEnd = 0;
+	private int lineNumber = 0;
+	
+	public VistaResponseCursor(CharSequence response)
+	{
+		this.response = response == null ? "" : response;
+	}
+
+	/**
+	 * @return the response the cursor is reading
+	 */
+	public CharSequence getResponse()
+	{
+		return response;
+	}
+	
+	/**
+	 * Move to the next line.
+	 * 
+	 * @return false if there are no more lines
+	 */
+	public boolean nextLine()
+	{
+		int length = response.length();
+		if(nextLineStart >= length)
+			return false;
+		
+		int start = nextLineStart;
+		int end = start;
+		while(end < length && response.charAt(end) != LINE_DELIMITER)
+			end++;
+		nextLineStart = end + 1;
+		
+		lineStart = trimStart(response, start, end);
+		lineEnd = trimEnd(response, lineStart, end);
+		lineNumber++;
+		return true;
+	}
+	
+	/**
+	 * @return the number of the current line, the first line is 1
+	 */
+	public int getLineNumber()
+	{
+		return lineNumber;
+	}
+
+	/**
+	 * @return the index in the response of the first character of the current line
+	 */
+	public int getLineStart()
+	{
+		return lineStart;
+	}
+
+	/**
+	 * @return the index in the response after the last character of the current line
+	 */
+	public int getLineEnd()
+	{
+		return lineEnd;
+	}
+	
+	public boolean isBlankLine()
+	{
+		return lineStart >= lineEnd;
+	}
+	
+	/**
+	 * @return the current line as a String
+	 */
+	public String getLine()
+	{
+		return response.subSequence(lineStart, lineEnd).toString();
+	}
+	
+	/**
+	 * @return the field at the index of the current line, or null if the line has fewer fields
+	 */
+	public String getField(int index, char delimiter)
+	{
+		return getField(response, lineStart, lineEnd, index, delimiter);
+	}
+	
+	/**
+	 * @return true if the field at the index of the current line, without leading and 
+	 * trailing white space, is equal to the value
+	 */
+	public boolean isFieldEqual(int index, char delimiter, String value)
+	{
+		return isFieldEqual(response, lineStart, lineEnd, index, delimiter, value);
+	}
+	
+	public int getFieldCount(char delimiter)
+	{
+		return getFieldCount(response, lineStart, lineEnd, delimiter);
+	}
+
+	// ======================================================================================
+	// Field access within any range of a response, used by readers that keep the
+	// bounds of lines rather than the lines
+	// ======================================================================================
+	
+	/**
+	 * Get a field from a range of the response.  Like String.split(delimiter, -1), empty 
+	 * fields are counted and a range with n delimiters has n+1 fields.
+	 * 
+	 * @param response
+	 * @param start the start of the range
+	 * @param end the end of the range, exclusive
+	 * @param index the index of the field, the first field is 0
+	 * @param delimiter
+	 * @return the field or null if the range has fewer fields
+	 */
+	public static String getField(CharSequence response, int start, int end, int index, char delimiter)
+	{
+		int fieldStart = findFieldStart(response, start, end, index, delimiter);
+		if(fieldStart < 0)
+			return null;
+		int fieldEnd = findFieldEnd(response, fieldStart, end, delimiter);
+		return response.subSequence(fieldStart, fieldEnd).toString();
+	}
+	
+	/**
+	 * @return true if the field at the index of the range, without leading and 
+	 * trailing white space, is equal to the value
+	 */
+	public static boolean isFieldEqual(CharSequence response, int start, int end, int index, char delimiter, String value)
+	{
+		int fieldStart = findFieldStart(response, start, end, index, delimiter);
+		if(fieldStart < 0)
+			return false;
+		int fieldEnd = findFieldEnd(response, fieldStart, end, delimiter);
+		fieldStart = trimStart(response, fieldStart, fieldEnd);
+		fieldEnd = trimEnd(response, fieldStart, fieldEnd);
+		if(fieldEnd - fieldStart != value.length())
+			return false;
+		for(int offset = 0; offset < value.length(); offset++)
+			if(response.charAt(fieldStart + offset) != value.charAt(offset))
+				return false;
+		return true;
+	}
+	
+	public static int getFieldCount(CharSequence response, int start, int end, char delimiter)
+	{
+		int count = 1;
+		for(int index = start; index < end; index++)
+			if(response.charAt(index) == delimiter)
+				count++;
+		return count;
+	}
+	
+	/**
+	 * @return the index of the start of the field, or -1 if the range has fewer fields
+	 */
+	private static int findFieldStart(CharSequence response, int start, int end, int index, char delimiter)
+	{
+		if(index < 0)
+			return -1;
+		int position = start;
+		for(int field = 0; field < index; field++)
+		{
+			while(position < end && response.charAt(position) != delimiter)
+				position++;
+			if(position >= end)
+				return -1;
+			position++;	// skip the delimiter
+		}
+		return position;
+	}
+	
+	private static int findFieldEnd(CharSequence response, int fieldStart, int end, char delimiter)
+	{
+		int position = fieldStart;
+		while(position < end && response.charAt(position) != delimiter)
+			position++;
+		return position;
+	}
+	
+	private static int trimStart(CharSequence response, int start, int end)
+	{
+		while(start < end && response.charAt(start) <= ' ')
+			start++;
+		return start;
+	}
+	
+	private static int trimEnd(CharSequence response, int start, int end)
+	{
+		while(end > start && response.charAt(end - 1) <= ' ')
+			end--;
+		return end;
+	}
+}
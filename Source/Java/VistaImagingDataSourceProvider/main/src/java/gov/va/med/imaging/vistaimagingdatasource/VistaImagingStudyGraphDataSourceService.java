@@ -38,6 +38,8 @@ import gov.va.med.imaging.exchange.business.Site;
 import gov.va.med.imaging.exchange.business.Study;
 import gov.va.med.imaging.exchange.business.StudyFilter;
 import gov.va.med.imaging.exchange.business.StudySetResult;
+import gov.va.med.imaging.exchange.business.StudySetResultListener;
+import gov.va.med.imaging.exchange.business.StudySetResultListenerContext;
 import gov.va.med.imaging.exchange.enums.StudyDeletedImageState;
 import gov.va.med.imaging.exchange.enums.StudyLoadLevel;
 import gov.va.med.imaging.protocol.vista.VistaImagingTranslator;
@@ -307,8 +309,23 @@ extends AbstractBaseVistaImagingStudyGraphService
 		StudyDeletedImageState studyDeletedImageState = StudyDeletedImageState.cannotIncludeDeletedImages;
 		if(canIncludeDeletedImages) // if the DS supports getting deleted images, set appropriately based on user request
 			studyDeletedImageState = (includesDeletedImages ? StudyDeletedImageState.includesDeletedImages : StudyDeletedImageState.doesNotIncludeDeletedImages);
+		StudySetResultListener studySetResultListener = StudySetResultListenerContext.getListener();
+		if(studySetResultListener != null)
+		{
+			// deliver each study as soon as it has been translated and merged with its group
+			// rather than when the whole graph has been
+			IncrementalStudyGraphMerger merger = new IncrementalStudyGraphMerger(localVistaSession, 
+					groups, filter, studyLoadLevel, studySetResultListener);
+			getPatientStudyGraph(localVistaSession, studyMap, patientDfn, 
+					studyLoadLevel, studyDeletedImageState, merger);
+			SortedSet<Study> result = merger.getStudies();
+			logger.info("Completed getPatientStudies() for studies " + groupMessage.toString() + 
+					", delivered and returning '" + result.size() + "' studies.");
+			return result;
+		}
+		
 		SortedSet<Study> studies = getPatientStudyGraph(localVistaSession, studyMap, patientDfn, 
-				studyLoadLevel, studyDeletedImageState);
+				studyLoadLevel, studyDeletedImageState, null);
 		logger.info("getPatientStudyGraph for studies " + groupMessage.toString() + " returned " + studies.size() + " studies.");
 		SortedSet<Study> result = 
 			VistaImagingCommonUtilities.mergeStudyLists(localVistaSession, studies, groups, studyLoadLevel);
@@ -323,6 +340,63 @@ extends AbstractBaseVistaImagingStudyGraphService
 		logger.info("Completed getPatientStudies(), returning '" + result.size() + "' studies.");
 		return result;
     }
+    
+    /**
+     * Merges each study with its group as it is translated from the study graph, filters it
+     * and delivers it to the StudySetResultListener.
+     */
+    private class IncrementalStudyGraphMerger
+    implements VistaImagingTranslator.StudyGraphListener
+    {
+    	private final VistaSession vistaSession;
+    	private final SortedSet<VistaGroup> groups;
+    	private final StudyFilter filter;
+    	private final StudyLoadLevel studyLoadLevel;
+    	private final StudySetResultListener listener;
+    	private final SortedSet<Study> studies = new TreeSet<Study>();
+    	
+    	IncrementalStudyGraphMerger(VistaSession vistaSession, SortedSet<VistaGroup> groups, 
+    		StudyFilter filter, StudyLoadLevel studyLoadLevel, StudySetResultListener listener)
+    	{
+    		this.vistaSession = vistaSession;
+    		this.groups = groups;
+    		this.filter = filter;
+    		this.studyLoadLevel = studyLoadLevel;
+    		this.listener = listener;
+    	}
+    	
+		SortedSet<Study> getStudies()
+		{
+			return studies;
+		}
+
+		@Override
+		public void studyTranslated(Study study)
+		{
+			Study mergedStudy = 
+				VistaImagingCommonUtilities.mergeStudyWithMatchingGroupAndRemove(vistaSession, study, groups, studyLoadLevel);
+			if(mergedStudy == null)
+				return;
+			
+			SortedSet<Study> partialStudies = new TreeSet<Study>();
+			partialStudies.add(mergedStudy);
+			if(filter != null)
+				filter.postFilter(partialStudies);
+			if(partialStudies.size() == 0)
+				return;
+			studies.addAll(partialStudies);
+			
+			try
+			{
+				listener.studySetResultAvailable(StudySetResult.createPartialResult(partialStudies, null));
+			}
+			catch(Throwable t)
+			{
+				// the studies are still returned in the complete result
+				logger.warn("Error delivering study '" + mergedStudy.getStudyIen() + "' before the complete result, " + t.getMessage());
+			}
+		}
+    }
 
 	/**
      * 
@@ -370,7 +444,7 @@ extends AbstractBaseVistaImagingStudyGraphService
 			studyDeletedImageState = (includesDeletedImages ? StudyDeletedImageState.includesDeletedImages : StudyDeletedImageState.doesNotIncludeDeletedImages);
     	
     	SortedSet<Study> studies = getPatientStudyGraph(localVistaSession, studyMap, patientDfn, 
-    			studyLoadLevel, studyDeletedImageState);
+    			studyLoadLevel, studyDeletedImageState, null);
     	if((studies == null) || (studies.size() <= 0))
     	{
     		throw new MethodException("Study [" + studyIen + "] not found");
@@ -401,6 +475,7 @@ extends AbstractBaseVistaImagingStudyGraphService
      * @param studyMap
      * @param patientDfn
      * @param studyLoadLevel
+     * @param listener told about each study as it is translated, may be null
      * @return
      * @throws MethodException
      * @throws ConnectionException
@@ -410,7 +485,8 @@ extends AbstractBaseVistaImagingStudyGraphService
     	Map<String, String> studyMap, 
     	String patientDfn, 
     	StudyLoadLevel studyLoadLevel,
-    	StudyDeletedImageState studyDeletedImageState)
+    	StudyDeletedImageState studyDeletedImageState,
+    	VistaImagingTranslator.StudyGraphListener listener)
 	throws MethodException, ConnectionException
     {    	
     	try
@@ -422,7 +498,7 @@ extends AbstractBaseVistaImagingStudyGraphService
 			logger.info("Completed study graph RPC call, parsing response...");				
 			
 			SortedSet<Study> studies = VistaImagingTranslator.createStudiesFromGraph(getSite(), 
-					vistaResponse, studyLoadLevel, studyDeletedImageState);
+					vistaResponse, studyLoadLevel, studyDeletedImageState, listener);
 			logger.info("Converted response into '" + ((studies == null) ? 0 : studies.size()) + "' studies");
 			return studies;
     	}
@@ -203,17 +203,9 @@ public class VistaImagingCommonUtilities
 		// from the groups.
 		for(Study study : studyGraph)
 		{
-			VistaGroup group = getMatchingGroup(groups, study.getStudyIen(), study.getFirstImageIen());
-			if(group == null) 
-				logger.error("Unable to find matching study details for study '" + study.getStudyIen() + "'.");
-			else 
-			{
-				mergedStudies.add( mergeStudyWithGroup(vistaSession, study, group, studyLoadLevel) );
-				logger.info("Merged study lists, matching study IEN " + study.getStudyIen() + 
-					", firstImageIEN-" + study.getFirstImageIen() + ". " + 
-					" Group " + group.getIen() + " " + (groups.remove(group) ? "was" : "was not") + " removed from further matching."); 
-				// remove the group, so we can keep track of whether they were all matched or not
-			}
+			Study mergedStudy = mergeStudyWithMatchingGroupAndRemove(vistaSession, study, groups, studyLoadLevel);
+			if(mergedStudy != null)
+				mergedStudies.add(mergedStudy);
 		}
 		
 		// if not all groups were matched then log an information message
@@ -407,6 +399,37 @@ public class VistaImagingCommonUtilities
         }
 	}	
 	
+	/**
+	 * Merge a study from the study graph with its group, removing the group so that it is not
+	 * matched again.  Used by mergeStudyLists() and by data sources that merge each study as
+	 * soon as it is translated.
+	 * 
+	 * @param vistaSession
+	 * @param study
+	 * @param groups the groups not yet matched to a study
+	 * @param studyLoadLevel Needed to determine if the report should be loaded
+	 * @return the merged study or null if no group matches the study
+	 */
+	public static Study mergeStudyWithMatchingGroupAndRemove(
+		VistaSession vistaSession, 
+		Study study, 
+		SortedSet<VistaGroup> groups, 
+		StudyLoadLevel studyLoadLevel)
+	{
+		VistaGroup group = getMatchingGroup(groups, study.getStudyIen(), study.getFirstImageIen());
+		if(group == null) 
+		{
+			logger.error("Unable to find matching study details for study '" + study.getStudyIen() + "'.");
+			return null;
+		}
+		Study mergedStudy = mergeStudyWithGroup(vistaSession, study, group, studyLoadLevel);
+		// remove the group, so we can keep track of whether they were all matched or not
+		logger.info("Merged study lists, matching study IEN " + study.getStudyIen() + 
+			", firstImageIEN-" + study.getFirstImageIen() + ". " + 
+			" Group " + group.getIen() + " " + (groups.remove(group) ? "was" : "was not") + " removed from further matching."); 
+		return mergedStudy;
+	}
+	
 	/**
 	 * 
 	 * @param vistaSession
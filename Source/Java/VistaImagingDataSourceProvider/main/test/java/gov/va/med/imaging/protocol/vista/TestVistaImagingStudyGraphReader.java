@@ -0,0 +1,410 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.protocol.vista;
+
+import gov.va.med.imaging.protocol.vista.VistaImagingParser.ParsedVistaLine;
+import gov.va.med.imaging.protocol.vista.VistaImagingStudyGraphReader.StudyGraphNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+/**
+ * Compares the study graph reader with the VistaImagingParser using the recorded 
+ * study graphs, and reads a large generated study graph.
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TestVistaImagingStudyGraphReader 
+extends TestCase
+{
+	private Logger logger = Logger.getLogger(this.getClass());
+	
+	static VistaImagingParser.OntologyDelimiterKey[] delimiterKeys = new VistaImagingParser.OntologyDelimiterKey[]
+	{
+		new VistaImagingParser.OntologyDelimiterKey("NEXT_STUDY", new String[] {"STUDY_MODALITY"}),
+		new VistaImagingParser.OntologyDelimiterKey("NEXT_SERIES"),
+		new VistaImagingParser.OntologyDelimiterKey("NEXT_IMAGE")
+	};
+	
+	private String[] studyGraphFiles = new String[]
+	{
+		"clinImages.studyGraph", "multipleGroupsWithImages.studyGraph", "singleImageGroup.studyGraph", 
+		"singleImageStudy.studyGraph", "studyByIen.studyGraph", "studyGraph1.studyGraph", 
+		"studyGraphWithModality.studyGraph"
+	};
+	
+	@Override
+	protected void setUp() 
+	throws Exception
+	{
+		super.setUp();
+		Logger.getRootLogger().setLevel(Level.INFO);
+	}
+	
+	public void testSingleImageStudy()
+	{
+		String vistaResponse = 
+			"8\n" + 
+			"NEXT_STUDY||712\n" + 
+			"STUDY_IEN|712|1|713\n" + 
+			"STUDY_PAT|1011|9217103663V710366|IMAGPATIENT1011,1011\n" + 
+			"NEXT_SERIES\n" + 
+			"SERIES_IEN|712\n" + 
+			"NEXT_IMAGE\n" + 
+			"IMAGE_IEN|713\n" + 
+			"IMAGE_INFO|B2^713^\\\\isw-werfelj-lt\\image1$\\DM\\00\\07\\DM000713.TGA|660\n";
+		
+		final List<String> events = new ArrayList<String>();
+		new VistaImagingStudyGraphReader().read(vistaResponse, new RecordingHandler()
+		{
+			@Override
+			public void study(StudyGraphNode study)
+			{
+				super.study(study);
+				assertEquals("712", study.getValue(1));
+				assertEquals("", study.getValue(0));
+				assertNull(study.getValue(2));
+				assertEquals("713", study.getPropertyValue("STUDY_IEN", 2));
+				assertTrue(study.isPropertyValueExists("STUDY_IEN", 2));
+				assertFalse(study.isPropertyValueExists("STUDY_IEN", 3));
+				assertEquals("IMAGPATIENT1011,1011", study.getPropertyValue("STUDY_PAT", 2));
+				assertFalse(study.isPropertyExists("STUDY_UID"));
+				assertNull(study.getPropertyValue("STUDY_UID", 0));
+			}
+
+			@Override
+			public void image(StudyGraphNode image)
+			{
+				super.image(image);
+				assertEquals("B2^713^\\\\isw-werfelj-lt\\image1$\\DM\\00\\07\\DM000713.TGA", 
+					image.getPropertyValue("IMAGE_INFO", 0));
+				assertEquals("660", image.getPropertyValue("IMAGE_INFO", 1));
+			}
+		}.setEvents(events));
+		
+		assertEquals("[study 712, series 712, image 713, seriesComplete, studyComplete]", events.toString());
+	}
+	
+	public void testLateStudyModality()
+	{
+		String vistaResponse = 
+			"12\n" + 
+			"NEXT_STUDY||1\n" + 
+			"STUDY_IEN|1\n" + 
+			"NEXT_SERIES\n" + 
+			"SERIES_IEN|1\n" + 
+			"NEXT_IMAGE\n" + 
+			"IMAGE_IEN|2\n" + 
+			"STUDY_MODALITY|CT,MR\n" + 
+			"STUDY_MODALITY|XA\n" + 
+			"NEXT_STUDY||3\n" + 
+			"STUDY_IEN|3\n" + 
+			"STUDY_MODALITY|CR\n" + 
+			"NEXT_IMAGE\n" + 
+			"IMAGE_IEN|4\n";
+		
+		List<String> events = new ArrayList<String>();
+		new VistaImagingStudyGraphReader().read(vistaResponse, new RecordingHandler().setEvents(events));
+		
+		// the first STUDY_MODALITY of a study is used, where it precedes the series it is part of the study line,
+		// an image is reported when the line that follows it is read
+		assertEquals("[study 1, series 1, studyModality CT,MR, image 2, seriesComplete, studyComplete, " + 
+			"study 3 CR, series null, image 4, seriesComplete, studyComplete]", events.toString());
+	}
+	
+	public void testLinesWithoutStudy()
+	{
+		String vistaResponse = 
+			"6\n" + 
+			"STUDY_IEN|1\n" + 
+			"NEXT_SERIES\n" + 
+			"NEXT_IMAGE\n" + 
+			"IMAGE_IEN|2\n" + 
+			"NEXT_STUDY||3\n" + 
+			"STUDY_IEN|3\n";
+		
+		List<String> events = new ArrayList<String>();
+		new VistaImagingStudyGraphReader().read(vistaResponse, new RecordingHandler().setEvents(events));
+		assertEquals("[study 3, studyComplete]", events.toString());
+	}
+	
+	public void testRecordedStudyGraphs()
+	throws IOException
+	{
+		for(String studyGraphFile : studyGraphFiles)
+		{
+			logger.info("Comparing '" + studyGraphFile + "'");
+			List<String> lines = readStudyGraph(studyGraphFile);
+			
+			List<String> expected = new ArrayList<String>();
+			List<ParsedVistaLine> parsedLines = new VistaImagingParser(delimiterKeys).parse(
+				lines.subList(1, lines.size()).toArray(new String[lines.size() - 1]), true);
+			for(ParsedVistaLine studyLine : parsedLines)
+				recordParsedStudy(studyLine, expected);
+			
+			StringBuilder vistaResponse = new StringBuilder();
+			for(String line : lines)
+				vistaResponse.append(line).append('\n');
+			List<String> actual = new ArrayList<String>();
+			new VistaImagingStudyGraphReader().read(vistaResponse, new StructureRecordingHandler(actual));
+			
+			assertTrue(studyGraphFile + " contains no studies", expected.size() > 0);
+			assertEquals(studyGraphFile, expected, actual);
+		}
+	}
+	
+	public void testLargeStudyGraph()
+	{
+		final int studyCount = 200;
+		final int seriesCount = 10;
+		final int imageCount = 100;
+		
+		String vistaResponse = createStudyGraph(studyCount, seriesCount, imageCount);
+		int lineCount = Integer.parseInt(vistaResponse.substring(0, vistaResponse.indexOf('\n')));
+		
+		final int[] counts = new int[3];
+		long start = System.currentTimeMillis();
+		new VistaImagingStudyGraphReader().read(vistaResponse, new RecordingHandler()
+		{
+			@Override
+			public void study(StudyGraphNode study)
+			{
+				counts[0]++;
+			}
+
+			@Override
+			public void series(StudyGraphNode series)
+			{
+				counts[1]++;
+			}
+
+			@Override
+			public void image(StudyGraphNode image)
+			{
+				counts[2]++;
+				assertNotNull(image.getPropertyValue("IMAGE_INFO", 0));
+			}
+		});
+		logger.info("Read " + lineCount + " lines in " + (System.currentTimeMillis() - start) + " ms.");
+		
+		assertEquals(studyCount, counts[0]);
+		assertEquals(studyCount * seriesCount, counts[1]);
+		assertEquals(studyCount * seriesCount * imageCount, counts[2]);
+	}
+	
+	/**
+	 * @return a study graph, as MAG4 returns it, of studies each with the given number of series and images
+	 */
+	static String createStudyGraph(int studyCount, int seriesCount, int imageCount)
+	{
+		StringBuilder vistaResponse = new StringBuilder();
+		int lineCount = 0;
+		for(int study = 0; study < studyCount; study++)
+		{
+			vistaResponse.append("NEXT_STUDY||").append(study).append('\n');
+			vistaResponse.append("STUDY_IEN|").append(study).append('\n');
+			vistaResponse.append("STUDY_PAT|1011|9217103663V710366|IMAGPATIENT1011,1011\n");
+			lineCount += 3;
+			for(int series = 0; series < seriesCount; series++)
+			{
+				vistaResponse.append("NEXT_SERIES\n");
+				vistaResponse.append("SERIES_IEN|").append(series).append('\n');
+				lineCount += 2;
+				for(int image = 0; image < imageCount; image++)
+				{
+					vistaResponse.append("NEXT_IMAGE\n");
+					vistaResponse.append("IMAGE_IEN|").append(image).append('\n');
+					vistaResponse.append("IMAGE_INFO|B2^").append(image).append(
+						"^\\\\isw-werfelj-lt\\image1$\\DM\\00\\07\\DM000713.TGA^\\\\isw-werfelj-lt\\image1$\\DM\\00\\07\\DM000713.ABS" + 
+						"^040600-28 CHEST SINGLE VIEW^3000406.1349^3^CR^04/06/2000^^M^A^^^1^1^SLC^^^1011^IMAGPATIENT1011,1011^CLIN^^^^\n");
+					lineCount += 3;
+				}
+			}
+			vistaResponse.append("STUDY_MODALITY|CR\n");
+			lineCount++;
+		}
+		vistaResponse.insert(0, lineCount + "\n");
+		return vistaResponse.toString();
+	}
+	
+	private List<String> readStudyGraph(String studyGraphFile)
+	throws IOException
+	{
+		List<String> lines = new ArrayList<String>(); 
+		InputStream inStream = getClass().getClassLoader().getResourceAsStream(studyGraphFile);
+		assertNotNull(studyGraphFile + " not found", inStream);
+		LineNumberReader reader = new LineNumberReader( new InputStreamReader(inStream) );
+		try
+		{
+			for( String line = reader.readLine(); line != null; line = reader.readLine() )
+				lines.add(line);
+		} 
+		finally
+		{
+			reader.close();
+		}
+		return lines;
+	}
+	
+	private void recordParsedStudy(ParsedVistaLine studyLine, List<String> events)
+	{
+		events.add("study " + getParsedValue(studyLine, "STUDY_IEN") + " " + getParsedValue(studyLine, "STUDY_UID") + 
+			" " + getParsedValue(studyLine, "STUDY_MODALITY"));
+		for(Iterator<ParsedVistaLine> seriesIter = studyLine.childIterator(); seriesIter.hasNext(); )
+		{
+			ParsedVistaLine seriesLine = seriesIter.next();
+			events.add("series " + getParsedValue(seriesLine, "SERIES_IEN") + " " + getParsedValue(seriesLine, "SERIES_NUMBER"));
+			for(Iterator<ParsedVistaLine> imageIter = seriesLine.childIterator(); imageIter.hasNext(); )
+			{
+				ParsedVistaLine imageLine = imageIter.next();
+				events.add("image " + getParsedValue(imageLine, "IMAGE_IEN") + " " + getParsedValue(imageLine, "IMAGE_INFO"));
+			}
+		}
+	}
+	
+	private String getParsedValue(ParsedVistaLine line, String key)
+	{
+		ParsedVistaLine property = line.getProperty(key);
+		return property == null ? null : property.getValueAtIndex(0);
+	}
+	
+	/**
+	 * Records the same values as recordParsedStudy(), in the same order.
+	 */
+	class StructureRecordingHandler
+	implements VistaImagingStudyGraphReader.StudyGraphHandler
+	{
+		private final List<String> events;
+		private String study;
+		private String modality;
+		private final List<String> studyEvents = new ArrayList<String>();
+		
+		StructureRecordingHandler(List<String> events)
+		{
+			this.events = events;
+		}
+
+		@Override
+		public void study(StudyGraphNode node)
+		{
+			study = "study " + node.getPropertyValue("STUDY_IEN", 0) + " " + node.getPropertyValue("STUDY_UID", 0);
+			modality = node.getPropertyValue("STUDY_MODALITY", 0);
+		}
+
+		@Override
+		public void studyModality(String modalities)
+		{
+			modality = modalities;
+		}
+
+		@Override
+		public void series(StudyGraphNode node)
+		{
+			studyEvents.add("series " + node.getPropertyValue("SERIES_IEN", 0) + " " + node.getPropertyValue("SERIES_NUMBER", 0));
+		}
+
+		@Override
+		public void image(StudyGraphNode node)
+		{
+			studyEvents.add("image " + node.getPropertyValue("IMAGE_IEN", 0) + " " + node.getPropertyValue("IMAGE_INFO", 0));
+		}
+
+		@Override
+		public void seriesComplete()
+		{
+		}
+
+		@Override
+		public void studyComplete()
+		{
+			events.add(study + " " + modality);
+			events.addAll(studyEvents);
+			studyEvents.clear();
+		}
+	}
+	
+	/**
+	 * Records the order of the reports from the reader.
+	 */
+	class RecordingHandler
+	implements VistaImagingStudyGraphReader.StudyGraphHandler
+	{
+		private List<String> events = new ArrayList<String>();
+		
+		RecordingHandler setEvents(List<String> events)
+		{
+			this.events = events;
+			return this;
+		}
+		
+		@Override
+		public void study(StudyGraphNode study)
+		{
+			String modality = study.getPropertyValue("STUDY_MODALITY", 0);
+			events.add("study " + study.getPropertyValue("STUDY_IEN", 0) + (modality == null ? "" : " " + modality));
+		}
+
+		@Override
+		public void studyModality(String modalities)
+		{
+			events.add("studyModality " + modalities);
+		}
+
+		@Override
+		public void series(StudyGraphNode series)
+		{
+			events.add("series " + series.getPropertyValue("SERIES_IEN", 0));
+		}
+
+		@Override
+		public void image(StudyGraphNode image)
+		{
+			events.add("image " + image.getPropertyValue("IMAGE_IEN", 0));
+		}
+
+		@Override
+		public void seriesComplete()
+		{
+			events.add("seriesComplete");
+		}
+
+		@Override
+		public void studyComplete()
+		{
+			events.add("studyComplete");
+		}
+	}
+}
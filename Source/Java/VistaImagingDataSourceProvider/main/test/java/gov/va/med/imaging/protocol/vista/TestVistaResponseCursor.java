@@ -0,0 +1,118 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.protocol.vista;
+
+import junit.framework.TestCase;
+
+/**
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class TestVistaResponseCursor 
+extends TestCase
+{
+	public void testLines()
+	{
+		VistaResponseCursor cursor = new VistaResponseCursor("3\r\n  NEXT_STUDY||712 \n\nSTUDY_IEN|712");
+		
+		assertTrue(cursor.nextLine());
+		assertEquals(1, cursor.getLineNumber());
+		assertEquals("3", cursor.getLine());
+		
+		assertTrue(cursor.nextLine());
+		assertEquals("NEXT_STUDY||712", cursor.getLine());
+		assertFalse(cursor.isBlankLine());
+		
+		assertTrue(cursor.nextLine());
+		assertTrue(cursor.isBlankLine());
+		assertEquals("", cursor.getLine());
+		
+		assertTrue(cursor.nextLine());
+		assertEquals(4, cursor.getLineNumber());
+		assertEquals("STUDY_IEN|712", cursor.getLine());
+		
+		assertFalse(cursor.nextLine());
+	}
+	
+	public void testEmptyResponse()
+	{
+		assertFalse(new VistaResponseCursor("").nextLine());
+		assertFalse(new VistaResponseCursor(null).nextLine());
+		
+		// a trailing new line does not start another line
+		VistaResponseCursor cursor = new VistaResponseCursor("1\n");
+		assertTrue(cursor.nextLine());
+		assertFalse(cursor.nextLine());
+	}
+	
+	public void testFields()
+	{
+		VistaResponseCursor cursor = new VistaResponseCursor("NEXT_STUDY||712|");
+		assertTrue(cursor.nextLine());
+		
+		String[] parts = cursor.getLine().split("\\|", -1);
+		assertEquals(parts.length, cursor.getFieldCount('|'));
+		for(int index = 0; index < parts.length; index++)
+			assertEquals(parts[index], cursor.getField(index, '|'));
+		assertNull(cursor.getField(parts.length, '|'));
+		assertNull(cursor.getField(-1, '|'));
+		
+		assertTrue(cursor.isFieldEqual(0, '|', "NEXT_STUDY"));
+		assertTrue(cursor.isFieldEqual(1, '|', ""));
+		assertFalse(cursor.isFieldEqual(0, '|', "NEXT_SERIES"));
+		assertFalse(cursor.isFieldEqual(0, '|', "NEXT"));
+		assertFalse(cursor.isFieldEqual(4, '|', ""));
+	}
+	
+	public void testFieldsInRange()
+	{
+		String response = "IMAGE_INFO|B2^713^^DM000713.ABS~1|660";
+		int start = response.indexOf('|') + 1;
+		int end = response.lastIndexOf('|');
+		
+		assertEquals(4, VistaResponseCursor.getFieldCount(response, start, end, '^'));
+		assertEquals("B2", VistaResponseCursor.getField(response, start, end, 0, '^'));
+		assertEquals("", VistaResponseCursor.getField(response, start, end, 2, '^'));
+		assertEquals("DM000713.ABS~1", VistaResponseCursor.getField(response, start, end, 3, '^'));
+		assertNull(VistaResponseCursor.getField(response, start, end, 4, '^'));
+		assertTrue(VistaResponseCursor.isFieldEqual(response, start, end, 1, '^', "713"));
+		
+		assertEquals(1, VistaResponseCursor.getFieldCount(response, start, start, '^'));
+		assertEquals("", VistaResponseCursor.getField(response, start, start, 0, '^'));
+	}
+	
+	public void testFieldsAreNotTrimmed()
+	{
+		VistaResponseCursor cursor = new VistaResponseCursor("STUDY_PAT | 1011 |NAME");
+		assertTrue(cursor.nextLine());
+		
+		assertEquals("STUDY_PAT ", cursor.getField(0, '|'));
+		assertEquals(" 1011 ", cursor.getField(1, '|'));
+		// comparisons ignore leading and trailing white space, as keys are trimmed by the parser
+		assertTrue(cursor.isFieldEqual(0, '|', "STUDY_PAT"));
+		assertTrue(cursor.isFieldEqual(1, '|', "1011"));
+	}
+}
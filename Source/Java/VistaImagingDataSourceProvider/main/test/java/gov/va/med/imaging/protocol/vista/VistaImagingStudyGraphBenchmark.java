@@ -0,0 +1,201 @@
+/**
+ * 
+  Package: MAG - VistA Imaging
+  WARNING: Per VHA Directive 2004-038, this routine should not be modified.
+  Date Created: Oct 18, 2026
+  Site Name:  Washington OI Field Office, Silver Spring, MD
+  Developer:  vhaiswwerfej
+  Description: 
+
+        ;; +--------------------------------------------------------------------+
+        ;; Property of the US Government.
+        ;; No permission to copy or redistribute this software is given.
+        ;; Use of unreleased versions of this software requires the user
+        ;;  to execute a written test agreement with the VistA Imaging
+        ;;  Development Office of the Department of Veterans Affairs,
+        ;;  telephone (301) 734-0100.
+        ;;
+        ;; The Food and Drug Administration classifies this software as
+        ;; a Class II medical device.  As such, it may not be changed
+        ;; in any way.  Modifications to this software may result in an
+        ;; adulterated medical device under 21CFR820, the use of which
+        ;; is considered to be a violation of US Federal Statutes.
+        ;; +--------------------------------------------------------------------+
+ */
+package gov.va.med.imaging.protocol.vista;
+
+import gov.va.med.imaging.protocol.vista.VistaImagingParser.ParsedVistaLine;
+import gov.va.med.imaging.protocol.vista.VistaImagingStudyGraphReader.StudyGraphHandler;
+import gov.va.med.imaging.protocol.vista.VistaImagingStudyGraphReader.StudyGraphNode;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Compares reading a large study graph the way the translator did before, splitting 
+ * the response into lines and parsing them into a tree of ParsedVistaLine with the 
+ * VistaImagingParser, against the VistaImagingStudyGraphReader.  Both read the values 
+ * the translator uses from each study, series and image.  Reports the CPU time and, 
+ * where the JVM can measure it, the bytes allocated per read.
+ * 
+ * Run as a Java application, this is not a unit test.
+ * usage: VistaImagingStudyGraphBenchmark [iterations] [studies] [series per study] [images per series]
+ * 
+ * @author vhaiswwerfej
+ *
+ */
+public class VistaImagingStudyGraphBenchmark
+{
+	public static void main(String[] args) 
+	throws Exception
+	{
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		int studyCount = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		int seriesCount = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		int imageCount = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		
+		String vistaResponse = TestVistaImagingStudyGraphReader.createStudyGraph(studyCount, seriesCount, imageCount);
+		
+		long parserCpu = 0L, readerCpu = 0L, parserAllocated = 0L, readerAllocated = 0L;
+		
+		// the first pass is a warm up
+		for(int iteration = 0; iteration <= iterations; ++iteration)
+		{
+			long startAllocated = getAllocatedBytes(threadBean);
+			long start = threadBean.getCurrentThreadCpuTime();
+			int parsedValues = parse(vistaResponse);
+			long parse = threadBean.getCurrentThreadCpuTime() - start;
+			long parseAllocated = getAllocatedBytes(threadBean) - startAllocated;
+			
+			startAllocated = getAllocatedBytes(threadBean);
+			start = threadBean.getCurrentThreadCpuTime();
+			int readValues = read(vistaResponse);
+			long read = threadBean.getCurrentThreadCpuTime() - start;
+			long readAllocated = getAllocatedBytes(threadBean) - startAllocated;
+			
+			if(parsedValues != readValues)
+				throw new IllegalStateException("The reader found " + readValues + " values, the parser found " + parsedValues + ".");
+			
+			if(iteration > 0)
+			{
+				parserCpu += parse;
+				readerCpu += read;
+				parserAllocated += parseAllocated;
+				readerAllocated += readAllocated;
+			}
+		}
+		
+		System.out.println("Study graph of " + studyCount + " studies, " + (studyCount * seriesCount * imageCount) + " images, " + 
+			vistaResponse.length() + " characters, " + iterations + " iterations.");
+		System.out.println(String.format("Split and parse: %.2f CPU ms, %s", 
+			parserCpu / 1000000.0 / iterations, formatAllocated(parserAllocated, iterations)));
+		System.out.println(String.format("Reader:          %.2f CPU ms, %s", 
+			readerCpu / 1000000.0 / iterations, formatAllocated(readerAllocated, iterations)));
+	}
+	
+	/**
+	 * The way the translator read a study graph before the reader.
+	 * @return the number of non-null values found
+	 */
+	private static int parse(String vistaResponse)
+	{
+		// StringUtils.Split() of the response on new lines, then dropping the line count
+		String[] studyLines = vistaResponse.split("\n");
+		String[] realLines = new String[studyLines.length - 1];
+		System.arraycopy(studyLines, 1, realLines, 0, realLines.length);
+		List<ParsedVistaLine> parsedStudyLines = new VistaImagingParser(TestVistaImagingStudyGraphReader.delimiterKeys).parse(realLines, true);
+		
+		int values = 0;
+		for(ParsedVistaLine studyLine : parsedStudyLines)
+		{
+			values += count(getParsedValue(studyLine, "STUDY_IEN")) + count(getParsedValue(studyLine, "STUDY_PAT")) + 
+				count(getParsedValue(studyLine, "STUDY_MODALITY"));
+			for(Iterator<ParsedVistaLine> seriesIter = studyLine.childIterator(); seriesIter.hasNext(); )
+			{
+				ParsedVistaLine seriesLine = seriesIter.next();
+				values += count(getParsedValue(seriesLine, "SERIES_IEN"));
+				for(Iterator<ParsedVistaLine> imageIter = seriesLine.childIterator(); imageIter.hasNext(); )
+				{
+					ParsedVistaLine imageLine = imageIter.next();
+					values += count(getParsedValue(imageLine, "IMAGE_IEN")) + count(getParsedValue(imageLine, "IMAGE_INFO"));
+				}
+			}
+		}
+		return values;
+	}
+	
+	private static String getParsedValue(ParsedVistaLine line, String key)
+	{
+		ParsedVistaLine property = line.getProperty(key);
+		return property == null ? null : property.getValueAtIndex(0);
+	}
+	
+	/**
+	 * @return the number of non-null values found
+	 */
+	private static int read(String vistaResponse)
+	{
+		final int[] values = new int[1];
+		new VistaImagingStudyGraphReader().read(vistaResponse, new StudyGraphHandler()
+		{
+			@Override
+			public void study(StudyGraphNode study)
+			{
+				values[0] += count(study.getPropertyValue("STUDY_IEN", 0)) + count(study.getPropertyValue("STUDY_PAT", 0)) + 
+					count(study.getPropertyValue("STUDY_MODALITY", 0));
+			}
+
+			@Override
+			public void studyModality(String modalities)
+			{
+				values[0] += count(modalities);
+			}
+
+			@Override
+			public void series(StudyGraphNode series)
+			{
+				values[0] += count(series.getPropertyValue("SERIES_IEN", 0));
+			}
+
+			@Override
+			public void image(StudyGraphNode image)
+			{
+				values[0] += count(image.getPropertyValue("IMAGE_IEN", 0)) + count(image.getPropertyValue("IMAGE_INFO", 0));
+			}
+
+			@Override
+			public void seriesComplete()
+			{
+			}
+
+			@Override
+			public void studyComplete()
+			{
+			}
+		});
+		return values[0];
+	}
+	
+	private static int count(String value)
+	{
+		return value == null ? 0 : 1;
+	}
+	
+	/**
+	 * @return the bytes allocated by the current thread, -1 if the JVM does not measure them
+	 */
+	private static long getAllocatedBytes(ThreadMXBean threadBean)
+	{
+		if(threadBean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean)threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		return -1L;
+	}
+	
+	private static String formatAllocated(long allocated, int iterations)
+	{
+		return allocated < 0L ? "allocation not measured" : String.format("%.1f MB allocated", allocated / 1048576.0 / iterations);
+	}
+}